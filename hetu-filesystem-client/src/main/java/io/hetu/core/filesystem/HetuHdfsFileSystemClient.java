@@ -37,6 +37,7 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.stream.Stream;
 
+import static java.nio.file.StandardOpenOption.APPEND;
 import static java.nio.file.StandardOpenOption.CREATE_NEW;
 
 /**
@@ -179,6 +180,9 @@ public class HetuHdfsFileSystemClient
         else if (options.length == 1 && options[0] == CREATE_NEW) {
             return unwrapHdfsExceptions(() -> getHdfs().create(hdfsPath, false));
         }
+        else if (options.length == 1 && options[0] == APPEND) {
+            return unwrapHdfsExceptions(() -> getHdfs().append(hdfsPath));
+        }
         else {
             throw new UnsupportedOperationException("Provided OpenOptions are not supported by HDFS.");
         }
@@ -16,6 +16,7 @@ package io.hetu.core.filesystem;
 
 import io.prestosql.spi.filesystem.SupportedFileAttributes;
 
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
@@ -28,6 +29,7 @@ import java.nio.file.Path;
 import java.util.Collection;
 import java.util.LinkedList;
 import java.util.Locale;
+import java.util.Optional;
 import java.util.stream.Stream;
 
 /**
@@ -174,6 +176,14 @@ public class HetuLocalFileSystemClient
         return Files.newOutputStream(path, options);
     }
 
+    @Override
+    public Optional<File> getLocalFile(Path path)
+            throws IOException
+    {
+        validate(path);
+        return Optional.of(path.toFile());
+    }
+
     @Override
     public Object getAttribute(Path path, String attribute)
             throws IOException
@@ -236,6 +236,21 @@ public class TestHetuLocalFileSystemClient
         os2.close();
     }
 
+    @Test
+    public void testGetLocalFile()
+            throws IOException
+    {
+        File testFile = tFolder.newFile();
+        assertEquals(fs.getLocalFile(testFile.toPath()).get(), testFile);
+    }
+
+    @Test(expectedExceptions = AccessDeniedException.class)
+    public void testGetLocalFileOutsideWorkspace()
+            throws IOException
+    {
+        fs.getLocalFile(OUTSIDE_WORKSPACE_PATH);
+    }
+
     @Test
     public void testIsDirectory()
     {
@@ -14,6 +14,7 @@
  */
 package io.hetu.core.heuristicindex;
 
+import com.google.common.annotations.VisibleForTesting;
 import io.airlift.log.Logger;
 import io.hetu.core.filesystem.HetuLocalFileSystemClient;
 import io.hetu.core.filesystem.LocalConfig;
@@ -25,35 +26,44 @@ import io.prestosql.spi.filesystem.HetuFileSystemClient;
 import io.prestosql.spi.heuristicindex.Index;
 import io.prestosql.spi.heuristicindex.IndexWriter;
 import io.prestosql.spi.heuristicindex.Pair;
+import io.prestosql.spi.service.PropertyService;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.AbstractMap;
 import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Properties;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static io.prestosql.spi.HetuConstant.DATASOURCE_PAGE_NUMBER;
 import static io.prestosql.spi.HetuConstant.DATASOURCE_STRIPE_OFFSET;
 import static io.prestosql.spi.HetuConstant.DATASOURCE_TOTAL_PAGES;
+import static com.google.common.base.Preconditions.checkArgument;
+import static io.airlift.slice.SizeOf.sizeOfCharArray;
+import static io.airlift.slice.SizeOf.sizeOfObjectArray;
 import static java.util.Objects.requireNonNull;
 
 /**
  * All of the values added to this index writer should belong to one single data source file (e.g. one ORC file on Hive)
  * <p>
  * This writer cache the result in an internal map in (offset -> index) format and write them to disk whenever finish() is called
+ * <p>
+ * Values of stripes that haven't received all of their pages are buffered in memory. When their estimated size
+ * exceeds {@code hetu.heuristicindex.indexwriter.max-buffered-memory}, the buffered pages are spilled to local files
+ * under the spiller spill paths and read back once their stripe is complete.
  *
  * @since 2019-10-11
  */
@@ -62,16 +72,27 @@ public class FileIndexWriter
 {
     private static final HetuFileSystemClient LOCAL_FS_CLIENT = new HetuLocalFileSystemClient(new LocalConfig(new Properties()), Paths.get("/"));
     private static final Logger LOG = Logger.get(FileIndexWriter.class);
+    private static final String SPILL_DIRECTORY_PREFIX = "tmp-indexwriter-spill-";
+    private static final long DEFAULT_MAX_BUFFERED_BYTES = 256L * 1024 * 1024;
+    // estimated retained sizes of the values, which are boxed primitives or strings
+    private static final long BOXED_VALUE_SIZE = 16;
+    private static final long STRING_INSTANCE_SIZE = 24;
 
     private final String dataSourceFileName;
     private final String dataSourceFileLastModifiedTime;
-    // "stripe offset" -> (column name -> list<entry<page values, page number>>)
-    private final Map<Long, Map<String, List<Map.Entry<List<Object>, Integer>>>> indexPages;
+    // "stripe offset" -> (column name -> (page number -> page values))
+    private final Map<Long, Map<String, NavigableMap<Integer, List<Object>>>> indexPages;
     private final Map<Long, AtomicInteger> pageCountExpected;
+    // "stripe offset" -> files holding pages of the stripe that were spilled before it was complete
+    private final Map<Long, List<Path>> spilledPages;
+    private final AtomicLong bufferedBytes;
+    private final long maxBufferedBytes;
     private final CreateIndexMetadata createIndexMetadata;
     private final HetuFileSystemClient fs;
     private final Path root;
     private Path tmpPath;
+    private Path spillPath;
+    private int spillCount;
 
     /**
      * Constructor. The file index writer is per ORC file, marked by `dataSourceFileName`.
@@ -81,6 +102,15 @@ public class FileIndexWriter
      */
     public FileIndexWriter(CreateIndexMetadata createIndexMetadata, Properties connectorMetadata, HetuFileSystemClient fs, Path root)
     {
+        this(createIndexMetadata, connectorMetadata, fs, root, PropertyService.containsProperty(HetuConstant.INDEX_WRITER_MAX_BUFFERED_MEMORY)
+                ? PropertyService.getLongProperty(HetuConstant.INDEX_WRITER_MAX_BUFFERED_MEMORY)
+                : DEFAULT_MAX_BUFFERED_BYTES);
+    }
+
+    @VisibleForTesting
+    FileIndexWriter(CreateIndexMetadata createIndexMetadata, Properties connectorMetadata, HetuFileSystemClient fs, Path root, long maxBufferedBytes)
+    {
+        checkArgument(maxBufferedBytes > 0, "maxBufferedBytes must be positive");
         this.createIndexMetadata = createIndexMetadata;
         this.dataSourceFileName = Paths.get(connectorMetadata.getProperty(HetuConstant.DATASOURCE_FILE_PATH)).toString();
         this.dataSourceFileLastModifiedTime = connectorMetadata.getProperty(HetuConstant.DATASOURCE_FILE_MODIFICATION);
@@ -88,6 +118,9 @@ public class FileIndexWriter
         this.root = root;
         this.indexPages = new ConcurrentHashMap<>();
         this.pageCountExpected = new ConcurrentHashMap<>();
+        this.spilledPages = new ConcurrentHashMap<>();
+        this.bufferedBytes = new AtomicLong();
+        this.maxBufferedBytes = maxBufferedBytes;
     }
 
     /**
@@ -99,19 +132,39 @@ public class FileIndexWriter
     @Override
     public void addData(Map<String, List<Object>> values, Properties connectorMetadata)
             throws IOException
+    {
+        try {
+            addStripeData(values, connectorMetadata);
+        }
+        catch (IOException | RuntimeException e) {
+            // the index won't be persisted, don't leave the local files behind
+            abort();
+            throw e;
+        }
+    }
+
+    private void addStripeData(Map<String, List<Object>> values, Properties connectorMetadata)
+            throws IOException
     {
         long stripeOffset = Long.parseLong(connectorMetadata.getProperty(DATASOURCE_STRIPE_OFFSET));
 
-        // Add values first
-        indexPages.computeIfAbsent(stripeOffset, k -> new ConcurrentHashMap<>());
-        for (Map.Entry<String, List<Object>> e : values.entrySet()) {
-            indexPages.get(stripeOffset).computeIfAbsent(e.getKey(),
-                    k -> Collections.synchronizedList(new LinkedList<>()))
-                    .add(new AbstractMap.SimpleEntry(e.getValue(), Integer.parseInt(connectorMetadata.getProperty(DATASOURCE_PAGE_NUMBER))));
+        int pageNumber = Integer.parseInt(connectorMetadata.getProperty(DATASOURCE_PAGE_NUMBER));
+
+        // Add values first, keyed by page number so that they come out in page order without sorting.
+        // The stripe's page count doubles as its lock, so that the pages can't be spilled while they are added
+        AtomicInteger stripePageCount = pageCountExpected.computeIfAbsent(stripeOffset, k -> new AtomicInteger());
+        long addedBytes = 0;
+        synchronized (stripePageCount) {
+            Map<String, NavigableMap<Integer, List<Object>>> stripePages = indexPages.computeIfAbsent(stripeOffset, k -> new ConcurrentHashMap<>());
+            for (Map.Entry<String, List<Object>> e : values.entrySet()) {
+                stripePages.computeIfAbsent(e.getKey(), k -> new ConcurrentSkipListMap<>()).put(pageNumber, e.getValue());
+                addedBytes += estimateSizeInBytes(e.getValue());
+            }
         }
+        bufferedBytes.addAndGet(addedBytes);
 
         // Update page count
-        int current = pageCountExpected.computeIfAbsent(stripeOffset, k -> new AtomicInteger()).decrementAndGet();
+        int current = stripePageCount.decrementAndGet();
         if (connectorMetadata.getProperty(DATASOURCE_TOTAL_PAGES) != null) {
             int expected = Integer.parseInt(connectorMetadata.getProperty(DATASOURCE_TOTAL_PAGES));
             int updatedCurrent = pageCountExpected.get(stripeOffset).addAndGet(expected);
@@ -122,22 +175,32 @@ public class FileIndexWriter
         // Check page count to know if all pages have been received for a stripe. Persist and delete values if true to save memory
         if (pageCountExpected.get(stripeOffset).get() == 0) {
             synchronized (pageCountExpected.get(stripeOffset)) {
-                if (indexPages.containsKey(stripeOffset)) {
+                Map<String, NavigableMap<Integer, List<Object>>> completedPages = indexPages.remove(stripeOffset);
+                if (completedPages == null && spilledPages.containsKey(stripeOffset)) {
+                    // all of the stripe's pages were spilled
+                    completedPages = new ConcurrentHashMap<>();
+                }
+                if (completedPages != null) {
                     LOG.debug("All pages for offset %d have been received. Persisting.", stripeOffset);
-                    // sort the stripe's pages and collect the values into a single list
-                    List<Pair<String, List<Object>>> columnValuesMap = new ArrayList<>();
-                    // each entry represents a mapping from column name -> list<entry<page values, page number>>
-                    for (Map.Entry<String, List<Map.Entry<List<Object>, Integer>>> entry : indexPages.get(stripeOffset).entrySet()) {
-                        // sort the page values lists based on page numbers
-                        entry.getValue().sort(Comparator.comparingInt(Map.Entry::getValue));
-                        // collect all page values lists into a single list
-                        List<Object> columnValues = entry.getValue().stream()
-                                .map(Map.Entry::getKey).flatMap(Collection::stream).collect(Collectors.toList());
-                        columnValuesMap.add(new Pair(entry.getKey(), columnValues));
+                    bufferedBytes.addAndGet(-estimateSizeInBytes(completedPages));
+                    readSpilledPages(stripeOffset, completedPages);
+                    // collect the stripe's pages, already in page order, into a single list per column
+                    List<Pair<String, List<Object>>> columnValuesMap = new ArrayList<>(completedPages.size());
+                    for (Map.Entry<String, NavigableMap<Integer, List<Object>>> entry : completedPages.entrySet()) {
+                        int size = 0;
+                        for (List<Object> pageValues : entry.getValue().values()) {
+                            size += pageValues.size();
+                        }
+                        List<Object> columnValues = new ArrayList<>(size);
+                        for (List<Object> pageValues : entry.getValue().values()) {
+                            columnValues.addAll(pageValues);
+                        }
+                        // drop the page lists as soon as they are copied so only one copy of the stripe is alive
+                        entry.getValue().clear();
+                        columnValuesMap.add(new Pair<>(entry.getKey(), columnValues));
                     }
 
                     persistStripe(stripeOffset, columnValuesMap);
-                    indexPages.remove(stripeOffset);
                 }
                 else {
                     LOG.debug("All pages for offset %d have been received, but the values are missing. " +
@@ -145,6 +208,134 @@ public class FileIndexWriter
                 }
             }
         }
+        else if (bufferedBytes.get() > maxBufferedBytes) {
+            spill();
+        }
+    }
+
+    /**
+     * Spill the buffered pages of all incomplete stripes to local files, one file per stripe and spill
+     */
+    private void spill()
+            throws IOException
+    {
+        synchronized (spilledPages) {
+            // another thread may have spilled while this one was waiting
+            if (bufferedBytes.get() <= maxBufferedBytes) {
+                return;
+            }
+            if (spillPath == null) {
+                spillPath = createSpillDirectory();
+            }
+            spillCount++;
+
+            for (Map.Entry<Long, AtomicInteger> stripe : pageCountExpected.entrySet()) {
+                long stripeOffset = stripe.getKey();
+                synchronized (stripe.getValue()) {
+                    Map<String, NavigableMap<Integer, List<Object>>> stripePages = indexPages.remove(stripeOffset);
+                    if (stripePages == null) {
+                        continue;
+                    }
+                    Path spillFile = spillPath.resolve(stripeOffset + "." + spillCount);
+                    try (ObjectOutputStream output = new ObjectOutputStream(new BufferedOutputStream(Files.newOutputStream(spillFile)))) {
+                        output.writeObject(stripePages);
+                    }
+                    spilledPages.computeIfAbsent(stripeOffset, k -> new ArrayList<>()).add(spillFile);
+                    bufferedBytes.addAndGet(-estimateSizeInBytes(stripePages));
+                }
+            }
+            LOG.debug("Spilled buffered index values of %s to %s", dataSourceFileName, spillPath);
+        }
+    }
+
+    /**
+     * Merge the pages of a completed stripe that were spilled back into its remaining pages.
+     * Must be called while holding the stripe's lock.
+     */
+    @SuppressWarnings("unchecked")
+    private void readSpilledPages(long stripeOffset, Map<String, NavigableMap<Integer, List<Object>>> stripePages)
+            throws IOException
+    {
+        List<Path> spillFiles = spilledPages.remove(stripeOffset);
+        if (spillFiles == null) {
+            return;
+        }
+        for (Path spillFile : spillFiles) {
+            try (ObjectInputStream input = new ObjectInputStream(new BufferedInputStream(Files.newInputStream(spillFile)))) {
+                Map<String, NavigableMap<Integer, List<Object>>> spilled = (Map<String, NavigableMap<Integer, List<Object>>>) input.readObject();
+                for (Map.Entry<String, NavigableMap<Integer, List<Object>>> entry : spilled.entrySet()) {
+                    stripePages.computeIfAbsent(entry.getKey(), k -> new ConcurrentSkipListMap<>()).putAll(entry.getValue());
+                }
+            }
+            catch (ClassNotFoundException e) {
+                throw new IOException("Unable to read spilled index values from " + spillFile, e);
+            }
+            finally {
+                Files.deleteIfExists(spillFile);
+            }
+        }
+    }
+
+    /**
+     * Spill to one of the spiller spill paths if they are configured, otherwise to the temp directory
+     */
+    private Path createSpillDirectory()
+            throws IOException
+    {
+        List<String> spillPaths = new ArrayList<>();
+        if (PropertyService.containsProperty(HetuConstant.INDEX_WRITER_SPILL_PATHS)) {
+            for (String spillPath : PropertyService.getCommaSeparatedList(HetuConstant.INDEX_WRITER_SPILL_PATHS)) {
+                if (!spillPath.trim().isEmpty()) {
+                    spillPaths.add(spillPath.trim());
+                }
+            }
+        }
+        if (spillPaths.isEmpty()) {
+            return Files.createTempDirectory(SPILL_DIRECTORY_PREFIX);
+        }
+        // spread the writers of different files over the spill paths
+        Path spillRoot = Paths.get(spillPaths.get(Math.floorMod(dataSourceFileName.hashCode(), spillPaths.size())));
+        Files.createDirectories(spillRoot);
+        return Files.createTempDirectory(spillRoot, SPILL_DIRECTORY_PREFIX);
+    }
+
+    private static long estimateSizeInBytes(Map<String, NavigableMap<Integer, List<Object>>> stripePages)
+    {
+        long size = 0;
+        for (NavigableMap<Integer, List<Object>> pages : stripePages.values()) {
+            for (List<Object> pageValues : pages.values()) {
+                size += estimateSizeInBytes(pageValues);
+            }
+        }
+        return size;
+    }
+
+    private static long estimateSizeInBytes(List<Object> values)
+    {
+        long size = sizeOfObjectArray(values.size());
+        for (Object value : values) {
+            if (value instanceof String) {
+                size += STRING_INSTANCE_SIZE + sizeOfCharArray(((String) value).length());
+            }
+            else if (value != null) {
+                size += BOXED_VALUE_SIZE;
+            }
+        }
+        return size;
+    }
+
+    @VisibleForTesting
+    long getBufferedBytes()
+    {
+        return bufferedBytes.get();
+    }
+
+    @VisibleForTesting
+    int getSpillCount()
+    {
+        synchronized (spilledPages) {
+            return spillCount;
+        }
     }
 
     /**
@@ -174,6 +365,9 @@ public class FileIndexWriter
         for (Long offset : indexPages.keySet()) {
             LOG.error("Offset %d data is NOT PERSISTED. Current page count: %d. Check debug log.", offset, pageCountExpected.get(offset).get());
         }
+        for (Long offset : spilledPages.keySet()) {
+            LOG.error("Offset %d spilled data is NOT PERSISTED. Current page count: %d. Check debug log.", offset, pageCountExpected.get(offset).get());
+        }
         // Package index files for one File and write to remote filesystem
         String table = createIndexMetadata.getTableName();
         String column = createIndexMetadata.getIndexColumns().iterator().next().getFirst().toLowerCase(Locale.ENGLISH); // Support indexing on only one column for now
@@ -194,7 +388,34 @@ public class FileIndexWriter
             throw e;
         }
         finally {
-            LOCAL_FS_CLIENT.deleteRecursively(tmpPath);
+            deleteLocalFiles();
+        }
+    }
+
+    @Override
+    public void abort()
+            throws IOException
+    {
+        indexPages.clear();
+        bufferedBytes.set(0);
+        deleteLocalFiles();
+    }
+
+    private void deleteLocalFiles()
+            throws IOException
+    {
+        synchronized (this) {
+            if (tmpPath != null) {
+                LOCAL_FS_CLIENT.deleteRecursively(tmpPath);
+                tmpPath = null;
+            }
+        }
+        synchronized (spilledPages) {
+            spilledPages.clear();
+            if (spillPath != null) {
+                LOCAL_FS_CLIENT.deleteRecursively(spillPath);
+                spillPath = null;
+            }
         }
     }
 
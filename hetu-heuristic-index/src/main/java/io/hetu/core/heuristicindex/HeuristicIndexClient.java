@@ -32,6 +32,7 @@ import org.apache.commons.compress.archivers.ArchiveEntry;
 import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
 import org.apache.commons.io.input.CloseShieldInputStream;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.UncheckedIOException;
@@ -385,8 +386,16 @@ public class HeuristicIndexClient
             List<Path> paths = fs.walk(absolutePath).filter(p -> !fs.isDirectory(p)).collect(Collectors.toList());
             for (Path filePath : paths) {
                 BTreeIndex index = new BTreeIndex();
-                InputStream inputStream = fs.newInputStream(filePath);
-                index.deserialize(inputStream);
+                // index files on the local disk are mapped in place instead of being copied
+                Optional<File> localFile = fs.getLocalFile(filePath);
+                if (localFile.isPresent()) {
+                    index.deserialize(localFile.get());
+                }
+                else {
+                    try (InputStream inputStream = fs.newInputStream(filePath)) {
+                        index.deserialize(inputStream);
+                    }
+                }
                 IndexMetadata indexMetadata = new IndexMetadata(
                         index,
                         tableName,
@@ -48,6 +48,9 @@ import static io.prestosql.spi.heuristicindex.SerializationUtils.serializeStripe
 /**
  * Indexes which needs to be created at table or partition level
  * needs to use this writer. E.g. BTREE index.
+ * <p>
+ * Unlike {@link FileIndexWriter}, this writer doesn't spill: it only keeps the distinct values of the partition with
+ * the codes of their stripes, and the whole map is needed at once to build the index in {@link #persist()}.
  */
 public class PartitionIndexWriter
         implements IndexWriter
@@ -130,30 +133,21 @@ public class PartitionIndexWriter
             if (key != null) {
                 // key must be a Comparable<T extends Comparable<T>> to be inserted into btree
                 Comparable<? extends Comparable<?>> comparableKey = (Comparable<? extends Comparable<?>>) key;
-                String existing = dataMap.putIfAbsent(comparableKey, code);
-                if (existing != null) {
-                    // replace old string with new values added. e.g. "1,2,2" -> "1,2,2,3"
-                    // while loop used to allow concurrent modification.
-                    // THIS IS UGLY BUT IS THE WORKING SOLUTION TO SAVE MEMORY.
-                    // Tried to use collections like List[1,2,2,3] or Set[1,2,3] but both
-                    // crash node with too high memory usage.
-                    // TODO: Resolved memory issue in a more decent way
-                    String newData = getNewData(key, code);
-                    boolean done = dataMap.replace(comparableKey, existing, newData);
-                    while (!done) {
-                        existing = dataMap.get(key);
-                        newData = getNewData(key, code);
-                        done = dataMap.replace(comparableKey, existing, newData);
-                    }
-                }
+                // append the stripe code to the comma separated codes of the key, e.g. "1,2" -> "1,2,3".
+                // Strings are kept instead of collections like List[1,2,3] or Set[1,2,3], which
+                // crash the node with too high memory usage. Consecutive values of a page all come from the same
+                // stripe, so skipping a code that was just appended keeps the strings from growing with every duplicate row.
+                dataMap.merge(comparableKey, code, PartitionIndexWriter::appendCode);
             }
         }
     }
 
-    private String getNewData(Object key, String splitData)
+    private static String appendCode(String existing, String code)
     {
-        String output = dataMap.get(key);
-        return output + "," + splitData;
+        if (existing.equals(code) || (existing.endsWith(code) && existing.charAt(existing.length() - code.length() - 1) == ',')) {
+            return existing;
+        }
+        return existing + "," + code;
     }
 
     /**
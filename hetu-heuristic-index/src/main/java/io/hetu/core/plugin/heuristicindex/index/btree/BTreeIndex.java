@@ -36,8 +36,8 @@ import org.mapdb.DBException;
 import org.mapdb.DBMaker;
 import org.mapdb.Serializer;
 import org.xerial.snappy.SnappyInputStream;
-import org.xerial.snappy.SnappyOutputStream;
 
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -46,6 +46,7 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Enumeration;
@@ -75,6 +76,10 @@ public class BTreeIndex
     private static final long TERMINATE_LOOKUP_SIZE_THRESHOLD = 10000L;
     // when the lookup result's weight in dataMap is larger than this, not much values can be filtered so filtering is not worth
     private static final double TERMINATE_LOOKUP_WEIGHT_THRESHOLD = 0.1;
+    // header of the Snappy stream the indexes used to be wrapped in, the mapdb store is now persisted as is
+    private static final byte[] SNAPPY_STREAM_HEADER = {(byte) 0x82, 'S', 'N', 'A', 'P', 'P', 'Y', 0};
+    // estimated heap overhead of each symbol table entry, besides its strings
+    private static final long SYMBOL_TABLE_ENTRY_OVERHEAD = 64;
 
     protected Map<String, String> symbolTable;
     protected BTreeMap<Object, String> dataMap;
@@ -86,6 +91,9 @@ public class BTreeIndex
     protected Set<kotlin.Pair<? extends Comparable<?>, String>> source;
     protected String keyType;
     protected String valueType;
+    // set when the index file is memory-mapped in place, instead of being copied to dataDir
+    protected boolean readOnly;
+    protected long symbolTableSize;
 
     public BTreeIndex()
     {
@@ -106,11 +114,15 @@ public class BTreeIndex
     {
         if (!isDBCreated.get()) {
             try {
-                db = DBMaker
+                DBMaker.Maker maker = DBMaker
                         .fileDB(dataFile)
                         .fileMmapEnableIfSupported()
-                        .cleanerHackEnable()
-                        .make();
+                        .cleanerHackEnable();
+                if (readOnly) {
+                    // the same index file may be mapped by several loaded instances
+                    maker = maker.readOnly().fileLockDisable();
+                }
+                db = maker.make();
                 properties = db.treeMap("propertiesMap")
                         .keySerializer(Serializer.STRING)
                         .valueSerializer(Serializer.STRING)
@@ -159,8 +171,6 @@ public class BTreeIndex
                     .keySerializer(getSerializer(keyType))
                     .valueSerializer(new SnappyCompressionSerializer(getSerializer(valueType)))
                     .open();
-            properties.put(KEY_TYPE, keyType);
-            properties.put(VALUE_TYPE, valueType);
         }
     }
 
@@ -334,8 +344,9 @@ public class BTreeIndex
             db.close();
         }
 
-        try (InputStream inputStream = new FileInputStream(dataFile); SnappyOutputStream sout = new SnappyOutputStream(out)) {
-            IOUtils.copy(inputStream, sout);
+        // the values are already compressed one by one, so the paged mapdb store is persisted as is and can be mapped when loaded
+        try (InputStream inputStream = new FileInputStream(dataFile)) {
+            IOUtils.copy(inputStream, out);
         }
     }
 
@@ -343,15 +354,61 @@ public class BTreeIndex
     public Index deserialize(InputStream in)
             throws IOException
     {
+        InputStream input = in.markSupported() ? in : new BufferedInputStream(in);
         try (OutputStream out = new FileOutputStream(dataFile)) {
-            IOUtils.copy(new SnappyInputStream(in), out);
+            IOUtils.copy(isSnappyCompressed(input) ? new SnappyInputStream(input) : input, out);
         }
         setupDB();
+        loadSymbolTable();
+        return this;
+    }
+
+    /**
+     * Memory-maps the index file in place, so only the pages touched by lookups are read.
+     * Index files persisted in the older Snappy compressed format are still copied.
+     */
+    @Override
+    public Index deserialize(File file)
+            throws IOException
+    {
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+            if (isSnappyCompressed(in)) {
+                return deserialize(in);
+            }
+        }
+        dataFile = file;
+        readOnly = true;
+        setupDB();
+        loadSymbolTable();
+        return this;
+    }
+
+    private void loadSymbolTable()
+    {
         Properties properties = getProperties();
         if (properties.getProperty(PartitionIndexWriter.SYMBOL_TABLE_KEY_NAME) != null) {
             this.symbolTable = SerializationUtils.deserializeMap(properties.getProperty(PartitionIndexWriter.SYMBOL_TABLE_KEY_NAME), s -> s, s -> s);
+            this.symbolTableSize = symbolTable.entrySet().stream()
+                    .mapToLong(entry -> 2L * (entry.getKey().length() + entry.getValue().length()) + SYMBOL_TABLE_ENTRY_OVERHEAD)
+                    .sum();
         }
-        return this;
+    }
+
+    private static boolean isSnappyCompressed(InputStream in)
+            throws IOException
+    {
+        byte[] header = new byte[SNAPPY_STREAM_HEADER.length];
+        in.mark(header.length);
+        int read = IOUtils.readFully(in, header);
+        in.reset();
+        return read == header.length && Arrays.equals(header, SNAPPY_STREAM_HEADER);
+    }
+
+    @Override
+    public long getMemoryUsage()
+    {
+        // the data map pages are mapped and kept in the page cache by the OS, only the symbol table is on heap
+        return symbolTableSize;
     }
 
     @Override
@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hetu.core.heuristicindex;
+
+import io.hetu.core.common.filesystem.TempFolder;
+import io.hetu.core.filesystem.HetuLocalFileSystemClient;
+import io.hetu.core.filesystem.LocalConfig;
+import io.hetu.core.heuristicindex.util.IndexConstants;
+import io.hetu.core.plugin.heuristicindex.index.minmax.MinMaxIndex;
+import io.prestosql.spi.HetuConstant;
+import io.prestosql.spi.connector.CreateIndexMetadata;
+import io.prestosql.spi.filesystem.HetuFileSystemClient;
+import io.prestosql.spi.heuristicindex.Pair;
+import io.prestosql.spi.service.PropertyService;
+import io.prestosql.spi.type.Type;
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.stream.Stream;
+
+import static io.prestosql.spi.type.BigintType.BIGINT;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class TestFileIndexWriter
+{
+    private static final String TABLE = "catalog.schema.table";
+    private static final String COLUMN = "column";
+    private static final String DATA_FILE = "/warehouse/table/file1";
+    private static final String LAST_MODIFIED = "123456";
+
+    @Test
+    public void testBufferedStripe()
+            throws IOException, ClassNotFoundException
+    {
+        assertStripeIndexed(Long.MAX_VALUE, 0);
+    }
+
+    @Test
+    public void testSpilledStripe()
+            throws IOException, ClassNotFoundException
+    {
+        // each page of 10 boxed longs is estimated at about 200 bytes, so the first two pages
+        // exceed the limit and are spilled before the stripe is complete
+        assertStripeIndexed(300, 1);
+    }
+
+    @Test
+    public void testSpillUnderSpillPathsAndAbort()
+            throws IOException
+    {
+        try (TempFolder folder = new TempFolder()) {
+            folder.create();
+            Path root = folder.getRoot().toPath();
+            Path spillRoot = root.resolve("spill");
+            PropertyService.setProperty(HetuConstant.INDEX_WRITER_SPILL_PATHS, spillRoot.toString());
+            try {
+                HetuFileSystemClient fs = new HetuLocalFileSystemClient(new LocalConfig(new Properties()), root);
+                FileIndexWriter writer = new FileIndexWriter(createIndexMetadata(), createConnectorMetadata(0, 0), fs, root, 1);
+
+                writer.addData(createValues(0), createConnectorMetadata(0, 0));
+                writer.addData(createValues(10), createConnectorMetadata(0, 1));
+                assertEquals(writer.getSpillCount(), 2);
+                assertEquals(writer.getBufferedBytes(), 0);
+                try (Stream<Path> spillDirectories = Files.list(spillRoot)) {
+                    assertEquals(spillDirectories.count(), 1);
+                }
+
+                // the stripe never completes, e.g. because the query failed
+                writer.abort();
+                try (Stream<Path> spillDirectories = Files.list(spillRoot)) {
+                    assertEquals(spillDirectories.count(), 0);
+                }
+            }
+            finally {
+                PropertyService.setProperty(HetuConstant.INDEX_WRITER_SPILL_PATHS, "");
+            }
+        }
+    }
+
+    private static void assertStripeIndexed(long maxBufferedBytes, int expectedSpillCount)
+            throws IOException, ClassNotFoundException
+    {
+        try (TempFolder folder = new TempFolder()) {
+            folder.create();
+            Path root = folder.getRoot().toPath();
+            HetuFileSystemClient fs = new HetuLocalFileSystemClient(new LocalConfig(new Properties()), root);
+            FileIndexWriter writer = new FileIndexWriter(createIndexMetadata(), createConnectorMetadata(0, 0), fs, root, maxBufferedBytes);
+
+            writer.addData(createValues(0), createConnectorMetadata(0, 0));
+            writer.addData(createValues(10), createConnectorMetadata(0, 1));
+            Properties lastPage = createConnectorMetadata(0, 2);
+            lastPage.setProperty(HetuConstant.DATASOURCE_TOTAL_PAGES, "3");
+            writer.addData(createValues(20), lastPage);
+
+            assertEquals(writer.getSpillCount(), expectedSpillCount);
+            assertEquals(writer.getBufferedBytes(), 0);
+
+            writer.persist();
+            Path tarPath = Paths.get(root.toString(), TABLE, COLUMN, MinMaxIndex.ID, DATA_FILE, IndexConstants.LAST_MODIFIED_FILE_PREFIX + LAST_MODIFIED + ".tar");
+            assertTrue(Files.exists(tarPath));
+            try (TarArchiveInputStream tar = new TarArchiveInputStream(Files.newInputStream(tarPath))) {
+                ArchiveEntry entry = tar.getNextEntry();
+                assertEquals(entry.getName(), "0." + MinMaxIndex.ID);
+                // the minimum comes from a spilled page, the maximum from the page that completed the stripe
+                ObjectInputStream index = new ObjectInputStream(tar);
+                assertEquals(index.readObject(), 0L);
+                assertEquals(index.readObject(), 29L);
+            }
+        }
+    }
+
+    private static CreateIndexMetadata createIndexMetadata()
+    {
+        List<Pair<String, Type>> columns = Collections.singletonList(new Pair<>(COLUMN, BIGINT));
+        return new CreateIndexMetadata("idx",
+                TABLE,
+                MinMaxIndex.ID,
+                0L,
+                columns,
+                Collections.emptyList(),
+                new Properties(),
+                "testuser",
+                CreateIndexMetadata.Level.STRIPE);
+    }
+
+    private static Properties createConnectorMetadata(long stripeOffset, int pageNumber)
+    {
+        Properties connectorMetadata = new Properties();
+        connectorMetadata.setProperty(HetuConstant.DATASOURCE_FILE_PATH, DATA_FILE);
+        connectorMetadata.setProperty(HetuConstant.DATASOURCE_FILE_MODIFICATION, LAST_MODIFIED);
+        connectorMetadata.setProperty(HetuConstant.DATASOURCE_STRIPE_OFFSET, String.valueOf(stripeOffset));
+        connectorMetadata.setProperty(HetuConstant.DATASOURCE_PAGE_NUMBER, String.valueOf(pageNumber));
+        return connectorMetadata;
+    }
+
+    private static Map<String, List<Object>> createValues(long start)
+    {
+        List<Object> values = new ArrayList<>();
+        for (long value = start; value < start + 10; value++) {
+            values.add(value);
+        }
+        Map<String, List<Object>> columnValues = new HashMap<>();
+        columnValues.put(COLUMN, values);
+        return columnValues;
+    }
+}
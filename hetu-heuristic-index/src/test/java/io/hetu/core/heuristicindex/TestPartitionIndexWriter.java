@@ -75,6 +75,11 @@ public class TestPartitionIndexWriter
         Map<Comparable<? extends Comparable<?>>, String> result = indexWriter.getDataMap();
         assertEquals(10, result.size());
         assertEquals(1, indexWriter.getSymbolTable().size());
+
+        // values of the same stripe added again are not recorded twice
+        indexWriter.addData(valuesMap, connectorMetadata);
+        assertEquals(10, result.size());
+        assertEquals("1", result.get("key0"));
     }
 
     @Test
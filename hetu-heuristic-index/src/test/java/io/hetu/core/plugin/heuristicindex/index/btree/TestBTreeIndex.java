@@ -22,12 +22,16 @@ import io.prestosql.spi.relation.ConstantExpression;
 import io.prestosql.spi.relation.RowExpression;
 import io.prestosql.spi.relation.SpecialForm;
 import io.prestosql.spi.relation.VariableReferenceExpression;
+import org.apache.commons.compress.utils.IOUtils;
 import org.testng.annotations.Test;
+import org.xerial.snappy.SnappyOutputStream;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -337,6 +341,66 @@ public class TestBTreeIndex
         index.close();
     }
 
+    @Test
+    public void testDeserializeMappedFile()
+            throws IOException, IndexLookUpException
+    {
+        BTreeIndex index = createLongKeyIndex();
+        File file = getFile();
+        index.serialize(new FileOutputStream(file));
+        BTreeIndex readIndex = new BTreeIndex();
+        readIndex.deserialize(file);
+        RowExpression comparisonExpression = simplePredicate(OperatorType.EQUAL, "dummyCol", BIGINT, 101L);
+        Iterator<String> result = readIndex.lookUp(comparisonExpression);
+        assertTrue(result.hasNext());
+        assertEquals("value1", result.next());
+        // the file is used in place
+        assertEquals(readIndex.getDiskUsage(), file.length());
+        readIndex.close();
+        assertTrue(file.exists());
+        index.close();
+    }
+
+    @Test
+    public void testDeserializeSnappyCompressedFile()
+            throws IOException, IndexLookUpException
+    {
+        BTreeIndex index = createLongKeyIndex();
+        File file = getFile();
+        index.serialize(new FileOutputStream(file));
+        // indexes used to be persisted as Snappy compressed streams
+        File compressedFile = getFile();
+        try (InputStream in = new FileInputStream(file); OutputStream out = new SnappyOutputStream(new FileOutputStream(compressedFile))) {
+            IOUtils.copy(in, out);
+        }
+
+        BTreeIndex readIndex = new BTreeIndex();
+        readIndex.deserialize(compressedFile);
+        RowExpression comparisonExpression = simplePredicate(OperatorType.EQUAL, "dummyCol", BIGINT, 150L);
+        Iterator<String> result = readIndex.lookUp(comparisonExpression);
+        assertTrue(result.hasNext());
+        assertEquals("value50", result.next());
+
+        BTreeIndex streamIndex = new BTreeIndex();
+        streamIndex.deserialize(new FileInputStream(compressedFile));
+        assertTrue(streamIndex.matches(comparisonExpression));
+        readIndex.close();
+        streamIndex.close();
+        index.close();
+    }
+
+    private BTreeIndex createLongKeyIndex()
+            throws IOException
+    {
+        BTreeIndex index = new BTreeIndex();
+        List<Pair> pairs = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            pairs.add(new Pair(Long.valueOf(100 + i), "value" + i));
+        }
+        index.addKeyValues(Collections.singletonList(new Pair("dummyCol", pairs)));
+        return index;
+    }
+
     private File getFile()
             throws IOException
     {
@@ -124,6 +124,17 @@ public class EncryptedStateMap<K, V extends Serializable>
         return (V) cipherService.decrypt((String) originalValue);
     }
 
+    @Override
+    public boolean replace(K key, V oldValue, V newValue)
+    {
+        // the same value may be encrypted differently, so compare the decrypted value and replace the stored encrypted one
+        String encryptedValue = (String) encryptedValues.get(key);
+        if (encryptedValue == null || !oldValue.equals(cipherService.decrypt(encryptedValue))) {
+            return false;
+        }
+        return encryptedValues.replace(key, encryptedValue, cipherService.encrypt(newValue));
+    }
+
     @Override
     public boolean containsKey(K key)
     {
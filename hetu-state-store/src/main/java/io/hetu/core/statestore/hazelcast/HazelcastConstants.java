@@ -14,6 +14,10 @@
  */
 package io.hetu.core.statestore.hazelcast;
 
+import com.google.common.collect.ImmutableSet;
+
+import java.util.Set;
+
 public final class HazelcastConstants
 {
     /**
@@ -137,6 +141,31 @@ public final class HazelcastConstants
      */
     public static final String HEARTBEAT_TIMEOUT_SECONDS = "hazelcast.heartbeat.timeout.seconds";
 
+    /**
+     * Comma separated names of the read-mostly state maps cached locally on each member and client
+     */
+    public static final String NEAR_CACHE_MAPS = "hazelcast.near-cache.maps";
+
+    /**
+     * Maximum time in seconds an entry stays in a near-cache, 0 keeps it until it is invalidated or evicted
+     */
+    public static final String NEAR_CACHE_TIME_TO_LIVE_SECONDS = "hazelcast.near-cache.time-to-live-seconds";
+
+    /**
+     * Maximum number of entries in the near-cache of one state map
+     */
+    public static final String NEAR_CACHE_MAX_SIZE = "hazelcast.near-cache.max-size";
+
+    /**
+     * Default maximum number of entries in the near-cache of one state map
+     */
+    public static final int DEFAULT_NEAR_CACHE_MAX_SIZE = 10000;
+
+    /**
+     * State maps that are updated with compare-and-set and are never near-cached, a stale cached value would make every update fail
+     */
+    public static final Set<String> NEAR_CACHE_EXCLUDED_MAPS = ImmutableSet.of("resource-group-slots");
+
     private HazelcastConstants()
     {
     }
@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hetu.core.statestore.hazelcast;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.hazelcast.config.EvictionConfig;
+import com.hazelcast.config.EvictionPolicy;
+import com.hazelcast.config.InMemoryFormat;
+import com.hazelcast.config.MaxSizePolicy;
+import com.hazelcast.config.NearCacheConfig;
+import io.airlift.log.Logger;
+import io.prestosql.spi.PrestoException;
+
+import java.util.List;
+import java.util.Map;
+
+import static io.hetu.core.statestore.hazelcast.HazelcastConstants.DEFAULT_NEAR_CACHE_MAX_SIZE;
+import static io.hetu.core.statestore.hazelcast.HazelcastConstants.NEAR_CACHE_EXCLUDED_MAPS;
+import static io.hetu.core.statestore.hazelcast.HazelcastConstants.NEAR_CACHE_MAPS;
+import static io.hetu.core.statestore.hazelcast.HazelcastConstants.NEAR_CACHE_MAX_SIZE;
+import static io.hetu.core.statestore.hazelcast.HazelcastConstants.NEAR_CACHE_TIME_TO_LIVE_SECONDS;
+import static io.prestosql.spi.StandardErrorCode.CONFIGURATION_INVALID;
+
+/**
+ * Near-cache configs of the Hazelcast state maps, shared by state store members and clients
+ *
+ * @since 2020-03-06
+ */
+public final class HazelcastNearCacheConfigs
+{
+    private static final Logger log = Logger.get(HazelcastNearCacheConfigs.class);
+
+    private HazelcastNearCacheConfigs()
+    {
+    }
+
+    /**
+     * Create the near-cache configs of the state maps listed in {@code hazelcast.near-cache.maps}.
+     * Cached entries are invalidated whenever the entry changes in the cluster,
+     * so a read only goes to the cluster after an update or an eviction.
+     * Maps in {@link HazelcastConstants#NEAR_CACHE_EXCLUDED_MAPS} are skipped
+     *
+     * @param properties state store properties
+     * @return near-cache configs, empty if no state map is configured to be cached
+     */
+    public static List<NearCacheConfig> getNearCacheConfigs(Map<String, String> properties)
+    {
+        String maps = properties.get(NEAR_CACHE_MAPS);
+        if (maps == null || maps.trim().isEmpty()) {
+            return ImmutableList.of();
+        }
+
+        int timeToLiveSeconds = getNonNegativeInt(properties, NEAR_CACHE_TIME_TO_LIVE_SECONDS, 0);
+        int maxSize = getNonNegativeInt(properties, NEAR_CACHE_MAX_SIZE, DEFAULT_NEAR_CACHE_MAX_SIZE);
+
+        ImmutableList.Builder<NearCacheConfig> configs = ImmutableList.builder();
+        for (String map : Splitter.on(',').trimResults().omitEmptyStrings().split(maps)) {
+            if (NEAR_CACHE_EXCLUDED_MAPS.contains(map)) {
+                log.warn("State map %s is updated with compare-and-set and is not near-cached", map);
+                continue;
+            }
+            EvictionConfig evictionConfig = new EvictionConfig()
+                    .setEvictionPolicy(EvictionPolicy.LRU)
+                    .setMaxSizePolicy(MaxSizePolicy.ENTRY_COUNT)
+                    .setSize(maxSize);
+            // values are kept serialized so that callers never share a mutable cached object
+            configs.add(new NearCacheConfig(map)
+                    .setInMemoryFormat(InMemoryFormat.BINARY)
+                    .setInvalidateOnChange(true)
+                    .setTimeToLiveSeconds(timeToLiveSeconds)
+                    .setEvictionConfig(evictionConfig));
+        }
+        return configs.build();
+    }
+
+    private static int getNonNegativeInt(Map<String, String> properties, String name, int defaultValue)
+    {
+        String value = properties.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            int result = Integer.parseInt(value.trim());
+            if (result >= 0) {
+                return result;
+            }
+        }
+        catch (NumberFormatException ignored) {
+            // reported below
+        }
+        throw new PrestoException(CONFIGURATION_INVALID, name + " should be a non-negative integer: " + value);
+    }
+}
@@ -28,6 +28,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Function;
 import java.util.stream.Stream;
 
@@ -108,13 +109,11 @@ public class HazelcastStateMap<K, V>
     @Override
     public void putAll(Map<K, V> map)
     {
-        Builder statesBuilder = ImmutableMap.builder();
-        map.forEach((key, value) -> statesBuilder.put(key, value));
-
-        Map states = statesBuilder.build();
-        if (map.size() == states.size()) {
-            hzMap.putAll(states);
+        if (map.isEmpty()) {
+            return;
         }
+        // entries are grouped by partition owner and sent in one operation per member
+        hzMap.putAll(ImmutableMap.copyOf(map));
     }
 
     @Override
@@ -126,7 +125,11 @@ public class HazelcastStateMap<K, V>
     @Override
     public void removeAll(Set<K> keys)
     {
-        keys.forEach(key -> hzMap.remove(key));
+        // send all the removals before waiting, so that the keys are removed in about one round trip
+        CompletableFuture<?>[] removals = keys.stream()
+                .map(key -> hzMap.removeAsync(key).toCompletableFuture())
+                .toArray(CompletableFuture[]::new);
+        CompletableFuture.allOf(removals).join();
     }
 
     @Override
@@ -138,6 +141,12 @@ public class HazelcastStateMap<K, V>
         return this.put(key, value);
     }
 
+    @Override
+    public boolean replace(K key, V oldValue, V newValue)
+    {
+        return hzMap.replace(key, oldValue, newValue);
+    }
+
     @Override
     public boolean containsKey(K key)
     {
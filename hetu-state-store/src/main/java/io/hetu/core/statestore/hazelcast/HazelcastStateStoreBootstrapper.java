@@ -120,6 +120,9 @@ public class HazelcastStateStoreBootstrapper
         // Set eviction rules
         hzConfig = setEvictionConfigs(hzConfig, MERGED_DYNAMIC_FILTERS);
 
+        // Set near-cache rules
+        hzConfig = setNearCacheConfigs(config, hzConfig);
+
         // Set discovery port
         hzConfig = setPortConfigs(config, hzConfig);
 
@@ -203,6 +206,14 @@ public class HazelcastStateStoreBootstrapper
         return hzConfig;
     }
 
+    private Config setNearCacheConfigs(Map<String, String> properties, Config config)
+    {
+        // getMapConfig keeps the eviction rules already added for the map
+        HazelcastNearCacheConfigs.getNearCacheConfigs(properties)
+                .forEach(nearCacheConfig -> config.getMapConfig(nearCacheConfig.getName()).setNearCacheConfig(nearCacheConfig));
+        return config;
+    }
+
     private Config setPortConfigs(Map<String, String> properties, Config config)
     {
         String port = properties.get(DISCOVERY_PORT_CONFIG_NAME);
@@ -129,6 +129,9 @@ public class HazelcastStateStoreFactory
 
         clientConfig.setClusterName(clusterId);
 
+        // Cache read-mostly state maps on the client, entries are invalidated when they change in the cluster
+        HazelcastNearCacheConfigs.getNearCacheConfigs(properties).forEach(clientConfig::addNearCacheConfig);
+
         // set security config
         if (Boolean.parseBoolean(properties.get(KERBEROS_ENABLED))) {
             KerberosConfig.setKerberosEnabled(true);
@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hetu.core.statestore.hazelcast;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.hazelcast.config.InMemoryFormat;
+import com.hazelcast.config.NearCacheConfig;
+import io.prestosql.spi.PrestoException;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static io.hetu.core.statestore.hazelcast.HazelcastConstants.DEFAULT_NEAR_CACHE_MAX_SIZE;
+import static io.hetu.core.statestore.hazelcast.HazelcastConstants.NEAR_CACHE_MAPS;
+import static io.hetu.core.statestore.hazelcast.HazelcastConstants.NEAR_CACHE_MAX_SIZE;
+import static io.hetu.core.statestore.hazelcast.HazelcastConstants.NEAR_CACHE_TIME_TO_LIVE_SECONDS;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Test for HazelcastNearCacheConfigs
+ *
+ * @since 2020-03-06
+ */
+public class TestHazelcastNearCacheConfigs
+{
+    @Test
+    public void testNoNearCache()
+    {
+        assertTrue(HazelcastNearCacheConfigs.getNearCacheConfigs(ImmutableMap.of()).isEmpty());
+        assertTrue(HazelcastNearCacheConfigs.getNearCacheConfigs(ImmutableMap.of(NEAR_CACHE_MAPS, " ")).isEmpty());
+    }
+
+    @Test
+    public void testNearCacheConfigs()
+    {
+        List<NearCacheConfig> configs = HazelcastNearCacheConfigs.getNearCacheConfigs(ImmutableMap.of(
+                NEAR_CACHE_MAPS, "split-cache-metadata-map, merged-dynamic-filters, resource-group-slots,",
+                NEAR_CACHE_TIME_TO_LIVE_SECONDS, "60"));
+
+        assertEquals(configs.stream().map(NearCacheConfig::getName).collect(Collectors.toList()),
+                ImmutableList.of("split-cache-metadata-map", "merged-dynamic-filters"));
+        for (NearCacheConfig config : configs) {
+            assertTrue(config.isInvalidateOnChange());
+            assertEquals(config.getInMemoryFormat(), InMemoryFormat.BINARY);
+            assertEquals(config.getTimeToLiveSeconds(), 60);
+            assertEquals(config.getEvictionConfig().getSize(), DEFAULT_NEAR_CACHE_MAX_SIZE);
+        }
+    }
+
+    @Test(expectedExceptions = PrestoException.class, expectedExceptionsMessageRegExp = "hazelcast.near-cache.max-size should be a non-negative integer: -1")
+    public void testInvalidMaxSize()
+    {
+        HazelcastNearCacheConfigs.getNearCacheConfigs(ImmutableMap.of(NEAR_CACHE_MAPS, "catalog", NEAR_CACHE_MAX_SIZE, "-1"));
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hetu.core.transport.execution.buffer;
+
+import com.google.common.annotations.VisibleForTesting;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+import java.util.Optional;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static io.hetu.core.transport.execution.buffer.PageCompressionCodec.LZ4;
+import static io.hetu.core.transport.execution.buffer.PageCompressionCodec.ZSTD;
+import static io.hetu.core.transport.execution.buffer.PagesSerde.MINIMUM_COMPRESSION_RATIO;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Chooses the compression codec for the pages of a single {@link PagesSerde}.
+ * <p>
+ * Every {@link #SAMPLE_INTERVAL}th page is compressed with all codecs, and the observed compression ratio and CPU time
+ * are kept as moving averages. Each codec is then scored by the estimated time to compress and transfer a byte
+ * over a network with the given bandwidth. A fast network favours no compression or LZ4, a slow one favours ZSTD.
+ * Since all pages of a serde have the same column types, the choice also adapts to the types being exchanged.
+ */
+@NotThreadSafe
+public class AdaptiveCompressionSelector
+{
+    @VisibleForTesting
+    static final int SAMPLE_INTERVAL = 32;
+    // Weight of a new observation in the moving averages
+    private static final double NEW_SAMPLE_WEIGHT = 0.2;
+
+    private final double networkNanosPerByte;
+    private final CodecStatistics lz4Statistics = new CodecStatistics();
+    private final CodecStatistics zstdStatistics = new CodecStatistics();
+    private long pageCount;
+
+    public AdaptiveCompressionSelector(long networkBandwidthBytesPerSecond)
+    {
+        checkArgument(networkBandwidthBytesPerSecond > 0, "networkBandwidthBytesPerSecond must be positive");
+        this.networkNanosPerByte = ((double) SECONDS.toNanos(1)) / networkBandwidthBytesPerSecond;
+    }
+
+    /**
+     * Called once per page. Returns true if the page should be compressed with all codecs and recorded.
+     */
+    public boolean shouldSample()
+    {
+        return pageCount++ % SAMPLE_INTERVAL == 0;
+    }
+
+    public void record(PageCompressionCodec codec, int uncompressedSize, int compressedSize, long compressionNanos)
+    {
+        checkArgument(uncompressedSize > 0, "uncompressedSize must be positive");
+        getStatistics(codec).add(((double) compressedSize) / uncompressedSize, ((double) compressionNanos) / uncompressedSize);
+    }
+
+    /**
+     * Returns the codec with the lowest estimated cost, or empty if sending the page uncompressed is cheapest.
+     */
+    public Optional<PageCompressionCodec> select()
+    {
+        double uncompressedCost = networkNanosPerByte;
+        double lz4Cost = lz4Statistics.getCost(networkNanosPerByte);
+        double zstdCost = zstdStatistics.getCost(networkNanosPerByte);
+        if (uncompressedCost <= lz4Cost && uncompressedCost <= zstdCost) {
+            return Optional.empty();
+        }
+        return Optional.of(lz4Cost <= zstdCost ? LZ4 : ZSTD);
+    }
+
+    private CodecStatistics getStatistics(PageCompressionCodec codec)
+    {
+        switch (codec) {
+            case LZ4:
+                return lz4Statistics;
+            case ZSTD:
+                return zstdStatistics;
+            default:
+                throw new IllegalArgumentException("Unsupported codec: " + codec);
+        }
+    }
+
+    private static class CodecStatistics
+    {
+        private boolean hasSamples;
+        private double compressionRatio;
+        private double nanosPerByte;
+
+        void add(double compressionRatio, double nanosPerByte)
+        {
+            if (!hasSamples) {
+                this.compressionRatio = compressionRatio;
+                this.nanosPerByte = nanosPerByte;
+                hasSamples = true;
+                return;
+            }
+            this.compressionRatio += NEW_SAMPLE_WEIGHT * (compressionRatio - this.compressionRatio);
+            this.nanosPerByte += NEW_SAMPLE_WEIGHT * (nanosPerByte - this.nanosPerByte);
+        }
+
+        double getCost(double networkNanosPerByte)
+        {
+            if (!hasSamples) {
+                return Double.POSITIVE_INFINITY;
+            }
+            // Pages that don't compress well enough are sent uncompressed, after spending the CPU time
+            double sentRatio = compressionRatio <= MINIMUM_COMPRESSION_RATIO ? compressionRatio : 1;
+            return nanosPerByte + sentRatio * networkNanosPerByte;
+        }
+    }
+}
@@ -13,8 +13,11 @@
  */
 package io.hetu.core.transport.execution.buffer;
 
+import com.google.common.collect.ImmutableList;
 import io.airlift.compress.Compressor;
 import io.airlift.compress.Decompressor;
+import io.airlift.compress.lz4.Lz4Compressor;
+import io.airlift.compress.lz4.Lz4Decompressor;
 import io.airlift.slice.DynamicSliceOutput;
 import io.airlift.slice.Slice;
 import io.airlift.slice.SliceOutput;
@@ -34,33 +37,77 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
 import static io.hetu.core.transport.execution.buffer.PageCodecMarker.COMPRESSED;
 import static io.hetu.core.transport.execution.buffer.PageCodecMarker.ENCRYPTED;
+import static io.hetu.core.transport.execution.buffer.PageCodecMarker.LZ4_COMPRESSED;
+import static io.hetu.core.transport.execution.buffer.PageCompressionCodec.LZ4;
+import static io.hetu.core.transport.execution.buffer.PageCompressionCodec.ZSTD;
 import static io.hetu.core.transport.execution.buffer.PagesSerdeUtil.readRawPage;
 import static io.hetu.core.transport.execution.buffer.PagesSerdeUtil.writeRawPage;
 import static java.lang.Math.toIntExact;
 import static java.util.Objects.requireNonNull;
 import static sun.misc.Unsafe.ARRAY_BYTE_BASE_OFFSET;
 
+/**
+ * Serializes pages, optionally compressing and encrypting them.
+ * <p>
+ * Intermediate results of serialization, compression and encryption are kept in per-thread reusable buffers,
+ * so that only the final result of each page is allocated.
+ */
 @NotThreadSafe
 public class PagesSerde
         implements BlockEncodingSerdeProvider
 {
-    private static final double MINIMUM_COMPRESSION_RATIO = 0.8;
+    static final double MINIMUM_COMPRESSION_RATIO = 0.8;
+    private static final int INITIAL_BUFFER_SIZE = 4096;
+    // Don't keep buffers grown by exceptionally large pages. Regular pages are at most about 1MB.
+    private static final int MAX_RETAINED_BUFFER_SIZE = 2 * 1024 * 1024;
+    private static final ThreadLocal<Buffers> BUFFERS = ThreadLocal.withInitial(Buffers::new);
 
     private final BlockEncodingSerde blockEncodingSerde;
     private final Optional<Compressor> compressor;
     private final Optional<Decompressor> decompressor;
     private final Optional<SpillCipher> spillCipher;
+    private final Optional<AdaptiveCompressionSelector> compressionSelector;
+    private Compressor lz4Compressor;
+    private Decompressor lz4Decompressor;
 
     public PagesSerde(BlockEncodingSerde blockEncodingSerde, Optional<Compressor> compressor, Optional<Decompressor> decompressor, Optional<SpillCipher> spillCipher)
+    {
+        this(blockEncodingSerde, compressor, decompressor, spillCipher, Optional.empty());
+    }
+
+    /**
+     * With a compression selector, each page is compressed with either the given (default) compressor or LZ4,
+     * or not compressed at all, as chosen by the selector. LZ4 compressed pages are marked with {@link PageCodecMarker#LZ4_COMPRESSED}.
+     */
+    public PagesSerde(BlockEncodingSerde blockEncodingSerde, Optional<Compressor> compressor, Optional<Decompressor> decompressor, Optional<SpillCipher> spillCipher,
+            Optional<AdaptiveCompressionSelector> compressionSelector)
     {
         this.blockEncodingSerde = requireNonNull(blockEncodingSerde, "blockEncodingSerde is null");
         checkArgument(compressor.isPresent() == decompressor.isPresent(), "compressor and decompressor must both be present or both be absent");
         this.compressor = requireNonNull(compressor, "compressor is null");
         this.decompressor = requireNonNull(decompressor, "decompressor is null");
         this.spillCipher = requireNonNull(spillCipher, "spillCipher is null");
+        this.compressionSelector = requireNonNull(compressionSelector, "compressionSelector is null");
+        checkArgument(!compressionSelector.isPresent() || compressor.isPresent(), "compressionSelector requires a compressor");
     }
 
     public SerializedPage serialize(Page page)
+    {
+        if (page instanceof MarkerPage) {
+            return SerializedPage.forMarker((MarkerPage) page);
+        }
+        SerializedPage serializedPage = serializeImpl(page);
+        // The slice references reusable buffers. Copy it, so the returned page stays valid.
+        return new SerializedPage(Slices.copyOf(serializedPage.getSlice()), MarkerSet.fromByteValue(serializedPage.getPageCodecMarkers()),
+                serializedPage.getPositionCount(), serializedPage.getUncompressedSizeInBytes(), serializedPage.getPageMetadata());
+    }
+
+    /**
+     * Same as {@link #serialize(Page)}, except that the returned page may reference per-thread buffers,
+     * so it's only valid until the next page is serialized by the same thread. It should be written out right away,
+     * e.g. with {@link PagesSerdeUtil#writeSerializedPage}, which avoids copying the serialized data.
+     */
+    public SerializedPage serializeTransient(Page page)
     {
         if (page instanceof MarkerPage) {
             return SerializedPage.forMarker((MarkerPage) page);
@@ -78,46 +125,112 @@ public class PagesSerde
 
     private SerializedPage serializeImpl(Page page)
     {
-        SliceOutput serializationBuffer = new DynamicSliceOutput(toIntExact(page.getSizeInBytes() + Integer.BYTES)); // block length is an int
-        writeRawPage(page, serializationBuffer, blockEncodingSerde);
-        Slice slice = serializationBuffer.slice();
-        int uncompressedSize = serializationBuffer.size();
+        Buffers buffers = BUFFERS.get();
+        SliceOutput output = buffers.getSerializationBuffer(toIntExact(page.getSizeInBytes() + Integer.BYTES)); // block length is an int
+        writeRawPage(page, output, blockEncodingSerde);
+        Slice slice = output.slice();
+        int uncompressedSize = output.size();
         MarkerSet markers = MarkerSet.empty();
 
-        if (compressor.isPresent()) {
-            byte[] compressed = new byte[compressor.get().maxCompressedLength(uncompressedSize)];
-            int compressedSize = compressor.get().compress(
-                    (byte[]) slice.getBase(),
-                    (int) (slice.getAddress() - ARRAY_BYTE_BASE_OFFSET),
-                    uncompressedSize,
-                    compressed,
-                    0,
-                    compressed.length);
+        Optional<Compressor> pageCompressor = compressor;
+        if (compressionSelector.isPresent() && uncompressedSize > 0) {
+            pageCompressor = selectCompressor(slice, buffers);
+        }
+
+        if (pageCompressor.isPresent()) {
+            byte[] compressionBuffer = buffers.getCompressionBuffer(pageCompressor.get().maxCompressedLength(uncompressedSize));
+            long start = System.nanoTime();
+            int compressedSize = compress(pageCompressor.get(), slice, compressionBuffer);
+            if (compressionSelector.isPresent() && uncompressedSize > 0) {
+                compressionSelector.get().record(getCodec(pageCompressor.get()), uncompressedSize, compressedSize, System.nanoTime() - start);
+            }
 
             if ((((double) compressedSize) / uncompressedSize) <= MINIMUM_COMPRESSION_RATIO) {
-                slice = Slices.wrappedBuffer(compressed, 0, compressedSize);
+                slice = Slices.wrappedBuffer(compressionBuffer, 0, compressedSize);
                 markers.add(COMPRESSED);
+                if (pageCompressor.get() instanceof Lz4Compressor) {
+                    markers.add(LZ4_COMPRESSED);
+                }
             }
         }
 
         if (spillCipher.isPresent()) {
-            byte[] encrypted = new byte[spillCipher.get().encryptedMaxLength(slice.length())];
+            byte[] encryptionBuffer = buffers.getEncryptionBuffer(spillCipher.get().encryptedMaxLength(slice.length()));
             int encryptedSize = spillCipher.get().encrypt(
                     (byte[]) slice.getBase(),
                     (int) (slice.getAddress() - ARRAY_BYTE_BASE_OFFSET),
                     slice.length(),
-                    encrypted,
+                    encryptionBuffer,
                     0);
 
-            slice = Slices.wrappedBuffer(encrypted, 0, encryptedSize);
+            slice = Slices.wrappedBuffer(encryptionBuffer, 0, encryptedSize);
             markers.add(ENCRYPTED);
         }
 
-        if (!slice.isCompact()) {
-            slice = Slices.copyOf(slice);
+        return new SerializedPage(slice, markers, page.getPositionCount(), uncompressedSize, page.getPageMetadata());
+    }
+
+    private Optional<Compressor> selectCompressor(Slice slice, Buffers buffers)
+    {
+        AdaptiveCompressionSelector selector = compressionSelector.get();
+        if (selector.shouldSample()) {
+            // Try both codecs on this page. The selected one is recorded again when the page is actually compressed.
+            for (Compressor candidate : ImmutableList.of(compressor.get(), getLz4Compressor())) {
+                byte[] compressionBuffer = buffers.getCompressionBuffer(candidate.maxCompressedLength(slice.length()));
+                long start = System.nanoTime();
+                int compressedSize = compress(candidate, slice, compressionBuffer);
+                selector.record(getCodec(candidate), slice.length(), compressedSize, System.nanoTime() - start);
+            }
         }
 
-        return new SerializedPage(slice, markers, page.getPositionCount(), uncompressedSize, page.getPageMetadata());
+        Optional<PageCompressionCodec> codec = selector.select();
+        if (!codec.isPresent()) {
+            return Optional.empty();
+        }
+        return Optional.of(codec.get() == LZ4 ? getLz4Compressor() : compressor.get());
+    }
+
+    private static int compress(Compressor compressor, Slice slice, byte[] compressionBuffer)
+    {
+        return compressor.compress(
+                (byte[]) slice.getBase(),
+                (int) (slice.getAddress() - ARRAY_BYTE_BASE_OFFSET),
+                slice.length(),
+                compressionBuffer,
+                0,
+                compressionBuffer.length);
+    }
+
+    private static PageCompressionCodec getCodec(Compressor compressor)
+    {
+        return compressor instanceof Lz4Compressor ? LZ4 : ZSTD;
+    }
+
+    private Compressor getLz4Compressor()
+    {
+        if (compressor.isPresent() && compressor.get() instanceof Lz4Compressor) {
+            return compressor.get();
+        }
+        if (lz4Compressor == null) {
+            lz4Compressor = new Lz4Compressor();
+        }
+        return lz4Compressor;
+    }
+
+    private Decompressor getDecompressor(SerializedPage serializedPage)
+    {
+        // LZ4 pages can be decoded whichever codec this serde was configured with
+        if (serializedPage.isLz4Compressed()) {
+            if (decompressor.isPresent() && decompressor.get() instanceof Lz4Decompressor) {
+                return decompressor.get();
+            }
+            if (lz4Decompressor == null) {
+                lz4Decompressor = new Lz4Decompressor();
+            }
+            return lz4Decompressor;
+        }
+        checkState(decompressor.isPresent(), "Page is compressed, but decompressor is missing");
+        return decompressor.get();
     }
 
     private Page deserializeImpl(SerializedPage serializedPage)
@@ -129,7 +242,15 @@ public class PagesSerde
         if (serializedPage.isEncrypted()) {
             checkState(spillCipher.isPresent(), "Page is encrypted, but spill cipher is missing");
 
-            byte[] decrypted = new byte[spillCipher.get().decryptedMaxLength(slice.length())];
+            int decryptedMaxLength = spillCipher.get().decryptedMaxLength(slice.length());
+            // Blocks reference the slice they are read from. The decrypted data can only go to a reusable buffer if it's decompressed afterwards.
+            byte[] decrypted;
+            if (serializedPage.isCompressed()) {
+                decrypted = BUFFERS.get().getDecryptionBuffer(decryptedMaxLength);
+            }
+            else {
+                decrypted = new byte[decryptedMaxLength];
+            }
             int decryptedSize = spillCipher.get().decrypt(
                     (byte[]) slice.getBase(),
                     (int) (slice.getAddress() - ARRAY_BYTE_BASE_OFFSET),
@@ -141,11 +262,10 @@ public class PagesSerde
         }
 
         if (serializedPage.isCompressed()) {
-            checkState(decompressor.isPresent(), "Page is compressed, but decompressor is missing");
-
+            // Decompress directly into the memory that deserialized blocks will reference
             int uncompressedSize = serializedPage.getUncompressedSizeInBytes();
             byte[] decompressed = new byte[uncompressedSize];
-            checkState(decompressor.get().decompress(
+            checkState(getDecompressor(serializedPage).decompress(
                     (byte[]) slice.getBase(),
                     (int) (slice.getAddress() - ARRAY_BYTE_BASE_OFFSET),
                     slice.length(),
@@ -164,4 +284,48 @@ public class PagesSerde
     {
         return blockEncodingSerde;
     }
+
+    private static class Buffers
+    {
+        private DynamicSliceOutput serializationBuffer;
+        private byte[] compressionBuffer;
+        private byte[] encryptionBuffer;
+        private byte[] decryptionBuffer;
+
+        SliceOutput getSerializationBuffer(int expectedSize)
+        {
+            if (serializationBuffer == null || serializationBuffer.getRetainedSize() > MAX_RETAINED_BUFFER_SIZE) {
+                serializationBuffer = new DynamicSliceOutput(Math.max(INITIAL_BUFFER_SIZE, Math.min(expectedSize, MAX_RETAINED_BUFFER_SIZE)));
+            }
+            serializationBuffer.reset();
+            return serializationBuffer;
+        }
+
+        byte[] getCompressionBuffer(int capacity)
+        {
+            compressionBuffer = ensureCapacity(compressionBuffer, capacity);
+            return compressionBuffer;
+        }
+
+        byte[] getEncryptionBuffer(int capacity)
+        {
+            encryptionBuffer = ensureCapacity(encryptionBuffer, capacity);
+            return encryptionBuffer;
+        }
+
+        byte[] getDecryptionBuffer(int capacity)
+        {
+            decryptionBuffer = ensureCapacity(decryptionBuffer, capacity);
+            return decryptionBuffer;
+        }
+
+        private static byte[] ensureCapacity(byte[] buffer, int capacity)
+        {
+            // Also replace buffers that are over the retained limit and larger than needed
+            if (buffer == null || buffer.length < capacity || buffer.length > Math.max(capacity, MAX_RETAINED_BUFFER_SIZE)) {
+                return new byte[capacity];
+            }
+            return buffer;
+        }
+    }
 }
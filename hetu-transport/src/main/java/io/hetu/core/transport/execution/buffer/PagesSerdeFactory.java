@@ -13,6 +13,8 @@
  */
 package io.hetu.core.transport.execution.buffer;
 
+import io.airlift.compress.lz4.Lz4Compressor;
+import io.airlift.compress.lz4.Lz4Decompressor;
 import io.airlift.compress.zstd.ZstdCompressor;
 import io.airlift.compress.zstd.ZstdDecompressor;
 import io.prestosql.spi.block.BlockEncodingSerde;
@@ -20,17 +22,35 @@ import io.prestosql.spi.spiller.SpillCipher;
 
 import java.util.Optional;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static java.util.Objects.requireNonNull;
 
 public class PagesSerdeFactory
 {
+    // Used by the adaptive codec when no bandwidth is given, about 1Gbps
+    private static final long DEFAULT_NETWORK_BANDWIDTH = 125_000_000;
+
     private final BlockEncodingSerde blockEncodingSerde;
     private final boolean compressionEnabled;
+    private final PageCompressionCodec compressionCodec;
+    private final long networkBandwidthBytesPerSecond;
 
     public PagesSerdeFactory(BlockEncodingSerde blockEncodingSerde, boolean compressionEnabled)
+    {
+        this(blockEncodingSerde, compressionEnabled, PageCompressionCodec.ZSTD, DEFAULT_NETWORK_BANDWIDTH);
+    }
+
+    /**
+     * @param networkBandwidthBytesPerSecond expected network bandwidth, used by {@link PageCompressionCodec#ADAPTIVE}
+     * to weigh compression CPU time against transfer time
+     */
+    public PagesSerdeFactory(BlockEncodingSerde blockEncodingSerde, boolean compressionEnabled, PageCompressionCodec compressionCodec, long networkBandwidthBytesPerSecond)
     {
         this.blockEncodingSerde = requireNonNull(blockEncodingSerde, "blockEncodingSerde is null");
         this.compressionEnabled = compressionEnabled;
+        this.compressionCodec = requireNonNull(compressionCodec, "compressionCodec is null");
+        checkArgument(networkBandwidthBytesPerSecond > 0, "networkBandwidthBytesPerSecond must be positive");
+        this.networkBandwidthBytesPerSecond = networkBandwidthBytesPerSecond;
     }
 
     public PagesSerde createPagesSerde()
@@ -46,7 +66,17 @@ public class PagesSerdeFactory
     private PagesSerde createPagesSerdeInternal(Optional<SpillCipher> spillCipher)
     {
         if (compressionEnabled) {
-            return new PagesSerde(blockEncodingSerde, Optional.of(new ZstdCompressor()), Optional.of(new ZstdDecompressor()), spillCipher);
+            switch (compressionCodec) {
+                case ZSTD:
+                    return new PagesSerde(blockEncodingSerde, Optional.of(new ZstdCompressor()), Optional.of(new ZstdDecompressor()), spillCipher);
+                case LZ4:
+                    return new PagesSerde(blockEncodingSerde, Optional.of(new Lz4Compressor()), Optional.of(new Lz4Decompressor()), spillCipher);
+                case ADAPTIVE:
+                    return new PagesSerde(blockEncodingSerde, Optional.of(new ZstdCompressor()), Optional.of(new ZstdDecompressor()), spillCipher,
+                            Optional.of(new AdaptiveCompressionSelector(networkBandwidthBytesPerSecond)));
+                default:
+                    throw new IllegalArgumentException("Unsupported compression codec: " + compressionCodec);
+            }
         }
 
         return new PagesSerde(blockEncodingSerde, Optional.empty(), Optional.empty(), spillCipher);
@@ -92,7 +92,7 @@ public class PagesSerdeUtil
         }
     }
 
-    private static SerializedPage readSerializedPage(SliceInput sliceInput)
+    public static SerializedPage readSerializedPage(SliceInput sliceInput)
     {
         int positionCount = sliceInput.readInt();
         PageCodecMarker.MarkerSet markers = PageCodecMarker.MarkerSet.fromByteValue(sliceInput.readByte());
@@ -139,7 +139,7 @@ public class PagesSerdeUtil
         long size = 0;
         while (pages.hasNext()) {
             Page page = pages.next();
-            writeSerializedPage(sliceOutput, serde.serialize(page));
+            writeSerializedPage(sliceOutput, serde.serializeTransient(page));
             size += page.getSizeInBytes();
         }
         return size;
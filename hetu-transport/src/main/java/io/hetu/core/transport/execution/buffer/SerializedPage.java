@@ -30,6 +30,7 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
 import static io.hetu.core.transport.execution.buffer.PageCodecMarker.COMPRESSED;
 import static io.hetu.core.transport.execution.buffer.PageCodecMarker.ENCRYPTED;
+import static io.hetu.core.transport.execution.buffer.PageCodecMarker.LZ4_COMPRESSED;
 import static io.hetu.core.transport.execution.buffer.PageCodecMarker.MARKER_PAGE;
 import static io.hetu.core.transport.execution.buffer.PageCodecMarker.MarkerSet.fromByteValue;
 import static java.util.Objects.requireNonNull;
@@ -144,6 +145,11 @@ public class SerializedPage
         return COMPRESSED.isSet(pageCodecMarkers);
     }
 
+    public boolean isLz4Compressed()
+    {
+        return isCompressed() && LZ4_COMPRESSED.isSet(pageCodecMarkers);
+    }
+
     public boolean isEncrypted()
     {
         return ENCRYPTED.isSet(pageCodecMarkers);
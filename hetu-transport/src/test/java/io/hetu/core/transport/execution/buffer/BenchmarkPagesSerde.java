@@ -0,0 +1,212 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.hetu.core.transport.execution.buffer;
+
+import io.airlift.compress.lz4.Lz4Compressor;
+import io.airlift.compress.lz4.Lz4Decompressor;
+import io.airlift.compress.zstd.ZstdCompressor;
+import io.airlift.compress.zstd.ZstdDecompressor;
+import io.airlift.slice.DynamicSliceOutput;
+import io.airlift.slice.SliceInput;
+import io.airlift.slice.SliceOutput;
+import io.prestosql.spi.Page;
+import io.prestosql.spi.block.Block;
+import io.prestosql.spi.block.BlockBuilder;
+import io.prestosql.spi.block.BlockEncoding;
+import io.prestosql.spi.block.BlockEncodingSerde;
+import io.prestosql.spi.block.LongArrayBlock;
+import io.prestosql.spi.block.LongArrayBlockEncoding;
+import io.prestosql.spi.block.VariableWidthBlockEncoding;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.VerboseMode;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static io.prestosql.spi.type.VarcharType.VARCHAR;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Measures pages per second of PagesSerde. Run with the GC profiler (as in main) to see the allocation rate.
+ */
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(2)
+@Warmup(iterations = 10, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 10, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+public class BenchmarkPagesSerde
+{
+    private static final int PAGE_COUNT = 100;
+    private static final int POSITIONS_PER_PAGE = 1024;
+
+    @Benchmark
+    @OperationsPerInvocation(PAGE_COUNT)
+    public void serialize(BenchmarkData data, Blackhole blackhole)
+    {
+        for (Page page : data.pages) {
+            blackhole.consume(data.serde.serialize(page));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAGE_COUNT)
+    public Object serializeToOutput(BenchmarkData data)
+    {
+        SliceOutput output = data.output;
+        output.reset();
+        return PagesSerdeUtil.writePages(data.serde, output, data.pages);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAGE_COUNT)
+    public void deserialize(BenchmarkData data, Blackhole blackhole)
+    {
+        for (SerializedPage page : data.serializedPages) {
+            blackhole.consume(data.serde.deserialize(page));
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class BenchmarkData
+    {
+        @Param({"NONE", "LZ4", "ZSTD"})
+        private String compression = "LZ4";
+
+        private PagesSerde serde;
+        private Page[] pages;
+        private SerializedPage[] serializedPages;
+        private SliceOutput output;
+
+        @Setup
+        public void setup()
+        {
+            BlockEncodingSerde blockEncodingSerde = new BenchmarkBlockEncodingSerde();
+            switch (compression) {
+                case "NONE":
+                    serde = new PagesSerde(blockEncodingSerde, Optional.empty(), Optional.empty(), Optional.empty());
+                    break;
+                case "LZ4":
+                    serde = new PagesSerde(blockEncodingSerde, Optional.of(new Lz4Compressor()), Optional.of(new Lz4Decompressor()), Optional.empty());
+                    break;
+                case "ZSTD":
+                    serde = new PagesSerde(blockEncodingSerde, Optional.of(new ZstdCompressor()), Optional.of(new ZstdDecompressor()), Optional.empty());
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unsupported compression: " + compression);
+            }
+
+            Random random = new Random(0);
+            pages = new Page[PAGE_COUNT];
+            serializedPages = new SerializedPage[PAGE_COUNT];
+            for (int i = 0; i < PAGE_COUNT; i++) {
+                pages[i] = createPage(random);
+                serializedPages[i] = serde.serialize(pages[i]);
+            }
+            output = new DynamicSliceOutput(1024 * 1024);
+        }
+
+        private static Page createPage(Random random)
+        {
+            long[] values = new long[POSITIONS_PER_PAGE];
+            BlockBuilder varcharBuilder = VARCHAR.createBlockBuilder(null, POSITIONS_PER_PAGE);
+            for (int position = 0; position < POSITIONS_PER_PAGE; position++) {
+                // Low cardinality values, so the pages are compressible
+                values[position] = random.nextInt(1000);
+                VARCHAR.writeString(varcharBuilder, "value-" + random.nextInt(100));
+            }
+            Block longBlock = new LongArrayBlock(POSITIONS_PER_PAGE, Optional.empty(), values);
+            return new Page(longBlock, varcharBuilder.build());
+        }
+    }
+
+    private static class BenchmarkBlockEncodingSerde
+            implements BlockEncodingSerde
+    {
+        private final Map<String, BlockEncoding> blockEncodings = new HashMap<>();
+
+        BenchmarkBlockEncodingSerde()
+        {
+            addBlockEncoding(new LongArrayBlockEncoding());
+            addBlockEncoding(new VariableWidthBlockEncoding());
+        }
+
+        private void addBlockEncoding(BlockEncoding blockEncoding)
+        {
+            blockEncodings.put(blockEncoding.getName(), blockEncoding);
+        }
+
+        @Override
+        public Block readBlock(SliceInput input)
+        {
+            byte[] name = new byte[input.readInt()];
+            input.readBytes(name);
+            return blockEncodings.get(new String(name, UTF_8)).readBlock(this, input);
+        }
+
+        @Override
+        public void writeBlock(SliceOutput output, Block block)
+        {
+            byte[] name = block.getEncodingName().getBytes(UTF_8);
+            output.writeInt(name.length);
+            output.writeBytes(name);
+            blockEncodings.get(block.getEncodingName()).writeBlock(this, output, block);
+        }
+    }
+
+    public static void main(String[] args)
+            throws RunnerException
+    {
+        // Sanity check that written pages can be read back
+        BenchmarkData data = new BenchmarkData();
+        data.setup();
+        new BenchmarkPagesSerde().serializeToOutput(data);
+        Iterator<Page> pages = PagesSerdeUtil.readPages(data.serde, data.output.slice().getInput());
+        int pageCount = 0;
+        while (pages.hasNext()) {
+            pages.next();
+            pageCount++;
+        }
+        if (pageCount != PAGE_COUNT) {
+            throw new IllegalStateException("Expected " + PAGE_COUNT + " pages, read " + pageCount);
+        }
+
+        Options options = new OptionsBuilder()
+                .verbosity(VerboseMode.NORMAL)
+                .include(".*" + BenchmarkPagesSerde.class.getSimpleName() + ".*")
+                .addProfiler(GCProfiler.class)
+                .build();
+
+        new Runner(options).run();
+    }
+}
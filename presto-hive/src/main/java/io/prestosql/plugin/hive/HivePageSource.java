@@ -31,12 +31,10 @@ import io.prestosql.spi.block.RunLengthEncodedBlock;
 import io.prestosql.spi.connector.ColumnHandle;
 import io.prestosql.spi.connector.ConnectorPageSource;
 import io.prestosql.spi.connector.ConnectorSession;
-import io.prestosql.spi.dynamicfilter.BloomFilterDynamicFilter;
 import io.prestosql.spi.dynamicfilter.DynamicFilter;
 import io.prestosql.spi.dynamicfilter.DynamicFilterSupplier;
 import io.prestosql.spi.type.Type;
 import io.prestosql.spi.type.TypeManager;
-import io.prestosql.spi.type.TypeUtils;
 import it.unimi.dsi.fastutil.ints.IntArrayList;
 import org.apache.hadoop.hive.serde2.typeinfo.TypeInfo;
 
@@ -328,32 +326,22 @@ public class HivePageSource
     private static boolean[] filterRows(List<Map<ColumnHandle, DynamicFilter>> dynamicFilters, Page page, List<Map<Integer, ColumnHandle>> eligibleColumns, Type[] types)
     {
         boolean[] result = new boolean[page.getPositionCount()];
-        Arrays.fill(result, Boolean.FALSE);
+        int[] selectedPositions = new int[page.getPositionCount()];
         // loop to handle union of filters if any
         for (int j = 0; j < eligibleColumns.size(); j++) {
-            boolean[] filterResult = new boolean[page.getPositionCount()];
-            Arrays.fill(filterResult, Boolean.TRUE);
+            for (int i = 0; i < selectedPositions.length; i++) {
+                selectedPositions[i] = i;
+            }
+            int positionCount = selectedPositions.length;
             for (Map.Entry<Integer, ColumnHandle> column : eligibleColumns.get(j).entrySet()) {
                 final int columnIndex = column.getKey();
-                final ColumnHandle columnHandle = column.getValue();
-                final DynamicFilter dynamicFilter = dynamicFilters.get(j).get(columnHandle);
+                final DynamicFilter dynamicFilter = dynamicFilters.get(j).get(column.getValue());
                 final Block block = page.getBlock(columnIndex).getLoadedBlock();
-                if (dynamicFilter instanceof BloomFilterDynamicFilter) {
-                    block.filter(((BloomFilterDynamicFilter) dynamicFilters.get(j).get(columnHandle)).getBloomFilterDeserialized(), filterResult);
-                }
-                else {
-                    for (int i = 0; i < block.getPositionCount(); i++) {
-                        filterResult[i] = filterResult[i] && dynamicFilter.contains(TypeUtils.readNativeValue(types[columnIndex], block, i));
-                    }
-                }
+                positionCount = dynamicFilter.filter(types[columnIndex], block, selectedPositions, positionCount);
             }
             // apply union of last filter
-            for (Map.Entry<Integer, ColumnHandle> column : eligibleColumns.get(j).entrySet()) {
-                final int columnIndex = column.getKey();
-                final Block block = page.getBlock(columnIndex).getLoadedBlock();
-                for (int i = 0; i < block.getPositionCount(); i++) {
-                    result[i] = result[i] || filterResult[i];
-                }
+            for (int i = 0; i < positionCount; i++) {
+                result[selectedPositions[i]] = true;
             }
         }
         return result;
@@ -16,6 +16,7 @@ package io.prestosql.plugin.hive;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.primitives.Primitives;
 import io.airlift.slice.Slice;
 import io.airlift.slice.Slices;
 import io.prestosql.plugin.hive.HiveBucketing.BucketingVersion;
@@ -36,6 +37,7 @@ import io.prestosql.spi.dynamicfilter.CombinedDynamicFilter;
 import io.prestosql.spi.dynamicfilter.DynamicFilter;
 import io.prestosql.spi.dynamicfilter.DynamicFilterSupplier;
 import io.prestosql.spi.dynamicfilter.FilteredDynamicFilter;
+import io.prestosql.spi.dynamicfilter.RangeDynamicFilter;
 import io.prestosql.spi.function.BuiltInFunctionHandle;
 import io.prestosql.spi.function.Signature;
 import io.prestosql.spi.heuristicindex.IndexMetadata;
@@ -388,6 +390,7 @@ public class HivePageSourceProvider
                     outputColumns,
                     effectivePredicate,
                     additionPredicates,
+                    dynamicFilterSupplier,
                     deleteDeltaLocations,
                     startRowOffsetOfFile,
                     indexes,
@@ -795,6 +798,11 @@ public class HivePageSourceProvider
             domain = modifyDomain(domain, ((FilteredDynamicFilter) dynamicFilter).getFilterExpression());
             return TupleDomain.withColumnDomains(ImmutableMap.of(hiveColumnHandle, domain));
         }
+        if (dynamicFilter instanceof RangeDynamicFilter && !dynamicFilter.isEmpty()
+                && Primitives.wrap(type.getJavaType()).isInstance(dynamicFilter.getMin())) {
+            Domain domain = Domain.create(ValueSet.ofRanges(Range.range(type, dynamicFilter.getMin(), true, dynamicFilter.getMax(), true)), false);
+            return TupleDomain.withColumnDomains(ImmutableMap.of(hiveColumnHandle, domain));
+        }
         return TupleDomain.all();
     }
 
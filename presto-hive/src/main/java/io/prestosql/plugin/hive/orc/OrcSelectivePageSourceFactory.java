@@ -17,6 +17,7 @@ import com.google.common.collect.ImmutableBiMap;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
+import com.google.common.primitives.Primitives;
 import io.airlift.units.DataSize;
 import io.prestosql.memory.context.AggregatedMemoryContext;
 import io.prestosql.orc.OrcCacheProperties;
@@ -47,12 +48,21 @@ import io.prestosql.plugin.hive.HiveUtil;
 import io.prestosql.plugin.hive.coercions.HiveCoercer;
 import io.prestosql.plugin.hive.orc.OrcPageSource.ColumnAdaptation;
 import io.prestosql.spi.PrestoException;
+import io.prestosql.spi.connector.ColumnHandle;
 import io.prestosql.spi.connector.ConnectorPageSource;
 import io.prestosql.spi.connector.ConnectorSession;
 import io.prestosql.spi.connector.FixedPageSource;
+import io.prestosql.spi.dynamicfilter.CombinedDynamicFilter;
+import io.prestosql.spi.dynamicfilter.DynamicFilter;
+import io.prestosql.spi.dynamicfilter.DynamicFilterSupplier;
+import io.prestosql.spi.dynamicfilter.FilteredDynamicFilter;
+import io.prestosql.spi.dynamicfilter.HashSetDynamicFilter;
+import io.prestosql.spi.dynamicfilter.RangeDynamicFilter;
 import io.prestosql.spi.heuristicindex.IndexMetadata;
 import io.prestosql.spi.predicate.Domain;
+import io.prestosql.spi.predicate.Range;
 import io.prestosql.spi.predicate.TupleDomain;
+import io.prestosql.spi.predicate.ValueSet;
 import io.prestosql.spi.type.RowType;
 import io.prestosql.spi.type.Type;
 import io.prestosql.spi.type.TypeManager;
@@ -82,6 +92,7 @@ import java.util.Properties;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
@@ -98,6 +109,7 @@ import static io.prestosql.plugin.hive.HiveErrorCode.HIVE_BAD_DATA;
 import static io.prestosql.plugin.hive.HiveErrorCode.HIVE_CANNOT_OPEN_SPLIT;
 import static io.prestosql.plugin.hive.HiveErrorCode.HIVE_FILE_MISSING_COLUMN_NAMES;
 import static io.prestosql.plugin.hive.HiveErrorCode.HIVE_MISSING_DATA;
+import static io.prestosql.plugin.hive.HiveSessionProperties.getDynamicFilteringRowFilteringThreshold;
 import static io.prestosql.plugin.hive.HiveSessionProperties.getOrcLazyReadSmallRanges;
 import static io.prestosql.plugin.hive.HiveSessionProperties.getOrcMaxBufferSize;
 import static io.prestosql.plugin.hive.HiveSessionProperties.getOrcMaxMergeDistance;
@@ -165,6 +177,7 @@ public class OrcSelectivePageSourceFactory
             List<Integer> outputColumns,
             TupleDomain<HiveColumnHandle> domainPredicate,
             Optional<List<TupleDomain<HiveColumnHandle>>> additionPredicates,
+            Optional<DynamicFilterSupplier> dynamicFilterSupplier,
             Optional<DeleteDeltaLocations> deleteDeltaLocations,
             Optional<Long> startRowOffsetOfFile,
             Optional<List<IndexMetadata>> indexes,
@@ -227,7 +240,8 @@ public class OrcSelectivePageSourceFactory
                     positions,
                     columnMappings,
                     coercers,
-                    dataSourceLastModifiedTime));
+                    dataSourceLastModifiedTime,
+                    dynamicFilterSupplier));
 
             /* Todo(Nitin): For Append Pattern
             appendPredicates.get().stream().forEach(newDomainPredicate ->
@@ -301,7 +315,8 @@ public class OrcSelectivePageSourceFactory
                 null,
                 columnMappings,
                 coercers,
-                dataSourceLastModifiedTime));
+                dataSourceLastModifiedTime,
+                dynamicFilterSupplier));
     }
 
     public static OrcSelectivePageSource createOrcPageSource(
@@ -337,7 +352,8 @@ public class OrcSelectivePageSourceFactory
             List<Integer> positions,
             List<HivePageSourceProvider.ColumnMapping> columnMappings,
             Map<Integer, HiveCoercer> coercers,
-            long dataSourceLastModifiedTime)
+            long dataSourceLastModifiedTime,
+            Optional<DynamicFilterSupplier> dynamicFilterSupplier)
     {
         checkArgument(!domainPredicate.isNone(), "Unexpected NONE domain");
         String sessionUser = session.getUser();
@@ -525,6 +541,18 @@ public class OrcSelectivePageSourceFactory
                     Maps.transformValues(coercers, Function.class::cast),
                     orDomains,
                     missingColumns);
+            if (dynamicFilterSupplier.isPresent()) {
+                // read the remaining stripes with the dynamic filters that arrive while the split is read
+                recordReader.setDynamicFilterDomains(
+                        new DynamicFilterDomains(
+                                dynamicFilterSupplier.get(),
+                                columns,
+                                coercers.keySet(),
+                                effectivePredicateDomains,
+                                typeManager,
+                                getDynamicFilteringRowFilteringThreshold(session)),
+                        orcBloomFiltersEnabled);
+            }
 
             OrcDeletedRows deletedRows = new OrcDeletedRows(
                     path.getName(),
@@ -577,6 +605,88 @@ public class OrcSelectivePageSourceFactory
         return tupleDomainFilterMap;
     }
 
+    /**
+     * Converts the dynamic filters of the columns read from the file into domains keyed by column index,
+     * intersected with the domains of the effective predicate, as the dynamic filters become available.
+     */
+    static class DynamicFilterDomains
+            implements Supplier<Map<Integer, Domain>>
+    {
+        private final DynamicFilterSupplier dynamicFilterSupplier;
+        private final Map<HiveColumnHandle, Type> columnTypes;
+        private final Map<HiveColumnHandle, Domain> effectivePredicateDomains;
+        private final int rowFilteringThreshold;
+        private final Map<Integer, Domain> domains = new HashMap<>();
+
+        DynamicFilterDomains(
+                DynamicFilterSupplier dynamicFilterSupplier,
+                List<HiveColumnHandle> columns,
+                Set<Integer> coercedColumns,
+                Map<HiveColumnHandle, Domain> effectivePredicateDomains,
+                TypeManager typeManager,
+                int rowFilteringThreshold)
+        {
+            this.dynamicFilterSupplier = requireNonNull(dynamicFilterSupplier, "dynamicFilterSupplier is null");
+            // partition keys are filtered with the splits, and filters of coerced columns are on the table type
+            this.columnTypes = columns.stream()
+                    .filter(column -> !column.isPartitionKey() && column.getHiveColumnIndex() >= 0 && !coercedColumns.contains(column.getHiveColumnIndex()))
+                    .collect(toImmutableMap(Function.identity(), column -> typeManager.getType(column.getTypeSignature())));
+            this.effectivePredicateDomains = requireNonNull(effectivePredicateDomains, "effectivePredicateDomains is null");
+            this.rowFilteringThreshold = rowFilteringThreshold;
+        }
+
+        @Override
+        public Map<Integer, Domain> get()
+        {
+            List<Map<ColumnHandle, DynamicFilter>> dynamicFilters = dynamicFilterSupplier.getDynamicFilters();
+            // dynamic filters of several groups are disjunctive, they can not be applied to each column
+            if (dynamicFilters.size() != 1) {
+                return domains;
+            }
+            for (Map.Entry<ColumnHandle, DynamicFilter> entry : dynamicFilters.get(0).entrySet()) {
+                HiveColumnHandle column = (HiveColumnHandle) entry.getKey();
+                Type type = columnTypes.get(column);
+                if (type == null || domains.containsKey(column.getHiveColumnIndex())) {
+                    continue;
+                }
+                toDomain(entry.getValue(), type).ifPresent(domain -> domains.put(
+                        column.getHiveColumnIndex(),
+                        effectivePredicateDomains.getOrDefault(column, Domain.all(type)).intersect(domain)));
+            }
+            return domains;
+        }
+
+        private Optional<Domain> toDomain(DynamicFilter dynamicFilter, Type type)
+        {
+            if (dynamicFilter instanceof CombinedDynamicFilter) {
+                return ((CombinedDynamicFilter) dynamicFilter).getFilters().stream()
+                        .map(filter -> toDomain(filter, type))
+                        .filter(Optional::isPresent)
+                        .map(Optional::get)
+                        .reduce(Domain::intersect);
+            }
+            Class<?> javaType = Primitives.wrap(type.getJavaType());
+            if (dynamicFilter instanceof RangeDynamicFilter) {
+                // the range also lets the stripes and row groups outside of it be skipped with their statistics
+                Object min = dynamicFilter.getMin();
+                Object max = dynamicFilter.getMax();
+                if (!javaType.isInstance(min) || !javaType.isInstance(max) || dynamicFilter.isEmpty()) {
+                    return Optional.empty();
+                }
+                return Optional.of(Domain.create(ValueSet.ofRanges(Range.range(type, min, true, max, true)), false));
+            }
+            // values of filtered dynamic filters are compared with a non-equality expression
+            if (!(dynamicFilter instanceof HashSetDynamicFilter) || dynamicFilter instanceof FilteredDynamicFilter) {
+                return Optional.empty();
+            }
+            Set<Object> values = ((HashSetDynamicFilter) dynamicFilter).getSetValues();
+            if (values.isEmpty() || values.size() > rowFilteringThreshold || !values.stream().allMatch(javaType::isInstance)) {
+                return Optional.empty();
+            }
+            return Optional.of(Domain.create(ValueSet.copyOf(type, values), false));
+        }
+    }
+
     interface FSDataInputStreamProvider
     {
         FSDataInputStream provide() throws IOException;
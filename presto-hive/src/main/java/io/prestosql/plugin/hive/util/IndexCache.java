@@ -86,8 +86,8 @@ public class IndexCache
                         int memorySize = 0;
                         for (IndexMetadata indexMetadata : indices) {
                             // HetuConstant.FILTER_CACHE_MAX_MEMORY is set in KBs
-                            // convert index size to KB
-                            memorySize += (indexMetadata.getIndex().getMemoryUsage() / KILOBYTE);
+                            // convert index size to KB, rounding up so that indexes mostly kept off heap still count
+                            memorySize += (indexMetadata.getIndex().getMemoryUsage() + KILOBYTE - 1) / KILOBYTE;
                         }
                         return memorySize;
                     });
@@ -55,6 +55,7 @@ import java.util.function.Supplier;
 import static io.airlift.testing.Assertions.assertGreaterThan;
 import static io.airlift.testing.Assertions.assertLessThanOrEqual;
 import static io.airlift.tpch.TpchTable.getTables;
+import static io.prestosql.SystemSessionProperties.DYNAMIC_FILTERING_TRANSPORT;
 import static io.prestosql.SystemSessionProperties.DYNAMIC_FILTERING_WAIT_TIME;
 import static io.prestosql.SystemSessionProperties.ENABLE_DYNAMIC_FILTERING;
 import static io.prestosql.SystemSessionProperties.JOIN_DISTRIBUTION_TYPE;
@@ -192,6 +193,31 @@ public class TestHiveDistributedJoinQueriesWithDynamicFiltering
         assertLessThanOrEqual(probeStats.getInputPositions(), countRows("lineitem"));
     }
 
+    @Test
+    public void testNonEquiJoinWithRemoteTaskTransport()
+    {
+        assertUpdate("CREATE TABLE test_non_equi_dynamic_filter WITH (partitioned_by = ARRAY['p']) AS " +
+                "SELECT custkey % 25 AS nationkey, orderkey % 5 AS p FROM orders", 15000);
+        try {
+            Session session = Session.builder(getSession())
+                    .setSystemProperty(JOIN_DISTRIBUTION_TYPE, FeaturesConfig.JoinDistributionType.BROADCAST.name())
+                    .setSystemProperty(DYNAMIC_FILTERING_TRANSPORT, FeaturesConfig.DynamicFilterTransport.REMOTE_TASK.name())
+                    .build();
+            Session withoutDynamicFiltering = Session.builder(getSession())
+                    .setSystemProperty(ENABLE_DYNAMIC_FILTERING, "false")
+                    .build();
+            // the local dynamic filter on the partition column is a range predicate, it must not prune the splits as a set of values
+            String query = "SELECT count(*) FROM test_non_equi_dynamic_filter t JOIN nation n " +
+                    "ON t.nationkey = n.nationkey AND t.p < n.regionkey WHERE n.regionkey = 3";
+            MaterializedResult expected = computeActual(withoutDynamicFiltering, query);
+            assertGreaterThan((Long) expected.getOnlyValue(), 0L);
+            assertEquals(computeActual(session, query).getOnlyValue(), expected.getOnlyValue());
+        }
+        finally {
+            assertUpdate("DROP TABLE test_non_equi_dynamic_filter");
+        }
+    }
+
     private OperatorStats searchScanFilterAndProjectOperatorStats(QueryId queryId, String tableName)
     {
         DistributedQueryRunner runner = (DistributedQueryRunner) getQueryRunner();
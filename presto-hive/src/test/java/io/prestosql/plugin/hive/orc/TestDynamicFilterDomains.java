@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.prestosql.plugin.hive.orc;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import io.prestosql.plugin.hive.HiveColumnHandle;
+import io.prestosql.plugin.hive.orc.OrcSelectivePageSourceFactory.DynamicFilterDomains;
+import io.prestosql.spi.connector.ColumnHandle;
+import io.prestosql.spi.dynamicfilter.CombinedDynamicFilter;
+import io.prestosql.spi.dynamicfilter.DynamicFilter;
+import io.prestosql.spi.dynamicfilter.DynamicFilterSupplier;
+import io.prestosql.spi.dynamicfilter.FilteredDynamicFilter;
+import io.prestosql.spi.dynamicfilter.HashSetDynamicFilter;
+import io.prestosql.spi.dynamicfilter.RangeDynamicFilter;
+import io.prestosql.spi.predicate.Domain;
+import io.prestosql.spi.predicate.Range;
+import io.prestosql.spi.predicate.ValueSet;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static io.prestosql.plugin.hive.HiveColumnHandle.ColumnType.PARTITION_KEY;
+import static io.prestosql.plugin.hive.HiveColumnHandle.ColumnType.REGULAR;
+import static io.prestosql.plugin.hive.HiveTestUtils.TYPE_MANAGER;
+import static io.prestosql.plugin.hive.HiveType.HIVE_LONG;
+import static io.prestosql.spi.dynamicfilter.DynamicFilter.Type.GLOBAL;
+import static io.prestosql.spi.type.BigintType.BIGINT;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class TestDynamicFilterDomains
+{
+    private static final HiveColumnHandle ID_COLUMN = new HiveColumnHandle("id", HIVE_LONG, HIVE_LONG.getTypeSignature(), 0, REGULAR, Optional.empty());
+    private static final HiveColumnHandle VALUE_COLUMN = new HiveColumnHandle("value", HIVE_LONG, HIVE_LONG.getTypeSignature(), 1, REGULAR, Optional.empty());
+    private static final HiveColumnHandle COERCED_COLUMN = new HiveColumnHandle("coerced", HIVE_LONG, HIVE_LONG.getTypeSignature(), 2, REGULAR, Optional.empty());
+    private static final HiveColumnHandle PARTITION_COLUMN = new HiveColumnHandle("pt", HIVE_LONG, HIVE_LONG.getTypeSignature(), -1, PARTITION_KEY, Optional.empty());
+    private static final List<HiveColumnHandle> COLUMNS = ImmutableList.of(ID_COLUMN, VALUE_COLUMN, COERCED_COLUMN, PARTITION_COLUMN);
+
+    @Test
+    public void testHashSetFilter()
+    {
+        DynamicFilterDomains domains = createDomains(
+                ImmutableList.of(ImmutableMap.of(ID_COLUMN, hashSetFilter(ID_COLUMN, 1L, 5L, 9L))),
+                ImmutableMap.of(),
+                10);
+
+        assertEquals(domains.get(), ImmutableMap.of(0, Domain.multipleValues(BIGINT, ImmutableList.of(1L, 5L, 9L))));
+    }
+
+    @Test
+    public void testRangeFilter()
+    {
+        DynamicFilterDomains domains = createDomains(
+                ImmutableList.of(ImmutableMap.of(VALUE_COLUMN, new RangeDynamicFilter("1", VALUE_COLUMN, 10L, 20L, GLOBAL))),
+                ImmutableMap.of(),
+                10);
+
+        assertEquals(domains.get(), ImmutableMap.of(1, Domain.create(ValueSet.ofRanges(Range.range(BIGINT, 10L, true, 20L, true)), false)));
+    }
+
+    @Test
+    public void testIntersectWithEffectivePredicate()
+    {
+        DynamicFilterDomains domains = createDomains(
+                ImmutableList.of(ImmutableMap.of(
+                        ID_COLUMN, hashSetFilter(ID_COLUMN, 1L, 5L, 9L),
+                        VALUE_COLUMN, new CombinedDynamicFilter(
+                                VALUE_COLUMN,
+                                new RangeDynamicFilter("1", VALUE_COLUMN, 10L, 20L, GLOBAL),
+                                hashSetFilter(VALUE_COLUMN, 5L, 15L, 25L)))),
+                ImmutableMap.of(ID_COLUMN, Domain.create(ValueSet.ofRanges(Range.greaterThan(BIGINT, 3L)), false)),
+                10);
+
+        assertEquals(domains.get(), ImmutableMap.of(
+                0, Domain.multipleValues(BIGINT, ImmutableList.of(5L, 9L)),
+                1, Domain.singleValue(BIGINT, 15L)));
+    }
+
+    @Test
+    public void testUnsupportedFilters()
+    {
+        Map<ColumnHandle, DynamicFilter> filters = ImmutableMap.of(
+                // partition keys are filtered with the splits
+                PARTITION_COLUMN, hashSetFilter(PARTITION_COLUMN, 1L),
+                // the filter is on the table type, not the type of the file
+                COERCED_COLUMN, hashSetFilter(COERCED_COLUMN, 1L),
+                // values of filtered dynamic filters are compared with a non-equality expression
+                ID_COLUMN, new FilteredDynamicFilter("1", ID_COLUMN, ImmutableSet.of(1L), GLOBAL, Optional.empty(), Optional.empty()),
+                // more values than the row filtering threshold
+                VALUE_COLUMN, hashSetFilter(VALUE_COLUMN, 1L, 2L, 3L));
+
+        assertEquals(createDomains(ImmutableList.of(filters), ImmutableMap.of(), 2).get(), ImmutableMap.of());
+    }
+
+    @Test
+    public void testEmptyFilters()
+    {
+        DynamicFilterDomains domains = createDomains(
+                ImmutableList.of(ImmutableMap.of(
+                        ID_COLUMN, hashSetFilter(ID_COLUMN),
+                        VALUE_COLUMN, new RangeDynamicFilter("1", VALUE_COLUMN, 20L, 10L, GLOBAL))),
+                ImmutableMap.of(),
+                10);
+
+        assertEquals(domains.get(), ImmutableMap.of());
+    }
+
+    @Test
+    public void testDisjunctiveFilterGroups()
+    {
+        // filters of several groups are OR'ed together, so none of them holds for the whole column
+        DynamicFilterDomains domains = createDomains(
+                ImmutableList.of(
+                        ImmutableMap.of(ID_COLUMN, hashSetFilter(ID_COLUMN, 1L)),
+                        ImmutableMap.of(ID_COLUMN, hashSetFilter(ID_COLUMN, 2L))),
+                ImmutableMap.of(),
+                10);
+
+        assertEquals(domains.get(), ImmutableMap.of());
+    }
+
+    @Test
+    public void testFiltersArriveLate()
+    {
+        AtomicReference<List<Map<ColumnHandle, DynamicFilter>>> filters = new AtomicReference<>(ImmutableList.of());
+        DynamicFilterDomains domains = new DynamicFilterDomains(
+                new DynamicFilterSupplier(filters::get, System.currentTimeMillis(), 0),
+                COLUMNS,
+                ImmutableSet.of(COERCED_COLUMN.getHiveColumnIndex()),
+                ImmutableMap.of(),
+                TYPE_MANAGER,
+                10);
+        assertTrue(domains.get().isEmpty());
+
+        filters.set(ImmutableList.of(ImmutableMap.of(ID_COLUMN, hashSetFilter(ID_COLUMN, 1L))));
+        assertEquals(domains.get(), ImmutableMap.of(0, Domain.singleValue(BIGINT, 1L)));
+
+        // the domain of a column does not change once the reader received it
+        filters.set(ImmutableList.of(ImmutableMap.of(
+                ID_COLUMN, hashSetFilter(ID_COLUMN, 2L),
+                VALUE_COLUMN, hashSetFilter(VALUE_COLUMN, 3L))));
+        assertEquals(domains.get(), ImmutableMap.of(
+                0, Domain.singleValue(BIGINT, 1L),
+                1, Domain.singleValue(BIGINT, 3L)));
+    }
+
+    private static DynamicFilterDomains createDomains(List<Map<ColumnHandle, DynamicFilter>> filters, Map<HiveColumnHandle, Domain> effectivePredicateDomains, int rowFilteringThreshold)
+    {
+        return new DynamicFilterDomains(
+                new DynamicFilterSupplier(() -> filters, System.currentTimeMillis(), 0),
+                COLUMNS,
+                ImmutableSet.of(COERCED_COLUMN.getHiveColumnIndex()),
+                effectivePredicateDomains,
+                TYPE_MANAGER,
+                rowFilteringThreshold);
+    }
+
+    private static DynamicFilter hashSetFilter(HiveColumnHandle column, Long... values)
+    {
+        Set<Long> valueSet = ImmutableSet.copyOf(values);
+        return new HashSetDynamicFilter("1", column, valueSet, GLOBAL);
+    }
+}
@@ -16,6 +16,7 @@ package io.prestosql;
 import com.google.common.collect.ImmutableList;
 import io.airlift.units.DataSize;
 import io.airlift.units.Duration;
+import io.hetu.core.transport.execution.buffer.PageCompressionCodec;
 import io.prestosql.execution.QueryManagerConfig;
 import io.prestosql.execution.TaskManagerConfig;
 import io.prestosql.memory.MemoryManagerConfig;
@@ -24,6 +25,7 @@ import io.prestosql.spi.PrestoException;
 import io.prestosql.spi.session.PropertyMetadata;
 import io.prestosql.sql.analyzer.FeaturesConfig;
 import io.prestosql.sql.analyzer.FeaturesConfig.DynamicFilterDataType;
+import io.prestosql.sql.analyzer.FeaturesConfig.DynamicFilterTransport;
 import io.prestosql.sql.analyzer.FeaturesConfig.JoinDistributionType;
 import io.prestosql.sql.analyzer.FeaturesConfig.JoinReorderingStrategy;
 import io.prestosql.sql.analyzer.FeaturesConfig.RedistributeWritesType;
@@ -105,6 +107,9 @@ public final class SystemSessionProperties
     public static final String ITERATIVE_OPTIMIZER_TIMEOUT = "iterative_optimizer_timeout";
     public static final String ENABLE_FORCED_EXCHANGE_BELOW_GROUP_ID = "enable_forced_exchange_below_group_id";
     public static final String EXCHANGE_COMPRESSION = "exchange_compression";
+    public static final String EXCHANGE_COMPRESSION_CODEC = "exchange_compression_codec";
+    public static final String EXCHANGE_COMPRESSION_NETWORK_BANDWIDTH = "exchange_compression_network_bandwidth";
+    public static final String EXCHANGE_STREAMING_ENABLED = "exchange_streaming_enabled";
     public static final String ENABLE_INTERMEDIATE_AGGREGATIONS = "enable_intermediate_aggregations";
     public static final String PUSH_AGGREGATION_THROUGH_JOIN = "push_aggregation_through_join";
     public static final String PUSH_PARTIAL_AGGREGATION_THROUGH_JOIN = "push_partial_aggregation_through_join";
@@ -139,6 +144,7 @@ public final class SystemSessionProperties
     public static final String DYNAMIC_FILTERING_MAX_PER_DRIVER_VALUE_COUNT = "dynamic_filtering_max_per_driver_value_count";
     public static final String DYNAMIC_FILTERING_WAIT_TIME = "dynamic_filtering_wait_time";
     public static final String DYNAMIC_FILTERING_DATA_TYPE = "dynamic_filtering_data_type";
+    public static final String DYNAMIC_FILTERING_TRANSPORT = "dynamic_filtering_transport";
     public static final String DYNAMIC_FILTERING_MAX_PER_DRIVER_SIZE = "dynamic_filtering_max_per_driver_size";
     public static final String DYNAMIC_FILTERING_BLOOM_FILTER_FPP = "dynamic_filtering_bloom_filter_fpp";
     public static final String ENABLE_EXECUTION_PLAN_CACHE = "enable_execution_plan_cache";
@@ -520,6 +526,22 @@ public final class SystemSessionProperties
                         "Enable compression in exchanges",
                         featuresConfig.isExchangeCompressionEnabled(),
                         false),
+                enumProperty(
+                        EXCHANGE_COMPRESSION_CODEC,
+                        "Codec used to compress exchanged pages",
+                        PageCompressionCodec.class,
+                        featuresConfig.getExchangeCompressionCodec(),
+                        false),
+                dataSizeProperty(
+                        EXCHANGE_COMPRESSION_NETWORK_BANDWIDTH,
+                        "Network bandwidth per second assumed by the adaptive exchange compression codec",
+                        featuresConfig.getExchangeCompressionNetworkBandwidth(),
+                        false),
+                booleanProperty(
+                        EXCHANGE_STREAMING_ENABLED,
+                        "Stream pages of remote tasks as they are produced over a single response, instead of one response per request",
+                        featuresConfig.isExchangeStreamingEnabled(),
+                        false),
                 booleanProperty(
                         ENABLE_INTERMEDIATE_AGGREGATIONS,
                         "Enable the use of intermediate aggregations",
@@ -660,6 +682,12 @@ public final class SystemSessionProperties
                         DynamicFilterDataType.class,
                         featuresConfig.getDynamicFilteringDataType(),
                         false),
+                enumProperty(
+                        DYNAMIC_FILTERING_TRANSPORT,
+                        "Transport of the global dynamic filters (STATE_STORE or REMOTE_TASK)",
+                        DynamicFilterTransport.class,
+                        featuresConfig.getDynamicFilteringTransport(),
+                        false),
                 dataSizeProperty(
                         DYNAMIC_FILTERING_MAX_PER_DRIVER_SIZE,
                         "Maximum number of bytes to be collected for dynamic filtering per-driver",
@@ -1087,6 +1115,21 @@ public final class SystemSessionProperties
         return session.getSystemProperty(EXCHANGE_COMPRESSION, Boolean.class);
     }
 
+    public static PageCompressionCodec getExchangeCompressionCodec(Session session)
+    {
+        return session.getSystemProperty(EXCHANGE_COMPRESSION_CODEC, PageCompressionCodec.class);
+    }
+
+    public static DataSize getExchangeCompressionNetworkBandwidth(Session session)
+    {
+        return session.getSystemProperty(EXCHANGE_COMPRESSION_NETWORK_BANDWIDTH, DataSize.class);
+    }
+
+    public static boolean isExchangeStreamingEnabled(Session session)
+    {
+        return session.getSystemProperty(EXCHANGE_STREAMING_ENABLED, Boolean.class);
+    }
+
     public static boolean isEnableIntermediateAggregations(Session session)
     {
         return session.getSystemProperty(ENABLE_INTERMEDIATE_AGGREGATIONS, Boolean.class);
@@ -1249,6 +1292,11 @@ public final class SystemSessionProperties
         return session.getSystemProperty(DYNAMIC_FILTERING_DATA_TYPE, DynamicFilterDataType.class);
     }
 
+    public static DynamicFilterTransport getDynamicFilteringTransport(Session session)
+    {
+        return session.getSystemProperty(DYNAMIC_FILTERING_TRANSPORT, DynamicFilterTransport.class);
+    }
+
     public static DataSize getDynamicFilteringMaxPerDriverSize(Session session)
     {
         return session.getSystemProperty(DYNAMIC_FILTERING_MAX_PER_DRIVER_SIZE, DataSize.class);
@@ -42,6 +42,7 @@ import io.prestosql.spi.service.PropertyService;
 import io.prestosql.statestore.SharedQueryState;
 import io.prestosql.statestore.StateCacheStore;
 import io.prestosql.statestore.StateFetcher;
+import io.prestosql.statestore.StateFetcherStats;
 import io.prestosql.statestore.StateStoreConstants;
 import io.prestosql.statestore.StateStoreProvider;
 import io.prestosql.statestore.StateUpdater;
@@ -49,6 +50,7 @@ import io.prestosql.transaction.TransactionManager;
 import io.prestosql.utils.HetuConfig;
 import org.weakref.jmx.Flatten;
 import org.weakref.jmx.Managed;
+import org.weakref.jmx.Nested;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
@@ -98,6 +100,7 @@ public class DispatchManager
     private final QueryTracker<DispatchQuery> queryTracker;
 
     private final QueryManagerStats stats = new QueryManagerStats();
+    private final StateFetcherStats stateFetcherStats = new StateFetcherStats();
 
     @Inject
     public DispatchManager(
@@ -160,6 +163,13 @@ public class DispatchManager
         return stats;
     }
 
+    @Managed
+    @Nested
+    public StateFetcherStats getStateFetcherStats()
+    {
+        return stateFetcherStats;
+    }
+
     public QueryId createQueryId()
     {
         return queryIdGenerator.createNextQueryId();
@@ -397,7 +407,8 @@ public class DispatchManager
         }
 
         if (stateFetcher == null) {
-            stateFetcher = new StateFetcher(stateStoreProvider, hetuConfig.getStateFetchInterval(), hetuConfig.getStateExpireTime());
+            stateFetcher = new StateFetcher(stateStoreProvider, hetuConfig.getStateFetchInterval(), hetuConfig.getStateExpireTime(),
+                    hetuConfig.isStateFetchIncrementalEnabled(), hetuConfig.getStateReconcileInterval(), stateFetcherStats);
         }
 
         // Start state updater
@@ -20,6 +20,7 @@ import com.google.common.collect.SetMultimap;
 import io.airlift.log.Logger;
 import io.prestosql.execution.TaskId;
 import io.prestosql.spi.dynamicfilter.DynamicFilter;
+import io.prestosql.spi.dynamicfilter.DynamicFilterFactory;
 
 import javax.annotation.PreDestroy;
 import javax.inject.Inject;
@@ -28,11 +29,13 @@ import java.util.Map;
 import java.util.Set;
 
 import static com.google.common.cache.CacheBuilder.newBuilder;
+import static io.prestosql.spi.dynamicfilter.DynamicFilter.Type.GLOBAL;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
 /**
  * Cache manager for merged Dynamic Filters, being used by all the tasks running on same worker
- * Currently the merged Dynamic Filters are added by {@link io.prestosql.dynamicfilter.DynamicFilterListener}
+ * The merged Dynamic Filters are added by {@link io.prestosql.dynamicfilter.DynamicFilterListener},
+ * or with the task update requests when they are sent to the workers by the remote tasks
  */
 public class DynamicFilterCacheManager
 {
@@ -102,6 +105,23 @@ public class DynamicFilterCacheManager
         cacheGlobalDynamicFilters.put(filterId, dynamicFilter);
     }
 
+    /**
+     * Caches the merged global dynamic filters sent to the worker with a task update request
+     *
+     * @param queryId id of the query of the dynamic filters
+     * @param dynamicFilters serialized bloom filters by dynamic filter id
+     */
+    public void cacheDynamicFilters(String queryId, Map<String, byte[]> dynamicFilters)
+    {
+        for (Map.Entry<String, byte[]> entry : dynamicFilters.entrySet()) {
+            String cacheKey = createCacheKey(entry.getKey(), queryId);
+            if (cacheGlobalDynamicFilters.getIfPresent(cacheKey) == null) {
+                cacheDynamicFilter(cacheKey, DynamicFilterFactory.create(entry.getKey(), null, entry.getValue(), GLOBAL));
+                LOG.debug("Got new BloomFilter DynamicFilter from task update: " + cacheKey);
+            }
+        }
+    }
+
     public Map<String, byte[]> getBloomFitler(String cacheKey)
     {
         return cacheBloomFilters.getIfPresent(cacheKey);
@@ -20,6 +20,7 @@ import io.prestosql.spi.dynamicfilter.DynamicFilterFactory;
 import io.prestosql.spi.statestore.listener.EntryAddedListener;
 import io.prestosql.spi.statestore.listener.EntryEvent;
 
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 
@@ -60,6 +61,11 @@ public class DynamicFilterListener
             dynamicFilter = DynamicFilterFactory.create(filterId, null, (byte[]) newDynamicFilter, GLOBAL);
             LOG.debug("Got new BloomFilter DynamicFilter from state store: " + filterId + ", size: " + dynamicFilter.getSize());
         }
+        else if (newDynamicFilter instanceof List && ((List<?>) newDynamicFilter).size() == 2) {
+            List<?> range = (List<?>) newDynamicFilter;
+            dynamicFilter = DynamicFilterFactory.create(filterId, null, range.get(0), range.get(1), GLOBAL);
+            LOG.debug("Got new range DynamicFilter from state store: " + filterId + ", range: " + range);
+        }
 
         return dynamicFilter == null ? Optional.empty() : Optional.of(dynamicFilter);
     }
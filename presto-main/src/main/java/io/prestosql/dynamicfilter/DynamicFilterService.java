@@ -18,6 +18,7 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.inject.Inject;
 import io.airlift.log.Logger;
+import io.airlift.stats.TimeStat;
 import io.prestosql.Session;
 import io.prestosql.execution.StageStateMachine;
 import io.prestosql.execution.TaskId;
@@ -38,22 +39,23 @@ import io.prestosql.spi.relation.RowExpression;
 import io.prestosql.spi.relation.VariableReferenceExpression;
 import io.prestosql.spi.statestore.StateCollection;
 import io.prestosql.spi.statestore.StateMap;
-import io.prestosql.spi.statestore.StateSet;
 import io.prestosql.spi.statestore.StateStore;
 import io.prestosql.spi.util.BloomFilter;
 import io.prestosql.sql.DynamicFilters;
+import io.prestosql.sql.analyzer.FeaturesConfig.DynamicFilterTransport;
 import io.prestosql.sql.planner.plan.SemiJoinNode;
 import io.prestosql.statestore.StateStoreProvider;
 import io.prestosql.utils.DynamicFilterUtils;
+import org.weakref.jmx.Managed;
+import org.weakref.jmx.Nested;
 
-import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -63,19 +65,18 @@ import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import static com.google.common.base.Preconditions.checkArgument;
-import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.collect.ImmutableSet.toImmutableSet;
 import static io.airlift.concurrent.Threads.threadsNamed;
 import static io.prestosql.SystemSessionProperties.getDynamicFilteringDataType;
+import static io.prestosql.SystemSessionProperties.getDynamicFilteringTransport;
 import static io.prestosql.spi.StandardErrorCode.GENERIC_INTERNAL_ERROR;
 import static io.prestosql.spi.dynamicfilter.DynamicFilter.DataType.BLOOM_FILTER;
 import static io.prestosql.spi.dynamicfilter.DynamicFilter.DataType.HASHSET;
@@ -83,24 +84,29 @@ import static io.prestosql.spi.dynamicfilter.DynamicFilter.Type;
 import static io.prestosql.spi.dynamicfilter.DynamicFilter.Type.GLOBAL;
 import static io.prestosql.spi.dynamicfilter.DynamicFilter.Type.LOCAL;
 import static io.prestosql.spi.statestore.StateCollection.Type.MAP;
-import static io.prestosql.spi.statestore.StateCollection.Type.SET;
+import static io.prestosql.utils.DynamicFilterUtils.PARTIALPREFIX;
+import static io.prestosql.utils.DynamicFilterUtils.PARTIAL_DYNAMIC_FILTERS;
+import static io.prestosql.utils.DynamicFilterUtils.PARTIAL_TASK_SEPARATOR;
 import static io.prestosql.utils.DynamicFilterUtils.createKey;
+import static io.prestosql.utils.DynamicFilterUtils.createPartialKey;
 import static io.prestosql.utils.DynamicFilterUtils.findFilterNodeInStage;
 import static io.prestosql.utils.DynamicFilterUtils.getDynamicFilterDataType;
 import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 
 public class DynamicFilterService
 {
     private static final Logger log = Logger.get(DynamicFilterService.class);
-    private final ScheduledExecutorService filterMergeExecutor;
-    private static final int THREAD_POOL_SIZE = 1;
-    private static final int MERGE_DYNAMIC_FILTER_INTERVAL = 1;
-    private ScheduledFuture<?> backgroundTask;
+    private final ExecutorService filterMergeExecutor;
 
     private final Map<String, Map<String, DynamicFilterRegistryInfo>> dynamicFilters = new ConcurrentHashMap<>();
-    private final Map<String, CopyOnWriteArraySet<TaskId>> dynamicFiltersToTask = new ConcurrentHashMap<>();
-    private static final Map<String, Map<String, DynamicFilter>> cachedDynamicFilters = new HashMap<>();
-    private final List<String> finishedQuery = Collections.synchronizedList(new ArrayList<>());
+    // partial dynamic filters by createKey(PARTIALPREFIX, filterId, queryId), only accessed by the filter merge thread
+    private final Map<String, PartialDynamicFilters> partialDynamicFilters = new HashMap<>();
+    private static final Map<String, Map<String, DynamicFilter>> cachedDynamicFilters = new ConcurrentHashMap<>();
+    // consumers of the merged global dynamic filters of queries collecting them through the remote tasks
+    private final Map<String, Consumer<Map<String, byte[]>>> dynamicFilterListeners = new ConcurrentHashMap<>();
+    private final TimeStat waitTime = new TimeStat(MILLISECONDS);
 
     private final StateStoreProvider stateStoreProvider;
 
@@ -113,186 +119,265 @@ public class DynamicFilterService
     public DynamicFilterService(StateStoreProvider stateStoreProvider)
     {
         this.stateStoreProvider = requireNonNull(stateStoreProvider, "StateStoreProvider is null");
-        this.filterMergeExecutor = Executors.newScheduledThreadPool(THREAD_POOL_SIZE, threadsNamed("dynamic-filter-service-%s"));
+        this.filterMergeExecutor = Executors.newSingleThreadExecutor(threadsNamed("dynamic-filter-service-%s"));
     }
 
     /**
-     * Starting the Dynamic Filter Service
+     * Stopping the Dynamic Filter Service
      */
-    @PostConstruct
-    public void start()
+    @PreDestroy
+    public void stop()
     {
-        checkState(backgroundTask == null, "Dynamic filter merger already started");
-        backgroundTask = filterMergeExecutor.scheduleWithFixedDelay(() -> {
-            try {
-                if (this.stateStoreProvider.getStateStore() != null) {
-                    mergeDynamicFilters();
-                    removeFinishedQuery();
-                }
-            }
-            catch (Exception e) {
-                log.error("Error merging Dynamic Filters: " + e.getMessage());
-            }
-        }, 0, MERGE_DYNAMIC_FILTER_INTERVAL, TimeUnit.MILLISECONDS);
+        filterMergeExecutor.shutdownNow();
     }
 
     /**
-     * Stopping the Dynamic Filter Service
+     * Time from the registration of the tasks that build a global dynamic filter until the merged filter is published
      */
-    @PreDestroy
-    public void stop()
+    @Managed
+    @Nested
+    public TimeStat getWaitTime()
     {
-        filterMergeExecutor.shutdownNow();
+        return waitTime;
     }
 
     /**
-     * Global Dynamic Filter merging, periodically looks for dynamic filters that can be merged and merges them
+     * Merge a partial dynamic filter added to the state store by a task. The merged dynamic filter is published
+     * as soon as all the registered tasks that build it have added their partial dynamic filters.
+     *
+     * @param partialKey key of the partial dynamic filter, created by DynamicFilterUtils.createPartialKey
+     * @param partialFilter serialized bloom filter or set of values of the partial dynamic filter
      */
-    private void mergeDynamicFilters()
+    public void addPartialDynamicFilter(String partialKey, Object partialFilter)
     {
-        final StateStore stateStore = stateStoreProvider.getStateStore();
-        for (Map.Entry<String, Map<String, DynamicFilterRegistryInfo>> queryToDynamicFiltersEntry : dynamicFilters.entrySet()) {
-            final String queryId = queryToDynamicFiltersEntry.getKey();
-            if (!cachedDynamicFilters.containsKey(queryId)) {
-                cachedDynamicFilters.put(queryId, new ConcurrentHashMap<>());
+        filterMergeExecutor.execute(() -> {
+            int separator = partialKey.lastIndexOf(PARTIAL_TASK_SEPARATOR);
+            if (separator < 0) {
+                return;
+            }
+            // partial dynamic filters of queries scheduled by other coordinators are ignored,
+            // the ones added before their tasks are registered are fetched on registration
+            PartialDynamicFilters partialFilters = partialDynamicFilters.get(partialKey.substring(0, separator));
+            if (partialFilters != null) {
+                addPartialDynamicFilter(partialFilters, partialKey.substring(separator + PARTIAL_TASK_SEPARATOR.length()), partialFilter);
+                mergeDynamicFilter(partialFilters);
             }
-            Map<String, DynamicFilter> cachedDynamicFiltersForQuery = cachedDynamicFilters.get(queryId);
-            StateMap mergedDynamicFilters = (StateMap) stateStore.getOrCreateStateCollection(DynamicFilterUtils.MERGED_DYNAMIC_FILTERS, MAP);
+        });
+    }
 
-            for (Map.Entry<String, DynamicFilterRegistryInfo> columnToDynamicFilterEntry : queryToDynamicFiltersEntry.getValue().entrySet()) {
-                if (columnToDynamicFilterEntry.getValue().isMerged()) {
-                    continue;
-                }
+    /**
+     * Merge the partial dynamic filters received with the status of a task. Only used by queries
+     * collecting dynamic filters through the remote tasks, which have registered a dynamic filter listener.
+     * Partial dynamic filters may arrive before the tasks that build them are registered.
+     *
+     * @param taskId id of the task that built the partial dynamic filters
+     * @param partialFilters serialized bloom filters by dynamic filter id
+     */
+    public void addPartialDynamicFilters(TaskId taskId, Map<String, byte[]> partialFilters)
+    {
+        String queryId = taskId.getQueryId().getId();
+        filterMergeExecutor.execute(() -> {
+            if (!dynamicFilterListeners.containsKey(queryId)) {
+                return;
+            }
+            for (Entry<String, byte[]> entry : partialFilters.entrySet()) {
+                String filterId = entry.getKey();
+                PartialDynamicFilters filters = partialDynamicFilters.computeIfAbsent(createKey(PARTIALPREFIX, filterId, queryId),
+                        key -> new PartialDynamicFilters(queryId, filterId));
+                addPartialDynamicFilter(filters, taskId.toString(), entry.getValue());
+                mergeDynamicFilter(filters);
+            }
+        });
+    }
 
-                final String filterId = columnToDynamicFilterEntry.getKey();
-                final Type filterType = columnToDynamicFilterEntry.getValue().getType();
-                final DataType filterDataType = columnToDynamicFilterEntry.getValue().getDataType();
-                final Optional<Predicate<List>> dfFilter = columnToDynamicFilterEntry.getValue().getFilter();
-                final Symbol column = columnToDynamicFilterEntry.getValue().getSymbol();
-                final String filterKey = createKey(DynamicFilterUtils.FILTERPREFIX, filterId, queryId);
+    /**
+     * Register the consumer of the merged global dynamic filters of a query collecting them through the remote tasks
+     *
+     * @param queryId id of the query
+     * @param listener consumer of the serialized merged bloom filters by dynamic filter id
+     */
+    public void addDynamicFilterListener(String queryId, Consumer<Map<String, byte[]>> listener)
+    {
+        dynamicFilterListeners.put(queryId, requireNonNull(listener, "listener is null"));
+    }
 
-                if (!hasMergeCondition(filterId, queryId)) {
-                    continue;
-                }
+    private void registerPartialDynamicFilters(String queryId, String filterId, Set<String> taskIds)
+    {
+        PartialDynamicFilters partialFilters = partialDynamicFilters.computeIfAbsent(createKey(PARTIALPREFIX, filterId, queryId),
+                key -> new PartialDynamicFilters(queryId, filterId));
+        partialFilters.addTasks(taskIds);
 
-                Collection<Object> results = ((StateSet) stateStore.getStateCollection(createKey(DynamicFilterUtils.PARTIALPREFIX, filterId, queryId))).getAll();
-                try {
-                    DynamicFilter mergedFilter;
-                    if (filterDataType == BLOOM_FILTER) {
-                        BloomFilter mergedBloomFilter = mergeBloomFilters(results);
-                        if (mergedBloomFilter.expectedFpp() > DynamicFilterUtils.BLOOM_FILTER_EXPECTED_FPP) {
-                            throw new PrestoException(GENERIC_INTERNAL_ERROR, "FPP too high: " + mergedBloomFilter.approximateElementCount());
-                        }
-                        mergedFilter = new BloomFilterDynamicFilter(filterKey, null, mergedBloomFilter, filterType);
+        StateStore stateStore = stateStoreProvider.getStateStore();
+        if (partialFilters.isMerged()) {
+            return;
+        }
+        if (stateStore != null && !dynamicFilterListeners.containsKey(queryId)) {
+            Map<String, String> partialKeys = taskIds.stream()
+                    .collect(Collectors.toMap(taskId -> createPartialKey(filterId, queryId, taskId), taskId -> taskId));
+            Map<String, Object> addedPartialFilters = getPartialDynamicFilters(stateStore).getAll(partialKeys.keySet());
+            for (Entry<String, Object> entry : addedPartialFilters.entrySet()) {
+                addPartialDynamicFilter(partialFilters, partialKeys.get(entry.getKey()), entry.getValue());
+            }
+        }
+        // partial dynamic filters received through the remote tasks are added before registration
+        mergeDynamicFilter(partialFilters);
+    }
 
-                        if (filterType == GLOBAL) {
-                            try (ByteArrayOutputStream out = new ByteArrayOutputStream()) {
-                                mergedBloomFilter.writeTo(out);
-                                byte[] filter = out.toByteArray();
-                                mergedDynamicFilters.put(filterKey, filter);
-                            }
-                        }
-                    }
-                    else if (filterDataType == HASHSET) {
-                        Set mergedSet = mergeHashSets(results);
-                        mergedFilter = DynamicFilterFactory.create(filterKey, null, mergedSet, filterType, dfFilter, Optional.empty());
+    private static void addPartialDynamicFilter(PartialDynamicFilters partialFilters, String taskId, Object partialFilter)
+    {
+        try {
+            partialFilters.add(taskId, partialFilter);
+        }
+        catch (IOException e) {
+            log.warn("Could not merge partial dynamic filter of task " + taskId + ": " + e.getLocalizedMessage());
+        }
+    }
 
-                        if (filterType == GLOBAL) {
-                            mergedDynamicFilters.put(filterKey, mergedSet);
-                        }
-                    }
-                    else {
-                        throw new PrestoException(GENERIC_INTERNAL_ERROR, "Unsupported filter data type: " + filterDataType);
-                    }
+    /**
+     * Global Dynamic Filter merging, publishes the merged dynamic filter once all its partial dynamic filters are merged
+     */
+    private void mergeDynamicFilter(PartialDynamicFilters partialFilters)
+    {
+        if (partialFilters.isMerged() || !partialFilters.hasAllTasks()) {
+            return;
+        }
+        final String queryId = partialFilters.getQueryId();
+        final String filterId = partialFilters.getFilterId();
+        DynamicFilterRegistryInfo registryInfo = dynamicFilters.getOrDefault(queryId, ImmutableMap.of()).get(filterId);
+        final StateStore stateStore = stateStoreProvider.getStateStore();
+        if (registryInfo == null || registryInfo.isMerged()) {
+            return;
+        }
+        final boolean remoteTaskTransport = registryInfo.getTransport() == DynamicFilterTransport.REMOTE_TASK;
+        final Consumer<Map<String, byte[]>> listener = dynamicFilterListeners.get(queryId);
+        if (remoteTaskTransport ? listener == null : stateStore == null) {
+            return;
+        }
+        if (remoteTaskTransport && registryInfo.getType() != GLOBAL) {
+            // local dynamic filters are only applied within the task, their predicate may not be an equality
+            // so they must not be merged into a bloom filter used to prune the splits
+            return;
+        }
 
-                    log.debug("Merged successfully dynamic filter id: "
-                            + filterId + "-" + queryId + " type: " + filterDataType
-                            + ", column: " + column + ", item count: " + mergedFilter.getSize());
-                    cachedDynamicFiltersForQuery.put(filterId, mergedFilter);
+        Map<String, DynamicFilter> cachedDynamicFiltersForQuery = cachedDynamicFilters.computeIfAbsent(queryId, key -> new ConcurrentHashMap<>());
+        final Type filterType = registryInfo.getType();
+        final DataType filterDataType = registryInfo.getDataType();
+        final Optional<Predicate<List>> dfFilter = registryInfo.getFilter();
+        final Symbol column = registryInfo.getSymbol();
+        final String filterKey = createKey(DynamicFilterUtils.FILTERPREFIX, filterId, queryId);
+
+        try {
+            DynamicFilter mergedFilter;
+            if (partialFilters.hasRange()) {
+                // some tasks had too many values for a set or bloom filter, only the range of the build side is kept.
+                // The range is widened by the ranges sent with the bloom filters and by the values of the other tasks
+                if (partialFilters.hasBloomFilterWithoutRange()) {
+                    throw new PrestoException(GENERIC_INTERNAL_ERROR, "Partial range DynamicFilters can not be merged with BloomFilters without range");
                 }
-                catch (IOException | PrestoException e) {
-                    log.warn("Could not merge dynamic filter: " + e.getLocalizedMessage());
-                }
-                finally {
-                    // for each dynamic filter we only try to merge it once
-                    columnToDynamicFilterEntry.getValue().setMerged();
+                List<Object> mergedRange = partialFilters.getRange();
+                mergedFilter = DynamicFilterFactory.create(filterKey, null, mergedRange.get(0), mergedRange.get(1), filterType);
+
+                if (filterType == GLOBAL) {
+                    getMergedDynamicFilters(stateStore).put(filterKey, mergedRange);
                 }
             }
-        }
-    }
-
-    private void removeFinishedQuery()
-    {
-        List<String> handledQuery = new ArrayList<>();
-        StateStore stateStore = stateStoreProvider.getStateStore();
-        StateMap mergedStateCollection = (StateMap) stateStore.getOrCreateStateCollection(DynamicFilterUtils.MERGED_DYNAMIC_FILTERS, MAP);
-        // Clear registered dynamic filter tasks
-        synchronized (finishedQuery) {
-            for (String queryId : finishedQuery) {
-                Map<String, DynamicFilterRegistryInfo> filters = dynamicFilters.get(queryId);
-                if (filters != null) {
-                    for (Entry<String, DynamicFilterRegistryInfo> entry : filters.entrySet()) {
-                        String filterId = entry.getKey();
-                        clearPartialResults(filterId, queryId);
-                        if (entry.getValue().isMerged()) {
-                            String filterKey = createKey(DynamicFilterUtils.FILTERPREFIX, filterId, queryId);
-                            mergedStateCollection.remove(filterKey);
+            else if (filterDataType == BLOOM_FILTER) {
+                BloomFilter mergedBloomFilter = partialFilters.getBloomFilter();
+                if (mergedBloomFilter == null) {
+                    throw new PrestoException(GENERIC_INTERNAL_ERROR, "Partial BloomFilter DynamicFilters are missing");
+                }
+                if (mergedBloomFilter.expectedFpp() > DynamicFilterUtils.BLOOM_FILTER_EXPECTED_FPP) {
+                    throw new PrestoException(GENERIC_INTERNAL_ERROR, "FPP too high: " + mergedBloomFilter.approximateElementCount());
+                }
+                mergedFilter = new BloomFilterDynamicFilter(filterKey, null, mergedBloomFilter, filterType);
+
+                if (filterType == GLOBAL) {
+                    try (ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+                        mergedBloomFilter.writeTo(out);
+                        byte[] filter = out.toByteArray();
+                        if (remoteTaskTransport) {
+                            listener.accept(ImmutableMap.of(filterId, filter));
+                        }
+                        else {
+                            getMergedDynamicFilters(stateStore).put(filterKey, filter);
                         }
                     }
                 }
-                List<String> collectionKeys = stateStore.getStateCollections().keySet().stream().filter(key -> key.contains(queryId)).collect(Collectors.toList());
-                for (String key : collectionKeys) {
-                    clearStatesInStateStore(stateStore, key);
-                }
-                dynamicFilters.remove(queryId);
-
-                cachedDynamicFilters.remove(queryId);
-                handledQuery.add(queryId);
             }
-            finishedQuery.removeAll(handledQuery);
-        }
-    }
+            else if (filterDataType == HASHSET) {
+                Set mergedSet = partialFilters.getValues();
+                mergedFilter = DynamicFilterFactory.create(filterKey, null, mergedSet, filterType, dfFilter, Optional.empty());
 
-    private static BloomFilter mergeBloomFilters(Collection<Object> partialBloomFilters)
-            throws IOException
-    {
-        BloomFilter mergedFilter = null;
-        for (Object partialBloomFilter : partialBloomFilters) {
-            BloomFilter deserializedBloomFilter = BloomFilter.readFrom(new ByteArrayInputStream((byte[]) partialBloomFilter));
-            if (mergedFilter == null) {
-                mergedFilter = deserializedBloomFilter;
+                if (filterType == GLOBAL) {
+                    getMergedDynamicFilters(stateStore).put(filterKey, mergedSet);
+                }
             }
             else {
-                mergedFilter.merge(deserializedBloomFilter);
+                throw new PrestoException(GENERIC_INTERNAL_ERROR, "Unsupported filter data type: " + filterDataType);
             }
+
+            log.debug("Merged successfully dynamic filter id: "
+                    + filterId + "-" + queryId + " type: " + filterDataType
+                    + ", column: " + column + ", item count: " + mergedFilter.getSize());
+            cachedDynamicFiltersForQuery.put(filterId, mergedFilter);
+            waitTime.add(System.nanoTime() - partialFilters.getRegisterTime(), NANOSECONDS);
+        }
+        catch (IOException | PrestoException e) {
+            log.warn("Could not merge dynamic filter: " + e.getLocalizedMessage());
+        }
+        finally {
+            // for each dynamic filter we only try to merge it once
+            registryInfo.setMerged();
+            partialFilters.setMerged();
         }
-        return mergedFilter;
     }
 
-    private static Set<?> mergeHashSets(Collection<Object> results)
-            throws IOException
+    private void removeFinishedQuery(String queryId)
     {
-        Set<?> merged = new HashSet<>();
-        for (Object o : results) {
-            if (!(o instanceof Set)) {
-                throw new IOException("Partial HashSet DynamicFilter is invalid.");
+        StateStore stateStore = stateStoreProvider.getStateStore();
+        Map<String, DynamicFilterRegistryInfo> filters = dynamicFilters.remove(queryId);
+        cachedDynamicFilters.remove(queryId);
+        if (dynamicFilterListeners.remove(queryId) != null) {
+            // partial dynamic filters received through the remote tasks may not have been registered
+            partialDynamicFilters.values().removeIf(partialFilters -> partialFilters.getQueryId().equals(queryId));
+        }
+        if (filters == null) {
+            return;
+        }
+        for (Entry<String, DynamicFilterRegistryInfo> entry : filters.entrySet()) {
+            String filterId = entry.getKey();
+            PartialDynamicFilters partialFilters = partialDynamicFilters.remove(createKey(PARTIALPREFIX, filterId, queryId));
+            if (stateStore == null) {
+                continue;
+            }
+            // Clear registered dynamic filter tasks
+            if (partialFilters != null) {
+                Set<String> partialKeys = partialFilters.getTasks().stream()
+                        .map(taskId -> createPartialKey(filterId, queryId, taskId))
+                        .collect(Collectors.toSet());
+                getPartialDynamicFilters(stateStore).removeAll(partialKeys);
+            }
+            if (entry.getValue().isMerged()) {
+                String filterKey = createKey(DynamicFilterUtils.FILTERPREFIX, filterId, queryId);
+                getMergedDynamicFilters(stateStore).remove(filterKey);
+            }
+        }
+        if (stateStore != null) {
+            List<String> collectionKeys = stateStore.getStateCollections().keySet().stream().filter(key -> key.contains(queryId)).collect(Collectors.toList());
+            for (String key : collectionKeys) {
+                clearStatesInStateStore(stateStore, key);
             }
-            merged.addAll((Set) o);
         }
-        return merged;
     }
 
-    private boolean hasMergeCondition(String filterKey, String queryId)
+    private static StateMap<String, Object> getPartialDynamicFilters(StateStore stateStore)
     {
-        int finishedDynamicFilterNumber = 0;
-        final StateStore stateStore = stateStoreProvider.getStateStore();
-
-        StateCollection temp = stateStore.getStateCollection(createKey(DynamicFilterUtils.TASKSPREFIX, filterKey, queryId));
-        if (temp != null) {
-            finishedDynamicFilterNumber = temp.size();
-        }
+        return (StateMap<String, Object>) stateStore.getOrCreateStateCollection(PARTIAL_DYNAMIC_FILTERS, MAP);
+    }
 
-        return finishedDynamicFilterNumber > 0 && finishedDynamicFilterNumber == dynamicFiltersToTask.get(filterKey + "-" + queryId).size();
+    private static StateMap<String, Object> getMergedDynamicFilters(StateStore stateStore)
+    {
+        return (StateMap<String, Object>) stateStore.getOrCreateStateCollection(DynamicFilterUtils.MERGED_DYNAMIC_FILTERS, MAP);
     }
 
     /**
@@ -305,7 +390,10 @@ public class DynamicFilterService
      */
     public void registerTasks(PlanNode node, Set<TaskId> taskIds, Set<InternalNode> workers, StageStateMachine stateMachine)
     {
-        if (taskIds.isEmpty() || stateStoreProvider.getStateStore() == null) {
+        if (taskIds.isEmpty()) {
+            return;
+        }
+        if (stateStoreProvider.getStateStore() == null && getDynamicFilteringTransport(stateMachine.getSession()) == DynamicFilterTransport.STATE_STORE) {
             return;
         }
         if (node instanceof JoinNode) {
@@ -325,28 +413,24 @@ public class DynamicFilterService
 
     private void registerTasksHelper(PlanNode node, Symbol buildSymbol, Map<String, Symbol> dynamicFiltersMap, Set<TaskId> taskIds, Set<InternalNode> workers, StageStateMachine stateMachine)
     {
-        final StateStore stateStore = stateStoreProvider.getStateStore();
         String queryId = stateMachine.getSession().getQueryId().toString();
+        Set<String> tasks = taskIds.stream().map(TaskId::toString).collect(toImmutableSet());
         for (Map.Entry<String, Symbol> entry : dynamicFiltersMap.entrySet()) {
             Symbol buildSymbolToCheck = buildSymbol != null ? buildSymbol : node.getOutputSymbols().contains(entry.getValue()) ? entry.getValue() : null;
             if (buildSymbolToCheck != null && entry.getValue().getName().equals(buildSymbol.getName())) {
                 String filterId = entry.getKey();
-                stateStore.createStateCollection(createKey(DynamicFilterUtils.TASKSPREFIX, filterId, queryId), SET);
-                stateStore.createStateCollection(createKey(DynamicFilterUtils.PARTIALPREFIX, filterId, queryId), SET);
                 dynamicFilters.putIfAbsent(queryId, new ConcurrentHashMap<>());
                 Map<String, DynamicFilterRegistryInfo> filters = dynamicFilters.get(queryId);
                 if (node instanceof JoinNode) {
-                    filters.put(filterId, extractDynamicFilterRegistryInfo((JoinNode) node, stateMachine.getSession(), filterId));
+                    filters.putIfAbsent(filterId, extractDynamicFilterRegistryInfo((JoinNode) node, stateMachine.getSession(), filterId));
                 }
                 else if (node instanceof SemiJoinNode) {
-                    filters.put(filterId, extractDynamicFilterRegistryInfo((SemiJoinNode) node, stateMachine.getSession()));
+                    filters.putIfAbsent(filterId, extractDynamicFilterRegistryInfo((SemiJoinNode) node, stateMachine.getSession()));
                 }
-                dynamicFiltersToTask.putIfAbsent(filterId + "-" + queryId, new CopyOnWriteArraySet<>());
-                CopyOnWriteArraySet<TaskId> taskSet = dynamicFiltersToTask.get(filterId + "-" + queryId);
-                taskSet.addAll(taskIds);
+                filterMergeExecutor.execute(() -> registerPartialDynamicFilters(queryId, filterId, tasks));
                 log.debug("registerTasks source " + filterId + " filters:" + filters + ", workers: "
                         + workers.stream().map(x -> x.getNodeIdentifier()).collect(Collectors.joining(",")) +
-                        ", taskIds: " + taskIds.stream().map(TaskId::toString).collect(Collectors.joining(",")));
+                        ", taskIds: " + String.join(",", tasks));
             }
         }
     }
@@ -358,25 +442,14 @@ public class DynamicFilterService
      */
     public void clearDynamicFiltersForQuery(String queryId)
     {
-        synchronized (finishedQuery) {
-            finishedQuery.add(queryId);
-        }
-    }
-
-    /**
-     * Cleaning local cache and state store cache
-     *
-     * @param filterId, part of the id for dynamic filter that will be cleaned
-     * @param queryId, query id for part of the id of dynamic filter that will be cleaned
-     */
-    private void clearPartialResults(String filterId, String queryId)
-    {
-        StateStore stateStore = stateStoreProvider.getStateStore();
-        if (stateStore != null) {
-            clearStatesInStateStore(stateStore, createKey(DynamicFilterUtils.PARTIALPREFIX, filterId, queryId));
-            clearStatesInStateStore(stateStore, createKey(DynamicFilterUtils.TASKSPREFIX, filterId, queryId));
-        }
-        dynamicFiltersToTask.remove(filterId + "-" + queryId);
+        filterMergeExecutor.execute(() -> {
+            try {
+                removeFinishedQuery(queryId);
+            }
+            catch (RuntimeException e) {
+                log.error("Error removing Dynamic Filters of query " + queryId + ": " + e.getMessage());
+            }
+        });
     }
 
     private static void clearStatesInStateStore(StateStore stateStore, String stateCollectionName)
@@ -512,6 +585,7 @@ public class DynamicFilterService
         private final Symbol symbol;
         private final Type type;
         private final DataType dataType;
+        private final DynamicFilterTransport transport;
         private boolean isMerged;
         private Optional<Predicate<List>> filter;
 
@@ -519,7 +593,8 @@ public class DynamicFilterService
         {
             this.symbol = symbol;
             this.type = type;
-            this.dataType = getDynamicFilterDataType(type, getDynamicFilteringDataType(session));
+            this.transport = getDynamicFilteringTransport(session);
+            this.dataType = getDynamicFilterDataType(type, getDynamicFilteringDataType(session), transport);
             this.isMerged = false;
             this.filter = filter;
         }
@@ -539,6 +614,11 @@ public class DynamicFilterService
             return dataType;
         }
 
+        public DynamicFilterTransport getTransport()
+        {
+            return transport;
+        }
+
         public boolean isMerged()
         {
             return isMerged;
@@ -554,4 +634,181 @@ public class DynamicFilterService
             return filter;
         }
     }
+
+    private static class PartialDynamicFilters
+    {
+        private final String queryId;
+        private final String filterId;
+        private final long registerTime = System.nanoTime();
+        private final Set<String> tasks = new HashSet<>();
+        private final Set<String> mergedTasks = new HashSet<>();
+        private final Set<Object> values = new HashSet<>();
+        private BloomFilter bloomFilter;
+        private boolean bloomFilterWithoutRange;
+        private Object min;
+        private Object max;
+        // whether some tasks only published the range of their build side values
+        private boolean rangeOnly;
+        private boolean isMerged;
+
+        public PartialDynamicFilters(String queryId, String filterId)
+        {
+            this.queryId = queryId;
+            this.filterId = filterId;
+        }
+
+        public void add(String taskId, Object partialFilter)
+                throws IOException
+        {
+            // the partial dynamic filter of a task may be both fetched on registration and notified
+            if (isMerged || !mergedTasks.add(taskId)) {
+                return;
+            }
+            if (partialFilter instanceof byte[]) {
+                // the type of the values does not support ranges
+                addBloomFilter((byte[]) partialFilter);
+                bloomFilterWithoutRange = true;
+            }
+            else if (partialFilter instanceof Set) {
+                values.addAll((Set<?>) partialFilter);
+            }
+            else if (partialFilter instanceof List && ((List<?>) partialFilter).size() == 3 && ((List<?>) partialFilter).get(2) instanceof byte[]) {
+                // [min, max, bloom filter] of the build side values of the task, min and max are null if there are no values
+                List<?> filter = (List<?>) partialFilter;
+                addBloomFilter((byte[]) filter.get(2));
+                addToRange(filter.get(0));
+                addToRange(filter.get(1));
+            }
+            else if (partialFilter instanceof List && ((List<?>) partialFilter).size() == 2) {
+                // [min, max] of the build side values of the task
+                List<?> range = (List<?>) partialFilter;
+                addToRange(range.get(0));
+                addToRange(range.get(1));
+                rangeOnly = true;
+            }
+            else {
+                mergedTasks.remove(taskId);
+                throw new IOException("Partial DynamicFilter is invalid.");
+            }
+        }
+
+        private void addBloomFilter(byte[] partialFilter)
+                throws IOException
+        {
+            BloomFilter partialBloomFilter = BloomFilter.readFrom(new ByteArrayInputStream(partialFilter));
+            if (bloomFilter == null) {
+                bloomFilter = partialBloomFilter;
+            }
+            else {
+                bloomFilter.merge(partialBloomFilter);
+            }
+        }
+
+        public void addTasks(Set<String> taskIds)
+        {
+            tasks.addAll(taskIds);
+        }
+
+        public boolean hasAllTasks()
+        {
+            return !tasks.isEmpty() && mergedTasks.containsAll(tasks);
+        }
+
+        public String getQueryId()
+        {
+            return queryId;
+        }
+
+        public String getFilterId()
+        {
+            return filterId;
+        }
+
+        public long getRegisterTime()
+        {
+            return registerTime;
+        }
+
+        public Set<String> getTasks()
+        {
+            return tasks;
+        }
+
+        public BloomFilter getBloomFilter()
+        {
+            return bloomFilter;
+        }
+
+        public Set<Object> getValues()
+        {
+            return values;
+        }
+
+        /**
+         * Whether some tasks had too many values for a set or bloom filter, so the filter can only be merged into a range
+         */
+        public boolean hasRange()
+        {
+            return rangeOnly;
+        }
+
+        public boolean hasBloomFilterWithoutRange()
+        {
+            return bloomFilterWithoutRange;
+        }
+
+        /**
+         * Get the [min, max] range of the partial ranges, widened by the partial value sets
+         */
+        public List<Object> getRange()
+        {
+            Object rangeMin = min;
+            Object rangeMax = max;
+            for (Object rawValue : values) {
+                Object value = normalize(rawValue);
+                rangeMin = compare(value, rangeMin) < 0 ? value : rangeMin;
+                rangeMax = compare(value, rangeMax) > 0 ? value : rangeMax;
+            }
+            return new ArrayList<>(Arrays.asList(rangeMin, rangeMax));
+        }
+
+        private void addToRange(Object rawValue)
+        {
+            if (rawValue == null) {
+                return;
+            }
+            Object value = normalize(rawValue);
+            if (min == null || compare(value, min) < 0) {
+                min = value;
+            }
+            if (max == null || compare(value, max) > 0) {
+                max = value;
+            }
+        }
+
+        private static Object normalize(Object value)
+        {
+            // -0.0 and 0.0 are equal join keys, but Double.compareTo orders -0.0 before 0.0
+            if (value instanceof Double && (Double) value == 0) {
+                return 0.0;
+            }
+            return value;
+        }
+
+        @SuppressWarnings("unchecked")
+        private static int compare(Object left, Object right)
+        {
+            return ((Comparable<Object>) left).compareTo(right);
+        }
+
+        public boolean isMerged()
+        {
+            return isMerged;
+        }
+
+        public void setMerged()
+        {
+            this.isMerged = true;
+        }
+    }
 }
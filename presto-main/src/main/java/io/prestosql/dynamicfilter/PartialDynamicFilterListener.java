@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.prestosql.dynamicfilter;
+
+import io.airlift.log.Logger;
+import io.prestosql.spi.statestore.listener.EntryAddedListener;
+import io.prestosql.spi.statestore.listener.EntryEvent;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * StateStore Listener for merging partial DynamicFilters on the coordinator as soon as tasks add them
+ */
+public class PartialDynamicFilterListener
+        implements EntryAddedListener<String, Object>
+{
+    private static final Logger LOG = Logger.get(PartialDynamicFilterListener.class);
+
+    private final DynamicFilterService dynamicFilterService;
+
+    public PartialDynamicFilterListener(DynamicFilterService dynamicFilterService)
+    {
+        this.dynamicFilterService = requireNonNull(dynamicFilterService, "dynamicFilterService is null");
+    }
+
+    @Override
+    public void entryAdded(EntryEvent<String, Object> event)
+    {
+        if (event.getValue() == null) {
+            LOG.warn("Partial DynamicFilter added to StateStore is null.");
+            return;
+        }
+        dynamicFilterService.addPartialDynamicFilter(event.getKey(), event.getValue());
+    }
+}
@@ -20,6 +20,8 @@ import io.prestosql.execution.buffer.OutputBuffers;
 import io.prestosql.metadata.Split;
 import io.prestosql.spi.plan.PlanNodeId;
 
+import java.util.Map;
+
 public interface RemoteTask
 {
     TaskId getTaskId();
@@ -42,6 +44,13 @@ public interface RemoteTask
 
     void setOutputBuffers(OutputBuffers outputBuffers);
 
+    /**
+     * Sends merged global dynamic filters to the task with the next task update request
+     *
+     * @param dynamicFilters serialized bloom filters by dynamic filter id
+     */
+    void addDynamicFilters(Map<String, byte[]> dynamicFilters);
+
     /**
      * Listener is always notified asynchronously using a dedicated notification thread pool so, care should
      * be taken to avoid leaking {@code this} when adding a listener in a constructor. Additionally, it is
@@ -126,6 +126,9 @@ public final class SqlStageExecution
 
     private final AtomicBoolean dynamicFilterSchedulingInfoPropagated = new AtomicBoolean();
 
+    // merged dynamic filters delivered to the tasks of this stage, also sent to tasks scheduled later
+    private final Map<String, byte[]> dynamicFilters = new ConcurrentHashMap<>();
+
     @GuardedBy("SqlStageExecution.class")
     public static Map<QueryId, List<UUID>> queryIdReuseTableScanMappingIdFinishedMap = new ConcurrentHashMap<>();
 
@@ -426,6 +429,15 @@ public final class SqlStageExecution
         }
     }
 
+    public synchronized void addDynamicFilters(Map<String, byte[]> newDynamicFilters)
+    {
+        requireNonNull(newDynamicFilters, "newDynamicFilters is null");
+        dynamicFilters.putAll(newDynamicFilters);
+        for (RemoteTask task : getAllTasks()) {
+            task.addDynamicFilters(newDynamicFilters);
+        }
+    }
+
     // do not synchronize
     // this is used for query info building which should be independent of scheduling work
     public boolean hasTasks()
@@ -533,6 +545,9 @@ public final class SqlStageExecution
                 snapshotManager);
 
         completeSources.forEach(task::noMoreSplits);
+        if (!dynamicFilters.isEmpty()) {
+            task.addDynamicFilters(ImmutableMap.copyOf(dynamicFilters));
+        }
 
         allTasks.add(taskId);
         tasks.computeIfAbsent(node, key -> newConcurrentHashSet()).add(task);
@@ -746,6 +761,9 @@ public final class SqlStageExecution
             try {
                 updateMemoryUsage(taskStatus);
                 updateCompletedDriverGroups(taskStatus);
+                if (!taskStatus.getDynamicFilters().isEmpty()) {
+                    dynamicFilterService.addPartialDynamicFilters(taskStatus.getTaskId(), taskStatus.getDynamicFilters());
+                }
             }
             finally {
                 updateTaskStatus(taskStatus);
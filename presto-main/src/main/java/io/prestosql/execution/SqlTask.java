@@ -64,12 +64,14 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.util.concurrent.Futures.immediateFuture;
 import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
+import static io.airlift.concurrent.MoreFutures.whenAnyCompleteCancelOthers;
 import static io.airlift.units.DataSize.Unit.BYTE;
 import static io.airlift.units.DataSize.succinctBytes;
 import static io.prestosql.connector.DataCenterUtility.loadDCCatalogForUpdateTask;
 import static io.prestosql.execution.TaskState.ABORTED;
 import static io.prestosql.execution.TaskState.CANCELED_TO_RESUME;
 import static io.prestosql.execution.TaskState.FAILED;
+import static io.prestosql.execution.TaskStatus.MAX_DYNAMIC_FILTERS_VERSION;
 import static io.prestosql.util.Failures.toFailures;
 import static java.util.Objects.requireNonNull;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
@@ -236,13 +238,27 @@ public class SqlTask
     }
 
     public TaskStatus getTaskStatus()
+    {
+        return getTaskStatus(MAX_DYNAMIC_FILTERS_VERSION);
+    }
+
+    /**
+     * @param dynamicFiltersVersion the dynamic filters version acknowledged by the caller,
+     * partial dynamic filters added after this version are included in the task status
+     */
+    public TaskStatus getTaskStatus(long dynamicFiltersVersion)
     {
         try (SetThreadName ignored = new SetThreadName("Task-%s", taskId)) {
-            return createTaskStatus(taskHolderReference.get());
+            return createTaskStatus(taskHolderReference.get(), dynamicFiltersVersion);
         }
     }
 
     private TaskStatus createTaskStatus(TaskHolder taskHolder)
+    {
+        return createTaskStatus(taskHolder, MAX_DYNAMIC_FILTERS_VERSION);
+    }
+
+    private TaskStatus createTaskStatus(TaskHolder taskHolder, long acknowledgedDynamicFiltersVersion)
     {
         // Always return a new TaskInfo with a larger version number;
         // otherwise a client will not accept the update
@@ -309,6 +325,13 @@ public class SqlTask
             }
         }
 
+        // partial dynamic filters are kept by the task state machine, so they are still reported after the task is done
+        long dynamicFiltersVersion = taskStateMachine.getDynamicFiltersVersion();
+        Map<String, byte[]> dynamicFilters = ImmutableMap.of();
+        if (acknowledgedDynamicFiltersVersion < dynamicFiltersVersion) {
+            dynamicFilters = taskStateMachine.getDynamicFilters(acknowledgedDynamicFiltersVersion, dynamicFiltersVersion);
+        }
+
         return new TaskStatus(taskStateMachine.getTaskId(),
                 confirmationInstanceId,
                 versionNumber,
@@ -327,7 +350,9 @@ public class SqlTask
                 fullGcCount,
                 fullGcTime,
                 snapshotCaptureResult,
-                snapshotRestoreResult);
+                snapshotRestoreResult,
+                dynamicFiltersVersion,
+                dynamicFilters);
     }
 
     private TaskStats getTaskStats(TaskHolder taskHolder)
@@ -374,16 +399,20 @@ public class SqlTask
                 needsPlan.get());
     }
 
-    public ListenableFuture<TaskStatus> getTaskStatus(TaskState callersCurrentState)
+    public ListenableFuture<TaskStatus> getTaskStatus(TaskState callersCurrentState, long dynamicFiltersVersion)
     {
         requireNonNull(callersCurrentState, "callersCurrentState is null");
 
-        if (callersCurrentState.isDone()) {
-            return immediateFuture(getTaskStatus());
+        if (callersCurrentState.isDone() || dynamicFiltersVersion < taskStateMachine.getDynamicFiltersVersion()) {
+            return immediateFuture(getTaskStatus(dynamicFiltersVersion));
         }
 
-        ListenableFuture<TaskState> futureTaskState = taskStateMachine.getStateChange(callersCurrentState);
-        return Futures.transform(futureTaskState, input -> getTaskStatus(), directExecutor());
+        ListenableFuture<?> futureTaskState = taskStateMachine.getStateChange(callersCurrentState);
+        if (dynamicFiltersVersion != MAX_DYNAMIC_FILTERS_VERSION) {
+            // partial dynamic filters are sent to the caller as soon as they are collected
+            futureTaskState = whenAnyCompleteCancelOthers(ImmutableList.of(futureTaskState, taskStateMachine.getDynamicFiltersChange(dynamicFiltersVersion)));
+        }
+        return Futures.transform(futureTaskState, input -> getTaskStatus(dynamicFiltersVersion), directExecutor());
     }
 
     public ListenableFuture<TaskInfo> getTaskInfo(TaskState callersCurrentState)
@@ -453,6 +482,13 @@ public class SqlTask
         return outputBuffer.get(bufferId, startingSequenceId, maxSize);
     }
 
+    public ListenableFuture<?> waitForTaskResults(OutputBufferId bufferId, long sequenceId)
+    {
+        requireNonNull(bufferId, "bufferId is null");
+
+        return outputBuffer.waitForPages(bufferId, sequenceId);
+    }
+
     public void acknowledgeTaskResults(OutputBufferId bufferId, long sequenceId)
     {
         requireNonNull(bufferId, "bufferId is null");
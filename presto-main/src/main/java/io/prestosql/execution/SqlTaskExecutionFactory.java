@@ -36,6 +36,8 @@ import java.util.OptionalInt;
 import java.util.concurrent.Executor;
 
 import static com.google.common.base.Throwables.throwIfUnchecked;
+import static io.prestosql.SystemSessionProperties.getExchangeCompressionCodec;
+import static io.prestosql.SystemSessionProperties.getExchangeCompressionNetworkBandwidth;
 import static io.prestosql.SystemSessionProperties.isExchangeCompressionEnabled;
 import static io.prestosql.execution.SqlTaskExecution.createSqlTaskExecution;
 import static java.util.Objects.requireNonNull;
@@ -81,7 +83,11 @@ public class SqlTaskExecutionFactory
                 cpuTimerEnabled,
                 totalPartitions,
                 consumer,
-                new PagesSerdeFactory(metadata.getFunctionAndTypeManager().getBlockEncodingSerde(), isExchangeCompressionEnabled(session)));
+                new PagesSerdeFactory(
+                        metadata.getFunctionAndTypeManager().getBlockEncodingSerde(),
+                        isExchangeCompressionEnabled(session),
+                        getExchangeCompressionCodec(session),
+                        getExchangeCompressionNetworkBandwidth(session).toBytes()));
 
         LocalExecutionPlan localExecutionPlan;
         try (SetThreadName ignored = new SetThreadName("Task-%s", taskStateMachine.getTaskId())) {
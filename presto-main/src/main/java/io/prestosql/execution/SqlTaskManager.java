@@ -78,6 +78,7 @@ import static com.google.common.collect.Iterables.transform;
 import static io.airlift.concurrent.Threads.threadsNamed;
 import static io.prestosql.SystemSessionProperties.resourceOvercommit;
 import static io.prestosql.execution.SqlTask.createSqlTask;
+import static io.prestosql.execution.TaskStatus.MAX_DYNAMIC_FILTERS_VERSION;
 import static io.prestosql.memory.LocalMemoryManager.GENERAL_POOL;
 import static io.prestosql.memory.LocalMemoryManager.RESERVED_POOL;
 import static io.prestosql.spi.StandardErrorCode.ABANDONED_TASK;
@@ -387,6 +388,12 @@ public class SqlTaskManager
 
     @Override
     public TaskStatus getTaskStatus(TaskId taskId, String expectedTaskInstanceId)
+    {
+        return getTaskStatus(taskId, expectedTaskInstanceId, MAX_DYNAMIC_FILTERS_VERSION);
+    }
+
+    @Override
+    public TaskStatus getTaskStatus(TaskId taskId, String expectedTaskInstanceId, long dynamicFiltersVersion)
     {
         requireNonNull(taskId, "taskId is null");
 
@@ -396,7 +403,7 @@ public class SqlTaskManager
         }
 
         sqlTask.recordHeartbeat();
-        return sqlTask.getTaskStatus();
+        return sqlTask.getTaskStatus(dynamicFiltersVersion);
     }
 
     @Override
@@ -415,7 +422,7 @@ public class SqlTaskManager
     }
 
     @Override
-    public ListenableFuture<TaskStatus> getTaskStatus(TaskId taskId, TaskState currentState, String expectedTaskInstanceId)
+    public ListenableFuture<TaskStatus> getTaskStatus(TaskId taskId, TaskState currentState, String expectedTaskInstanceId, long dynamicFiltersVersion)
     {
         requireNonNull(taskId, "taskId is null");
         requireNonNull(currentState, "currentState is null");
@@ -426,7 +433,7 @@ public class SqlTaskManager
         }
 
         sqlTask.recordHeartbeat();
-        return sqlTask.getTaskStatus(currentState);
+        return sqlTask.getTaskStatus(currentState, dynamicFiltersVersion);
     }
 
     @Override
@@ -467,6 +474,21 @@ public class SqlTaskManager
         return sqlTask.getTaskResults(bufferId, startingSequenceId, maxSize);
     }
 
+    @Override
+    public ListenableFuture<?> waitForTaskResults(TaskId taskId, OutputBufferId bufferId, long sequenceId, String expectedTaskInstanceId)
+    {
+        requireNonNull(taskId, "taskId is null");
+        requireNonNull(bufferId, "bufferId is null");
+        checkArgument(sequenceId >= 0, "sequenceId is negative");
+
+        SqlTask sqlTask = getTaskOrCreate(expectedTaskInstanceId, taskId);
+        if (sqlTask == null) {
+            return null;
+        }
+
+        return sqlTask.waitForTaskResults(bufferId, sequenceId);
+    }
+
     @Override
     public void acknowledgeTaskResults(TaskId taskId, OutputBufferId bufferId, long sequenceId, String expectedTaskInstanceId)
     {
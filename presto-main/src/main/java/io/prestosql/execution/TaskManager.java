@@ -56,6 +56,12 @@ public interface TaskManager
      */
     TaskStatus getTaskStatus(TaskId taskId, String expectedTaskInstanceId);
 
+    /**
+     * Gets the status for the specified task, including the partial dynamic filters
+     * collected by the task after {@code dynamicFiltersVersion}.
+     */
+    TaskStatus getTaskStatus(TaskId taskId, String expectedTaskInstanceId, long dynamicFiltersVersion);
+
     /**
      * Gets future info for the task after the state changes from
      * {@code current state}. If the task has not been created yet, an
@@ -72,11 +78,13 @@ public interface TaskManager
      * {@code current state}. If the task has not been created yet, an
      * uninitialized task is created and the future is returned.  If the task
      * is already in a final state, the status is returned immediately.
+     * The future also completes when the task collects partial dynamic filters
+     * after {@code dynamicFiltersVersion}, which are included in the status.
      * <p>
      * NOTE: this design assumes that only tasks that will eventually exist are
      * queried.
      */
-    ListenableFuture<TaskStatus> getTaskStatus(TaskId taskId, TaskState currentState, String expectedTaskInstanceId);
+    ListenableFuture<TaskStatus> getTaskStatus(TaskId taskId, TaskState currentState, String expectedTaskInstanceId, long dynamicFiltersVersion);
 
     void updateMemoryPoolAssignments(MemoryPoolAssignmentsRequest assignments);
 
@@ -106,6 +114,12 @@ public interface TaskManager
      */
     ListenableFuture<BufferResult> getTaskResults(TaskId taskId, OutputBufferId bufferId, long startingSequenceId, DataSize maxSize, String expectedTaskInstanceId);
 
+    /**
+     * Gets a future that completes when results after {@code sequenceId} are available, without
+     * acknowledging any results. Returns null if the task can not be found.
+     */
+    ListenableFuture<?> waitForTaskResults(TaskId taskId, OutputBufferId bufferId, long sequenceId, String expectedTaskInstanceId);
+
     /**
      * Acknowledges previously received results.
      */
@@ -13,13 +13,19 @@
  */
 package io.prestosql.execution;
 
+import com.google.common.collect.ImmutableMap;
 import com.google.common.util.concurrent.ListenableFuture;
 import io.airlift.log.Logger;
 import io.prestosql.execution.StateMachine.StateChangeListener;
 import org.joda.time.DateTime;
 
+import javax.annotation.concurrent.GuardedBy;
 import javax.annotation.concurrent.ThreadSafe;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Executor;
 import java.util.concurrent.LinkedBlockingQueue;
 
@@ -39,11 +45,16 @@ public class TaskStateMachine
     private final TaskId taskId;
     private final StateMachine<TaskState> taskState;
     private final LinkedBlockingQueue<Throwable> failureCauses = new LinkedBlockingQueue<>();
+    // partial dynamic filters collected by the task, the version is the number of collected batches
+    @GuardedBy("this")
+    private final List<Map<String, byte[]>> dynamicFilters = new ArrayList<>();
+    private final StateMachine<Long> dynamicFiltersVersion;
 
     public TaskStateMachine(TaskId taskId, Executor executor)
     {
         this.taskId = requireNonNull(taskId, "taskId is null");
         taskState = new StateMachine<>("task " + taskId, executor, TaskState.RUNNING, TERMINAL_TASK_STATES);
+        dynamicFiltersVersion = new StateMachine<>("task " + taskId + " dynamic filters", executor, 0L);
         taskState.addStateChangeListener(new StateChangeListener<TaskState>()
         {
             @Override
@@ -103,6 +114,47 @@ public class TaskStateMachine
         transitionToDoneState(TaskState.FAILED);
     }
 
+    /**
+     * Adds partial dynamic filters collected by the task, which are reported to the coordinator with the task status
+     *
+     * @param filters serialized bloom filters by dynamic filter id
+     */
+    public void addDynamicFilters(Map<String, byte[]> filters)
+    {
+        requireNonNull(filters, "filters is null");
+        long version;
+        synchronized (this) {
+            dynamicFilters.add(ImmutableMap.copyOf(filters));
+            version = dynamicFilters.size();
+        }
+        dynamicFiltersVersion.setIf(version, currentVersion -> currentVersion < version);
+    }
+
+    public synchronized long getDynamicFiltersVersion()
+    {
+        return dynamicFilters.size();
+    }
+
+    /**
+     * Gets the partial dynamic filters added after {@code fromVersion}, up to {@code toVersion}
+     */
+    public synchronized Map<String, byte[]> getDynamicFilters(long fromVersion, long toVersion)
+    {
+        Map<String, byte[]> filters = new HashMap<>();
+        for (long version = Math.max(fromVersion, 0); version < Math.min(toVersion, dynamicFilters.size()); version++) {
+            filters.putAll(dynamicFilters.get((int) version));
+        }
+        return filters;
+    }
+
+    /**
+     * Gets a future that completes when partial dynamic filters are added after {@code currentVersion}
+     */
+    public ListenableFuture<Long> getDynamicFiltersChange(long currentVersion)
+    {
+        return dynamicFiltersVersion.getStateChange(currentVersion);
+    }
+
     private void transitionToDoneState(TaskState doneState)
     {
         requireNonNull(doneState, "doneState is null");
@@ -56,6 +56,12 @@ public class TaskStatus
      */
     private static final long MAX_VERSION = Long.MAX_VALUE;
 
+    /**
+     * A dynamic filters version larger than any valid value. A task status
+     * requested with this version doesn't carry partial dynamic filters.
+     */
+    public static final long MAX_DYNAMIC_FILTERS_VERSION = Long.MAX_VALUE;
+
     private final TaskId taskId;
     private final String confirmationInstanceId;
     private final long version;
@@ -83,6 +89,11 @@ public class TaskStatus
     private final Map<Long, SnapshotResult> snapshotCaptureResult;
     private final Optional<RestoreResult> snapshotRestoreResult;
 
+    // dynamicFilters contains the partial dynamic filters collected by the task since the dynamic filters version
+    // acknowledged by the requester, dynamicFiltersVersion is the version of the last collected partial dynamic filters
+    private final long dynamicFiltersVersion;
+    private final Map<String, byte[]> dynamicFilters;
+
     @JsonCreator
     public TaskStatus(
             @JsonProperty("taskId") TaskId taskId,
@@ -103,7 +114,9 @@ public class TaskStatus
             @JsonProperty("fullGcCount") long fullGcCount,
             @JsonProperty("fullGcTime") Duration fullGcTime,
             @JsonProperty("snapshotCaptureResult") Map<Long, SnapshotResult> snapshotCaptureResult,
-            @JsonProperty("snapshotRestoreResult") Optional<RestoreResult> snapshotRestoreResult)
+            @JsonProperty("snapshotRestoreResult") Optional<RestoreResult> snapshotRestoreResult,
+            @JsonProperty("dynamicFiltersVersion") long dynamicFiltersVersion,
+            @JsonProperty("dynamicFilters") Map<String, byte[]> dynamicFilters)
     {
         this.taskId = requireNonNull(taskId, "taskId is null");
         this.confirmationInstanceId = requireNonNull(confirmationInstanceId, "confirmationInstanceId is null");
@@ -136,6 +149,10 @@ public class TaskStatus
 
         this.snapshotCaptureResult = snapshotCaptureResult;
         this.snapshotRestoreResult = snapshotRestoreResult;
+
+        checkArgument(dynamicFiltersVersion >= 0, "dynamicFiltersVersion is negative");
+        this.dynamicFiltersVersion = dynamicFiltersVersion;
+        this.dynamicFilters = ImmutableMap.copyOf(requireNonNull(dynamicFilters, "dynamicFilters is null"));
     }
 
     @JsonProperty
@@ -252,6 +269,18 @@ public class TaskStatus
         return snapshotRestoreResult;
     }
 
+    @JsonProperty
+    public long getDynamicFiltersVersion()
+    {
+        return dynamicFiltersVersion;
+    }
+
+    @JsonProperty
+    public Map<String, byte[]> getDynamicFilters()
+    {
+        return dynamicFilters;
+    }
+
     @Override
     public String toString()
     {
@@ -287,7 +316,9 @@ public class TaskStatus
                 0,
                 new Duration(0, MILLISECONDS),
                 ImmutableMap.of(),
-                Optional.empty());
+                Optional.empty(),
+                0,
+                ImmutableMap.of());
     }
 
     public static TaskStatus failWith(TaskStatus taskStatus, TaskState state, List<ExecutionFailureInfo> exceptions)
@@ -311,6 +342,8 @@ public class TaskStatus
                 taskStatus.getFullGcCount(),
                 taskStatus.getFullGcTime(),
                 taskStatus.snapshotCaptureResult,
-                taskStatus.snapshotRestoreResult);
+                taskStatus.snapshotRestoreResult,
+                taskStatus.getDynamicFiltersVersion(),
+                ImmutableMap.of());
     }
 }
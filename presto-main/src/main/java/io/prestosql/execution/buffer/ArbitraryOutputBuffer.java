@@ -57,6 +57,7 @@ import static com.google.common.base.MoreObjects.toStringHelper;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.util.concurrent.Futures.immediateFuture;
 import static io.prestosql.execution.buffer.BufferState.FAILED;
 import static io.prestosql.execution.buffer.BufferState.FINISHED;
 import static io.prestosql.execution.buffer.BufferState.FLUSHING;
@@ -303,6 +304,16 @@ public class ArbitraryOutputBuffer
         return getBuffer(bufferId).getPages(startingSequenceId, maxSize, Optional.of(masterBuffer));
     }
 
+    @Override
+    public ListenableFuture<?> waitForPages(OutputBufferId bufferId, long sequenceId)
+    {
+        requireNonNull(bufferId, "bufferId is null");
+
+        // pages are only moved from the master buffer to a client buffer once the client acknowledged its pages,
+        // so a client can't wait for pages after the ones it didn't acknowledge
+        return immediateFuture(null);
+    }
+
     @Override
     public void acknowledge(OutputBufferId bufferId, long sequenceId)
     {
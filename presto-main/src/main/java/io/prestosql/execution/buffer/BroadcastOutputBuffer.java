@@ -283,6 +283,15 @@ public class BroadcastOutputBuffer
         return getBuffer(outputBufferId).getPages(startingSequenceId, maxSize);
     }
 
+    @Override
+    public ListenableFuture<?> waitForPages(OutputBufferId outputBufferId, long sequenceId)
+    {
+        checkState(!Thread.holdsLock(this), "Can not wait for pages while holding a lock on this");
+        requireNonNull(outputBufferId, "outputBufferId is null");
+
+        return getBuffer(outputBufferId).waitForPages(sequenceId);
+    }
+
     @Override
     public void acknowledge(OutputBufferId bufferId, long sequenceId)
     {
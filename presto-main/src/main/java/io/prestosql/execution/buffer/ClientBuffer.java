@@ -68,6 +68,10 @@ class ClientBuffer
     @GuardedBy("this")
     private PendingRead pendingRead;
 
+    // completed when pages are added, for a client streaming pages it has not acknowledged yet
+    @GuardedBy("this")
+    private SettableFuture<?> pagesAddedFuture;
+
     public ClientBuffer(OutputBufferId bufferId)
     {
         this.bufferId = requireNonNull(bufferId, "bufferId is null");
@@ -106,6 +110,7 @@ class ClientBuffer
     {
         List<SerializedPageReference> removedPages;
         PendingRead pendingRead;
+        SettableFuture<?> pagesAddedFuture;
         synchronized (this) {
             removedPages = ImmutableList.copyOf(pages);
             pages.clear();
@@ -117,6 +122,8 @@ class ClientBuffer
 
             pendingRead = this.pendingRead;
             this.pendingRead = null;
+            pagesAddedFuture = this.pagesAddedFuture;
+            this.pagesAddedFuture = null;
         }
 
         removedPages.forEach(SerializedPageReference::dereferencePage);
@@ -124,11 +131,15 @@ class ClientBuffer
         if (pendingRead != null) {
             pendingRead.completeResultFutureWithEmpty();
         }
+        if (pagesAddedFuture != null) {
+            pagesAddedFuture.set(null);
+        }
     }
 
     public void enqueuePages(Collection<SerializedPageReference> pages)
     {
         PendingRead pendingRead;
+        SettableFuture<?> pagesAddedFuture;
         synchronized (this) {
             // ignore pages after no more pages is set
             // this can happen with limit queries
@@ -140,12 +151,17 @@ class ClientBuffer
 
             pendingRead = this.pendingRead;
             this.pendingRead = null;
+            pagesAddedFuture = this.pagesAddedFuture;
+            this.pagesAddedFuture = null;
         }
 
         // we just added a page, so process the pending read
         if (pendingRead != null) {
             processRead(pendingRead);
         }
+        if (pagesAddedFuture != null) {
+            pagesAddedFuture.set(null);
+        }
     }
 
     private synchronized void addPages(Collection<SerializedPageReference> pages)
@@ -204,6 +220,7 @@ class ClientBuffer
     public void setNoMorePages()
     {
         PendingRead pendingRead;
+        SettableFuture<?> pagesAddedFuture;
         synchronized (this) {
             // ignore duplicate calls
             if (noMorePages) {
@@ -214,12 +231,43 @@ class ClientBuffer
 
             pendingRead = this.pendingRead;
             this.pendingRead = null;
+            pagesAddedFuture = this.pagesAddedFuture;
+            this.pagesAddedFuture = null;
         }
 
         // there will be no more pages, so process the pending read
         if (pendingRead != null) {
             processRead(pendingRead);
         }
+        if (pagesAddedFuture != null) {
+            pagesAddedFuture.set(null);
+        }
+    }
+
+    /**
+     * Gets a future that completes when pages after {@code sequenceId} are buffered, or when there will be no more pages.
+     * Unlike {@link #getPages}, no pages are acknowledged, so a client streaming the pages can wait for more pages
+     * while the pages it already sent are kept until the next request.
+     */
+    public ListenableFuture<?> waitForPages(long sequenceId)
+    {
+        SettableFuture<?> oldPagesAddedFuture = null;
+        try {
+            synchronized (this) {
+                if (noMorePages || pagesAdded.get() > sequenceId) {
+                    return immediateFuture(null);
+                }
+                // like reads, each client only waits for one stream at a time
+                oldPagesAddedFuture = this.pagesAddedFuture;
+                this.pagesAddedFuture = SettableFuture.create();
+                return pagesAddedFuture;
+            }
+        }
+        finally {
+            if (oldPagesAddedFuture != null) {
+                oldPagesAddedFuture.set(null);
+            }
+        }
     }
 
     public void loadPagesIfNecessary(PagesSupplier pagesSupplier)
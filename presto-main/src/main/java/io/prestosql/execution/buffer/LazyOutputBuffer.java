@@ -204,6 +204,20 @@ public class LazyOutputBuffer
         return outputBuffer.get(bufferId, token, maxSize);
     }
 
+    @Override
+    public ListenableFuture<?> waitForPages(OutputBufferId bufferId, long token)
+    {
+        OutputBuffer outputBuffer;
+        synchronized (this) {
+            if (delegate == null) {
+                // pages are only streamed after the first read, which returns when the buffer is created
+                return immediateFuture(null);
+            }
+            outputBuffer = delegate;
+        }
+        return outputBuffer.waitForPages(bufferId, token);
+    }
+
     @Override
     public void acknowledge(OutputBufferId bufferId, long token)
     {
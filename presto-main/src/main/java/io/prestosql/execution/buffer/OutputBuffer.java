@@ -89,6 +89,12 @@ public interface OutputBuffer
      */
     ListenableFuture<BufferResult> get(OutputBufferId bufferId, long token, DataSize maxSize);
 
+    /**
+     * Gets a future that completes when pages after {@code token} can be read from the output buffer,
+     * or when there will be no more pages. No pages are acknowledged.
+     */
+    ListenableFuture<?> waitForPages(OutputBufferId bufferId, long token);
+
     /**
      * Acknowledges the previously received pages from the output buffer.
      */
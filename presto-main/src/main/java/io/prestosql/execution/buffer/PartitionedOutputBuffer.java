@@ -261,6 +261,14 @@ public class PartitionedOutputBuffer
         return partitions.get(outputBufferId.getId()).getPages(startingSequenceId, maxSize);
     }
 
+    @Override
+    public ListenableFuture<?> waitForPages(OutputBufferId outputBufferId, long sequenceId)
+    {
+        requireNonNull(outputBufferId, "outputBufferId is null");
+
+        return partitions.get(outputBufferId.getId()).waitForPages(sequenceId);
+    }
+
     @Override
     public void acknowledge(OutputBufferId outputBufferId, long sequenceId)
     {
@@ -15,6 +15,7 @@
 package io.prestosql.execution.resourcegroups;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.collect.ImmutableList;
 import io.airlift.json.ObjectMapperProvider;
@@ -45,9 +46,12 @@ import org.weakref.jmx.Managed;
 import javax.annotation.concurrent.GuardedBy;
 import javax.annotation.concurrent.ThreadSafe;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
@@ -57,7 +61,7 @@ import java.util.PriorityQueue;
 import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.Executor;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.locks.Lock;
 import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
@@ -71,6 +75,7 @@ import static com.google.common.math.LongMath.saturatedSubtract;
 import static io.prestosql.server.QueryStateInfo.createQueryStateInfo;
 import static io.prestosql.spi.ErrorType.USER_ERROR;
 import static io.prestosql.spi.StandardErrorCode.GENERIC_INSUFFICIENT_RESOURCES;
+import static io.prestosql.statestore.StateStoreConstants.RESOURCE_GROUP_SLOTS_COLLECTION_NAME;
 import static java.util.Objects.requireNonNull;
 
 /**
@@ -112,6 +117,9 @@ public class DistributedResourceGroupTemp
     private static final ObjectMapper MAPPER = new ObjectMapperProvider().get();
     private static final String DASH = "-";
     private static final String RESOURCE_AGGR_STATS = "resourceaggrstats";
+    private static final TypeReference<HashMap<String, Integer>> SLOTS_TYPE = new TypeReference<HashMap<String, Integer>>() {};
+    private static final int MAX_SLOT_UPDATE_ATTEMPTS = 10;
+    private static final long MAX_SLOT_UPDATE_BACKOFF_MILLIS = 32L;
 
     // Local variables represent value in the current coordinator
     @GuardedBy("root")
@@ -354,6 +362,13 @@ public class DistributedResourceGroupTemp
     {
         checkState(Thread.holdsLock(root), "Must hold lock to start a query");
         synchronized (root) {
+            if (!reserveRunningSlots()) {
+                // another coordinator took the last slot since the capacity was checked, keep the query queued
+                if (!localQueuedQueries.contains(query)) {
+                    enqueueQuery(query);
+                }
+                return;
+            }
             executor.execute(query::startWaitingForResources);
             while (query.getBasicQueryInfo().getState() == QueryState.QUEUED) {
                 // wait for query to be started
@@ -384,6 +399,7 @@ public class DistributedResourceGroupTemp
 
             if (localRunningQueries.contains(query)) {
                 localRunningQueries.remove(query);
+                releaseRunningSlots();
             }
             else {
                 localQueuedQueries.remove(query);
@@ -563,30 +579,15 @@ public class DistributedResourceGroupTemp
                 SharedQueryState nextQuery = globalQueuedQueries.peek();
                 for (ManagedQueryExecution localQuery : localQueuedQueries) {
                     if (nextQuery.getBasicQueryInfo().getQueryId().equals(localQuery.getBasicQueryInfo().getQueryId())) {
-                        Lock lock = stateStore.getLock(id.toString());
-                        boolean locked = false;
-                        try {
-                            locked = lock.tryLock(MILLISECONDS_PER_SECOND, TimeUnit.MILLISECONDS);
-                            if (locked) {
-                                // Get the most recent cached state store status and check canRunMore again
-                                // Avoid the race condition that state store is updated by other process
-                                // Make sure queued query start is synchronized
-                                DistributedResourceGroupUtils.mapCachedStates();
-                                if (canRunMore()) {
-                                    startInBackground(localQuery);
-                                    return true;
-                                }
-                            }
-                            return false;
-                        }
-                        catch (InterruptedException | RuntimeException e) {
-                            return false;
-                        }
-                        finally {
-                            if (locked) {
-                                lock.unlock();
-                            }
+                        // Get the most recent cached state store status and check canRunMore again.
+                        // Running slots are reserved with conditional updates of the state store when starting the query,
+                        // so coordinators starting queries at the same time cannot exceed the concurrency limits
+                        DistributedResourceGroupUtils.mapCachedStates();
+                        if (canRunMore()) {
+                            startInBackground(localQuery);
+                            return localRunningQueries.contains(localQuery);
                         }
+                        return false;
                     }
                 }
             }
@@ -820,6 +821,127 @@ public class DistributedResourceGroupTemp
         }
     }
 
+    /**
+     * Reserve a running slot for a query in this group and all its ancestors.
+     * <p>
+     * The running slots of a group are stored in the state store as the number of queries each coordinator runs in
+     * the group and its descendants. They are updated with conditional replaces, so that coordinators starting
+     * queries at the same time can't exceed the hard concurrency limits, without taking a cluster wide lock.
+     *
+     * @return true if a slot was reserved in every group from this group up to the root
+     */
+    private boolean reserveRunningSlots()
+    {
+        List<DistributedResourceGroupTemp> reservedGroups = new ArrayList<>();
+        try {
+            DistributedResourceGroupTemp group = this;
+            while (group != null) {
+                if (!group.updateRunningSlots(1, true)) {
+                    for (DistributedResourceGroupTemp reservedGroup : reservedGroups) {
+                        reservedGroup.updateRunningSlots(0, false);
+                    }
+                    return false;
+                }
+                reservedGroups.add(group);
+                group = (DistributedResourceGroupTemp) group.parent.orElse(null);
+            }
+            return true;
+        }
+        catch (RuntimeException e) {
+            LOG.warn("Error reserving running slot in resource group %s: %s", id, e.getMessage());
+            return false;
+        }
+    }
+
+    private void releaseRunningSlots()
+    {
+        try {
+            DistributedResourceGroupTemp group = this;
+            while (group != null) {
+                group.updateRunningSlots(0, false);
+                group = (DistributedResourceGroupTemp) group.parent.orElse(null);
+            }
+        }
+        catch (RuntimeException e) {
+            // the slots are corrected with the next reservation or release of this coordinator
+            LOG.warn("Error releasing running slot in resource group %s: %s", id, e.getMessage());
+        }
+    }
+
+    /**
+     * Set the running slots of the current coordinator in this group to the number of its queries running in the group
+     * and its descendants, plus the additional slots to reserve
+     *
+     * @param additionalSlots slots to reserve on top of the running queries
+     * @param checkLimit if the update must not make the running slots of all the coordinators exceed the hard concurrency limit
+     * @return true if the running slots were updated
+     */
+    private boolean updateRunningSlots(int additionalSlots, boolean checkLimit)
+    {
+        StateMap<String, String> slotsMap = (StateMap<String, String>) stateStore.getOrCreateStateCollection(RESOURCE_GROUP_SLOTS_COLLECTION_NAME, StateCollection.Type.MAP);
+        String currentCoordinator = internalNodeManager.getCurrentNode().getHostAndPort().toString();
+        Set<String> coordinators = internalNodeManager.getCoordinators().stream()
+                .map(coordinator -> coordinator.getHostAndPort().toString())
+                .collect(Collectors.toSet());
+        int localSlots = getLocalTotalRunningQueries() + additionalSlots;
+        int limit = adjustHardConcurrency(hardConcurrencyLimit, globalCpuUsageMillis);
+        String key = id.toString();
+
+        try {
+            for (int attempt = 0; attempt < MAX_SLOT_UPDATE_ATTEMPTS; attempt++) {
+                String current = slotsMap.get(key);
+                Map<String, Integer> slots = current == null ? new HashMap<>() : MAPPER.readValue(current, SLOTS_TYPE);
+                // slots of coordinators which left the cluster are released
+                boolean changed = slots.keySet().retainAll(coordinators);
+                int otherSlots = 0;
+                for (Map.Entry<String, Integer> entry : slots.entrySet()) {
+                    if (!entry.getKey().equals(currentCoordinator)) {
+                        otherSlots += entry.getValue();
+                    }
+                }
+                if (checkLimit && otherSlots + localSlots > limit) {
+                    return false;
+                }
+                Integer previousSlots = slots.put(currentCoordinator, localSlots);
+                if (current != null && !changed && previousSlots != null && previousSlots == localSlots) {
+                    return true;
+                }
+
+                String updated = MAPPER.writeValueAsString(slots);
+                if (current == null ? slotsMap.putIfAbsent(key, updated) == null : slotsMap.replace(key, current, updated)) {
+                    return true;
+                }
+                // running slots were updated by another coordinator in between, try again with the new value
+                // after a short random backoff, so that contending coordinators don't keep colliding
+                if (attempt + 1 < MAX_SLOT_UPDATE_ATTEMPTS) {
+                    Thread.sleep(ThreadLocalRandom.current().nextLong(1, Math.min(1L << (attempt + 1), MAX_SLOT_UPDATE_BACKOFF_MILLIS) + 1));
+                }
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(String.format("Error updating running slots of resource group %s", id), e);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+
+        LOG.debug("Unable to update running slots of resource group %s after %s attempts", id, MAX_SLOT_UPDATE_ATTEMPTS);
+        return false;
+    }
+
+    /**
+     * @return number of queries the current coordinator runs in this group and its descendants
+     */
+    private int getLocalTotalRunningQueries()
+    {
+        int runningQueries = localRunningQueries.size();
+        for (BaseResourceGroup group : subGroups.values()) {
+            runningQueries += ((DistributedResourceGroupTemp) group).getLocalTotalRunningQueries();
+        }
+        return runningQueries;
+    }
+
     private String createCoordinatorCollectionName(InternalNode coordinator)
     {
         return coordinator.getHostAndPort() + DASH + RESOURCE_AGGR_STATS;
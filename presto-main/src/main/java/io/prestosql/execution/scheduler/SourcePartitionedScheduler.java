@@ -57,7 +57,9 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.base.Verify.verify;
 import static com.google.common.collect.ImmutableSet.toImmutableSet;
+import static com.google.common.util.concurrent.Futures.immediateFuture;
 import static com.google.common.util.concurrent.Futures.nonCancellationPropagating;
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
 import static io.airlift.concurrent.MoreFutures.addSuccessCallback;
 import static io.airlift.concurrent.MoreFutures.getFutureValue;
 import static io.airlift.concurrent.MoreFutures.whenAnyComplete;
@@ -266,35 +268,38 @@ public class SourcePartitionedScheduler
             else if (pendingSplits.isEmpty()) {
                 // try to get the next batch
                 if (scheduleGroup.nextSplitBatchFuture == null) {
-                    scheduleGroup.nextSplitBatchFuture = splitSource.getNextBatch(scheduleGroup.partitionHandle, lifespan, splitBatchSize - pendingSplits.size());
+                    ListenableFuture<SplitBatch> nextSplitBatchFuture = splitSource.getNextBatch(scheduleGroup.partitionHandle, lifespan, splitBatchSize - pendingSplits.size());
 
                     long start = System.nanoTime();
-                    addSuccessCallback(scheduleGroup.nextSplitBatchFuture, () -> stage.recordGetSplitTime(start));
+                    addSuccessCallback(nextSplitBatchFuture, () -> stage.recordGetSplitTime(start));
+
+                    if (applyFilter) {
+                        // add split filter to filter out split has no valid rows
+                        // filtering runs asynchronously, the scheduler is woken up once the filtered batch is ready
+                        Pair<Optional<RowExpression>, Map<Symbol, ColumnHandle>> pair = SplitFiltering.getExpression(stage);
+                        nextSplitBatchFuture = Futures.transformAsync(nextSplitBatchFuture, nextSplits -> {
+                            if (SystemSessionProperties.isSnapshotEnabled(session)) {
+                                List<Split> batchSplits = nextSplits.getSplits();
+                                // Don't apply filter to MarkerSplit
+                                if (batchSplits.size() == 1 && batchSplits.get(0).getConnectorSplit() instanceof MarkerSplit) {
+                                    return immediateFuture(nextSplits);
+                                }
+                            }
+                            return SplitFiltering.getFilteredSplitBatch(pair.getFirst(), SplitFiltering.getFullyQualifiedName(stage), pair.getSecond(),
+                                    nextSplits, heuristicIndexerManager);
+                        }, directExecutor());
+                    }
+                    scheduleGroup.nextSplitBatchFuture = nextSplitBatchFuture;
                 }
 
                 if (scheduleGroup.nextSplitBatchFuture.isDone()) {
                     SplitBatch nextSplits = getFutureValue(scheduleGroup.nextSplitBatchFuture);
                     scheduleGroup.nextSplitBatchFuture = null;
 
-                    // add split filter to filter out split has no valid rows
-                    Pair<Optional<RowExpression>, Map<Symbol, ColumnHandle>> pair = SplitFiltering.getExpression(stage);
-
-                    if (SystemSessionProperties.isSnapshotEnabled(session)) {
-                        List<Split> batchSplits = nextSplits.getSplits();
-                        // Don't apply filter to MarkerSplit
-                        if (batchSplits.size() == 1 && batchSplits.get(0).getConnectorSplit() instanceof MarkerSplit) {
-                            applyFilter = false;
-                        }
-                    }
-
-                    List<Split> filteredSplit = applyFilter ? SplitFiltering.getFilteredSplit(pair.getFirst(),
-                            SplitFiltering.getFullyQualifiedName(stage), pair.getSecond(), nextSplits, heuristicIndexerManager) : nextSplits.getSplits();
-
                     //In case of ORC small size files/splits are grouped
-                    List<Split> groupedSmallFilesList = splitSource.groupSmallSplits(filteredSplit, lifespan, maxSplitGroup);
-                    filteredSplit = groupedSmallFilesList;
+                    List<Split> groupedSmallFilesList = splitSource.groupSmallSplits(nextSplits.getSplits(), lifespan, maxSplitGroup);
 
-                    pendingSplits.addAll(filteredSplit);
+                    pendingSplits.addAll(groupedSmallFilesList);
                     if (nextSplits.isLastBatch()) {
                         if (scheduleGroup.state == ScheduleGroupState.INITIALIZED && pendingSplits.isEmpty()) {
                             // Add an empty split in case no splits have been produced for the source.
@@ -53,6 +53,7 @@ import io.prestosql.spi.connector.CatalogName;
 import io.prestosql.spi.connector.ConnectorPartitionHandle;
 import io.prestosql.spi.plan.PlanNodeId;
 import io.prestosql.split.SplitSource;
+import io.prestosql.sql.analyzer.FeaturesConfig.DynamicFilterTransport;
 import io.prestosql.sql.planner.NodePartitionMap;
 import io.prestosql.sql.planner.NodePartitioningManager;
 import io.prestosql.sql.planner.PartitioningHandle;
@@ -93,7 +94,9 @@ import static io.airlift.concurrent.MoreFutures.tryGetFutureValue;
 import static io.airlift.concurrent.MoreFutures.whenAnyComplete;
 import static io.airlift.http.client.HttpUriBuilder.uriBuilderFrom;
 import static io.prestosql.SystemSessionProperties.getConcurrentLifespansPerNode;
+import static io.prestosql.SystemSessionProperties.getDynamicFilteringTransport;
 import static io.prestosql.SystemSessionProperties.getWriterMinSize;
+import static io.prestosql.SystemSessionProperties.isEnableDynamicFiltering;
 import static io.prestosql.SystemSessionProperties.isReuseTableScanEnabled;
 import static io.prestosql.execution.BasicStageStats.aggregateBasicStageStats;
 import static io.prestosql.execution.SqlStageExecution.createSqlStageExecution;
@@ -279,6 +282,12 @@ public class SqlQueryScheduler
         this.stages = stages.stream()
                 .collect(toImmutableMap(SqlStageExecution::getStageId, identity()));
 
+        if (isEnableDynamicFiltering(session) && getDynamicFilteringTransport(session) == DynamicFilterTransport.REMOTE_TASK) {
+            // merged global dynamic filters are sent to the tasks of all the stages, the ones probing them pick them up
+            dynamicFilterService.addDynamicFilterListener(session.getQueryId().getId(),
+                    dynamicFilters -> stages.forEach(stage -> stage.addDynamicFilters(dynamicFilters)));
+        }
+
         if (isSnapshotEnabled) {
             // Snapshot: add minimum number of tasks to task list in query snapshot manager, so that we don't complete prematurely,
             // e.g. 1 task is schedule and finishes right away, before other tasks are scheduled, then snapshot manager may think
@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.prestosql.heuristicindex;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Approximate access frequency of cache keys, used by the TinyLFU admission policy of {@link IndexCache}.
+ * <p>
+ * A count-min sketch with four rows of small counters saturating at {@link #MAX_FREQUENCY}. Once the number of recorded accesses reaches
+ * ten times the width of the sketch all counters are halved, so that keys which were popular a long time
+ * ago do not stay popular forever.
+ */
+class FrequencySketch
+{
+    private static final int DEPTH = 4;
+    static final int MAX_FREQUENCY = 15;
+    private static final int[] SEEDS = {0x97cb3127, 0xc2b2ae35, 0x85ebca6b, 0x27d4eb2f};
+
+    private final byte[][] counters;
+    private final int mask;
+    private final int sampleSize;
+    private int additions;
+
+    /**
+     * @param width number of counters in each row, rounded up to a power of two
+     */
+    FrequencySketch(int width)
+    {
+        checkArgument(width > 0, "width must be positive");
+        int size = Integer.highestOneBit(width - 1) << 1;
+        if (size <= 0) {
+            size = 1;
+        }
+        this.counters = new byte[DEPTH][size];
+        this.mask = size - 1;
+        this.sampleSize = 10 * size;
+    }
+
+    public synchronized void increment(Object key)
+    {
+        int hash = spread(key.hashCode());
+        boolean added = false;
+        for (int i = 0; i < DEPTH; i++) {
+            int index = indexOf(hash, i);
+            if (counters[i][index] < MAX_FREQUENCY) {
+                counters[i][index]++;
+                added = true;
+            }
+        }
+
+        if (added && ++additions >= sampleSize) {
+            reset();
+        }
+    }
+
+    public synchronized int frequency(Object key)
+    {
+        int hash = spread(key.hashCode());
+        int frequency = MAX_FREQUENCY;
+        for (int i = 0; i < DEPTH; i++) {
+            frequency = Math.min(frequency, counters[i][indexOf(hash, i)]);
+        }
+        return frequency;
+    }
+
+    private void reset()
+    {
+        for (byte[] row : counters) {
+            for (int i = 0; i < row.length; i++) {
+                row[i] = (byte) (row[i] >>> 1);
+            }
+        }
+        additions /= 2;
+    }
+
+    private int indexOf(int hash, int row)
+    {
+        int h = (hash + SEEDS[row]) * SEEDS[row];
+        h ^= h >>> 16;
+        return h & mask;
+    }
+
+    private static int spread(int hash)
+    {
+        int h = hash * 0x9e3779b9;
+        return h ^ (h >>> 16);
+    }
+}
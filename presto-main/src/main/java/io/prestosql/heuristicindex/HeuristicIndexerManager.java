@@ -32,6 +32,7 @@ import io.prestosql.spi.metastore.HetuMetastore;
 import io.prestosql.spi.service.PropertyService;
 import io.prestosql.testing.NoOpIndexClient;
 import io.prestosql.testing.NoOpIndexWriter;
+import org.weakref.jmx.Managed;
 
 import java.io.IOException;
 import java.nio.file.Path;
@@ -42,6 +43,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.function.ToLongFunction;
 
 public class HeuristicIndexerManager
 {
@@ -83,6 +85,50 @@ public class HeuristicIndexerManager
         return SplitFiltering.getCache(indexClient);
     }
 
+    @Managed
+    public long getIndexCacheHitCount()
+    {
+        return getIndexCacheStat(IndexCache::getHitCount);
+    }
+
+    @Managed
+    public long getIndexCacheMissCount()
+    {
+        return getIndexCacheStat(IndexCache::getMissCount);
+    }
+
+    @Managed
+    public long getIndexCacheEvictionCount()
+    {
+        return getIndexCacheStat(IndexCache::getEvictionCount);
+    }
+
+    @Managed
+    public long getIndexCacheAdmissionRejectedCount()
+    {
+        return getIndexCacheStat(IndexCache::getAdmissionRejectedCount);
+    }
+
+    @Managed
+    public long getIndexCacheCachedIndexCount()
+    {
+        return getIndexCacheStat(IndexCache::getCachedIndexCount);
+    }
+
+    @Managed
+    public long getIndexCachePinnedIndexCount()
+    {
+        return getIndexCacheStat(IndexCache::getPinnedIndexCount);
+    }
+
+    private long getIndexCacheStat(ToLongFunction<IndexCache> stat)
+    {
+        if (!PropertyService.containsProperty(HetuConstant.FILTER_ENABLED) || !PropertyService.getBooleanProperty(HetuConstant.FILTER_ENABLED)) {
+            return 0;
+        }
+        return stat.applyAsLong(getIndexCache());
+    }
+
     public List<IndexRecord> getAllIndexRecordsWithUsage()
             throws IOException
     {
@@ -18,6 +18,7 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
+import com.google.common.cache.RemovalNotification;
 import com.google.common.collect.ImmutableList;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import io.airlift.log.Logger;
@@ -33,22 +34,26 @@ import io.prestosql.spi.service.PropertyService;
 import org.eclipse.jetty.util.URIUtil;
 
 import java.io.IOException;
+import java.lang.ref.WeakReference;
 import java.net.URI;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static io.prestosql.spi.HetuConstant.KILOBYTE;
 import static io.prestosql.spi.heuristicindex.IndexCacheKey.LAST_MODIFIED_TIME_PLACE_HOLDER;
@@ -58,6 +63,7 @@ public class IndexCache
     private static final Logger LOG = Logger.get(IndexCache.class);
     private static final ThreadFactory threadFactory = new ThreadFactoryBuilder().setNameFormat("Main-IndexCache-pool-%d").setDaemon(true).build();
     protected static final List<String> INDEX_TYPES = ImmutableList.of("BLOOM", "MINMAX");
+    private static final int FREQUENCY_SKETCH_WIDTH = 1 << 16;
 
     private static ScheduledExecutorService executor;
 
@@ -65,8 +71,23 @@ public class IndexCache
     private LoadingCache<IndexCacheKey, List<IndexMetadata>> cache;
     private List<IndexRecord> indexRecords;
 
+    private final CacheLoader<IndexCacheKey, List<IndexMetadata>> loader;
+    // TinyLFU admission: once the cache is full, a missing key is only loaded if it is used more often than the entry it would evict
+    private final FrequencySketch frequencySketch = new FrequencySketch(FREQUENCY_SKETCH_WIDTH);
+    private final AtomicLong admissionRejectedCount = new AtomicLong();
+    private boolean admissionEnabled;
+    private long maxWeight;
+    // weights of the cached entries in LRU order, mirrors the eviction order of the cache so the eviction victim is known
+    private final Map<IndexCacheKey, ResidentEntry> residentWeights = new LinkedHashMap<>(16, 0.75f, true);
+    // total weight of residentWeights, guarded by residentWeights
+    private long residentWeight;
+    // indices preloaded at server start are pinned: they are kept outside of the cache, never evicted and only dropped or reloaded with their index
+    private final Map<IndexCacheKey, List<IndexMetadata>> pinnedIndices = new ConcurrentHashMap<>();
+    private final Set<String> pinnedIndexNames = ConcurrentHashMap.newKeySet();
+
     public IndexCache(CacheLoader loader, IndexClient indexClient)
     {
+        this.loader = loader;
         // If the static variables have not been initialized
         if (PropertyService.getBooleanProperty(HetuConstant.FILTER_ENABLED)) {
             loadDelay = PropertyService.getDurationProperty(HetuConstant.FILTER_CACHE_LOADING_DELAY).toMillis();
@@ -74,28 +95,24 @@ public class IndexCache
             long refreshRate = Math.max(loadDelay / 2, 5000L);
             int numThreads = Math.min(Runtime.getRuntime().availableProcessors(), PropertyService.getLongProperty(HetuConstant.FILTER_CACHE_LOADING_THREADS).intValue());
             executor = Executors.newScheduledThreadPool(numThreads, threadFactory);
+            admissionEnabled = PropertyService.containsProperty(HetuConstant.FILTER_CACHE_ADMISSION_ENABLED)
+                    && PropertyService.getBooleanProperty(HetuConstant.FILTER_CACHE_ADMISSION_ENABLED);
+            maxWeight = PropertyService.getLongProperty(HetuConstant.FILTER_CACHE_MAX_MEMORY);
             CacheBuilder<IndexCacheKey, List<IndexMetadata>> cacheBuilder = CacheBuilder.newBuilder()
-                    .removalListener(e -> {
-                        try {
-                            if (!((IndexCacheKey) e.getKey()).skipCloseIndex()) {
-                                for (IndexMetadata i : ((List<IndexMetadata>) e.getValue())) {
-                                    i.getIndex().close();
-                                }
-                            }
-                        }
-                        catch (IOException ioException) {
-                            LOG.debug(ioException, "Failed to close index:", e);
-                        }
-                    })
+                    .recordStats()
+                    // a single segment evicts in global LRU order, the same order as residentWeights
+                    .concurrencyLevel(1)
+                    .removalListener(this::onRemoval)
                     .expireAfterWrite(PropertyService.getDurationProperty(HetuConstant.FILTER_CACHE_TTL).toMillis(), TimeUnit.MILLISECONDS)
-                    .maximumWeight(PropertyService.getLongProperty(HetuConstant.FILTER_CACHE_MAX_MEMORY))
+                    .maximumWeight(maxWeight)
                     .weigher((indexCacheKey, indices) -> {
                         int memorySize = 0;
                         for (IndexMetadata indexMetadata : indices) {
                             // HetuConstant.FILTER_CACHE_MAX_MEMORY is set in KBs
-                            // convert index size to KB
-                            memorySize += (indexMetadata.getIndex().getMemoryUsage() / KILOBYTE);
+                            // convert index size to KB, rounding up so that indexes mostly kept off heap still count
+                            memorySize += (indexMetadata.getIndex().getMemoryUsage() + KILOBYTE - 1) / KILOBYTE;
                         }
+                        putWeight(indexCacheKey, indices, memorySize);
                         return memorySize;
                     });
             if (PropertyService.getBooleanProperty(HetuConstant.FILTER_CACHE_SOFT_REFERENCE)) {
@@ -123,7 +140,9 @@ public class IndexCache
     public void readUsage(HashMap<IndexRecord, Long> indexRecordMemoryUse, HashMap<IndexRecord, Long> indexRecordDiskUse)
     {
         try {
-            for (Map.Entry<IndexCacheKey, List<IndexMetadata>> entry : cache.asMap().entrySet()) {
+            List<Map.Entry<IndexCacheKey, List<IndexMetadata>>> entries = new ArrayList<>(cache.asMap().entrySet());
+            entries.addAll(pinnedIndices.entrySet());
+            for (Map.Entry<IndexCacheKey, List<IndexMetadata>> entry : entries) {
                 IndexRecord curRecord = entry.getKey().getRecord();
                 if (indexRecordMemoryUse.containsKey(curRecord)) {
                     for (IndexMetadata indexMetadata : entry.getValue()) {
@@ -166,7 +185,7 @@ public class IndexCache
                     if (oldIndexMap.get(newIndexRecord.name) != newIndexRecord.lastModifiedTime) {
                         // update operation
                         updated = true;
-                        if (newIndexRecord.isAutoloadEnabled()) {
+                        if (newIndexRecord.isAutoloadEnabled() || pinnedIndexNames.contains(newIndexRecord.name)) {
                             evictFromCache(newIndexRecord);
                             preloadIndex(newIndexRecord);
                             LOG.debug("Index {%s} has been updated in cache.", newIndexRecord);
@@ -189,6 +208,7 @@ public class IndexCache
                 if (!newIndexMap.containsKey(oldIndexRecord.name)) {
                     // drop operation
                     dropped = true;
+                    pinnedIndexNames.remove(oldIndexRecord.name);
                     evictFromCache(oldIndexRecord);
                     LOG.debug("Index {%s} has been evicted from cache because the index has been dropped.", oldIndexRecord);
                 }
@@ -198,6 +218,16 @@ public class IndexCache
         return (dropped || created || updated);
     }
 
+    /**
+     * Preload the index and keep it in memory until it is dropped, regardless of the cache size limit and TTL.
+     * Pinned indices are reloaded when they are updated.
+     */
+    public void pinIndex(IndexRecord record)
+    {
+        pinnedIndexNames.add(record.name);
+        preloadIndex(record);
+    }
+
     public void preloadIndex(IndexRecord record)
     {
         String table = record.qualifiedTable;
@@ -208,11 +238,14 @@ public class IndexCache
         String filterKeyPath = table + "/" + column + "/" + type;
         IndexCacheKey filterKey = new IndexCacheKey(filterKeyPath, LAST_MODIFIED_TIME_PLACE_HOLDER, record, level);
         filterKey.setNoCloseFlag(true);
+        boolean pinned = pinnedIndexNames.contains(record.name);
+        Map<IndexCacheKey, List<IndexMetadata>> target = pinned ? pinnedIndices : cache.asMap();
         executor.schedule(() -> {
             List<IndexMetadata> allLoaded;
             try {
                 // Load index for the whole table with dummy last modified time first
-                allLoaded = cache.get(filterKey);
+                // pinned indices bypass the cache so that they are not weighed, expired or evicted
+                allLoaded = pinned ? loader.load(filterKey) : cache.get(filterKey);
                 // Then 1. replace the filterKey with the actual last modified time read from index
                 // 2. for PARTITION and STRIPE index, the loaded whole table index should also be broken to stripe/partition indices
                 switch (level) {
@@ -221,8 +254,8 @@ public class IndexCache
                         for (IndexMetadata index : allLoaded) {
                             String indexUri = index.getUri();
                             IndexCacheKey newKey = new IndexCacheKey(filterKeyPath + indexUri, index.getLastModifiedTime(), record);
-                            cache.asMap().putIfAbsent(newKey, new ArrayList<>());
-                            cache.asMap().get(newKey).add(index);
+                            target.putIfAbsent(newKey, new ArrayList<>());
+                            target.get(newKey).add(index);
                         }
                         cache.invalidate(filterKey);
                         break;
@@ -240,17 +273,20 @@ public class IndexCache
                             }
                             if (partition != null) {
                                 IndexCacheKey newKey = new IndexCacheKey(filterKeyPath + "/" + partition, index.getLastModifiedTime(), record);
-                                cache.asMap().putIfAbsent(newKey, new ArrayList<>());
-                                cache.asMap().get(newKey).add(index);
+                                target.putIfAbsent(newKey, new ArrayList<>());
+                                target.get(newKey).add(index);
                             }
                         }
                         cache.invalidate(filterKey);
                         break;
                     case TABLE:
-                        // no need to break index, and lastModifiedTime is not used for TABLE level. no need to do anything
+                        // no need to break index, and lastModifiedTime is not used for TABLE level
+                        if (pinned) {
+                            pinnedIndices.put(filterKey, allLoaded);
+                        }
                 }
             }
-            catch (ExecutionException e) {
+            catch (Exception e) {
                 LOG.debug("Failed to load into cache: " + filterKey, e);
             }
         }, 0, TimeUnit.MILLISECONDS);
@@ -281,10 +317,30 @@ public class IndexCache
             // check if cache contains the key
             List<IndexMetadata> indexOfThisType;
 
+            frequencySketch.increment(filterKey);
+            indexOfThisType = pinnedIndices.get(filterKey);
+            if (indexOfThisType != null) {
+                for (IndexMetadata index : indexOfThisType) {
+                    if (index.getLastModifiedTime() != lastModifiedTime) {
+                        // the pinned index is outdated, fall back to loading the index through the cache
+                        closeIndices(pinnedIndices.remove(filterKey));
+                        indexOfThisType = null;
+                        break;
+                    }
+                }
+                if (indexOfThisType != null) {
+                    indices.addAll(indexOfThisType);
+                    continue;
+                }
+            }
+
             // if cache didn't contain the key, it has not been loaded, load it asynchronously
             indexOfThisType = cache.getIfPresent(filterKey);
 
             if (indexOfThisType == null) {
+                if (!admit(filterKey)) {
+                    continue;
+                }
                 executor.schedule(() -> {
                     try {
                         cache.get(filterKey);
@@ -301,6 +357,7 @@ public class IndexCache
                 }, loadDelay, TimeUnit.MILLISECONDS);
             }
             else {
+                touch(filterKey);
                 // if key was present in cache, we still need to check if the index is validate based on the lastModifiedTime
                 // the index is only valid if the lastModifiedTime of the split matches the index's lastModifiedTime
                 for (IndexMetadata index : indexOfThisType) {
@@ -359,10 +416,19 @@ public class IndexCache
         // check if cache contains the key
         List<IndexMetadata> partitionIndexList;
 
+        frequencySketch.increment(cacheKey);
+        partitionIndexList = pinnedIndices.get(cacheKey);
+        if (partitionIndexList != null) {
+            return partitionIndexList;
+        }
+
         // if cache didn't contain the key, it has not been loaded, load it asynchronously
         partitionIndexList = cache.getIfPresent(cacheKey);
 
-        if (partitionIndexList == null) {
+        if (partitionIndexList != null) {
+            touch(cacheKey);
+        }
+        else if (admit(cacheKey)) {
             executor.schedule(() -> {
                 try {
                     cache.get(cacheKey);
@@ -381,12 +447,141 @@ public class IndexCache
         return partitionIndexList;
     }
 
+    private boolean admit(IndexCacheKey candidate)
+    {
+        if (!admissionEnabled) {
+            return true;
+        }
+        IndexCacheKey victim;
+        synchronized (residentWeights) {
+            // admit while there is still room for an entry of average size, nothing needs to be evicted for it
+            if (residentWeights.isEmpty() || maxWeight - residentWeight >= residentWeight / residentWeights.size()) {
+                return true;
+            }
+            // the least recently used entry is the one the cache evicts next
+            victim = residentWeights.keySet().iterator().next();
+        }
+        if (victim.equals(candidate)) {
+            return true;
+        }
+
+        // a saturated candidate can't beat a saturated victim on frequency, let it in anyway
+        int candidateFrequency = frequencySketch.frequency(candidate);
+        if (candidateFrequency > frequencySketch.frequency(victim) || candidateFrequency == FrequencySketch.MAX_FREQUENCY) {
+            return true;
+        }
+        admissionRejectedCount.incrementAndGet();
+        return false;
+    }
+
+    @VisibleForTesting
+    void onRemoval(RemovalNotification<IndexCacheKey, List<IndexMetadata>> notification)
+    {
+        // removal notifications are delivered after the write that caused them, by then the key may
+        // already hold a new value, e.g. when an evicted entry is reloaded, whose weight must be kept
+        removeWeight(notification.getKey(), notification.getValue());
+        try {
+            if (notification.getValue() != null && !notification.getKey().skipCloseIndex()) {
+                for (IndexMetadata i : notification.getValue()) {
+                    i.getIndex().close();
+                }
+            }
+        }
+        catch (IOException ioException) {
+            LOG.debug(ioException, "Failed to close index:", notification);
+        }
+    }
+
+    private void putWeight(IndexCacheKey key, List<IndexMetadata> value, int weight)
+    {
+        synchronized (residentWeights) {
+            ResidentEntry previous = residentWeights.put(key, new ResidentEntry(value, weight));
+            residentWeight += weight - (previous == null ? 0 : previous.weight);
+        }
+    }
+
+    private void removeWeight(IndexCacheKey key, List<IndexMetadata> value)
+    {
+        synchronized (residentWeights) {
+            ResidentEntry resident = residentWeights.get(key);
+            // only remove the weight of the value that was removed from the cache, a collected soft value is null
+            if (resident != null && resident.value.get() == value) {
+                residentWeights.remove(key);
+                residentWeight -= resident.weight;
+            }
+        }
+    }
+
+    private void touch(IndexCacheKey key)
+    {
+        synchronized (residentWeights) {
+            // a get moves the key to the end of the access order, like the cache does on a hit
+            residentWeights.get(key);
+        }
+    }
+
+    @VisibleForTesting
+    protected void setAdmissionEnabled(boolean admissionEnabled)
+    {
+        this.admissionEnabled = admissionEnabled;
+    }
+
     @VisibleForTesting
     protected long getCacheSize()
     {
         return cache.size();
     }
 
+    @VisibleForTesting
+    protected long getPinnedSize()
+    {
+        return pinnedIndices.size();
+    }
+
+    @VisibleForTesting
+    protected Map<IndexCacheKey, List<IndexMetadata>> getCachedIndices()
+    {
+        return cache.asMap();
+    }
+
+    @VisibleForTesting
+    protected long getResidentWeight()
+    {
+        synchronized (residentWeights) {
+            return residentWeight;
+        }
+    }
+
+    public long getHitCount()
+    {
+        return cache.stats().hitCount();
+    }
+
+    public long getMissCount()
+    {
+        return cache.stats().missCount();
+    }
+
+    public long getEvictionCount()
+    {
+        return cache.stats().evictionCount();
+    }
+
+    public long getAdmissionRejectedCount()
+    {
+        return admissionRejectedCount.get();
+    }
+
+    public long getCachedIndexCount()
+    {
+        return cache.size();
+    }
+
+    public long getPinnedIndexCount()
+    {
+        return pinnedIndices.size();
+    }
+
     private void evictFromCache(IndexRecord record)
     {
         String recordInCacheKey = String.format("%s/%s/%s", record.qualifiedTable, String.join(",", record.columns), record.indexType);
@@ -395,5 +590,38 @@ public class IndexCache
                 cache.invalidate(key);
             }
         }
+        for (IndexCacheKey key : pinnedIndices.keySet()) {
+            if (key.getPath().startsWith(recordInCacheKey)) {
+                closeIndices(pinnedIndices.remove(key));
+            }
+        }
+    }
+
+    private static void closeIndices(List<IndexMetadata> indices)
+    {
+        if (indices == null) {
+            return;
+        }
+        for (IndexMetadata indexMetadata : indices) {
+            try {
+                indexMetadata.getIndex().close();
+            }
+            catch (IOException e) {
+                LOG.debug(e, "Failed to close index: %s", indexMetadata.getUri());
+            }
+        }
+    }
+
+    private static class ResidentEntry
+    {
+        // the value is only referenced weakly, so that soft values can still be collected
+        private final WeakReference<List<IndexMetadata>> value;
+        private final int weight;
+
+        ResidentEntry(List<IndexMetadata> value, int weight)
+        {
+            this.value = new WeakReference<>(value);
+            this.weight = weight;
+        }
     }
 }
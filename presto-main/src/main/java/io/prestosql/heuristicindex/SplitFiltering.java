@@ -14,9 +14,13 @@
  */
 package io.prestosql.heuristicindex;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.cache.CacheLoader;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import io.airlift.concurrent.BoundedExecutor;
 import io.airlift.log.Logger;
 import io.prestosql.execution.SqlStageExecution;
 import io.prestosql.metadata.Split;
@@ -60,6 +64,7 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
@@ -67,11 +72,17 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
+import static com.google.common.util.concurrent.MoreExecutors.listeningDecorator;
+import static io.airlift.concurrent.MoreFutures.getFutureValue;
+import static io.airlift.concurrent.Threads.daemonThreadsNamed;
 import static io.prestosql.spi.function.OperatorType.IS_DISTINCT_FROM;
 import static io.prestosql.spi.heuristicindex.SerializationUtils.deserializeStripeSymbol;
+import static java.util.concurrent.Executors.newCachedThreadPool;
 
 public class SplitFiltering
 {
@@ -83,6 +94,9 @@ public class SplitFiltering
     private static final String MAX_MODIFIED_TIME = "__hetu__maxmodifiedtime";
     private static final String TABLE_LEVEL_KEY = "__index__is__table__level__";
     private static final String PRELOAD_ALL_KEY = "ALL";
+    private static final ListeningExecutorService filterExecutor = listeningDecorator(newCachedThreadPool(daemonThreadsNamed("split-filtering-%s")));
+    // bounds the number of index lookups running at once, split batches waiting for their lookups don't count against it
+    private static final Executor lookupExecutor = new BoundedExecutor(filterExecutor, Runtime.getRuntime().availableProcessors());
 
     private static IndexCache indexCache;
 
@@ -133,10 +147,20 @@ public class SplitFiltering
         for (IndexRecord record : indexToPreload) {
             LOG.info("Preloading index for split filtering: " + record);
             CreateIndexMetadata.Level indexLevel = CreateIndexMetadata.Level.valueOf(record.getProperty(CreateIndexMetadata.LEVEL_PROP_KEY).toUpperCase(Locale.ROOT));
-            indexCache.preloadIndex(record);
+            indexCache.pinIndex(record);
         }
     }
 
+    /**
+     * Filter the splits of the batch on a dedicated executor, so the scheduler can keep scheduling
+     * the splits it already has while the indices are evaluated.
+     */
+    public static ListenableFuture<SplitSource.SplitBatch> getFilteredSplitBatch(Optional<RowExpression> expression, Optional<String> tableName, Map<Symbol, ColumnHandle> assignments,
+            SplitSource.SplitBatch nextSplits, HeuristicIndexerManager heuristicIndexerManager)
+    {
+        return filterExecutor.submit(() -> new SplitSource.SplitBatch(getFilteredSplit(expression, tableName, assignments, nextSplits, heuristicIndexerManager), nextSplits.isLastBatch()));
+    }
+
     public static List<Split> getFilteredSplit(Optional<RowExpression> expression, Optional<String> tableName, Map<Symbol, ColumnHandle> assignments,
             SplitSource.SplitBatch nextSplits, HeuristicIndexerManager heuristicIndexerManager)
     {
@@ -184,12 +208,14 @@ public class SplitFiltering
             splitsToReturn = filterUsingInvertedIndex(expression.get(), allSplits, fullQualifiedTableName, referencedColumns, forwardIndexRecords, heuristicIndexerManager);
         }
         else if (!invertedIndexRecords.isEmpty() && forwardIndexRecords.isEmpty()) {
-            splitsToReturn = filterUsingForwardIndex(expression.get(), allSplits, fullQualifiedTableName, referencedColumns, invertedIndexRecords, heuristicIndexerManager);
+            splitsToReturn = filterUsingForwardIndex(expression.get(), allSplits, fullQualifiedTableName, referencedColumns, invertedIndexRecords, heuristicIndexerManager,
+                    getCache(heuristicIndexerManager.getIndexClient()));
         }
         else {
             // filter using both indexes and return the smallest set of splits.
             List<Split> splitsToReturn1 = filterUsingInvertedIndex(expression.get(), allSplits, fullQualifiedTableName, referencedColumns, forwardIndexRecords, heuristicIndexerManager);
-            List<Split> splitsToReturn2 = filterUsingForwardIndex(expression.get(), allSplits, fullQualifiedTableName, referencedColumns, invertedIndexRecords, heuristicIndexerManager);
+            List<Split> splitsToReturn2 = filterUsingForwardIndex(expression.get(), allSplits, fullQualifiedTableName, referencedColumns, invertedIndexRecords, heuristicIndexerManager,
+                    getCache(heuristicIndexerManager.getIndexClient()));
             splitsToReturn = splitsToReturn1.size() < splitsToReturn2.size() ? splitsToReturn1 : splitsToReturn2;
         }
 
@@ -201,49 +227,80 @@ public class SplitFiltering
         return splitsToReturn;
     }
 
-    private static List<Split> filterUsingForwardIndex(RowExpression expression, List<Split> inputSplits, String fullQualifiedTableName, Set<String> referencedColumns, Map<String, IndexRecord> indexRecordKeyToRecordMap, HeuristicIndexerManager indexerManager)
+    @VisibleForTesting
+    static List<Split> filterUsingForwardIndex(RowExpression expression, List<Split> inputSplits, String fullQualifiedTableName, Set<String> referencedColumns, Map<String, IndexRecord> indexRecordKeyToRecordMap, HeuristicIndexerManager indexerManager,
+            IndexCache cache)
     {
-        return inputSplits.parallelStream()
-                .filter(split -> {
-                    Map<String, List<IndexMetadata>> allIndices = new HashMap<>();
+        // all splits of a file are covered by the same indices, so look them up once per file
+        Map<String, List<Split>> fileSplitMap = new LinkedHashMap<>();
+        for (Split split : inputSplits) {
+            fileSplitMap.computeIfAbsent(split.getConnectorSplit().getFilePath(), k -> new ArrayList<>()).add(split);
+        }
 
-                    for (String col : referencedColumns) {
-                        List<IndexMetadata> splitIndices = getCache(indexerManager.getIndexClient()).getIndices(fullQualifiedTableName, col, split, indexRecordKeyToRecordMap);
+        List<CompletableFuture<List<Split>>> fileFilterFutures = new ArrayList<>(fileSplitMap.size());
+        for (List<Split> fileSplits : fileSplitMap.values()) {
+            fileFilterFutures.add(CompletableFuture.supplyAsync(
+                    () -> filterFileUsingForwardIndex(expression, fileSplits, fullQualifiedTableName, referencedColumns, indexRecordKeyToRecordMap, indexerManager, cache),
+                    lookupExecutor));
+        }
 
-                        if (splitIndices == null || splitIndices.size() == 0) {
-                            // no index found, keep split
-                            continue;
-                        }
+        List<Split> filteredSplits = new ArrayList<>(inputSplits.size());
+        for (CompletableFuture<List<Split>> fileFilterFuture : fileFilterFutures) {
+            filteredSplits.addAll(getFutureValue(fileFilterFuture));
+        }
+        return filteredSplits;
+    }
 
-                        // Group each type of index together and make sure they are sorted in ascending order
-                        // with respect to their SplitStart
-                        Map<String, List<IndexMetadata>> indexGroupMap = new HashMap<>();
-                        for (IndexMetadata splitIndex : splitIndices) {
-                            List<IndexMetadata> indexGroup = indexGroupMap.computeIfAbsent(splitIndex.getIndex().getId(), k -> new ArrayList<>());
-                            insert(indexGroup, splitIndex);
-                        }
+    private static List<Split> filterFileUsingForwardIndex(RowExpression expression, List<Split> fileSplits, String fullQualifiedTableName, Set<String> referencedColumns, Map<String, IndexRecord> indexRecordKeyToRecordMap, HeuristicIndexerManager indexerManager,
+            IndexCache cache)
+    {
+        // col -> index type -> indices of the file, with the index types in evaluation order
+        Map<String, Map<String, List<IndexMetadata>>> fileIndices = new HashMap<>();
+        for (String col : referencedColumns) {
+            List<IndexMetadata> splitIndices = cache.getIndices(fullQualifiedTableName, col, fileSplits.get(0), indexRecordKeyToRecordMap);
+
+            if (splitIndices == null || splitIndices.size() == 0) {
+                // no index found, keep split
+                continue;
+            }
 
-                        List<String> sortedIndexTypeKeys = new LinkedList<>(indexGroupMap.keySet());
-                        sortedIndexTypeKeys.sort(Comparator.comparingInt(e -> FORWARD_INDEX.contains(e) ? FORWARD_INDEX.indexOf(e) : Integer.MAX_VALUE));
+            // Group each type of index together and make sure they are sorted in ascending order
+            // with respect to their SplitStart
+            Map<String, List<IndexMetadata>> indexGroupMap = new HashMap<>();
+            for (IndexMetadata splitIndex : splitIndices) {
+                List<IndexMetadata> indexGroup = indexGroupMap.computeIfAbsent(splitIndex.getIndex().getId(), k -> new ArrayList<>());
+                insert(indexGroup, splitIndex);
+            }
 
-                        for (String indexTypeKey : sortedIndexTypeKeys) {
-                            List<IndexMetadata> validIndices = indexGroupMap.get(indexTypeKey);
-                            if (validIndices != null) {
-                                validIndices = RangeUtil.subArray(validIndices, split.getConnectorSplit().getStartIndex(), split.getConnectorSplit().getEndIndex());
-                                List<IndexMetadata> indicesOfCol = allIndices.getOrDefault(col, new LinkedList<>());
-                                indicesOfCol.addAll(validIndices);
-                                allIndices.put(col, indicesOfCol);
-                            }
-                        }
-                    }
+            List<String> sortedIndexTypeKeys = new LinkedList<>(indexGroupMap.keySet());
+            sortedIndexTypeKeys.sort(Comparator.comparingInt(e -> FORWARD_INDEX.contains(e) ? FORWARD_INDEX.indexOf(e) : Integer.MAX_VALUE));
 
-                    if (allIndices.isEmpty()) {
-                        return true;
-                    }
+            Map<String, List<IndexMetadata>> sortedIndexGroupMap = new LinkedHashMap<>();
+            for (String indexTypeKey : sortedIndexTypeKeys) {
+                sortedIndexGroupMap.put(indexTypeKey, indexGroupMap.get(indexTypeKey));
+            }
+            fileIndices.put(col, sortedIndexGroupMap);
+        }
 
-                    return indexerManager.getIndexFilter(allIndices).matches(expression);
-                })
-                .collect(Collectors.toList());
+        if (fileIndices.isEmpty()) {
+            return fileSplits;
+        }
+
+        List<Split> filteredSplits = new ArrayList<>(fileSplits.size());
+        for (Split split : fileSplits) {
+            Map<String, List<IndexMetadata>> allIndices = new HashMap<>();
+            for (Map.Entry<String, Map<String, List<IndexMetadata>>> colIndices : fileIndices.entrySet()) {
+                for (List<IndexMetadata> indexGroup : colIndices.getValue().values()) {
+                    List<IndexMetadata> validIndices = RangeUtil.subArray(indexGroup, split.getConnectorSplit().getStartIndex(), split.getConnectorSplit().getEndIndex());
+                    allIndices.computeIfAbsent(colIndices.getKey(), k -> new LinkedList<>()).addAll(validIndices);
+                }
+            }
+
+            if (indexerManager.getIndexFilter(allIndices).matches(expression)) {
+                filteredSplits.add(split);
+            }
+        }
+        return filteredSplits;
     }
 
     private static List<Split> filterUsingInvertedIndex(RowExpression expression, List<Split> inputSplits, String fullQualifiedTableName, Set<String> referencedColumns, Map<String, IndexRecord> indexRecordKeyToRecordMap, HeuristicIndexerManager indexerManager)
@@ -387,6 +444,8 @@ public class SplitFiltering
                 return;
             }
         }
+        // smaller than all elements
+        list.add(0, obj);
     }
 
     private static List<PlanNode> getFilterNode(SqlStageExecution stage)
@@ -356,6 +356,8 @@ public final class SessionPropertyManager
     private void loadConfigToService(HetuConfig hetuConfig)
     {
         PropertyService.setProperty(HetuConstant.FILTER_ENABLED, hetuConfig.isFilterEnabled());
+        // index creation doesn't depend on the filter being enabled
+        PropertyService.setProperty(HetuConstant.INDEX_WRITER_MAX_BUFFERED_MEMORY, hetuConfig.getIndexWriterMaxBufferedMemory().toBytes());
         if (hetuConfig.isFilterEnabled()) {
             // set the max memory in KB
             PropertyService.setProperty(HetuConstant.FILTER_CACHE_MAX_MEMORY, (long) (hetuConfig.getIndexCacheMaxMemory().getValue(KILOBYTE)));
@@ -363,6 +365,7 @@ public final class SessionPropertyManager
             PropertyService.setProperty(HetuConstant.FILTER_CACHE_LOADING_DELAY, hetuConfig.getIndexCacheLoadingDelay());
             PropertyService.setProperty(HetuConstant.FILTER_CACHE_LOADING_THREADS, hetuConfig.getIndexCacheLoadingThreads());
             PropertyService.setProperty(HetuConstant.FILTER_CACHE_SOFT_REFERENCE, hetuConfig.isIndexCacheSoftReferenceEnabled());
+            PropertyService.setProperty(HetuConstant.FILTER_CACHE_ADMISSION_ENABLED, hetuConfig.isIndexCacheAdmissionEnabled());
             PropertyService.setProperty(HetuConstant.INDEXSTORE_URI, hetuConfig.getIndexStoreUri());
             PropertyService.setProperty(HetuConstant.INDEXSTORE_FILESYSTEM_PROFILE, hetuConfig.getIndexStoreFileSystemProfile());
             PropertyService.setProperty(HetuConstant.FILTER_CACHE_AUTOLOAD_DEFAULT, hetuConfig.getIndexAutoload());
@@ -14,8 +14,12 @@
  */
 package io.prestosql.operator;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.annotations.VisibleForTesting;
 import io.airlift.log.Logger;
 import io.airlift.slice.Slice;
+import io.airlift.units.Duration;
 import io.prestosql.heuristicindex.HeuristicIndexerManager;
 import io.prestosql.spi.HetuConstant;
 import io.prestosql.spi.Page;
@@ -29,6 +33,7 @@ import io.prestosql.spi.snapshot.MarkerPage;
 import io.prestosql.spi.snapshot.RestorableConfig;
 import io.prestosql.spi.type.Type;
 import io.prestosql.spi.type.TypeUtils;
+import io.prestosql.util.Mergeable;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
@@ -44,9 +49,12 @@ import java.util.Properties;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
+import static com.google.common.base.MoreObjects.toStringHelper;
 import static com.google.common.base.Preconditions.checkState;
 import static io.prestosql.spi.heuristicindex.TypeUtils.getActualValue;
 import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
 
 //TODO-cp-I38S9O: Operator currently not supported for Snapshot
 @RestorableConfig(unsupported = true)
@@ -61,6 +69,12 @@ public class CreateIndexOperator
     private final HeuristicIndexerManager heuristicIndexerManager;
     private static final Logger LOG = Logger.get(CreateIndexOperator.class);
 
+    private long indexedRows;
+    private long indexedPages;
+    private long persistedWriters;
+    private long indexingNanos;
+    private long persistingNanos;
+
     public CreateIndexOperator(
             OperatorContext operatorContext,
             CreateIndexMetadata createIndexMetadata,
@@ -75,6 +89,7 @@ public class CreateIndexOperator
         this.levelWriter = requireNonNull(levelWriter, "levelWriter is null");
         this.persistBy = requireNonNull(persistBy, "persisted is null");
         this.finished = requireNonNull(finished, "finished is null");
+        this.operatorContext.setInfoSupplier(this::getInfo);
     }
 
     private State state = State.NEEDS_INPUT;
@@ -116,6 +131,7 @@ public class CreateIndexOperator
         }
 
         // persist index to disk if this operator is responsible for persisting a writer
+        long persistStart = System.nanoTime();
         try {
             Iterator<Map.Entry<String, IndexWriter>> iterator = levelWriter.entrySet().iterator();
             while (iterator.hasNext()) {
@@ -124,6 +140,7 @@ public class CreateIndexOperator
                     String writerKey = entry.getKey();
                     entry.getValue().persist();
                     iterator.remove(); // remove reference to writer once persisted so it can be GCed
+                    persistedWriters++;
                     LOG.debug("Writer for %s has finished persisting. Remaining: %d", writerKey, levelWriter.size());
                 }
             }
@@ -131,6 +148,12 @@ public class CreateIndexOperator
         catch (IOException e) {
             throw new UncheckedIOException("Persisting index failed: " + e.getMessage(), e);
         }
+        finally {
+            persistingNanos += System.nanoTime() - persistStart;
+        }
+        LOG.debug("%s indexed %d rows from %d pages at %.2f rows/s, persisted %d writers in %s",
+                this, indexedRows, indexedPages, getInfo().getIndexingThroughput(), persistedWriters,
+                new Duration(persistingNanos, NANOSECONDS).convertToMostSuccinctTimeUnit());
 
         synchronized (levelWriter) {
             // All writers have finished persisting
@@ -221,6 +244,7 @@ public class CreateIndexOperator
         Properties connectorMetadata = new Properties();
         connectorMetadata.put(HetuConstant.DATASOURCE_CATALOG, createIndexMetadata.getTableName().split("\\.")[0]);
         connectorMetadata.putAll(page.getPageMetadata());
+        long indexingStart = System.nanoTime();
         try {
             switch (createIndexMetadata.getCreateLevel()) {
                 case STRIPE: {
@@ -263,6 +287,11 @@ public class CreateIndexOperator
         catch (IOException e) {
             throw new UncheckedIOException(e);
         }
+        finally {
+            indexingNanos += System.nanoTime() - indexingStart;
+        }
+        indexedRows += page.getPositionCount();
+        indexedPages++;
     }
 
     @Override
@@ -295,6 +324,129 @@ public class CreateIndexOperator
         return null;
     }
 
+    @Override
+    public void close()
+            throws IOException
+    {
+        // writers are only left here if the index was not persisted, e.g. because the query failed
+        Iterator<Map.Entry<String, IndexWriter>> iterator = levelWriter.entrySet().iterator();
+        while (iterator.hasNext()) {
+            IndexWriter writer = iterator.next().getValue();
+            if (persistBy.get(writer) == this) {
+                iterator.remove();
+                writer.abort();
+            }
+        }
+    }
+
+    @VisibleForTesting
+    CreateIndexInfo getInfo()
+    {
+        return new CreateIndexInfo(
+                indexedRows,
+                indexedPages,
+                persistedWriters,
+                new Duration(indexingNanos, NANOSECONDS).convertToMostSuccinctTimeUnit(),
+                new Duration(persistingNanos, NANOSECONDS).convertToMostSuccinctTimeUnit());
+    }
+
+    /**
+     * Progress of an index build: the rows handed to the index writers so far, the time spent adding them
+     * and the time spent persisting the finished writers.
+     */
+    public static class CreateIndexInfo
+            implements Mergeable<CreateIndexInfo>, OperatorInfo
+    {
+        private final long indexedRows;
+        private final long indexedPages;
+        private final long persistedWriters;
+        private final Duration indexingWallTime;
+        private final Duration persistingWallTime;
+
+        @JsonCreator
+        public CreateIndexInfo(
+                @JsonProperty("indexedRows") long indexedRows,
+                @JsonProperty("indexedPages") long indexedPages,
+                @JsonProperty("persistedWriters") long persistedWriters,
+                @JsonProperty("indexingWallTime") Duration indexingWallTime,
+                @JsonProperty("persistingWallTime") Duration persistingWallTime)
+        {
+            this.indexedRows = indexedRows;
+            this.indexedPages = indexedPages;
+            this.persistedWriters = persistedWriters;
+            this.indexingWallTime = requireNonNull(indexingWallTime, "indexingWallTime is null");
+            this.persistingWallTime = requireNonNull(persistingWallTime, "persistingWallTime is null");
+        }
+
+        @JsonProperty
+        public long getIndexedRows()
+        {
+            return indexedRows;
+        }
+
+        @JsonProperty
+        public long getIndexedPages()
+        {
+            return indexedPages;
+        }
+
+        @JsonProperty
+        public long getPersistedWriters()
+        {
+            return persistedWriters;
+        }
+
+        @JsonProperty
+        public Duration getIndexingWallTime()
+        {
+            return indexingWallTime;
+        }
+
+        @JsonProperty
+        public Duration getPersistingWallTime()
+        {
+            return persistingWallTime;
+        }
+
+        /**
+         * @return rows added to the index writers per second of indexing wall time
+         */
+        public double getIndexingThroughput()
+        {
+            double seconds = indexingWallTime.getValue(SECONDS);
+            return seconds > 0 ? indexedRows / seconds : 0;
+        }
+
+        @Override
+        public CreateIndexInfo mergeWith(CreateIndexInfo other)
+        {
+            return new CreateIndexInfo(
+                    indexedRows + other.indexedRows,
+                    indexedPages + other.indexedPages,
+                    persistedWriters + other.persistedWriters,
+                    new Duration(indexingWallTime.getValue(NANOSECONDS) + other.indexingWallTime.getValue(NANOSECONDS), NANOSECONDS).convertToMostSuccinctTimeUnit(),
+                    new Duration(persistingWallTime.getValue(NANOSECONDS) + other.persistingWallTime.getValue(NANOSECONDS), NANOSECONDS).convertToMostSuccinctTimeUnit());
+        }
+
+        @Override
+        public boolean isFinal()
+        {
+            return true;
+        }
+
+        @Override
+        public String toString()
+        {
+            return toStringHelper(this)
+                    .add("indexedRows", indexedRows)
+                    .add("indexedPages", indexedPages)
+                    .add("persistedWriters", persistedWriters)
+                    .add("indexingWallTime", indexingWallTime)
+                    .add("persistingWallTime", persistingWallTime)
+                    .toString();
+        }
+    }
+
     public static class CreateIndexOperatorFactory
             implements OperatorFactory
     {
@@ -16,32 +16,45 @@ package io.prestosql.operator;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
 import com.google.common.primitives.Ints;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import io.prestosql.memory.context.LocalMemoryContext;
 import io.prestosql.snapshot.SingleInputSnapshotState;
+import io.prestosql.snapshot.Spillable;
 import io.prestosql.spi.Page;
 import io.prestosql.spi.block.Block;
 import io.prestosql.spi.plan.PlanNodeId;
 import io.prestosql.spi.snapshot.BlockEncodingSerdeProvider;
 import io.prestosql.spi.snapshot.RestorableConfig;
 import io.prestosql.spi.type.Type;
+import io.prestosql.spiller.PartitioningSpillerFactory;
 import io.prestosql.sql.gen.JoinCompiler;
 
 import java.io.Serializable;
+import java.nio.file.Path;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.base.Verify.verify;
 import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.collect.Iterators.singletonIterator;
+import static com.google.common.util.concurrent.Futures.immediateFuture;
+import static io.airlift.concurrent.MoreFutures.checkSuccess;
 import static io.prestosql.SystemSessionProperties.isDictionaryAggregationEnabled;
 import static io.prestosql.operator.GroupByHash.createGroupByHash;
 import static java.util.Objects.requireNonNull;
 
-// When a marker is received (needsInput returns true), inputPage and unfinishedWork must be null
-@RestorableConfig(uncapturedFields = {"inputPage", "outputChannels", "unfinishedWork", "snapshotState"})
+// When a marker is received (needsInput returns true), inputPage, unfinishedWork, outputPage must be null, and spillInProgress must be done.
+// Markers are not received once the operator is finishing, so spilledKeys and spilledRows are not captured either.
+@RestorableConfig(uncapturedFields = {"inputPage", "outputChannels", "unfinishedWork", "snapshotState",
+        "spilledGroupByHashSupplier", "outputPage", "spillInProgress", "spilledKeys", "spilledRows"})
 public class DistinctLimitOperator
-        implements Operator
+        implements Operator, Spillable
 {
     public static class DistinctLimitOperatorFactory
             implements OperatorFactory
@@ -54,6 +67,8 @@ public class DistinctLimitOperator
         private final Optional<Integer> hashChannel;
         private boolean closed;
         private final JoinCompiler joinCompiler;
+        private final boolean spillEnabled;
+        private final Optional<PartitioningSpillerFactory> partitioningSpillerFactory;
 
         public DistinctLimitOperatorFactory(
                 int operatorId,
@@ -63,6 +78,20 @@ public class DistinctLimitOperator
                 long limit,
                 Optional<Integer> hashChannel,
                 JoinCompiler joinCompiler)
+        {
+            this(operatorId, planNodeId, sourceTypes, distinctChannels, limit, hashChannel, joinCompiler, false, Optional.empty());
+        }
+
+        public DistinctLimitOperatorFactory(
+                int operatorId,
+                PlanNodeId planNodeId,
+                List<? extends Type> sourceTypes,
+                List<Integer> distinctChannels,
+                long limit,
+                Optional<Integer> hashChannel,
+                JoinCompiler joinCompiler,
+                boolean spillEnabled,
+                Optional<PartitioningSpillerFactory> partitioningSpillerFactory)
         {
             this.operatorId = operatorId;
             this.planNodeId = requireNonNull(planNodeId, "planNodeId is null");
@@ -73,6 +102,9 @@ public class DistinctLimitOperator
             this.limit = limit;
             this.hashChannel = requireNonNull(hashChannel, "hashChannel is null");
             this.joinCompiler = requireNonNull(joinCompiler, "joinCompiler is null");
+            this.spillEnabled = spillEnabled;
+            this.partitioningSpillerFactory = requireNonNull(partitioningSpillerFactory, "partitioningSpillerFactory is null");
+            checkArgument(!spillEnabled || partitioningSpillerFactory.isPresent(), "Spiller Factory is not present when spill is enabled");
         }
 
         @Override
@@ -83,7 +115,7 @@ public class DistinctLimitOperator
             List<Type> distinctTypes = distinctChannels.stream()
                     .map(sourceTypes::get)
                     .collect(toImmutableList());
-            return new DistinctLimitOperator(operatorContext, distinctChannels, distinctTypes, limit, hashChannel, joinCompiler);
+            return new DistinctLimitOperator(operatorContext, distinctChannels, distinctTypes, limit, hashChannel, joinCompiler, spillEnabled, partitioningSpillerFactory);
         }
 
         @Override
@@ -95,32 +127,58 @@ public class DistinctLimitOperator
         @Override
         public OperatorFactory duplicate()
         {
-            return new DistinctLimitOperatorFactory(operatorId, planNodeId, sourceTypes, distinctChannels, limit, hashChannel, joinCompiler);
+            return new DistinctLimitOperatorFactory(operatorId, planNodeId, sourceTypes, distinctChannels, limit, hashChannel, joinCompiler, spillEnabled, partitioningSpillerFactory);
         }
     }
 
     private final OperatorContext operatorContext;
     private final LocalMemoryContext localUserMemoryContext;
+    private final LocalMemoryContext localRevocableMemoryContext;
 
     private Page inputPage;
     private long remainingLimit;
 
     private boolean finishing;
 
-    private final List<Integer> outputChannels;
-    private final GroupByHash groupByHash;
+    private List<Integer> outputChannels;
+    private GroupByHash groupByHash;
     private long nextDistinctId;
 
     // for yield when memory is not available
     private GroupByIdBlock groupByIds;
     private Work<GroupByIdBlock> unfinishedWork;
+    // distinct rows found when memory is revoked, before they can be returned
+    private Page outputPage;
+
+    // Once spilled, distinct values returned so far are in keySpiller, and the distinct channels of all following input go to rowSpiller.
+    // When finishing, each partition is processed on its own: its keys are added to the hash before the distinct rows are searched.
+    private final Supplier<GroupByHash> spilledGroupByHashSupplier;
+    private final Optional<HashPartitionedSpiller> keySpiller;
+    private final Optional<HashPartitionedSpiller> rowSpiller;
+    private ListenableFuture<?> spillInProgress = immediateFuture(null);
+    private Iterator<Page> spilledKeys;
+    private Iterator<Page> spilledRows;
 
     private final SingleInputSnapshotState snapshotState;
 
     public DistinctLimitOperator(OperatorContext operatorContext, List<Integer> distinctChannels, List<Type> distinctTypes, long limit, Optional<Integer> hashChannel, JoinCompiler joinCompiler)
+    {
+        this(operatorContext, distinctChannels, distinctTypes, limit, hashChannel, joinCompiler, false, Optional.empty());
+    }
+
+    public DistinctLimitOperator(
+            OperatorContext operatorContext,
+            List<Integer> distinctChannels,
+            List<Type> distinctTypes,
+            long limit,
+            Optional<Integer> hashChannel,
+            JoinCompiler joinCompiler,
+            boolean spillEnabled,
+            Optional<PartitioningSpillerFactory> partitioningSpillerFactory)
     {
         this.operatorContext = requireNonNull(operatorContext, "operatorContext is null");
         this.localUserMemoryContext = operatorContext.localUserMemoryContext();
+        this.localRevocableMemoryContext = operatorContext.localRevocableMemoryContext();
         requireNonNull(distinctChannels, "distinctChannels is null");
         checkArgument(limit >= 0, "limit must be at least zero");
         requireNonNull(hashChannel, "hashChannel is null");
@@ -140,6 +198,28 @@ public class DistinctLimitOperator
                 this::updateMemoryReservation);
         remainingLimit = limit;
 
+        // spilled pages only have the output channels, i.e. the distinct channels followed by the hash channel if present
+        List<Integer> spilledDistinctChannels = IntStream.range(0, distinctChannels.size()).boxed().collect(toImmutableList());
+        Optional<Integer> spilledHashChannel = hashChannel.map(channel -> distinctChannels.size());
+        List<Type> spilledTypes = ImmutableList.copyOf(groupByHash.getTypes());
+        this.spilledGroupByHashSupplier = () -> createGroupByHash(
+                distinctTypes,
+                Ints.toArray(spilledDistinctChannels),
+                spilledHashChannel,
+                Math.min((int) limit, 10_000),
+                isDictionaryAggregationEnabled(operatorContext.getSession()),
+                joinCompiler,
+                this::updateMemoryReservation);
+        if (spillEnabled) {
+            PartitioningSpillerFactory spillerFactory = partitioningSpillerFactory.orElseThrow(() -> new IllegalArgumentException("Spiller Factory is not present when spill is enabled"));
+            this.keySpiller = Optional.of(new HashPartitionedSpiller(spilledTypes, spilledDistinctChannels, spilledHashChannel, spillerFactory, operatorContext));
+            this.rowSpiller = Optional.of(new HashPartitionedSpiller(spilledTypes, spilledDistinctChannels, spilledHashChannel, spillerFactory, operatorContext));
+        }
+        else {
+            this.keySpiller = Optional.empty();
+            this.rowSpiller = Optional.empty();
+        }
+
         this.snapshotState = operatorContext.isSnapshotEnabled() ? SingleInputSnapshotState.forOperator(this, operatorContext) : null;
     }
 
@@ -152,7 +232,13 @@ public class DistinctLimitOperator
     @Override
     public void finish()
     {
+        if (finishing || !spillInProgress.isDone()) {
+            return;
+        }
+        checkSuccess(spillInProgress, "spilling failed");
         finishing = true;
+        // the hash is no longer revocable as the spilled partitions are processed with it
+        updateMemoryReservation();
     }
 
     @Override
@@ -163,19 +249,26 @@ public class DistinctLimitOperator
             return false;
         }
 
-        return !hasUnfinishedInput() && (finishing || remainingLimit == 0);
+        return !hasUnfinishedInput() && (remainingLimit == 0 || (finishing && !hasSpilledPartitions()));
     }
 
     @Override
     public boolean needsInput()
     {
-        return !finishing && remainingLimit > 0 && !hasUnfinishedInput();
+        return !finishing && remainingLimit > 0 && !hasUnfinishedInput() && spillInProgress.isDone();
+    }
+
+    @Override
+    public ListenableFuture<?> isBlocked()
+    {
+        return spillInProgress.isDone() ? NOT_BLOCKED : spillInProgress;
     }
 
     @Override
     public void addInput(Page page)
     {
         checkState(needsInput());
+        checkSuccess(spillInProgress, "spilling failed");
 
         if (snapshotState != null) {
             if (snapshotState.processPage(page)) {
@@ -183,6 +276,12 @@ public class DistinctLimitOperator
             }
         }
 
+        if (isSpilled()) {
+            // distinct rows are searched when their partition is processed after all input is received
+            spillInProgress = rowSpiller.get().spill(singletonIterator(toOutputLayout(page)));
+            return;
+        }
+
         inputPage = page;
         unfinishedWork = groupByHash.getGroupIds(page);
         processUnfinishedWork();
@@ -199,14 +298,40 @@ public class DistinctLimitOperator
             }
         }
 
+        checkSuccess(spillInProgress, "spilling failed");
+
+        if (outputPage != null) {
+            Page result = outputPage;
+            outputPage = null;
+            return result;
+        }
+
         if (unfinishedWork != null && !processUnfinishedWork()) {
             return null;
         }
 
         if (groupByIds == null) {
+            if (finishing && remainingLimit > 0 && hasSpilledPartitions()) {
+                processSpilledPartitions();
+            }
             return null;
         }
 
+        if (inputPage == null) {
+            // spilled keys were already returned before spilling
+            nextDistinctId = groupByHash.getGroupCount();
+            groupByIds = null;
+            updateMemoryReservation();
+            return null;
+        }
+
+        Page result = getDistinctRows();
+        updateMemoryReservation();
+        return result;
+    }
+
+    private Page getDistinctRows()
+    {
         verify(inputPage != null);
         int distinctCount = 0;
         int[] distinctPositions = new int[inputPage.getPositionCount()];
@@ -226,9 +351,83 @@ public class DistinctLimitOperator
 
         groupByIds = null;
         inputPage = null;
+        return result;
+    }
+
+    private void processSpilledPartitions()
+    {
+        if (spilledKeys != null && spilledKeys.hasNext()) {
+            unfinishedWork = groupByHash.getGroupIds(spilledKeys.next());
+        }
+        else if (spilledRows != null && spilledRows.hasNext()) {
+            inputPage = spilledRows.next();
+            unfinishedWork = groupByHash.getGroupIds(inputPage);
+        }
+        else if (shouldRepartitionNextPartition()) {
+            // the partition is larger than the keys held when memory was revoked, so it's read as smaller partitions
+            spillInProgress = Futures.allAsList(keySpiller.get().repartitionNextPartition(), rowSpiller.get().repartitionNextPartition());
+            return;
+        }
+        else {
+            groupByHash = spilledGroupByHashSupplier.get();
+            nextDistinctId = 0;
+            outputChannels = IntStream.range(0, outputChannels.size()).boxed().collect(toImmutableList());
+            spilledKeys = keySpiller.get().readNextPartition();
+            spilledRows = rowSpiller.get().readNextPartition();
+        }
+        updateMemoryReservation();
+    }
+
+    // the keys and rows of a partition are read together, so both spillers repartition the same partitions
+    private boolean shouldRepartitionNextPartition()
+    {
+        HashPartitionedSpiller keys = keySpiller.get();
+        HashPartitionedSpiller rows = rowSpiller.get();
+        return keys.canRepartitionNextPartition() && keys.getNextPartitionSize() + rows.getNextPartitionSize() > keys.getMaxSpillSize();
+    }
+
+    private boolean hasSpilledPartitions()
+    {
+        return isSpilled() && (keySpiller.get().hasNextPartition()
+                || spilledKeys.hasNext()
+                || spilledRows.hasNext());
+    }
+
+    @Override
+    public ListenableFuture<?> startMemoryRevoke()
+    {
+        if (finishing || isSpilled()) {
+            // all following input is spilled as it arrives, and the hash is not revocable any more
+            return immediateFuture(null);
+        }
+
+        // hash memory is revocable, so getting group ids doesn't have to wait for memory
+        checkState(unfinishedWork == null || processUnfinishedWork(), "Getting group ids did not finish");
+        if (groupByIds != null) {
+            outputPage = getDistinctRows();
+        }
+
+        spillInProgress = keySpiller.get().spill(groupByHash.getGroupValues());
+        return spillInProgress;
+    }
 
+    @Override
+    public void finishMemoryRevoke()
+    {
+        checkSuccess(spillInProgress, "spilling failed");
+        if (isSpilled()) {
+            groupByHash = spilledGroupByHashSupplier.get();
+            nextDistinctId = 0;
+        }
         updateMemoryReservation();
-        return result;
+    }
+
+    private Page toOutputLayout(Page page)
+    {
+        Block[] blocks = outputChannels.stream()
+                .map(page::getBlock)
+                .toArray(Block[]::new);
+        return new Page(page.getPositionCount(), blocks);
     }
 
     @Override
@@ -263,7 +462,7 @@ public class DistinctLimitOperator
 
     private boolean hasUnfinishedInput()
     {
-        return inputPage != null || unfinishedWork != null;
+        return inputPage != null || unfinishedWork != null || groupByIds != null || outputPage != null;
     }
 
     /**
@@ -278,11 +477,40 @@ public class DistinctLimitOperator
     {
         // Operator/driver will be blocked on memory after we call localUserMemoryContext.setBytes().
         // If memory is not available, once we return, this operator will be blocked until memory is available.
+        if (keySpiller.isPresent() && !finishing && !isSpilled()) {
+            // Revocable memory is spilled by the driver when needed, so getting group ids can always continue.
+            localUserMemoryContext.setBytes(0);
+            localRevocableMemoryContext.setBytes(groupByHash.getEstimatedSize());
+            return true;
+        }
+        localRevocableMemoryContext.setBytes(0);
         localUserMemoryContext.setBytes(groupByHash.getEstimatedSize());
         // If memory is not available, inform the caller that we cannot proceed for allocation.
         return operatorContext.isWaitingForMemory().isDone();
     }
 
+    @Override
+    public boolean isSpilled()
+    {
+        return keySpiller.isPresent() && keySpiller.get().isSpilled();
+    }
+
+    @Override
+    public List<Path> getSpilledFilePaths()
+    {
+        ImmutableList.Builder<Path> paths = ImmutableList.builder();
+        keySpiller.ifPresent(spiller -> paths.addAll(spiller.getSpilledFilePaths()));
+        rowSpiller.ifPresent(spiller -> paths.addAll(spiller.getSpilledFilePaths()));
+        return paths.build();
+    }
+
+    @Override
+    public void close()
+    {
+        keySpiller.ifPresent(HashPartitionedSpiller::close);
+        rowSpiller.ifPresent(HashPartitionedSpiller::close);
+    }
+
     @VisibleForTesting
     public int getCapacity()
     {
@@ -295,6 +523,7 @@ public class DistinctLimitOperator
         DistinctLimitOperatorState myState = new DistinctLimitOperatorState();
         myState.operatorContext = operatorContext.capture(serdeProvider);
         myState.localUserMemoryContext = localUserMemoryContext.getBytes();
+        myState.localRevocableMemoryContext = localRevocableMemoryContext.getBytes();
         myState.remainingLimit = remainingLimit;
         myState.finishing = finishing;
         myState.groupByHash = groupByHash.capture(serdeProvider);
@@ -302,6 +531,10 @@ public class DistinctLimitOperator
         if (groupByIds != null) {
             myState.groupByIds = groupByIds.capture(serdeProvider);
         }
+        if (keySpiller.isPresent()) {
+            myState.keySpiller = keySpiller.get().capture(serdeProvider);
+            myState.rowSpiller = rowSpiller.get().capture(serdeProvider);
+        }
         return myState;
     }
 
@@ -311,11 +544,16 @@ public class DistinctLimitOperator
         DistinctLimitOperatorState myState = (DistinctLimitOperatorState) state;
         this.operatorContext.restore(myState.operatorContext, serdeProvider);
         this.localUserMemoryContext.setBytes(myState.localUserMemoryContext);
+        this.localRevocableMemoryContext.setBytes(myState.localRevocableMemoryContext);
         this.remainingLimit = myState.remainingLimit;
         this.finishing = myState.finishing;
         this.groupByHash.restore(myState.groupByHash, serdeProvider);
         this.nextDistinctId = myState.nextDistinctId;
         this.groupByIds = myState.groupByIds == null ? null : GroupByIdBlock.restoreGroupedIdBlock(myState.groupByIds, serdeProvider.getBlockEncodingSerde());
+        if (keySpiller.isPresent()) {
+            keySpiller.get().restore(myState.keySpiller, serdeProvider);
+            rowSpiller.get().restore(myState.rowSpiller, serdeProvider);
+        }
     }
 
     private static class DistinctLimitOperatorState
@@ -323,10 +561,13 @@ public class DistinctLimitOperator
     {
         private Object operatorContext;
         private long localUserMemoryContext;
+        private long localRevocableMemoryContext;
         private long remainingLimit;
         private boolean finishing;
         private Object groupByHash;
         private long nextDistinctId;
         private Object groupByIds;
+        private Object keySpiller;
+        private Object rowSpiller;
     }
 }
@@ -388,6 +388,15 @@ public class Driver
         try {
             processNewSources();
 
+            if (isSnapshotEnabled) {
+                // Yield the thread while too many captured states are waiting to be written, instead of capturing more
+                ListenableFuture<?> stateWriterFull = driverContext.getPipelineContext().getTaskContext().getSnapshotManager().isStateWriterFull();
+                if (!stateWriterFull.isDone()) {
+                    driverContext.recordBlocked(stateWriterFull);
+                    return stateWriterFull;
+                }
+            }
+
             // If there is only one operator, finish it
             // Some operators (LookupJoinOperator and HashBuildOperator) are broken and requires finish to be called continuously
             // TODO remove the second part of the if statement, when these operators are fixed
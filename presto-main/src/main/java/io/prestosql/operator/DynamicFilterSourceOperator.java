@@ -22,8 +22,10 @@ import io.prestosql.spi.block.Block;
 import io.prestosql.spi.plan.PlanNodeId;
 import io.prestosql.spi.snapshot.BlockEncodingSerdeProvider;
 import io.prestosql.spi.snapshot.RestorableConfig;
+import io.prestosql.spi.type.DecimalType;
 import io.prestosql.spi.type.Type;
 import io.prestosql.spi.type.TypeUtils;
+import io.prestosql.spi.type.VarcharType;
 
 import java.io.Serializable;
 import java.util.Arrays;
@@ -37,6 +39,13 @@ import java.util.stream.Collectors;
 
 import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.base.Verify.verify;
+import static io.prestosql.spi.type.BigintType.BIGINT;
+import static io.prestosql.spi.type.DateType.DATE;
+import static io.prestosql.spi.type.DoubleType.DOUBLE;
+import static io.prestosql.spi.type.IntegerType.INTEGER;
+import static io.prestosql.spi.type.SmallintType.SMALLINT;
+import static io.prestosql.spi.type.TimestampType.TIMESTAMP;
+import static io.prestosql.spi.type.TinyintType.TINYINT;
 import static java.util.Objects.requireNonNull;
 import static java.util.stream.Collectors.toSet;
 
@@ -45,13 +54,14 @@ import static java.util.stream.Collectors.toSet;
  * The collected pages' value are used for creating a run-time filtering constraint (for probe-side table scan in an inner join).
  * We support only small build-side pages (which should be the case when using "broadcast" join).
  */
-@RestorableConfig(uncapturedFields = {"dynamicPredicateConsumer", "channels", "finished", "current", "snapshotState"})
+@RestorableConfig(uncapturedFields = {"dynamicPredicateConsumer", "rangeConsumer", "channels", "finished", "current", "snapshotState"})
 public class DynamicFilterSourceOperator
         implements Operator
 {
     public static final Logger log = Logger.get(DynamicFilterSourceOperator.class);
     private final OperatorContext context;
     private final Consumer<Map<Channel, Set>> dynamicPredicateConsumer;
+    private final Consumer<Map<Channel, ValueRange>> rangeConsumer;
     private final int maxFilterPositionsCount;
     private final long maxFilterSizeInBytes;
     private final List<Channel> channels;
@@ -59,6 +69,8 @@ public class DynamicFilterSourceOperator
     private Page current;
 
     private Map<Channel, Set> values;
+    // min/max of the channels supporting range filters, still collected once the values become too large
+    private final Map<Channel, ValueRange> ranges;
 
     private final SingleInputSnapshotState snapshotState;
 
@@ -72,17 +84,33 @@ public class DynamicFilterSourceOperator
             PlanNodeId planNodeId,
             int maxFilterPositionsCount,
             DataSize maxFilterSize)
+    {
+        this(context, dynamicPredicateConsumer, ranges -> {}, channels, planNodeId, maxFilterPositionsCount, maxFilterSize);
+    }
+
+    public DynamicFilterSourceOperator(OperatorContext context,
+            Consumer<Map<Channel, Set>> dynamicPredicateConsumer,
+            Consumer<Map<Channel, ValueRange>> rangeConsumer,
+            List<Channel> channels,
+            PlanNodeId planNodeId,
+            int maxFilterPositionsCount,
+            DataSize maxFilterSize)
     {
         this.context = requireNonNull(context, "context is null");
         this.maxFilterPositionsCount = maxFilterPositionsCount;
         this.maxFilterSizeInBytes = maxFilterSize.toBytes();
 
         this.dynamicPredicateConsumer = requireNonNull(dynamicPredicateConsumer, "dynamicPredicateConsumer is null");
+        this.rangeConsumer = requireNonNull(rangeConsumer, "rangeConsumer is null");
         this.channels = requireNonNull(channels, "channels is null");
 
         this.values = new HashMap<>();
+        this.ranges = new HashMap<>();
         for (Channel channel : channels) {
             values.put(channel, new HashSet<>());
+            if (isRangeSupported(channel.type)) {
+                ranges.put(channel, new ValueRange());
+            }
         }
         this.snapshotState = context.isSnapshotEnabled() ? SingleInputSnapshotState.forOperator(this, context) : null;
     }
@@ -111,6 +139,9 @@ public class DynamicFilterSourceOperator
         }
 
         current = page;
+        for (Map.Entry<Channel, ValueRange> entry : ranges.entrySet()) {
+            entry.getValue().add(entry.getKey().type, page.getBlock(entry.getKey().index));
+        }
         if (values == null) {
             return;  // the predicate became too large.
         }
@@ -142,8 +173,8 @@ public class DynamicFilterSourceOperator
 
     private void handleTooLargePredicate()
     {
+        // reported in finish(), together with the ranges which are still being collected
         values = null;
-        dynamicPredicateConsumer.accept(null);
     }
 
     @Override
@@ -176,14 +207,24 @@ public class DynamicFilterSourceOperator
         }
         finished = true;
 
-        // Dynamic Filter became too large
-        if (values == null) {
-            return;
-        }
-
+        // ranges are reported first, so they are known when the (possibly too large) values complete the filter
+        rangeConsumer.accept(ranges);
+        // values is null if the Dynamic Filter became too large
         dynamicPredicateConsumer.accept(values);
     }
 
+    /**
+     * Range filters are only collected for types whose native values are ordered like the type itself
+     */
+    public static boolean isRangeSupported(Type type)
+    {
+        if (type instanceof DecimalType) {
+            return ((DecimalType) type).isShort();
+        }
+        return type.equals(BIGINT) || type.equals(INTEGER) || type.equals(SMALLINT) || type.equals(TINYINT) ||
+                type.equals(DATE) || type.equals(TIMESTAMP) || type.equals(DOUBLE) || type instanceof VarcharType;
+    }
+
     @Override
     public boolean isFinished()
     {
@@ -231,6 +272,107 @@ public class DynamicFilterSourceOperator
         }
     }
 
+    /**
+     * Minimum and maximum of the non-null values of a channel, in their native stack representation
+     */
+    public static class ValueRange
+    {
+        private Object min;
+        private Object max;
+
+        public Object getMin()
+        {
+            return min;
+        }
+
+        public Object getMax()
+        {
+            return max;
+        }
+
+        public boolean isEmpty()
+        {
+            return min == null;
+        }
+
+        public void add(ValueRange other)
+        {
+            if (!other.isEmpty()) {
+                add(other.min);
+                add(other.max);
+            }
+        }
+
+        void add(Type type, Block block)
+        {
+            int positionCount = block.getPositionCount();
+            if (type.getJavaType() == long.class) {
+                long blockMin = Long.MAX_VALUE;
+                long blockMax = Long.MIN_VALUE;
+                boolean found = false;
+                for (int i = 0; i < positionCount; i++) {
+                    if (!block.isNull(i)) {
+                        long value = type.getLong(block, i);
+                        blockMin = Math.min(blockMin, value);
+                        blockMax = Math.max(blockMax, value);
+                        found = true;
+                    }
+                }
+                if (found) {
+                    add(blockMin);
+                    add(blockMax);
+                }
+            }
+            else if (type.getJavaType() == double.class) {
+                double blockMin = Double.POSITIVE_INFINITY;
+                double blockMax = Double.NEGATIVE_INFINITY;
+                boolean found = false;
+                for (int i = 0; i < positionCount; i++) {
+                    if (!block.isNull(i)) {
+                        double value = type.getDouble(block, i);
+                        // NaN never matches a join key
+                        if (!Double.isNaN(value)) {
+                            blockMin = Math.min(blockMin, value);
+                            blockMax = Math.max(blockMax, value);
+                            found = true;
+                        }
+                    }
+                }
+                if (found) {
+                    add(blockMin);
+                    add(blockMax);
+                }
+            }
+            else {
+                for (int i = 0; i < positionCount; i++) {
+                    Object value = TypeUtils.readNativeValue(type, block, i);
+                    if (value != null) {
+                        add(value);
+                    }
+                }
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        void add(Object value)
+        {
+            // -0.0 and 0.0 are equal join keys but compareTo orders them, so only 0.0 is kept in a range
+            if (value instanceof Double && (Double) value == 0) {
+                value = 0.0;
+            }
+            if (min == null) {
+                min = value;
+                max = value;
+            }
+            else if (((Comparable<Object>) value).compareTo(min) < 0) {
+                min = value;
+            }
+            else if (((Comparable<Object>) value).compareTo(max) > 0) {
+                max = value;
+            }
+        }
+    }
+
     @Override
     public Object capture(BlockEncodingSerdeProvider serdeProvider)
     {
@@ -245,6 +387,16 @@ public class DynamicFilterSourceOperator
                             .toArray())
                     .toArray(Object[][]::new);
         }
+        myState.ranges = channels
+                .stream()
+                .map(channel -> {
+                    ValueRange range = ranges.get(channel);
+                    if (range == null || range.isEmpty()) {
+                        return null;
+                    }
+                    return new Object[] {SnapshotUtils.captureHelper(range.min, serdeProvider), SnapshotUtils.captureHelper(range.max, serdeProvider)};
+                })
+                .toArray(Object[][]::new);
         return myState;
     }
 
@@ -274,6 +426,16 @@ public class DynamicFilterSourceOperator
                 values.get(channels.get(i)).addAll(set);
             }
         }
+        checkState(myState.ranges.length == channels.size());
+        for (int i = 0; i < channels.size(); i++) {
+            ValueRange range = ranges.get(channels.get(i));
+            if (range != null) {
+                Class<?> javaType = channels.get(i).type.getJavaType();
+                Object[] bounds = myState.ranges[i];
+                range.min = bounds == null ? null : SnapshotUtils.restoreHelper(bounds[0], javaType, serdeProvider);
+                range.max = bounds == null ? null : SnapshotUtils.restoreHelper(bounds[1], javaType, serdeProvider);
+            }
+        }
     }
 
     private static class DynamicFilterSourceOperatorState
@@ -281,6 +443,7 @@ public class DynamicFilterSourceOperator
     {
         private Object context;
         private Object[][] values;
+        private Object[][] ranges;
     }
 
     public static class DynamicFilterSourceOperatorFactory
@@ -289,6 +452,7 @@ public class DynamicFilterSourceOperator
         private final int operatorId;
         private final PlanNodeId planNodeId;
         private final Consumer<Map<Channel, Set>> dynamicPredicateConsumer;
+        private final Consumer<Map<Channel, ValueRange>> rangeConsumer;
         private final List<Channel> channels;
         private final int maxFilterPositionsCount;
         private final DataSize maxFilterSize;
@@ -304,10 +468,26 @@ public class DynamicFilterSourceOperator
                 List<Channel> channels,
                 int maxFilterPositionsCount,
                 DataSize maxFilterSize)
+        {
+            this(operatorId, planNodeId, dynamicPredicateConsumer, ranges -> {}, channels, maxFilterPositionsCount, maxFilterSize);
+        }
+
+        /**
+         * Constructor for the Dynamic Filter Source Operator Factory, also reporting the min/max of each channel
+         */
+        public DynamicFilterSourceOperatorFactory(
+                int operatorId,
+                PlanNodeId planNodeId,
+                Consumer<Map<Channel, Set>> dynamicPredicateConsumer,
+                Consumer<Map<Channel, ValueRange>> rangeConsumer,
+                List<Channel> channels,
+                int maxFilterPositionsCount,
+                DataSize maxFilterSize)
         {
             this.operatorId = operatorId;
             this.planNodeId = requireNonNull(planNodeId, "planNodeId is null");
             this.dynamicPredicateConsumer = requireNonNull(dynamicPredicateConsumer, "dynamicPredicateConsumer is null");
+            this.rangeConsumer = requireNonNull(rangeConsumer, "rangeConsumer is null");
             this.channels = requireNonNull(channels, "channels is null");
             verify(channels.stream().map(channel -> channel.filterId).collect(toSet()).size() == channels.size(),
                     "duplicate dynamic filters are not allowed");
@@ -330,6 +510,7 @@ public class DynamicFilterSourceOperator
             return new DynamicFilterSourceOperator(
                     driverContext.addOperatorContext(operatorId, planNodeId, DynamicFilterSourceOperator.class.getSimpleName()),
                     dynamicPredicateConsumer,
+                    rangeConsumer,
                     channels,
                     planNodeId,
                     maxFilterPositionsCount,
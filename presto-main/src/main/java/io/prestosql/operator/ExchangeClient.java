@@ -81,6 +81,7 @@ public class ExchangeClient
 
     private boolean snapshotEnabled;
     private QuerySnapshotManager querySnapshotManager;
+    private boolean streamingEnabled;
     // Only set for MergeOperator, to capture marker pages
     private MultiInputSnapshotState snapshotState;
 
@@ -121,6 +122,8 @@ public class ExchangeClient
 
     private final LocalMemoryContext systemMemoryContext;
     private final Executor pageBufferClientCallbackExecutor;
+    private final Optional<LocalTaskResultsFetcher> localTaskResultsFetcher;
+    private final Optional<Executor> streamingExecutor;
 
     // ExchangeClientStatus.mergeWith assumes all clients have the same bufferCapacity.
     // Please change that method accordingly when this assumption becomes not true.
@@ -134,6 +137,27 @@ public class ExchangeClient
             ScheduledExecutorService scheduler,
             LocalMemoryContext systemMemoryContext,
             Executor pageBufferClientCallbackExecutor)
+    {
+        this(bufferCapacity, maxResponseSize, concurrentRequestMultiplier, maxErrorDuration, acknowledgePages, httpClient, scheduler, systemMemoryContext, pageBufferClientCallbackExecutor,
+                Optional.empty(), Optional.empty());
+    }
+
+    /**
+     * @param localTaskResultsFetcher if present, results of tasks on this node are read directly from their output buffers
+     * @param streamingExecutor if present, runs the requests reading streams of results when streaming is enabled
+     */
+    public ExchangeClient(
+            DataSize bufferCapacity,
+            DataSize maxResponseSize,
+            int concurrentRequestMultiplier,
+            Duration maxErrorDuration,
+            boolean acknowledgePages,
+            HttpClient httpClient,
+            ScheduledExecutorService scheduler,
+            LocalMemoryContext systemMemoryContext,
+            Executor pageBufferClientCallbackExecutor,
+            Optional<LocalTaskResultsFetcher> localTaskResultsFetcher,
+            Optional<Executor> streamingExecutor)
     {
         this.bufferCapacity = bufferCapacity.toBytes();
         this.maxResponseSize = maxResponseSize;
@@ -145,6 +169,8 @@ public class ExchangeClient
         this.systemMemoryContext = systemMemoryContext;
         this.maxBufferRetainedSizeInBytes = Long.MIN_VALUE;
         this.pageBufferClientCallbackExecutor = requireNonNull(pageBufferClientCallbackExecutor, "pageBufferClientCallbackExecutor is null");
+        this.localTaskResultsFetcher = requireNonNull(localTaskResultsFetcher, "localTaskResultsFetcher is null");
+        this.streamingExecutor = requireNonNull(streamingExecutor, "streamingExecutor is null");
     }
 
     Set<String> getAllClients()
@@ -159,6 +185,13 @@ public class ExchangeClient
         this.querySnapshotManager = querySnapshotManager;
     }
 
+    public void setStreamingEnabled(boolean streamingEnabled)
+    {
+        // Only affects clients of locations added afterwards.
+        // Exchange clients without a streaming executor always request results one response at a time.
+        this.streamingEnabled = streamingEnabled;
+    }
+
     void setSnapshotState(MultiInputSnapshotState snapshotState)
     {
         // Only used by MergeOperator
@@ -248,7 +281,9 @@ public class ExchangeClient
                 scheduler,
                 pageBufferClientCallbackExecutor,
                 snapshotEnabled,
-                querySnapshotManager);
+                querySnapshotManager,
+                localTaskResultsFetcher.flatMap(fetcher -> fetcher.getLocalTaskResults(location.getUri())),
+                streamingEnabled ? streamingExecutor : Optional.empty());
         allClients.put(uri, client);
         queuedClients.add(client);
 
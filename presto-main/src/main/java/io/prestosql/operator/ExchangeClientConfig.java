@@ -14,6 +14,7 @@
 package io.prestosql.operator;
 
 import io.airlift.configuration.Config;
+import io.airlift.configuration.ConfigDescription;
 import io.airlift.http.client.HttpClientConfig;
 import io.airlift.units.DataSize;
 import io.airlift.units.DataSize.Unit;
@@ -36,6 +37,7 @@ public class ExchangeClientConfig
     private int clientThreads = 25;
     private int pageBufferClientMaxCallbackThreads = 25;
     private boolean acknowledgePages = true;
+    private boolean localTransportEnabled;
 
     @NotNull
     public DataSize getMaxBufferSize()
@@ -141,4 +143,17 @@ public class ExchangeClientConfig
         this.acknowledgePages = acknowledgePages;
         return this;
     }
+
+    public boolean isLocalTransportEnabled()
+    {
+        return localTransportEnabled;
+    }
+
+    @Config("exchange.local-transport-enabled")
+    @ConfigDescription("Read results of tasks on the same node directly from their output buffers, instead of over HTTP")
+    public ExchangeClientConfig setLocalTransportEnabled(boolean localTransportEnabled)
+    {
+        this.localTransportEnabled = localTransportEnabled;
+        return this;
+    }
 }
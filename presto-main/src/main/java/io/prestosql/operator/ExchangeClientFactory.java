@@ -24,6 +24,7 @@ import org.weakref.jmx.Nested;
 import javax.annotation.PreDestroy;
 import javax.inject.Inject;
 
+import java.util.Optional;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -32,6 +33,7 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static io.airlift.concurrent.Threads.daemonThreadsNamed;
 import static io.airlift.units.DataSize.Unit.BYTE;
 import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.Executors.newCachedThreadPool;
 import static java.util.concurrent.Executors.newFixedThreadPool;
 
 public class ExchangeClientFactory
@@ -46,12 +48,31 @@ public class ExchangeClientFactory
     private final ScheduledExecutorService scheduler;
     private final ThreadPoolExecutorMBean executorMBean;
     private final ExecutorService pageBufferClientCallbackExecutor;
+    private final ExecutorService streamingExecutor;
+    private final Optional<LocalTaskResultsFetcher> localTaskResultsFetcher;
+
+    public ExchangeClientFactory(
+            ExchangeClientConfig config,
+            HttpClient httpClient,
+            ScheduledExecutorService scheduler)
+    {
+        this(
+                config.getMaxBufferSize(),
+                config.getMaxResponseSize(),
+                config.getConcurrentRequestMultiplier(),
+                config.getMaxErrorDuration(),
+                config.isAcknowledgePages(),
+                config.getPageBufferClientMaxCallbackThreads(),
+                httpClient,
+                scheduler);
+    }
 
     @Inject
     public ExchangeClientFactory(
             ExchangeClientConfig config,
             @ForExchange HttpClient httpClient,
-            @ForExchange ScheduledExecutorService scheduler)
+            @ForExchange ScheduledExecutorService scheduler,
+            LocalTaskResultsFetcher localTaskResultsFetcher)
     {
         this(
                 config.getMaxBufferSize(),
@@ -61,7 +82,8 @@ public class ExchangeClientFactory
                 config.isAcknowledgePages(),
                 config.getPageBufferClientMaxCallbackThreads(),
                 httpClient,
-                scheduler);
+                scheduler,
+                config.isLocalTransportEnabled() ? Optional.of(localTaskResultsFetcher) : Optional.empty());
     }
 
     public ExchangeClientFactory(
@@ -73,6 +95,20 @@ public class ExchangeClientFactory
             int pageBufferClientMaxCallbackThreads,
             HttpClient httpClient,
             ScheduledExecutorService scheduler)
+    {
+        this(maxBufferedBytes, maxResponseSize, concurrentRequestMultiplier, maxErrorDuration, acknowledgePages, pageBufferClientMaxCallbackThreads, httpClient, scheduler, Optional.empty());
+    }
+
+    public ExchangeClientFactory(
+            DataSize maxBufferedBytes,
+            DataSize maxResponseSize,
+            int concurrentRequestMultiplier,
+            Duration maxErrorDuration,
+            boolean acknowledgePages,
+            int pageBufferClientMaxCallbackThreads,
+            HttpClient httpClient,
+            ScheduledExecutorService scheduler,
+            Optional<LocalTaskResultsFetcher> localTaskResultsFetcher)
     {
         this.maxBufferedBytes = requireNonNull(maxBufferedBytes, "maxBufferedBytes is null");
         this.concurrentRequestMultiplier = concurrentRequestMultiplier;
@@ -87,9 +123,12 @@ public class ExchangeClientFactory
         this.maxResponseSize = new DataSize(maxResponseSizeBytes, BYTE);
 
         this.scheduler = requireNonNull(scheduler, "scheduler is null");
+        this.localTaskResultsFetcher = requireNonNull(localTaskResultsFetcher, "localTaskResultsFetcher is null");
 
         this.pageBufferClientCallbackExecutor = newFixedThreadPool(pageBufferClientMaxCallbackThreads, daemonThreadsNamed("page-buffer-client-callback-%s"));
         this.executorMBean = new ThreadPoolExecutorMBean((ThreadPoolExecutor) pageBufferClientCallbackExecutor);
+        // each stream of results holds a thread while it's read, threads are only created for queries streaming the exchanges
+        this.streamingExecutor = newCachedThreadPool(daemonThreadsNamed("page-buffer-client-stream-%s"));
 
         checkArgument(maxBufferedBytes.toBytes() > 0, "maxBufferSize must be at least 1 byte: %s", maxBufferedBytes);
         checkArgument(maxResponseSize.toBytes() > 0, "maxResponseSize must be at least 1 byte: %s", maxResponseSize);
@@ -100,6 +139,7 @@ public class ExchangeClientFactory
     public void stop()
     {
         pageBufferClientCallbackExecutor.shutdownNow();
+        streamingExecutor.shutdownNow();
     }
 
     @Managed
@@ -121,6 +161,8 @@ public class ExchangeClientFactory
                 httpClient,
                 scheduler,
                 systemMemoryContext,
-                pageBufferClientCallbackExecutor);
+                pageBufferClientCallbackExecutor,
+                localTaskResultsFetcher,
+                Optional.of(streamingExecutor));
     }
 }
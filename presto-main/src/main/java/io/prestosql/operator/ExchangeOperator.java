@@ -36,6 +36,7 @@ import java.util.function.Supplier;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
+import static io.prestosql.SystemSessionProperties.isExchangeStreamingEnabled;
 import static java.util.Objects.requireNonNull;
 
 @RestorableConfig(uncapturedFields = {"sourceId", "exchangeClient", "snapshotState", "blockedOnSplits", "inputChannels"})
@@ -76,6 +77,7 @@ public class ExchangeOperator
             OperatorContext operatorContext = driverContext.addOperatorContext(operatorId, sourceId, ExchangeOperator.class.getSimpleName());
             if (exchangeClient == null) {
                 exchangeClient = exchangeClientSupplier.get(driverContext.getPipelineContext().localSystemMemoryContext());
+                exchangeClient.setStreamingEnabled(isExchangeStreamingEnabled(operatorContext.getSession()));
                 if (operatorContext.isSnapshotEnabled()) {
                     exchangeClient.setSnapshotEnabled(driverContext.getPipelineContext().getTaskContext().getSnapshotManager().getQuerySnapshotManager());
                 }
@@ -13,10 +13,14 @@
  */
 package io.prestosql.operator;
 
+import com.google.common.collect.AbstractIterator;
 import io.prestosql.Session;
+import io.prestosql.spi.Page;
+import io.prestosql.spi.PageBuilder;
 import io.prestosql.spi.type.Type;
 import io.prestosql.sql.gen.JoinCompiler;
 
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 
@@ -52,4 +56,32 @@ public interface GroupByHash
         }
         return new MultiChannelGroupByHash(hashTypes, hashChannels, inputHashChannel, expectedSize, processDictionary, joinCompiler, updateMemory);
     }
+
+    /**
+     * Returns pages with the values of all groups, in the order of group ids. The pages contain
+     * the group by channels, followed by the hash channel if the hash was precomputed.
+     */
+    default Iterator<Page> getGroupValues()
+    {
+        return new AbstractIterator<Page>()
+        {
+            private final PageBuilder pageBuilder = new PageBuilder(getTypes());
+            private int groupId;
+
+            @Override
+            protected Page computeNext()
+            {
+                pageBuilder.reset();
+                while (!pageBuilder.isFull() && groupId < getGroupCount()) {
+                    appendValuesTo(groupId, pageBuilder, 0);
+                    pageBuilder.declarePosition();
+                    groupId++;
+                }
+                if (pageBuilder.isEmpty()) {
+                    return endOfData();
+                }
+                return pageBuilder.build();
+            }
+        };
+    }
 }
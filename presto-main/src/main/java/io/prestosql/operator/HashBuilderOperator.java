@@ -19,6 +19,7 @@ import com.google.common.io.Closer;
 import com.google.common.util.concurrent.ListenableFuture;
 import io.prestosql.execution.Lifespan;
 import io.prestosql.memory.context.LocalMemoryContext;
+import io.prestosql.snapshot.IncrementalRestorable;
 import io.prestosql.snapshot.SingleInputSnapshotState;
 import io.prestosql.snapshot.Spillable;
 import io.prestosql.spi.Page;
@@ -67,7 +68,7 @@ import static java.util.Objects.requireNonNull;
         "lookupSourceNotNeeded", "spilledLookupSourceHandle", "spillInProgress", "unspillInProgress", "lookupSourceSupplier", "lookupSourceChecksum",
         "finishMemoryRevoke", "snapshotState", "lastMarker"})
 public class HashBuilderOperator
-        implements SinkOperator, Spillable
+        implements SinkOperator, Spillable, IncrementalRestorable
 {
     public static class HashBuilderOperatorFactory
             implements OperatorFactory
@@ -767,6 +768,42 @@ public class HashBuilderOperator
         }
     }
 
+    @Override
+    public Optional<Object> captureIncrement(BlockEncodingSerdeProvider serdeProvider)
+    {
+        // Only input pages are appended to the index while consuming input. Other states need a full capture.
+        if (state != State.CONSUMING_INPUT || spiller.isPresent()) {
+            return Optional.empty();
+        }
+        Optional<Object> indexIncrement = index.captureIncrement(serdeProvider);
+        if (!indexIncrement.isPresent()) {
+            return Optional.empty();
+        }
+
+        HashBuilderOperatorState myState = new HashBuilderOperatorState();
+        myState.operatorContext = operatorContext.capture(serdeProvider);
+        myState.localUserMemoryContext = localUserMemoryContext.getBytes();
+        myState.localRevocableMemoryContext = localRevocableMemoryContext.getBytes();
+        myState.index = indexIncrement.get();
+        myState.hashCollisionsCounter = hashCollisionsCounter.capture(serdeProvider);
+        myState.state = state.toString();
+        myState.alreadyFinished = alreadyFinished;
+        return Optional.of(myState);
+    }
+
+    @Override
+    public void restoreIncrement(Object increment, BlockEncodingSerdeProvider serdeProvider)
+    {
+        HashBuilderOperatorState myState = (HashBuilderOperatorState) increment;
+        this.operatorContext.restore(myState.operatorContext, serdeProvider);
+        this.localUserMemoryContext.setBytes(myState.localUserMemoryContext);
+        this.localRevocableMemoryContext.setBytes(myState.localRevocableMemoryContext);
+        this.index.restoreIncrement(myState.index, serdeProvider);
+        this.hashCollisionsCounter.restore(myState.hashCollisionsCounter, serdeProvider);
+        this.state = State.valueOf(myState.state);
+        this.alreadyFinished = myState.alreadyFinished;
+    }
+
     @Override
     public boolean supportsConsolidatedWrites()
     {
@@ -0,0 +1,335 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.prestosql.operator;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterators;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import io.airlift.slice.XxHash64;
+import io.prestosql.spi.Page;
+import io.prestosql.spi.snapshot.BlockEncodingSerdeProvider;
+import io.prestosql.spi.snapshot.Restorable;
+import io.prestosql.spi.snapshot.RestorableConfig;
+import io.prestosql.spi.type.Type;
+import io.prestosql.spiller.PartitioningSpiller;
+import io.prestosql.spiller.PartitioningSpillerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
+import static io.airlift.concurrent.MoreFutures.checkSuccess;
+import static java.lang.Math.max;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Spills pages of an operator that is keyed on a set of channels, partitioned by the hash of these channels.
+ * Rows with the same key always end up in the same partition, so after spilling the operator can process
+ * the partitions one at a time, needing memory for a single partition only.
+ * <p>
+ * A partition that is still too large to be processed at once is spilled again, split by the next bits
+ * of the hash, and its sub-partitions are read in its place.
+ */
+@RestorableConfig(uncapturedFields = {"types", "hashGenerator", "partitioningSpillerFactory", "operatorContext", "unreadPartitions", "repartitionSpillers"})
+public class HashPartitionedSpiller
+        implements Closeable, Restorable
+{
+    public static final int SPILL_PARTITION_COUNT = 8;
+    // rows of a single key can't be split, so repartitioning stops at this depth even if a partition is still too large
+    public static final int MAX_REPARTITION_DEPTH = 3;
+
+    private final List<Type> types;
+    private final HashGenerator hashGenerator;
+    private final PartitioningSpillerFactory partitioningSpillerFactory;
+    private final OperatorContext operatorContext;
+
+    private Optional<PartitioningSpiller> spiller = Optional.empty();
+    // the most data spilled at once, i.e. about the most memory the operator held before it had to spill
+    private long maxSpillSize;
+
+    // Once reading started, nothing more is spilled. Partitions are only read and repartitioned when the operator
+    // is finishing, and markers are not received then, so these are not captured.
+    private Deque<SpilledPartition> unreadPartitions;
+    private final List<PartitioningSpiller> repartitionSpillers = new ArrayList<>();
+
+    public HashPartitionedSpiller(
+            List<Type> types,
+            List<Integer> keyChannels,
+            Optional<Integer> hashChannel,
+            PartitioningSpillerFactory partitioningSpillerFactory,
+            OperatorContext operatorContext)
+    {
+        this.types = ImmutableList.copyOf(requireNonNull(types, "types is null"));
+        requireNonNull(keyChannels, "keyChannels is null");
+        requireNonNull(hashChannel, "hashChannel is null");
+        this.hashGenerator = hashChannel.isPresent()
+                ? new PrecomputedHashGenerator(hashChannel.get())
+                : new InterpretedHashGenerator(keyChannels.stream().map(types::get).collect(toImmutableList()), keyChannels);
+        this.partitioningSpillerFactory = requireNonNull(partitioningSpillerFactory, "partitioningSpillerFactory is null");
+        this.operatorContext = requireNonNull(operatorContext, "operatorContext is null");
+    }
+
+    /**
+     * Spills all the given pages. The returned future must be done before any other method is called.
+     */
+    public ListenableFuture<?> spill(Iterator<Page> pages)
+    {
+        requireNonNull(pages, "pages is null");
+        checkState(unreadPartitions == null, "Reading of spilled partitions already started");
+        long[] spillSize = {0};
+        Iterator<Page> sizedPages = Iterators.transform(pages, page -> {
+            spillSize[0] += page.getSizeInBytes();
+            maxSpillSize = max(maxSpillSize, spillSize[0]);
+            return page;
+        });
+        if (!spiller.isPresent()) {
+            spiller = Optional.of(createSpiller(0));
+        }
+        return spillRemaining(spiller.get(), sizedPages);
+    }
+
+    private PartitioningSpiller createSpiller(int depth)
+    {
+        return partitioningSpillerFactory.create(
+                types,
+                new SpillPartitionFunction(hashGenerator, SPILL_PARTITION_COUNT, depth),
+                operatorContext.getSpillContext().newLocalSpillContext(),
+                operatorContext.newAggregateSystemMemoryContext());
+    }
+
+    // a partitioning spiller accepts a new page only after spilling of the previous one has finished
+    private static ListenableFuture<?> spillRemaining(PartitioningSpiller spiller, Iterator<Page> pages)
+    {
+        while (pages.hasNext()) {
+            Page page = pages.next();
+            if (page.getPositionCount() == 0) {
+                continue;
+            }
+            ListenableFuture<?> future = spiller.partitionAndSpill(page, partition -> true).getSpillingFuture();
+            if (!future.isDone()) {
+                return Futures.transformAsync(future, ignored -> spillRemaining(spiller, pages), directExecutor());
+            }
+            checkSuccess(future, "spilling failed");
+        }
+        return Futures.immediateFuture(null);
+    }
+
+    public boolean isSpilled()
+    {
+        return spiller.isPresent();
+    }
+
+    /**
+     * Returns the most data that was spilled by a single call to {@link #spill(Iterator)}.
+     */
+    public long getMaxSpillSize()
+    {
+        return maxSpillSize;
+    }
+
+    /**
+     * Returns whether there are spilled partitions that are not read yet. Once reading started, no more pages can be spilled.
+     * If nothing was spilled, the partitions are empty, so the spiller stays aligned with spillers it is read together with.
+     */
+    public boolean hasNextPartition()
+    {
+        if (unreadPartitions == null) {
+            unreadPartitions = new ArrayDeque<>();
+            for (int partition = 0; partition < SPILL_PARTITION_COUNT; partition++) {
+                unreadPartitions.add(new SpilledPartition(spiller, partition, 0));
+            }
+        }
+        return !unreadPartitions.isEmpty();
+    }
+
+    /**
+     * Returns the estimated size of the pages of the next partition.
+     */
+    public long getNextPartitionSize()
+    {
+        return nextPartition().getSize();
+    }
+
+    public boolean canRepartitionNextPartition()
+    {
+        return nextPartition().depth < MAX_REPARTITION_DEPTH;
+    }
+
+    /**
+     * Spills the pages of the next partition again, split by the next bits of the hash, so that the partition
+     * is read as {@value #SPILL_PARTITION_COUNT} smaller partitions. Spillers of operators that process their
+     * partitions together must all repartition the same partitions, so their partitions stay aligned.
+     * The returned future must be done before any other method is called.
+     */
+    public ListenableFuture<?> repartitionNextPartition()
+    {
+        checkState(canRepartitionNextPartition(), "Partition can not be repartitioned");
+        SpilledPartition partition = unreadPartitions.removeFirst();
+        int depth = partition.depth + 1;
+        Optional<PartitioningSpiller> repartitionSpiller = partition.spiller.map(ignored -> createSpiller(depth));
+        repartitionSpiller.ifPresent(repartitionSpillers::add);
+        for (int subPartition = SPILL_PARTITION_COUNT - 1; subPartition >= 0; subPartition--) {
+            unreadPartitions.addFirst(new SpilledPartition(repartitionSpiller, subPartition, depth));
+        }
+        return repartitionSpiller
+                .map(partitioningSpiller -> spillRemaining(partitioningSpiller, partition.getPages()))
+                .orElseGet(() -> Futures.immediateFuture(null));
+    }
+
+    /**
+     * Returns the pages of the next partition and moves on to the following partition.
+     */
+    public Iterator<Page> readNextPartition()
+    {
+        SpilledPartition partition = nextPartition();
+        unreadPartitions.removeFirst();
+        return partition.getPages();
+    }
+
+    private SpilledPartition nextPartition()
+    {
+        checkState(hasNextPartition(), "No spilled partitions left");
+        return unreadPartitions.getFirst();
+    }
+
+    public List<Path> getSpilledFilePaths()
+    {
+        ImmutableList.Builder<Path> paths = ImmutableList.builder();
+        spiller.ifPresent(partitioningSpiller -> paths.addAll(partitioningSpiller.getSpilledFilePaths()));
+        repartitionSpillers.forEach(partitioningSpiller -> paths.addAll(partitioningSpiller.getSpilledFilePaths()));
+        return paths.build();
+    }
+
+    @Override
+    public void close()
+    {
+        try {
+            for (PartitioningSpiller repartitionSpiller : repartitionSpillers) {
+                repartitionSpiller.close();
+            }
+            if (spiller.isPresent()) {
+                spiller.get().close();
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        repartitionSpillers.clear();
+        spiller = Optional.empty();
+        unreadPartitions = null;
+    }
+
+    @Override
+    public Object capture(BlockEncodingSerdeProvider serdeProvider)
+    {
+        if (!spiller.isPresent()) {
+            return null;
+        }
+        HashPartitionedSpillerState myState = new HashPartitionedSpillerState();
+        myState.spiller = spiller.get().capture(serdeProvider);
+        myState.maxSpillSize = maxSpillSize;
+        return myState;
+    }
+
+    @Override
+    public void restore(Object state, BlockEncodingSerdeProvider serdeProvider)
+    {
+        close();
+        maxSpillSize = 0;
+        if (state != null) {
+            HashPartitionedSpillerState myState = (HashPartitionedSpillerState) state;
+            spiller = Optional.of(createSpiller(0));
+            spiller.get().restore(myState.spiller, serdeProvider);
+            maxSpillSize = myState.maxSpillSize;
+        }
+    }
+
+    private static class HashPartitionedSpillerState
+            implements Serializable
+    {
+        private Object spiller;
+        private long maxSpillSize;
+    }
+
+    private static class SpilledPartition
+    {
+        private final Optional<PartitioningSpiller> spiller;
+        private final int partition;
+        private final int depth;
+
+        SpilledPartition(Optional<PartitioningSpiller> spiller, int partition, int depth)
+        {
+            this.spiller = spiller;
+            this.partition = partition;
+            this.depth = depth;
+        }
+
+        long getSize()
+        {
+            return spiller.map(partitioningSpiller -> partitioningSpiller.getSpilledPagesInMemorySize(partition)).orElse(0L);
+        }
+
+        Iterator<Page> getPages()
+        {
+            return spiller.map(partitioningSpiller -> partitioningSpiller.getSpilledPages(partition)).orElse(Collections.emptyIterator());
+        }
+    }
+
+    private static class SpillPartitionFunction
+            implements PartitionFunction
+    {
+        private final HashGenerator hashGenerator;
+        private final int partitionCount;
+        private final int hashShift;
+
+        SpillPartitionFunction(HashGenerator hashGenerator, int partitionCount, int depth)
+        {
+            checkArgument(Integer.bitCount(partitionCount) == 1, "partitionCount must be a power of 2");
+            this.hashGenerator = hashGenerator;
+            this.partitionCount = partitionCount;
+            // rows of a partition share the bits used by the partition functions of the previous depths
+            this.hashShift = depth * Integer.numberOfTrailingZeros(partitionCount);
+            checkArgument(hashShift + Integer.numberOfTrailingZeros(partitionCount) <= Long.SIZE, "depth is too large");
+        }
+
+        @Override
+        public int getPartitionCount()
+        {
+            return partitionCount;
+        }
+
+        @Override
+        public int getPartition(Page page, int position)
+        {
+            // mix the bits differently from LocalPartitionGenerator, because all rows of a driver
+            // usually share the same local partition, and would otherwise share the spill partition too
+            return (int) (XxHash64.hash(hashGenerator.hashPosition(position, page)) >>> hashShift) & (partitionCount - 1);
+        }
+    }
+}
@@ -19,6 +19,8 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.net.MediaType;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListenableFutureTask;
 import io.airlift.http.client.HttpClient;
 import io.airlift.http.client.HttpClient.HttpResponseFuture;
 import io.airlift.http.client.HttpStatus;
@@ -33,6 +35,8 @@ import io.airlift.slice.SliceInput;
 import io.airlift.units.DataSize;
 import io.airlift.units.Duration;
 import io.hetu.core.transport.execution.buffer.SerializedPage;
+import io.prestosql.execution.buffer.BufferResult;
+import io.prestosql.operator.LocalTaskResultsFetcher.LocalTaskResults;
 import io.prestosql.server.remotetask.Backoff;
 import io.prestosql.snapshot.QuerySnapshotManager;
 import io.prestosql.spi.PrestoException;
@@ -46,8 +50,10 @@ import java.io.BufferedReader;
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.util.List;
+import java.util.Optional;
 import java.util.OptionalInt;
 import java.util.OptionalLong;
 import java.util.concurrent.Executor;
@@ -55,6 +61,7 @@ import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 import static com.google.common.base.MoreObjects.toStringHelper;
 import static com.google.common.base.Preconditions.checkState;
@@ -63,7 +70,6 @@ import static io.airlift.http.client.HttpStatus.familyForStatusCode;
 import static io.airlift.http.client.Request.Builder.prepareDelete;
 import static io.airlift.http.client.Request.Builder.prepareGet;
 import static io.airlift.http.client.ResponseHandlerUtils.propagate;
-import static io.airlift.http.client.StatusResponseHandler.StatusResponse;
 import static io.airlift.http.client.StatusResponseHandler.createStatusResponseHandler;
 import static io.hetu.core.transport.execution.buffer.PagesSerdeUtil.readSerializedPages;
 import static io.prestosql.PrestoMediaTypes.PRESTO_PAGES_TYPE;
@@ -74,6 +80,7 @@ import static io.prestosql.client.PrestoHeaders.PRESTO_PAGE_TOKEN;
 import static io.prestosql.client.PrestoHeaders.PRESTO_TASK_INSTANCE_ID;
 import static io.prestosql.operator.HttpPageBufferClient.PagesResponse.createEmptyPagesResponse;
 import static io.prestosql.operator.HttpPageBufferClient.PagesResponse.createPagesResponse;
+import static io.prestosql.server.PagesStreamWriter.readFrame;
 import static io.prestosql.spi.HostAddress.fromUri;
 import static io.prestosql.spi.StandardErrorCode.REMOTE_BUFFER_CLOSE_FAILED;
 import static io.prestosql.util.Failures.WORKER_NODE_ERROR;
@@ -116,11 +123,14 @@ public final class HttpPageBufferClient
     private final ClientCallback clientCallback;
     private final ScheduledExecutorService scheduler;
     private final Backoff backoff;
+    // Present if the buffer is on this node, then results are read from it directly instead of over HTTP
+    private final Optional<LocalTaskResults> localTaskResults;
+    private final Optional<Executor> streamingExecutor;
 
     @GuardedBy("this")
     private boolean closed;
     @GuardedBy("this")
-    private HttpResponseFuture<?> future;
+    private ListenableFuture<?> future;
     @GuardedBy("this")
     private DateTime lastUpdate = DateTime.now();
     @GuardedBy("this")
@@ -159,7 +169,26 @@ public final class HttpPageBufferClient
             boolean isSnapshotEnabled,
             QuerySnapshotManager querySnapshotManager)
     {
-        this(httpClient, maxResponseSize, maxErrorDuration, acknowledgePages, location, clientCallback, scheduler, Ticker.systemTicker(), pageBufferClientCallbackExecutor, isSnapshotEnabled, querySnapshotManager);
+        this(httpClient, maxResponseSize, maxErrorDuration, acknowledgePages, location, clientCallback, scheduler, Ticker.systemTicker(), pageBufferClientCallbackExecutor, isSnapshotEnabled, querySnapshotManager,
+                Optional.empty(), Optional.empty());
+    }
+
+    public HttpPageBufferClient(
+            HttpClient httpClient,
+            DataSize maxResponseSize,
+            Duration maxErrorDuration,
+            boolean acknowledgePages,
+            TaskLocation location,
+            ClientCallback clientCallback,
+            ScheduledExecutorService scheduler,
+            Executor pageBufferClientCallbackExecutor,
+            boolean isSnapshotEnabled,
+            QuerySnapshotManager querySnapshotManager,
+            Optional<LocalTaskResults> localTaskResults,
+            Optional<Executor> streamingExecutor)
+    {
+        this(httpClient, maxResponseSize, maxErrorDuration, acknowledgePages, location, clientCallback, scheduler, Ticker.systemTicker(), pageBufferClientCallbackExecutor, isSnapshotEnabled, querySnapshotManager,
+                localTaskResults, streamingExecutor);
     }
 
     @VisibleForTesting
@@ -175,6 +204,25 @@ public final class HttpPageBufferClient
             Executor pageBufferClientCallbackExecutor,
             boolean isSnapshotEnabled,
             QuerySnapshotManager querySnapshotManager)
+    {
+        this(httpClient, maxResponseSize, maxErrorDuration, acknowledgePages, location, clientCallback, scheduler, ticker, pageBufferClientCallbackExecutor, isSnapshotEnabled, querySnapshotManager,
+                Optional.empty(), Optional.empty());
+    }
+
+    private HttpPageBufferClient(
+            HttpClient httpClient,
+            DataSize maxResponseSize,
+            Duration maxErrorDuration,
+            boolean acknowledgePages,
+            TaskLocation location,
+            ClientCallback clientCallback,
+            ScheduledExecutorService scheduler,
+            Ticker ticker,
+            Executor pageBufferClientCallbackExecutor,
+            boolean isSnapshotEnabled,
+            QuerySnapshotManager querySnapshotManager,
+            Optional<LocalTaskResults> localTaskResults,
+            Optional<Executor> streamingExecutor)
     {
         this.httpClient = requireNonNull(httpClient, "httpClient is null");
         this.maxResponseSize = requireNonNull(maxResponseSize, "maxResponseSize is null");
@@ -190,6 +238,8 @@ public final class HttpPageBufferClient
         this.backoff = new Backoff(maxErrorDuration, ticker);
         this.isSnapshotEnabled = isSnapshotEnabled;
         this.querySnapshotManager = querySnapshotManager;
+        this.localTaskResults = requireNonNull(localTaskResults, "localTaskResults is null");
+        this.streamingExecutor = requireNonNull(streamingExecutor, "streamingExecutor is null");
     }
 
     public synchronized PageBufferClientStatus getStatus()
@@ -211,8 +261,11 @@ public final class HttpPageBufferClient
             state = "queued";
         }
         String httpRequestState = "not scheduled";
-        if (future != null) {
-            httpRequestState = future.getState();
+        if (future instanceof HttpResponseFuture) {
+            httpRequestState = ((HttpResponseFuture<?>) future).getState();
+        }
+        else if (future != null) {
+            httpRequestState = "local";
         }
 
         long rejectedRows = rowsRejected.get();
@@ -319,11 +372,30 @@ public final class HttpPageBufferClient
     private synchronized void sendGetResults()
     {
         URI uri = HttpUriBuilder.uriBuilderFrom(location).appendPath(String.valueOf(token)).build();
-        HttpResponseFuture<PagesResponse> resultFuture = httpClient.executeAsync(
-                addInstanceIdHeader(prepareGet())
-                        .setHeader(PRESTO_MAX_SIZE, maxResponseSize.toString())
-                        .setUri(uri).build(),
-                new PageResponseHandler(querySnapshotManager));
+        ListenableFuture<PagesResponse> resultFuture;
+        if (localTaskResults.isPresent()) {
+            resultFuture = localTaskResults.get().getResults(token, maxResponseSize, taskInstanceId, scheduler);
+        }
+        else if (streamingExecutor.isPresent()) {
+            // The server keeps writing results as they are added, up to maxResponseSize, to the same response.
+            // Each result is added as soon as it is received, and the final response only carries the next token.
+            // Responses of asynchronous requests are only handled once they are complete, so the stream is read
+            // by a blocking request on the streaming executor.
+            Request request = addInstanceIdHeader(prepareGet())
+                    .setHeader(PRESTO_MAX_SIZE, maxResponseSize.toString())
+                    .setUri(HttpUriBuilder.uriBuilderFrom(uri).appendPath("stream").build()).build();
+            PageResponseHandler responseHandler = new PageResponseHandler(querySnapshotManager, Optional.of(this::addStreamedPages));
+            ListenableFutureTask<PagesResponse> streamTask = ListenableFutureTask.create(() -> httpClient.execute(request, responseHandler));
+            streamingExecutor.get().execute(streamTask);
+            resultFuture = streamTask;
+        }
+        else {
+            resultFuture = httpClient.executeAsync(
+                    addInstanceIdHeader(prepareGet())
+                            .setHeader(PRESTO_MAX_SIZE, maxResponseSize.toString())
+                            .setUri(uri).build(),
+                    new PageResponseHandler(querySnapshotManager));
+        }
 
         future = resultFuture;
         Futures.addCallback(resultFuture, new FutureCallback<PagesResponse>()
@@ -349,7 +421,10 @@ public final class HttpPageBufferClient
                         }
                     }
 
-                    if (shouldAcknowledge && acknowledgePages) {
+                    if (shouldAcknowledge && acknowledgePages && localTaskResults.isPresent()) {
+                        localTaskResults.get().acknowledge(result.getNextToken(), taskInstanceId);
+                    }
+                    else if (shouldAcknowledge && acknowledgePages) {
                         // Acknowledge token without handling the response.
                         // The next request will also make sure the token is acknowledged.
                         // This is to fast release the pages on the buffer side.
@@ -384,14 +459,7 @@ public final class HttpPageBufferClient
                 // clientCallback can keep stats of requests and responses. For example, it may
                 // keep track of how often a client returns empty response and adjust request
                 // frequency or buffer size.
-                if (clientCallback.addPages(HttpPageBufferClient.this, pages)) {
-                    pagesReceived.addAndGet(pages.size());
-                    rowsReceived.addAndGet(pages.stream().mapToLong(SerializedPage::getPositionCount).sum());
-                }
-                else {
-                    pagesRejected.addAndGet(pages.size());
-                    rowsRejected.addAndGet(pages.stream().mapToLong(SerializedPage::getPositionCount).sum());
-                }
+                addPages(pages);
 
                 synchronized (HttpPageBufferClient.this) {
                     // client is complete, acknowledge it by sending it a delete in the next request
@@ -435,6 +503,34 @@ public final class HttpPageBufferClient
         }, pageBufferClientCallbackExecutor);
     }
 
+    private void addPages(List<SerializedPage> pages)
+    {
+        if (clientCallback.addPages(this, pages)) {
+            pagesReceived.addAndGet(pages.size());
+            rowsReceived.addAndGet(pages.stream().mapToLong(SerializedPage::getPositionCount).sum());
+        }
+        else {
+            pagesRejected.addAndGet(pages.size());
+            rowsRejected.addAndGet(pages.stream().mapToLong(SerializedPage::getPositionCount).sum());
+        }
+    }
+
+    private void addStreamedPages(PagesResponse result)
+    {
+        checkNotHoldsLock(this);
+
+        synchronized (this) {
+            // Same as for other responses, ignore pages of an unexpected token, e.g. of a buffer that's already destroyed
+            if (result.getToken() != token) {
+                return;
+            }
+            token = result.getNextToken();
+        }
+        if (!result.getPages().isEmpty()) {
+            addPages(result.getPages());
+        }
+    }
+
     private synchronized void sendDelete()
     {
         if (isSnapshotEnabled && taskInstanceId == null) {
@@ -443,12 +539,18 @@ public final class HttpPageBufferClient
             // That prevents scheduling the task on the worker again.
             return;
         }
-        HttpResponseFuture<StatusResponse> resultFuture = httpClient.executeAsync(addInstanceIdHeader(prepareDelete()).setUri(location).build(), createStatusResponseHandler());
+        ListenableFuture<?> resultFuture;
+        if (localTaskResults.isPresent()) {
+            resultFuture = localTaskResults.get().abort(taskInstanceId);
+        }
+        else {
+            resultFuture = httpClient.executeAsync(addInstanceIdHeader(prepareDelete()).setUri(location).build(), createStatusResponseHandler());
+        }
         future = resultFuture;
-        Futures.addCallback(resultFuture, new FutureCallback<StatusResponse>()
+        Futures.addCallback(resultFuture, new FutureCallback<Object>()
         {
             @Override
-            public void onSuccess(@Nullable StatusResponse result)
+            public void onSuccess(@Nullable Object result)
             {
                 checkNotHoldsLock(this);
                 backoff.success();
@@ -487,7 +589,7 @@ public final class HttpPageBufferClient
         checkState(!Thread.holdsLock(lock), "Cannot execute this method while holding a lock");
     }
 
-    private void handleFailure(Throwable t, HttpResponseFuture<?> expectedFuture)
+    private void handleFailure(Throwable t, Future<?> expectedFuture)
     {
         // Can not delegate to other callback while holding a lock on this
         checkNotHoldsLock(this);
@@ -566,10 +668,17 @@ public final class HttpPageBufferClient
             implements ResponseHandler<PagesResponse, RuntimeException>
     {
         private final QuerySnapshotManager querySnapshotManager;
+        private final Optional<Consumer<PagesResponse>> streamedPagesConsumer;
 
         private PageResponseHandler(QuerySnapshotManager querySnapshotManager)
+        {
+            this(querySnapshotManager, Optional.empty());
+        }
+
+        private PageResponseHandler(QuerySnapshotManager querySnapshotManager, Optional<Consumer<PagesResponse>> streamedPagesConsumer)
         {
             this.querySnapshotManager = querySnapshotManager;
+            this.streamedPagesConsumer = requireNonNull(streamedPagesConsumer, "streamedPagesConsumer is null");
         }
 
         @Override
@@ -618,6 +727,10 @@ public final class HttpPageBufferClient
                             PRESTO_PAGES_TYPE, contentType));
                 }
 
+                if (streamedPagesConsumer.isPresent()) {
+                    return readStreamedPages(response, streamedPagesConsumer.get());
+                }
+
                 long token = getToken(response);
                 long nextToken = getNextToken(response);
                 boolean complete = getComplete(response);
@@ -644,6 +757,26 @@ public final class HttpPageBufferClient
             }
         }
 
+        private static PagesResponse readStreamedPages(Response response, Consumer<PagesResponse> consumer)
+        {
+            long nextToken = getToken(response);
+            boolean complete = false;
+            try (SliceInput input = new InputStreamSliceInput(response.getInputStream())) {
+                while (input.isReadable()) {
+                    BufferResult result = readFrame(input);
+                    nextToken = result.getNextToken();
+                    complete = result.isBufferComplete();
+                    consumer.accept(createPagesResponse(result.getToken(), result.getNextToken(), result.getSerializedPages(), result.isBufferComplete()));
+                }
+            }
+            catch (IOException | UncheckedIOException | IndexOutOfBoundsException e) {
+                // The server only acknowledges results when they are requested, so the request is retried
+                // from the token after the last frame that was received completely
+                throw new RuntimeException("Stream of pages was interrupted", e);
+            }
+            return createEmptyPagesResponse(nextToken, nextToken, complete);
+        }
+
         private static long getToken(Response response)
         {
             String tokenHeader = response.getHeader(PRESTO_PAGE_TOKEN);
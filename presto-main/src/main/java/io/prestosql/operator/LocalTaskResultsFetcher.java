@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.prestosql.operator;
+
+import com.google.common.base.Splitter;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import io.airlift.units.DataSize;
+import io.airlift.units.Duration;
+import io.prestosql.execution.LocationFactory;
+import io.prestosql.execution.TaskId;
+import io.prestosql.execution.TaskManager;
+import io.prestosql.execution.buffer.BufferResult;
+import io.prestosql.execution.buffer.OutputBuffers.OutputBufferId;
+import io.prestosql.operator.HttpPageBufferClient.PagesResponse;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static com.google.common.base.Strings.nullToEmpty;
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
+import static io.airlift.concurrent.MoreFutures.addTimeout;
+import static io.airlift.http.client.HttpUriBuilder.uriBuilderFrom;
+import static io.prestosql.operator.HttpPageBufferClient.PagesResponse.createEmptyPagesResponse;
+import static io.prestosql.operator.HttpPageBufferClient.PagesResponse.createPagesResponse;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Reads results of tasks running on this node directly from their output buffers, instead of over HTTP.
+ * The serialized pages are handed over as they are, without going through the HTTP stack or being copied.
+ * Acknowledgement and abort have the same semantics as the HTTP results resource.
+ */
+public class LocalTaskResultsFetcher
+{
+    // Same as the maximum wait of the HTTP results resource, so clients periodically re-request even if no result arrives
+    private static final Duration MAX_WAIT_TIME = new Duration(2, SECONDS);
+
+    private final Provider<TaskManager> taskManager;
+    private final LocationFactory locationFactory;
+
+    @Inject
+    public LocalTaskResultsFetcher(Provider<TaskManager> taskManager, LocationFactory locationFactory)
+    {
+        // Task manager is indirectly dependent on this class through the exchange client factory
+        this.taskManager = requireNonNull(taskManager, "taskManager is null");
+        this.locationFactory = requireNonNull(locationFactory, "locationFactory is null");
+    }
+
+    /**
+     * Returns the output buffer the results location refers to, if the task is on this node
+     */
+    public Optional<LocalTaskResults> getLocalTaskResults(URI location)
+    {
+        // Results locations have the form <task location>/results/<buffer id>
+        List<String> segments = Splitter.on('/').omitEmptyStrings().splitToList(nullToEmpty(location.getPath()));
+        if (segments.size() < 3 || !segments.get(segments.size() - 2).equals("results")) {
+            return Optional.empty();
+        }
+
+        TaskId taskId;
+        OutputBufferId bufferId;
+        try {
+            taskId = TaskId.valueOf(segments.get(segments.size() - 3));
+            bufferId = OutputBufferId.fromString(segments.get(segments.size() - 1));
+        }
+        catch (RuntimeException e) {
+            return Optional.empty();
+        }
+
+        URI localLocation = uriBuilderFrom(locationFactory.createLocalTaskLocation(taskId))
+                .appendPath("results")
+                .appendPath(bufferId.toString())
+                .build();
+        if (!localLocation.equals(location)) {
+            return Optional.empty();
+        }
+        return Optional.of(new LocalTaskResults(taskManager.get(), taskId, bufferId));
+    }
+
+    public static class LocalTaskResults
+    {
+        private final TaskManager taskManager;
+        private final TaskId taskId;
+        private final OutputBufferId bufferId;
+
+        private LocalTaskResults(TaskManager taskManager, TaskId taskId, OutputBufferId bufferId)
+        {
+            this.taskManager = requireNonNull(taskManager, "taskManager is null");
+            this.taskId = requireNonNull(taskId, "taskId is null");
+            this.bufferId = requireNonNull(bufferId, "bufferId is null");
+        }
+
+        public ListenableFuture<PagesResponse> getResults(long token, DataSize maxSize, String taskInstanceId, ScheduledExecutorService timeoutExecutor)
+        {
+            ListenableFuture<BufferResult> bufferResultFuture;
+            try {
+                bufferResultFuture = taskManager.getTaskResults(taskId, bufferId, token, maxSize, taskInstanceId);
+            }
+            catch (RuntimeException e) {
+                return Futures.immediateFailedFuture(e);
+            }
+            if (bufferResultFuture == null) {
+                // Task instance has been cancelled. Keep requesting, until the requesting task is cancelled too (to resume).
+                return Futures.immediateFuture(createEmptyPagesResponse(token, token, false));
+            }
+
+            bufferResultFuture = addTimeout(
+                    bufferResultFuture,
+                    () -> BufferResult.emptyResults(token, false),
+                    MAX_WAIT_TIME,
+                    timeoutExecutor);
+            return Futures.transform(
+                    bufferResultFuture,
+                    result -> createPagesResponse(result.getToken(), result.getNextToken(), result.getSerializedPages(), result.isBufferComplete()),
+                    directExecutor());
+        }
+
+        public void acknowledge(long token, String taskInstanceId)
+        {
+            taskManager.acknowledgeTaskResults(taskId, bufferId, token, taskInstanceId);
+        }
+
+        public ListenableFuture<?> abort(String taskInstanceId)
+        {
+            try {
+                taskManager.abortTaskResults(taskId, bufferId, taskInstanceId);
+                return Futures.immediateFuture(null);
+            }
+            catch (RuntimeException e) {
+                return Futures.immediateFailedFuture(e);
+            }
+        }
+    }
+}
@@ -24,6 +24,7 @@ import io.prestosql.spi.type.Type;
 import io.prestosql.sql.gen.JoinCompiler;
 
 import java.io.Serializable;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 
@@ -71,6 +72,14 @@ public class MarkDistinctHash
                 });
     }
 
+    /**
+     * Returns pages with all distinct values seen so far, see {@link GroupByHash#getGroupValues()}
+     */
+    public Iterator<Page> getDistinctValues()
+    {
+        return groupByHash.getGroupValues();
+    }
+
     @VisibleForTesting
     public int getCapacity()
     {
@@ -16,29 +16,45 @@ package io.prestosql.operator;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
 import com.google.common.primitives.Ints;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import io.prestosql.memory.context.LocalMemoryContext;
 import io.prestosql.snapshot.SingleInputSnapshotState;
+import io.prestosql.snapshot.Spillable;
 import io.prestosql.spi.Page;
 import io.prestosql.spi.block.Block;
+import io.prestosql.spi.block.RunLengthEncodedBlock;
 import io.prestosql.spi.plan.PlanNodeId;
 import io.prestosql.spi.snapshot.BlockEncodingSerdeProvider;
 import io.prestosql.spi.snapshot.RestorableConfig;
 import io.prestosql.spi.type.Type;
+import io.prestosql.spiller.PartitioningSpillerFactory;
 import io.prestosql.sql.gen.JoinCompiler;
 
 import java.io.Serializable;
+import java.nio.file.Path;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Supplier;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.collect.Iterators.singletonIterator;
+import static com.google.common.collect.Iterators.transform;
+import static com.google.common.util.concurrent.Futures.immediateFuture;
+import static io.airlift.concurrent.MoreFutures.checkSuccess;
 import static io.prestosql.spi.type.BooleanType.BOOLEAN;
 import static java.util.Objects.requireNonNull;
 
-@RestorableConfig(uncapturedFields = {"inputPage", "unfinishedWork", "snapshotState"})
+// When spill is enabled:
+// - outputPage, spillInProgress: a marker can't be received while they are present
+// - spilledKeys, spilledRows: markers are not received once the operator is finishing
+@RestorableConfig(uncapturedFields = {"inputPage", "unfinishedWork", "snapshotState", "types", "markDistinctChannels", "hashChannel",
+        "markDistinctHashSupplier", "outputPage", "spillInProgress", "spilledKeys", "spilledRows"})
 public class MarkDistinctOperator
-        implements Operator
+        implements Operator, Spillable
 {
     public static class MarkDistinctOperatorFactory
             implements OperatorFactory
@@ -49,6 +65,8 @@ public class MarkDistinctOperator
         private final List<Integer> markDistinctChannels;
         private final List<Type> types;
         private final JoinCompiler joinCompiler;
+        private final boolean spillEnabled;
+        private final Optional<PartitioningSpillerFactory> partitioningSpillerFactory;
         private boolean closed;
 
         public MarkDistinctOperatorFactory(
@@ -58,6 +76,19 @@ public class MarkDistinctOperator
                 Collection<Integer> markDistinctChannels,
                 Optional<Integer> hashChannel,
                 JoinCompiler joinCompiler)
+        {
+            this(operatorId, planNodeId, sourceTypes, markDistinctChannels, hashChannel, joinCompiler, false, Optional.empty());
+        }
+
+        public MarkDistinctOperatorFactory(
+                int operatorId,
+                PlanNodeId planNodeId,
+                List<? extends Type> sourceTypes,
+                Collection<Integer> markDistinctChannels,
+                Optional<Integer> hashChannel,
+                JoinCompiler joinCompiler,
+                boolean spillEnabled,
+                Optional<PartitioningSpillerFactory> partitioningSpillerFactory)
         {
             this.operatorId = operatorId;
             this.planNodeId = requireNonNull(planNodeId, "planNodeId is null");
@@ -69,6 +100,9 @@ public class MarkDistinctOperator
                     .addAll(sourceTypes)
                     .add(BOOLEAN)
                     .build();
+            this.spillEnabled = spillEnabled;
+            this.partitioningSpillerFactory = requireNonNull(partitioningSpillerFactory, "partitioningSpillerFactory is null");
+            checkArgument(!spillEnabled || partitioningSpillerFactory.isPresent(), "Spiller Factory is not present when spill is enabled");
         }
 
         @Override
@@ -76,7 +110,7 @@ public class MarkDistinctOperator
         {
             checkState(!closed, "Factory is already closed");
             OperatorContext operatorContext = driverContext.addOperatorContext(operatorId, planNodeId, MarkDistinctOperator.class.getSimpleName());
-            return new MarkDistinctOperator(operatorContext, types, markDistinctChannels, hashChannel, joinCompiler);
+            return new MarkDistinctOperator(operatorContext, types, markDistinctChannels, hashChannel, joinCompiler, spillEnabled, partitioningSpillerFactory);
         }
 
         @Override
@@ -88,35 +122,78 @@ public class MarkDistinctOperator
         @Override
         public OperatorFactory duplicate()
         {
-            return new MarkDistinctOperatorFactory(operatorId, planNodeId, types.subList(0, types.size() - 1), markDistinctChannels, hashChannel, joinCompiler);
+            return new MarkDistinctOperatorFactory(operatorId, planNodeId, types.subList(0, types.size() - 1), markDistinctChannels, hashChannel, joinCompiler, spillEnabled, partitioningSpillerFactory);
         }
     }
 
     private final OperatorContext operatorContext;
-    private final MarkDistinctHash markDistinctHash;
+    private final Supplier<MarkDistinctHash> markDistinctHashSupplier;
+    private MarkDistinctHash markDistinctHash;
     private final LocalMemoryContext localUserMemoryContext;
+    private final LocalMemoryContext localRevocableMemoryContext;
+
+    // input types
+    private final List<Type> types;
+    private final List<Integer> markDistinctChannels;
+    private final Optional<Integer> hashChannel;
 
     private Page inputPage;
     private boolean finishing;
 
     // for yield when memory is not available
     private Work<Block> unfinishedWork;
+    // input marked when memory is revoked, before it can be returned
+    private Page outputPage;
+
+    // Once spilled, distinct values seen so far are in keySpiller and all following input goes to rowSpiller.
+    // When finishing, each partition is processed on its own: its keys are added to the hash before its rows are marked.
+    private final Optional<HashPartitionedSpiller> keySpiller;
+    private final Optional<HashPartitionedSpiller> rowSpiller;
+    private ListenableFuture<?> spillInProgress = immediateFuture(null);
+    private Iterator<Page> spilledKeys;
+    private Iterator<Page> spilledRows;
 
     private final SingleInputSnapshotState snapshotState;
 
     public MarkDistinctOperator(OperatorContext operatorContext, List<Type> types, List<Integer> markDistinctChannels, Optional<Integer> hashChannel, JoinCompiler joinCompiler)
+    {
+        this(operatorContext, types, markDistinctChannels, hashChannel, joinCompiler, false, Optional.empty());
+    }
+
+    public MarkDistinctOperator(
+            OperatorContext operatorContext,
+            List<Type> types,
+            List<Integer> markDistinctChannels,
+            Optional<Integer> hashChannel,
+            JoinCompiler joinCompiler,
+            boolean spillEnabled,
+            Optional<PartitioningSpillerFactory> partitioningSpillerFactory)
     {
         this.operatorContext = requireNonNull(operatorContext, "operatorContext is null");
 
-        requireNonNull(hashChannel, "hashChannel is null");
-        requireNonNull(markDistinctChannels, "markDistinctChannels is null");
+        this.hashChannel = requireNonNull(hashChannel, "hashChannel is null");
+        this.markDistinctChannels = ImmutableList.copyOf(requireNonNull(markDistinctChannels, "markDistinctChannels is null"));
+        // the last type is the type of the output mark
+        this.types = ImmutableList.copyOf(types.subList(0, types.size() - 1));
 
-        ImmutableList.Builder<Type> distinctTypes = ImmutableList.builder();
+        ImmutableList.Builder<Type> distinctTypesBuilder = ImmutableList.builder();
         for (int channel : markDistinctChannels) {
-            distinctTypes.add(types.get(channel));
+            distinctTypesBuilder.add(types.get(channel));
         }
-        this.markDistinctHash = new MarkDistinctHash(operatorContext.getSession(), distinctTypes.build(), Ints.toArray(markDistinctChannels), hashChannel, joinCompiler, this::updateMemoryReservation);
+        List<Type> distinctTypes = distinctTypesBuilder.build();
+        this.markDistinctHashSupplier = () -> new MarkDistinctHash(operatorContext.getSession(), distinctTypes, Ints.toArray(markDistinctChannels), hashChannel, joinCompiler, this::updateMemoryReservation);
+        this.markDistinctHash = markDistinctHashSupplier.get();
         this.localUserMemoryContext = operatorContext.localUserMemoryContext();
+        this.localRevocableMemoryContext = operatorContext.localRevocableMemoryContext();
+        if (spillEnabled) {
+            PartitioningSpillerFactory spillerFactory = partitioningSpillerFactory.orElseThrow(() -> new IllegalArgumentException("Spiller Factory is not present when spill is enabled"));
+            this.keySpiller = Optional.of(new HashPartitionedSpiller(this.types, markDistinctChannels, hashChannel, spillerFactory, operatorContext));
+            this.rowSpiller = Optional.of(new HashPartitionedSpiller(this.types, markDistinctChannels, hashChannel, spillerFactory, operatorContext));
+        }
+        else {
+            this.keySpiller = Optional.empty();
+            this.rowSpiller = Optional.empty();
+        }
         this.snapshotState = operatorContext.isSnapshotEnabled() ? SingleInputSnapshotState.forOperator(this, operatorContext) : null;
     }
 
@@ -129,7 +206,13 @@ public class MarkDistinctOperator
     @Override
     public void finish()
     {
+        if (finishing || !spillInProgress.isDone()) {
+            return;
+        }
+        checkSuccess(spillInProgress, "spilling failed");
         finishing = true;
+        // the hash is no longer revocable as the following input must be marked against it
+        updateMemoryReservation();
     }
 
     @Override
@@ -140,13 +223,19 @@ public class MarkDistinctOperator
             return false;
         }
 
-        return finishing && !hasUnfinishedInput();
+        return finishing && !hasUnfinishedInput() && !hasSpilledPartitions();
     }
 
     @Override
     public boolean needsInput()
     {
-        return !finishing && !hasUnfinishedInput();
+        return !finishing && !hasUnfinishedInput() && spillInProgress.isDone();
+    }
+
+    @Override
+    public ListenableFuture<?> isBlocked()
+    {
+        return spillInProgress.isDone() ? NOT_BLOCKED : spillInProgress;
     }
 
     @Override
@@ -154,6 +243,7 @@ public class MarkDistinctOperator
     {
         requireNonNull(page, "page is null");
         checkState(needsInput());
+        checkSuccess(spillInProgress, "spilling failed");
 
         if (snapshotState != null) {
             if (snapshotState.processPage(page)) {
@@ -161,6 +251,12 @@ public class MarkDistinctOperator
             }
         }
 
+        if (isSpilled()) {
+            // rows are marked when their partition is processed after all input is received
+            spillInProgress = rowSpiller.get().spill(singletonIterator(page));
+            return;
+        }
+
         inputPage = page;
 
         unfinishedWork = markDistinctHash.markDistinctRows(page);
@@ -177,7 +273,18 @@ public class MarkDistinctOperator
             }
         }
 
+        checkSuccess(spillInProgress, "spilling failed");
+
+        if (outputPage != null) {
+            Page result = outputPage;
+            outputPage = null;
+            return result;
+        }
+
         if (unfinishedWork == null) {
+            if (finishing && hasSpilledPartitions()) {
+                processSpilledPartitions();
+            }
             return null;
         }
 
@@ -185,14 +292,103 @@ public class MarkDistinctOperator
             return null;
         }
 
-        // add the new boolean column to the page
-        Page outputPage = inputPage.appendColumn(unfinishedWork.getResult());
+        Page result = null;
+        if (inputPage != null) {
+            // add the new boolean column to the page
+            result = inputPage.appendColumn(unfinishedWork.getResult());
+        }
 
         unfinishedWork = null;
         inputPage = null;
 
         updateMemoryReservation();
-        return outputPage;
+        return result;
+    }
+
+    private void processSpilledPartitions()
+    {
+        if (spilledKeys != null && spilledKeys.hasNext()) {
+            // only adds the keys to the hash, they were already marked before they were spilled
+            unfinishedWork = markDistinctHash.markDistinctRows(spilledKeys.next());
+        }
+        else if (spilledRows != null && spilledRows.hasNext()) {
+            inputPage = spilledRows.next();
+            unfinishedWork = markDistinctHash.markDistinctRows(inputPage);
+        }
+        else if (shouldRepartitionNextPartition()) {
+            // the partition is larger than the keys held when memory was revoked, so it's read as smaller partitions
+            spillInProgress = Futures.allAsList(keySpiller.get().repartitionNextPartition(), rowSpiller.get().repartitionNextPartition());
+            return;
+        }
+        else {
+            markDistinctHash = markDistinctHashSupplier.get();
+            spilledKeys = keySpiller.get().readNextPartition();
+            spilledRows = rowSpiller.get().readNextPartition();
+        }
+        updateMemoryReservation();
+    }
+
+    // the keys and rows of a partition are read together, so both spillers repartition the same partitions
+    private boolean shouldRepartitionNextPartition()
+    {
+        HashPartitionedSpiller keys = keySpiller.get();
+        HashPartitionedSpiller rows = rowSpiller.get();
+        return keys.canRepartitionNextPartition() && keys.getNextPartitionSize() + rows.getNextPartitionSize() > keys.getMaxSpillSize();
+    }
+
+    private boolean hasSpilledPartitions()
+    {
+        return isSpilled() && (keySpiller.get().hasNextPartition()
+                || spilledKeys.hasNext()
+                || spilledRows.hasNext());
+    }
+
+    @Override
+    public ListenableFuture<?> startMemoryRevoke()
+    {
+        if (finishing || isSpilled()) {
+            // all following input is spilled as it arrives, and the hash is not revocable any more
+            return immediateFuture(null);
+        }
+
+        if (unfinishedWork != null) {
+            // hash memory is revocable, so marking doesn't have to wait for memory
+            checkState(unfinishedWork.process(), "Marking distinct rows did not finish");
+            outputPage = inputPage.appendColumn(unfinishedWork.getResult());
+            unfinishedWork = null;
+            inputPage = null;
+        }
+
+        Iterator<Page> keys = transform(markDistinctHash.getDistinctValues(), this::toInputLayout);
+        spillInProgress = keySpiller.get().spill(keys);
+        return spillInProgress;
+    }
+
+    @Override
+    public void finishMemoryRevoke()
+    {
+        checkSuccess(spillInProgress, "spilling failed");
+        if (isSpilled()) {
+            markDistinctHash = markDistinctHashSupplier.get();
+        }
+        updateMemoryReservation();
+    }
+
+    // put the distinct values on their channels in the input, so that they partition and hash like the input rows
+    private Page toInputLayout(Page distinctValues)
+    {
+        int positionCount = distinctValues.getPositionCount();
+        Block[] blocks = new Block[types.size()];
+        for (int channel = 0; channel < types.size(); channel++) {
+            blocks[channel] = RunLengthEncodedBlock.create(types.get(channel), null, positionCount);
+        }
+        for (int i = 0; i < markDistinctChannels.size(); i++) {
+            blocks[markDistinctChannels.get(i)] = distinctValues.getBlock(i);
+        }
+        if (hashChannel.isPresent()) {
+            blocks[hashChannel.get()] = distinctValues.getBlock(markDistinctChannels.size());
+        }
+        return new Page(positionCount, blocks);
     }
 
     @Override
@@ -203,7 +399,7 @@ public class MarkDistinctOperator
 
     private boolean hasUnfinishedInput()
     {
-        return inputPage != null || unfinishedWork != null;
+        return inputPage != null || unfinishedWork != null || outputPage != null;
     }
 
     /**
@@ -218,11 +414,40 @@ public class MarkDistinctOperator
     {
         // Operator/driver will be blocked on memory after we call localUserMemoryContext.setBytes().
         // If memory is not available, once we return, this operator will be blocked until memory is available.
+        if (keySpiller.isPresent() && !finishing && !isSpilled()) {
+            // Revocable memory is spilled by the driver when needed, so marking can always continue.
+            localUserMemoryContext.setBytes(0);
+            localRevocableMemoryContext.setBytes(markDistinctHash.getEstimatedSize());
+            return true;
+        }
+        localRevocableMemoryContext.setBytes(0);
         localUserMemoryContext.setBytes(markDistinctHash.getEstimatedSize());
         // If memory is not available, inform the caller that we cannot proceed for allocation.
         return operatorContext.isWaitingForMemory().isDone();
     }
 
+    @Override
+    public boolean isSpilled()
+    {
+        return keySpiller.isPresent() && keySpiller.get().isSpilled();
+    }
+
+    @Override
+    public List<Path> getSpilledFilePaths()
+    {
+        ImmutableList.Builder<Path> paths = ImmutableList.builder();
+        keySpiller.ifPresent(spiller -> paths.addAll(spiller.getSpilledFilePaths()));
+        rowSpiller.ifPresent(spiller -> paths.addAll(spiller.getSpilledFilePaths()));
+        return paths.build();
+    }
+
+    @Override
+    public void close()
+    {
+        keySpiller.ifPresent(HashPartitionedSpiller::close);
+        rowSpiller.ifPresent(HashPartitionedSpiller::close);
+    }
+
     @VisibleForTesting
     public int getCapacity()
     {
@@ -236,7 +461,12 @@ public class MarkDistinctOperator
         myState.operatorContext = operatorContext.capture(serdeProvider);
         myState.markDistinctHash = markDistinctHash.capture(serdeProvider);
         myState.localUserMemoryContext = localUserMemoryContext.getBytes();
+        myState.localRevocableMemoryContext = localRevocableMemoryContext.getBytes();
         myState.finishing = finishing;
+        if (keySpiller.isPresent()) {
+            myState.keySpiller = keySpiller.get().capture(serdeProvider);
+            myState.rowSpiller = rowSpiller.get().capture(serdeProvider);
+        }
         return myState;
     }
 
@@ -247,7 +477,12 @@ public class MarkDistinctOperator
         this.operatorContext.restore(myState.operatorContext, serdeProvider);
         this.markDistinctHash.restore(myState.markDistinctHash, serdeProvider);
         this.localUserMemoryContext.setBytes(myState.localUserMemoryContext);
+        this.localRevocableMemoryContext.setBytes(myState.localRevocableMemoryContext);
         this.finishing = myState.finishing;
+        if (keySpiller.isPresent()) {
+            keySpiller.get().restore(myState.keySpiller, serdeProvider);
+            rowSpiller.get().restore(myState.rowSpiller, serdeProvider);
+        }
     }
 
     private static class MarkDistinctOperatorState
@@ -256,6 +491,9 @@ public class MarkDistinctOperator
         private Object operatorContext;
         private Object markDistinctHash;
         private long localUserMemoryContext;
+        private long localRevocableMemoryContext;
         private boolean finishing;
+        private Object keySpiller;
+        private Object rowSpiller;
     }
 }
@@ -44,6 +44,7 @@ import java.util.function.Supplier;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
+import static io.prestosql.SystemSessionProperties.isExchangeStreamingEnabled;
 import static io.prestosql.util.MergeSortedPages.mergeSortedPages;
 import static io.prestosql.util.MoreLists.mappedCopy;
 import static java.util.Objects.requireNonNull;
@@ -170,6 +171,7 @@ public class MergeOperator
         URI location = ((RemoteSplit) split.getConnectorSplit()).getLocation();
         String instanceId = ((RemoteSplit) split.getConnectorSplit()).getInstanceId();
         ExchangeClient exchangeClient = closer.register(exchangeClientSupplier.get(operatorContext.localSystemMemoryContext()));
+        exchangeClient.setStreamingEnabled(isExchangeStreamingEnabled(operatorContext.getSession()));
         if (operatorContext.isSnapshotEnabled()) {
             exchangeClient.setSnapshotEnabled(operatorContext.getDriverContext().getPipelineContext().getTaskContext().getSnapshotManager().getQuerySnapshotManager());
             exchangeClient.setSnapshotState(snapshotState);
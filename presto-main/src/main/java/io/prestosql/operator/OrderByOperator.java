@@ -17,6 +17,7 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.primitives.Ints;
 import com.google.common.util.concurrent.ListenableFuture;
 import io.prestosql.memory.context.LocalMemoryContext;
+import io.prestosql.snapshot.IncrementalRestorable;
 import io.prestosql.snapshot.SingleInputSnapshotState;
 import io.prestosql.snapshot.Spillable;
 import io.prestosql.spi.Page;
@@ -54,7 +55,7 @@ import static java.util.Objects.requireNonNull;
 @RestorableConfig(uncapturedFields = {"sortChannels", "sortOrder", "outputChannels", "sourceTypes", "spillerFactory",
         "orderingCompiler", "spillInProgress", "finishMemoryRevoke", "sortedPages", "state", "snapshotState"})
 public class OrderByOperator
-        implements Operator, Spillable
+        implements Operator, Spillable, IncrementalRestorable
 {
     public static class OrderByOperatorFactory
             implements OperatorFactory
@@ -475,6 +476,35 @@ public class OrderByOperator
         }
     }
 
+    @Override
+    public Optional<Object> captureIncrement(BlockEncodingSerdeProvider serdeProvider)
+    {
+        if (spiller.isPresent()) {
+            return Optional.empty();
+        }
+        Optional<Object> pageIndexIncrement = pageIndex.captureIncrement(serdeProvider);
+        if (!pageIndexIncrement.isPresent()) {
+            return Optional.empty();
+        }
+
+        OrderByOperatorState myState = new OrderByOperatorState();
+        myState.operatorContext = operatorContext.capture(serdeProvider);
+        myState.revocableMemoryContext = revocableMemoryContext.getBytes();
+        myState.localUserMemoryContext = localUserMemoryContext.getBytes();
+        myState.pageIndex = pageIndexIncrement.get();
+        return Optional.of(myState);
+    }
+
+    @Override
+    public void restoreIncrement(Object increment, BlockEncodingSerdeProvider serdeProvider)
+    {
+        OrderByOperatorState myState = (OrderByOperatorState) increment;
+        this.operatorContext.restore(myState.operatorContext, serdeProvider);
+        this.revocableMemoryContext.setBytes(myState.revocableMemoryContext);
+        this.localUserMemoryContext.setBytes(myState.localUserMemoryContext);
+        this.pageIndex.restoreIncrement(myState.pageIndex, serdeProvider);
+    }
+
     @Override
     public boolean supportsConsolidatedWrites()
     {
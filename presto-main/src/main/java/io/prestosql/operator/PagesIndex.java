@@ -78,7 +78,8 @@ import static java.util.Objects.requireNonNull;
  * <li>Positional output via the {@link #appendTo} method</li>
  * </ul>
  */
-@RestorableConfig(uncapturedFields = {"orderingCompiler", "joinCompiler", "metadata", "types"})
+@RestorableConfig(uncapturedFields = {"orderingCompiler", "joinCompiler", "metadata", "types",
+        "capturedBlockCount", "capturedPositionCount", "canCaptureIncrement"})
 public class PagesIndex
         implements Swapper, Restorable
 {
@@ -99,6 +100,11 @@ public class PagesIndex
     private long pagesMemorySize;
     private long estimatedSize;
 
+    // Blocks and positions already included in the last captured state, see captureIncrement()
+    private int capturedBlockCount;
+    private int capturedPositionCount;
+    private boolean canCaptureIncrement;
+
     private PagesIndex(
             OrderingCompiler orderingCompiler,
             JoinCompiler joinCompiler,
@@ -203,6 +209,7 @@ public class PagesIndex
         positionCount = 0;
         nextBlockToCompact = 0;
         pagesMemorySize = 0;
+        canCaptureIncrement = false;
 
         estimatedSize = calculateEstimatedSize();
     }
@@ -383,6 +390,8 @@ public class PagesIndex
 
     public void sort(List<Integer> sortChannels, List<SortOrder> sortOrders, int startPosition, int endPosition)
     {
+        // Sorting reorders captured value addresses
+        canCaptureIncrement = false;
         createPagesIndexComparator(sortChannels, sortOrders).sort(this, startPosition, endPosition);
     }
 
@@ -612,9 +621,71 @@ public class PagesIndex
         myState.positionCount = positionCount;
         myState.pagesMemorySize = pagesMemorySize;
         myState.estimatedSize = estimatedSize;
+        markCaptured();
         return myState;
     }
 
+    /**
+     * Capture blocks and value addresses added since the last capture or restore.
+     * Blocks compacted after they were captured hold the same values, so they don't need to be captured again.
+     *
+     * @return empty if value addresses have been reordered or cleared since the last capture or restore
+     */
+    public Optional<Object> captureIncrement(BlockEncodingSerdeProvider serdeProvider)
+    {
+        if (!canCaptureIncrement) {
+            return Optional.empty();
+        }
+
+        BlockEncodingSerde blockSerde = serdeProvider.getBlockEncodingSerde();
+        PagesIndexState myState = new PagesIndexState();
+        myState.valueAddresses = new long[valueAddresses.size() - capturedPositionCount];
+        valueAddresses.getElements(capturedPositionCount, myState.valueAddresses, 0, myState.valueAddresses.length);
+        myState.channels = new byte[channels.length][][];
+        for (int i = 0; i < channels.length; i++) {
+            myState.channels[i] = new byte[channels[i].size() - capturedBlockCount][];
+            for (int j = 0; j < myState.channels[i].length; j++) {
+                SliceOutput sliceOutput = new DynamicSliceOutput(0);
+                blockSerde.writeBlock(sliceOutput, channels[i].get(capturedBlockCount + j));
+                myState.channels[i][j] = sliceOutput.slice().getBytes();
+            }
+        }
+        myState.nextBlockToCompact = nextBlockToCompact;
+        myState.positionCount = positionCount;
+        myState.pagesMemorySize = pagesMemorySize;
+        myState.estimatedSize = estimatedSize;
+        markCaptured();
+        return Optional.of(myState);
+    }
+
+    /**
+     * Append blocks and value addresses captured by captureIncrement()
+     */
+    public void restoreIncrement(Object state, BlockEncodingSerdeProvider serdeProvider)
+    {
+        BlockEncodingSerde blockSerde = serdeProvider.getBlockEncodingSerde();
+        PagesIndexState myState = (PagesIndexState) state;
+        this.valueAddresses.addElements(this.valueAddresses.size(), myState.valueAddresses);
+        for (int i = 0; i < myState.channels.length; i++) {
+            for (byte[] blockState : myState.channels[i]) {
+                Slice input = Slices.wrappedBuffer(blockState);
+                this.channels[i].add(blockSerde.readBlock(input.getInput()));
+            }
+        }
+        this.nextBlockToCompact = myState.nextBlockToCompact;
+        this.positionCount = myState.positionCount;
+        this.pagesMemorySize = myState.pagesMemorySize;
+        this.estimatedSize = myState.estimatedSize;
+        markCaptured();
+    }
+
+    private void markCaptured()
+    {
+        capturedBlockCount = channels.length > 0 ? channels[0].size() : 0;
+        capturedPositionCount = valueAddresses.size();
+        canCaptureIncrement = true;
+    }
+
     @Override
     public void restore(Object state, BlockEncodingSerdeProvider serdeProvider)
     {
@@ -635,6 +706,7 @@ public class PagesIndex
         this.positionCount = myState.positionCount;
         this.pagesMemorySize = myState.pagesMemorySize;
         this.estimatedSize = myState.estimatedSize;
+        markCaptured();
     }
 
     private static class PagesIndexState
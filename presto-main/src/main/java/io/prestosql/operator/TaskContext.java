@@ -41,6 +41,7 @@ import javax.annotation.concurrent.GuardedBy;
 import javax.annotation.concurrent.ThreadSafe;
 
 import java.util.List;
+import java.util.Map;
 import java.util.OptionalInt;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
@@ -185,6 +186,14 @@ public class TaskContext
         return snapshotManager;
     }
 
+    /**
+     * Partial dynamic filters added here are reported to the coordinator with the task status
+     */
+    public void addDynamicFilters(Map<String, byte[]> dynamicFilters)
+    {
+        taskStateMachine.addDynamicFilters(dynamicFilters);
+    }
+
     public PipelineContext addPipelineContext(int pipelineId, boolean inputPipeline, boolean outputPipeline, boolean partitioned)
     {
         PipelineContext pipelineContext = new PipelineContext(
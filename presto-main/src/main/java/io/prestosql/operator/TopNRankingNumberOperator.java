@@ -15,10 +15,13 @@ package io.prestosql.operator;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterators;
 import com.google.common.primitives.Ints;
+import com.google.common.util.concurrent.ListenableFuture;
 import io.prestosql.memory.context.LocalMemoryContext;
 import io.prestosql.operator.window.RankingFunction;
 import io.prestosql.snapshot.SingleInputSnapshotState;
+import io.prestosql.snapshot.Spillable;
 import io.prestosql.spi.Page;
 import io.prestosql.spi.block.Block;
 import io.prestosql.spi.block.SortOrder;
@@ -26,23 +29,34 @@ import io.prestosql.spi.plan.PlanNodeId;
 import io.prestosql.spi.snapshot.BlockEncodingSerdeProvider;
 import io.prestosql.spi.snapshot.RestorableConfig;
 import io.prestosql.spi.type.Type;
+import io.prestosql.spiller.PartitioningSpillerFactory;
 import io.prestosql.sql.gen.JoinCompiler;
 
 import java.io.Serializable;
+import java.nio.file.Path;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Supplier;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.base.Verify.verify;
+import static com.google.common.util.concurrent.Futures.immediateFuture;
+import static io.airlift.concurrent.MoreFutures.checkSuccess;
 import static io.prestosql.SystemSessionProperties.isDictionaryAggregationEnabled;
 import static io.prestosql.operator.GroupByHash.createGroupByHash;
 import static io.prestosql.spi.type.BigintType.BIGINT;
 import static java.util.Objects.requireNonNull;
 
-@RestorableConfig(uncapturedFields = {"outputChannels", "unfinishedWork", "outputIterator", "rankingFunction", "snapshotState"})
+// When spill is enabled:
+// - spillInProgress and finishMemoryRevoke: a marker can't be received between startMemoryRevoke and finishMemoryRevoke
+// - spilledPages: markers are not received once the operator is finishing
+@RestorableConfig(uncapturedFields = {"outputChannels", "unfinishedWork", "outputIterator", "rankingFunction", "snapshotState",
+        "groupByHashSupplier", "groupedTopNBuilderSupplier", "spillInProgress", "finishMemoryRevoke", "spilledPages"})
 public class TopNRankingNumberOperator
-        implements Operator
+        implements Operator, Spillable
 {
     public static class TopNRankingNumberOperatorFactory
             implements OperatorFactory
@@ -66,6 +80,8 @@ public class TopNRankingNumberOperator
         private boolean closed;
         private final JoinCompiler joinCompiler;
         private final Optional<RankingFunction> rankingFunction;
+        private final boolean spillEnabled;
+        private final Optional<PartitioningSpillerFactory> partitioningSpillerFactory;
 
         public TopNRankingNumberOperatorFactory(
                 int operatorId,
@@ -82,6 +98,27 @@ public class TopNRankingNumberOperator
                 int expectedPositions,
                 JoinCompiler joinCompiler,
                 Optional<RankingFunction> rankingFunction)
+        {
+            this(operatorId, planNodeId, sourceTypes, outputChannels, partitionChannels, partitionTypes, sortChannels, sortOrder, maxRowCountPerPartition, partial, hashChannel, expectedPositions, joinCompiler, rankingFunction, false, Optional.empty());
+        }
+
+        public TopNRankingNumberOperatorFactory(
+                int operatorId,
+                PlanNodeId planNodeId,
+                List<? extends Type> sourceTypes,
+                List<Integer> outputChannels,
+                List<Integer> partitionChannels,
+                List<? extends Type> partitionTypes,
+                List<Integer> sortChannels,
+                List<SortOrder> sortOrder,
+                int maxRowCountPerPartition,
+                boolean partial,
+                Optional<Integer> hashChannel,
+                int expectedPositions,
+                JoinCompiler joinCompiler,
+                Optional<RankingFunction> rankingFunction,
+                boolean spillEnabled,
+                Optional<PartitioningSpillerFactory> partitioningSpillerFactory)
         {
             this.operatorId = operatorId;
             this.planNodeId = requireNonNull(planNodeId, "planNodeId is null");
@@ -101,6 +138,9 @@ public class TopNRankingNumberOperator
             this.joinCompiler = requireNonNull(joinCompiler, "joinCompiler is null");
 
             this.rankingFunction = requireNonNull(rankingFunction, "rankingFunction is null");
+            this.spillEnabled = spillEnabled;
+            this.partitioningSpillerFactory = requireNonNull(partitioningSpillerFactory, "partitioningSpillerFactory is null");
+            checkArgument(!spillEnabled || partitioningSpillerFactory.isPresent(), "Spiller Factory is not present when spill is enabled");
         }
 
         @Override
@@ -121,7 +161,9 @@ public class TopNRankingNumberOperator
                     hashChannel,
                     expectedPositions,
                     joinCompiler,
-                    rankingFunction);
+                    rankingFunction,
+                    spillEnabled,
+                    partitioningSpillerFactory);
         }
 
         @Override
@@ -133,23 +175,34 @@ public class TopNRankingNumberOperator
         @Override
         public TopNRankingNumberOperatorFactory duplicate()
         {
-            return new TopNRankingNumberOperatorFactory(operatorId, planNodeId, sourceTypes, outputChannels, partitionChannels, partitionTypes, sortChannels, sortOrder, maxRowCountPerPartition, partial, hashChannel, expectedPositions, joinCompiler, rankingFunction);
+            return new TopNRankingNumberOperatorFactory(operatorId, planNodeId, sourceTypes, outputChannels, partitionChannels, partitionTypes, sortChannels, sortOrder, maxRowCountPerPartition, partial, hashChannel, expectedPositions, joinCompiler, rankingFunction, spillEnabled, partitioningSpillerFactory);
         }
     }
 
     private final OperatorContext operatorContext;
     private final LocalMemoryContext localUserMemoryContext;
+    private final LocalMemoryContext localRevocableMemoryContext;
 
     private final List<Integer> outputChannels;
+    private final int sourceChannelCount;
+    private final boolean generateRankingNumber;
 
-    private final GroupByHash groupByHash;
-    private final GroupedTopNBuilder groupedTopNBuilder;
+    private final Supplier<GroupByHash> groupByHashSupplier;
+    private final Supplier<GroupedTopNBuilder> groupedTopNBuilderSupplier;
+    private GroupByHash groupByHash;
+    private GroupedTopNBuilder groupedTopNBuilder;
 
     private boolean finishing;
     private Work<?> unfinishedWork;
     private Iterator<Page> outputIterator;
     private Optional<RankingFunction> rankingFunction;
 
+    private final Optional<HashPartitionedSpiller> spiller;
+    private ListenableFuture<?> spillInProgress = immediateFuture(null);
+    private Runnable finishMemoryRevoke = () -> {};
+    // after spilling, partitions are reloaded from disk one at a time when the operator is finishing
+    private Iterator<Page> spilledPages;
+
     private final SingleInputSnapshotState snapshotState;
 
     public TopNRankingNumberOperator(
@@ -165,10 +218,13 @@ public class TopNRankingNumberOperator
             Optional<Integer> hashChannel,
             int expectedPositions,
             JoinCompiler joinCompiler,
-            Optional<RankingFunction> rankingFunction)
+            Optional<RankingFunction> rankingFunction,
+            boolean spillEnabled,
+            Optional<PartitioningSpillerFactory> partitioningSpillerFactory)
     {
         this.operatorContext = requireNonNull(operatorContext, "operatorContext is null");
         this.localUserMemoryContext = operatorContext.localUserMemoryContext();
+        this.localRevocableMemoryContext = operatorContext.localRevocableMemoryContext();
 
         ImmutableList.Builder<Integer> outputChannelsBuilder = ImmutableList.builder();
         for (int channel : requireNonNull(outputChannels, "outputChannels is null")) {
@@ -178,12 +234,14 @@ public class TopNRankingNumberOperator
             outputChannelsBuilder.add(outputChannels.size());
         }
         this.outputChannels = outputChannelsBuilder.build();
+        this.sourceChannelCount = sourceTypes.size();
+        this.generateRankingNumber = generateRankingNumber;
 
         checkArgument(maxRowCountPerPartition > 0, "maxRowCountPerPartition must be > 0");
 
         if (!partitionChannels.isEmpty()) {
             checkArgument(expectedPositions > 0, "expectedPositions must be > 0");
-            groupByHash = createGroupByHash(
+            groupByHashSupplier = () -> createGroupByHash(
                     partitionTypes,
                     Ints.toArray(partitionChannels),
                     hashChannel,
@@ -193,17 +251,32 @@ public class TopNRankingNumberOperator
                     this::updateMemoryReservation);
         }
         else {
-            groupByHash = new NoChannelGroupByHash();
+            groupByHashSupplier = NoChannelGroupByHash::new;
         }
+        this.groupByHash = groupByHashSupplier.get();
 
         List<Type> types = toTypes(sourceTypes, outputChannels, generateRankingNumber);
-        this.groupedTopNBuilder = new GroupedTopNBuilder(
+        this.groupedTopNBuilderSupplier = () -> new GroupedTopNBuilder(
                 ImmutableList.copyOf(sourceTypes),
                 new SimplePageWithPositionComparator(types, sortChannels, sortOrders),
                 maxRowCountPerPartition,
                 generateRankingNumber,
                 rankingFunction,
                 groupByHash);
+        this.groupedTopNBuilder = groupedTopNBuilderSupplier.get();
+
+        // without partition channels the operator keeps at most maxRowCountPerPartition rows, so there is nothing to spill
+        if (spillEnabled && !partitionChannels.isEmpty()) {
+            this.spiller = Optional.of(new HashPartitionedSpiller(
+                    ImmutableList.copyOf(sourceTypes),
+                    partitionChannels,
+                    hashChannel,
+                    partitioningSpillerFactory.orElseThrow(() -> new IllegalArgumentException("Spiller Factory is not present when spill is enabled")),
+                    operatorContext));
+        }
+        else {
+            this.spiller = Optional.empty();
+        }
 
         this.snapshotState = operatorContext.isSnapshotEnabled() ? SingleInputSnapshotState.forOperator(this, operatorContext) : null;
     }
@@ -217,7 +290,36 @@ public class TopNRankingNumberOperator
     @Override
     public void finish()
     {
+        if (finishing || !spillInProgress.isDone()) {
+            return;
+        }
+        checkSuccess(spillInProgress, "spilling failed");
         finishing = true;
+
+        if (!spiller.isPresent()) {
+            return;
+        }
+        if (!spiller.get().isSpilled()) {
+            // Convert revocable memory to user memory as the builder holds on to memory so we no longer can revoke.
+            long currentRevocableBytes = localRevocableMemoryContext.getBytes();
+            localRevocableMemoryContext.setBytes(0);
+            if (localUserMemoryContext.trySetBytes(localUserMemoryContext.getBytes() + currentRevocableBytes)) {
+                return;
+            }
+            // TODO: this might fail (even though we have just released memory), but we don't
+            // have a proper way to atomically convert memory reservations
+            localRevocableMemoryContext.setBytes(currentRevocableBytes);
+        }
+        // all rows of a partition must be on disk before that partition is reloaded,
+        // the operator is blocked until then and getOutput completes the revoke
+        spillToDisk();
+        outputIterator = Collections.emptyIterator();
+    }
+
+    @Override
+    public ListenableFuture<?> isBlocked()
+    {
+        return spillInProgress.isDone() ? NOT_BLOCKED : spillInProgress;
     }
 
     @Override
@@ -229,7 +331,7 @@ public class TopNRankingNumberOperator
         }
 
         // has no more input, has finished flushing, and has no unfinished work
-        return finishing && outputIterator != null && !outputIterator.hasNext() && unfinishedWork == null;
+        return finishing && outputIterator != null && !outputIterator.hasNext() && unfinishedWork == null && !hasSpilledPartitions();
     }
 
     @Override
@@ -246,6 +348,7 @@ public class TopNRankingNumberOperator
         checkState(unfinishedWork == null, "Cannot add input with the operator when unfinished work is not empty");
         checkState(outputIterator == null, "Cannot add input with the operator when flushing");
         requireNonNull(page, "page is null");
+        checkSuccess(spillInProgress, "spilling failed");
 
         if (snapshotState != null) {
             if (snapshotState.processPage(page)) {
@@ -270,6 +373,15 @@ public class TopNRankingNumberOperator
             }
         }
 
+        if (!spillInProgress.isDone()) {
+            return null;
+        }
+        checkSuccess(spillInProgress, "spilling failed");
+        if (finishing) {
+            // complete the spill started by finish, the driver only completes the revokes it requested
+            finishMemoryRevoke();
+        }
+
         if (unfinishedWork != null) {
             boolean finished = unfinishedWork.process();
             updateMemoryReservation();
@@ -284,12 +396,33 @@ public class TopNRankingNumberOperator
         }
 
         if (outputIterator == null) {
+            if (spilledPages != null && spilledPages.hasNext()) {
+                // reload rows of the current spilled partition
+                unfinishedWork = groupedTopNBuilder.processPage(spilledPages.next());
+                if (unfinishedWork.process()) {
+                    unfinishedWork = null;
+                }
+                updateMemoryReservation();
+                return null;
+            }
+            spilledPages = null;
             // start flushing
             outputIterator = groupedTopNBuilder.buildResult();
         }
 
         Page output = null;
-        if (outputIterator.hasNext()) {
+        if (!outputIterator.hasNext() && hasSpilledPartitions()) {
+            HashPartitionedSpiller partitions = spiller.get();
+            if (partitions.canRepartitionNextPartition() && partitions.getNextPartitionSize() > partitions.getMaxSpillSize()) {
+                // the partition is larger than the rows held when memory was revoked, so it's read as smaller partitions
+                spillInProgress = partitions.repartitionNextPartition();
+                return null;
+            }
+            resetGroupedTopNBuilder();
+            spilledPages = partitions.readNextPartition();
+            outputIterator = null;
+        }
+        else if (outputIterator.hasNext()) {
             Page page = outputIterator.next();
             // rewrite to expected column ordering
             Block[] blocks = new Block[page.getChannelCount()];
@@ -315,13 +448,95 @@ public class TopNRankingNumberOperator
         return groupByHash.getCapacity();
     }
 
+    @Override
+    public ListenableFuture<?> startMemoryRevoke()
+    {
+        if (finishing) {
+            // all revocable memory has been converted to user memory when finishing, or is released by the spill finish started
+            return spillInProgress;
+        }
+        return spillToDisk();
+    }
+
+    private ListenableFuture<?> spillToDisk()
+    {
+        checkSuccess(spillInProgress, "spilling failed");
+        verify(unfinishedWork == null, "Cannot spill with unfinished work");
+
+        // Only the current top rows of each partition are kept by the builder, and they are all that is
+        // needed to compute the final result of the partition, together with rows that arrive later.
+        Iterator<Page> pages = groupedTopNBuilder.buildResult();
+        if (generateRankingNumber) {
+            // ranking numbers are computed again when the partition is reloaded
+            pages = Iterators.transform(pages, this::removeRankingNumber);
+        }
+        spillInProgress = spiller.get().spill(pages);
+        finishMemoryRevoke = () -> {
+            resetGroupedTopNBuilder();
+            updateMemoryReservation();
+        };
+        return spillInProgress;
+    }
+
+    private Page removeRankingNumber(Page page)
+    {
+        Block[] blocks = new Block[sourceChannelCount];
+        for (int i = 0; i < sourceChannelCount; i++) {
+            blocks[i] = page.getBlock(i);
+        }
+        return new Page(page.getPositionCount(), blocks);
+    }
+
+    @Override
+    public void finishMemoryRevoke()
+    {
+        finishMemoryRevoke.run();
+        finishMemoryRevoke = () -> {};
+    }
+
+    private void resetGroupedTopNBuilder()
+    {
+        groupByHash = groupByHashSupplier.get();
+        groupedTopNBuilder = groupedTopNBuilderSupplier.get();
+    }
+
+    private boolean hasSpilledPartitions()
+    {
+        return spiller.isPresent() && spiller.get().isSpilled() && spiller.get().hasNextPartition();
+    }
+
     private boolean updateMemoryReservation()
     {
+        if (spiller.isPresent() && !finishing) {
+            // the driver spills revocable memory when needed, so the builder can always continue
+            localUserMemoryContext.setBytes(0);
+            localRevocableMemoryContext.setBytes(groupedTopNBuilder.getEstimatedSizeInBytes());
+            return true;
+        }
         // TODO: may need to use trySetMemoryReservation with a compaction to free memory (but that may cause GC pressure)
+        localRevocableMemoryContext.setBytes(0);
         localUserMemoryContext.setBytes(groupedTopNBuilder.getEstimatedSizeInBytes());
         return operatorContext.isWaitingForMemory().isDone();
     }
 
+    @Override
+    public boolean isSpilled()
+    {
+        return spiller.isPresent() && spiller.get().isSpilled();
+    }
+
+    @Override
+    public List<Path> getSpilledFilePaths()
+    {
+        return spiller.map(HashPartitionedSpiller::getSpilledFilePaths).orElse(ImmutableList.of());
+    }
+
+    @Override
+    public void close()
+    {
+        spiller.ifPresent(HashPartitionedSpiller::close);
+    }
+
     private static List<Type> toTypes(List<? extends Type> sourceTypes, List<Integer> outputChannels, boolean generateRowNumber)
     {
         ImmutableList.Builder<Type> types = ImmutableList.builder();
@@ -340,9 +555,13 @@ public class TopNRankingNumberOperator
         TopNRankingNumberOperatorState myState = new TopNRankingNumberOperatorState();
         myState.operatorContext = operatorContext.capture(serdeProvider);
         myState.localUserMemoryContext = localUserMemoryContext.getBytes();
+        myState.localRevocableMemoryContext = localRevocableMemoryContext.getBytes();
         myState.groupByHash = groupByHash.capture(serdeProvider);
         myState.groupedTopNBuilder = groupedTopNBuilder.capture(serdeProvider);
         myState.finishing = finishing;
+        if (spiller.isPresent()) {
+            myState.spiller = spiller.get().capture(serdeProvider);
+        }
         return myState;
     }
 
@@ -352,9 +571,14 @@ public class TopNRankingNumberOperator
         TopNRankingNumberOperatorState myState = (TopNRankingNumberOperatorState) state;
         this.operatorContext.restore(myState.operatorContext, serdeProvider);
         this.localUserMemoryContext.setBytes(myState.localUserMemoryContext);
+        this.localRevocableMemoryContext.setBytes(myState.localRevocableMemoryContext);
+        resetGroupedTopNBuilder();
         this.groupByHash.restore(myState.groupByHash, serdeProvider);
         this.groupedTopNBuilder.restore(myState.groupedTopNBuilder, serdeProvider);
         this.finishing = myState.finishing;
+        if (spiller.isPresent()) {
+            spiller.get().restore(myState.spiller, serdeProvider);
+        }
     }
 
     private static class TopNRankingNumberOperatorState
@@ -362,8 +586,10 @@ public class TopNRankingNumberOperator
     {
         private Object operatorContext;
         private long localUserMemoryContext;
+        private long localRevocableMemoryContext;
         private Object groupByHash;
         private Object groupedTopNBuilder;
         private boolean finishing;
+        private Object spiller;
     }
 }
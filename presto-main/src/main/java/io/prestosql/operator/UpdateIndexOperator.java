@@ -316,6 +316,21 @@ public class UpdateIndexOperator
         return null;
     }
 
+    @Override
+    public void close()
+            throws IOException
+    {
+        // writers are only left here if the index was not persisted, e.g. because the query failed
+        Iterator<Map.Entry<String, IndexWriter>> iterator = levelWriter.entrySet().iterator();
+        while (iterator.hasNext()) {
+            IndexWriter writer = iterator.next().getValue();
+            if (persistBy.get(writer) == this) {
+                iterator.remove();
+                writer.abort();
+            }
+        }
+    }
+
     public static class UpdateIndexOperatorFactory
             implements OperatorFactory
     {
@@ -1033,6 +1033,7 @@ public class WindowOperator
                     operatorContext.aggregateUserMemoryContext(),
                     operatorContext.getDriverContext().getYieldSignal());
 
+            // merged pages are grouped on all the partition channels, so only one window partition is loaded in memory at a time
             return mergedPages.transform(new PagesToPagesIndexes(mergedPagesIndexWithHashStrategies, ImmutableList.of(), ImmutableList.of()));
         }
 
@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.prestosql.server;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import io.airlift.slice.OutputStreamSliceOutput;
+import io.airlift.slice.SliceInput;
+import io.airlift.slice.SliceOutput;
+import io.airlift.units.DataSize;
+import io.airlift.units.Duration;
+import io.hetu.core.transport.execution.buffer.SerializedPage;
+import io.prestosql.execution.TaskId;
+import io.prestosql.execution.TaskManager;
+import io.prestosql.execution.buffer.BufferResult;
+import io.prestosql.execution.buffer.OutputBuffers.OutputBufferId;
+
+import javax.ws.rs.core.StreamingOutput;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
+import static io.airlift.concurrent.MoreFutures.getDone;
+import static io.hetu.core.transport.execution.buffer.PagesSerdeUtil.readSerializedPage;
+import static io.hetu.core.transport.execution.buffer.PagesSerdeUtil.writeSerializedPages;
+import static java.lang.Math.toIntExact;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Writes a stream of task results, as a sequence of frames, to a single response.
+ * <p>
+ * Each frame holds one {@link BufferResult}: token, next token, buffer complete flag, page count and the serialized pages.
+ * After the first result, the stream waits for pages to be added to the output buffer, and sends them as more frames,
+ * as long as the total size stays within the credit (maximum size) given by the client. The stream ends when the credit
+ * is used, or when no pages are added within the maximum wait time of the request.
+ * <p>
+ * The output buffer is always read at the token of the request, so nothing is acknowledged on behalf of the client.
+ * If the stream is interrupted, the client requests the remaining pages again from the last frame it received.
+ */
+public class PagesStreamWriter
+        implements StreamingOutput
+{
+    private final TaskManager taskManager;
+    private final TaskId taskId;
+    private final OutputBufferId bufferId;
+    private final String taskInstanceId;
+    private final BufferResult firstResult;
+    private final DataSize maxSize;
+    private final Duration maxWait;
+
+    public PagesStreamWriter(TaskManager taskManager, TaskId taskId, OutputBufferId bufferId, String taskInstanceId, BufferResult firstResult, DataSize maxSize, Duration maxWait)
+    {
+        this.taskManager = requireNonNull(taskManager, "taskManager is null");
+        this.taskId = requireNonNull(taskId, "taskId is null");
+        this.bufferId = requireNonNull(bufferId, "bufferId is null");
+        this.taskInstanceId = taskInstanceId;
+        this.firstResult = requireNonNull(firstResult, "firstResult is null");
+        this.maxSize = requireNonNull(maxSize, "maxSize is null");
+        this.maxWait = requireNonNull(maxWait, "maxWait is null");
+    }
+
+    @Override
+    public void write(OutputStream output)
+            throws IOException
+    {
+        long deadline = System.nanoTime() + maxWait.roundTo(NANOSECONDS);
+        try {
+            SliceOutput sliceOutput = new OutputStreamSliceOutput(output);
+            long token = firstResult.getToken();
+            long writtenBytes = 0;
+            BufferResult result = firstResult;
+            while (true) {
+                writeFrame(sliceOutput, result);
+                // Flush every frame so the client can process it right away.
+                // We use flush instead of close, because the underlying stream would be closed and that is not allowed.
+                sliceOutput.flush();
+                if (result.isBufferComplete()) {
+                    return;
+                }
+                writtenBytes += result.getSerializedPages().stream().mapToLong(SerializedPage::getRetainedSizeInBytes).sum();
+                if (writtenBytes >= maxSize.toBytes()) {
+                    // the credit is used, the next request of the client acknowledges the written pages
+                    return;
+                }
+
+                long writtenToken = result.getNextToken();
+                ListenableFuture<?> pagesAdded = taskManager.waitForTaskResults(taskId, bufferId, writtenToken, taskInstanceId);
+                if (pagesAdded == null || !await(pagesAdded, deadline - System.nanoTime())) {
+                    return;
+                }
+
+                // Reading at the same token doesn't acknowledge any pages, and returns all pages from that token
+                // within the credit, including the ones that were already written
+                ListenableFuture<BufferResult> nextResult = taskManager.getTaskResults(taskId, bufferId, token, maxSize, taskInstanceId);
+                if (nextResult == null || !nextResult.isDone()) {
+                    return;
+                }
+                BufferResult allResults = getDone(nextResult);
+                if (allResults.getToken() != token || allResults.getNextToken() <= writtenToken) {
+                    return;
+                }
+                List<SerializedPage> pages = allResults.getSerializedPages();
+                result = new BufferResult(writtenToken, allResults.getNextToken(), false, pages.subList(toIntExact(writtenToken - token), pages.size()));
+            }
+        }
+        catch (UncheckedIOException e) {
+            // EOF exception occurs when the client disconnects while writing data
+            // This is not a "server" problem so we don't want to log this
+            if (!(e.getCause() instanceof EOFException)) {
+                throw e;
+            }
+        }
+    }
+
+    private static boolean await(ListenableFuture<?> future, long timeoutNanos)
+    {
+        if (timeoutNanos <= 0) {
+            return future.isDone();
+        }
+        try {
+            future.get(timeoutNanos, NANOSECONDS);
+            return true;
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        catch (ExecutionException | TimeoutException e) {
+            return false;
+        }
+    }
+
+    public static void writeFrame(SliceOutput output, BufferResult result)
+    {
+        output.writeLong(result.getToken());
+        output.writeLong(result.getNextToken());
+        output.writeBoolean(result.isBufferComplete());
+        output.writeInt(result.getSerializedPages().size());
+        writeSerializedPages(output, result.getSerializedPages());
+    }
+
+    public static BufferResult readFrame(SliceInput input)
+    {
+        long token = input.readLong();
+        long nextToken = input.readLong();
+        boolean complete = input.readBoolean();
+        int pageCount = input.readInt();
+        List<SerializedPage> pages = new ArrayList<>(pageCount);
+        for (int i = 0; i < pageCount; i++) {
+            pages.add(readSerializedPage(input));
+        }
+        return new BufferResult(token, nextToken, complete, pages);
+    }
+}
@@ -13,6 +13,7 @@
  */
 package io.prestosql.server;
 
+import com.google.common.base.Joiner;
 import com.google.common.collect.ImmutableList;
 import com.google.inject.Injector;
 import com.google.inject.Module;
@@ -37,6 +38,8 @@ import io.prestosql.discovery.HetuDiscoveryModule;
 import io.prestosql.dynamicfilter.CrossRegionDynamicFilterListener;
 import io.prestosql.dynamicfilter.DynamicFilterCacheManager;
 import io.prestosql.dynamicfilter.DynamicFilterListener;
+import io.prestosql.dynamicfilter.DynamicFilterService;
+import io.prestosql.dynamicfilter.PartialDynamicFilterListener;
 import io.prestosql.eventlistener.EventListenerManager;
 import io.prestosql.eventlistener.EventListenerModule;
 import io.prestosql.execution.resourcegroups.ResourceGroupManager;
@@ -58,7 +61,10 @@ import io.prestosql.seedstore.SeedStoreManager;
 import io.prestosql.server.security.PasswordAuthenticatorManager;
 import io.prestosql.server.security.ServerSecurityModule;
 import io.prestosql.snapshot.SnapshotUtils;
+import io.prestosql.spi.HetuConstant;
 import io.prestosql.spi.seedstore.SeedStoreSubType;
+import io.prestosql.spi.service.PropertyService;
+import io.prestosql.sql.analyzer.FeaturesConfig;
 import io.prestosql.sql.parser.SqlParserOptions;
 import io.prestosql.statestore.StateStoreLauncher;
 import io.prestosql.statestore.StateStoreProvider;
@@ -75,6 +81,7 @@ import static io.prestosql.server.PrestoSystemRequirements.verifyJvmRequirements
 import static io.prestosql.server.PrestoSystemRequirements.verifySystemTimeIsReasonable;
 import static io.prestosql.statestore.StateStoreConstants.CROSS_REGION_DYNAMIC_FILTERS;
 import static io.prestosql.utils.DynamicFilterUtils.MERGED_DYNAMIC_FILTERS;
+import static io.prestosql.utils.DynamicFilterUtils.PARTIAL_DYNAMIC_FILTERS;
 import static java.nio.file.LinkOption.NOFOLLOW_LINKS;
 import static java.util.Objects.requireNonNull;
 
@@ -149,6 +156,8 @@ public class PrestoServer
             injector.getInstance(StateStoreProvider.class).loadStateStore();
             injector.getInstance(HetuMetaStoreManager.class).loadHetuMetastore(fileSystemClientManager); // relies on state-store
 
+            // index writers spill to the same local directories as the operators
+            PropertyService.setProperty(HetuConstant.INDEX_WRITER_SPILL_PATHS, Joiner.on(",").join(injector.getInstance(FeaturesConfig.class).getSpillerSpillPaths()));
             injector.getInstance(HeuristicIndexerManager.class).buildIndexClient(); // relies on metastore
             injector.getInstance(StaticFunctionNamespaceStore.class).loadFunctionNamespaceManagers();
             injector.getInstance(StaticCatalogStore.class).loadCatalogs();
@@ -177,6 +186,12 @@ public class PrestoServer
                     injector.getInstance(DynamicFilterCacheManager.class),
                     injector.getInstance(ServerConfig.class),
                     injector.getInstance(NodeSchedulerConfig.class));
+            // register partial dynamic filter listener (on coordinator only)
+            if (injector.getInstance(ServerConfig.class).isCoordinator()) {
+                injector.getInstance(StateStoreListenerManager.class).addStateStoreListener(
+                        new PartialDynamicFilterListener(injector.getInstance(DynamicFilterService.class)),
+                        PARTIAL_DYNAMIC_FILTERS);
+            }
 
             // Initialize snapshot Manager
             injector.getInstance(SnapshotUtils.class).initialize();
@@ -102,6 +102,7 @@ import io.prestosql.operator.ExchangeClientConfig;
 import io.prestosql.operator.ExchangeClientFactory;
 import io.prestosql.operator.ExchangeClientSupplier;
 import io.prestosql.operator.ForExchange;
+import io.prestosql.operator.LocalTaskResultsFetcher;
 import io.prestosql.operator.LookupJoinOperators;
 import io.prestosql.operator.OperatorStats;
 import io.prestosql.operator.PagesIndex;
@@ -126,6 +127,7 @@ import io.prestosql.spiller.GenericSpillerFactory;
 import io.prestosql.spiller.LocalSpillManager;
 import io.prestosql.spiller.NodeSpillConfig;
 import io.prestosql.spiller.PartitioningSpillerFactory;
+import io.prestosql.spiller.SharedSpillStore;
 import io.prestosql.spiller.SingleStreamSpillerFactory;
 import io.prestosql.spiller.SpillerFactory;
 import io.prestosql.spiller.SpillerStats;
@@ -389,6 +391,7 @@ public class ServerMainModule
 
         // exchange client
         binder.bind(ExchangeClientSupplier.class).to(ExchangeClientFactory.class).in(Scopes.SINGLETON);
+        binder.bind(LocalTaskResultsFetcher.class).in(Scopes.SINGLETON);
         httpClientBinder(binder).bindHttpClient("exchange", ForExchange.class)
                 .withTracing()
                 .withFilter(GenerateTraceTokenRequestFilter.class)
@@ -546,9 +549,11 @@ public class ServerMainModule
 
         // HeuristicIndexerManager
         binder.bind(HeuristicIndexerManager.class).in(Scopes.SINGLETON);
+        newExporter(binder).export(HeuristicIndexerManager.class).withGeneratedName();
 
         // SnapshotUtils
         binder.bind(SnapshotUtils.class).in(Scopes.SINGLETON);
+        newExporter(binder).export(SnapshotUtils.class).withGeneratedName();
         configBinder(binder).bindConfig(SnapshotConfig.class);
 
         // Spiller
@@ -558,6 +563,7 @@ public class ServerMainModule
         binder.bind(SpillerStats.class).in(Scopes.SINGLETON);
         newExporter(binder).export(SpillerFactory.class).withGeneratedName();
         binder.bind(LocalSpillManager.class).in(Scopes.SINGLETON);
+        binder.bind(SharedSpillStore.class).in(Scopes.SINGLETON);
         configBinder(binder).bindConfig(NodeSpillConfig.class);
 
         // cleanup
@@ -23,6 +23,7 @@ import io.airlift.units.DataSize;
 import io.airlift.units.Duration;
 import io.hetu.core.transport.execution.buffer.SerializedPage;
 import io.prestosql.Session;
+import io.prestosql.dynamicfilter.DynamicFilterCacheManager;
 import io.prestosql.execution.TaskId;
 import io.prestosql.execution.TaskInfo;
 import io.prestosql.execution.TaskManager;
@@ -71,11 +72,13 @@ import static io.airlift.jaxrs.AsyncResponseHandler.bindAsyncResponse;
 import static io.prestosql.PrestoMediaTypes.PRESTO_PAGES;
 import static io.prestosql.client.PrestoHeaders.PRESTO_BUFFER_COMPLETE;
 import static io.prestosql.client.PrestoHeaders.PRESTO_CURRENT_STATE;
+import static io.prestosql.client.PrestoHeaders.PRESTO_DYNAMIC_FILTERS_VERSION;
 import static io.prestosql.client.PrestoHeaders.PRESTO_MAX_SIZE;
 import static io.prestosql.client.PrestoHeaders.PRESTO_MAX_WAIT;
 import static io.prestosql.client.PrestoHeaders.PRESTO_PAGE_NEXT_TOKEN;
 import static io.prestosql.client.PrestoHeaders.PRESTO_PAGE_TOKEN;
 import static io.prestosql.client.PrestoHeaders.PRESTO_TASK_INSTANCE_ID;
+import static io.prestosql.execution.TaskStatus.MAX_DYNAMIC_FILTERS_VERSION;
 import static io.prestosql.execution.TaskStatus.initialTaskStatus;
 import static io.prestosql.protocol.SmileHeader.APPLICATION_JACKSON_SMILE;
 import static java.util.Objects.requireNonNull;
@@ -93,6 +96,7 @@ public class TaskResource
 
     private final TaskManager taskManager;
     private final SessionPropertyManager sessionPropertyManager;
+    private final DynamicFilterCacheManager dynamicFilterCacheManager;
     private final Executor responseExecutor;
     private final ScheduledExecutorService timeoutExecutor;
     private final TimeStat readFromOutputBufferTime = new TimeStat();
@@ -102,11 +106,13 @@ public class TaskResource
     public TaskResource(
             TaskManager taskManager,
             SessionPropertyManager sessionPropertyManager,
+            DynamicFilterCacheManager dynamicFilterCacheManager,
             @ForAsyncHttp BoundedExecutor responseExecutor,
             @ForAsyncHttp ScheduledExecutorService timeoutExecutor)
     {
         this.taskManager = requireNonNull(taskManager, "taskManager is null");
         this.sessionPropertyManager = requireNonNull(sessionPropertyManager, "sessionPropertyManager is null");
+        this.dynamicFilterCacheManager = requireNonNull(dynamicFilterCacheManager, "dynamicFilterCacheManager is null");
         this.responseExecutor = requireNonNull(responseExecutor, "responseExecutor is null");
         this.timeoutExecutor = requireNonNull(timeoutExecutor, "timeoutExecutor is null");
     }
@@ -138,6 +144,9 @@ public class TaskResource
             return Response.status(Status.BAD_REQUEST).build();
         }
         Session session = taskUpdateRequest.getSession().toSession(sessionPropertyManager, taskUpdateRequest.getExtraCredentials());
+        if (!taskUpdateRequest.getDynamicFilters().isEmpty()) {
+            dynamicFilterCacheManager.cacheDynamicFilters(session.getQueryId().getId(), taskUpdateRequest.getDynamicFilters());
+        }
         TaskInfo taskInfo = taskManager.updateTask(session,
                 taskId,
                 taskUpdateRequest.getFragment(),
@@ -218,17 +227,20 @@ public class TaskResource
             @HeaderParam(PRESTO_CURRENT_STATE) TaskState currentState,
             @HeaderParam(PRESTO_MAX_WAIT) Duration maxWait,
             @HeaderParam(PRESTO_TASK_INSTANCE_ID) String taskInstanceId,
+            @HeaderParam(PRESTO_DYNAMIC_FILTERS_VERSION) Long dynamicFiltersVersion,
             @Context UriInfo uriInfo,
             @Suspended AsyncResponse asyncResponse)
     {
         SecurityRequireNonNull.requireNonNull(taskId, "taskId is null");
 
+        // requesters that don't acknowledge a dynamic filters version don't receive partial dynamic filters
+        long acknowledgedDynamicFiltersVersion = dynamicFiltersVersion == null ? MAX_DYNAMIC_FILTERS_VERSION : dynamicFiltersVersion;
         if (currentState == null || maxWait == null) {
-            asyncResponse.resume(tryGetTaskStatus(uriInfo, taskId, taskInstanceId));
+            asyncResponse.resume(tryGetTaskStatus(uriInfo, taskId, taskInstanceId, acknowledgedDynamicFiltersVersion));
             return;
         }
 
-        ListenableFuture<TaskStatus> futureTaskStatus = taskManager.getTaskStatus(taskId, currentState, taskInstanceId);
+        ListenableFuture<TaskStatus> futureTaskStatus = taskManager.getTaskStatus(taskId, currentState, taskInstanceId, acknowledgedDynamicFiltersVersion);
         if (futureTaskStatus == null) {
             asyncResponse.resume(createAbortedTaskStatus(taskId, uriInfo.getAbsolutePath()));
             return;
@@ -239,7 +251,7 @@ public class TaskResource
         // to justify group-by-group execution. In order to fix this, REST endpoint /v1/{task}/status will need change.
         futureTaskStatus = addTimeout(
                 futureTaskStatus,
-                () -> tryGetTaskStatus(uriInfo, taskId, taskInstanceId),
+                () -> tryGetTaskStatus(uriInfo, taskId, taskInstanceId, acknowledgedDynamicFiltersVersion),
                 waitTime,
                 timeoutExecutor);
 
@@ -249,9 +261,9 @@ public class TaskResource
                 .withTimeout(timeout);
     }
 
-    private TaskStatus tryGetTaskStatus(UriInfo uriInfo, TaskId taskId, String taskInstanceId)
+    private TaskStatus tryGetTaskStatus(UriInfo uriInfo, TaskId taskId, String taskInstanceId, long dynamicFiltersVersion)
     {
-        TaskStatus taskStatus = taskManager.getTaskStatus(taskId, taskInstanceId);
+        TaskStatus taskStatus = taskManager.getTaskStatus(taskId, taskInstanceId, dynamicFiltersVersion);
         if (taskStatus == null) {
             taskStatus = createAbortedTaskStatus(taskId, uriInfo.getAbsolutePath());
         }
@@ -351,6 +363,68 @@ public class TaskResource
         asyncResponse.register((CompletionCallback) throwable -> resultsRequestTime.add(Duration.nanosSince(start)));
     }
 
+    @GET
+    @Path("{taskId}/results/{bufferId}/{token}/stream")
+    @Produces(PRESTO_PAGES)
+    public void streamResults(
+            @PathParam("taskId") TaskId taskId,
+            @PathParam("bufferId") OutputBufferId bufferId,
+            @PathParam("token") final long token,
+            @HeaderParam(PRESTO_MAX_SIZE) DataSize maxSize,
+            @HeaderParam(PRESTO_TASK_INSTANCE_ID) String taskInstanceId,
+            @Suspended AsyncResponse asyncResponse)
+    {
+        SecurityRequireNonNull.requireNonNull(taskId, "taskId is null");
+        SecurityRequireNonNull.requireNonNull(bufferId, "bufferId is null");
+
+        long start = System.nanoTime();
+        ListenableFuture<BufferResult> bufferResultFuture = taskManager.getTaskResults(taskId, bufferId, token, maxSize, taskInstanceId);
+        if (bufferResultFuture == null) {
+            // Request came from task has been cancelled.
+            asyncResponse.resume(Response
+                    .status(Status.NO_CONTENT)
+                    .header(PRESTO_PAGE_TOKEN, token)
+                    .header(PRESTO_PAGE_NEXT_TOKEN, token)
+                    .header(PRESTO_BUFFER_COMPLETE, false) // keep requesting task running, until they are cancelled (to resume)
+                    .build());
+            return;
+        }
+
+        Duration waitTime = randomizeWaitTime(DEFAULT_MAX_WAIT_TIME);
+        bufferResultFuture = addTimeout(
+                bufferResultFuture,
+                () -> BufferResult.emptyResults(token, false),
+                waitTime,
+                timeoutExecutor);
+
+        ListenableFuture<Response> responseFuture = Futures.transform(bufferResultFuture, result -> {
+            if (result.isEmpty()) {
+                return Response.status(Status.NO_CONTENT)
+                        .header(PRESTO_PAGE_TOKEN, result.getToken())
+                        .header(PRESTO_PAGE_NEXT_TOKEN, result.getNextToken())
+                        .header(PRESTO_BUFFER_COMPLETE, result.isBufferComplete())
+                        .build();
+            }
+            return Response.status(Status.OK)
+                    .entity(new PagesStreamWriter(taskManager, taskId, bufferId, taskInstanceId, result, maxSize, waitTime))
+                    .header(PRESTO_PAGE_TOKEN, result.getToken())
+                    .build();
+        }, directExecutor());
+
+        // For hard timeout, add an additional time to max wait for thread scheduling contention and GC
+        Duration timeout = new Duration(waitTime.toMillis() + ADDITIONAL_WAIT_TIME.toMillis(), MILLISECONDS);
+        bindAsyncResponse(asyncResponse, responseFuture, responseExecutor)
+                .withTimeout(timeout,
+                        Response.status(Status.NO_CONTENT)
+                                .header(PRESTO_PAGE_TOKEN, token)
+                                .header(PRESTO_PAGE_NEXT_TOKEN, token)
+                                .header(PRESTO_BUFFER_COMPLETE, false)
+                                .build());
+
+        responseFuture.addListener(() -> readFromOutputBufferTime.add(Duration.nanosSince(start)), directExecutor());
+        asyncResponse.register((CompletionCallback) throwable -> resultsRequestTime.add(Duration.nanosSince(start)));
+    }
+
     @GET
     @Path("{taskId}/results/{bufferId}/{token}/acknowledge")
     public void acknowledgeResults(
@@ -16,6 +16,7 @@ package io.prestosql.server;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import io.prestosql.SessionRepresentation;
 import io.prestosql.execution.TaskSource;
 import io.prestosql.execution.buffer.OutputBuffers;
@@ -41,6 +42,8 @@ public class TaskUpdateRequest
     private final OutputBuffers outputIds;
     private final OptionalInt totalPartitions;
     private final Optional<PlanNodeId> consumerId;
+    // merged global dynamic filters of the query, serialized as bloom filters by dynamic filter id
+    private final Map<String, byte[]> dynamicFilters;
 
     @JsonCreator
     public TaskUpdateRequest(
@@ -51,7 +54,8 @@ public class TaskUpdateRequest
             @JsonProperty("sources") List<TaskSource> sources,
             @JsonProperty("outputIds") OutputBuffers outputIds,
             @JsonProperty("totalPartitions") OptionalInt totalPartitions,
-            @JsonProperty("consumerId")Optional<PlanNodeId> consumerPlanNodeId)
+            @JsonProperty("consumerId")Optional<PlanNodeId> consumerPlanNodeId,
+            @JsonProperty("dynamicFilters") Map<String, byte[]> dynamicFilters)
     {
         requireNonNull(session, "session is null");
         requireNonNull(extraCredentials, "credentials is null");
@@ -59,6 +63,7 @@ public class TaskUpdateRequest
         requireNonNull(sources, "sources is null");
         requireNonNull(outputIds, "outputIds is null");
         requireNonNull(totalPartitions, "totalPartitions is null");
+        requireNonNull(dynamicFilters, "dynamicFilters is null");
 
         this.taskInstanceId = taskInstanceId;
         this.session = session;
@@ -68,6 +73,7 @@ public class TaskUpdateRequest
         this.outputIds = outputIds;
         this.totalPartitions = totalPartitions;
         this.consumerId = consumerPlanNodeId;
+        this.dynamicFilters = ImmutableMap.copyOf(dynamicFilters);
     }
 
     @JsonProperty
@@ -118,6 +124,12 @@ public class TaskUpdateRequest
         return consumerId;
     }
 
+    @JsonProperty
+    public Map<String, byte[]> getDynamicFilters()
+    {
+        return dynamicFilters;
+    }
+
     @Override
     public String toString()
     {
@@ -129,6 +141,7 @@ public class TaskUpdateRequest
                 .add("sources", sources)
                 .add("outputIds", outputIds)
                 .add("totalPartitions", totalPartitions)
+                .add("dynamicFilters", dynamicFilters.keySet())
                 .toString();
     }
 }
@@ -46,6 +46,7 @@ import static io.airlift.http.client.HttpUriBuilder.uriBuilderFrom;
 import static io.airlift.http.client.Request.Builder.prepareGet;
 import static io.airlift.units.Duration.nanosSince;
 import static io.prestosql.client.PrestoHeaders.PRESTO_CURRENT_STATE;
+import static io.prestosql.client.PrestoHeaders.PRESTO_DYNAMIC_FILTERS_VERSION;
 import static io.prestosql.client.PrestoHeaders.PRESTO_MAX_WAIT;
 import static io.prestosql.client.PrestoHeaders.PRESTO_TASK_INSTANCE_ID;
 import static io.prestosql.protocol.AdaptingJsonResponseHandler.createAdaptingJsonResponseHandler;
@@ -76,6 +77,8 @@ class ContinuousTaskStatusFetcher
     private final boolean isBinaryEncoding;
 
     private final AtomicLong currentRequestStartNanos = new AtomicLong();
+    // version of the dynamic filters already received from the task, sent back as an acknowledgement
+    private final AtomicLong dynamicFiltersVersion = new AtomicLong();
 
     @GuardedBy("this")
     private boolean running;
@@ -167,6 +170,7 @@ class ContinuousTaskStatusFetcher
                 .setHeader(CONTENT_TYPE, JSON_UTF_8.toString())
                 .setHeader(PRESTO_CURRENT_STATE, taskStatus.getState().toString())
                 .setHeader(PRESTO_MAX_WAIT, refreshMaxWait.toString())
+                .setHeader(PRESTO_DYNAMIC_FILTERS_VERSION, String.valueOf(dynamicFiltersVersion.get()))
                 .build();
 
         ResponseHandler responseHandler;
@@ -207,7 +211,10 @@ class ContinuousTaskStatusFetcher
             }
             updateStats(currentRequestStartNanos.get());
             try {
-                updateTaskStatus(value);
+                if (updateTaskStatus(value)) {
+                    // only acknowledge dynamic filters which have been handed to the listeners
+                    dynamicFiltersVersion.accumulateAndGet(value.getDynamicFiltersVersion(), Math::max);
+                }
                 errorTracker.requestSucceeded();
             }
             finally {
@@ -250,19 +257,21 @@ class ContinuousTaskStatusFetcher
         }
     }
 
-    void updateTaskStatus(TaskStatus newValue)
+    boolean updateTaskStatus(TaskStatus newValue)
     {
         // change to new value if old value is not changed and new value has a newer version
-        if (taskStatus.setIf(newValue, oldValue -> {
+        boolean updated = taskStatus.setIf(newValue, oldValue -> {
             if (oldValue.getState().isDone()) {
                 // never update if the task has reached a terminal state
                 return false;
             }
             // don't update to an older version (same version is ok)
             return newValue.getVersion() >= oldValue.getVersion();
-        })) {
+        });
+        if (updated) {
             updateSnapshots(newValue.getSnapshotCaptureResult(), newValue.getSnapshotRestoreResult());
         }
+        return updated;
     }
 
     public synchronized boolean isRunning()
@@ -16,6 +16,7 @@ package io.prestosql.server.remotetask;
 import com.google.common.base.Ticker;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.LinkedHashMultimap;
 import com.google.common.collect.Multimap;
@@ -150,6 +151,9 @@ public final class HttpRemoteTask
     // The boolean value of each entry represents whether the "no more splits" notification is pending delivery to workers.
     private final Map<PlanNodeId, Boolean> noMoreSplits = new HashMap<>();
     @GuardedBy("this")
+    // Merged dynamic filters waiting to be delivered to the worker, removed once acknowledged
+    private final Map<String, byte[]> pendingDynamicFilters = new HashMap<>();
+    @GuardedBy("this")
     private final AtomicReference<OutputBuffers> outputBuffers = new AtomicReference<>();
     private final FutureStateChange<?> whenSplitQueueHasSpace = new FutureStateChange<>();
     @GuardedBy("this")
@@ -380,6 +384,18 @@ public final class HttpRemoteTask
         }
     }
 
+    @Override
+    public synchronized void addDynamicFilters(Map<String, byte[]> dynamicFilters)
+    {
+        if (dynamicFilters.isEmpty() || getTaskStatus().getState().isDone()) {
+            return;
+        }
+
+        pendingDynamicFilters.putAll(dynamicFilters);
+        needsUpdate.set(true);
+        scheduleUpdate();
+    }
+
     @Override
     public synchronized void noMoreSplits(PlanNodeId sourceId)
     {
@@ -482,10 +498,13 @@ public final class HttpRemoteTask
         }
     }
 
-    private synchronized void processTaskUpdate(TaskInfo newValue, List<TaskSource> sources)
+    private synchronized void processTaskUpdate(TaskInfo newValue, List<TaskSource> sources, Map<String, byte[]> dynamicFilters)
     {
         updateTaskInfo(newValue);
 
+        // remove acknowledged dynamic filters
+        pendingDynamicFilters.keySet().removeAll(dynamicFilters.keySet());
+
         // remove acknowledged splits, which frees memory
         for (TaskSource source : sources) {
             PlanNodeId planNodeId = source.getPlanNodeId();
@@ -546,6 +565,7 @@ public final class HttpRemoteTask
         }
 
         List<TaskSource> sources = getSources();
+        Map<String, byte[]> dynamicFilters = ImmutableMap.copyOf(pendingDynamicFilters);
 
         Optional<PlanFragment> fragment = sendPlan.get() ? Optional.of(planFragment) : Optional.empty();
         TaskUpdateRequest updateRequest = new TaskUpdateRequest(
@@ -558,7 +578,8 @@ public final class HttpRemoteTask
                 sources,
                 outputBuffers.get(),
                 totalPartitions,
-                parent);
+                parent,
+                dynamicFilters);
         byte[] taskUpdateRequestJson = taskUpdateRequestCodec.toBytes(updateRequest);
         if (fragment.isPresent()) {
             stats.updateWithPlanBytes(taskUpdateRequestJson.length);
@@ -587,7 +608,7 @@ public final class HttpRemoteTask
         // and does so without grabbing the instance lock.
         needsUpdate.set(false);
 
-        Futures.addCallback(future, new SimpleHttpResponseHandler<>(new UpdateResponseHandler(sources), request.getUri(), stats), executor);
+        Futures.addCallback(future, new SimpleHttpResponseHandler<>(new UpdateResponseHandler(sources, dynamicFilters), request.getUri(), stats), executor);
     }
 
     private synchronized List<TaskSource> getSources()
@@ -662,6 +683,7 @@ public final class HttpRemoteTask
 
         // clear pending splits to free memory
         pendingSplits.clear();
+        pendingDynamicFilters.clear();
         pendingSourceSplitCount = 0;
         partitionedSplitCountTracker.setPartitionedSplitCount(getPartitionedSplitCount());
         splitQueueHasSpace = true;
@@ -868,10 +890,12 @@ public final class HttpRemoteTask
             implements SimpleHttpResponseCallback<TaskInfo>
     {
         private final List<TaskSource> sources;
+        private final Map<String, byte[]> dynamicFilters;
 
-        private UpdateResponseHandler(List<TaskSource> sources)
+        private UpdateResponseHandler(List<TaskSource> sources, Map<String, byte[]> dynamicFilters)
         {
             this.sources = ImmutableList.copyOf(requireNonNull(sources, "sources is null"));
+            this.dynamicFilters = requireNonNull(dynamicFilters, "dynamicFilters is null");
         }
 
         @Override
@@ -886,7 +910,7 @@ public final class HttpRemoteTask
                         currentRequestStartNanos = HttpRemoteTask.this.currentRequestStartNanos;
                     }
                     updateStats(currentRequestStartNanos);
-                    processTaskUpdate(value, sources);
+                    processTaskUpdate(value, sources, dynamicFilters);
                     updateErrorTracker.requestSucceeded();
                 }
                 finally {
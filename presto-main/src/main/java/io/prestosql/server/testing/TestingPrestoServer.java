@@ -43,6 +43,8 @@ import io.prestosql.cost.StatsCalculator;
 import io.prestosql.dispatcher.DispatchManager;
 import io.prestosql.dynamicfilter.DynamicFilterCacheManager;
 import io.prestosql.dynamicfilter.DynamicFilterListener;
+import io.prestosql.dynamicfilter.DynamicFilterService;
+import io.prestosql.dynamicfilter.PartialDynamicFilterListener;
 import io.prestosql.eventlistener.EventListenerManager;
 import io.prestosql.execution.QueryInfo;
 import io.prestosql.execution.QueryManager;
@@ -119,6 +121,7 @@ import static com.google.common.io.MoreFiles.deleteRecursively;
 import static com.google.common.io.RecursiveDeleteOption.ALLOW_INSECURE;
 import static io.airlift.discovery.client.ServiceAnnouncement.serviceAnnouncement;
 import static io.prestosql.utils.DynamicFilterUtils.MERGED_DYNAMIC_FILTERS;
+import static io.prestosql.utils.DynamicFilterUtils.PARTIAL_DYNAMIC_FILTERS;
 import static java.lang.Integer.parseInt;
 import static java.nio.file.Files.createTempDirectory;
 import static java.nio.file.Files.isDirectory;
@@ -355,6 +358,12 @@ public class TestingPrestoServer
                     injector.getInstance(DynamicFilterCacheManager.class),
                     injector.getInstance(ServerConfig.class),
                     injector.getInstance(NodeSchedulerConfig.class));
+            // register partial dynamic filter listener (on coordinator only)
+            if (injector.getInstance(ServerConfig.class).isCoordinator()) {
+                injector.getInstance(StateStoreListenerManager.class).addStateStoreListener(
+                        new PartialDynamicFilterListener(injector.getInstance(DynamicFilterService.class)),
+                        PARTIAL_DYNAMIC_FILTERS);
+            }
         }
         catch (Exception e) {
             // ignore
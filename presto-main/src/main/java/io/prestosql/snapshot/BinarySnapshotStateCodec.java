@@ -0,0 +1,914 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.prestosql.snapshot;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.ByteStreams;
+import io.airlift.compress.Compressor;
+import io.airlift.compress.Decompressor;
+import io.airlift.compress.lz4.Lz4Compressor;
+import io.airlift.compress.lz4.Lz4Decompressor;
+import io.airlift.compress.zstd.ZstdCompressor;
+import io.airlift.compress.zstd.ZstdDecompressor;
+import io.airlift.slice.DynamicSliceOutput;
+import io.airlift.slice.Slice;
+import io.airlift.slice.SliceInput;
+import io.airlift.slice.SliceOutput;
+import io.airlift.slice.Slices;
+import io.prestosql.snapshot.SnapshotConfig.StateCompression;
+import io.prestosql.spi.block.Block;
+import io.prestosql.spi.block.BlockEncodingSerde;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamConstants;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.io.Serializable;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.google.common.base.Preconditions.checkState;
+import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
+import static sun.misc.Unsafe.ARRAY_BYTE_BASE_OFFSET;
+
+/**
+ * Compact binary codec for snapshot states.
+ * <p>
+ * Captured states are trees of primitives, primitive arrays, strings, collections and small
+ * Serializable holder classes. Values are written with a one-byte type tag. Holder classes are
+ * written field by field, and their class name and field layout are only recorded the first time
+ * they appear in a stream. Slices and blocks are written directly, blocks through BlockEncodingSerde.
+ * Objects that don't fit any of these shapes fall back to Java serialization.
+ * <p>
+ * Like Java serialization, object identity is kept within a state: an object that is reached more than once,
+ * including through a cycle, is written once and later occurrences refer back to it. Strings, boxed primitives
+ * and enums are written by value. Objects written with the Java serialization fallback don't share references
+ * with the rest of the state.
+ * <p>
+ * The payload can be compressed with LZ4 or ZSTD. States written by {@link JavaSnapshotStateCodec}
+ * are still recognized when reading.
+ */
+public class BinarySnapshotStateCodec
+        implements SnapshotStateCodec
+{
+    private static final short MAGIC = 0x4853;
+    private static final byte VERSION = 1;
+    private static final int HEADER_SIZE = Short.BYTES + Byte.BYTES + Byte.BYTES + Integer.BYTES;
+
+    private static final byte TAG_NULL = 0;
+    private static final byte TAG_TRUE = 1;
+    private static final byte TAG_FALSE = 2;
+    private static final byte TAG_BYTE = 3;
+    private static final byte TAG_SHORT = 4;
+    private static final byte TAG_INT = 5;
+    private static final byte TAG_LONG = 6;
+    private static final byte TAG_FLOAT = 7;
+    private static final byte TAG_DOUBLE = 8;
+    private static final byte TAG_CHAR = 9;
+    private static final byte TAG_STRING = 10;
+    private static final byte TAG_BOOLEAN_ARRAY = 11;
+    private static final byte TAG_BYTE_ARRAY = 12;
+    private static final byte TAG_SHORT_ARRAY = 13;
+    private static final byte TAG_INT_ARRAY = 14;
+    private static final byte TAG_LONG_ARRAY = 15;
+    private static final byte TAG_FLOAT_ARRAY = 16;
+    private static final byte TAG_DOUBLE_ARRAY = 17;
+    private static final byte TAG_CHAR_ARRAY = 18;
+    private static final byte TAG_OBJECT_ARRAY = 19;
+    private static final byte TAG_ENUM = 20;
+    private static final byte TAG_COLLECTION = 21;
+    private static final byte TAG_MAP = 22;
+    private static final byte TAG_SLICE = 23;
+    private static final byte TAG_BLOCK = 24;
+    private static final byte TAG_STRUCT = 25;
+    private static final byte TAG_JAVA = 26;
+    private static final byte TAG_REFERENCE = 27;
+
+    // Guards against stack overflow on very deep object graphs, and on corrupted streams
+    private static final int MAX_DEPTH = 1000;
+
+    // Collection types that are recreated with their exact class
+    private static final Set<Class<?>> COLLECTION_CLASSES = ImmutableSet.of(ArrayList.class, LinkedList.class, HashSet.class, LinkedHashSet.class);
+    private static final Set<Class<?>> MAP_CLASSES = ImmutableSet.of(HashMap.class, LinkedHashMap.class);
+
+    private static final ClassValue<StructLayout> STRUCT_LAYOUTS = new ClassValue<StructLayout>()
+    {
+        @Override
+        protected StructLayout computeValue(Class<?> type)
+        {
+            return StructLayout.create(type);
+        }
+    };
+
+    private final BlockEncodingSerde blockEncodingSerde;
+    private final StateCompression compression;
+
+    /**
+     * @param blockEncodingSerde used to write blocks found in states; may be null if states never contain blocks
+     */
+    public BinarySnapshotStateCodec(BlockEncodingSerde blockEncodingSerde, StateCompression compression)
+    {
+        this.blockEncodingSerde = blockEncodingSerde;
+        this.compression = requireNonNull(compression, "compression is null");
+    }
+
+    @Override
+    public void serialize(Object state, OutputStream outputStream)
+            throws IOException
+    {
+        SliceOutput payload = new DynamicSliceOutput(1024);
+        new Writer(payload).writeValue(state);
+        Slice slice = payload.slice();
+        int uncompressedSize = slice.length();
+
+        StateCompression actualCompression = compression;
+        if (compression != StateCompression.NONE) {
+            Compressor compressor = createCompressor(compression);
+            byte[] compressed = new byte[compressor.maxCompressedLength(uncompressedSize)];
+            int compressedSize = compressor.compress(
+                    (byte[]) slice.getBase(),
+                    (int) (slice.getAddress() - ARRAY_BYTE_BASE_OFFSET),
+                    uncompressedSize,
+                    compressed,
+                    0,
+                    compressed.length);
+            if (compressedSize < uncompressedSize) {
+                slice = Slices.wrappedBuffer(compressed, 0, compressedSize);
+            }
+            else {
+                actualCompression = StateCompression.NONE;
+            }
+        }
+
+        SliceOutput header = Slices.allocate(HEADER_SIZE).getOutput();
+        header.writeShort(MAGIC);
+        header.writeByte(VERSION);
+        header.writeByte(actualCompression.ordinal());
+        header.writeInt(uncompressedSize);
+        outputStream.write(header.getUnderlyingSlice().getBytes());
+        slice.getBytes(0, outputStream, slice.length());
+        outputStream.flush();
+    }
+
+    @Override
+    public Object deserialize(InputStream inputStream)
+            throws IOException, ClassNotFoundException
+    {
+        PushbackInputStream input = new PushbackInputStream(inputStream, Short.BYTES);
+        byte[] magic = new byte[Short.BYTES];
+        int read = ByteStreams.read(input, magic, 0, magic.length);
+        input.unread(magic, 0, read);
+        // Java serialization streams start with STREAM_MAGIC in big-endian order
+        if (read == magic.length && (short) (((magic[0] & 0xFF) << 8) | (magic[1] & 0xFF)) == ObjectStreamConstants.STREAM_MAGIC) {
+            // Written by JavaSnapshotStateCodec
+            return JavaSnapshotStateCodec.JAVA_SNAPSHOT_STATE_CODEC.deserialize(input);
+        }
+
+        Slice data = Slices.wrappedBuffer(ByteStreams.toByteArray(input));
+        if (data.length() < HEADER_SIZE || data.getShort(0) != MAGIC) {
+            throw new IOException("Not a snapshot state stream");
+        }
+        byte version = data.getByte(Short.BYTES);
+        if (version != VERSION) {
+            throw new IOException("Unsupported snapshot state version: " + version);
+        }
+        byte compressionId = data.getByte(Short.BYTES + Byte.BYTES);
+        if (compressionId < 0 || compressionId >= StateCompression.values().length) {
+            throw new IOException("Corrupted snapshot state: unknown compression " + compressionId);
+        }
+        StateCompression stateCompression = StateCompression.values()[compressionId];
+        int uncompressedSize = data.getInt(Short.BYTES + Byte.BYTES + Byte.BYTES);
+        if (uncompressedSize < 0) {
+            throw new IOException("Corrupted snapshot state: invalid size " + uncompressedSize);
+        }
+        Slice payload = data.slice(HEADER_SIZE, data.length() - HEADER_SIZE);
+
+        if (stateCompression != StateCompression.NONE) {
+            byte[] decompressed = new byte[uncompressedSize];
+            int decompressedSize = createDecompressor(stateCompression).decompress(
+                    (byte[]) payload.getBase(),
+                    (int) (payload.getAddress() - ARRAY_BYTE_BASE_OFFSET),
+                    payload.length(),
+                    decompressed,
+                    0,
+                    uncompressedSize);
+            checkState(decompressedSize == uncompressedSize, "Corrupted snapshot state: expected %s bytes but got %s", uncompressedSize, decompressedSize);
+            payload = Slices.wrappedBuffer(decompressed);
+        }
+
+        return new Reader(payload.getInput()).readValue();
+    }
+
+    private static Compressor createCompressor(StateCompression compression)
+    {
+        switch (compression) {
+            case LZ4:
+                return new Lz4Compressor();
+            case ZSTD:
+                return new ZstdCompressor();
+            default:
+                throw new IllegalArgumentException("Unsupported compression: " + compression);
+        }
+    }
+
+    private static Decompressor createDecompressor(StateCompression compression)
+    {
+        switch (compression) {
+            case LZ4:
+                return new Lz4Decompressor();
+            case ZSTD:
+                return new ZstdDecompressor();
+            default:
+                throw new IllegalArgumentException("Unsupported compression: " + compression);
+        }
+    }
+
+    private class Writer
+    {
+        private final SliceOutput output;
+        // Class names and struct layouts are written once per stream; later references use their index
+        private final Map<Class<?>, Integer> classIds = new IdentityHashMap<>();
+        private final Map<Class<?>, Integer> structIds = new IdentityHashMap<>();
+        // Objects already written, by identity, with the index readers use to refer back to them
+        private final Map<Object, Integer> references = new IdentityHashMap<>();
+        private int depth;
+
+        Writer(SliceOutput output)
+        {
+            this.output = output;
+        }
+
+        void writeValue(Object value)
+                throws IOException
+        {
+            if (depth == MAX_DEPTH) {
+                throw new IOException(format("Snapshot state is nested deeper than %s levels", MAX_DEPTH));
+            }
+            depth++;
+            try {
+                writeObject(value);
+            }
+            finally {
+                depth--;
+            }
+        }
+
+        private void writeObject(Object value)
+                throws IOException
+        {
+            if (value == null) {
+                output.writeByte(TAG_NULL);
+                return;
+            }
+
+            Class<?> type = value.getClass();
+            if (!isWrittenByValue(value)) {
+                Integer reference = references.get(value);
+                if (reference != null) {
+                    output.writeByte(TAG_REFERENCE);
+                    output.writeInt(reference);
+                    return;
+                }
+                // Registered before its content is written, so cycles back to it become references
+                references.put(value, references.size());
+            }
+
+            if (type == Boolean.class) {
+                output.writeByte((Boolean) value ? TAG_TRUE : TAG_FALSE);
+            }
+            else if (type == Byte.class) {
+                output.writeByte(TAG_BYTE);
+                output.writeByte((Byte) value);
+            }
+            else if (type == Short.class) {
+                output.writeByte(TAG_SHORT);
+                output.writeShort((Short) value);
+            }
+            else if (type == Integer.class) {
+                output.writeByte(TAG_INT);
+                output.writeInt((Integer) value);
+            }
+            else if (type == Long.class) {
+                output.writeByte(TAG_LONG);
+                output.writeLong((Long) value);
+            }
+            else if (type == Float.class) {
+                output.writeByte(TAG_FLOAT);
+                output.writeFloat((Float) value);
+            }
+            else if (type == Double.class) {
+                output.writeByte(TAG_DOUBLE);
+                output.writeDouble((Double) value);
+            }
+            else if (type == Character.class) {
+                output.writeByte(TAG_CHAR);
+                output.writeShort((Character) value);
+            }
+            else if (type == String.class) {
+                output.writeByte(TAG_STRING);
+                writeString((String) value);
+            }
+            else if (type.isArray()) {
+                writeArray(value);
+            }
+            else if (value instanceof Enum) {
+                output.writeByte(TAG_ENUM);
+                writeClass(((Enum<?>) value).getDeclaringClass());
+                writeString(((Enum<?>) value).name());
+            }
+            else if (COLLECTION_CLASSES.contains(type)) {
+                Collection<?> collection = (Collection<?>) value;
+                output.writeByte(TAG_COLLECTION);
+                writeClass(type);
+                output.writeInt(collection.size());
+                for (Object element : collection) {
+                    writeValue(element);
+                }
+            }
+            else if (MAP_CLASSES.contains(type)) {
+                Map<?, ?> map = (Map<?, ?>) value;
+                output.writeByte(TAG_MAP);
+                writeClass(type);
+                output.writeInt(map.size());
+                for (Map.Entry<?, ?> entry : map.entrySet()) {
+                    writeValue(entry.getKey());
+                    writeValue(entry.getValue());
+                }
+            }
+            else if (value instanceof Slice) {
+                Slice slice = (Slice) value;
+                output.writeByte(TAG_SLICE);
+                output.writeInt(slice.length());
+                output.writeBytes(slice);
+            }
+            else if (value instanceof Block) {
+                checkState(blockEncodingSerde != null, "BlockEncodingSerde is required to write blocks");
+                output.writeByte(TAG_BLOCK);
+                blockEncodingSerde.writeBlock(output, (Block<?>) value);
+            }
+            else if (STRUCT_LAYOUTS.get(type).isSupported()) {
+                output.writeByte(TAG_STRUCT);
+                writeStruct(value, STRUCT_LAYOUTS.get(type));
+            }
+            else {
+                output.writeByte(TAG_JAVA);
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                JavaSnapshotStateCodec.JAVA_SNAPSHOT_STATE_CODEC.serialize(value, bytes);
+                output.writeInt(bytes.size());
+                output.writeBytes(bytes.toByteArray());
+            }
+        }
+
+        private void writeArray(Object array)
+                throws IOException
+        {
+            Class<?> componentType = array.getClass().getComponentType();
+            int length = Array.getLength(array);
+            if (componentType == boolean.class) {
+                output.writeByte(TAG_BOOLEAN_ARRAY);
+                output.writeInt(length);
+                for (boolean value : (boolean[]) array) {
+                    output.writeBoolean(value);
+                }
+            }
+            else if (componentType == byte.class) {
+                output.writeByte(TAG_BYTE_ARRAY);
+                output.writeInt(length);
+                output.writeBytes((byte[]) array);
+            }
+            else if (componentType == short.class) {
+                output.writeByte(TAG_SHORT_ARRAY);
+                output.writeInt(length);
+                output.writeBytes(Slices.wrappedShortArray((short[]) array));
+            }
+            else if (componentType == int.class) {
+                output.writeByte(TAG_INT_ARRAY);
+                output.writeInt(length);
+                output.writeBytes(Slices.wrappedIntArray((int[]) array));
+            }
+            else if (componentType == long.class) {
+                output.writeByte(TAG_LONG_ARRAY);
+                output.writeInt(length);
+                output.writeBytes(Slices.wrappedLongArray((long[]) array));
+            }
+            else if (componentType == float.class) {
+                output.writeByte(TAG_FLOAT_ARRAY);
+                output.writeInt(length);
+                output.writeBytes(Slices.wrappedFloatArray((float[]) array));
+            }
+            else if (componentType == double.class) {
+                output.writeByte(TAG_DOUBLE_ARRAY);
+                output.writeInt(length);
+                output.writeBytes(Slices.wrappedDoubleArray((double[]) array));
+            }
+            else if (componentType == char.class) {
+                output.writeByte(TAG_CHAR_ARRAY);
+                output.writeInt(length);
+                for (char value : (char[]) array) {
+                    output.writeShort(value);
+                }
+            }
+            else {
+                output.writeByte(TAG_OBJECT_ARRAY);
+                writeClass(componentType);
+                output.writeInt(length);
+                for (Object element : (Object[]) array) {
+                    writeValue(element);
+                }
+            }
+        }
+
+        private void writeStruct(Object value, StructLayout layout)
+                throws IOException
+        {
+            Integer id = structIds.get(layout.type);
+            if (id != null) {
+                output.writeInt(id);
+            }
+            else {
+                output.writeInt(-1);
+                structIds.put(layout.type, structIds.size());
+                writeClass(layout.type);
+                output.writeInt(layout.fields.size());
+                for (Field field : layout.fields) {
+                    writeString(field.getName());
+                    writeClass(field.getType());
+                }
+            }
+
+            try {
+                for (Field field : layout.fields) {
+                    Class<?> fieldType = field.getType();
+                    if (!fieldType.isPrimitive()) {
+                        writeValue(field.get(value));
+                    }
+                    else if (fieldType == boolean.class) {
+                        output.writeBoolean(field.getBoolean(value));
+                    }
+                    else if (fieldType == byte.class) {
+                        output.writeByte(field.getByte(value));
+                    }
+                    else if (fieldType == short.class) {
+                        output.writeShort(field.getShort(value));
+                    }
+                    else if (fieldType == int.class) {
+                        output.writeInt(field.getInt(value));
+                    }
+                    else if (fieldType == long.class) {
+                        output.writeLong(field.getLong(value));
+                    }
+                    else if (fieldType == float.class) {
+                        output.writeFloat(field.getFloat(value));
+                    }
+                    else if (fieldType == double.class) {
+                        output.writeDouble(field.getDouble(value));
+                    }
+                    else {
+                        output.writeShort(field.getChar(value));
+                    }
+                }
+            }
+            catch (IllegalAccessException e) {
+                throw new IOException("Failed to capture fields of " + layout.type.getName(), e);
+            }
+        }
+
+        private void writeClass(Class<?> type)
+        {
+            Integer id = classIds.get(type);
+            if (id != null) {
+                output.writeInt(id);
+            }
+            else {
+                output.writeInt(-1);
+                classIds.put(type, classIds.size());
+                writeString(type.getName());
+            }
+        }
+
+        private void writeString(String value)
+        {
+            Slice slice = Slices.utf8Slice(value);
+            output.writeInt(slice.length());
+            output.writeBytes(slice);
+        }
+    }
+
+    private class Reader
+    {
+        private final SliceInput input;
+        private final List<Class<?>> classes = new ArrayList<>();
+        private final List<StructReadLayout> structs = new ArrayList<>();
+        // Objects in the order the writer registered them, see Writer.references
+        private final List<Object> references = new ArrayList<>();
+        private int depth;
+
+        Reader(SliceInput input)
+        {
+            this.input = input;
+        }
+
+        Object readValue()
+                throws IOException, ClassNotFoundException
+        {
+            if (depth == MAX_DEPTH) {
+                throw new IOException(format("Corrupted snapshot state: nested deeper than %s levels", MAX_DEPTH));
+            }
+            depth++;
+            try {
+                return readObject();
+            }
+            finally {
+                depth--;
+            }
+        }
+
+        private Object readObject()
+                throws IOException, ClassNotFoundException
+        {
+            byte tag = input.readByte();
+            switch (tag) {
+                case TAG_NULL:
+                    return null;
+                case TAG_TRUE:
+                    return true;
+                case TAG_FALSE:
+                    return false;
+                case TAG_BYTE:
+                    return input.readByte();
+                case TAG_SHORT:
+                    return input.readShort();
+                case TAG_INT:
+                    return input.readInt();
+                case TAG_LONG:
+                    return input.readLong();
+                case TAG_FLOAT:
+                    return input.readFloat();
+                case TAG_DOUBLE:
+                    return input.readDouble();
+                case TAG_CHAR:
+                    return (char) input.readShort();
+                case TAG_STRING:
+                    return readString();
+                case TAG_BOOLEAN_ARRAY: {
+                    boolean[] array = register(new boolean[input.readInt()]);
+                    for (int i = 0; i < array.length; i++) {
+                        array[i] = input.readBoolean();
+                    }
+                    return array;
+                }
+                case TAG_BYTE_ARRAY: {
+                    byte[] array = register(new byte[input.readInt()]);
+                    input.readBytes(array);
+                    return array;
+                }
+                case TAG_SHORT_ARRAY: {
+                    short[] array = register(new short[input.readInt()]);
+                    input.readBytes(Slices.wrappedShortArray(array));
+                    return array;
+                }
+                case TAG_INT_ARRAY: {
+                    int[] array = register(new int[input.readInt()]);
+                    input.readBytes(Slices.wrappedIntArray(array));
+                    return array;
+                }
+                case TAG_LONG_ARRAY: {
+                    long[] array = register(new long[input.readInt()]);
+                    input.readBytes(Slices.wrappedLongArray(array));
+                    return array;
+                }
+                case TAG_FLOAT_ARRAY: {
+                    float[] array = register(new float[input.readInt()]);
+                    input.readBytes(Slices.wrappedFloatArray(array));
+                    return array;
+                }
+                case TAG_DOUBLE_ARRAY: {
+                    double[] array = register(new double[input.readInt()]);
+                    input.readBytes(Slices.wrappedDoubleArray(array));
+                    return array;
+                }
+                case TAG_CHAR_ARRAY: {
+                    char[] array = register(new char[input.readInt()]);
+                    for (int i = 0; i < array.length; i++) {
+                        array[i] = (char) input.readShort();
+                    }
+                    return array;
+                }
+                case TAG_OBJECT_ARRAY: {
+                    Class<?> componentType = readClass();
+                    Object[] array = register((Object[]) Array.newInstance(componentType, input.readInt()));
+                    for (int i = 0; i < array.length; i++) {
+                        array[i] = readValue();
+                    }
+                    return array;
+                }
+                case TAG_ENUM:
+                    return readEnum(readClass(), readString());
+                case TAG_COLLECTION: {
+                    Collection<Object> collection = register((Collection<Object>) newInstance(readClass()));
+                    int size = input.readInt();
+                    for (int i = 0; i < size; i++) {
+                        collection.add(readValue());
+                    }
+                    return collection;
+                }
+                case TAG_MAP: {
+                    Map<Object, Object> map = register((Map<Object, Object>) newInstance(readClass()));
+                    int size = input.readInt();
+                    for (int i = 0; i < size; i++) {
+                        Object key = readValue();
+                        map.put(key, readValue());
+                    }
+                    return map;
+                }
+                case TAG_SLICE:
+                    return register(Slices.copyOf(input.readSlice(input.readInt())));
+                case TAG_BLOCK:
+                    checkState(blockEncodingSerde != null, "BlockEncodingSerde is required to read blocks");
+                    return register(blockEncodingSerde.readBlock(input));
+                case TAG_STRUCT:
+                    return readStruct();
+                case TAG_JAVA: {
+                    byte[] bytes = new byte[input.readInt()];
+                    input.readBytes(bytes);
+                    try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+                        return register(ois.readObject());
+                    }
+                }
+                case TAG_REFERENCE: {
+                    int reference = input.readInt();
+                    if (reference < 0 || reference >= references.size()) {
+                        throw new IOException("Corrupted snapshot state: unknown reference " + reference);
+                    }
+                    return references.get(reference);
+                }
+                default:
+                    throw new IOException("Corrupted snapshot state: unknown tag " + tag);
+            }
+        }
+
+        private Object readStruct()
+                throws IOException, ClassNotFoundException
+        {
+            int id = input.readInt();
+            StructReadLayout layout;
+            if (id >= 0) {
+                layout = structs.get(id);
+            }
+            else {
+                Class<?> type = readClass();
+                StructLayout localLayout = STRUCT_LAYOUTS.get(type);
+                if (!localLayout.isSupported()) {
+                    throw new IOException("Snapshot state class is not supported: " + type.getName());
+                }
+                Field[] fields = new Field[input.readInt()];
+                for (int i = 0; i < fields.length; i++) {
+                    String name = readString();
+                    Class<?> fieldType = readClass();
+                    fields[i] = localLayout.getField(name, fieldType);
+                }
+                layout = new StructReadLayout(localLayout.constructor, fields);
+                structs.add(layout);
+            }
+
+            try {
+                Object value = register(layout.constructor.newInstance());
+                for (Field field : layout.fields) {
+                    Class<?> fieldType = field.getType();
+                    if (!fieldType.isPrimitive()) {
+                        field.set(value, readValue());
+                    }
+                    else if (fieldType == boolean.class) {
+                        field.setBoolean(value, input.readBoolean());
+                    }
+                    else if (fieldType == byte.class) {
+                        field.setByte(value, input.readByte());
+                    }
+                    else if (fieldType == short.class) {
+                        field.setShort(value, input.readShort());
+                    }
+                    else if (fieldType == int.class) {
+                        field.setInt(value, input.readInt());
+                    }
+                    else if (fieldType == long.class) {
+                        field.setLong(value, input.readLong());
+                    }
+                    else if (fieldType == float.class) {
+                        field.setFloat(value, input.readFloat());
+                    }
+                    else if (fieldType == double.class) {
+                        field.setDouble(value, input.readDouble());
+                    }
+                    else {
+                        field.setChar(value, (char) input.readShort());
+                    }
+                }
+                return value;
+            }
+            catch (ReflectiveOperationException | IllegalArgumentException e) {
+                throw new IOException("Failed to restore snapshot state of " + layout.constructor.getDeclaringClass().getName(), e);
+            }
+        }
+
+        private <T> T register(T value)
+        {
+            references.add(value);
+            return value;
+        }
+
+        private Class<?> readClass()
+                throws ClassNotFoundException
+        {
+            int id = input.readInt();
+            if (id >= 0) {
+                return classes.get(id);
+            }
+            Class<?> type = resolveClass(readString());
+            classes.add(type);
+            return type;
+        }
+
+        private String readString()
+        {
+            return input.readSlice(input.readInt()).toStringUtf8();
+        }
+
+        private <E extends Enum<E>> Object readEnum(Class<?> type, String name)
+        {
+            return Enum.valueOf((Class<E>) type, name);
+        }
+
+        private Object newInstance(Class<?> type)
+                throws IOException
+        {
+            try {
+                return type.getConstructor().newInstance();
+            }
+            catch (ReflectiveOperationException e) {
+                throw new IOException("Failed to create " + type.getName(), e);
+            }
+        }
+    }
+
+    private static boolean isWrittenByValue(Object value)
+    {
+        Class<?> type = value.getClass();
+        return type == String.class || type == Boolean.class || type == Byte.class || type == Short.class || type == Integer.class
+                || type == Long.class || type == Float.class || type == Double.class || type == Character.class || value instanceof Enum;
+    }
+
+    private static Class<?> resolveClass(String name)
+            throws ClassNotFoundException
+    {
+        switch (name) {
+            case "boolean":
+                return boolean.class;
+            case "byte":
+                return byte.class;
+            case "short":
+                return short.class;
+            case "int":
+                return int.class;
+            case "long":
+                return long.class;
+            case "float":
+                return float.class;
+            case "double":
+                return double.class;
+            case "char":
+                return char.class;
+            default:
+                return Class.forName(name, false, BinarySnapshotStateCodec.class.getClassLoader());
+        }
+    }
+
+    /**
+     * Field layout of a Serializable holder class that can be written field by field.
+     * Classes with custom serialization logic, without a no-argument constructor,
+     * or from the JDK are not supported and use Java serialization instead.
+     */
+    private static class StructLayout
+    {
+        private final Class<?> type;
+        private final Constructor<?> constructor;
+        private final List<Field> fields;
+
+        private StructLayout(Class<?> type, Constructor<?> constructor, List<Field> fields)
+        {
+            this.type = type;
+            this.constructor = constructor;
+            this.fields = fields;
+        }
+
+        static StructLayout create(Class<?> type)
+        {
+            StructLayout unsupported = new StructLayout(type, null, ImmutableList.of());
+            if (!Serializable.class.isAssignableFrom(type) || type.isInterface() || Modifier.isAbstract(type.getModifiers()) || isPlatformClass(type)) {
+                return unsupported;
+            }
+
+            List<Field> fields = new ArrayList<>();
+            for (Class<?> current = type; current != Object.class; current = current.getSuperclass()) {
+                if (!Serializable.class.isAssignableFrom(current) || isPlatformClass(current) || hasCustomSerialization(current)) {
+                    return unsupported;
+                }
+                List<Field> declaredFields = new ArrayList<>();
+                for (Field field : current.getDeclaredFields()) {
+                    if (!Modifier.isStatic(field.getModifiers()) && !Modifier.isTransient(field.getModifiers())) {
+                        declaredFields.add(field);
+                    }
+                }
+                // Field order from reflection is unspecified; sort so the layout is the same on every node
+                declaredFields.sort(Comparator.comparing(Field::getName));
+                fields.addAll(0, declaredFields);
+            }
+
+            try {
+                Constructor<?> constructor = type.getDeclaredConstructor();
+                constructor.setAccessible(true);
+                for (Field field : fields) {
+                    field.setAccessible(true);
+                }
+                return new StructLayout(type, constructor, ImmutableList.copyOf(fields));
+            }
+            catch (NoSuchMethodException | RuntimeException e) {
+                return unsupported;
+            }
+        }
+
+        boolean isSupported()
+        {
+            return constructor != null;
+        }
+
+        Field getField(String name, Class<?> fieldType)
+                throws IOException
+        {
+            for (Field field : fields) {
+                if (field.getName().equals(name) && field.getType() == fieldType) {
+                    return field;
+                }
+            }
+            throw new IOException(format("Snapshot state field %s of type %s doesn't match class %s", name, fieldType.getName(), type.getName()));
+        }
+
+        private static boolean isPlatformClass(Class<?> type)
+        {
+            String name = type.getName();
+            return name.startsWith("java.") || name.startsWith("javax.") || name.startsWith("jdk.") || name.startsWith("sun.");
+        }
+
+        private static boolean hasCustomSerialization(Class<?> type)
+        {
+            return Arrays.stream(type.getDeclaredMethods())
+                    .map(Method::getName)
+                    .anyMatch(name -> name.equals("writeObject") || name.equals("readObject") || name.equals("writeReplace") || name.equals("readResolve"));
+        }
+    }
+
+    private static class StructReadLayout
+    {
+        private final Constructor<?> constructor;
+        private final Field[] fields;
+
+        StructReadLayout(Constructor<?> constructor, Field[] fields)
+        {
+            this.constructor = constructor;
+            this.fields = fields;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.prestosql.snapshot;
+
+import io.prestosql.spi.snapshot.BlockEncodingSerdeProvider;
+import io.prestosql.spi.snapshot.Restorable;
+
+import java.util.Optional;
+
+/**
+ * Indicate a restorable object whose state mostly grows by appending,
+ * so a snapshot can store only what was added since the previous capture or restore.
+ * Only used for objects that store their own state files, i.e. that don't support consolidated writes.
+ */
+public interface IncrementalRestorable
+        extends Restorable
+{
+    /**
+     * Capture state changes since the last call to capture(), captureIncrement(), restore() or restoreIncrement().
+     *
+     * @return captured changes, or empty if existing state was modified in a way that requires a full capture
+     */
+    Optional<Object> captureIncrement(BlockEncodingSerdeProvider serdeProvider);
+
+    /**
+     * Apply changes returned by captureIncrement() on top of the current state
+     */
+    void restoreIncrement(Object increment, BlockEncodingSerdeProvider serdeProvider);
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.prestosql.snapshot;
+
+import java.io.Serializable;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * State stored for an IncrementalRestorable when only changes since the previous snapshot are captured.
+ * It points back to the state it's based on, which is either a full state or another incremental state.
+ */
+public class IncrementalSnapshotState
+        implements Serializable
+{
+    private static final long serialVersionUID = 1L;
+
+    private String baseStateId;
+    private int chainLength;
+    private Object increment;
+
+    // Used by BinarySnapshotStateCodec, which populates fields directly
+    private IncrementalSnapshotState()
+    {
+    }
+
+    public IncrementalSnapshotState(SnapshotStateId baseStateId, int chainLength, Object increment)
+    {
+        this.baseStateId = requireNonNull(baseStateId, "baseStateId is null").toString();
+        this.chainLength = chainLength;
+        this.increment = requireNonNull(increment, "increment is null");
+    }
+
+    public SnapshotStateId getBaseStateId()
+    {
+        return SnapshotStateId.fromString(baseStateId);
+    }
+
+    /**
+     * Number of incremental states between the full state and this one, including this one
+     */
+    public int getChainLength()
+    {
+        return chainLength;
+    }
+
+    public Object getIncrement()
+    {
+        return increment;
+    }
+
+    @Override
+    public String toString()
+    {
+        return toStringHelper(this)
+                .add("baseStateId", baseStateId)
+                .add("chainLength", chainLength)
+                .toString();
+    }
+}
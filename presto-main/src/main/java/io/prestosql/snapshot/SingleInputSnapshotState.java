@@ -52,6 +52,10 @@ public class SingleInputSnapshotState
     private final Function<Long, SnapshotStateId> spillStateIdGenerator;
     // Markers to be returned to the restorable object. The "nextMarker" method polls this list.
     private final Queue<MarkerPage> markers = new LinkedList<>();
+    // For IncrementalRestorable: the last successfully stored state, which the next incremental state can be based on,
+    // and how many incremental states have been stored on top of the last full state
+    private Optional<SnapshotStateId> incrementalBaseId = Optional.empty();
+    private int incrementalChainLength;
 
     public static SingleInputSnapshotState forOperator(Operator operator, OperatorContext operatorContext)
     {
@@ -109,8 +113,11 @@ public class SingleInputSnapshotState
                     snapshotManager.failedToRestore(componentId, true);
                     LOG.error("BUG! State of component %s has never been stored successfully before snapshot %d", restorableId, snapshotId);
                 }
+                else if (!restoreState(state.get())) {
+                    snapshotManager.failedToRestore(componentId, true);
+                    LOG.warn("Can't locate base states of incremental state for snapshot %d, component %s", snapshotId, restorableId);
+                }
                 else {
-                    restorable.restore(state.get(), pagesSerde);
                     boolean successful = true;
                     if (restorable instanceof Spillable && ((Spillable) restorable).isSpilled()) {
                         Boolean result = loadSpilledFiles(snapshotId, (Spillable) restorable);
@@ -132,6 +139,8 @@ public class SingleInputSnapshotState
                 }
                 // Previous pending snapshots no longer need to be carried out
                 markers.clear();
+                // The restored state may have been located in an earlier snapshot. Start over with a full state.
+                incrementalBaseId = Optional.empty();
             }
             catch (Exception e) {
                 LOG.warn(e, "Failed to restore snapshot state for %s: %s", componentId, e.getMessage());
@@ -145,6 +154,26 @@ public class SingleInputSnapshotState
         return true;
     }
 
+    // Returns false if the state is incremental, and some states it's based on can't be located
+    private boolean restoreState(Object state)
+            throws Exception
+    {
+        if (!(state instanceof IncrementalSnapshotState)) {
+            restorable.restore(state, pagesSerde);
+            return true;
+        }
+
+        Optional<List<Object>> chain = snapshotManager.loadIncrementalChain((IncrementalSnapshotState) state);
+        if (!chain.isPresent()) {
+            return false;
+        }
+        restorable.restore(chain.get().get(0), pagesSerde);
+        for (Object increment : chain.get().subList(1, chain.get().size())) {
+            ((IncrementalRestorable) restorable).restoreIncrement(((IncrementalSnapshotState) increment).getIncrement(), pagesSerde);
+        }
+        return true;
+    }
+
     // Exposed only to be used by HashBuilderOperator
     public void captureExtraState(long snapshotId)
     {
@@ -159,7 +188,12 @@ public class SingleInputSnapshotState
                 snapshotManager.storeConsolidatedState(componentId, restorable.capture(pagesSerde));
             }
             else {
-                snapshotManager.storeState(componentId, restorable.capture(pagesSerde));
+                Object state = captureIncrementally().orElseGet(() -> restorable.capture(pagesSerde));
+                // Clear the base first, in case the state can't be stored
+                incrementalBaseId = Optional.empty();
+                snapshotManager.storeState(componentId, state);
+                incrementalBaseId = Optional.of(componentId);
+                incrementalChainLength = state instanceof IncrementalSnapshotState ? ((IncrementalSnapshotState) state).getChainLength() : 0;
             }
             if (restorable instanceof Spillable && ((Spillable) restorable).isSpilled()) {
                 storeSpilledFiles(snapshotId, (Spillable) restorable);
@@ -178,6 +212,17 @@ public class SingleInputSnapshotState
         }
     }
 
+    private Optional<Object> captureIncrementally()
+    {
+        // Incremental states are only used for restorables that store their own state files. Consolidated states are only kept
+        // for snapshots that complete for the whole task, so they can't be used as base states.
+        if (!(restorable instanceof IncrementalRestorable) || !incrementalBaseId.isPresent() || incrementalChainLength >= snapshotManager.getMaxIncrementalChainLength()) {
+            return Optional.empty();
+        }
+        return ((IncrementalRestorable) restorable).captureIncrement(pagesSerde)
+                .map(increment -> new IncrementalSnapshotState(incrementalBaseId.get(), incrementalChainLength + 1, increment));
+    }
+
     public boolean hasMarker()
     {
         return !markers.isEmpty();
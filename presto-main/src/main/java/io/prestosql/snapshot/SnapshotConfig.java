@@ -16,6 +16,7 @@ package io.prestosql.snapshot;
 
 import io.airlift.configuration.Config;
 import io.airlift.configuration.ConfigDescription;
+import io.airlift.units.DataSize;
 import io.airlift.units.Duration;
 
 import javax.validation.constraints.Min;
@@ -23,6 +24,8 @@ import javax.validation.constraints.NotNull;
 
 import java.util.concurrent.TimeUnit;
 
+import static io.airlift.units.DataSize.Unit.MEGABYTE;
+
 /**
  * This class contains all configs of snapshot
  */
@@ -38,6 +41,13 @@ public class SnapshotConfig
     public static final String SNAPSHOT_SPLIT_COUNT_INTERVAL = "hetu.internal.snapshot.splitCountInterval";
     public static final String SNAPSHOT_MAX_RETRIES = "hetu.snapshot.maxRetries";
     public static final String SNAPSHOT_RETRY_TIMEOUT = "hetu.snapshot.retryTimeout";
+    public static final String SNAPSHOT_STATE_CODEC = "hetu.snapshot.stateCodec";
+    public static final String SNAPSHOT_STATE_COMPRESSION = "hetu.snapshot.stateCompression";
+    public static final String SNAPSHOT_INCREMENTAL = "hetu.snapshot.incremental";
+    public static final String SNAPSHOT_MAX_INCREMENTAL_CHAIN_LENGTH = "hetu.snapshot.maxIncrementalChainLength";
+    public static final String SNAPSHOT_ASYNC_WRITE = "hetu.snapshot.asyncWrite";
+    public static final String SNAPSHOT_ASYNC_WRITE_THREADS = "hetu.snapshot.asyncWriteThreads";
+    public static final String SNAPSHOT_MAX_ASYNC_WRITE_SIZE = "hetu.snapshot.maxAsyncWriteSize";
 
     private String snapshotProfile;
 
@@ -46,6 +56,13 @@ public class SnapshotConfig
     private long snapshotSplitCountInterval = 1_000;
     private long snapshotMaxRetries = 10;
     private Duration snapshotRetryTimeout = new Duration(10, TimeUnit.MINUTES);
+    private StateCodec snapshotStateCodec = StateCodec.JAVA;
+    private StateCompression snapshotStateCompression = StateCompression.NONE;
+    private boolean incrementalSnapshotEnabled;
+    private int maxIncrementalChainLength = 5;
+    private boolean asyncWriteEnabled;
+    private int asyncWriteThreads = 4;
+    private DataSize maxAsyncWriteSize = new DataSize(256, MEGABYTE);
 
     public enum IntervalType
     {
@@ -53,6 +70,19 @@ public class SnapshotConfig
         SPLIT_COUNT
     }
 
+    public enum StateCodec
+    {
+        JAVA,
+        BINARY
+    }
+
+    public enum StateCompression
+    {
+        NONE,
+        LZ4,
+        ZSTD
+    }
+
     public static int calculateTaskCount(int nodeCount)
     {
         if (nodeCount < 2) {
@@ -144,4 +174,100 @@ public class SnapshotConfig
         this.snapshotRetryTimeout = snapshotRetryTimeout;
         return this;
     }
+
+    @NotNull
+    public StateCodec getSnapshotStateCodec()
+    {
+        return snapshotStateCodec;
+    }
+
+    @Config(SNAPSHOT_STATE_CODEC)
+    @ConfigDescription("snapshot state codec")
+    public SnapshotConfig setSnapshotStateCodec(StateCodec snapshotStateCodec)
+    {
+        this.snapshotStateCodec = snapshotStateCodec;
+        return this;
+    }
+
+    @NotNull
+    public StateCompression getSnapshotStateCompression()
+    {
+        return snapshotStateCompression;
+    }
+
+    @Config(SNAPSHOT_STATE_COMPRESSION)
+    @ConfigDescription("snapshot state compression, only used by the BINARY codec")
+    public SnapshotConfig setSnapshotStateCompression(StateCompression snapshotStateCompression)
+    {
+        this.snapshotStateCompression = snapshotStateCompression;
+        return this;
+    }
+
+    public boolean isIncrementalSnapshotEnabled()
+    {
+        return incrementalSnapshotEnabled;
+    }
+
+    @Config(SNAPSHOT_INCREMENTAL)
+    @ConfigDescription("only store changes since the previous snapshot for operators that support it")
+    public SnapshotConfig setIncrementalSnapshotEnabled(boolean incrementalSnapshotEnabled)
+    {
+        this.incrementalSnapshotEnabled = incrementalSnapshotEnabled;
+        return this;
+    }
+
+    @Min(1)
+    public int getMaxIncrementalChainLength()
+    {
+        return maxIncrementalChainLength;
+    }
+
+    @Config(SNAPSHOT_MAX_INCREMENTAL_CHAIN_LENGTH)
+    @ConfigDescription("max number of incremental snapshots before a full snapshot is taken")
+    public SnapshotConfig setMaxIncrementalChainLength(int maxIncrementalChainLength)
+    {
+        this.maxIncrementalChainLength = maxIncrementalChainLength;
+        return this;
+    }
+
+    public boolean isAsyncWriteEnabled()
+    {
+        return asyncWriteEnabled;
+    }
+
+    @Config(SNAPSHOT_ASYNC_WRITE)
+    @ConfigDescription("write captured states to the snapshot store in background threads")
+    public SnapshotConfig setAsyncWriteEnabled(boolean asyncWriteEnabled)
+    {
+        this.asyncWriteEnabled = asyncWriteEnabled;
+        return this;
+    }
+
+    @Min(1)
+    public int getAsyncWriteThreads()
+    {
+        return asyncWriteThreads;
+    }
+
+    @Config(SNAPSHOT_ASYNC_WRITE_THREADS)
+    @ConfigDescription("number of threads used to write snapshot states in the background")
+    public SnapshotConfig setAsyncWriteThreads(int asyncWriteThreads)
+    {
+        this.asyncWriteThreads = asyncWriteThreads;
+        return this;
+    }
+
+    @NotNull
+    public DataSize getMaxAsyncWriteSize()
+    {
+        return maxAsyncWriteSize;
+    }
+
+    @Config(SNAPSHOT_MAX_ASYNC_WRITE_SIZE)
+    @ConfigDescription("max size of serialized states waiting to be written, before capturing operators are blocked")
+    public SnapshotConfig setMaxAsyncWriteSize(DataSize maxAsyncWriteSize)
+    {
+        this.maxAsyncWriteSize = maxAsyncWriteSize;
+        return this;
+    }
 }
@@ -16,6 +16,8 @@ package io.prestosql.snapshot;
 
 import com.google.common.io.ByteStreams;
 import io.airlift.log.Logger;
+import io.airlift.slice.DynamicSliceOutput;
+import io.airlift.slice.Slice;
 import io.prestosql.spi.filesystem.HetuFileSystemClient;
 
 import java.io.IOException;
@@ -32,6 +34,8 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 
+import static java.util.Objects.requireNonNull;
+
 /**
  * SnapshotStoreFileBased is an implementation of SnapshotStoreClient.
  * It uses HetuFileSystemClient to connect to File System.
@@ -43,11 +47,18 @@ public class SnapshotFileBasedClient
 
     private final HetuFileSystemClient fsClient;
     private final Path rootPath;
+    private final SnapshotStateCodec stateCodec;
 
     public SnapshotFileBasedClient(HetuFileSystemClient fsClient, Path rootPath)
+    {
+        this(fsClient, rootPath, JavaSnapshotStateCodec.JAVA_SNAPSHOT_STATE_CODEC);
+    }
+
+    public SnapshotFileBasedClient(HetuFileSystemClient fsClient, Path rootPath, SnapshotStateCodec stateCodec)
     {
         this.fsClient = fsClient;
         this.rootPath = rootPath;
+        this.stateCodec = requireNonNull(stateCodec, "stateCodec is null");
     }
 
     @Override
@@ -59,7 +70,29 @@ public class SnapshotFileBasedClient
         fsClient.createDirectories(file.getParent());
 
         try (OutputStream outputStream = fsClient.newOutputStream(file)) {
-            SnapshotUtils.serializeState(state, outputStream);
+            stateCodec.serialize(state, outputStream);
+        }
+    }
+
+    @Override
+    public Slice serializeState(Object state)
+            throws IOException
+    {
+        DynamicSliceOutput output = new DynamicSliceOutput(4096);
+        stateCodec.serialize(state, output);
+        return output.slice();
+    }
+
+    @Override
+    public void storeSerializedState(SnapshotStateId snapshotStateId, Slice serializedState)
+            throws IOException
+    {
+        Path file = SnapshotUtils.createStatePath(rootPath, snapshotStateId.getHierarchy());
+
+        fsClient.createDirectories(file.getParent());
+
+        try (OutputStream outputStream = fsClient.newOutputStream(file)) {
+            serializedState.getBytes(0, outputStream, serializedState.length());
         }
     }
 
@@ -73,7 +106,7 @@ public class SnapshotFileBasedClient
         }
 
         try (InputStream inputStream = fsClient.newInputStream(file)) {
-            return Optional.of(SnapshotUtils.deserializeState(inputStream));
+            return Optional.of(stateCodec.deserialize(inputStream));
         }
     }
 
@@ -81,10 +114,7 @@ public class SnapshotFileBasedClient
     public void storeFile(SnapshotStateId snapshotStateId, Path sourceFile)
             throws IOException
     {
-        List<String> hierarchy = new ArrayList<>(snapshotStateId.getHierarchy());
-        hierarchy.add(sourceFile.getFileName().toString());
-        Path file = SnapshotUtils.createStatePath(rootPath, hierarchy);
-
+        Path file = createFilePath(snapshotStateId, sourceFile);
         fsClient.createDirectories(file.getParent());
 
         try (OutputStream outputStream = fsClient.newOutputStream(file);
@@ -93,14 +123,24 @@ public class SnapshotFileBasedClient
         }
     }
 
+    @Override
+    public void storeFile(SnapshotStateId snapshotStateId, Path sourceFile, HetuFileSystemClient sourceFileSystem)
+            throws IOException
+    {
+        Path file = createFilePath(snapshotStateId, sourceFile);
+        fsClient.createDirectories(file.getParent());
+
+        try (OutputStream outputStream = fsClient.newOutputStream(file);
+                InputStream inputStream = sourceFileSystem.newInputStream(sourceFile)) {
+            ByteStreams.copy(inputStream, outputStream);
+        }
+    }
+
     @Override
     public boolean loadFile(SnapshotStateId snapshotStateId, Path targetPath)
             throws IOException
     {
-        List<String> hierarchy = new ArrayList<>(snapshotStateId.getHierarchy());
-        String fileName = targetPath.getFileName().toString();
-        hierarchy.add(fileName);
-        Path file = SnapshotUtils.createStatePath(rootPath, hierarchy);
+        Path file = createFilePath(snapshotStateId, targetPath);
 
         if (!fsClient.exists(file)) {
             LOG.warn("File: %s does not exist under %s", targetPath.getFileName().toString(), snapshotStateId);
@@ -116,6 +156,33 @@ public class SnapshotFileBasedClient
         return true;
     }
 
+    @Override
+    public boolean loadFile(SnapshotStateId snapshotStateId, Path targetPath, HetuFileSystemClient targetFileSystem)
+            throws IOException
+    {
+        Path file = createFilePath(snapshotStateId, targetPath);
+
+        if (!fsClient.exists(file)) {
+            LOG.warn("File: %s does not exist under %s", targetPath.getFileName().toString(), snapshotStateId);
+            return false;
+        }
+
+        targetFileSystem.createDirectories(targetPath.getParent());
+
+        try (InputStream inputStream = fsClient.newInputStream(file);
+                OutputStream outputStream = targetFileSystem.newOutputStream(targetPath)) {
+            ByteStreams.copy(inputStream, outputStream);
+        }
+        return true;
+    }
+
+    private Path createFilePath(SnapshotStateId snapshotStateId, Path path)
+    {
+        List<String> hierarchy = new ArrayList<>(snapshotStateId.getHierarchy());
+        hierarchy.add(path.getFileName().toString());
+        return SnapshotUtils.createStatePath(rootPath, hierarchy);
+    }
+
     @Override
     public void deleteAll(String queryId)
             throws IOException
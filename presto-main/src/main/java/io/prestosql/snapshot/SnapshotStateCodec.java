@@ -0,0 +1,37 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.prestosql.snapshot;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * SnapshotStateCodec converts captured states to and from the bytes kept in the snapshot store
+ */
+public interface SnapshotStateCodec
+{
+    /**
+     * Serialize state to outputStream
+     */
+    void serialize(Object state, OutputStream outputStream)
+            throws IOException;
+
+    /**
+     * Deserialize state from inputStream
+     */
+    Object deserialize(InputStream inputStream)
+            throws IOException, ClassNotFoundException;
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.prestosql.snapshot;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import io.airlift.log.Logger;
+import io.airlift.stats.CounterStat;
+import io.airlift.stats.TimeStat;
+import org.weakref.jmx.Managed;
+import org.weakref.jmx.Nested;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.util.concurrent.Futures.getDone;
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
+import static io.airlift.concurrent.Threads.daemonThreadsNamed;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Writes serialized snapshot states to the snapshot store in a bounded pool of background threads,
+ * so that drivers capturing states don't wait for the snapshot store.
+ * <p>
+ * The total size of states that are waiting to be written or being written is limited.
+ * When the limit is reached, {@link #isFull()} returns a future that completes when earlier writes finish,
+ * so drivers can yield their thread instead of capturing more states.
+ */
+public class SnapshotStateWriter
+{
+    private static final Logger LOG = Logger.get(SnapshotStateWriter.class);
+
+    private final ExecutorService executor;
+    private final long maxBytesInFlight;
+
+    private long bytesInFlight;
+    private SettableFuture<?> notFull = createNotFull();
+    private long fullSince;
+    private final AtomicInteger queuedWrites = new AtomicInteger();
+    private final AtomicInteger activeWrites = new AtomicInteger();
+
+    private final TimeStat writeTime = new TimeStat();
+    private final TimeStat blockedTime = new TimeStat();
+    private final CounterStat bytesWritten = new CounterStat();
+    private final CounterStat failedWrites = new CounterStat();
+
+    public SnapshotStateWriter(int threads, long maxBytesInFlight)
+    {
+        checkArgument(threads > 0, "threads must be positive");
+        checkArgument(maxBytesInFlight > 0, "maxBytesInFlight must be positive");
+        this.executor = newFixedThreadPool(threads, daemonThreadsNamed("snapshot-writer-%s"));
+        this.maxBytesInFlight = maxBytesInFlight;
+    }
+
+    /**
+     * Schedule a write of the given size. The write starts after the dependency completes successfully,
+     * and fails without being attempted if the dependency fails.
+     * Never blocks: a write that reaches the limit is still accepted, and makes {@link #isFull()} return a blocked future.
+     */
+    public ListenableFuture<?> submit(long size, ListenableFuture<?> dependency, StateWrite write)
+    {
+        requireNonNull(dependency, "dependency is null");
+        requireNonNull(write, "write is null");
+
+        reserve(size);
+        queuedWrites.incrementAndGet();
+        SettableFuture<?> result = SettableFuture.create();
+        dependency.addListener(() -> executor.execute(() -> runWrite(size, dependency, write, result)), directExecutor());
+        return result;
+    }
+
+    private void runWrite(long size, ListenableFuture<?> dependency, StateWrite write, SettableFuture<?> result)
+    {
+        queuedWrites.decrementAndGet();
+        activeWrites.incrementAndGet();
+        Throwable failure = null;
+        try {
+            // Throws if the dependency failed
+            getDone(dependency);
+            long start = System.nanoTime();
+            write.write();
+            writeTime.add(System.nanoTime() - start, NANOSECONDS);
+            bytesWritten.update(size);
+        }
+        catch (Throwable e) {
+            LOG.debug("Failed to write snapshot state: %s", e.getMessage());
+            failedWrites.update(1);
+            failure = e;
+        }
+        finally {
+            activeWrites.decrementAndGet();
+            release(size);
+        }
+        // Complete the result after releasing the reserved size, so callers see up-to-date numbers
+        if (failure == null) {
+            result.set(null);
+        }
+        else {
+            result.setException(failure);
+        }
+    }
+
+    /**
+     * Returns a future that is done when there is room for more writes.
+     */
+    public synchronized ListenableFuture<?> isFull()
+    {
+        return notFull;
+    }
+
+    private synchronized void reserve(long size)
+    {
+        bytesInFlight += size;
+        if (bytesInFlight >= maxBytesInFlight && notFull.isDone()) {
+            notFull = SettableFuture.create();
+            fullSince = System.nanoTime();
+        }
+    }
+
+    private void release(long size)
+    {
+        SettableFuture<?> future = null;
+        synchronized (this) {
+            bytesInFlight -= size;
+            if (bytesInFlight < maxBytesInFlight && !notFull.isDone()) {
+                future = notFull;
+                // Replace with a done future, so a concurrent release doesn't complete it again
+                notFull = createNotFull();
+                blockedTime.add(System.nanoTime() - fullSince, NANOSECONDS);
+            }
+        }
+        // Complete outside of the lock, listeners may run on this thread
+        if (future != null) {
+            future.set(null);
+        }
+    }
+
+    private static SettableFuture<?> createNotFull()
+    {
+        SettableFuture<?> future = SettableFuture.create();
+        future.set(null);
+        return future;
+    }
+
+    @VisibleForTesting
+    void shutdown()
+    {
+        executor.shutdownNow();
+    }
+
+    @Managed
+    public int getQueuedWrites()
+    {
+        return queuedWrites.get();
+    }
+
+    @Managed
+    public int getActiveWrites()
+    {
+        return activeWrites.get();
+    }
+
+    @Managed
+    public synchronized long getBytesInFlight()
+    {
+        return bytesInFlight;
+    }
+
+    @Managed
+    public long getMaxBytesInFlight()
+    {
+        return maxBytesInFlight;
+    }
+
+    @Managed
+    @Nested
+    public TimeStat getWriteTime()
+    {
+        return writeTime;
+    }
+
+    @Managed
+    @Nested
+    public TimeStat getBlockedTime()
+    {
+        return blockedTime;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getBytesWritten()
+    {
+        return bytesWritten;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getFailedWrites()
+    {
+        return failedWrites;
+    }
+
+    public interface StateWrite
+    {
+        void write()
+                throws Exception;
+    }
+}
@@ -14,6 +14,9 @@
  */
 package io.prestosql.snapshot;
 
+import io.airlift.slice.Slice;
+import io.prestosql.spi.filesystem.HetuFileSystemClient;
+
 import java.nio.file.Path;
 import java.util.Map;
 import java.util.Optional;
@@ -30,6 +33,18 @@ public interface SnapshotStoreClient
     void storeState(SnapshotStateId snapshotStateId, Object state)
             throws Exception;
 
+    /**
+     * Serialize state into the format used by the snapshot store, to be stored later with storeSerializedState
+     */
+    Slice serializeState(Object state)
+            throws Exception;
+
+    /**
+     * Store state that was serialized by serializeState in snapshot store
+     */
+    void storeSerializedState(SnapshotStateId snapshotStateId, Slice serializedState)
+            throws Exception;
+
     /**
      * Load state from snapshot store. Optional.empty() is returned if state doesn't exist.
      */
@@ -48,6 +63,18 @@ public interface SnapshotStoreClient
     boolean loadFile(SnapshotStateId snapshotStateId, Path targetPath)
             throws Exception;
 
+    /**
+     * Store file from sourcePath of sourceFileSystem to snapshotStateId of snapshot store
+     */
+    void storeFile(SnapshotStateId snapshotStateId, Path sourcePath, HetuFileSystemClient sourceFileSystem)
+            throws Exception;
+
+    /**
+     * Load file from snapshotStateId of snapshot store to targetPath of targetFileSystem
+     */
+    boolean loadFile(SnapshotStateId snapshotStateId, Path targetPath, HetuFileSystemClient targetFileSystem)
+            throws Exception;
+
     /**
      * Delete everything under query
      */
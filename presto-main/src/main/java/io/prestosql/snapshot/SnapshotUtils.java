@@ -16,6 +16,7 @@ package io.prestosql.snapshot;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.ListenableFuture;
 import io.airlift.log.Logger;
 import io.airlift.slice.DynamicSliceOutput;
 import io.airlift.slice.Slice;
@@ -26,16 +27,15 @@ import io.prestosql.filesystem.FileSystemClientManager;
 import io.prestosql.metadata.InternalNodeManager;
 import io.prestosql.spi.QueryId;
 import io.prestosql.spi.block.Block;
+import io.prestosql.spi.block.BlockEncodingSerde;
 import io.prestosql.spi.filesystem.HetuFileSystemClient;
 import io.prestosql.spi.snapshot.BlockEncodingSerdeProvider;
+import io.prestosql.spiller.SharedSpillStore;
+import org.weakref.jmx.Managed;
+import org.weakref.jmx.Nested;
 
 import javax.inject.Inject;
 
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.io.OutputStream;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Collection;
@@ -60,6 +60,9 @@ public class SnapshotUtils
     private final boolean isCoordinator;
     private final FileSystemClientManager fileSystemClientManager;
     private final SnapshotConfig snapshotConfig;
+    private final BlockEncodingSerde blockEncodingSerde;
+    private final Optional<SharedSpillStore> sharedSpillStore;
+    private final SnapshotStateWriter stateWriter;
     private SnapshotStoreClient snapshotStoreClient;
     //TODO-cp-I2D63N hardcoded 'storeType' and 'rootPath' for now, may change to configurable after done switching to state-store
     private final SnapshotStoreType storeType = SnapshotStoreType.FILESYSTEM;
@@ -72,12 +75,37 @@ public class SnapshotUtils
     private final Map<String, Long> snapshotsToDelete = new ConcurrentHashMap<>();
     private final ScheduledThreadPoolExecutor deleteSnapshotExecutor = new ScheduledThreadPoolExecutor(1);
 
-    @Inject
     public SnapshotUtils(FileSystemClientManager fileSystemClientManager, SnapshotConfig snapshotConfig, InternalNodeManager nodeManager)
+    {
+        this(fileSystemClientManager, snapshotConfig, nodeManager, null);
+    }
+
+    /**
+     * @param blockEncodingSerde used by the BINARY state codec to write blocks; may be null if states never contain blocks
+     */
+    public SnapshotUtils(FileSystemClientManager fileSystemClientManager, SnapshotConfig snapshotConfig, InternalNodeManager nodeManager, BlockEncodingSerde blockEncodingSerde)
+    {
+        this(fileSystemClientManager, snapshotConfig, nodeManager, blockEncodingSerde, Optional.empty());
+    }
+
+    @Inject
+    public SnapshotUtils(FileSystemClientManager fileSystemClientManager, SnapshotConfig snapshotConfig, InternalNodeManager nodeManager, BlockEncodingSerde blockEncodingSerde, SharedSpillStore sharedSpillStore)
+    {
+        this(fileSystemClientManager, snapshotConfig, nodeManager, blockEncodingSerde, Optional.of(sharedSpillStore).filter(SharedSpillStore::isEnabled));
+    }
+
+    /**
+     * @param sharedSpillStore spilled files in the shared spill store are accessed through its file system client
+     */
+    private SnapshotUtils(FileSystemClientManager fileSystemClientManager, SnapshotConfig snapshotConfig, InternalNodeManager nodeManager, BlockEncodingSerde blockEncodingSerde, Optional<SharedSpillStore> sharedSpillStore)
     {
         this.isCoordinator = nodeManager.getCurrentNode().isCoordinator();
         this.fileSystemClientManager = requireNonNull(fileSystemClientManager);
         this.snapshotConfig = requireNonNull(snapshotConfig);
+        this.blockEncodingSerde = blockEncodingSerde;
+        this.sharedSpillStore = requireNonNull(sharedSpillStore);
+        // Threads of the writer are only created when it's used
+        this.stateWriter = new SnapshotStateWriter(snapshotConfig.getAsyncWriteThreads(), snapshotConfig.getMaxAsyncWriteSize().toBytes());
 
         // When a query finishes abnormally (including being cancelled by the user), we may not be able to delete
         // the snapshot folder, because tasks may be updating snapshot files at the same time.
@@ -104,6 +132,26 @@ public class SnapshotUtils
         return snapshotConfig.getSnapshotProfile();
     }
 
+    /**
+     * Max number of incremental states that can be stored on top of a full state; 0 if incremental snapshot is disabled
+     */
+    public int getMaxIncrementalChainLength()
+    {
+        return snapshotConfig.isIncrementalSnapshotEnabled() ? snapshotConfig.getMaxIncrementalChainLength() : 0;
+    }
+
+    public boolean isAsyncWriteEnabled()
+    {
+        return snapshotConfig.isAsyncWriteEnabled();
+    }
+
+    @Managed
+    @Nested
+    public SnapshotStateWriter getStateWriter()
+    {
+        return stateWriter;
+    }
+
     public void initialize()
     {
         snapshotStoreClient = buildSnapshotStoreClient();
@@ -117,7 +165,7 @@ public class SnapshotUtils
             try {
                 HetuFileSystemClient fs = profile == null ?
                         fileSystemClientManager.getFileSystemClient(root) : fileSystemClientManager.getFileSystemClient(profile, root);
-                return new SnapshotFileBasedClient(fs, root);
+                return new SnapshotFileBasedClient(fs, root, createStateCodec());
             }
             catch (Exception e) {
                 LOG.warn(e, "Failed to create SnapshotFileBasedClient");
@@ -131,6 +179,18 @@ public class SnapshotUtils
         }
     }
 
+    private SnapshotStateCodec createStateCodec()
+    {
+        switch (snapshotConfig.getSnapshotStateCodec()) {
+            case JAVA:
+                return JavaSnapshotStateCodec.JAVA_SNAPSHOT_STATE_CODEC;
+            case BINARY:
+                return new BinarySnapshotStateCodec(blockEncodingSerde, snapshotConfig.getSnapshotStateCompression());
+            default:
+                throw new UnsupportedOperationException("Not valid snapshot state codec: " + snapshotConfig.getSnapshotStateCodec());
+        }
+    }
+
     /**
      * Store the state of snapshotStateId in snapshot store
      */
@@ -143,6 +203,23 @@ public class SnapshotUtils
         snapshotStoreClient.storeState(snapshotStateId, state);
     }
 
+    /**
+     * Serialize the state of snapshotStateId in the calling thread, and store it in snapshot store in the background.
+     * The write only starts after the dependency completes successfully.
+     * Callers should check {@link SnapshotStateWriter#isFull()} before capturing more states.
+     */
+    public ListenableFuture<?> storeStateAsync(SnapshotStateId snapshotStateId, Object state, ListenableFuture<?> dependency)
+            throws Exception
+    {
+        requireNonNull(snapshotStoreClient);
+        requireNonNull(state);
+
+        // Serialize before returning, so the state object can be changed by its owner afterwards
+        Slice serializedState = snapshotStoreClient.serializeState(state);
+        SnapshotStoreClient client = snapshotStoreClient;
+        return stateWriter.submit(serializedState.length(), dependency, () -> client.storeSerializedState(snapshotStateId, serializedState));
+    }
+
     /**
      * Load the state of snapshotStateId from snapshot store. Returns:
      * - Empty: state file doesn't exist
@@ -162,6 +239,10 @@ public class SnapshotUtils
         requireNonNull(snapshotStoreClient);
         requireNonNull(sourceFile);
 
+        if (sharedSpillStore.isPresent() && sharedSpillStore.get().contains(sourceFile)) {
+            snapshotStoreClient.storeFile(snapshotStateId, sourceFile, sharedSpillStore.get().getFileSystem());
+            return;
+        }
         snapshotStoreClient.storeFile(snapshotStateId, sourceFile);
     }
 
@@ -171,6 +252,9 @@ public class SnapshotUtils
         requireNonNull(snapshotStoreClient);
         requireNonNull(targetFile);
 
+        if (sharedSpillStore.isPresent() && sharedSpillStore.get().contains(targetFile)) {
+            return snapshotStoreClient.loadFile(snapshotStateId, targetFile, sharedSpillStore.get().getFileSystem());
+        }
         return snapshotStoreClient.loadFile(snapshotStateId, targetFile);
     }
 
@@ -198,29 +282,6 @@ public class SnapshotUtils
         return snapshotStoreClient.loadConsolidatedFiles(queryId);
     }
 
-    /**
-     * Serialize state to outputStream
-     */
-    public static void serializeState(Object state, OutputStream outputStream)
-            throws IOException
-    {
-        // java serialization
-        ObjectOutputStream oos = new ObjectOutputStream(outputStream);
-        oos.writeObject(state);
-        oos.flush();
-    }
-
-    /**
-     * Deserialize state from inputStream
-     */
-    public static Object deserializeState(InputStream inputStream)
-            throws IOException, ClassNotFoundException
-    {
-        // java deserialization
-        ObjectInputStream ois = new ObjectInputStream(inputStream);
-        return ois.readObject();
-    }
-
     /**
      * Create state path
      *
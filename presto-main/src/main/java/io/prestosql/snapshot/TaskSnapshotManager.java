@@ -15,6 +15,8 @@
 package io.prestosql.snapshot;
 
 import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import io.airlift.log.Logger;
 import io.prestosql.execution.TaskId;
 import io.prestosql.operator.Operator;
@@ -26,13 +28,18 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.OptionalLong;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 
 import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.util.concurrent.Futures.immediateFuture;
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
 import static java.util.Objects.requireNonNull;
 
 /**
@@ -61,6 +68,11 @@ public class TaskSnapshotManager
     private final Map<Long, Map<String, Object>> storeCache = Collections.synchronizedMap(new HashMap<>());
     private final Map<Long, Map<String, Object>> loadCache = Collections.synchronizedMap(new HashMap<>());
 
+    // States that are being written in the background, for each snapshot. Snapshot results are only reported after these writes finish.
+    private final Map<Long, List<ListenableFuture<?>>> pendingWrites = new HashMap<>();
+    // Latest unfinished background write for each component, keyed by component id with snapshot id 0
+    private final Map<SnapshotStateId, ListenableFuture<?>> lastComponentWrites = new ConcurrentHashMap<>();
+
     private Set<String> createdConsolidatedFiles;
 
     public TaskSnapshotManager(TaskId taskId, long resumeCount, SnapshotUtils snapshotUtils)
@@ -75,6 +87,11 @@ public class TaskSnapshotManager
         return resumeCount;
     }
 
+    public int getMaxIncrementalChainLength()
+    {
+        return snapshotUtils.getMaxIncrementalChainLength();
+    }
+
     public QuerySnapshotManager getQuerySnapshotManager()
     {
         return snapshotUtils.getQuerySnapshotManager(taskId.getQueryId());
@@ -97,12 +114,58 @@ public class TaskSnapshotManager
     public void storeState(SnapshotStateId snapshotStateId, Object state)
             throws Exception
     {
-        snapshotUtils.storeState(snapshotStateId, state);
+        if (snapshotUtils.isAsyncWriteEnabled()) {
+            storeStateAsync(snapshotStateId, state);
+        }
+        else {
+            snapshotUtils.storeState(snapshotStateId, state);
+        }
         // store dummy value
         Map<String, Object> map = storeCache.computeIfAbsent(snapshotStateId.getSnapshotId(), (x) -> Collections.synchronizedMap(new HashMap<>()));
         map.put(snapshotStateId.toString(), snapshotStateId.toString());
     }
 
+    /**
+     * Returns a future that is done when the background writer has room for more states.
+     * Always done when states are written synchronously.
+     */
+    public ListenableFuture<?> isStateWriterFull()
+    {
+        if (snapshotUtils.isAsyncWriteEnabled()) {
+            return snapshotUtils.getStateWriter().isFull();
+        }
+        return immediateFuture(null);
+    }
+
+    private void storeStateAsync(SnapshotStateId snapshotStateId, Object state)
+            throws Exception
+    {
+        SnapshotStateId componentKey = snapshotStateId.withSnapshotId(0);
+        ListenableFuture<?> dependency = immediateFuture(null);
+        if (state instanceof IncrementalSnapshotState) {
+            // The base of an incremental state is the previous state stored by the same component.
+            // Only write the incremental state after its base is stored, so it's never stored without its base.
+            dependency = lastComponentWrites.getOrDefault(componentKey, dependency);
+        }
+        ListenableFuture<?> write = snapshotUtils.storeStateAsync(snapshotStateId, state, dependency);
+        lastComponentWrites.put(componentKey, write);
+        // Forget the write once it's done, a later incremental state no longer needs to wait for it.
+        // Added after the put, so the entry is also removed when the write is already done.
+        write.addListener(() -> lastComponentWrites.remove(componentKey, write), directExecutor());
+        synchronized (pendingWrites) {
+            pendingWrites.computeIfAbsent(snapshotStateId.getSnapshotId(), k -> new ArrayList<>()).add(write);
+        }
+    }
+
+    private ListenableFuture<?> removePendingWrites(long snapshotId)
+    {
+        List<ListenableFuture<?>> writes;
+        synchronized (pendingWrites) {
+            writes = pendingWrites.remove(snapshotId);
+        }
+        return writes == null ? immediateFuture(null) : Futures.allAsList(writes);
+    }
+
     private void loadMapIfNecessary(long snapshotId, TaskId taskId)
             throws Exception
     {
@@ -189,6 +252,31 @@ public class TaskSnapshotManager
         return loadedValue;
     }
 
+    /**
+     * Resolve an incremental state to all states needed to restore it: the full state it's based on,
+     * followed by incremental states from the oldest to the given one.
+     * Returns empty if any state in the chain can't be located.
+     */
+    public Optional<List<Object>> loadIncrementalChain(IncrementalSnapshotState state)
+            throws Exception
+    {
+        LinkedList<Object> chain = new LinkedList<>();
+        Object current = state;
+        while (current instanceof IncrementalSnapshotState) {
+            chain.addFirst(current);
+            // Base states are stored by the same component in earlier snapshots. Load them directly,
+            // because those snapshots may not have completed for the whole task.
+            Optional<Object> base = snapshotUtils.loadState(((IncrementalSnapshotState) current).getBaseStateId());
+            if (!base.isPresent()) {
+                LOG.debug("Failed to locate base state %s of incremental state", ((IncrementalSnapshotState) current).getBaseStateId());
+                return Optional.empty();
+            }
+            current = base.get();
+        }
+        chain.addFirst(current);
+        return Optional.of(chain);
+    }
+
     public void storeFile(SnapshotStateId snapshotStateId, Path sourceFile)
             throws Exception
     {
@@ -305,38 +393,75 @@ public class TaskSnapshotManager
         if (counter.updateComponent(componentId, componentState)) {
             // update capturedSnapshotResultMap
             SnapshotResult snapshotResult = counter.getSnapshotResult();
-            synchronized (captureResults) {
-                SnapshotResult oldResult = captureResults.put(snapshotId, snapshotResult);
-                if (snapshotResult != oldResult && snapshotResult.isDone()) {
-                    if (snapshotResult == SnapshotResult.SUCCESSFUL) {
-                        // All components for the task have captured their states successfully.
-                        // Save the consolidated state.
-                        SnapshotStateId newId = createConsolidatedId(snapshotId, taskId);
-                        try {
-                            Map<String, Object> map = storeCache.remove(snapshotId);
-                            if (map == null) {
-                                map = Collections.emptyMap();
-                            }
-                            snapshotUtils.storeState(newId, map);
+            if (snapshotResult == SnapshotResult.SUCCESSFUL) {
+                // Component states may still be written in the background. Only report the snapshot after they are stored.
+                ListenableFuture<?> writes = removePendingWrites(snapshotId);
+                if (!writes.isDone()) {
+                    writes.addListener(() -> updateCaptureResult(taskId, snapshotId, getWriteResult(writes, snapshotId)), directExecutor());
+                    return;
+                }
+                snapshotResult = getWriteResult(writes, snapshotId);
+            }
+            else if (snapshotResult.isDone()) {
+                // No need to wait for writes of a failed snapshot
+                removePendingWrites(snapshotId);
+            }
+            updateCaptureResult(taskId, snapshotId, snapshotResult);
+        }
+    }
+
+    private SnapshotResult getWriteResult(ListenableFuture<?> writes, long snapshotId)
+    {
+        try {
+            Futures.getDone(writes);
+            return SnapshotResult.SUCCESSFUL;
+        }
+        catch (ExecutionException e) {
+            LOG.error(e.getCause(), "Failed to store state for snapshot %d of task %s", snapshotId, taskId);
+            return SnapshotResult.FAILED;
+        }
+    }
+
+    private void updateCaptureResult(TaskId taskId, long snapshotId, SnapshotResult result)
+    {
+        SnapshotResult snapshotResult = result;
+        synchronized (captureResults) {
+            SnapshotResult oldResult = captureResults.put(snapshotId, snapshotResult);
+            if (snapshotResult != oldResult && snapshotResult.isDone()) {
+                if (snapshotResult == SnapshotResult.SUCCESSFUL) {
+                    // All components for the task have captured their states successfully.
+                    // Save the consolidated state.
+                    SnapshotStateId newId = createConsolidatedId(snapshotId, taskId);
+                    try {
+                        Map<String, Object> map = storeCache.remove(snapshotId);
+                        if (map == null) {
+                            map = Collections.emptyMap();
                         }
-                        catch (Exception e) {
-                            LOG.error(e, "Failed to store state for " + newId);
-                            snapshotResult = SnapshotResult.FAILED;
-                            captureResults.put(snapshotId, snapshotResult);
+                        else {
+                            // Store a plain map, which state codecs can encode without falling back to Java serialization
+                            synchronized (map) {
+                                map = new HashMap<>(map);
+                            }
                         }
+                        snapshotUtils.storeState(newId, map);
                     }
-                    if (snapshotUtils.isCoordinator()) {
-                        // Results on coordinator won't be reported through remote task. Send to the query side.
-                        QuerySnapshotManager querySnapshotManager = snapshotUtils.getQuerySnapshotManager(taskId.getQueryId());
-                        if (querySnapshotManager != null) {
-                            if (snapshotResult == SnapshotResult.SUCCESSFUL) {
-                                querySnapshotManager.addConsolidatedFileToList(createConsolidatedId(snapshotId, taskId).toString());
-                            }
-                            querySnapshotManager.updateQueryCapture(taskId, snapshotId, snapshotResult);
+                    catch (Exception e) {
+                        LOG.error(e, "Failed to store state for " + newId);
+                        snapshotResult = SnapshotResult.FAILED;
+                        captureResults.put(snapshotId, snapshotResult);
+                    }
+                }
+                if (snapshotUtils.isCoordinator()) {
+                    // Results on coordinator won't be reported through remote task. Send to the query side.
+                    QuerySnapshotManager querySnapshotManager = snapshotUtils.getQuerySnapshotManager(taskId.getQueryId());
+                    if (querySnapshotManager != null) {
+                        if (snapshotResult == SnapshotResult.SUCCESSFUL) {
+                            querySnapshotManager.addConsolidatedFileToList(createConsolidatedId(snapshotId, taskId).toString());
                         }
+                        querySnapshotManager.updateQueryCapture(taskId, snapshotId, snapshotResult);
                     }
-                    LOG.debug("Finished capturing snapshot %d for task %s. Result is %s.", snapshotId, taskId, snapshotResult);
                 }
+                LOG.debug("Finished capturing snapshot %d for task %s. Result is %s.", snapshotId, taskId, snapshotResult);
             }
         }
     }
@@ -13,6 +13,9 @@
  */
 package io.prestosql.spiller;
 
+import com.google.common.io.ByteStreams;
+import io.prestosql.spi.filesystem.HetuFileSystemClient;
+
 import javax.annotation.concurrent.GuardedBy;
 import javax.annotation.concurrent.ThreadSafe;
 
@@ -24,8 +27,10 @@ import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.OpenOption;
 import java.nio.file.Path;
+import java.util.Optional;
 
 import static com.google.common.base.Preconditions.checkState;
+import static java.nio.file.StandardOpenOption.APPEND;
 import static java.util.Objects.requireNonNull;
 
 @ThreadSafe
@@ -33,27 +38,90 @@ final class FileHolder
         implements Closeable
 {
     private final Path filePath;
+    private final Optional<HetuFileSystemClient> fileSystem;
 
     @GuardedBy("this")
     private boolean deleted;
+    // Only used for files on a file system client, where opening a file for each write is expensive (e.g. HDFS)
+    @GuardedBy("this")
+    private OutputStream appendOutput;
 
     public FileHolder(Path filePath)
+    {
+        this(filePath, Optional.empty());
+    }
+
+    /**
+     * @param fileSystem if present, the file is accessed through this client instead of the local file system
+     */
+    public FileHolder(Path filePath, Optional<HetuFileSystemClient> fileSystem)
     {
         this.filePath = requireNonNull(filePath, "filePath is null");
+        this.fileSystem = requireNonNull(fileSystem, "fileSystem is null");
     }
 
+    /**
+     * Files on a file system client are always appended to, whatever the options. Their output is kept open
+     * until the file is read, synced or deleted, so closing the returned stream only flushes it.
+     */
     public synchronized OutputStream newOutputStream(OpenOption... options)
             throws IOException
     {
         checkState(!deleted, "File already deleted");
-        return Files.newOutputStream(filePath, options);
+        if (!fileSystem.isPresent()) {
+            return Files.newOutputStream(filePath, options);
+        }
+        return new OutputStream()
+        {
+            @Override
+            public void write(int b)
+                    throws IOException
+            {
+                write(new byte[] {(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len)
+                    throws IOException
+            {
+                append(b, off, len);
+            }
+
+            @Override
+            public void flush()
+                    throws IOException
+            {
+                flushAppendOutput();
+            }
+
+            @Override
+            public void close()
+                    throws IOException
+            {
+                flush();
+            }
+        };
     }
 
     public synchronized InputStream newInputStream(OpenOption... options)
             throws IOException
     {
         checkState(!deleted, "File already deleted");
-        return Files.newInputStream(filePath, options);
+        if (!fileSystem.isPresent()) {
+            return Files.newInputStream(filePath, options);
+        }
+        closeAppendOutput();
+        return fileSystem.get().newInputStream(filePath);
+    }
+
+    /**
+     * Closes the output of a file on a file system client, so that its whole content can be read by another client,
+     * e.g. when it is copied to a snapshot. Later writes reopen the file to append to it.
+     */
+    public synchronized void sync()
+            throws IOException
+    {
+        closeAppendOutput();
     }
 
     @Override
@@ -65,7 +133,13 @@ final class FileHolder
         deleted = true;
 
         try {
-            Files.delete(filePath);
+            if (fileSystem.isPresent()) {
+                closeAppendOutput();
+                fileSystem.get().delete(filePath);
+            }
+            else {
+                Files.delete(filePath);
+            }
         }
         catch (IOException e) {
             throw new UncheckedIOException(e);
@@ -76,4 +150,63 @@ final class FileHolder
     {
         return filePath;
     }
+
+    public Optional<HetuFileSystemClient> getFileSystem()
+    {
+        return fileSystem;
+    }
+
+    private synchronized void append(byte[] b, int off, int len)
+            throws IOException
+    {
+        checkState(!deleted, "File already deleted");
+        if (appendOutput == null) {
+            appendOutput = openAppendOutput(fileSystem.get());
+        }
+        appendOutput.write(b, off, len);
+    }
+
+    private OutputStream openAppendOutput(HetuFileSystemClient client)
+            throws IOException
+    {
+        // the file may have been written before it was read or synced, or restored from a snapshot
+        if (!client.exists(filePath)) {
+            return client.newOutputStream(filePath);
+        }
+        try {
+            return client.newOutputStream(filePath, APPEND);
+        }
+        catch (UnsupportedOperationException e) {
+            // the file system can't append to a file, rewrite the file with its current content
+            Path previousFile = filePath.resolveSibling(filePath.getFileName() + ".previous");
+            client.move(filePath, previousFile);
+            OutputStream output = client.newOutputStream(filePath);
+            try (InputStream input = client.newInputStream(previousFile)) {
+                ByteStreams.copy(input, output);
+            }
+            catch (IOException | RuntimeException copyFailure) {
+                output.close();
+                throw copyFailure;
+            }
+            client.delete(previousFile);
+            return output;
+        }
+    }
+
+    private synchronized void flushAppendOutput()
+            throws IOException
+    {
+        if (appendOutput != null) {
+            appendOutput.flush();
+        }
+    }
+
+    private synchronized void closeAppendOutput()
+            throws IOException
+    {
+        if (appendOutput != null) {
+            appendOutput.close();
+            appendOutput = null;
+        }
+    }
 }
@@ -30,6 +30,7 @@ import io.prestosql.memory.context.LocalMemoryContext;
 import io.prestosql.operator.SpillContext;
 import io.prestosql.spi.Page;
 import io.prestosql.spi.PrestoException;
+import io.prestosql.spi.filesystem.HetuFileSystemClient;
 import io.prestosql.spi.snapshot.BlockEncodingSerdeProvider;
 import io.prestosql.spi.snapshot.RestorableConfig;
 import io.prestosql.spi.spiller.SpillCipher;
@@ -48,19 +49,22 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Supplier;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
 import static io.hetu.core.transport.execution.buffer.PagesSerdeUtil.writeSerializedPage;
 import static io.prestosql.spi.StandardErrorCode.GENERIC_INTERNAL_ERROR;
 import static io.prestosql.spiller.FileSingleStreamSpillerFactory.SPILL_FILE_PREFIX;
 import static io.prestosql.spiller.FileSingleStreamSpillerFactory.SPILL_FILE_SUFFIX;
 import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE_NEW;
 import static java.util.Objects.requireNonNull;
 
 @NotThreadSafe
 
 @RestorableConfig(uncapturedFields = {"closer", "serde",
-        "spillerStats", "localSpillContext", "memoryContext", "executor", "spillInProgress"})
+        "spillerStats", "localSpillContext", "memoryContext", "executor", "spillInProgress", "sharedSpillStore", "readAheadExecutor"})
 public class FileSingleStreamSpiller
         implements SingleStreamSpiller
 {
@@ -75,6 +79,10 @@ public class FileSingleStreamSpiller
     private final LocalMemoryContext memoryContext;
 
     private final ListeningExecutorService executor;
+    private final Optional<SharedSpillStore> sharedSpillStore;
+    // If present, spilled pages are read ahead of the consumer in batches of readAheadPages pages
+    private final Optional<ListeningExecutorService> readAheadExecutor;
+    private final int readAheadPages;
 
     private boolean writable = true;
     private long spilledPagesInMemorySize;
@@ -92,6 +100,58 @@ public class FileSingleStreamSpiller
             LocalMemoryContext memoryContext,
             Optional<SpillCipher> spillCipher)
     {
+        this(serde, executor, spillPath, spillerStats, spillContext, memoryContext, spillCipher, Optional.empty(), Optional.empty(), 0);
+    }
+
+    /**
+     * Spills to a local file in the spill path. The shared spill store is only used to restore snapshots of spillers,
+     * whose files were in the shared spill store.
+     */
+    public FileSingleStreamSpiller(
+            PagesSerde serde,
+            ListeningExecutorService executor,
+            Path spillPath,
+            SpillerStats spillerStats,
+            SpillContext spillContext,
+            LocalMemoryContext memoryContext,
+            Optional<SpillCipher> spillCipher,
+            Optional<SharedSpillStore> sharedSpillStore,
+            Optional<ListeningExecutorService> readAheadExecutor,
+            int readAheadPages)
+    {
+        this(serde, executor, () -> createLocalSpillFile(spillPath), spillerStats, spillContext, memoryContext, spillCipher, sharedSpillStore, readAheadExecutor, readAheadPages);
+    }
+
+    /**
+     * Spills to a file in the shared spill store
+     */
+    public FileSingleStreamSpiller(
+            PagesSerde serde,
+            ListeningExecutorService executor,
+            SharedSpillStore sharedSpillStore,
+            SpillerStats spillerStats,
+            SpillContext spillContext,
+            LocalMemoryContext memoryContext,
+            Optional<SpillCipher> spillCipher,
+            Optional<ListeningExecutorService> readAheadExecutor,
+            int readAheadPages)
+    {
+        this(serde, executor, sharedSpillStore::createSpillFile, spillerStats, spillContext, memoryContext, spillCipher, Optional.of(sharedSpillStore), readAheadExecutor, readAheadPages);
+    }
+
+    private FileSingleStreamSpiller(
+            PagesSerde serde,
+            ListeningExecutorService executor,
+            Supplier<FileHolder> targetFileSupplier,
+            SpillerStats spillerStats,
+            SpillContext spillContext,
+            LocalMemoryContext memoryContext,
+            Optional<SpillCipher> spillCipher,
+            Optional<SharedSpillStore> sharedSpillStore,
+            Optional<ListeningExecutorService> readAheadExecutor,
+            int readAheadPages)
+    {
+        checkArgument(!requireNonNull(readAheadExecutor, "readAheadExecutor is null").isPresent() || readAheadPages > 0, "readAheadPages must be positive");
         this.serde = requireNonNull(serde, "serde is null");
         this.executor = requireNonNull(executor, "executor is null");
         this.spillerStats = requireNonNull(spillerStats, "spillerStats is null");
@@ -111,8 +171,16 @@ public class FileSingleStreamSpiller
         // before/after the spiller thread allocates that memory -- -- whether before or after depends on whether writePages() is in the
         // middle of execution when close() is called (note that this applies to both readPages() and writePages() methods).
         this.memoryContext.setBytes(BUFFER_SIZE);
+        this.sharedSpillStore = requireNonNull(sharedSpillStore, "sharedSpillStore is null");
+        this.readAheadExecutor = readAheadExecutor;
+        this.readAheadPages = readAheadPages;
+        this.targetFile = closer.register(targetFileSupplier.get());
+    }
+
+    private static FileHolder createLocalSpillFile(Path spillPath)
+    {
         try {
-            this.targetFile = closer.register(new FileHolder(Files.createTempFile(spillPath, SPILL_FILE_PREFIX, SPILL_FILE_SUFFIX)));
+            return new FileHolder(Files.createTempFile(spillPath, SPILL_FILE_PREFIX, SPILL_FILE_SUFFIX));
         }
         catch (IOException e) {
             throw new PrestoException(GENERIC_INTERNAL_ERROR, "Failed to create spill file", e);
@@ -154,7 +222,8 @@ public class FileSingleStreamSpiller
             while (pageIterator.hasNext()) {
                 Page page = pageIterator.next();
                 spilledPagesInMemorySize += page.getSizeInBytes();
-                SerializedPage serializedPage = serde.serialize(page);
+                // The serialized page is written out right away, so it can stay in the serde's buffers
+                SerializedPage serializedPage = serde.serializeTransient(page);
                 long pageSize = serializedPage.getSizeInBytes();
                 localSpillContext.updateBytes(pageSize);
                 spillerStats.addToTotalSpilledBytes(pageSize);
@@ -174,8 +243,12 @@ public class FileSingleStreamSpiller
 
         try {
             InputStream input = closer.register(targetFile.newInputStream());
-            Iterator<Page> pages = PagesSerdeUtil.readPages(serde, new InputStreamSliceInput(input, BUFFER_SIZE));
-            return closeWhenExhausted(pages, input);
+            Iterator<Page> pages = closeWhenExhausted(PagesSerdeUtil.readPages(serde, new InputStreamSliceInput(input, BUFFER_SIZE)), input);
+            if (readAheadExecutor.isPresent()) {
+                // Buffered pages are accounted on top of the buffer of the file
+                return closer.register(new ReadAheadPageIterator(pages, readAheadExecutor.get(), readAheadPages, bytes -> memoryContext.setBytes(BUFFER_SIZE + bytes)));
+            }
+            return pages;
         }
         catch (IOException e) {
             throw new PrestoException(GENERIC_INTERNAL_ERROR, "Failed to read spilled pages", e);
@@ -242,8 +315,15 @@ public class FileSingleStreamSpiller
         FileSingleStreamSpillerState state = new FileSingleStreamSpillerState();
         state.writable = this.writable;
         state.spilledPagesInMemorySize = spilledPagesInMemorySize;
-        state.pageSizeList = this.pageSizeList;
+        state.pageSizeList = new ArrayList<>(this.pageSizeList);
         state.targetFile = this.targetFile.getFilePath().toAbsolutePath().toString();
+        try {
+            // the spill file is copied to the snapshot store after the state is captured, all its content must be readable
+            this.targetFile.sync();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
         return state;
     }
 
@@ -254,12 +334,23 @@ public class FileSingleStreamSpiller
             FileSingleStreamSpillerState myState = (FileSingleStreamSpillerState) state;
             this.writable = myState.writable;
             this.spilledPagesInMemorySize = myState.spilledPagesInMemorySize;
-            this.pageSizeList = myState.pageSizeList;
+            this.pageSizeList = new ArrayList<>(myState.pageSizeList);
             this.targetFile.close();
             Path path = Paths.get(myState.targetFile);
-            // Actual file content is restored after this returns, in SingleInputSnapshotState.loadSpilledFiles
-            Files.deleteIfExists(path);
-            this.targetFile = closer.register(new FileHolder(Files.createFile(path)));
+            // Actual file content is restored after this returns, in SingleInputSnapshotState.loadSpilledFiles.
+            // Later spills are appended to the restored content.
+            Optional<SharedSpillStore> store = sharedSpillStore.filter(spillStore -> spillStore.contains(path));
+            if (store.isPresent()) {
+                HetuFileSystemClient fileSystem = store.get().getFileSystem();
+                fileSystem.createDirectories(path.getParent());
+                fileSystem.deleteIfExists(path);
+                fileSystem.newOutputStream(path, CREATE_NEW).close();
+                this.targetFile = closer.register(new FileHolder(path, Optional.of(fileSystem)));
+            }
+            else {
+                Files.deleteIfExists(path);
+                this.targetFile = closer.register(new FileHolder(Files.createFile(path)));
+            }
             for (Long pageSize : pageSizeList) {
                 // restore localSpillContext and spillerStats
                 this.localSpillContext.updateBytes(pageSize);
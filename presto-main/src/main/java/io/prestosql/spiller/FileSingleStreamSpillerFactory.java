@@ -67,10 +67,23 @@ public class FileSingleStreamSpillerFactory
     private final SpillerStats spillerStats;
     private final double maxUsedSpaceThreshold;
     private final boolean spillEncryptionEnabled;
+    private final Optional<SharedSpillStore> sharedSpillStore;
+    private final Optional<ListeningExecutorService> readAheadExecutor;
+    private final int readAheadPages;
     private int roundRobinIndex;
 
-    @Inject
     public FileSingleStreamSpillerFactory(Metadata metadata, SpillerStats spillerStats, FeaturesConfig featuresConfig, NodeSpillConfig nodeSpillConfig)
+    {
+        this(metadata, spillerStats, featuresConfig, nodeSpillConfig, Optional.empty());
+    }
+
+    @Inject
+    public FileSingleStreamSpillerFactory(Metadata metadata, SpillerStats spillerStats, FeaturesConfig featuresConfig, NodeSpillConfig nodeSpillConfig, SharedSpillStore sharedSpillStore)
+    {
+        this(metadata, spillerStats, featuresConfig, nodeSpillConfig, Optional.of(requireNonNull(sharedSpillStore, "sharedSpillStore is null")).filter(SharedSpillStore::isEnabled));
+    }
+
+    private FileSingleStreamSpillerFactory(Metadata metadata, SpillerStats spillerStats, FeaturesConfig featuresConfig, NodeSpillConfig nodeSpillConfig, Optional<SharedSpillStore> sharedSpillStore)
     {
         this(
                 listeningDecorator(newFixedThreadPool(
@@ -81,7 +94,19 @@ public class FileSingleStreamSpillerFactory
                 requireNonNull(featuresConfig, "featuresConfig is null").getSpillerSpillPaths(),
                 requireNonNull(featuresConfig, "featuresConfig is null").getSpillMaxUsedSpaceThreshold(),
                 requireNonNull(nodeSpillConfig, "nodeSpillConfig is null").isSpillCompressionEnabled(),
-                requireNonNull(nodeSpillConfig, "nodeSpillConfig is null").isSpillEncryptionEnabled());
+                requireNonNull(nodeSpillConfig, "nodeSpillConfig is null").isSpillEncryptionEnabled(),
+                sharedSpillStore,
+                createReadAheadExecutor(featuresConfig.getSpillerThreads(), nodeSpillConfig.getSpillReadAheadPages()),
+                nodeSpillConfig.getSpillReadAheadPages());
+    }
+
+    private static Optional<ListeningExecutorService> createReadAheadExecutor(int threads, int readAheadPages)
+    {
+        if (readAheadPages == 0) {
+            return Optional.empty();
+        }
+        // Separate from the spill executor, so that reads are not queued behind writes of other spillers
+        return Optional.of(listeningDecorator(newFixedThreadPool(threads, daemonThreadsNamed("binary-spiller-read-ahead-%s"))));
     }
 
     @VisibleForTesting
@@ -93,6 +118,42 @@ public class FileSingleStreamSpillerFactory
             double maxUsedSpaceThreshold,
             boolean spillCompressionEnabled,
             boolean spillEncryptionEnabled)
+    {
+        this(executor, blockEncodingSerde, spillerStats, spillPaths, maxUsedSpaceThreshold, spillCompressionEnabled, spillEncryptionEnabled, Optional.empty());
+    }
+
+    /**
+     * @param sharedSpillStore if present, spill files are written to the shared spill store when all spill paths are full
+     */
+    @VisibleForTesting
+    public FileSingleStreamSpillerFactory(
+            ListeningExecutorService executor,
+            BlockEncodingSerde blockEncodingSerde,
+            SpillerStats spillerStats,
+            List<Path> spillPaths,
+            double maxUsedSpaceThreshold,
+            boolean spillCompressionEnabled,
+            boolean spillEncryptionEnabled,
+            Optional<SharedSpillStore> sharedSpillStore)
+    {
+        this(executor, blockEncodingSerde, spillerStats, spillPaths, maxUsedSpaceThreshold, spillCompressionEnabled, spillEncryptionEnabled, sharedSpillStore, Optional.empty(), 0);
+    }
+
+    /**
+     * @param readAheadExecutor if present, spilled pages are read ahead of the consumer on this executor, in batches of {@code readAheadPages} pages
+     */
+    @VisibleForTesting
+    public FileSingleStreamSpillerFactory(
+            ListeningExecutorService executor,
+            BlockEncodingSerde blockEncodingSerde,
+            SpillerStats spillerStats,
+            List<Path> spillPaths,
+            double maxUsedSpaceThreshold,
+            boolean spillCompressionEnabled,
+            boolean spillEncryptionEnabled,
+            Optional<SharedSpillStore> sharedSpillStore,
+            Optional<ListeningExecutorService> readAheadExecutor,
+            int readAheadPages)
     {
         this.serdeFactory = new PagesSerdeFactory(blockEncodingSerde, spillCompressionEnabled);
         this.executor = requireNonNull(executor, "executor is null");
@@ -114,6 +175,9 @@ public class FileSingleStreamSpillerFactory
         });
         this.maxUsedSpaceThreshold = maxUsedSpaceThreshold;
         this.spillEncryptionEnabled = spillEncryptionEnabled;
+        this.sharedSpillStore = requireNonNull(sharedSpillStore, "sharedSpillStore is null");
+        this.readAheadExecutor = requireNonNull(readAheadExecutor, "readAheadExecutor is null");
+        this.readAheadPages = readAheadPages;
         this.roundRobinIndex = 0;
     }
 
@@ -127,6 +191,7 @@ public class FileSingleStreamSpillerFactory
     public void destroy()
     {
         executor.shutdownNow();
+        readAheadExecutor.ifPresent(ListeningExecutorService::shutdownNow);
     }
 
     private static void cleanupOldSpillFiles(Path path)
@@ -155,10 +220,15 @@ public class FileSingleStreamSpillerFactory
             spillCipher = Optional.of(new AesSpillCipher());
         }
         PagesSerde serde = serdeFactory.createPagesSerdeForSpill(spillCipher);
-        return new FileSingleStreamSpiller(serde, executor, getNextSpillPath(), spillerStats, spillContext, memoryContext, spillCipher);
+        Optional<Path> spillPath = getNextSpillPath();
+        if (spillPath.isPresent()) {
+            return new FileSingleStreamSpiller(serde, executor, spillPath.get(), spillerStats, spillContext, memoryContext, spillCipher, sharedSpillStore, readAheadExecutor, readAheadPages);
+        }
+        // Local spill paths are full, so overflow to the shared spill store
+        return new FileSingleStreamSpiller(serde, executor, sharedSpillStore.get(), spillerStats, spillContext, memoryContext, spillCipher, readAheadExecutor, readAheadPages);
     }
 
-    private synchronized Path getNextSpillPath()
+    private synchronized Optional<Path> getNextSpillPath()
     {
         int spillPathsCount = spillPaths.size();
         for (int i = 0; i < spillPathsCount; ++i) {
@@ -166,9 +236,12 @@ public class FileSingleStreamSpillerFactory
             Path path = spillPaths.get(pathIndex);
             if (hasEnoughDiskSpace(path)) {
                 roundRobinIndex = (roundRobinIndex + i + 1) % spillPathsCount;
-                return path;
+                return Optional.of(path);
             }
         }
+        if (sharedSpillStore.isPresent()) {
+            return Optional.empty();
+        }
         if (spillPaths.isEmpty()) {
             throw new PrestoException(OUT_OF_SPILL_SPACE, "No spill paths configured");
         }
@@ -32,6 +32,7 @@ import javax.annotation.concurrent.ThreadSafe;
 
 import java.io.IOException;
 import java.io.Serializable;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
@@ -45,12 +46,13 @@ import java.util.function.Predicate;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.base.Verify.verify;
+import static com.google.common.collect.ImmutableList.toImmutableList;
 import static io.airlift.concurrent.MoreFutures.getFutureValue;
 import static java.util.Objects.requireNonNull;
 
 @ThreadSafe
 @RestorableConfig(uncapturedFields = {"types", "partitionFunction", "closer",
-        "spillerFactory", "spillContext", "memoryContext", "pageBuilders"})
+        "spillerFactory", "spillContext", "memoryContext"})
 public class GenericPartitioningSpiller
         implements PartitioningSpiller
 {
@@ -110,6 +112,21 @@ public class GenericPartitioningSpiller
         verify(spilledPartitions.isEmpty(), "Some partitions were spilled but not read: %s", spilledPartitions);
     }
 
+    @Override
+    public synchronized long getSpilledPagesInMemorySize(int partition)
+    {
+        return spillers.get(partition).map(SingleStreamSpiller::getSpilledPagesInMemorySize).orElse(0L) + pageBuilders.get(partition).getSizeInBytes();
+    }
+
+    @Override
+    public synchronized List<Path> getSpilledFilePaths()
+    {
+        return spillers.stream()
+                .filter(Optional::isPresent)
+                .map(spiller -> spiller.get().getFile())
+                .collect(toImmutableList());
+    }
+
     @Override
     public synchronized PartitioningSpillResult partitionAndSpill(Page page, IntPredicate spillPartitionMask)
     {
@@ -203,11 +220,16 @@ public class GenericPartitioningSpiller
     }
 
     @Override
-    public Object capture(BlockEncodingSerdeProvider serdeProvider)
+    public synchronized Object capture(BlockEncodingSerdeProvider serdeProvider)
     {
         GenericPartitioningSpillerState myState = new GenericPartitioningSpillerState();
         myState.spilledPartitions = spilledPartitions;
         myState.readingStarted = readingStarted;
+        // positions that are not flushed yet are captured with the builders, so capturing doesn't wait for disk writes
+        myState.pageBuilders = new ArrayList<>(pageBuilders.size());
+        for (PageBuilder pageBuilder : pageBuilders) {
+            myState.pageBuilders.add(pageBuilder.capture(serdeProvider));
+        }
         myState.spillers = new ArrayList<>(Collections.nCopies(spillers.size(), null));
         for (int i = 0; i < spillers.size(); i++) {
             if (spillers.get(i).isPresent()) {
@@ -218,13 +240,16 @@ public class GenericPartitioningSpiller
     }
 
     @Override
-    public void restore(Object state, BlockEncodingSerdeProvider serdeProvider)
+    public synchronized void restore(Object state, BlockEncodingSerdeProvider serdeProvider)
     {
         GenericPartitioningSpillerState myState = (GenericPartitioningSpillerState) state;
         this.readingStarted = myState.readingStarted;
         for (int partition : myState.spilledPartitions) {
             this.spilledPartitions.add(partition);
         }
+        for (int i = 0; i < pageBuilders.size(); i++) {
+            pageBuilders.get(i).restore(myState.pageBuilders.get(i), serdeProvider);
+        }
         for (int i = 0; i < spillers.size(); i++) {
             if (myState.spillers.get(i) != null) {
                 SingleStreamSpiller spiller = spillerFactory.create(types, spillContext, memoryContext.newLocalMemoryContext(GenericPartitioningSpiller.class.getSimpleName()));
@@ -239,6 +264,7 @@ public class GenericPartitioningSpiller
     {
         Set<Integer> spilledPartitions;
         boolean readingStarted;
+        List<Object> pageBuilders;
         List<Object> spillers;
     }
 }
@@ -14,8 +14,10 @@
 package io.prestosql.spiller;
 
 import io.airlift.configuration.Config;
+import io.airlift.configuration.ConfigDescription;
 import io.airlift.units.DataSize;
 
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
 
 public class NodeSpillConfig
@@ -26,6 +28,11 @@ public class NodeSpillConfig
     private boolean spillCompressionEnabled;
     private boolean spillEncryptionEnabled;
 
+    private String spillSharedProfile;
+    private String spillSharedPath = "/tmp/hetu/spill";
+
+    private int spillReadAheadPages;
+
     @NotNull
     public DataSize getMaxSpillPerNode()
     {
@@ -75,4 +82,45 @@ public class NodeSpillConfig
         this.spillEncryptionEnabled = spillEncryptionEnabled;
         return this;
     }
+
+    public String getSpillSharedProfile()
+    {
+        return spillSharedProfile;
+    }
+
+    @Config("experimental.spill-shared-profile")
+    @ConfigDescription("File system profile of the shared spill store, used when local spill paths are full")
+    public NodeSpillConfig setSpillSharedProfile(String spillSharedProfile)
+    {
+        this.spillSharedProfile = spillSharedProfile;
+        return this;
+    }
+
+    @NotNull
+    public String getSpillSharedPath()
+    {
+        return spillSharedPath;
+    }
+
+    @Config("experimental.spill-shared-path")
+    @ConfigDescription("Directory of spill files in the shared spill store")
+    public NodeSpillConfig setSpillSharedPath(String spillSharedPath)
+    {
+        this.spillSharedPath = spillSharedPath;
+        return this;
+    }
+
+    @Min(0)
+    public int getSpillReadAheadPages()
+    {
+        return spillReadAheadPages;
+    }
+
+    @Config("experimental.spill-read-ahead-pages")
+    @ConfigDescription("Number of pages of each spill file that are read ahead in the background when spilled data is read back, 0 to disable")
+    public NodeSpillConfig setSpillReadAheadPages(int spillReadAheadPages)
+    {
+        this.spillReadAheadPages = spillReadAheadPages;
+        return this;
+    }
 }
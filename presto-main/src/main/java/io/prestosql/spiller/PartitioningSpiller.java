@@ -13,13 +13,16 @@
  */
 package io.prestosql.spiller;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.util.concurrent.ListenableFuture;
 import io.prestosql.spi.Page;
 import io.prestosql.spi.snapshot.Restorable;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.Iterator;
+import java.util.List;
 import java.util.function.IntPredicate;
 
 import static java.util.Objects.requireNonNull;
@@ -48,6 +51,19 @@ public interface PartitioningSpiller
 
     void verifyAllPartitionsRead();
 
+    /**
+     * Returns estimated size of pages that would be returned by {@link #getSpilledPages(int)} for the given partition.
+     */
+    long getSpilledPagesInMemorySize(int partition);
+
+    /**
+     * Get paths of the files that hold spilled pages of all partitions
+     */
+    default List<Path> getSpilledFilePaths()
+    {
+        return ImmutableList.of();
+    }
+
     /**
      * Closes and removes all underlying resources used during spilling.
      */
@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.prestosql.spiller;
+
+import com.google.common.collect.AbstractIterator;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import io.prestosql.spi.Page;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.LongConsumer;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static io.airlift.concurrent.MoreFutures.getFutureValue;
+import static java.util.Collections.emptyIterator;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Reads pages of a spill file ahead of the consumer.
+ * <p>
+ * Pages are read in batches of up to {@code readAheadPages} pages on the read-ahead executor. When the consumer
+ * takes a batch, reading of the next batch starts right away, so the file is read while the pages of the current batch
+ * are processed. When several spill files are merged, each of them is read ahead at the same time.
+ * <p>
+ * The size of the batch that is processed, and the same size again for the batch that is being read,
+ * is reported to {@code bufferedBytesListener}. It's only called from the consumer thread.
+ */
+@NotThreadSafe
+class ReadAheadPageIterator
+        extends AbstractIterator<Page>
+        implements Closeable
+{
+    private final Iterator<Page> source;
+    private final ListeningExecutorService executor;
+    private final int readAheadPages;
+    private final LongConsumer bufferedBytesListener;
+
+    // Null when all pages of the source have been read
+    private ListenableFuture<List<Page>> nextBatch;
+    private Iterator<Page> currentBatch = emptyIterator();
+    private boolean closed;
+
+    ReadAheadPageIterator(Iterator<Page> source, ListeningExecutorService executor, int readAheadPages, LongConsumer bufferedBytesListener)
+    {
+        checkArgument(readAheadPages > 0, "readAheadPages must be positive");
+        this.source = requireNonNull(source, "source is null");
+        this.executor = requireNonNull(executor, "executor is null");
+        this.readAheadPages = readAheadPages;
+        this.bufferedBytesListener = requireNonNull(bufferedBytesListener, "bufferedBytesListener is null");
+        this.nextBatch = readNextBatch();
+    }
+
+    @Override
+    protected Page computeNext()
+    {
+        while (!currentBatch.hasNext()) {
+            if (closed) {
+                return endOfData();
+            }
+            if (nextBatch == null) {
+                bufferedBytesListener.accept(0);
+                return endOfData();
+            }
+
+            // Same as a synchronous read, the consumer waits if the batch is not read yet
+            List<Page> batch = getFutureValue(nextBatch);
+            // A short batch means the source is exhausted
+            nextBatch = batch.size() < readAheadPages ? null : readNextBatch();
+
+            long batchBytes = batch.stream().mapToLong(Page::getRetainedSizeInBytes).sum();
+            bufferedBytesListener.accept(nextBatch == null ? batchBytes : 2 * batchBytes);
+            currentBatch = batch.iterator();
+        }
+        return currentBatch.next();
+    }
+
+    private ListenableFuture<List<Page>> readNextBatch()
+    {
+        // Batches are read one after another, so the source is never accessed concurrently
+        return executor.submit(() -> {
+            List<Page> pages = new ArrayList<>(readAheadPages);
+            while (pages.size() < readAheadPages && source.hasNext()) {
+                pages.add(source.next());
+            }
+            return pages;
+        });
+    }
+
+    @Override
+    public void close()
+    {
+        closed = true;
+        currentBatch = emptyIterator();
+        if (nextBatch != null) {
+            // A read that already started fails when its file is closed, and its result is dropped
+            nextBatch.cancel(false);
+            nextBatch = null;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.prestosql.spiller;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.inject.Inject;
+import io.airlift.log.Logger;
+import io.airlift.node.NodeInfo;
+import io.prestosql.filesystem.FileSystemClientManager;
+import io.prestosql.spi.PrestoException;
+import io.prestosql.spi.filesystem.HetuFileSystemClient;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static com.google.common.base.Preconditions.checkState;
+import static io.prestosql.spi.StandardErrorCode.GENERIC_INTERNAL_ERROR;
+import static io.prestosql.spiller.FileSingleStreamSpillerFactory.SPILL_FILE_PREFIX;
+import static io.prestosql.spiller.FileSingleStreamSpillerFactory.SPILL_FILE_SUFFIX;
+import static java.nio.file.StandardOpenOption.CREATE_NEW;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Shared spill store, e.g. HDFS or a shared volume, accessed through a {@link HetuFileSystemClient}.
+ * Spillers overflow to this store when the local spill paths are full.
+ * <p>
+ * Each node writes its spill files to its own directory under the configured path,
+ * so leftover files of a node can be cleaned up without affecting other nodes.
+ */
+@ThreadSafe
+public class SharedSpillStore
+{
+    private static final Logger log = Logger.get(SharedSpillStore.class);
+
+    private final Optional<String> profile;
+    private final Path root;
+    private final Path nodeSpillPath;
+    private final FileSystemClientManager fileSystemClientManager;
+
+    @GuardedBy("this")
+    private HetuFileSystemClient fileSystem;
+    @GuardedBy("this")
+    private boolean initialized;
+
+    @Inject
+    public SharedSpillStore(NodeSpillConfig config, NodeInfo nodeInfo, FileSystemClientManager fileSystemClientManager)
+    {
+        requireNonNull(config, "config is null");
+        this.profile = Optional.ofNullable(config.getSpillSharedProfile());
+        this.root = Paths.get(config.getSpillSharedPath());
+        this.nodeSpillPath = root.resolve(requireNonNull(nodeInfo, "nodeInfo is null").getNodeId());
+        this.fileSystemClientManager = requireNonNull(fileSystemClientManager, "fileSystemClientManager is null");
+    }
+
+    @VisibleForTesting
+    public SharedSpillStore(HetuFileSystemClient fileSystem, Path root, String nodeId)
+    {
+        this.profile = Optional.of("testing");
+        this.root = requireNonNull(root, "root is null");
+        this.nodeSpillPath = root.resolve(requireNonNull(nodeId, "nodeId is null"));
+        this.fileSystemClientManager = null;
+        this.fileSystem = requireNonNull(fileSystem, "fileSystem is null");
+    }
+
+    public boolean isEnabled()
+    {
+        return profile.isPresent();
+    }
+
+    /**
+     * Whether the file is in the shared spill store, of this or another node
+     */
+    public boolean contains(Path path)
+    {
+        return isEnabled() && path.toAbsolutePath().startsWith(root);
+    }
+
+    /**
+     * Creates an empty spill file of this node
+     */
+    public FileHolder createSpillFile()
+    {
+        HetuFileSystemClient client = getFileSystem();
+        Path path = nodeSpillPath.resolve(SPILL_FILE_PREFIX + UUID.randomUUID() + SPILL_FILE_SUFFIX);
+        try {
+            client.newOutputStream(path, CREATE_NEW).close();
+        }
+        catch (IOException e) {
+            throw new PrestoException(GENERIC_INTERNAL_ERROR, "Failed to create spill file in shared spill store", e);
+        }
+        return new FileHolder(path, Optional.of(client));
+    }
+
+    public synchronized HetuFileSystemClient getFileSystem()
+    {
+        checkState(isEnabled(), "Shared spill store is not configured");
+        if (!initialized) {
+            try {
+                if (fileSystem == null) {
+                    // File system profiles are loaded after the server is created, so the client is created on first use
+                    fileSystem = fileSystemClientManager.getFileSystemClient(profile.get(), root);
+                }
+                fileSystem.createDirectories(nodeSpillPath);
+                cleanupOldSpillFiles(fileSystem);
+                initialized = true;
+            }
+            catch (IOException | RuntimeException e) {
+                throw new PrestoException(GENERIC_INTERNAL_ERROR, "Failed to access shared spill store " + root, e);
+            }
+        }
+        return fileSystem;
+    }
+
+    private void cleanupOldSpillFiles(HetuFileSystemClient client)
+            throws IOException
+    {
+        try (Stream<Path> files = client.list(nodeSpillPath)) {
+            files.filter(file -> file.getFileName().toString().startsWith(SPILL_FILE_PREFIX) && file.getFileName().toString().endsWith(SPILL_FILE_SUFFIX))
+                    .forEach(file -> {
+                        try {
+                            log.info("Deleting old spill file: " + file);
+                            client.delete(file);
+                        }
+                        catch (Exception e) {
+                            log.warn("Could not cleanup old spill file: " + file);
+                        }
+                    });
+        }
+    }
+}
@@ -22,6 +22,7 @@ import io.airlift.configuration.DefunctConfig;
 import io.airlift.units.DataSize;
 import io.airlift.units.Duration;
 import io.airlift.units.MaxDataSize;
+import io.hetu.core.transport.execution.buffer.PageCompressionCodec;
 import io.prestosql.operator.aggregation.arrayagg.ArrayAggGroupImplementation;
 import io.prestosql.operator.aggregation.histogram.HistogramGroupImplementation;
 import io.prestosql.operator.aggregation.multimapagg.MultimapAggGroupImplementation;
@@ -94,6 +95,9 @@ public class FeaturesConfig
     private boolean pushLimitThroughSemiJoin = true;
     private boolean pushLimitThroughOuterJoin = true;
     private boolean exchangeCompressionEnabled;
+    private PageCompressionCodec exchangeCompressionCodec = PageCompressionCodec.ZSTD;
+    private DataSize exchangeCompressionNetworkBandwidth = new DataSize(125, MEGABYTE);
+    private boolean exchangeStreamingEnabled;
     private boolean legacyMapSubscript;
     private boolean optimizeMixedDistinctAggregations;
     private boolean unwrapCasts = true;
@@ -148,6 +152,7 @@ public class FeaturesConfig
     private int dynamicFilteringMaxSize = 1000000;
     private int dynamicFilteringMaxPerDriverRowCount = 10000;
     private DynamicFilterDataType dynamicFilteringDataType = BLOOM_FILTER;
+    private DynamicFilterTransport dynamicFilteringTransport = DynamicFilterTransport.STATE_STORE;
     private DataSize dynamicFilteringMaxPerDriverSize = new DataSize(1, MEGABYTE);
     private double dynamicFilteringBloomFilterFpp = 0.1D;
     // enable or disable execution plan cache functionality via Session properties
@@ -210,6 +215,12 @@ public class FeaturesConfig
         HASHSET,
     }
 
+    public enum DynamicFilterTransport
+    {
+        STATE_STORE,
+        REMOTE_TASK,
+    }
+
     public double getCpuCostWeight()
     {
         return cpuCostWeight;
@@ -914,6 +925,19 @@ public class FeaturesConfig
         return this;
     }
 
+    public DynamicFilterTransport getDynamicFilteringTransport()
+    {
+        return dynamicFilteringTransport;
+    }
+
+    @Config("dynamic-filtering-transport")
+    @ConfigDescription("Collect global dynamic filters through the state store or with the task status and task update requests")
+    public FeaturesConfig setDynamicFilteringTransport(DynamicFilterTransport dynamicFilteringTransport)
+    {
+        this.dynamicFilteringTransport = dynamicFilteringTransport;
+        return this;
+    }
+
     public Duration getDynamicFilteringWaitTime()
     {
         return dynamicFilteringWaitTime;
@@ -1026,6 +1050,47 @@ public class FeaturesConfig
         return this;
     }
 
+    @NotNull
+    public PageCompressionCodec getExchangeCompressionCodec()
+    {
+        return exchangeCompressionCodec;
+    }
+
+    @Config("exchange.compression-codec")
+    @ConfigDescription("Codec used to compress exchanged pages: ZSTD, LZ4 or ADAPTIVE")
+    public FeaturesConfig setExchangeCompressionCodec(PageCompressionCodec exchangeCompressionCodec)
+    {
+        this.exchangeCompressionCodec = exchangeCompressionCodec;
+        return this;
+    }
+
+    @NotNull
+    public DataSize getExchangeCompressionNetworkBandwidth()
+    {
+        return exchangeCompressionNetworkBandwidth;
+    }
+
+    @Config("exchange.compression-network-bandwidth")
+    @ConfigDescription("Network bandwidth per second, used by the ADAPTIVE codec to weigh compression time against transfer time")
+    public FeaturesConfig setExchangeCompressionNetworkBandwidth(DataSize exchangeCompressionNetworkBandwidth)
+    {
+        this.exchangeCompressionNetworkBandwidth = exchangeCompressionNetworkBandwidth;
+        return this;
+    }
+
+    public boolean isExchangeStreamingEnabled()
+    {
+        return exchangeStreamingEnabled;
+    }
+
+    @Config("exchange.streaming-enabled")
+    @ConfigDescription("Stream pages of remote tasks as they become available, up to the maximum response size, over a single response")
+    public FeaturesConfig setExchangeStreamingEnabled(boolean exchangeStreamingEnabled)
+    {
+        this.exchangeStreamingEnabled = exchangeStreamingEnabled;
+        return this;
+    }
+
     public boolean isEnableIntermediateAggregations()
     {
         return enableIntermediateAggregations;
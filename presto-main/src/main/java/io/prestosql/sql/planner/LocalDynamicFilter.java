@@ -22,8 +22,9 @@ import com.google.common.util.concurrent.SettableFuture;
 import io.airlift.log.Logger;
 import io.airlift.slice.Slice;
 import io.prestosql.Session;
-import io.prestosql.execution.TaskId;
 import io.prestosql.operator.DynamicFilterSourceOperator;
+import io.prestosql.operator.DynamicFilterSourceOperator.ValueRange;
+import io.prestosql.operator.TaskContext;
 import io.prestosql.spi.dynamicfilter.BloomFilterDynamicFilter;
 import io.prestosql.spi.dynamicfilter.DynamicFilter;
 import io.prestosql.spi.plan.FilterNode;
@@ -33,14 +34,17 @@ import io.prestosql.spi.plan.Symbol;
 import io.prestosql.spi.predicate.TupleDomain;
 import io.prestosql.spi.relation.RowExpression;
 import io.prestosql.spi.relation.VariableReferenceExpression;
-import io.prestosql.spi.statestore.StateSet;
+import io.prestosql.spi.statestore.StateMap;
 import io.prestosql.spi.statestore.StateStore;
 import io.prestosql.spi.util.BloomFilter;
 import io.prestosql.sql.DynamicFilters;
 import io.prestosql.sql.analyzer.FeaturesConfig;
+import io.prestosql.sql.analyzer.FeaturesConfig.DynamicFilterTransport;
 import io.prestosql.sql.planner.plan.SemiJoinNode;
 import io.prestosql.statestore.StateStoreProvider;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -52,14 +56,14 @@ import java.util.function.Consumer;
 import static com.google.common.base.Verify.verify;
 import static io.prestosql.SystemSessionProperties.getDynamicFilteringBloomFilterFpp;
 import static io.prestosql.SystemSessionProperties.getDynamicFilteringDataType;
+import static io.prestosql.SystemSessionProperties.getDynamicFilteringTransport;
 import static io.prestosql.spi.dynamicfilter.BloomFilterDynamicFilter.convertBloomFilterToByteArray;
 import static io.prestosql.spi.dynamicfilter.DynamicFilter.DataType.BLOOM_FILTER;
-import static io.prestosql.spi.statestore.StateCollection.Type.SET;
+import static io.prestosql.spi.statestore.StateCollection.Type.MAP;
 import static io.prestosql.sql.DynamicFilters.Descriptor;
 import static io.prestosql.sql.DynamicFilters.extractDynamicFilters;
-import static io.prestosql.utils.DynamicFilterUtils.PARTIALPREFIX;
-import static io.prestosql.utils.DynamicFilterUtils.TASKSPREFIX;
-import static io.prestosql.utils.DynamicFilterUtils.createKey;
+import static io.prestosql.utils.DynamicFilterUtils.PARTIAL_DYNAMIC_FILTERS;
+import static io.prestosql.utils.DynamicFilterUtils.createPartialKey;
 import static io.prestosql.utils.DynamicFilterUtils.findFilterNodeInStage;
 import static io.prestosql.utils.DynamicFilterUtils.getDynamicFilterDataType;
 import static java.util.Objects.requireNonNull;
@@ -82,23 +86,29 @@ public class LocalDynamicFilter
     private int partitionsLeft;
     // The resulting predicate for local dynamic filtering.
     private Map<String, Set> result = new HashMap<>();
+    // Min/max of the build side values, published instead of the values when they are too large
+    private final Map<String, ValueRange> ranges = new HashMap<>();
+    // Number of range results reported by the operators for each dynamic filter
+    private final Map<String, Integer> rangePartitions = new HashMap<>();
+    private final int partitionCount;
 
     private FeaturesConfig.DynamicFilterDataType dynamicFilterDataType;
     private final double bloomFilterFpp;
     private final StateStoreProvider stateStoreProvider;
-    private final TaskId taskId;
+    private final TaskContext taskContext;
+    private final DynamicFilterTransport transport;
     private Map<String, DynamicFilterSourceOperator.Channel> channels = new HashMap<>();
 
     public LocalDynamicFilter(Multimap<String, Symbol> probeSymbols, Map<String, Integer> buildChannels, int partitionCount, DynamicFilter.Type type, Session session,
-            TaskId taskId, StateStoreProvider stateStoreProvider)
+            TaskContext taskContext, StateStoreProvider stateStoreProvider)
     {
         this(probeSymbols, buildChannels, partitionCount, type, getDynamicFilteringDataType(session),
-                getDynamicFilteringBloomFilterFpp(session), taskId, stateStoreProvider);
+                getDynamicFilteringBloomFilterFpp(session), getDynamicFilteringTransport(session), taskContext, stateStoreProvider);
     }
 
     public LocalDynamicFilter(Multimap<String, Symbol> probeSymbols, Map<String, Integer> buildChannels, int partitionCount,
                               DynamicFilter.Type filterType, FeaturesConfig.DynamicFilterDataType dataType,
-                              double bloomFilterFpp, TaskId taskId, StateStoreProvider stateStoreProvider)
+                              double bloomFilterFpp, DynamicFilterTransport transport, TaskContext taskContext, StateStoreProvider stateStoreProvider)
     {
         this.probeSymbols = requireNonNull(probeSymbols, "probeSymbols is null");
         this.buildChannels = requireNonNull(buildChannels, "buildChannels is null");
@@ -108,15 +118,17 @@ public class LocalDynamicFilter
         this.dynamicFilterResultFuture = SettableFuture.create();
 
         this.partitionsLeft = partitionCount;
+        this.partitionCount = partitionCount;
 
         this.type = filterType;
         this.dynamicFilterDataType = requireNonNull(dataType, "dynamic filter data type is null");
         this.bloomFilterFpp = bloomFilterFpp;
-        this.taskId = requireNonNull(taskId, "taskId is null");
+        this.transport = requireNonNull(transport, "transport is null");
+        this.taskContext = requireNonNull(taskContext, "taskContext is null");
         this.stateStoreProvider = requireNonNull(stateStoreProvider, "stateStore is null");
     }
 
-    public static Optional<LocalDynamicFilter> create(JoinNode planNode, int partitionCount, Session session, TaskId taskId, StateStoreProvider stateStoreProvider)
+    public static Optional<LocalDynamicFilter> create(JoinNode planNode, int partitionCount, Session session, TaskContext taskContext, StateStoreProvider stateStoreProvider)
     {
         Set<String> joinDynamicFilters = planNode.getDynamicFilters().keySet();
         // Mapping from probe-side dynamic filters' IDs to their matching probe symbols.
@@ -159,10 +171,10 @@ public class LocalDynamicFilter
         if (buildChannels.isEmpty()) {
             return Optional.empty();
         }
-        return Optional.of(new LocalDynamicFilter(probeSymbols, buildChannels, partitionCount, type, session, taskId, stateStoreProvider));
+        return Optional.of(new LocalDynamicFilter(probeSymbols, buildChannels, partitionCount, type, session, taskContext, stateStoreProvider));
     }
 
-    public static Optional<LocalDynamicFilter> create(SemiJoinNode semiJoinNode, Session session, TaskId taskId, StateStoreProvider stateStoreProvider)
+    public static Optional<LocalDynamicFilter> create(SemiJoinNode semiJoinNode, Session session, TaskContext taskContext, StateStoreProvider stateStoreProvider)
     {
         if (!semiJoinNode.getDynamicFilterId().isPresent()) {
             return Optional.empty();
@@ -178,7 +190,7 @@ public class LocalDynamicFilter
         }
         Multimap<String, Symbol> probeSymbols = ImmutableMultimap.of(dynamicFilterId, semiJoinNode.getSourceJoinSymbol());
         Map<String, Integer> buildChannels = ImmutableMap.of(dynamicFilterId, semiJoinNode.getFilteringSource().getOutputSymbols().indexOf(semiJoinNode.getFilteringSourceJoinSymbol()));
-        return Optional.of(new LocalDynamicFilter(probeSymbols, buildChannels, 1, type, session, taskId, stateStoreProvider));
+        return Optional.of(new LocalDynamicFilter(probeSymbols, buildChannels, 1, type, session, taskContext, stateStoreProvider));
     }
 
     private static void mapProbeSymbols(RowExpression predicate, Set<String> joinDynamicFilters, Multimap<String, Symbol> probeSymbols)
@@ -208,6 +220,21 @@ public class LocalDynamicFilter
         }
     }
 
+    /**
+     * The min/max values from each operator are added to the ranges of the filters.
+     * Each operator should call this only once, before adding its values
+     *
+     * @param operatorRanges min/max values of each column supporting range filters
+     */
+    public synchronized void addOperatorRanges(Map<DynamicFilterSourceOperator.Channel, ValueRange> operatorRanges)
+    {
+        operatorRanges.forEach((channel, range) -> {
+            ranges.computeIfAbsent(channel.getFilterId(), ignored -> new ValueRange()).add(range);
+            rangePartitions.merge(channel.getFilterId(), 1, Integer::sum);
+            channels.putIfAbsent(channel.getFilterId(), channel);
+        });
+    }
+
     /**
      * The results from each operator is added to the filters. Each operator should call this only once
      *
@@ -247,36 +274,106 @@ public class LocalDynamicFilter
                     log.warn("Cannot add partial filter to state store with following message: " + e.getMessage());
                 }
             }
+            else {
+                try {
+                    addPartialRangeFilterToStateStore();
+                }
+                catch (RuntimeException e) {
+                    log.warn("Cannot add partial range filter to state store with following message: " + e.getMessage());
+                }
+            }
             dynamicFilterResultFuture.set(dynamicFilterResult);
         }
     }
 
     private void addPartialFilterToStateStore()
     {
+        if (transport == DynamicFilterTransport.REMOTE_TASK) {
+            addPartialFilterToTask();
+            return;
+        }
+
         StateStore stateStore = stateStoreProvider.getStateStore();
         if (stateStore == null) {
             return;
         }
 
         DynamicFilter.DataType dataType = getDynamicFilterDataType(type, dynamicFilterDataType);
+        // the coordinator merges each partial filter as soon as it is added to the map
+        Map<String, Object> partialFilters = new HashMap<>();
         for (Map.Entry<String, Set> filter : result.entrySet()) {
             DynamicFilterSourceOperator.Channel channel = channels.get(filter.getKey());
             Set filterValues = filter.getValue();
             String filterId = channel.getFilterId();
-            String key = createKey(PARTIALPREFIX, filterId, channel.getQueryId());
+            String key = createPartialKey(filterId, channel.getQueryId(), taskContext.getTaskId().toString());
 
             if (dataType == BLOOM_FILTER) {
                 byte[] finalOutput = convertBloomFilterToByteArray(createBloomFilterFromSet(channel, filterValues, bloomFilterFpp));
-                if (finalOutput != null) {
-                    ((StateSet) stateStore.getOrCreateStateCollection(key, SET)).add(finalOutput);
+                ValueRange range = ranges.get(filter.getKey());
+                if (finalOutput != null && range != null) {
+                    // [min, max, bloom filter], so the coordinator can still merge it into a range if other tasks
+                    // only published their range. min and max are null if the build side is empty
+                    partialFilters.put(key, new ArrayList<>(Arrays.asList(range.getMin(), range.getMax(), finalOutput)));
+                }
+                else if (finalOutput != null) {
+                    partialFilters.put(key, finalOutput);
                 }
             }
             else {
-                ((StateSet) stateStore.getOrCreateStateCollection(key, SET)).add(filterValues);
+                partialFilters.put(key, filterValues);
+            }
+            log.debug("creating new " + dataType + " dynamic filter for size of: " + result.size() + ", key: " + key + ", taskId: " + taskContext.getTaskId());
+        }
+        // publish the partial filters of all the channels in one batch
+        ((StateMap<String, Object>) stateStore.getOrCreateStateCollection(PARTIAL_DYNAMIC_FILTERS, MAP)).putAll(partialFilters);
+    }
+
+    /**
+     * Publish the min/max of the build side when the values were too large to be collected.
+     * Only filters whose ranges were reported by every operator are published, as a [min, max] list.
+     * Task status updates only carry bloom filters, so no range is published with the REMOTE_TASK transport
+     */
+    private void addPartialRangeFilterToStateStore()
+    {
+        if (transport == DynamicFilterTransport.REMOTE_TASK) {
+            return;
+        }
+
+        StateStore stateStore = stateStoreProvider.getStateStore();
+        if (stateStore == null) {
+            return;
+        }
+
+        Map<String, Object> partialFilters = new HashMap<>();
+        for (Map.Entry<String, ValueRange> filter : ranges.entrySet()) {
+            ValueRange range = filter.getValue();
+            if (rangePartitions.get(filter.getKey()) != partitionCount || range.isEmpty()) {
+                continue;
+            }
+            DynamicFilterSourceOperator.Channel channel = channels.get(filter.getKey());
+            String key = createPartialKey(channel.getFilterId(), channel.getQueryId(), taskContext.getTaskId().toString());
+            partialFilters.put(key, new ArrayList<>(Arrays.asList(range.getMin(), range.getMax())));
+            log.debug("creating new range dynamic filter, key: " + key + ", taskId: " + taskContext.getTaskId());
+        }
+        ((StateMap<String, Object>) stateStore.getOrCreateStateCollection(PARTIAL_DYNAMIC_FILTERS, MAP)).putAll(partialFilters);
+    }
+
+    private void addPartialFilterToTask()
+    {
+        // the partial filters are sent to the coordinator with the task status, which only carries bloom filters.
+        // Local filters are not sent, they may have a non-equi predicate which a merged bloom filter can't represent
+        if (type != DynamicFilter.Type.GLOBAL) {
+            return;
+        }
+        ImmutableMap.Builder<String, byte[]> partialFilters = ImmutableMap.builder();
+        for (Map.Entry<String, Set> filter : result.entrySet()) {
+            DynamicFilterSourceOperator.Channel channel = channels.get(filter.getKey());
+            byte[] finalOutput = convertBloomFilterToByteArray(createBloomFilterFromSet(channel, filter.getValue(), bloomFilterFpp));
+            if (finalOutput != null) {
+                partialFilters.put(channel.getFilterId(), finalOutput);
             }
-            ((StateSet) stateStore.getOrCreateStateCollection(createKey(TASKSPREFIX, filterId, channel.getQueryId()), SET)).add(taskId.toString());
-            log.debug("creating new " + dataType + " dynamic filter for size of: " + result.size() + ", key: " + key + ", taskId: " + taskId);
         }
+        taskContext.addDynamicFilters(partialFilters.build());
     }
 
     private BloomFilter createBloomFilterFromSet(DynamicFilterSourceOperator.Channel channel, Set values, double bloomFilterFpp)
@@ -322,6 +419,11 @@ public class LocalDynamicFilter
         return this::addOperatorResult;
     }
 
+    public Consumer<Map<DynamicFilterSourceOperator.Channel, ValueRange>> getRangeConsumer()
+    {
+        return this::addOperatorRanges;
+    }
+
     public DynamicFilter.Type getType()
     {
         return type;
@@ -1099,7 +1099,9 @@ public class LocalExecutionPlanner
                     hashChannel,
                     1000,
                     joinCompiler,
-                    node.getRankingFunction());
+                    node.getRankingFunction(),
+                    isSpillEnabled(context.getSession()),
+                    Optional.of(partitioningSpillerFactory));
 
             return new PhysicalOperation(operatorFactory, makeLayout(node), context, source);
         }
@@ -1278,7 +1280,9 @@ public class LocalExecutionPlanner
                     distinctChannels,
                     node.getLimit(),
                     hashChannel,
-                    joinCompiler);
+                    joinCompiler,
+                    isSpillEnabled(context.getSession()),
+                    Optional.of(partitioningSpillerFactory));
             return new PhysicalOperation(operatorFactory, makeLayout(node), context, source);
         }
 
@@ -1416,7 +1420,15 @@ public class LocalExecutionPlanner
 
             List<Integer> channels = getChannelsForSymbols(node.getDistinctSymbols(), source.getLayout());
             Optional<Integer> hashChannel = node.getHashSymbol().map(channelGetter(source));
-            MarkDistinctOperatorFactory operator = new MarkDistinctOperatorFactory(context.getNextOperatorId(), node.getId(), source.getTypes(), channels, hashChannel, joinCompiler);
+            MarkDistinctOperatorFactory operator = new MarkDistinctOperatorFactory(
+                    context.getNextOperatorId(),
+                    node.getId(),
+                    source.getTypes(),
+                    channels,
+                    hashChannel,
+                    joinCompiler,
+                    isSpillEnabled(context.getSession()),
+                    Optional.of(partitioningSpillerFactory));
             return new PhysicalOperation(operator, makeLayout(node), context, source);
         }
 
@@ -2271,6 +2283,7 @@ public class LocalExecutionPlanner
                                         buildContext.getNextOperatorId(),
                                         node.getId(),
                                         filter.getValueConsumer(), /** the consumer to process all values collected to build the dynamic filter */
+                                        filter.getRangeConsumer(),
                                         filterBuildChannels,
                                         getDynamicFilteringMaxPerDriverValueCount(buildContext.getSession()),
                                         getDynamicFilteringMaxPerDriverSize(buildContext.getSession())));
@@ -2460,7 +2473,7 @@ public class LocalExecutionPlanner
             }
             LocalDynamicFiltersCollector collector = context.getDynamicFiltersCollector();
             return LocalDynamicFilter
-                    .create(node, partitionCount, context.getSession(), context.taskContext.getTaskId(), stateStoreProvider)
+                    .create(node, partitionCount, context.getSession(), context.taskContext, stateStoreProvider)
                     .map(filter -> {
                         // Intersect dynamic filters' predicates when they become ready,
                         // in order to support multiple join nodes in the same plan fragment.
@@ -2476,7 +2489,7 @@ public class LocalExecutionPlanner
             }
             LocalDynamicFiltersCollector collector = context.getDynamicFiltersCollector();
             return LocalDynamicFilter
-                    .create(node, context.getSession(), context.taskContext.getTaskId(), stateStoreProvider)
+                    .create(node, context.getSession(), context.taskContext, stateStoreProvider)
                     .map(filter -> {
                         addSuccessCallback(filter.getDynamicFilterResultFuture(), collector::intersectDynamicFilter);
                         return filter;
@@ -2577,6 +2590,7 @@ public class LocalExecutionPlanner
                                         buildContext.getNextOperatorId(),
                                         node.getId(),
                                         filter.getValueConsumer(), /** the consumer to process all values collected to build the dynamic filter */
+                                        filter.getRangeConsumer(),
                                         filterBuildChannels,
                                         getDynamicFilteringMaxPerDriverValueCount(buildContext.getSession()),
                                         getDynamicFilteringMaxPerDriverSize(buildContext.getSession())));
@@ -2705,6 +2719,7 @@ public class LocalExecutionPlanner
                             buildContext.getNextOperatorId(),
                             node.getId(),
                             filterConsumer.getValueConsumer(),
+                            filterConsumer.getRangeConsumer(),
                             ImmutableList.of(new DynamicFilterSourceOperator.Channel(filterId, buildSource.getTypes().get(buildChannel), buildChannel, context.getSession().getQueryId().toString())),
                             getDynamicFilteringMaxPerDriverValueCount(context.getSession()),
                             getDynamicFilteringMaxPerDriverSize(context.getSession())));
@@ -26,16 +26,22 @@ import io.prestosql.spi.ErrorType;
 import io.prestosql.spi.statestore.StateCollection;
 import io.prestosql.spi.statestore.StateMap;
 import io.prestosql.spi.statestore.StateStore;
+import io.prestosql.spi.statestore.listener.EntryAddedListener;
+import io.prestosql.spi.statestore.listener.EntryEvent;
+import io.prestosql.spi.statestore.listener.EntryRemovedListener;
+import io.prestosql.spi.statestore.listener.EntryUpdatedListener;
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
 
 import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
@@ -52,9 +58,15 @@ import static io.prestosql.statestore.StateStoreConstants.HANDLE_EXPIRED_QUERY_L
 import static io.prestosql.statestore.StateStoreConstants.OOM_QUERY_STATE_COLLECTION_NAME;
 import static io.prestosql.statestore.StateStoreConstants.QUERY_STATE_COLLECTION_NAME;
 import static io.prestosql.utils.StateUtils.removeState;
+import static java.util.Objects.requireNonNull;
 
 /**
  * State fetcher service used to fetch externalized query states from external state store
+ * <p>
+ * With incremental fetching enabled the fetcher subscribes to entry events of the query state collections
+ * and, between full fetches, only reads back the states whose keys changed. Full fetches still run every
+ * reconcile interval to repair the local view from events missed e.g. while reconnecting to the state store,
+ * and to detect expired states.
  *
  * @since 2019-11-29
  */
@@ -67,16 +79,32 @@ public class StateFetcher
     private final Duration stateExpireTime;
     private final Set<String> stateCollections = new HashSet<>();
     private final ScheduledExecutorService stateUpdateExecutor;
+    private final boolean incrementalFetchEnabled;
+    private final Duration reconcileInterval;
+    private final StateFetcherStats stats;
+    // state collection name -> locally materialized states, only maintained for incremental fetching
+    private final Map<String, Map<String, SharedQueryState>> materializedStates = new HashMap<>();
+    private final Map<String, ChangedKeysListener> changeListeners = new HashMap<>();
+    private long lastFullFetchTime;
     private ScheduledFuture<?> backgroundTask;
 
     private static final ObjectMapper MAPPER = new ObjectMapperProvider().get();
     private static final int THREAD_POOL_SIZE = 2;
 
     public StateFetcher(StateStoreProvider stateStoreProvider, Duration fetchInterval, Duration stateExpireTime)
+    {
+        this(stateStoreProvider, fetchInterval, stateExpireTime, false, fetchInterval, new StateFetcherStats());
+    }
+
+    public StateFetcher(StateStoreProvider stateStoreProvider, Duration fetchInterval, Duration stateExpireTime,
+            boolean incrementalFetchEnabled, Duration reconcileInterval, StateFetcherStats stats)
     {
         this.stateStoreProvider = stateStoreProvider;
         this.fetchInterval = fetchInterval;
         this.stateExpireTime = stateExpireTime;
+        this.incrementalFetchEnabled = incrementalFetchEnabled;
+        this.reconcileInterval = requireNonNull(reconcileInterval, "reconcileInterval is null");
+        this.stats = requireNonNull(stats, "stats is null");
         this.stateUpdateExecutor = Executors.newScheduledThreadPool(THREAD_POOL_SIZE, threadsNamed("state-fetcher-%s"));
     }
 
@@ -88,7 +116,7 @@ public class StateFetcher
         checkState(backgroundTask == null, "StateFetcher already started");
         backgroundTask = stateUpdateExecutor.scheduleWithFixedDelay(() -> {
             try {
-                fetchAllStates();
+                fetchStates();
             }
             catch (Exception e) {
                 LOG.error("Error fetching query states: " + e.getMessage());
@@ -106,6 +134,7 @@ public class StateFetcher
                 backgroundTask.cancel(true);
                 stateCollections.clear();
             }
+            removeChangeListeners();
         }
     }
 
@@ -130,6 +159,26 @@ public class StateFetcher
         stateCollections.remove(stateCollectionName);
     }
 
+    /**
+     * Fetch the states changed since the last fetch if incremental fetching is enabled and the local view is
+     * recent enough, otherwise fetch all states
+     *
+     * @throws IOException exception when failed to deserialize states
+     */
+    public void fetchStates()
+            throws IOException
+    {
+        synchronized (this) {
+            if (incrementalFetchEnabled && stateStoreProvider.getStateStore() != null
+                    && System.currentTimeMillis() - lastFullFetchTime < reconcileInterval.toMillis()) {
+                fetchChangedStates();
+            }
+            else {
+                fetchAllStates();
+            }
+        }
+    }
+
     /**
      * Fetch all states from state store to cache store
      *
@@ -160,14 +209,21 @@ public class StateFetcher
                 }
 
                 if (stateCollection.getType() == StateCollection.Type.MAP) {
-                    Map<String, String> states = ((StateMap<String, String>) stateCollection).getAll();
-                    StateCacheStore.get().setCachedStates(stateCollectionName, deserializeFetchedStates(states));
+                    StateMap<String, String> stateMap = (StateMap<String, String>) stateCollection;
+                    if (incrementalFetchEnabled) {
+                        // listen before reading so that no change made during the full fetch is missed
+                        addChangeListener(stateCollectionName, stateMap).clear();
+                    }
+                    Map<String, String> states = stateMap.getAll();
+                    setCachedStates(stateCollectionName, deserializeFetchedStates(states));
                 }
                 else {
                     LOG.warn("Unsupported state collection type: %s", stateCollection.getType());
                 }
             }
             long end = System.currentTimeMillis();
+            lastFullFetchTime = start;
+            stats.recordFullFetch(start, end);
             LOG.debug("fetchStates ends at current time milliseconds: %s, at format HH:mm:ss:SSS:%s, total time use: %s",
                     end,
                     new SimpleDateFormat("HH:mm:ss:SSS").format(new Date(end)),
@@ -175,6 +231,89 @@ public class StateFetcher
         }
     }
 
+    /**
+     * Read back the states whose keys were reported changed by the state store since the last fetch,
+     * and apply them to the locally materialized states
+     *
+     * @throws IOException exception when failed to deserialize states
+     */
+    private void fetchChangedStates()
+            throws IOException
+    {
+        long start = System.currentTimeMillis();
+        int changes = 0;
+        for (String stateCollectionName : stateCollections) {
+            StateCollection stateCollection = stateStoreProvider.getStateStore().getStateCollection(stateCollectionName);
+            if (stateCollection == null) {
+                continue;
+            }
+            if (stateCollectionName.equals(CPU_USAGE_STATE_COLLECTION_NAME)) {
+                // one small entry per coordinator, cheaper to read as a whole
+                StateCacheStore.get().setCachedStates(stateCollectionName, ((StateMap) stateCollection).getAll());
+                continue;
+            }
+
+            ChangedKeysListener listener = changeListeners.get(stateCollectionName);
+            Map<String, SharedQueryState> states = materializedStates.get(stateCollectionName);
+            if (listener == null || states == null) {
+                continue;
+            }
+            Set<String> changedKeys = listener.drain();
+            if (changedKeys.isEmpty()) {
+                continue;
+            }
+
+            // keys missing from the result have been removed from the state store
+            Map<String, String> changedStates = ((StateMap<String, String>) stateCollection).getAll(changedKeys);
+            for (String key : changedKeys) {
+                String value = changedStates.get(key);
+                if (value == null) {
+                    states.remove(key);
+                }
+                else {
+                    states.put(key, MAPPER.readerFor(SharedQueryState.class).readValue(value));
+                }
+            }
+            StateCacheStore.get().setCachedStates(stateCollectionName, ImmutableMap.copyOf(states));
+            changes += changedKeys.size();
+        }
+        long end = System.currentTimeMillis();
+        stats.recordIncrementalFetch(start, end, changes);
+        LOG.debug("fetchChangedStates fetched %s changed states in %s ms", changes, end - start);
+    }
+
+    private Set<String> addChangeListener(String stateCollectionName, StateMap<String, String> stateMap)
+    {
+        ChangedKeysListener listener = changeListeners.get(stateCollectionName);
+        if (listener == null) {
+            listener = new ChangedKeysListener();
+            stateMap.addEntryListener(listener);
+            changeListeners.put(stateCollectionName, listener);
+        }
+        return listener.changedKeys;
+    }
+
+    private void removeChangeListeners()
+    {
+        StateStore stateStore = stateStoreProvider.getStateStore();
+        for (Map.Entry<String, ChangedKeysListener> entry : changeListeners.entrySet()) {
+            StateCollection stateCollection = stateStore == null ? null : stateStore.getStateCollection(entry.getKey());
+            if (stateCollection instanceof StateMap) {
+                ((StateMap<?, ?>) stateCollection).removeEntryListener(entry.getValue());
+            }
+        }
+        changeListeners.clear();
+        materializedStates.clear();
+    }
+
+    private void setCachedStates(String stateCollectionName, Map<String, SharedQueryState> states)
+    {
+        if (incrementalFetchEnabled && changeListeners.containsKey(stateCollectionName)) {
+            materializedStates.put(stateCollectionName, new HashMap<>(states));
+        }
+        StateCacheStore.get().setCachedStates(stateCollectionName, states);
+    }
+
     /**
      * Fetch states only related to running queries from state store to cache store
      * This is used when not all the states are needed for better states fetching performance
@@ -196,7 +335,7 @@ public class StateFetcher
             StateCacheStore.get().setCachedStates(CPU_USAGE_STATE_COLLECTION_NAME, ((StateMap) cpuUsageCollection).getAll());
 
             Map<String, String> states = ((StateMap<String, String>) queryStateCollection).getAll();
-            StateCacheStore.get().setCachedStates(QUERY_STATE_COLLECTION_NAME, deserializeFetchedStates(states));
+            setCachedStates(QUERY_STATE_COLLECTION_NAME, deserializeFetchedStates(states));
 
             long end = System.currentTimeMillis();
             LOG.debug("fetchStates ends at current time milliseconds: %s, at format HH:mm:ss:SSS:%s, total time use: %s",
@@ -315,4 +454,42 @@ public class StateFetcher
 
         return newState;
     }
+
+    /**
+     * Records the keys of added, updated and removed states, the states themselves are read back on the next fetch
+     */
+    private static class ChangedKeysListener
+            implements EntryAddedListener<String, String>, EntryUpdatedListener<String, String>, EntryRemovedListener<String, String>
+    {
+        private final Set<String> changedKeys = ConcurrentHashMap.newKeySet();
+
+        @Override
+        public void entryAdded(EntryEvent<String, String> event)
+        {
+            changedKeys.add(event.getKey());
+        }
+
+        @Override
+        public void entryUpdated(EntryEvent<String, String> event)
+        {
+            changedKeys.add(event.getKey());
+        }
+
+        @Override
+        public void entryRemoved(EntryEvent<String, String> event)
+        {
+            changedKeys.add(event.getKey());
+        }
+
+        Set<String> drain()
+        {
+            Set<String> keys = new HashSet<>();
+            for (String key : changedKeys) {
+                if (changedKeys.remove(key)) {
+                    keys.add(key);
+                }
+            }
+            return keys;
+        }
+    }
 }
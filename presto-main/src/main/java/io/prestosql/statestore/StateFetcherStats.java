@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.prestosql.statestore;
+
+import io.airlift.stats.CounterStat;
+import io.airlift.stats.TimeStat;
+import org.weakref.jmx.Managed;
+import org.weakref.jmx.Nested;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Statistics of the {@link StateFetcher}: how long fetching states from the state store takes
+ * and how old the locally cached states are
+ */
+public class StateFetcherStats
+{
+    private final TimeStat fullFetchTime = new TimeStat(TimeUnit.MILLISECONDS);
+    private final TimeStat incrementalFetchTime = new TimeStat(TimeUnit.MILLISECONDS);
+    private final CounterStat changedStates = new CounterStat();
+    private volatile long lastSyncTime;
+
+    void recordFullFetch(long startMillis, long endMillis)
+    {
+        fullFetchTime.add(endMillis - startMillis, TimeUnit.MILLISECONDS);
+        lastSyncTime = startMillis;
+    }
+
+    void recordIncrementalFetch(long startMillis, long endMillis, int changes)
+    {
+        incrementalFetchTime.add(endMillis - startMillis, TimeUnit.MILLISECONDS);
+        changedStates.update(changes);
+        lastSyncTime = startMillis;
+    }
+
+    @Managed
+    @Nested
+    public TimeStat getFullFetchTime()
+    {
+        return fullFetchTime;
+    }
+
+    @Managed
+    @Nested
+    public TimeStat getIncrementalFetchTime()
+    {
+        return incrementalFetchTime;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getChangedStates()
+    {
+        return changedStates;
+    }
+
+    /**
+     * @return milliseconds since the cached states were last synchronized with the state store, or -1 if they never were
+     */
+    @Managed
+    public long getStaleness()
+    {
+        long syncTime = lastSyncTime;
+        if (syncTime == 0) {
+            return -1;
+        }
+        return System.currentTimeMillis() - syncTime;
+    }
+}
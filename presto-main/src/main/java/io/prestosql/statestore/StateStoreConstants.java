@@ -65,6 +65,12 @@ public class StateStoreConstants
      */
     public static final String RESOURCE_GROUP_STATE_COLLECTION_NAME = "resourceGroup";
 
+    /**
+     * Resource group running slots state collection name.
+     * The slots are updated with compare-and-set, so this map must not be near-cached
+     */
+    public static final String RESOURCE_GROUP_SLOTS_COLLECTION_NAME = "resource-group-slots";
+
     /**
      * Cluster CPU usage state collection name
      */
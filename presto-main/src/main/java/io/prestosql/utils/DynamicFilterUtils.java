@@ -21,6 +21,7 @@ import io.prestosql.spi.plan.JoinNode;
 import io.prestosql.spi.plan.PlanNode;
 import io.prestosql.spi.plan.TableScanNode;
 import io.prestosql.sql.analyzer.FeaturesConfig.DynamicFilterDataType;
+import io.prestosql.sql.analyzer.FeaturesConfig.DynamicFilterTransport;
 import io.prestosql.sql.planner.optimizations.PlanNodeSearcher;
 import io.prestosql.sql.planner.plan.SemiJoinNode;
 
@@ -28,6 +29,7 @@ import java.util.List;
 
 import static io.prestosql.spi.dynamicfilter.DynamicFilter.DataType.BLOOM_FILTER;
 import static io.prestosql.spi.dynamicfilter.DynamicFilter.DataType.HASHSET;
+import static io.prestosql.spi.dynamicfilter.DynamicFilter.Type.GLOBAL;
 import static io.prestosql.spi.dynamicfilter.DynamicFilter.Type.LOCAL;
 
 /**
@@ -39,8 +41,9 @@ public class DynamicFilterUtils
 {
     public static final String FILTERPREFIX = "filter-";
     public static final String PARTIALPREFIX = "partial-";
-    public static final String TASKSPREFIX = "tasks-";
     public static final String MERGED_DYNAMIC_FILTERS = "merged-dynamic-filters";
+    public static final String PARTIAL_DYNAMIC_FILTERS = "partial-dynamic-filters";
+    public static final String PARTIAL_TASK_SEPARATOR = "/";
     public static final double BLOOM_FILTER_EXPECTED_FPP = 0.25F;
 
     private DynamicFilterUtils()
@@ -57,6 +60,19 @@ public class DynamicFilterUtils
         return prefix + filterKey + "-" + queryId;
     }
 
+    /**
+     * Create the key of the partial dynamic filter of a task in PARTIAL_DYNAMIC_FILTERS
+     *
+     * @param filterId id of the dynamic filter
+     * @param queryId id of the query
+     * @param taskId id of the task that built the partial dynamic filter
+     * @return the key of the partial dynamic filter
+     */
+    public static String createPartialKey(String filterId, String queryId, String taskId)
+    {
+        return createKey(PARTIALPREFIX, filterId, queryId) + PARTIAL_TASK_SEPARATOR + taskId;
+    }
+
     /**
      * Util function to find all FilterNodes in the same stage as the JoinNode
      *
@@ -89,6 +105,16 @@ public class DynamicFilterUtils
         return false;
     }
 
+    public static DataType getDynamicFilterDataType(Type type, DynamicFilterDataType dataType, DynamicFilterTransport transport)
+    {
+        // only serialized global bloom filters are sent with the task status and task update requests,
+        // local filters stay in the task since they may have a non-equi predicate
+        if (transport == DynamicFilterTransport.REMOTE_TASK && type == GLOBAL) {
+            return BLOOM_FILTER;
+        }
+        return getDynamicFilterDataType(type, dataType);
+    }
+
     public static DataType getDynamicFilterDataType(Type type, DynamicFilterDataType dataType)
     {
         if (type == LOCAL || dataType == DynamicFilterDataType.HASHSET) {
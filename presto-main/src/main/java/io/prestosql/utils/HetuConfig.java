@@ -25,6 +25,7 @@ import javax.validation.constraints.NotNull;
 
 import java.util.concurrent.TimeUnit;
 
+import static io.airlift.units.DataSize.Unit.BYTE;
 import static io.airlift.units.DataSize.Unit.GIGABYTE;
 
 /**
@@ -40,16 +41,20 @@ public class HetuConfig
     private Duration indexCacheLoadingDelay = new Duration(10, TimeUnit.SECONDS);
     private Duration indexCacheTTL = new Duration(24, TimeUnit.HOURS);
     private Boolean indexCacheSoftReference = Boolean.TRUE;
+    private boolean indexCacheAdmissionEnabled = true;
     private String indexStoreUri = "/opt/hetu/indices/";
     private String indexStoreFileSystemProfile = "local-config-default";
     private boolean indexAutoload = true;
     private String indexToPreload = "";
+    private DataSize indexWriterMaxBufferedMemory = new DataSize(Runtime.getRuntime().maxMemory() * 0.05, BYTE);
     private Boolean enableEmbeddedStateStore = Boolean.FALSE;
     private Boolean enableMultipleCoordinator = Boolean.FALSE;
     private Duration stateUpdateInterval = new Duration(100, TimeUnit.MILLISECONDS);
     private Duration stateFetchInterval = new Duration(100, TimeUnit.MILLISECONDS);
     private Duration querySubmitTimeout = new Duration(10, TimeUnit.SECONDS);
     private Duration stateExpireTime = new Duration(60, TimeUnit.SECONDS);
+    private boolean stateFetchIncrementalEnabled;
+    private Duration stateReconcileInterval = new Duration(10, TimeUnit.SECONDS);
     private int dataCenterSplits = 5;
     private Duration dataCenterConsumerTimeout = new Duration(10, TimeUnit.MINUTES);
     private boolean executionPlanCacheEnabled;
@@ -144,6 +149,20 @@ public class HetuConfig
         return this;
     }
 
+    @NotNull
+    public DataSize getIndexWriterMaxBufferedMemory()
+    {
+        return indexWriterMaxBufferedMemory;
+    }
+
+    @Config(HetuConstant.INDEX_WRITER_MAX_BUFFERED_MEMORY)
+    @ConfigDescription("The memory an index writer may use for values of stripes that are not complete yet, before it spills them to disk")
+    public HetuConfig setIndexWriterMaxBufferedMemory(DataSize indexWriterMaxBufferedMemory)
+    {
+        this.indexWriterMaxBufferedMemory = indexWriterMaxBufferedMemory;
+        return this;
+    }
+
     public Duration getIndexCacheLoadingDelay()
     {
         return this.indexCacheLoadingDelay;
@@ -197,6 +216,19 @@ public class HetuConfig
         return this;
     }
 
+    public boolean isIndexCacheAdmissionEnabled()
+    {
+        return indexCacheAdmissionEnabled;
+    }
+
+    @Config(HetuConstant.FILTER_CACHE_ADMISSION_ENABLED)
+    @ConfigDescription("Only load an index into a full cache if it is used more frequently than the entry it would evict")
+    public HetuConfig setIndexCacheAdmissionEnabled(boolean indexCacheAdmissionEnabled)
+    {
+        this.indexCacheAdmissionEnabled = indexCacheAdmissionEnabled;
+        return this;
+    }
+
     public Boolean isEmbeddedStateStoreEnabled()
     {
         return this.enableEmbeddedStateStore;
@@ -284,6 +316,34 @@ public class HetuConfig
         return this;
     }
 
+    public boolean isStateFetchIncrementalEnabled()
+    {
+        return stateFetchIncrementalEnabled;
+    }
+
+    @Config("hetu.multiple-coordinator.state-fetch-incremental-enabled")
+    @ConfigDescription("Only fetch states changed in state store between full fetches")
+    public HetuConfig setStateFetchIncrementalEnabled(boolean stateFetchIncrementalEnabled)
+    {
+        this.stateFetchIncrementalEnabled = stateFetchIncrementalEnabled;
+        return this;
+    }
+
+    @NotNull
+    @MinDuration("10ms")
+    public Duration getStateReconcileInterval()
+    {
+        return stateReconcileInterval;
+    }
+
+    @Config("hetu.multiple-coordinator.state-reconcile-interval")
+    @ConfigDescription("Time interval for fetching all states from state store when incremental fetching is enabled")
+    public HetuConfig setStateReconcileInterval(Duration stateReconcileInterval)
+    {
+        this.stateReconcileInterval = stateReconcileInterval;
+        return this;
+    }
+
     public int getDataCenterSplits()
     {
         return dataCenterSplits;
@@ -16,18 +16,22 @@ package io.prestosql;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import io.prestosql.dynamicfilter.DynamicFilterService;
+import io.prestosql.dynamicfilter.PartialDynamicFilterListener;
+import io.prestosql.execution.TaskId;
 import io.prestosql.spi.QueryId;
 import io.prestosql.spi.connector.ColumnHandle;
 import io.prestosql.spi.dynamicfilter.DynamicFilter;
+import io.prestosql.spi.dynamicfilter.RangeDynamicFilter;
 import io.prestosql.spi.plan.Symbol;
 import io.prestosql.spi.relation.VariableReferenceExpression;
 import io.prestosql.spi.statestore.StateMap;
-import io.prestosql.spi.statestore.StateSet;
 import io.prestosql.spi.statestore.StateStore;
 import io.prestosql.spi.util.BloomFilter;
 import io.prestosql.sql.DynamicFilters;
 import io.prestosql.statestore.StateStoreProvider;
+import io.prestosql.statestore.listener.StateStoreListenerManager;
 import io.prestosql.testing.assertions.Assert;
 import io.prestosql.utils.DynamicFilterUtils;
 import org.testng.annotations.BeforeTest;
@@ -35,17 +39,21 @@ import org.testng.annotations.Test;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Supplier;
 
 import static io.prestosql.SystemSessionProperties.DYNAMIC_FILTERING_DATA_TYPE;
+import static io.prestosql.SystemSessionProperties.DYNAMIC_FILTERING_TRANSPORT;
 import static io.prestosql.spi.plan.JoinNode.DistributionType.PARTITIONED;
 import static io.prestosql.testing.TestingSession.testSessionBuilder;
-import static io.prestosql.utils.DynamicFilterUtils.createKey;
+import static io.prestosql.utils.DynamicFilterUtils.PARTIAL_DYNAMIC_FILTERS;
+import static io.prestosql.utils.TestDynamicFilterUtil.addPartialFilter;
 import static io.prestosql.utils.TestDynamicFilterUtil.registerDf;
 import static io.prestosql.utils.TestDynamicFilterUtil.setupMockStateStore;
 import static org.mockito.Mockito.mock;
@@ -54,10 +62,12 @@ import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertTrue;
 
+@Test(singleThreaded = true)
 public class TestDynamicFilterServiceWithBloomFilter
 {
     private DynamicFilterService dynamicFilterService;
     private StateStoreProvider stateStoreProvider;
+    private Map<String, Object> partialFilters;
     private String filterId;
     private Session session;
 
@@ -71,14 +81,14 @@ public class TestDynamicFilterServiceWithBloomFilter
                 .setSystemProperty(DYNAMIC_FILTERING_DATA_TYPE, "BLOOM_FILTER")
                 .build();
 
-        StateStore stateStore = setupMockStateStore(new HashMap<>(), new HashMap<>(),
-                new HashSet<>(), new HashSet<>(), session.getQueryId().toString(), filterId);
+        partialFilters = new HashMap<>();
+        StateStore stateStore = setupMockStateStore(new HashMap<>(), new HashMap<>(), partialFilters);
 
         stateStoreProvider = mock(StateStoreProvider.class);
         when(stateStoreProvider.getStateStore()).thenReturn(stateStore);
 
         dynamicFilterService = new DynamicFilterService(stateStoreProvider);
-        dynamicFilterService.start();
+        new StateStoreListenerManager(stateStoreProvider).addStateStoreListener(new PartialDynamicFilterListener(dynamicFilterService), PARTIAL_DYNAMIC_FILTERS);
     }
 
     @Test
@@ -126,12 +136,80 @@ public class TestDynamicFilterServiceWithBloomFilter
         assertTrue(dynamicFilterSupplier.get().isEmpty(), "should return empty dynamic filter set for invalid or non-existing queryId");
 
         String queryId = session.getQueryId().getId();
-        assertEquals(stateStoreProvider.getStateStore().getStateCollection(createKey(DynamicFilterUtils.PARTIALPREFIX, filterId, queryId)).size(), 2);
-        assertEquals(stateStoreProvider.getStateStore().getStateCollection(createKey(DynamicFilterUtils.TASKSPREFIX, filterId, queryId)).size(), 2);
+        assertEquals(partialFilters.size(), 2);
+        dynamicFilterService.clearDynamicFiltersForQuery(queryId);
+        Thread.sleep(1000);
+        assertEquals(partialFilters.size(), 0);
+    }
+
+    @Test
+    public void testMergeDynamicFiltersFromRemoteTasks()
+            throws InterruptedException
+    {
+        Session remoteTaskSession = testSessionBuilder()
+                .setQueryId(QueryId.valueOf("qq2"))
+                .setSystemProperty(DYNAMIC_FILTERING_TRANSPORT, "REMOTE_TASK")
+                .build();
+        String queryId = remoteTaskSession.getQueryId().getId();
+        TaskId task0 = new TaskId(queryId, 1, 0);
+        TaskId task1 = new TaskId(queryId, 1, 1);
+
+        // the state store is not used when the dynamic filters are collected through the remote tasks
+        StateStoreProvider emptyStateStoreProvider = mock(StateStoreProvider.class);
+        DynamicFilterService remoteTaskFilterService = new DynamicFilterService(emptyStateStoreProvider);
+        Map<String, byte[]> mergedFilters = new ConcurrentHashMap<>();
+        remoteTaskFilterService.addDynamicFilterListener(queryId, mergedFilters::putAll);
+
+        // partial dynamic filters may arrive before the tasks are registered
+        remoteTaskFilterService.addPartialDynamicFilters(task0, ImmutableMap.of(filterId, createBloomFilter(Arrays.asList("1", "2", "3", "4"))));
+        registerDf(filterId, remoteTaskSession, PARTITIONED, remoteTaskFilterService, ImmutableSet.of(task0, task1));
+        Thread.sleep(1000);
+        assertTrue(mergedFilters.isEmpty());
+
+        remoteTaskFilterService.addPartialDynamicFilters(task1, ImmutableMap.of(filterId, createBloomFilter(Arrays.asList("5", "6", "7", "8"))));
+        Thread.sleep(1000);
+        assertEquals(mergedFilters.keySet(), ImmutableSet.of(filterId));
+        BloomFilter bf = deserializeBloomFilter(mergedFilters.get(filterId));
+        for (int i = 1; i < 9; i++) {
+            assertTrue(bf.test((String.valueOf(i).getBytes())));
+        }
+        assertFalse(bf.test("10".getBytes()));
+
+        remoteTaskFilterService.clearDynamicFiltersForQuery(queryId);
+        remoteTaskFilterService.stop();
+    }
+
+    @Test
+    public void testMergeRangeAndBloomFilterPartialFilters()
+            throws InterruptedException
+    {
+        String rangeFilterId = "df5";
+        String queryId = session.getQueryId().toString();
+        registerDf(rangeFilterId, session, PARTITIONED, dynamicFilterService);
+
+        // task1.0 had too many values, so only their min/max were published, task1.1 sent its range next to its bloom filter
+        addPartialFilter(stateStoreProvider.getStateStore(), "task1.0", rangeFilterId, queryId, new ArrayList<>(Arrays.asList("30", "45")));
+        addPartialFilter(stateStoreProvider.getStateStore(), "task1.1", rangeFilterId, queryId,
+                new ArrayList<>(Arrays.asList("25", "31", createBloomFilter(Arrays.asList("25", "31")))));
+
+        Thread.sleep(2000);
+        Object mergedFilter = ((StateMap) stateStoreProvider.getStateStore().getStateCollection(DynamicFilterUtils.MERGED_DYNAMIC_FILTERS))
+                .get(DynamicFilterUtils.createKey(DynamicFilterUtils.FILTERPREFIX, rangeFilterId, queryId));
+        assertEquals(mergedFilter, Arrays.asList("25", "45"));
+
+        VariableReferenceExpression mockExpression = mock(VariableReferenceExpression.class);
+        when(mockExpression.getName()).thenReturn("name");
+        List<Set<DynamicFilter>> dynamicFilters = DynamicFilterService.getDynamicFilterSupplier(session.getQueryId(),
+                ImmutableList.of(ImmutableList.of(new DynamicFilters.Descriptor(rangeFilterId, mockExpression))),
+                ImmutableMap.of(new Symbol("name"), mock(ColumnHandle.class))).get();
+        assertEquals(dynamicFilters.size(), 1);
+        DynamicFilter rangeFilter = dynamicFilters.get(0).iterator().next();
+        assertTrue(rangeFilter instanceof RangeDynamicFilter);
+        assertTrue(rangeFilter.contains("25"));
+        assertTrue(rangeFilter.contains("40"));
+        assertFalse(rangeFilter.contains("50"));
         dynamicFilterService.clearDynamicFiltersForQuery(queryId);
         Thread.sleep(1000);
-        assertEquals(stateStoreProvider.getStateStore().getStateCollection(createKey(DynamicFilterUtils.PARTIALPREFIX, filterId, queryId)).size(), 0);
-        assertEquals(stateStoreProvider.getStateStore().getStateCollection(createKey(DynamicFilterUtils.TASKSPREFIX, filterId, queryId)).size(), 0);
     }
 
     private BloomFilter fetchDynamicFilter(String filterId, String queryId)
@@ -155,22 +233,24 @@ public class TestDynamicFilterServiceWithBloomFilter
     }
 
     private void mockLocalDynamicFilter(String taskId, String filterId, String queryId, List<String> values)
+    {
+        addPartialFilter(stateStoreProvider.getStateStore(), taskId, filterId, queryId, createBloomFilter(values));
+    }
+
+    private byte[] createBloomFilter(List<String> values)
     {
         BloomFilter bloomFilter = new BloomFilter(1024 * 1024, 0.1);
         for (String val : values) {
             bloomFilter.add(val.getBytes());
         }
 
-        String key = DynamicFilterUtils.createKey(DynamicFilterUtils.PARTIALPREFIX, filterId, queryId);
         try (ByteArrayOutputStream out = new ByteArrayOutputStream()) {
             bloomFilter.writeTo(out);
-            byte[] finalOutput = out.toByteArray();
-            ((StateSet) stateStoreProvider.getStateStore().getStateCollection(key)).add(finalOutput);
-            ((StateSet) stateStoreProvider.getStateStore().getStateCollection(DynamicFilterUtils.createKey(DynamicFilterUtils.TASKSPREFIX, filterId, queryId))).add(taskId);
+            return out.toByteArray();
         }
-
         catch (IOException e) {
             Assert.fail("could not register finish filter, Exception happened:" + e.getMessage());
         }
+        return null;
     }
 }
@@ -17,47 +17,56 @@ package io.prestosql;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import io.prestosql.dynamicfilter.DynamicFilterService;
+import io.prestosql.dynamicfilter.PartialDynamicFilterListener;
 import io.prestosql.spi.QueryId;
 import io.prestosql.spi.connector.ColumnHandle;
 import io.prestosql.spi.dynamicfilter.DynamicFilter;
 import io.prestosql.spi.dynamicfilter.HashSetDynamicFilter;
+import io.prestosql.spi.dynamicfilter.RangeDynamicFilter;
 import io.prestosql.spi.plan.Symbol;
 import io.prestosql.spi.relation.VariableReferenceExpression;
 import io.prestosql.spi.statestore.StateMap;
-import io.prestosql.spi.statestore.StateSet;
 import io.prestosql.spi.statestore.StateStore;
 import io.prestosql.sql.DynamicFilters;
 import io.prestosql.statestore.StateStoreProvider;
+import io.prestosql.statestore.listener.StateStoreListenerManager;
 import io.prestosql.testing.assertions.Assert;
 import io.prestosql.utils.DynamicFilterUtils;
 import org.testng.annotations.BeforeTest;
 import org.testng.annotations.Test;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.function.Supplier;
 
 import static io.prestosql.SystemSessionProperties.DYNAMIC_FILTERING_DATA_TYPE;
 import static io.prestosql.spi.plan.JoinNode.DistributionType.PARTITIONED;
 import static io.prestosql.testing.TestingSession.testSessionBuilder;
+import static io.prestosql.utils.DynamicFilterUtils.PARTIAL_DYNAMIC_FILTERS;
 import static io.prestosql.utils.DynamicFilterUtils.createKey;
+import static io.prestosql.utils.TestDynamicFilterUtil.addPartialFilter;
 import static io.prestosql.utils.TestDynamicFilterUtil.registerDf;
 import static io.prestosql.utils.TestDynamicFilterUtil.setupMockStateStore;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertTrue;
 
+@Test(singleThreaded = true)
 public class TestDynamicFilterServiceWithHashSet
 {
     private DynamicFilterService dynamicFilterService;
     private StateStoreProvider stateStoreProvider;
     private String filterId;
     private Session session;
+    private Map<String, Object> partialFilters;
 
     @BeforeTest
     private void setUpHashSet()
@@ -68,14 +77,14 @@ public class TestDynamicFilterServiceWithHashSet
                 .setSystemProperty(DYNAMIC_FILTERING_DATA_TYPE, "HASHSET")
                 .build();
 
-        StateStore stateStore = setupMockStateStore(new HashMap<>(), new HashMap<>(),
-                new HashSet<>(), new HashSet<>(), session.getQueryId().toString(), filterId);
+        partialFilters = new HashMap<>();
+        StateStore stateStore = setupMockStateStore(new HashMap<>(), new HashMap<>(), partialFilters);
 
         stateStoreProvider = mock(StateStoreProvider.class);
         when(stateStoreProvider.getStateStore()).thenReturn(stateStore);
 
         dynamicFilterService = new DynamicFilterService(stateStoreProvider);
-        dynamicFilterService.start();
+        new StateStoreListenerManager(stateStoreProvider).addStateStoreListener(new PartialDynamicFilterListener(dynamicFilterService), PARTIAL_DYNAMIC_FILTERS);
     }
 
     @Test
@@ -122,12 +131,62 @@ public class TestDynamicFilterServiceWithHashSet
         assertTrue(dynamicFilterSupplier.get().isEmpty(), "should return empty dynamic filter set for invalid or non-existing queryId");
 
         String queryId = session.getQueryId().getId();
-        assertEquals(stateStoreProvider.getStateStore().getStateCollection(createKey(DynamicFilterUtils.PARTIALPREFIX, filterId, queryId)).size(), 2);
-        assertEquals(stateStoreProvider.getStateStore().getStateCollection(createKey(DynamicFilterUtils.TASKSPREFIX, filterId, queryId)).size(), 2);
+        assertEquals(partialFilters.size(), 2);
         dynamicFilterService.clearDynamicFiltersForQuery(queryId);
         Thread.sleep(1000);
-        assertEquals(stateStoreProvider.getStateStore().getStateCollection(createKey(DynamicFilterUtils.PARTIALPREFIX, filterId, queryId)).size(), 0);
-        assertEquals(stateStoreProvider.getStateStore().getStateCollection(createKey(DynamicFilterUtils.TASKSPREFIX, filterId, queryId)).size(), 0);
+        assertEquals(partialFilters.size(), 0);
+    }
+
+    @Test
+    public void testMergePartialFiltersAddedBeforeRegistration()
+            throws InterruptedException
+    {
+        setUpHashSet();
+        filterId = "df3";
+        String queryId = session.getQueryId().toString();
+        mockLocalDynamicFilterHashSet("task1.0", filterId, queryId, Arrays.asList("21", "22"));
+        mockLocalDynamicFilterHashSet("task1.1", filterId, queryId, Arrays.asList("23"));
+        Thread.sleep(500);
+        assertNull(((StateMap) stateStoreProvider.getStateStore().getStateCollection(DynamicFilterUtils.MERGED_DYNAMIC_FILTERS))
+                .get(createKey(DynamicFilterUtils.FILTERPREFIX, filterId, queryId)), "dynamic filter should not be merged before its tasks are registered");
+
+        registerDf(filterId, session, PARTITIONED, dynamicFilterService);
+
+        Thread.sleep(2000);
+        Set hs = fetchDynamicFilterHashSet(filterId, queryId);
+        assertEquals(hs, new HashSet<>(Arrays.asList("21", "22", "23")));
+        dynamicFilterService.clearDynamicFiltersForQuery(queryId);
+    }
+
+    @Test
+    public void testMergeRangeAndHashSetPartialFilters()
+            throws InterruptedException
+    {
+        setUpHashSet();
+        filterId = "df4";
+        String queryId = session.getQueryId().toString();
+        registerDf(filterId, session, PARTITIONED, dynamicFilterService);
+
+        // task1.0 had too many values, so only their min/max were published
+        addPartialFilter(stateStoreProvider.getStateStore(), "task1.0", filterId, queryId, new ArrayList<>(Arrays.asList("30", "45")));
+        mockLocalDynamicFilterHashSet("task1.1", filterId, queryId, Arrays.asList("25", "31"));
+
+        Thread.sleep(2000);
+        Object mergedFilter = ((StateMap) stateStoreProvider.getStateStore().getStateCollection(DynamicFilterUtils.MERGED_DYNAMIC_FILTERS))
+                .get(createKey(DynamicFilterUtils.FILTERPREFIX, filterId, queryId));
+        assertEquals(mergedFilter, Arrays.asList("25", "45"));
+
+        VariableReferenceExpression mockExpression = mock(VariableReferenceExpression.class);
+        when(mockExpression.getName()).thenReturn("name");
+        List<Set<DynamicFilter>> dynamicFilters = DynamicFilterService.getDynamicFilterSupplier(session.getQueryId(),
+                ImmutableList.of(ImmutableList.of(new DynamicFilters.Descriptor(filterId, mockExpression))),
+                ImmutableMap.of(new Symbol("name"), mock(ColumnHandle.class))).get();
+        assertEquals(dynamicFilters.size(), 1);
+        DynamicFilter rangeFilter = (DynamicFilter) dynamicFilters.get(0).toArray()[0];
+        assertTrue(rangeFilter instanceof RangeDynamicFilter);
+        assertTrue(rangeFilter.contains("40"));
+        assertFalse(rangeFilter.contains("50"));
+        dynamicFilterService.clearDynamicFiltersForQuery(queryId);
     }
 
     private Set fetchDynamicFilterHashSet(String filterId, String queryId)
@@ -146,11 +205,8 @@ public class TestDynamicFilterServiceWithHashSet
             filter.add(val);
         }
 
-        String key = DynamicFilterUtils.createKey(DynamicFilterUtils.PARTIALPREFIX, filterId, queryId);
-
         try {
-            ((StateSet) stateStoreProvider.getStateStore().getStateCollection(key)).add(filter);
-            ((StateSet) stateStoreProvider.getStateStore().getStateCollection(DynamicFilterUtils.createKey(DynamicFilterUtils.TASKSPREFIX, filterId, queryId))).add(taskId);
+            addPartialFilter(stateStoreProvider.getStateStore(), taskId, filterId, queryId, filter);
         }
 
         catch (Exception e) {
@@ -282,7 +282,9 @@ public class MockRemoteTaskFactory
                             0,
                             new Duration(0, MILLISECONDS),
                             ImmutableMap.of(),
-                            Optional.empty()),
+                            Optional.empty(),
+                            0,
+                            ImmutableMap.of()),
                     DateTime.now(),
                     outputBuffer.getInfo(),
                     ImmutableSet.of(),
@@ -312,7 +314,9 @@ public class MockRemoteTaskFactory
                     0,
                     new Duration(0, MILLISECONDS),
                     ImmutableMap.of(),
-                    Optional.empty());
+                    Optional.empty(),
+                    0,
+                    ImmutableMap.of());
         }
 
         private synchronized void updateSplitQueueSpace()
@@ -367,6 +371,11 @@ public class MockRemoteTaskFactory
             });
         }
 
+        @Override
+        public void addDynamicFilters(Map<String, byte[]> dynamicFilters)
+        {
+        }
+
         @Override
         public void addSplits(Multimap<PlanNodeId, Split> splits)
         {
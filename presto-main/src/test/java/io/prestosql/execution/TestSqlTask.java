@@ -16,6 +16,7 @@ package io.prestosql.execution;
 import com.google.common.base.Functions;
 import com.google.common.base.Ticker;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.util.concurrent.ListenableFuture;
 import io.airlift.stats.CounterStat;
@@ -28,6 +29,7 @@ import io.prestosql.execution.buffer.OutputBuffers.OutputBufferId;
 import io.prestosql.execution.executor.TaskExecutor;
 import io.prestosql.memory.MemoryPool;
 import io.prestosql.memory.QueryContext;
+import io.prestosql.operator.TaskContext;
 import io.prestosql.spi.QueryId;
 import io.prestosql.spi.memory.MemoryPoolId;
 import io.prestosql.spiller.SpillSpaceTracker;
@@ -310,6 +312,45 @@ public class TestSqlTask
         assertFalse(sqlTask.getTaskResults(OUT, 0, new DataSize(1, MEGABYTE)).isDone());
     }
 
+    @Test
+    public void testDynamicFiltersInTaskStatus()
+            throws Exception
+    {
+        SqlTask sqlTask = createInitialTask();
+
+        sqlTask.updateTask(TEST_SESSION,
+                Optional.of(PLAN_FRAGMENT),
+                ImmutableList.of(),
+                createInitialEmptyOutputBuffers(PARTITIONED)
+                        .withNoMoreBufferIds(),
+                OptionalInt.empty(),
+                Optional.empty(),
+                null);
+        TaskStatus taskStatus = sqlTask.getTaskStatus(0);
+        assertEquals(taskStatus.getDynamicFiltersVersion(), 0);
+        assertTrue(taskStatus.getDynamicFilters().isEmpty());
+
+        // the status request waits for the partial dynamic filters
+        ListenableFuture<TaskStatus> futureTaskStatus = sqlTask.getTaskStatus(TaskState.RUNNING, 0);
+        assertFalse(futureTaskStatus.isDone());
+
+        TaskContext taskContext = sqlTask.getQueryContext().getTaskContext(sqlTask.getTaskInstanceId());
+        taskContext.addDynamicFilters(ImmutableMap.of("df1", new byte[] {1}));
+        taskStatus = futureTaskStatus.get(1, SECONDS);
+        assertEquals(taskStatus.getState(), TaskState.RUNNING);
+        assertEquals(taskStatus.getDynamicFiltersVersion(), 1);
+        assertEquals(taskStatus.getDynamicFilters().keySet(), ImmutableSet.of("df1"));
+
+        // acknowledged partial dynamic filters are not sent again
+        taskContext.addDynamicFilters(ImmutableMap.of("df2", new byte[] {2}));
+        taskStatus = sqlTask.getTaskStatus(1);
+        assertEquals(taskStatus.getDynamicFiltersVersion(), 2);
+        assertEquals(taskStatus.getDynamicFilters().keySet(), ImmutableSet.of("df2"));
+
+        assertTrue(sqlTask.getTaskStatus().getDynamicFilters().isEmpty());
+        assertTrue(sqlTask.getTaskInfo().getTaskStatus().getDynamicFilters().isEmpty());
+    }
+
     private SqlTask createInitialTask()
     {
         TaskId taskId = new TaskId("query", 0, nextTaskId.incrementAndGet());
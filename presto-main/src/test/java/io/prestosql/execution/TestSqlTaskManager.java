@@ -29,9 +29,14 @@ import io.prestosql.execution.executor.TaskExecutor;
 import io.prestosql.memory.LocalMemoryManager;
 import io.prestosql.memory.NodeMemoryConfig;
 import io.prestosql.memory.context.LocalMemoryContext;
+import io.prestosql.metadata.InMemoryNodeManager;
 import io.prestosql.metadata.InternalNode;
 import io.prestosql.operator.ExchangeClient;
 import io.prestosql.operator.ExchangeClientSupplier;
+import io.prestosql.operator.HttpPageBufferClient.PagesResponse;
+import io.prestosql.operator.LocalTaskResultsFetcher;
+import io.prestosql.operator.LocalTaskResultsFetcher.LocalTaskResults;
+import io.prestosql.server.remotetask.HttpLocationFactory;
 import io.prestosql.spi.QueryId;
 import io.prestosql.spiller.LocalSpillManager;
 import io.prestosql.spiller.NodeSpillConfig;
@@ -41,6 +46,7 @@ import org.testng.annotations.Test;
 import java.net.URI;
 import java.util.Optional;
 import java.util.OptionalInt;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
@@ -56,10 +62,13 @@ import static io.prestosql.metadata.MetadataManager.createTestMetadataManager;
 import static io.prestosql.testing.TestingPagesSerdeFactory.TESTING_SERDE_FACTORY;
 import static io.prestosql.testing.TestingSession.testSessionBuilder;
 import static io.prestosql.testing.TestingSnapshotUtils.NOOP_SNAPSHOT_UTILS;
+import static java.util.concurrent.Executors.newSingleThreadScheduledExecutor;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNotEquals;
 import static org.testng.Assert.assertNotNull;
 import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
 
 @Test
 public class TestSqlTaskManager
@@ -175,6 +184,43 @@ public class TestSqlTaskManager
         }
     }
 
+    @Test
+    public void testLocalTaskResults()
+            throws Exception
+    {
+        ScheduledExecutorService timeoutExecutor = newSingleThreadScheduledExecutor();
+        try (SqlTaskManager sqlTaskManager = createSqlTaskManager(new TaskManagerConfig())) {
+            URI localUri = URI.create("http://127.0.0.1:8080");
+            LocalTaskResultsFetcher fetcher = new LocalTaskResultsFetcher(() -> sqlTaskManager, new HttpLocationFactory(new InMemoryNodeManager(localUri), localUri));
+
+            // Only results locations on this node are read locally
+            assertFalse(fetcher.getLocalTaskResults(URI.create("http://127.0.0.2:8080/v1/task/query.0.1/results/0")).isPresent());
+            assertFalse(fetcher.getLocalTaskResults(URI.create("http://127.0.0.1:8080/v1/task/query.0.1")).isPresent());
+            Optional<LocalTaskResults> localTaskResults = fetcher.getLocalTaskResults(URI.create("http://127.0.0.1:8080/v1/task/query.0.1/results/0"));
+            assertTrue(localTaskResults.isPresent());
+
+            TaskId taskId = TASK_ID;
+            createTask(sqlTaskManager, taskId, ImmutableSet.of(SPLIT), createInitialEmptyOutputBuffers(PARTITIONED).withBuffer(OUT, 0).withNoMoreBufferIds());
+
+            PagesResponse response = localTaskResults.get().getResults(0, new DataSize(1, Unit.MEGABYTE), "0-test_instance_id", timeoutExecutor).get();
+            assertEquals(response.getPages().size(), 1);
+            assertEquals(response.getPages().get(0).getPositionCount(), 1);
+            localTaskResults.get().acknowledge(response.getNextToken(), "0-test_instance_id");
+
+            while (!response.isClientComplete()) {
+                response = localTaskResults.get().getResults(response.getNextToken(), new DataSize(1, Unit.MEGABYTE), "0-test_instance_id", timeoutExecutor).get();
+            }
+            assertEquals(response.getPages().size(), 0);
+
+            localTaskResults.get().abort("0-test_instance_id").get();
+            TaskInfo taskInfo = sqlTaskManager.getTaskInfo(taskId, TaskState.RUNNING, "0-test_instance_id").get(1, TimeUnit.SECONDS);
+            assertEquals(taskInfo.getTaskStatus().getState(), TaskState.FINISHED);
+        }
+        finally {
+            timeoutExecutor.shutdownNow();
+        }
+    }
+
     @Test
     public void testCancel()
     {
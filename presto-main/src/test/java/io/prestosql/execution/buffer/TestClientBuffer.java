@@ -307,6 +307,41 @@ public class TestClientBuffer
         assertBufferDestroyed(buffer, 1);
     }
 
+    @Test
+    public void testWaitForPages()
+    {
+        ClientBuffer buffer = new ClientBuffer(BUFFER_ID);
+
+        // no pages yet
+        ListenableFuture<?> pagesAdded = buffer.waitForPages(0);
+        assertFalse(pagesAdded.isDone());
+        addPage(buffer, createPage(0));
+        assertTrue(pagesAdded.isDone());
+
+        // the page isn't acknowledged while waiting for the pages after it
+        pagesAdded = buffer.waitForPages(1);
+        assertFalse(pagesAdded.isDone());
+        assertBufferInfo(buffer, 1, 0);
+        assertTrue(buffer.waitForPages(0).isDone());
+
+        // a new wait of the client replaces the previous one
+        ListenableFuture<?> replacingPagesAdded = buffer.waitForPages(1);
+        assertTrue(pagesAdded.isDone());
+        assertFalse(replacingPagesAdded.isDone());
+
+        addPage(buffer, createPage(1));
+        assertTrue(replacingPagesAdded.isDone());
+        assertBufferInfo(buffer, 2, 0);
+        assertBufferResultEquals(TYPES, getBufferResult(buffer, 0, sizeOfPages(10), NO_WAIT), bufferResult(0, createPage(0), createPage(1)));
+
+        // no more pages frees the waiting client
+        pagesAdded = buffer.waitForPages(2);
+        assertFalse(pagesAdded.isDone());
+        buffer.setNoMorePages();
+        assertTrue(pagesAdded.isDone());
+        assertTrue(buffer.waitForPages(2).isDone());
+    }
+
     @Test
     public void testInvalidTokenFails()
     {
@@ -17,23 +17,31 @@ import com.google.common.collect.ImmutableList;
 import io.airlift.slice.DynamicSliceOutput;
 import io.airlift.slice.Slice;
 import io.hetu.core.transport.execution.buffer.PagesSerde;
+import io.hetu.core.transport.execution.buffer.PagesSerdeFactory;
+import io.hetu.core.transport.execution.buffer.SerializedPage;
 import io.prestosql.spi.Page;
 import io.prestosql.spi.block.Block;
 import io.prestosql.spi.block.BlockBuilder;
+import io.prestosql.spi.block.BlockEncodingSerde;
 import io.prestosql.spi.type.Type;
 import io.prestosql.testing.TestingPagesSerdeFactory;
 import org.testng.annotations.Test;
 
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 
+import static io.hetu.core.transport.execution.buffer.PageCompressionCodec.ADAPTIVE;
+import static io.hetu.core.transport.execution.buffer.PageCompressionCodec.LZ4;
 import static io.hetu.core.transport.execution.buffer.PagesSerdeUtil.readPages;
 import static io.hetu.core.transport.execution.buffer.PagesSerdeUtil.writePages;
+import static io.prestosql.metadata.MetadataManager.createTestMetadataManager;
 import static io.prestosql.operator.PageAssertions.assertPageEquals;
 import static io.prestosql.spi.type.BigintType.BIGINT;
 import static io.prestosql.spi.type.VarcharType.VARCHAR;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
 
 public class TestPagesSerde
 {
@@ -61,6 +69,101 @@ public class TestPagesSerde
         assertFalse(pageIterator.hasNext());
     }
 
+    @Test
+    public void testReusedBuffers()
+    {
+        PagesSerde serde = new TestingPagesSerdeFactory().createPagesSerde();
+        List<Type> types = ImmutableList.of(BIGINT, VARCHAR);
+        List<Page> pages = new ArrayList<>();
+        List<SerializedPage> serializedPages = new ArrayList<>();
+        for (int i = 1; i <= 10; i++) {
+            BlockBuilder bigintBuilder = BIGINT.createBlockBuilder(null, i * 100);
+            BlockBuilder varcharBuilder = VARCHAR.createBlockBuilder(null, i * 100);
+            for (int position = 0; position < i * 100; position++) {
+                BIGINT.writeLong(bigintBuilder, position % 10 + i);
+                VARCHAR.writeString(varcharBuilder, "value" + position % 10 + i);
+            }
+            Page page = new Page(bigintBuilder.build(), varcharBuilder.build());
+            pages.add(page);
+            // Pages returned by serialize stay valid when the serde is used again
+            serializedPages.add(serde.serialize(page));
+        }
+
+        List<Page> deserializedPages = new ArrayList<>();
+        for (SerializedPage serializedPage : serializedPages) {
+            assertTrue(serializedPage.isCompressed());
+            assertTrue(serializedPage.getSlice().isCompact());
+            deserializedPages.add(serde.deserialize(serializedPage));
+        }
+        for (int i = 0; i < pages.size(); i++) {
+            assertPageEquals(types, deserializedPages.get(i), pages.get(i));
+        }
+
+        // Transient pages are written out before the next page is serialized
+        DynamicSliceOutput sliceOutput = new DynamicSliceOutput(1024);
+        writePages(serde, sliceOutput, pages.iterator());
+        Iterator<Page> pageIterator = readPages(serde, sliceOutput.slice().getInput());
+        for (Page page : pages) {
+            assertPageEquals(types, pageIterator.next(), page);
+        }
+        assertFalse(pageIterator.hasNext());
+    }
+
+    @Test
+    public void testLz4Codec()
+    {
+        PagesSerde lz4Serde = new PagesSerdeFactory(createTestMetadataManager().getFunctionAndTypeManager().getBlockEncodingSerde(), true, LZ4, 1).createPagesSerde();
+        PagesSerde zstdSerde = new TestingPagesSerdeFactory().createPagesSerde();
+        Page page = createCompressiblePage(1000);
+
+        SerializedPage serializedPage = lz4Serde.serialize(page);
+        assertTrue(serializedPage.isCompressed());
+        assertTrue(serializedPage.isLz4Compressed());
+        // The codec is recorded in the page, so any receiver can decode it
+        assertPageEquals(ImmutableList.of(BIGINT, VARCHAR), zstdSerde.deserialize(serializedPage), page);
+        assertPageEquals(ImmutableList.of(BIGINT, VARCHAR), lz4Serde.deserialize(serializedPage), page);
+
+        serializedPage = zstdSerde.serialize(page);
+        assertTrue(serializedPage.isCompressed());
+        assertFalse(serializedPage.isLz4Compressed());
+    }
+
+    @Test
+    public void testAdaptiveCodec()
+    {
+        BlockEncodingSerde blockEncodingSerde = createTestMetadataManager().getFunctionAndTypeManager().getBlockEncodingSerde();
+        PagesSerde receiver = new TestingPagesSerdeFactory().createPagesSerde();
+        List<Type> types = ImmutableList.of(BIGINT, VARCHAR);
+        Page page = createCompressiblePage(1000);
+
+        // On a very slow network compression always pays off
+        PagesSerde slowNetworkSerde = new PagesSerdeFactory(blockEncodingSerde, true, ADAPTIVE, 1).createPagesSerde();
+        for (int i = 0; i < 100; i++) {
+            SerializedPage serializedPage = slowNetworkSerde.serialize(page);
+            assertTrue(serializedPage.isCompressed());
+            assertPageEquals(types, receiver.deserialize(serializedPage), page);
+        }
+
+        // On a very fast network, compression isn't worth the CPU time, and pages are sent as is after the first sample
+        PagesSerde fastNetworkSerde = new PagesSerdeFactory(blockEncodingSerde, true, ADAPTIVE, Long.MAX_VALUE).createPagesSerde();
+        for (int i = 0; i < 100; i++) {
+            SerializedPage serializedPage = fastNetworkSerde.serialize(page);
+            assertFalse(serializedPage.isCompressed());
+            assertPageEquals(types, receiver.deserialize(serializedPage), page);
+        }
+    }
+
+    private static Page createCompressiblePage(int positionCount)
+    {
+        BlockBuilder bigintBuilder = BIGINT.createBlockBuilder(null, positionCount);
+        BlockBuilder varcharBuilder = VARCHAR.createBlockBuilder(null, positionCount);
+        for (int position = 0; position < positionCount; position++) {
+            BIGINT.writeLong(bigintBuilder, position % 10);
+            VARCHAR.writeString(varcharBuilder, "value" + position % 10);
+        }
+        return new Page(bigintBuilder.build(), varcharBuilder.build());
+    }
+
     @Test
     public void testBigintSerializedSize()
     {
@@ -0,0 +1,290 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.prestosql.execution.resourcegroups;
+
+import com.google.common.collect.ImmutableSet;
+import io.airlift.units.DataSize;
+import io.prestosql.client.NodeVersion;
+import io.prestosql.execution.MockManagedQueryExecution;
+import io.prestosql.metadata.AllNodes;
+import io.prestosql.metadata.InternalNode;
+import io.prestosql.metadata.InternalNodeManager;
+import io.prestosql.metadata.NodeState;
+import io.prestosql.spi.connector.CatalogName;
+import io.prestosql.spi.statestore.StateCollection;
+import io.prestosql.spi.statestore.StateMap;
+import io.prestosql.spi.statestore.StateStore;
+import io.prestosql.spi.statestore.listener.MapListener;
+import io.prestosql.statestore.MockStateMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.VerboseMode;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
+import static io.airlift.units.DataSize.Unit.GIGABYTE;
+
+/**
+ * Measures how many queries per second can be admitted into a distributed resource group, when several coordinators
+ * share the running slots of the group through one state store
+ */
+@SuppressWarnings("MethodMayBeStatic")
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 10, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@BenchmarkMode(Mode.Throughput)
+public class BenchmarkDistributedResourceGroupAdmission
+{
+    @Benchmark
+    @Threads(8)
+    public Object admitQuery(CoordinatorData coordinator)
+    {
+        DistributedResourceGroupTemp group = coordinator.getGroup();
+        MockManagedQueryExecution query = new MockManagedQueryExecution(0);
+        query.setResourceGroupId(group.getId());
+        group.run(query);
+        query.complete();
+        return query;
+    }
+
+    @SuppressWarnings("FieldMayBeFinal")
+    @State(Scope.Benchmark)
+    public static class ClusterData
+    {
+        @Param({"1", "2", "4", "8"})
+        private int coordinators = 1;
+
+        private final AtomicInteger nextCoordinator = new AtomicInteger();
+        private final List<DistributedResourceGroupTemp> groups = new ArrayList<>();
+
+        @Setup
+        public void setup()
+        {
+            StateStore stateStore = new InMemoryStateStore();
+            Set<InternalNode> nodes = new ConcurrentHashMap<InternalNode, Boolean>().keySet(true);
+            for (int i = 0; i < coordinators; i++) {
+                InternalNode node = new InternalNode("coordinator" + i, URI.create("http://127.0.0." + (i + 1) + ":8080"), NodeVersion.UNKNOWN, true);
+                nodes.add(node);
+                DistributedResourceGroupTemp root = new DistributedResourceGroupTemp(Optional.empty(), "root", (group, export) -> {}, directExecutor(), stateStore, new ClusterNodeManager(node, nodes));
+                setLimits(root);
+                DistributedResourceGroupTemp dashboard = root.getOrCreateSubGroup("dashboard");
+                setLimits(dashboard);
+                groups.add(dashboard);
+            }
+        }
+
+        private static void setLimits(DistributedResourceGroupTemp group)
+        {
+            group.setSoftMemoryLimit(new DataSize(1, GIGABYTE));
+            group.setMaxQueuedQueries(1000);
+            group.setHardConcurrencyLimit(1000);
+        }
+
+        DistributedResourceGroupTemp nextGroup()
+        {
+            return groups.get(nextCoordinator.getAndIncrement() % groups.size());
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class CoordinatorData
+    {
+        private DistributedResourceGroupTemp group;
+
+        @Setup
+        public void setup(ClusterData cluster)
+        {
+            // benchmark threads are spread over the coordinators, threads of one coordinator submit queries concurrently
+            group = cluster.nextGroup();
+        }
+
+        public DistributedResourceGroupTemp getGroup()
+        {
+            return group;
+        }
+    }
+
+    private static class InMemoryStateStore
+            implements StateStore
+    {
+        private final Map<String, StateCollection> collections = new ConcurrentHashMap<>();
+        private final Map<String, Lock> locks = new ConcurrentHashMap<>();
+
+        @Override
+        public String getName()
+        {
+            return "in-memory";
+        }
+
+        @Override
+        public StateCollection getStateCollection(String name)
+        {
+            return collections.get(name);
+        }
+
+        @Override
+        public void removeStateCollection(String name)
+        {
+            collections.remove(name);
+        }
+
+        @Override
+        public Map<String, StateCollection> getStateCollections()
+        {
+            return collections;
+        }
+
+        @Override
+        public StateCollection createStateCollection(String name, StateCollection.Type type)
+        {
+            return getOrCreateStateCollection(name, type);
+        }
+
+        @Override
+        public StateCollection getOrCreateStateCollection(String name, StateCollection.Type type)
+        {
+            return collections.computeIfAbsent(name, key -> new MockStateMap<>(key, new ConcurrentHashMap<>()));
+        }
+
+        @Override
+        public <K, V> StateMap<K, V> createStateMap(String name, MapListener... listeners)
+        {
+            return (StateMap<K, V>) getOrCreateStateCollection(name, StateCollection.Type.MAP);
+        }
+
+        @Override
+        public Lock getLock(String lockKey)
+        {
+            return locks.computeIfAbsent(lockKey, key -> new ReentrantLock());
+        }
+
+        @Override
+        public long generateId()
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void registerNodeFailureHandler(Consumer nodeFailureHandler)
+        {
+        }
+
+        @Override
+        public void init()
+        {
+        }
+    }
+
+    private static class ClusterNodeManager
+            implements InternalNodeManager
+    {
+        private final InternalNode currentNode;
+        private final Set<InternalNode> coordinators;
+
+        ClusterNodeManager(InternalNode currentNode, Set<InternalNode> coordinators)
+        {
+            this.currentNode = currentNode;
+            this.coordinators = coordinators;
+        }
+
+        @Override
+        public Set<InternalNode> getNodes(NodeState state)
+        {
+            return ImmutableSet.copyOf(coordinators);
+        }
+
+        @Override
+        public Set<InternalNode> getActiveConnectorNodes(CatalogName catalogName)
+        {
+            return ImmutableSet.of();
+        }
+
+        @Override
+        public Set<InternalNode> getAllConnectorNodes(CatalogName catalogName)
+        {
+            return ImmutableSet.of();
+        }
+
+        @Override
+        public InternalNode getCurrentNode()
+        {
+            return currentNode;
+        }
+
+        @Override
+        public Set<InternalNode> getCoordinators()
+        {
+            return ImmutableSet.copyOf(coordinators);
+        }
+
+        @Override
+        public AllNodes getAllNodes()
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void refreshNodes()
+        {
+        }
+
+        @Override
+        public void addNodeChangeListener(Consumer<AllNodes> listener)
+        {
+        }
+
+        @Override
+        public void removeNodeChangeListener(Consumer<AllNodes> listener)
+        {
+        }
+    }
+
+    public static void main(String[] args)
+            throws Throwable
+    {
+        Options options = new OptionsBuilder()
+                .verbosity(VerboseMode.NORMAL)
+                .include(".*" + BenchmarkDistributedResourceGroupAdmission.class.getSimpleName() + ".*")
+                .build();
+        new Runner(options).run();
+    }
+}
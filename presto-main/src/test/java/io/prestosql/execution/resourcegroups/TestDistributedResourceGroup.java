@@ -16,6 +16,7 @@ package io.prestosql.execution.resourcegroups;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import io.airlift.json.ObjectMapperProvider;
 import io.airlift.units.DataSize;
@@ -63,10 +64,12 @@ import static io.prestosql.spi.resourcegroups.SchedulingPolicy.FAIR;
 import static io.prestosql.spi.resourcegroups.SchedulingPolicy.QUERY_PRIORITY;
 import static io.prestosql.spi.resourcegroups.SchedulingPolicy.WEIGHTED;
 import static io.prestosql.spi.resourcegroups.SchedulingPolicy.WEIGHTED_FAIR;
+import static io.prestosql.statestore.StateStoreConstants.RESOURCE_GROUP_SLOTS_COLLECTION_NAME;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.mockito.Matchers.anyObject;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.when;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertTrue;
@@ -111,6 +114,8 @@ public class TestDistributedResourceGroup
             Map<String, String> mockMap = new HashMap<>();
             MockStateMap<String, String> mockStateMap = new MockStateMap<>("127.0.0.1-resourceaggrstats", mockMap);
             when(statestore.getOrCreateStateCollection(anyString(), anyObject())).thenReturn(mockStateMap);
+            when(statestore.getOrCreateStateCollection(eq(RESOURCE_GROUP_SLOTS_COLLECTION_NAME), anyObject()))
+                    .thenReturn(new MockStateMap<>(RESOURCE_GROUP_SLOTS_COLLECTION_NAME, new HashMap<>()));
             when(internalNodeManager.getCurrentNode())
                     .thenReturn(new InternalNode("node1", URI.create("local://127.0.0.1"), NodeVersion.UNKNOWN, true));
             when(internalNodeManager.getCoordinators())
@@ -130,6 +135,46 @@ public class TestDistributedResourceGroup
         }
     }
 
+    @Test
+    public void testRunningSlotReservation()
+            throws JsonProcessingException
+    {
+        synchronized (lock) {
+            StateStore stateStore = Mockito.mock(StateStore.class);
+            Map<String, MockStateMap<String, String>> collections = new HashMap<>();
+            when(stateStore.getOrCreateStateCollection(anyString(), anyObject()))
+                    .then(invocation -> collections.computeIfAbsent((String) invocation.getArguments()[0], name -> new MockStateMap<>(name, new HashMap<>())));
+            InternalNode node1 = new InternalNode("node1", URI.create("local://127.0.0.1"), NodeVersion.UNKNOWN, true);
+            InternalNode node2 = new InternalNode("node2", URI.create("local://127.0.0.2"), NodeVersion.UNKNOWN, true);
+            InternalNodeManager nodeManager = Mockito.mock(InternalNodeManager.class);
+            when(nodeManager.getCurrentNode()).thenReturn(node1);
+            when(nodeManager.getCoordinators()).thenReturn(ImmutableSet.of(node1, node2));
+
+            DistributedResourceGroupTemp root = new DistributedResourceGroupTemp(Optional.empty(), "root", (group, export) -> {}, directExecutor(), stateStore, nodeManager);
+            resourceGroupBasicSetUp(root, ONE_MEGABYTE, 1, 1);
+            // node2 reserved the only running slot, but hasn't published its running query yet
+            Map<String, String> slots = new HashMap<>();
+            collections.put(RESOURCE_GROUP_SLOTS_COLLECTION_NAME, new MockStateMap<>(RESOURCE_GROUP_SLOTS_COLLECTION_NAME, slots));
+            slots.put("root", MAPPER.writeValueAsString(ImmutableMap.of(node2.getHostAndPort().toString(), 1)));
+
+            MockManagedQueryExecution query1 = new MockManagedQueryExecution(0);
+            query1.setResourceGroupId(root.getId());
+            root.run(query1);
+            assertEquals(query1.getState(), QUEUED);
+
+            // the slot of node2 is released once it leaves the cluster
+            when(nodeManager.getCoordinators()).thenReturn(ImmutableSet.of(node1));
+            updateQueryStateCache(query1);
+            root.processQueuedQueries();
+            assertEquals(query1.getState(), RUNNING);
+            assertEquals(slots.get("root"), MAPPER.writeValueAsString(ImmutableMap.of(node1.getHostAndPort().toString(), 1)));
+
+            query1.complete();
+            assertEquals(slots.get("root"), MAPPER.writeValueAsString(ImmutableMap.of(node1.getHostAndPort().toString(), 0)));
+            StateCacheStore.get().resetCachedStates();
+        }
+    }
+
     @Test
     public void testQueueFull()
     {
@@ -39,7 +39,9 @@ import io.prestosql.metadata.InternalNode;
 import io.prestosql.metadata.InternalNodeManager;
 import io.prestosql.metastore.HetuMetaStoreManager;
 import io.prestosql.seedstore.SeedStoreManager;
+import io.prestosql.snapshot.MarkerSplit;
 import io.prestosql.snapshot.QuerySnapshotManager;
+import io.prestosql.spi.HetuConstant;
 import io.prestosql.spi.QueryId;
 import io.prestosql.spi.connector.CatalogName;
 import io.prestosql.spi.connector.ConnectorPartitionHandle;
@@ -47,23 +49,34 @@ import io.prestosql.spi.connector.ConnectorSplit;
 import io.prestosql.spi.connector.ConnectorSplitSource;
 import io.prestosql.spi.connector.FixedSplitSource;
 import io.prestosql.spi.connector.QualifiedObjectName;
+import io.prestosql.spi.function.OperatorType;
+import io.prestosql.spi.heuristicindex.IndexClient;
+import io.prestosql.spi.metadata.TableHandle;
 import io.prestosql.spi.operator.ReuseExchangeOperator;
 import io.prestosql.spi.plan.JoinNode;
 import io.prestosql.spi.plan.PlanNodeId;
 import io.prestosql.spi.plan.Symbol;
 import io.prestosql.spi.plan.TableScanNode;
 import io.prestosql.spi.predicate.TupleDomain;
+import io.prestosql.spi.relation.ConstantExpression;
+import io.prestosql.spi.relation.RowExpression;
+import io.prestosql.spi.relation.VariableReferenceExpression;
+import io.prestosql.spi.service.PropertyService;
 import io.prestosql.split.ConnectorAwareSplitSource;
 import io.prestosql.split.SplitSource;
 import io.prestosql.sql.planner.Partitioning;
 import io.prestosql.sql.planner.PartitioningScheme;
 import io.prestosql.sql.planner.PlanFragment;
 import io.prestosql.sql.planner.StageExecutionPlan;
+import io.prestosql.sql.planner.iterative.rule.test.PlanBuilder;
 import io.prestosql.sql.planner.plan.PlanFragmentId;
 import io.prestosql.sql.planner.plan.RemoteSourceNode;
 import io.prestosql.statestore.LocalStateStoreProvider;
+import io.prestosql.testing.TestingHandle;
 import io.prestosql.testing.TestingMetadata.TestingColumnHandle;
+import io.prestosql.testing.TestingMetadata.TestingTableHandle;
 import io.prestosql.testing.TestingSplit;
+import io.prestosql.testing.TestingTransactionHandle;
 import io.prestosql.util.FinalizerService;
 import org.testng.annotations.AfterClass;
 import org.testng.annotations.BeforeClass;
@@ -75,15 +88,20 @@ import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static io.airlift.concurrent.Threads.daemonThreadsNamed;
+import static io.airlift.slice.Slices.utf8Slice;
 import static io.prestosql.SessionTestUtils.TEST_SESSION;
+import static io.prestosql.SystemSessionProperties.ENABLE_HEURISTICINDEX_FILTER;
+import static io.prestosql.SystemSessionProperties.SNAPSHOT_ENABLED;
 import static io.prestosql.execution.buffer.OutputBuffers.BufferType.PARTITIONED;
 import static io.prestosql.execution.buffer.OutputBuffers.createInitialEmptyOutputBuffers;
+import static io.prestosql.execution.scheduler.ScheduleResult.BlockedReason.WAITING_FOR_SOURCE;
 import static io.prestosql.execution.scheduler.SourcePartitionedScheduler.newSourcePartitionedSchedulerAsStageScheduler;
 import static io.prestosql.operator.StageExecutionDescriptor.ungroupedExecution;
 import static io.prestosql.spi.StandardErrorCode.NO_NODES_AVAILABLE;
@@ -101,6 +119,12 @@ import static java.lang.Integer.min;
 import static java.util.Objects.requireNonNull;
 import static java.util.concurrent.Executors.newCachedThreadPool;
 import static java.util.concurrent.Executors.newScheduledThreadPool;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertTrue;
@@ -129,6 +153,7 @@ public class TestSourcePartitionedScheduler
     @BeforeClass
     public void setUp()
     {
+        PropertyService.setProperty(HetuConstant.SPLIT_CACHE_MAP_ENABLED, false);
         finalizerService.start();
     }
 
@@ -420,6 +445,89 @@ public class TestSourcePartitionedScheduler
         secondStage.abort();
     }
 
+    @Test
+    public void testScheduleFilteredSplitBatchAsync()
+            throws Exception
+    {
+        CountDownLatch filterReleased = new CountDownLatch(1);
+        IndexClient indexClient = mock(IndexClient.class);
+        when(indexClient.getAllIndexRecords()).then(invocation -> {
+            filterReleased.await();
+            return ImmutableList.of();
+        });
+        HeuristicIndexerManager indexerManager = mock(HeuristicIndexerManager.class);
+        when(indexerManager.getIndexClient()).thenReturn(indexClient);
+
+        StageExecutionPlan plan = createFilteredPlan(createFixedSplitSource(2, TestingSplit::createRemoteSplit));
+        NodeTaskMap nodeTaskMap = new NodeTaskMap(finalizerService);
+        SqlStageExecution stage = createSqlStageExecution(plan, nodeTaskMap);
+        Session filterSession = testSessionBuilder()
+                .setSystemProperty(ENABLE_HEURISTICINDEX_FILTER, "true")
+                .build();
+        StageScheduler scheduler = getSourcePartitionedScheduler(plan, stage, nodeManager, nodeTaskMap, 2, filterSession, indexerManager);
+
+        try {
+            // the split batch is available but still being filtered, the scheduler does not wait for the filter
+            ScheduleResult scheduleResult = scheduler.schedule();
+            assertEquals(scheduleResult.getSplitsScheduled(), 0);
+            assertEquals(scheduleResult.getBlockedReason(), Optional.of(WAITING_FOR_SOURCE));
+            assertFalse(scheduleResult.getBlocked().isDone());
+
+            // the scheduler is woken up once the filtered batch is ready
+            filterReleased.countDown();
+            int splitsScheduled = 0;
+            do {
+                scheduleResult.getBlocked().get(10, SECONDS);
+                scheduleResult = scheduler.schedule();
+                splitsScheduled += scheduleResult.getSplitsScheduled();
+            }
+            while (!scheduleResult.isFinished());
+            assertEquals(splitsScheduled, 2);
+            assertPartitionedSplitCount(stage, 2);
+            verify(indexClient, atLeastOnce()).getAllIndexRecords();
+        }
+        finally {
+            filterReleased.countDown();
+            stage.abort();
+        }
+    }
+
+    @Test
+    public void testMarkerSplitBypassesSplitFilter()
+            throws Exception
+    {
+        // filtering would never finish, so a filtered marker would never be scheduled
+        CountDownLatch filterReleased = new CountDownLatch(1);
+        IndexClient indexClient = mock(IndexClient.class);
+        when(indexClient.getAllIndexRecords()).then(invocation -> {
+            filterReleased.await();
+            return ImmutableList.of();
+        });
+        HeuristicIndexerManager indexerManager = mock(HeuristicIndexerManager.class);
+        when(indexerManager.getIndexClient()).thenReturn(indexClient);
+
+        StageExecutionPlan plan = createFilteredPlan(createFixedSplitSource(1, () -> MarkerSplit.snapshotSplit(CONNECTOR_ID, 1)));
+        NodeTaskMap nodeTaskMap = new NodeTaskMap(finalizerService);
+        SqlStageExecution stage = createSqlStageExecution(plan, nodeTaskMap);
+        Session snapshotSession = testSessionBuilder()
+                .setSystemProperty(ENABLE_HEURISTICINDEX_FILTER, "true")
+                .setSystemProperty(SNAPSHOT_ENABLED, "true")
+                .build();
+        StageScheduler scheduler = getSourcePartitionedScheduler(plan, stage, nodeManager, nodeTaskMap, 2, snapshotSession, indexerManager);
+
+        try {
+            // the marker is sent to all nodes right away
+            ScheduleResult scheduleResult = scheduler.schedule();
+            assertEquals(scheduleResult.getSplitsScheduled(), 3);
+            assertEquals(scheduleResult.getNewTasks().size(), 3);
+            verify(indexerManager, never()).getIndexClient();
+        }
+        finally {
+            filterReleased.countDown();
+            stage.abort();
+        }
+    }
+
     private static void assertPartitionedSplitCount(SqlStageExecution stage, int expectedPartitionedSplitCount)
     {
         assertEquals(stage.getAllTasks().stream().mapToInt(RemoteTask::getPartitionedSplitCount).sum(), expectedPartitionedSplitCount);
@@ -446,6 +554,19 @@ public class TestSourcePartitionedScheduler
             InternalNodeManager nodeManager,
             NodeTaskMap nodeTaskMap,
             int splitBatchSize)
+    {
+        return getSourcePartitionedScheduler(plan, stage, nodeManager, nodeTaskMap, splitBatchSize, session,
+                new HeuristicIndexerManager(new FileSystemClientManager(), new HetuMetaStoreManager()));
+    }
+
+    private static StageScheduler getSourcePartitionedScheduler(
+            StageExecutionPlan plan,
+            SqlStageExecution stage,
+            InternalNodeManager nodeManager,
+            NodeTaskMap nodeTaskMap,
+            int splitBatchSize,
+            Session session,
+            HeuristicIndexerManager heuristicIndexerManager)
     {
         NodeSchedulerConfig nodeSchedulerConfig = new NodeSchedulerConfig()
                 .setIncludeCoordinator(false)
@@ -457,7 +578,7 @@ public class TestSourcePartitionedScheduler
         SplitSource splitSource = Iterables.getOnlyElement(plan.getSplitSources().values());
         SplitPlacementPolicy placementPolicy = new DynamicSplitPlacementPolicy(nodeScheduler.createNodeSelector(splitSource.getCatalogName(), false, null), stage::getAllTasks);
         return newSourcePartitionedSchedulerAsStageScheduler(stage, sourceNode, splitSource,
-                placementPolicy, splitBatchSize, session, new HeuristicIndexerManager(new FileSystemClientManager(), new HetuMetaStoreManager()));
+                placementPolicy, splitBatchSize, session, heuristicIndexerManager);
     }
 
     private static StageExecutionPlan createPlan(ConnectorSplitSource splitSource)
@@ -465,12 +586,41 @@ public class TestSourcePartitionedScheduler
         Symbol symbol = new Symbol("column");
 
         // table scan with splitCount splits
-        PlanNodeId tableScanNodeId = new PlanNodeId("plan_id");
         TableScanNode tableScan = TableScanNode.newInstance(
-                tableScanNodeId,
+                new PlanNodeId("plan_id"),
                 TEST_TABLE_HANDLE,
                 ImmutableList.of(symbol),
                 ImmutableMap.of(symbol, new TestingColumnHandle("column")), ReuseExchangeOperator.STRATEGY.REUSE_STRATEGY_DEFAULT, new UUID(0, 0), 0, false);
+        return createPlan(splitSource, tableScan);
+    }
+
+    /**
+     * Plan with a pushed down predicate on a table that supports split filtering with heuristic indices
+     */
+    private static StageExecutionPlan createFilteredPlan(ConnectorSplitSource splitSource)
+    {
+        Symbol symbol = new Symbol("column");
+        TableHandle table = new TableHandle(CONNECTOR_ID, new FilterSupportedTableHandle(), TestingTransactionHandle.create(), Optional.of(TestingHandle.INSTANCE));
+        RowExpression predicate = PlanBuilder.comparison(OperatorType.EQUAL, new VariableReferenceExpression("column", VARCHAR), new ConstantExpression(utf8Slice("value"), VARCHAR));
+
+        TableScanNode tableScan = new TableScanNode(
+                new PlanNodeId("plan_id"),
+                table,
+                ImmutableList.of(symbol),
+                ImmutableMap.of(symbol, new TestingColumnHandle("column")),
+                TupleDomain.all(),
+                Optional.of(predicate),
+                ReuseExchangeOperator.STRATEGY.REUSE_STRATEGY_DEFAULT,
+                new UUID(0, 0),
+                0,
+                false);
+        return createPlan(splitSource, tableScan);
+    }
+
+    private static StageExecutionPlan createPlan(ConnectorSplitSource splitSource, TableScanNode tableScan)
+    {
+        Symbol symbol = Iterables.getOnlyElement(tableScan.getOutputSymbols());
+        PlanNodeId tableScanNodeId = tableScan.getId();
 
         RemoteSourceNode remote = new RemoteSourceNode(new PlanNodeId("remote_id"), new PlanFragmentId("plan_fragment_id"), ImmutableList.of(), Optional.empty(), GATHER);
         PlanFragment testFragment = new PlanFragment(
@@ -541,6 +691,16 @@ public class TestSourcePartitionedScheduler
         return stage;
     }
 
+    private static class FilterSupportedTableHandle
+            extends TestingTableHandle
+    {
+        @Override
+        public boolean isFilterSupported()
+        {
+            return true;
+        }
+    }
+
     private static class QueuedSplitSource
             implements ConnectorSplitSource
     {
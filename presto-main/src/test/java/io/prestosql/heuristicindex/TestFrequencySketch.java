@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.prestosql.heuristicindex;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class TestFrequencySketch
+{
+    @Test
+    public void testIncrement()
+    {
+        FrequencySketch sketch = new FrequencySketch(1024);
+        assertEquals(sketch.frequency("a"), 0);
+
+        sketch.increment("a");
+        sketch.increment("a");
+        sketch.increment("b");
+        assertEquals(sketch.frequency("a"), 2);
+        assertEquals(sketch.frequency("b"), 1);
+        assertEquals(sketch.frequency("c"), 0);
+    }
+
+    @Test
+    public void testSaturation()
+    {
+        FrequencySketch sketch = new FrequencySketch(1024);
+        for (int i = 0; i < 100; i++) {
+            sketch.increment("a");
+        }
+        assertEquals(sketch.frequency("a"), FrequencySketch.MAX_FREQUENCY);
+    }
+
+    @Test
+    public void testAging()
+    {
+        FrequencySketch sketch = new FrequencySketch(1024);
+        for (int i = 0; i < 100; i++) {
+            sketch.increment("hot");
+        }
+        assertEquals(sketch.frequency("hot"), FrequencySketch.MAX_FREQUENCY);
+
+        // ten accesses per counter trigger a reset, which halves all counters
+        for (int i = 0; i < 10 * 1024; i++) {
+            sketch.increment("key" + i);
+        }
+        assertTrue(sketch.frequency("hot") < FrequencySketch.MAX_FREQUENCY);
+    }
+}
@@ -14,6 +14,9 @@
  */
 package io.prestosql.heuristicindex;
 
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.collect.ImmutableList;
 import io.airlift.units.DataSize;
 import io.airlift.units.Duration;
 import io.prestosql.execution.Lifespan;
@@ -22,15 +25,20 @@ import io.prestosql.spi.HetuConstant;
 import io.prestosql.spi.connector.CatalogName;
 import io.prestosql.spi.connector.ConnectorSplit;
 import io.prestosql.spi.heuristicindex.Index;
+import io.prestosql.spi.heuristicindex.IndexCacheKey;
 import io.prestosql.spi.heuristicindex.IndexMetadata;
+import io.prestosql.spi.heuristicindex.IndexRecord;
 import io.prestosql.spi.service.PropertyService;
 import io.prestosql.testing.NoOpIndexClient;
 import org.mockito.internal.stubbing.answers.Returns;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
 
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 
@@ -63,6 +71,7 @@ public class TestIndexCache
         PropertyService.setProperty(HetuConstant.FILTER_CACHE_LOADING_DELAY, new Duration(loadDelay, TimeUnit.MILLISECONDS));
         PropertyService.setProperty(HetuConstant.FILTER_CACHE_LOADING_THREADS, 2L);
         PropertyService.setProperty(HetuConstant.FILTER_CACHE_SOFT_REFERENCE, false);
+        PropertyService.setProperty(HetuConstant.FILTER_CACHE_ADMISSION_ENABLED, true);
 
         CatalogName catalogName = new CatalogName(catalog);
         connectorSplit = mock(ConnectorSplit.class);
@@ -144,11 +153,50 @@ public class TestIndexCache
         assertEquals(actualSplitIndex.size(), 0);
     }
 
+    @Test
+    public void testReloadedIndexKeepsItsWeight() throws Exception
+    {
+        IndexMetadata indexMetadata = mock(IndexMetadata.class);
+        when(indexMetadata.getLastModifiedTime()).thenReturn(testLastModifiedTime);
+        Index index = mock(Index.class);
+        when(indexMetadata.getIndex()).thenReturn(index);
+        when(index.getMemoryUsage()).thenReturn(new DataSize(1, KILOBYTE).toBytes());
+
+        // every load returns a new value, like loading the index from the index store does
+        IndexCacheLoader indexCacheLoader = mock(IndexCacheLoader.class);
+        when(indexCacheLoader.load(any())).thenAnswer(invocation -> new LinkedList<>(Collections.singletonList(indexMetadata)));
+
+        IndexCache indexCache = new IndexCache(indexCacheLoader, new NoOpIndexClient());
+        indexCache.getIndices(table, column, split);
+        Thread.sleep(loadDelay + 500);
+        assertEquals(indexCache.getIndices(table, column, split).size(), numberOfIndexTypes);
+        assertEquals(indexCache.getResidentWeight(), numberOfIndexTypes);
+
+        // evict the indices and reload them under the same keys
+        Map<IndexCacheKey, List<IndexMetadata>> evicted = new HashMap<>(indexCache.getCachedIndices());
+        indexCache.getCachedIndices().clear();
+        assertEquals(indexCache.getResidentWeight(), 0);
+        indexCache.getIndices(table, column, split);
+        Thread.sleep(loadDelay + 500);
+        assertEquals(indexCache.getIndices(table, column, split).size(), numberOfIndexTypes);
+        assertEquals(indexCache.getResidentWeight(), numberOfIndexTypes);
+
+        // the eviction is notified again after the reload, as it is when the notification is delivered late
+        for (Map.Entry<IndexCacheKey, List<IndexMetadata>> entry : evicted.entrySet()) {
+            indexCache.onRemoval(RemovalNotification.create(entry.getKey(), entry.getValue(), RemovalCause.SIZE));
+        }
+        assertEquals(indexCache.getResidentWeight(), numberOfIndexTypes);
+    }
+
     @Test
     public void testIndexCacheEviction() throws Exception
     {
         IndexCacheLoader indexCacheLoader = mock(IndexCacheLoader.class);
         IndexCache indexCache = new IndexCache(indexCacheLoader, new NoOpIndexClient());
+        // plain LRU eviction, admission would keep split1 indices in the cache, see testIndexCacheAdmission
+        indexCache.setAdmissionEnabled(false);
+        Split split1 = createSplit(testPath);
+        Split split2 = createSplit(testPath2);
 
         // get index for split1
         IndexMetadata indexMetadata1 = mock(IndexMetadata.class);
@@ -162,16 +210,15 @@ public class TestIndexCache
         when(indexCacheLoader.load(any())).then(new Returns(expectedIndices1));
 
         // each index is has memory usage of 2, and limit is 2*types of idx, so all should be loaded
-        List<IndexMetadata> actualSplitIndex = indexCache.getIndices(table, column, split);
+        List<IndexMetadata> actualSplitIndex = indexCache.getIndices(table, column, split1);
         assertEquals(actualSplitIndex.size(), 0);
         Thread.sleep(loadDelay + 500);
-        actualSplitIndex = indexCache.getIndices(table, column, split);
+        actualSplitIndex = indexCache.getIndices(table, column, split1);
         assertEquals(actualSplitIndex.size(), numberOfIndexTypes);
         assertEquals(actualSplitIndex.get(0), indexMetadata1);
         assertEquals(indexCache.getCacheSize(), numberOfIndexTypes);
 
         // get index for split2
-        when(connectorSplit.getFilePath()).thenReturn(testPath2);
         IndexMetadata indexMetadata2 = mock(IndexMetadata.class);
         when(indexMetadata2.getLastModifiedTime()).thenReturn(testLastModifiedTime);
         Index index2 = mock(Index.class);
@@ -183,19 +230,124 @@ public class TestIndexCache
         expectedIndices2.add(indexMetadata2);
         when(indexCacheLoader.load(any())).then(new Returns(expectedIndices2));
 
-        actualSplitIndex = indexCache.getIndices(table, column, split);
+        actualSplitIndex = indexCache.getIndices(table, column, split2);
         assertEquals(actualSplitIndex.size(), 0);
         assertEquals(indexCache.getCacheSize(), numberOfIndexTypes);
         Thread.sleep(loadDelay + 500);
-        actualSplitIndex = indexCache.getIndices(table, column, split);
+        actualSplitIndex = indexCache.getIndices(table, column, split2);
         assertEquals(actualSplitIndex.size(), numberOfIndexTypes);
         assertEquals(actualSplitIndex.get(0), indexMetadata2);
         assertEquals(indexCache.getCacheSize(), numberOfIndexTypes);
 
         // get index for split1
-        when(connectorSplit.getFilePath()).thenReturn(testPath);
-        actualSplitIndex = indexCache.getIndices(table, column, split);
+        actualSplitIndex = indexCache.getIndices(table, column, split1);
         assertEquals(actualSplitIndex.size(), 0);
         assertEquals(indexCache.getCacheSize(), numberOfIndexTypes);
     }
+
+    @Test
+    public void testIndexCacheAdmission() throws Exception
+    {
+        IndexCacheLoader indexCacheLoader = mock(IndexCacheLoader.class);
+        IndexCache indexCache = new IndexCache(indexCacheLoader, new NoOpIndexClient());
+        IndexMetadata indexMetadata = mock(IndexMetadata.class);
+        when(indexMetadata.getLastModifiedTime()).thenReturn(testLastModifiedTime);
+        Index index = mock(Index.class);
+        when(indexMetadata.getIndex()).thenReturn(index);
+        when(index.getMemoryUsage()).thenReturn(new DataSize(2, KILOBYTE).toBytes());
+        List<IndexMetadata> expectedIndices = new LinkedList<>();
+        expectedIndices.add(indexMetadata);
+        when(indexCacheLoader.load(any())).then(new Returns(expectedIndices));
+
+        // each split fills the whole cache, so the cache is full once the first split is loaded
+        Split split1 = createSplit("/user/hive/schema.db/table/101.orc");
+        Split split2 = createSplit("/user/hive/schema.db/table/102.orc");
+        indexCache.getIndices(table, column, split1);
+        Thread.sleep(loadDelay + 500);
+        assertEquals(indexCache.getIndices(table, column, split1).size(), numberOfIndexTypes);
+        assertEquals(indexCache.getAdmissionRejectedCount(), 0);
+
+        // split2 would evict split1 indices, which have been used twice, so it isn't loaded until it is used more often
+        assertEquals(indexCache.getIndices(table, column, split2).size(), 0);
+        assertEquals(indexCache.getIndices(table, column, split2).size(), 0);
+        Thread.sleep(loadDelay + 500);
+        assertEquals(indexCache.getAdmissionRejectedCount(), numberOfIndexTypes * 2);
+        assertEquals(indexCache.getIndices(table, column, split1).size(), numberOfIndexTypes);
+
+        // split1 has now been used three times, split2 is admitted on its fourth use
+        assertEquals(indexCache.getIndices(table, column, split2).size(), 0);
+        assertEquals(indexCache.getIndices(table, column, split2).size(), 0);
+        Thread.sleep(loadDelay + 500);
+        assertEquals(indexCache.getIndices(table, column, split2).size(), numberOfIndexTypes);
+        assertEquals(indexCache.getAdmissionRejectedCount(), numberOfIndexTypes * 3);
+        assertEquals(indexCache.getCacheSize(), numberOfIndexTypes);
+    }
+
+    @Test
+    public void testHotIndexSurvivesColdScan() throws Exception
+    {
+        IndexCacheLoader indexCacheLoader = mock(IndexCacheLoader.class);
+        IndexCache indexCache = new IndexCache(indexCacheLoader, new NoOpIndexClient());
+        IndexMetadata indexMetadata = mock(IndexMetadata.class);
+        when(indexMetadata.getLastModifiedTime()).thenReturn(testLastModifiedTime);
+        Index index = mock(Index.class);
+        when(indexMetadata.getIndex()).thenReturn(index);
+        when(index.getMemoryUsage()).thenReturn(new DataSize(2, KILOBYTE).toBytes());
+        List<IndexMetadata> expectedIndices = new LinkedList<>();
+        expectedIndices.add(indexMetadata);
+        when(indexCacheLoader.load(any())).then(new Returns(expectedIndices));
+
+        // the hot split fills the whole cache and is used repeatedly
+        Split hotSplit = createSplit("/user/hive/schema.db/table/hot.orc");
+        indexCache.getIndices(table, column, hotSplit);
+        Thread.sleep(loadDelay + 500);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(indexCache.getIndices(table, column, hotSplit).size(), numberOfIndexTypes);
+        }
+
+        // a scan touching many other splits once doesn't push the hot indices out
+        int coldSplits = 10;
+        for (int i = 0; i < coldSplits; i++) {
+            assertEquals(indexCache.getIndices(table, column, createSplit("/user/hive/schema.db/table/cold" + i + ".orc")).size(), 0);
+        }
+        Thread.sleep(loadDelay + 500);
+        assertEquals(indexCache.getAdmissionRejectedCount(), numberOfIndexTypes * coldSplits);
+        assertEquals(indexCache.getIndices(table, column, hotSplit).size(), numberOfIndexTypes);
+        assertEquals(indexCache.getEvictionCount(), 0);
+    }
+
+    @Test
+    public void testPinnedIndex() throws Exception
+    {
+        IndexMetadata indexMetadata = mock(IndexMetadata.class);
+        when(indexMetadata.getLastModifiedTime()).thenReturn(testLastModifiedTime);
+        Index index = mock(Index.class);
+        when(indexMetadata.getIndex()).thenReturn(index);
+        when(index.getMemoryUsage()).thenReturn(new DataSize(100, KILOBYTE).toBytes());
+        List<IndexMetadata> expectedIndices = new LinkedList<>();
+        expectedIndices.add(indexMetadata);
+        IndexCacheLoader indexCacheLoader = mock(IndexCacheLoader.class);
+        when(indexCacheLoader.load(any())).then(new Returns(expectedIndices));
+
+        String qualifiedTable = catalog + "." + table;
+        IndexRecord record = new IndexRecord("idx", "user", qualifiedTable, new String[] {column}, "BLOOM", 0L,
+                ImmutableList.of("level=TABLE"), ImmutableList.of());
+        IndexCache indexCache = new IndexCache(indexCacheLoader, new NoOpIndexClient());
+        indexCache.pinIndex(record);
+        Thread.sleep(500);
+
+        // the pinned index is larger than the cache but is neither loaded into nor evicted from it
+        assertEquals(indexCache.getPinnedSize(), 1);
+        assertEquals(indexCache.getCacheSize(), 0);
+        List<IndexMetadata> actualIndices = indexCache.getIndices(qualifiedTable, column, "BLOOM", Collections.emptySet(), testLastModifiedTime, Collections.emptyMap());
+        assertEquals(actualIndices, expectedIndices);
+    }
+
+    private Split createSplit(String path)
+    {
+        ConnectorSplit testConnectorSplit = mock(ConnectorSplit.class);
+        when(testConnectorSplit.getFilePath()).thenReturn(path);
+        when(testConnectorSplit.getLastModifiedTime()).thenReturn(testLastModifiedTime);
+        return new Split(new CatalogName(catalog), testConnectorSplit, mock(Lifespan.class));
+    }
 }
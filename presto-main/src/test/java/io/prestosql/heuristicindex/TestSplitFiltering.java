@@ -15,6 +15,7 @@
 package io.prestosql.heuristicindex;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import io.airlift.units.Duration;
 import io.prestosql.execution.Lifespan;
@@ -27,6 +28,9 @@ import io.prestosql.spi.HetuConstant;
 import io.prestosql.spi.connector.CatalogName;
 import io.prestosql.spi.connector.ColumnHandle;
 import io.prestosql.spi.function.OperatorType;
+import io.prestosql.spi.heuristicindex.Index;
+import io.prestosql.spi.heuristicindex.IndexFilter;
+import io.prestosql.spi.heuristicindex.IndexMetadata;
 import io.prestosql.spi.heuristicindex.Pair;
 import io.prestosql.spi.plan.Symbol;
 import io.prestosql.spi.relation.ConstantExpression;
@@ -46,12 +50,18 @@ import org.testng.annotations.Test;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import static io.airlift.concurrent.MoreFutures.getFutureValue;
 import static io.airlift.slice.Slices.utf8Slice;
 import static io.prestosql.heuristicindex.SplitFiltering.getAllColumns;
 import static io.prestosql.heuristicindex.SplitFiltering.rangeSearch;
@@ -59,6 +69,10 @@ import static io.prestosql.metadata.MetadataManager.createTestMetadataManager;
 import static io.prestosql.spi.type.BigintType.BIGINT;
 import static io.prestosql.spi.type.BooleanType.BOOLEAN;
 import static io.prestosql.sql.analyzer.TypeSignatureProvider.fromTypes;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNotNull;
@@ -105,6 +119,129 @@ public class TestSplitFiltering
                 SplitFiltering.getFullyQualifiedName(stage), pair.getSecond(), nextSplits, indexerManager);
         assertNotNull(filteredSplits);
         assertEquals(filteredSplits.size(), 4);
+
+        SplitSource.SplitBatch filteredBatch = getFutureValue(SplitFiltering.getFilteredSplitBatch(pair.getFirst(),
+                SplitFiltering.getFullyQualifiedName(stage), pair.getSecond(), nextSplits, indexerManager));
+        assertEquals(filteredBatch.getSplits(), filteredSplits);
+        assertTrue(filteredBatch.isLastBatch());
+    }
+
+    /**
+     * Splits of the same file are matched against a single index lookup of that file,
+     * each split only sees the stripes within its own range.
+     */
+    @Test
+    public void testFilterUsingForwardIndexPerFile()
+    {
+        String table = "catalog.schema.table";
+        String fileA = "hdfs://hacluster/user/hive/warehouse/table/000000_0";
+        String fileB = "hdfs://hacluster/user/hive/warehouse/table/000001_0";
+        IndexMetadata stripe0 = createIndexMetadata(table, fileA, 0);
+        IndexMetadata stripe100 = createIndexMetadata(table, fileA, 100);
+        IndexMetadata stripe200 = createIndexMetadata(table, fileA, 200);
+
+        Map<String, AtomicInteger> lookups = new ConcurrentHashMap<>();
+        IndexCache cache = mock(IndexCache.class);
+        when(cache.getIndices(eq(table), eq("a"), any(Split.class), any())).then(invocation -> {
+            String path = ((Split) invocation.getArguments()[2]).getConnectorSplit().getFilePath();
+            lookups.computeIfAbsent(path, k -> new AtomicInteger()).incrementAndGet();
+            // returned out of order, the lookup sorts the indices of a file by stripe
+            return path.equals(fileA) ? new LinkedList<>(ImmutableList.of(stripe200, stripe0, stripe100)) : new LinkedList<>();
+        });
+
+        // only the stripe at offset 0 contains matching values
+        HeuristicIndexerManager indexerManager = mock(HeuristicIndexerManager.class);
+        when(indexerManager.getIndexFilter(any())).then(invocation -> new StripeIndexFilter((Map<String, List<IndexMetadata>>) invocation.getArguments()[0], stripe0));
+
+        Split splitA0 = createSplit(fileA, 0, 50);
+        Split splitA100 = createSplit(fileA, 100, 150);
+        Split splitA200 = createSplit(fileA, 200, 250);
+        Split splitB0 = createSplit(fileB, 0, 50);
+        RowExpression expression = PlanBuilder.comparison(OperatorType.EQUAL, new VariableReferenceExpression("a", VarcharType.VARCHAR), new ConstantExpression(utf8Slice("test_value"), VarcharType.VARCHAR));
+
+        List<Split> filteredSplits = SplitFiltering.filterUsingForwardIndex(expression, ImmutableList.of(splitA0, splitA100, splitB0, splitA200), table,
+                ImmutableSet.of("a"), ImmutableMap.of(), indexerManager, cache);
+
+        // file B has no index, so its split is kept
+        assertEquals(filteredSplits, ImmutableList.of(splitA0, splitB0));
+        assertEquals(lookups.keySet(), ImmutableSet.of(fileA, fileB));
+        assertEquals(lookups.get(fileA).get(), 1);
+        assertEquals(lookups.get(fileB).get(), 1);
+    }
+
+    @Test
+    public void testForwardIndexLookupsAreBounded()
+    {
+        String table = "catalog.schema.table";
+        int processors = Runtime.getRuntime().availableProcessors();
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        IndexCache cache = mock(IndexCache.class);
+        when(cache.getIndices(eq(table), eq("a"), any(Split.class), any())).then(invocation -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(10);
+            }
+            finally {
+                running.decrementAndGet();
+            }
+            return new LinkedList<>();
+        });
+
+        List<Split> splits = new ArrayList<>();
+        for (int i = 0; i < processors * 4; i++) {
+            splits.add(createSplit("hdfs://hacluster/user/hive/warehouse/table/00000" + i + "_0", 0, 50));
+        }
+        RowExpression expression = PlanBuilder.comparison(OperatorType.EQUAL, new VariableReferenceExpression("a", VarcharType.VARCHAR), new ConstantExpression(utf8Slice("test_value"), VarcharType.VARCHAR));
+
+        // lookups of two batches run at the same time share the bound
+        List<CompletableFuture<List<Split>>> batches = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            batches.add(CompletableFuture.supplyAsync(() -> SplitFiltering.filterUsingForwardIndex(expression, splits, table,
+                    ImmutableSet.of("a"), ImmutableMap.of(), mock(HeuristicIndexerManager.class), cache)));
+        }
+        for (CompletableFuture<List<Split>> batch : batches) {
+            assertEquals(getFutureValue(batch), splits);
+        }
+        assertTrue(maxRunning.get() >= 1);
+        assertTrue(maxRunning.get() <= processors, "index lookups running at once: " + maxRunning.get());
+    }
+
+    private static IndexMetadata createIndexMetadata(String table, String path, long splitStart)
+    {
+        Index index = mock(Index.class);
+        when(index.getId()).thenReturn("MINMAX");
+        return new IndexMetadata(index, table, new String[] {"a"}, "/tmp/hetu/indices", path, splitStart, 0);
+    }
+
+    private static Split createSplit(String path, long start, long end)
+    {
+        return new Split(new CatalogName("bogus_catalog"), new MockSplit(path, start, end, 0), Lifespan.taskWide());
+    }
+
+    private static class StripeIndexFilter
+            implements IndexFilter
+    {
+        private final Map<String, List<IndexMetadata>> indices;
+        private final IndexMetadata matchingStripe;
+
+        StripeIndexFilter(Map<String, List<IndexMetadata>> indices, IndexMetadata matchingStripe)
+        {
+            this.indices = indices;
+            this.matchingStripe = matchingStripe;
+        }
+
+        @Override
+        public boolean matches(Object expression)
+        {
+            return indices.values().stream().anyMatch(stripes -> stripes.contains(matchingStripe));
+        }
+
+        @Override
+        public <I extends Comparable<I>> Iterator<I> lookUp(Object expression)
+        {
+            throw new UnsupportedOperationException();
+        }
     }
 
     /**
@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.prestosql.operator;
+
+import io.airlift.json.JsonCodec;
+import io.airlift.units.Duration;
+import io.prestosql.operator.CreateIndexOperator.CreateIndexInfo;
+import org.testng.annotations.Test;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class TestCreateIndexInfo
+{
+    @Test
+    public void testMerge()
+    {
+        CreateIndexInfo base = new CreateIndexInfo(1000, 10, 1, new Duration(1, SECONDS), new Duration(200, MILLISECONDS));
+        CreateIndexInfo other = new CreateIndexInfo(3000, 30, 2, new Duration(3, SECONDS), new Duration(300, MILLISECONDS));
+
+        CreateIndexInfo merged = base.mergeWith(other);
+        assertEquals(merged.getIndexedRows(), 4000);
+        assertEquals(merged.getIndexedPages(), 40);
+        assertEquals(merged.getPersistedWriters(), 3);
+        assertEquals(merged.getIndexingWallTime().getValue(MILLISECONDS), 4000.0, 0.001);
+        assertEquals(merged.getPersistingWallTime().getValue(MILLISECONDS), 500.0, 0.001);
+        assertEquals(merged.getIndexingThroughput(), 1000.0, 0.001);
+    }
+
+    @Test
+    public void testThroughputWithoutIndexingTime()
+    {
+        CreateIndexInfo info = new CreateIndexInfo(0, 0, 0, new Duration(0, SECONDS), new Duration(0, SECONDS));
+        assertEquals(info.getIndexingThroughput(), 0.0);
+    }
+
+    @Test
+    public void testJson()
+    {
+        JsonCodec<OperatorInfo> codec = JsonCodec.jsonCodec(OperatorInfo.class);
+        CreateIndexInfo expected = new CreateIndexInfo(1000, 10, 1, new Duration(2, SECONDS), new Duration(200, MILLISECONDS));
+
+        OperatorInfo actual = codec.fromJson(codec.toJson(expected));
+        assertTrue(actual instanceof CreateIndexInfo);
+        CreateIndexInfo info = (CreateIndexInfo) actual;
+        assertEquals(info.getIndexedRows(), 1000);
+        assertEquals(info.getIndexedPages(), 10);
+        assertEquals(info.getPersistedWriters(), 1);
+        assertEquals(info.getIndexingWallTime(), expected.getIndexingWallTime());
+        assertEquals(info.getPersistingWallTime(), expected.getPersistingWallTime());
+        assertEquals(info.getIndexingThroughput(), 500.0, 0.001);
+    }
+}
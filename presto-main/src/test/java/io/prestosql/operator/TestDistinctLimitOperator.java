@@ -19,20 +19,36 @@ import io.prestosql.RowPagesBuilder;
 import io.prestosql.spi.Page;
 import io.prestosql.spi.plan.PlanNodeId;
 import io.prestosql.spi.type.Type;
+import io.prestosql.spiller.FileSingleStreamSpillerFactory;
+import io.prestosql.spiller.GenericPartitioningSpillerFactory;
+import io.prestosql.spiller.NodeSpillConfig;
+import io.prestosql.spiller.PartitioningSpillerFactory;
+import io.prestosql.spiller.SpillerStats;
+import io.prestosql.sql.analyzer.FeaturesConfig;
 import io.prestosql.sql.gen.JoinCompiler;
 import io.prestosql.testing.MaterializedResult;
+import org.testng.annotations.AfterClass;
 import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.stream.LongStream;
 
+import static com.google.common.collect.ImmutableSet.toImmutableSet;
+import static com.google.common.io.MoreFiles.deleteRecursively;
+import static com.google.common.io.RecursiveDeleteOption.ALLOW_INSECURE;
 import static io.airlift.concurrent.Threads.daemonThreadsNamed;
 import static io.airlift.testing.Assertions.assertGreaterThan;
 import static io.prestosql.RowPagesBuilder.rowPagesBuilder;
@@ -42,22 +58,49 @@ import static io.prestosql.operator.GroupByHashYieldAssertion.createPagesWithDis
 import static io.prestosql.operator.GroupByHashYieldAssertion.finishOperatorWithYieldingGroupByHash;
 import static io.prestosql.operator.OperatorAssertion.assertOperatorEquals;
 import static io.prestosql.operator.OperatorAssertion.assertOperatorEqualsWithSimpleSelfStateComparison;
+import static io.prestosql.operator.OperatorAssertion.toPages;
 import static io.prestosql.spi.type.BigintType.BIGINT;
 import static io.prestosql.spi.type.VarcharType.VARCHAR;
 import static io.prestosql.testing.MaterializedResult.resultBuilder;
 import static io.prestosql.testing.TestingTaskContext.createTaskContext;
+import static java.nio.file.Files.createTempDirectory;
 import static java.util.concurrent.Executors.newCachedThreadPool;
 import static java.util.concurrent.Executors.newScheduledThreadPool;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
 
 @Test(singleThreaded = true)
 public class TestDistinctLimitOperator
 {
     private ExecutorService executor;
     private ScheduledExecutorService scheduledExecutor;
+    private Path spillPath;
+    private PartitioningSpillerFactory partitioningSpillerFactory;
     private DriverContext driverContext;
     private JoinCompiler joinCompiler;
 
+    @BeforeClass
+    public void setUpSpiller()
+            throws IOException
+    {
+        spillPath = createTempDirectory(getClass().getSimpleName());
+        FeaturesConfig featuresConfig = new FeaturesConfig();
+        featuresConfig.setSpillerSpillPaths(spillPath.toString());
+        featuresConfig.setSpillMaxUsedSpaceThreshold(1.0);
+        partitioningSpillerFactory = new GenericPartitioningSpillerFactory(new FileSingleStreamSpillerFactory(
+                createTestMetadataManager(),
+                new SpillerStats(),
+                featuresConfig,
+                new NodeSpillConfig()));
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void tearDownSpiller()
+            throws IOException
+    {
+        deleteRecursively(spillPath, ALLOW_INSECURE);
+    }
+
     @BeforeMethod
     public void setUp()
     {
@@ -110,6 +153,31 @@ public class TestDistinctLimitOperator
         assertOperatorEquals(operatorFactory, driverContext, input, expected, hashEnabled, ImmutableList.of(1));
     }
 
+    @Test(dataProvider = "hashEnabledValues")
+    public void testDistinctLimitWithSpill(boolean hashEnabled)
+    {
+        RowPagesBuilder rowPagesBuilder = rowPagesBuilder(hashEnabled, Ints.asList(0), BIGINT);
+        List<Page> input = rowPagesBuilder
+                .addSequencePage(100, 0)
+                .addSequencePage(100, 50)
+                .addSequencePage(100, 0)
+                .build();
+
+        OperatorFactory operatorFactory = new DistinctLimitOperator.DistinctLimitOperatorFactory(0, new PlanNodeId("test"), rowPagesBuilder.getTypes(), Ints.asList(0), 120, rowPagesBuilder.getHashChannel(), joinCompiler, true, Optional.of(partitioningSpillerFactory));
+
+        // memory is revoked after each page, so the first page is returned before spilling, and the remaining 20 rows come from the spilled partitions
+        List<Page> output = toPages(operatorFactory, driverContext, input, true);
+        Set<Long> values = new HashSet<>();
+        for (Page page : output) {
+            for (int position = 0; position < page.getPositionCount(); position++) {
+                assertTrue(values.add(BIGINT.getLong(page.getBlock(0), position)));
+            }
+        }
+        assertEquals(values.size(), 120);
+        assertTrue(values.containsAll(LongStream.range(0, 100).boxed().collect(toImmutableSet())));
+        assertTrue(values.stream().allMatch(value -> value < 150));
+    }
+
     @Test
     public void testDistinctLimitSnapshot()
     {
@@ -137,6 +205,7 @@ public class TestDistinctLimitOperator
         Map<String, Object> expectedMapping = new HashMap<>();
         expectedMapping.put("operatorContext", 0);
         expectedMapping.put("localUserMemoryContext", 33048L);
+        expectedMapping.put("localRevocableMemoryContext", 0L);
         expectedMapping.put("remainingLimit", 2L);
         expectedMapping.put("finishing", false);
         expectedMapping.put("nextDistinctId", 3L);
@@ -23,8 +23,10 @@ import io.airlift.slice.Slices;
 import io.hetu.core.statestore.hazelcast.HazelcastStateStoreBootstrapper;
 import io.hetu.core.statestore.hazelcast.HazelcastStateStoreFactory;
 import io.prestosql.execution.TaskId;
+import io.prestosql.execution.TaskStateMachine;
 import io.prestosql.operator.DynamicFilterSourceOperator.Channel;
 import io.prestosql.operator.DynamicFilterSourceOperator.DynamicFilterSourceOperatorFactory;
+import io.prestosql.operator.DynamicFilterSourceOperator.ValueRange;
 import io.prestosql.seedstore.SeedStoreManager;
 import io.prestosql.spi.Page;
 import io.prestosql.spi.block.Block;
@@ -36,7 +38,7 @@ import io.prestosql.spi.plan.Symbol;
 import io.prestosql.spi.seedstore.Seed;
 import io.prestosql.spi.seedstore.SeedStore;
 import io.prestosql.spi.seedstore.SeedStoreSubType;
-import io.prestosql.spi.statestore.StateSet;
+import io.prestosql.spi.statestore.StateMap;
 import io.prestosql.spi.statestore.StateStore;
 import io.prestosql.spi.statestore.StateStoreBootstrapper;
 import io.prestosql.spi.statestore.StateStoreFactory;
@@ -75,6 +77,7 @@ import static io.prestosql.SystemSessionProperties.getDynamicFilteringMaxPerDriv
 import static io.prestosql.block.BlockAssertions.createBooleansBlock;
 import static io.prestosql.block.BlockAssertions.createDoublesBlock;
 import static io.prestosql.block.BlockAssertions.createLongRepeatBlock;
+import static io.prestosql.block.BlockAssertions.createLongSequenceBlock;
 import static io.prestosql.block.BlockAssertions.createLongsBlock;
 import static io.prestosql.block.BlockAssertions.createSlicesBlock;
 import static io.prestosql.block.BlockAssertions.createStringsBlock;
@@ -82,24 +85,28 @@ import static io.prestosql.operator.OperatorAssertion.toMaterializedResult;
 import static io.prestosql.operator.OperatorAssertion.toPages;
 import static io.prestosql.spi.dynamicfilter.DynamicFilter.Type.GLOBAL;
 import static io.prestosql.spi.dynamicfilter.DynamicFilter.Type.LOCAL;
+import static io.prestosql.spi.statestore.StateCollection.Type.MAP;
 import static io.prestosql.spi.type.BigintType.BIGINT;
 import static io.prestosql.spi.type.BooleanType.BOOLEAN;
 import static io.prestosql.spi.type.DoubleType.DOUBLE;
 import static io.prestosql.spi.type.IntegerType.INTEGER;
+import static io.prestosql.spi.type.RealType.REAL;
 import static io.prestosql.spi.type.VarcharType.VARCHAR;
 import static io.prestosql.sql.analyzer.FeaturesConfig.DynamicFilterDataType.BLOOM_FILTER;
 import static io.prestosql.sql.analyzer.FeaturesConfig.DynamicFilterDataType.HASHSET;
+import static io.prestosql.sql.analyzer.FeaturesConfig.DynamicFilterTransport.REMOTE_TASK;
+import static io.prestosql.sql.analyzer.FeaturesConfig.DynamicFilterTransport.STATE_STORE;
 import static io.prestosql.statestore.StateStoreConstants.STATE_STORE_CONFIGURATION_PATH;
 import static io.prestosql.testing.TestingTaskContext.createTaskContext;
 import static io.prestosql.testing.assertions.Assert.assertEquals;
 import static io.prestosql.utils.DynamicFilterUtils.PARTIALPREFIX;
-import static io.prestosql.utils.DynamicFilterUtils.TASKSPREFIX;
+import static io.prestosql.utils.DynamicFilterUtils.PARTIAL_DYNAMIC_FILTERS;
+import static io.prestosql.utils.DynamicFilterUtils.PARTIAL_TASK_SEPARATOR;
 import static java.util.concurrent.Executors.newCachedThreadPool;
 import static java.util.concurrent.Executors.newScheduledThreadPool;
 import static java.util.stream.Collectors.toList;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
-import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertTrue;
 
 @Test(singleThreaded = true)
@@ -200,6 +207,11 @@ public class TestDynamicFilterSourceOperator
     }
 
     private DynamicFilterSourceOperatorFactory createOperatorFactory(DynamicFilter.Type dfType, FeaturesConfig.DynamicFilterDataType dataType, int partitionCount, Channel... buildChannels)
+    {
+        return createOperatorFactory(dfType, dataType, STATE_STORE, partitionCount, buildChannels);
+    }
+
+    private DynamicFilterSourceOperatorFactory createOperatorFactory(DynamicFilter.Type dfType, FeaturesConfig.DynamicFilterDataType dataType, FeaturesConfig.DynamicFilterTransport transport, int partitionCount, Channel... buildChannels)
     {
         NodeInfo nodeInfo = new NodeInfo("test");
         Multimap<String, Symbol> probeSymbols = MultimapBuilder.treeKeys().arrayListValues().build();
@@ -207,14 +219,14 @@ public class TestDynamicFilterSourceOperator
         Arrays.stream(buildChannels).map(channel -> buildChannelMap.put(channel.getFilterId(), channel.getIndex()));
         Arrays.stream(buildChannels).map(channel -> probeSymbols.put(channel.getFilterId(), new Symbol(String.valueOf(channel.getIndex()))));
 
-        TaskId taskId = new TaskId("test0.0");
         LocalDynamicFilter localDynamicFilter = new LocalDynamicFilter(probeSymbols,
-                buildChannelMap, partitionCount, dfType, dataType, 0.1D, taskId, stateStoreProvider);
+                buildChannelMap, partitionCount, dfType, dataType, 0.1D, transport, pipelineContext.getTaskContext(), stateStoreProvider);
 
         return new DynamicFilterSourceOperatorFactory(
                 0,
                 new PlanNodeId("PLAN_NODE_ID"),
                 localDynamicFilter.getValueConsumer(),
+                localDynamicFilter.getRangeConsumer(),
                 Arrays.stream(buildChannels).collect(toList()),
                 getDynamicFilteringMaxPerDriverValueCount(TEST_SESSION),
                 getDynamicFilteringMaxPerDriverSize(TEST_SESSION));
@@ -225,6 +237,40 @@ public class TestDynamicFilterSourceOperator
         return operatorFactory.createOperator(pipelineContext.addDriverContext());
     }
 
+    private List<Object> getPartialFilters(String filterId)
+    {
+        String prefix = DynamicFilterUtils.createKey(PARTIALPREFIX, filterId, TEST_SESSION.getQueryId().toString()) + PARTIAL_TASK_SEPARATOR;
+        StateMap<String, Object> partialFilters = (StateMap<String, Object>) stateStoreProvider.getStateStore().getOrCreateStateCollection(PARTIAL_DYNAMIC_FILTERS, MAP);
+        return partialFilters.getAll().entrySet().stream()
+                .filter(entry -> entry.getKey().startsWith(prefix))
+                .map(Map.Entry::getValue)
+                .collect(toList());
+    }
+
+    @Test
+    public void testRemoteTaskTransportOnlySendsGlobalFilters()
+    {
+        TaskStateMachine taskStateMachine = new TaskStateMachine(new TaskId("query", 0, 0), executor);
+        pipelineContext = createTaskContext(executor, scheduledExecutor, TEST_SESSION, taskStateMachine)
+                .addPipelineContext(0, true, true, false);
+
+        // local filters may have a non-equi predicate, they are only applied within the task
+        DynamicFilterSourceOperatorFactory operatorFactory = createOperatorFactory(LOCAL, BLOOM_FILTER, REMOTE_TASK, 1, channel(0, BIGINT, "local"));
+        verifyPassthrough(createOperator(operatorFactory),
+                ImmutableList.of(BIGINT),
+                new Page(createLongsBlock(1, 2, 3)));
+        operatorFactory.noMoreOperators();
+        assertEquals(taskStateMachine.getDynamicFiltersVersion(), 0L);
+
+        operatorFactory = createOperatorFactory(GLOBAL, BLOOM_FILTER, REMOTE_TASK, 1, channel(0, BIGINT, "global"));
+        verifyPassthrough(createOperator(operatorFactory),
+                ImmutableList.of(BIGINT),
+                new Page(createLongsBlock(1, 2, 3)));
+        operatorFactory.noMoreOperators();
+        Map<String, byte[]> filters = taskStateMachine.getDynamicFilters(0, taskStateMachine.getDynamicFiltersVersion());
+        assertEquals(filters.keySet(), ImmutableSet.of("global"));
+    }
+
     @Test
     public void testCollectMultipleOperators()
     {
@@ -245,10 +291,8 @@ public class TestDynamicFilterSourceOperator
                 new Page(createLongsBlock(2, 3)),
                 new Page(createLongsBlock(1, 4)));
 
-        String key = DynamicFilterUtils.createKey(PARTIALPREFIX, filterId, TEST_SESSION.getQueryId().toString());
         Set<Long> set = new HashSet<>(Arrays.asList(1L, 2L, 3L, 4L, 5L));
-        StateSet states = ((StateSet) stateStoreProvider.getStateStore().getStateCollection(key));
-        for (Object bfSerialized : states.getAll()) {
+        for (Object bfSerialized : getPartialFilters(filterId)) {
             assertEquals(set, (Set) bfSerialized);
         }
     }
@@ -268,15 +312,15 @@ public class TestDynamicFilterSourceOperator
                 new Page(createLongsBlock(99, 101)),
                 new Page(createLongsBlock(3, 5)));
 
-        String key = DynamicFilterUtils.createKey(PARTIALPREFIX, filterId, TEST_SESSION.getQueryId().toString());
-        StateSet states = ((StateSet) stateStoreProvider.getStateStore().getStateCollection(key));
-        for (Object bfSerialized : states.getAll()) {
-            BloomFilterDynamicFilter bfdf = new BloomFilterDynamicFilter(filterId, null, (byte[]) bfSerialized, GLOBAL);
+        for (Object partialFilter : getPartialFilters(filterId)) {
+            // the range of the values is sent next to the bloom filter
+            List<?> rangeAndBloomFilter = (List<?>) partialFilter;
+            assertEquals(rangeAndBloomFilter.subList(0, 2), ImmutableList.of(1L, 101L));
+            BloomFilterDynamicFilter bfdf = new BloomFilterDynamicFilter(filterId, null, (byte[]) rangeAndBloomFilter.get(2), GLOBAL);
             assertTrue(bfdf.contains(101L));
             assertEquals(bfdf.getSize(), 6);
         }
-        assertEquals((stateStoreProvider.getStateStore().getStateCollection(DynamicFilterUtils
-                .createKey(TASKSPREFIX, filterId, TEST_SESSION.getQueryId().toString()))).size(), 1);
+        assertEquals(getPartialFilters(filterId).size(), 1);
     }
 
     @Test
@@ -294,16 +338,15 @@ public class TestDynamicFilterSourceOperator
                 new Page(createSlicesBlock(utf8Slice("test2"))),
                 new Page(createSlicesBlock(utf8Slice("test3"))));
 
-        String key = DynamicFilterUtils.createKey(PARTIALPREFIX, filterId, TEST_SESSION.getQueryId().toString());
-        StateSet states = ((StateSet) stateStoreProvider.getStateStore().getStateCollection(key));
-        for (Object bfSerialized : states.getAll()) {
-            BloomFilterDynamicFilter bfdf = new BloomFilterDynamicFilter(filterId, null, (byte[]) bfSerialized, GLOBAL);
+        for (Object partialFilter : getPartialFilters(filterId)) {
+            List<?> rangeAndBloomFilter = (List<?>) partialFilter;
+            assertEquals(rangeAndBloomFilter.subList(0, 2), ImmutableList.of(utf8Slice("test1"), utf8Slice("test3")));
+            BloomFilterDynamicFilter bfdf = new BloomFilterDynamicFilter(filterId, null, (byte[]) rangeAndBloomFilter.get(2), GLOBAL);
             Slice slice = Slices.utf8Slice("test1");
             assertEquals(bfdf.getSize(), 3);
             assertTrue(bfdf.contains(slice));
         }
-        assertEquals(stateStoreProvider.getStateStore().getStateCollection(DynamicFilterUtils
-                .createKey(TASKSPREFIX, filterId, TEST_SESSION.getQueryId().toString())).size(), 1);
+        assertEquals(getPartialFilters(filterId).size(), 1);
     }
 
     @Test
@@ -322,16 +365,12 @@ public class TestDynamicFilterSourceOperator
                 new Page(createLongsBlock(13, 22)),
                 new Page(createLongsBlock(3, 5)));
 
-        String key = DynamicFilterUtils.createKey(PARTIALPREFIX, filterId, TEST_SESSION.getQueryId().toString());
-
-        StateSet states = ((StateSet) stateStoreProvider.getStateStore().getStateCollection(key));
-        for (Object bfSerialized : states.getAll()) {
+        for (Object bfSerialized : getPartialFilters(filterId)) {
             HashSetDynamicFilter bfdf = new HashSetDynamicFilter(filterId, null, (Set) bfSerialized, GLOBAL);
             assertTrue(bfdf.contains(22L));
             assertEquals(bfdf.getSize(), 8);
         }
-        assertEquals(stateStoreProvider.getStateStore().getStateCollection(DynamicFilterUtils
-                .createKey(TASKSPREFIX, filterId, TEST_SESSION.getQueryId().toString())).size(), 1);
+        assertEquals(getPartialFilters(filterId).size(), 1);
     }
 
     @Test
@@ -346,17 +385,13 @@ public class TestDynamicFilterSourceOperator
                 new Page(createBooleansBlock(false, 1), createDoublesBlock(4.5)));
         operatorFactory.noMoreOperators();
 
-        String key1 = DynamicFilterUtils.createKey(PARTIALPREFIX, filterId1, TEST_SESSION.getQueryId().toString());
         Set<Boolean> set1 = new HashSet<>(Arrays.asList(true, false));
-        StateSet states1 = ((StateSet) stateStoreProvider.getStateStore().getStateCollection(key1));
-        for (Object bfSerialized : states1.getAll()) {
+        for (Object bfSerialized : getPartialFilters(filterId1)) {
             assertEquals((Set) bfSerialized, set1);
         }
 
-        String key2 = DynamicFilterUtils.createKey(PARTIALPREFIX, filterId2, TEST_SESSION.getQueryId().toString());
         Set<Double> set2 = new HashSet<>(Arrays.asList(1.5, 3.0, 4.5));
-        StateSet states2 = ((StateSet) stateStoreProvider.getStateStore().getStateCollection(key2));
-        for (Object bfSerialized : states2.getAll()) {
+        for (Object bfSerialized : getPartialFilters(filterId2)) {
             assertEquals((Set) bfSerialized, set2);
         }
     }
@@ -372,10 +407,8 @@ public class TestDynamicFilterSourceOperator
                 new Page(createBooleansBlock(false, 1), createDoublesBlock(4.5)));
         operatorFactory.noMoreOperators();
 
-        String key = DynamicFilterUtils.createKey(PARTIALPREFIX, filterId, TEST_SESSION.getQueryId().toString());
         Set<Boolean> set = new HashSet<>(Arrays.asList(true, false));
-        StateSet states = ((StateSet) stateStoreProvider.getStateStore().getStateCollection(key));
-        for (Object bfSerialized : states.getAll()) {
+        for (Object bfSerialized : getPartialFilters(filterId)) {
             assertEquals((Set) bfSerialized, set);
         }
     }
@@ -391,10 +424,8 @@ public class TestDynamicFilterSourceOperator
                 new Page(createBooleansBlock(false, 1), createDoublesBlock(4.5)));
         operatorFactory.noMoreOperators();
 
-        String key = DynamicFilterUtils.createKey(PARTIALPREFIX, filterId, TEST_SESSION.getQueryId().toString());
         Set<Double> set = new HashSet<>(Arrays.asList(1.5, 3.0, 4.5));
-        StateSet states = ((StateSet) stateStoreProvider.getStateStore().getStateCollection(key));
-        for (Object bfSerialized : states.getAll()) {
+        for (Object bfSerialized : getPartialFilters(filterId)) {
             assertEquals((Set) bfSerialized, set);
         }
     }
@@ -417,10 +448,8 @@ public class TestDynamicFilterSourceOperator
                 new Page(createLongsBlock(4, 5)));
         operatorFactory.noMoreOperators();
 
-        String key = DynamicFilterUtils.createKey(PARTIALPREFIX, filterId, TEST_SESSION.getQueryId().toString());
         Set<Long> set = new HashSet<>(Arrays.asList(1L, 2L, 3L, 4L, 5L));
-        StateSet states = ((StateSet) stateStoreProvider.getStateStore().getStateCollection(key));
-        for (Object bfSerialized : states.getAll()) {
+        for (Object bfSerialized : getPartialFilters(filterId)) {
             assertEquals((Set) bfSerialized, set);
         }
     }
@@ -444,9 +473,7 @@ public class TestDynamicFilterSourceOperator
                 ImmutableList.of(BIGINT));
         operatorFactory.noMoreOperators();
 
-        String key = DynamicFilterUtils.createKey(PARTIALPREFIX, filterId, TEST_SESSION.getQueryId().toString());
-        StateSet states = ((StateSet) stateStoreProvider.getStateStore().getStateCollection(key));
-        for (Object bfSerialized : states.getAll()) {
+        for (Object bfSerialized : getPartialFilters(filterId)) {
             assertEquals((Set) bfSerialized, new HashSet()); // should be empty
         }
     }
@@ -464,8 +491,59 @@ public class TestDynamicFilterSourceOperator
                 largePage);
         operatorFactory.noMoreOperators();
 
-        String key = DynamicFilterUtils.createKey(PARTIALPREFIX, filterId, TEST_SESSION.getQueryId().toString());
-        assertNull(stateStoreProvider.getStateStore().getStateCollection(key));
+        // only the range of the values is published
+        assertEquals(getPartialFilters(filterId), ImmutableList.of(ImmutableList.of(0L, (long) maxRowCount)));
+    }
+
+    @Test
+    public void testCollectTooMuchRowsMultipleOperators()
+    {
+        String filterId = "too_much_rows_multiple_operators";
+        final int maxRowCount = getDynamicFilteringMaxPerDriverValueCount(pipelineContext.getSession());
+        Page largePage = new Page(createLongSequenceBlock(-maxRowCount, 1));
+
+        DynamicFilterSourceOperatorFactory operatorFactory = createOperatorFactory(GLOBAL, BLOOM_FILTER, 2, channel(0, BIGINT, filterId));
+        verifyPassthrough(createOperator(operatorFactory),
+                ImmutableList.of(BIGINT),
+                largePage);
+        assertTrue(getPartialFilters(filterId).isEmpty(), "range should only be published once all operators finished");
+
+        verifyPassthrough(createOperator(operatorFactory),
+                ImmutableList.of(BIGINT),
+                new Page(createLongsBlock(7L, null, 42L)));
+        operatorFactory.noMoreOperators();
+
+        assertEquals(getPartialFilters(filterId), ImmutableList.of(ImmutableList.of((long) -maxRowCount, 42L)));
+    }
+
+    @Test
+    public void testValueRangeSignedZero()
+    {
+        ValueRange range = new ValueRange();
+        range.add(DOUBLE, createDoublesBlock(-0.0));
+        range.add(DOUBLE, createDoublesBlock(0.0));
+        assertEquals(range.getMin(), 0.0);
+        assertEquals(range.getMax(), 0.0);
+
+        range.add(DOUBLE, createDoublesBlock(-1.0, -0.0));
+        assertEquals(range.getMin(), -1.0);
+        assertEquals(range.getMax(), 0.0);
+    }
+
+    @Test
+    public void testCollectTooMuchRowsUnsupportedRangeType()
+    {
+        String filterId = "too_much_rows_real";
+        final int maxRowCount = getDynamicFilteringMaxPerDriverValueCount(pipelineContext.getSession());
+        Page largePage = createSequencePage(ImmutableList.of(BIGINT, REAL), maxRowCount + 1);
+
+        OperatorFactory operatorFactory = createOperatorFactory(LOCAL, HASHSET, 1, channel(1, REAL, filterId));
+        verifyPassthrough(createOperator((DynamicFilterSourceOperatorFactory) operatorFactory),
+                ImmutableList.of(BIGINT, REAL),
+                largePage);
+        operatorFactory.noMoreOperators();
+
+        assertTrue(getPartialFilters(filterId).isEmpty());
     }
 
     @Test
@@ -480,8 +558,8 @@ public class TestDynamicFilterSourceOperator
                 ImmutableList.of(VARCHAR),
                 largePage);
         operatorFactory.noMoreOperators();
-        String key = DynamicFilterUtils.createKey(PARTIALPREFIX, filterId, TEST_SESSION.getQueryId().toString());
-        assertNull(stateStoreProvider.getStateStore().getStateCollection(key));
+        Slice value = utf8Slice(repeat("A", (int) maxByteSize + 1));
+        assertEquals(getPartialFilters(filterId), ImmutableList.of(ImmutableList.of(value, value)));
     }
 
     @Test
@@ -500,11 +578,11 @@ public class TestDynamicFilterSourceOperator
                 largePage);
         operatorFactory.noMoreOperators();
 
-        String key1 = DynamicFilterUtils.createKey(PARTIALPREFIX, filterId1, TEST_SESSION.getQueryId().toString());
-        assertNull(stateStoreProvider.getStateStore().getStateCollection(key1));
+        Slice value1 = utf8Slice(repeat("A", (int) (maxByteSize / 2) + 1));
+        assertEquals(getPartialFilters(filterId1), ImmutableList.of(ImmutableList.of(value1, value1)));
 
-        String key2 = DynamicFilterUtils.createKey(PARTIALPREFIX, filterId2, TEST_SESSION.getQueryId().toString());
-        assertNull(stateStoreProvider.getStateStore().getStateCollection(key2));
+        Slice value2 = utf8Slice(repeat("B", (int) (maxByteSize / 2) + 1));
+        assertEquals(getPartialFilters(filterId2), ImmutableList.of(ImmutableList.of(value2, value2)));
     }
 
     @Test
@@ -521,11 +599,9 @@ public class TestDynamicFilterSourceOperator
                 largePage, nullsPage);
         operatorFactory.noMoreOperators();
 
-        String key = DynamicFilterUtils.createKey(PARTIALPREFIX, filterId, TEST_SESSION.getQueryId().toString());
         Set<Long> set = new HashSet<>();
         set.add(7L);
-        StateSet states = ((StateSet) stateStoreProvider.getStateStore().getStateCollection(key));
-        for (Object bfSerialized : states.getAll()) {
+        for (Object bfSerialized : getPartialFilters(filterId)) {
             assertEquals((Set) bfSerialized, set);
         }
     }
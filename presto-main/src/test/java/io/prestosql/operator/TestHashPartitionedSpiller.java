@@ -0,0 +1,188 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.prestosql.operator;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Closer;
+import io.prestosql.spi.Page;
+import io.prestosql.spi.block.BlockBuilder;
+import io.prestosql.spi.type.Type;
+import io.prestosql.spiller.FileSingleStreamSpillerFactory;
+import io.prestosql.spiller.GenericPartitioningSpillerFactory;
+import io.prestosql.spiller.NodeSpillConfig;
+import io.prestosql.spiller.PartitioningSpillerFactory;
+import io.prestosql.spiller.SpillerStats;
+import io.prestosql.sql.analyzer.FeaturesConfig;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.LongUnaryOperator;
+
+import static com.google.common.collect.Iterators.singletonIterator;
+import static com.google.common.io.MoreFiles.deleteRecursively;
+import static com.google.common.io.RecursiveDeleteOption.ALLOW_INSECURE;
+import static io.airlift.concurrent.MoreFutures.getFutureValue;
+import static io.prestosql.metadata.MetadataManager.createTestMetadataManager;
+import static io.prestosql.operator.HashPartitionedSpiller.MAX_REPARTITION_DEPTH;
+import static io.prestosql.operator.HashPartitionedSpiller.SPILL_PARTITION_COUNT;
+import static io.prestosql.spi.type.BigintType.BIGINT;
+import static java.nio.file.Files.createTempDirectory;
+import static java.util.concurrent.Executors.newSingleThreadScheduledExecutor;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class TestHashPartitionedSpiller
+{
+    private static final List<Type> TYPES = ImmutableList.of(BIGINT, BIGINT);
+    private static final int ROWS_PER_SPILL = 1_000;
+
+    private Path tempDirectory;
+    private PartitioningSpillerFactory factory;
+    private ScheduledExecutorService scheduledExecutor;
+
+    @BeforeClass
+    public void setUp()
+            throws Exception
+    {
+        tempDirectory = createTempDirectory(getClass().getSimpleName());
+        FeaturesConfig featuresConfig = new FeaturesConfig();
+        featuresConfig.setSpillerSpillPaths(tempDirectory.toString());
+        featuresConfig.setSpillMaxUsedSpaceThreshold(1.0);
+        factory = new GenericPartitioningSpillerFactory(new FileSingleStreamSpillerFactory(
+                createTestMetadataManager(),
+                new SpillerStats(),
+                featuresConfig,
+                new NodeSpillConfig()));
+        scheduledExecutor = newSingleThreadScheduledExecutor();
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void tearDown()
+            throws Exception
+    {
+        try (Closer closer = Closer.create()) {
+            closer.register(() -> scheduledExecutor.shutdownNow());
+            closer.register(() -> deleteRecursively(tempDirectory, ALLOW_INSECURE));
+        }
+    }
+
+    @Test
+    public void testReadPartitions()
+    {
+        try (HashPartitionedSpiller spiller = createSpiller()) {
+            assertFalse(spiller.isSpilled());
+            getFutureValue(spiller.spill(singletonIterator(createPage(0, ROWS_PER_SPILL, row -> row))));
+            assertTrue(spiller.isSpilled());
+
+            List<List<Page>> partitions = readPartitions(spiller, Long.MAX_VALUE, 0);
+            assertEquals(partitions.size(), SPILL_PARTITION_COUNT);
+            assertPartitionedByKey(partitions, ROWS_PER_SPILL, ROWS_PER_SPILL);
+        }
+    }
+
+    @Test
+    public void testRepartitionLargePartitions()
+    {
+        int spillCount = 16;
+        try (HashPartitionedSpiller spiller = createSpiller()) {
+            // every partition holds about twice as many rows as were spilled at once
+            for (int spill = 0; spill < spillCount; spill++) {
+                getFutureValue(spiller.spill(singletonIterator(createPage(spill * ROWS_PER_SPILL, ROWS_PER_SPILL, row -> row))));
+            }
+
+            List<List<Page>> partitions = readPartitions(spiller, spiller.getMaxSpillSize(), SPILL_PARTITION_COUNT);
+            assertEquals(partitions.size(), SPILL_PARTITION_COUNT * SPILL_PARTITION_COUNT);
+            assertPartitionedByKey(partitions, spillCount * ROWS_PER_SPILL, spillCount * ROWS_PER_SPILL);
+        }
+    }
+
+    @Test
+    public void testRepartitionDepthIsBounded()
+    {
+        int spillCount = 10;
+        try (HashPartitionedSpiller spiller = createSpiller()) {
+            // rows of a single key can't be split by repartitioning
+            for (int spill = 0; spill < spillCount; spill++) {
+                getFutureValue(spiller.spill(singletonIterator(createPage(spill * ROWS_PER_SPILL, ROWS_PER_SPILL, row -> 7))));
+            }
+
+            List<List<Page>> partitions = readPartitions(spiller, spiller.getMaxSpillSize(), MAX_REPARTITION_DEPTH);
+            assertEquals(partitions.size(), SPILL_PARTITION_COUNT + MAX_REPARTITION_DEPTH * (SPILL_PARTITION_COUNT - 1));
+            assertPartitionedByKey(partitions, spillCount * ROWS_PER_SPILL, 1);
+        }
+    }
+
+    private HashPartitionedSpiller createSpiller()
+    {
+        return new HashPartitionedSpiller(TYPES, ImmutableList.of(0), Optional.empty(), factory, TestingOperatorContext.create(scheduledExecutor));
+    }
+
+    // reads the partitions the way operators do, repartitioning those that are larger than the given size
+    private static List<List<Page>> readPartitions(HashPartitionedSpiller spiller, long maxPartitionSize, int expectedRepartitionCount)
+    {
+        int repartitionCount = 0;
+        List<List<Page>> partitions = new ArrayList<>();
+        while (spiller.hasNextPartition()) {
+            if (spiller.canRepartitionNextPartition() && spiller.getNextPartitionSize() > maxPartitionSize) {
+                getFutureValue(spiller.repartitionNextPartition());
+                repartitionCount++;
+                continue;
+            }
+            partitions.add(ImmutableList.copyOf(spiller.readNextPartition()));
+        }
+        assertEquals(repartitionCount, expectedRepartitionCount);
+        return partitions;
+    }
+
+    private static void assertPartitionedByKey(List<List<Page>> partitions, int expectedRowCount, int expectedKeyCount)
+    {
+        Set<Long> rows = new HashSet<>();
+        Set<Long> keys = new HashSet<>();
+        for (List<Page> partition : partitions) {
+            Set<Long> partitionKeys = new HashSet<>();
+            for (Page page : partition) {
+                for (int position = 0; position < page.getPositionCount(); position++) {
+                    partitionKeys.add(BIGINT.getLong(page.getBlock(0), position));
+                    assertTrue(rows.add(BIGINT.getLong(page.getBlock(1), position)), "row read more than once");
+                }
+            }
+            for (long key : partitionKeys) {
+                assertTrue(keys.add(key), "key " + key + " is in more than one partition");
+            }
+        }
+        assertEquals(rows.size(), expectedRowCount);
+        assertEquals(keys.size(), expectedKeyCount);
+    }
+
+    private static Page createPage(long firstRow, int rowCount, LongUnaryOperator key)
+    {
+        BlockBuilder keys = BIGINT.createBlockBuilder(null, rowCount);
+        BlockBuilder rows = BIGINT.createBlockBuilder(null, rowCount);
+        for (long row = firstRow; row < firstRow + rowCount; row++) {
+            BIGINT.writeLong(keys, key.applyAsLong(row));
+            BIGINT.writeLong(rows, row);
+        }
+        return new Page(keys.build(), rows.build());
+    }
+}
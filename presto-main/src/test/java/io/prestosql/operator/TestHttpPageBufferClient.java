@@ -13,18 +13,21 @@
  */
 package io.prestosql.operator;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableListMultimap;
 import io.airlift.http.client.HttpStatus;
 import io.airlift.http.client.Request;
 import io.airlift.http.client.Response;
 import io.airlift.http.client.testing.TestingHttpClient;
 import io.airlift.http.client.testing.TestingResponse;
+import io.airlift.slice.DynamicSliceOutput;
 import io.airlift.testing.TestingTicker;
 import io.airlift.units.DataSize;
 import io.airlift.units.DataSize.Unit;
 import io.airlift.units.Duration;
 import io.hetu.core.transport.execution.buffer.PagesSerde;
 import io.hetu.core.transport.execution.buffer.SerializedPage;
+import io.prestosql.execution.buffer.BufferResult;
 import io.prestosql.operator.HttpPageBufferClient.ClientCallback;
 import io.prestosql.spi.HostAddress;
 import io.prestosql.spi.Page;
@@ -36,6 +39,7 @@ import java.net.URI;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
 import java.util.concurrent.BrokenBarrierException;
 import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.ExecutorService;
@@ -52,6 +56,8 @@ import static io.airlift.concurrent.Threads.daemonThreadsNamed;
 import static io.airlift.testing.Assertions.assertContains;
 import static io.airlift.testing.Assertions.assertInstanceOf;
 import static io.prestosql.PrestoMediaTypes.PRESTO_PAGES;
+import static io.prestosql.client.PrestoHeaders.PRESTO_PAGE_TOKEN;
+import static io.prestosql.server.PagesStreamWriter.writeFrame;
 import static io.prestosql.spi.StandardErrorCode.PAGE_TOO_LARGE;
 import static io.prestosql.spi.StandardErrorCode.PAGE_TRANSPORT_ERROR;
 import static io.prestosql.spi.StandardErrorCode.PAGE_TRANSPORT_TIMEOUT;
@@ -176,6 +182,129 @@ public class TestHttpPageBufferClient
         assertStatus(client, location, "closed", 3, 5, 5, 0, "not scheduled");
     }
 
+    @Test
+    public void testStreaming()
+            throws Exception
+    {
+        Page expectedPage = new Page(100);
+        SerializedPage serializedPage = PAGES_SERDE.serialize(expectedPage);
+
+        DynamicSliceOutput output = new DynamicSliceOutput(1024);
+        writeFrame(output, new BufferResult(0, 1, false, ImmutableList.of(serializedPage)));
+        writeFrame(output, new BufferResult(1, 3, false, ImmutableList.of(serializedPage, serializedPage)));
+        writeFrame(output, new BufferResult(3, 3, true, ImmutableList.of()));
+        byte[] body = output.slice().getBytes();
+
+        List<String> requestedPaths = Collections.synchronizedList(new ArrayList<>());
+        TestingHttpClient.Processor processor = request -> {
+            requestedPaths.add(request.getUri().getPath());
+            if (request.getMethod().equals("DELETE")) {
+                return new TestingResponse(HttpStatus.NO_CONTENT, ImmutableListMultimap.of(), new byte[0]);
+            }
+            return new TestingResponse(
+                    HttpStatus.OK,
+                    ImmutableListMultimap.of(CONTENT_TYPE, PRESTO_PAGES, PRESTO_PAGE_TOKEN, "0"),
+                    body);
+        };
+
+        CyclicBarrier requestComplete = new CyclicBarrier(2);
+        TestingClientCallback callback = new TestingClientCallback(requestComplete);
+
+        URI location = URI.create("http://localhost:8080");
+        HttpPageBufferClient client = new HttpPageBufferClient(new TestingHttpClient(processor, scheduler),
+                new DataSize(10, Unit.MEGABYTE),
+                new Duration(1, TimeUnit.MINUTES),
+                true,
+                new TaskLocation(location, "testing instance id"),
+                callback,
+                scheduler,
+                pageBufferClientCallbackExecutor,
+                false,
+                null,
+                Optional.empty(),
+                Optional.of(scheduler));
+
+        // all frames of the stream are received with a single request
+        client.scheduleRequest();
+        requestComplete.await(10, TimeUnit.SECONDS);
+
+        assertEquals(requestedPaths, ImmutableList.of("/0/stream"));
+        assertEquals(callback.getPages().size(), 3);
+        for (Page page : callback.getPages()) {
+            assertPageEquals(expectedPage, page);
+        }
+        assertEquals(callback.getCompletedRequests(), 1);
+        assertEquals(callback.getFailedBuffers(), 0);
+        assertStatus(client, location, "completed", 3, 1, 1, 0, "not scheduled");
+
+        // the last frame completed the buffer, so the next request deletes it
+        callback.resetStats();
+        client.scheduleRequest();
+        requestComplete.await(10, TimeUnit.SECONDS);
+        assertEquals(callback.getFinishedBuffers(), 1);
+        assertEquals(callback.getFailedBuffers(), 0);
+    }
+
+    @Test
+    public void testInterruptedStream()
+            throws Exception
+    {
+        SerializedPage serializedPage = PAGES_SERDE.serialize(new Page(100));
+        DynamicSliceOutput output = new DynamicSliceOutput(1024);
+        writeFrame(output, new BufferResult(0, 1, false, ImmutableList.of(serializedPage)));
+        // truncate the second frame
+        output.writeLong(1);
+        byte[] interruptedBody = output.slice().getBytes();
+
+        output = new DynamicSliceOutput(1024);
+        writeFrame(output, new BufferResult(1, 2, false, ImmutableList.of(serializedPage)));
+        byte[] body = output.slice().getBytes();
+
+        List<String> requestedPaths = Collections.synchronizedList(new ArrayList<>());
+        TestingHttpClient.Processor processor = request -> {
+            requestedPaths.add(request.getUri().getPath());
+            return new TestingResponse(
+                    HttpStatus.OK,
+                    ImmutableListMultimap.of(CONTENT_TYPE, PRESTO_PAGES, PRESTO_PAGE_TOKEN, requestedPaths.size() == 1 ? "0" : "1"),
+                    requestedPaths.size() == 1 ? interruptedBody : body);
+        };
+
+        CyclicBarrier requestComplete = new CyclicBarrier(2);
+        TestingClientCallback callback = new TestingClientCallback(requestComplete);
+
+        URI location = URI.create("http://localhost:8080");
+        HttpPageBufferClient client = new HttpPageBufferClient(new TestingHttpClient(processor, scheduler),
+                new DataSize(10, Unit.MEGABYTE),
+                new Duration(1, TimeUnit.MINUTES),
+                true,
+                new TaskLocation(location, "testing instance id"),
+                callback,
+                scheduler,
+                pageBufferClientCallbackExecutor,
+                false,
+                null,
+                Optional.empty(),
+                Optional.of(scheduler));
+
+        // the pages of the complete frame are kept, and the failure is not fatal
+        client.scheduleRequest();
+        requestComplete.await(10, TimeUnit.SECONDS);
+
+        assertEquals(callback.getPages().size(), 1);
+        assertEquals(callback.getFailedBuffers(), 0);
+        assertEquals(callback.getCompletedRequests(), 1);
+
+        // the next request continues after the last complete frame
+        callback.resetStats();
+        client.scheduleRequest();
+        requestComplete.await(10, TimeUnit.SECONDS);
+
+        assertEquals(requestedPaths, ImmutableList.of("/0/stream", "/1/stream"));
+        assertEquals(callback.getPages().size(), 1);
+        assertEquals(callback.getFailedBuffers(), 0);
+        assertStatus(client, location, "queued", 2, 2, 2, 1, "not scheduled");
+    }
+
     @Test
     public void testLifecycle()
             throws Exception
@@ -24,14 +24,19 @@ import org.testng.annotations.Test;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 import static io.prestosql.SequencePageBuilder.createSequencePage;
+import static io.prestosql.operator.PageAssertions.assertPageEquals;
+import static io.prestosql.spi.block.SortOrder.DESC_NULLS_LAST;
 import static io.prestosql.spi.type.BigintType.BIGINT;
 import static io.prestosql.spi.type.VarcharType.VARCHAR;
 import static java.lang.String.format;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertTrue;
 
 public class TestPagesIndex
@@ -81,7 +86,7 @@ public class TestPagesIndex
         expectedMapping.put("nextBlockToCompact", 0);
         expectedMapping.put("positionCount", 7);
         expectedMapping.put("pagesMemorySize", 3852L);
-        expectedMapping.put("estimatedSize", 12396L);
+        expectedMapping.put("estimatedSize", 12404L);
         return expectedMapping;
     }
 
@@ -108,6 +113,48 @@ public class TestPagesIndex
         assertEquals(lazyCompactPagesIndex.getEstimatedSize(), eagerCompactPagesIndex.getEstimatedSize());
     }
 
+    @Test
+    public void testCaptureIncrement()
+    {
+        List<Type> types = ImmutableList.of(BIGINT, VARCHAR);
+        PagesSerde serde = TestingPagesSerdeFactory.testingPagesSerde();
+
+        PagesIndex pagesIndex = newPagesIndex(types, 30, false);
+        // Nothing has been captured yet
+        assertFalse(pagesIndex.captureIncrement(serde).isPresent());
+
+        pagesIndex.addPage(somePage(types));
+        Object full = pagesIndex.capture(serde);
+        pagesIndex.addPage(somePage(types));
+        pagesIndex.compact();
+        Optional<Object> increment1 = pagesIndex.captureIncrement(serde);
+        pagesIndex.addPage(somePage(types));
+        Optional<Object> increment2 = pagesIndex.captureIncrement(serde);
+        assertTrue(increment1.isPresent());
+        assertTrue(increment2.isPresent());
+        assertEquals(SnapshotTestUtil.toSimpleSnapshotMapping(increment2.get()).get("positionCount"), 21);
+
+        PagesIndex restored = newPagesIndex(types, 30, false);
+        restored.restore(full, serde);
+        restored.restoreIncrement(increment1.get(), serde);
+        restored.restoreIncrement(increment2.get(), serde);
+        assertEquals(restored.getPositionCount(), pagesIndex.getPositionCount());
+        assertEquals(restored.getValueAddresses(), pagesIndex.getValueAddresses());
+        assertEquals(restored.getEstimatedSize(), pagesIndex.getEstimatedSize());
+        Iterator<Page> expectedPages = pagesIndex.getPages();
+        Iterator<Page> actualPages = restored.getPages();
+        while (expectedPages.hasNext()) {
+            assertPageEquals(types, actualPages.next(), expectedPages.next());
+        }
+        assertFalse(actualPages.hasNext());
+
+        // Sorting reorders captured addresses, so a full capture is needed
+        pagesIndex.sort(ImmutableList.of(0), ImmutableList.of(DESC_NULLS_LAST));
+        assertFalse(pagesIndex.captureIncrement(serde).isPresent());
+        pagesIndex.capture(serde);
+        assertTrue(pagesIndex.captureIncrement(serde).isPresent());
+    }
+
     private static PagesIndex newPagesIndex(List<Type> types, int expectedPositions, boolean eagerCompact)
     {
         return new PagesIndex.TestingFactory(eagerCompact).newPagesIndex(types, expectedPositions);
@@ -15,28 +15,53 @@ package io.prestosql.operator;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.primitives.Ints;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
 import io.prestosql.RowPagesBuilder;
 import io.prestosql.operator.window.RankingFunction;
 import io.prestosql.spi.Page;
 import io.prestosql.spi.block.SortOrder;
 import io.prestosql.spi.plan.PlanNodeId;
+import io.prestosql.spi.snapshot.BlockEncodingSerdeProvider;
 import io.prestosql.spi.type.Type;
+import io.prestosql.spiller.FileSingleStreamSpillerFactory;
+import io.prestosql.spiller.GenericPartitioningSpillerFactory;
+import io.prestosql.spiller.NodeSpillConfig;
+import io.prestosql.spiller.PartitioningSpiller;
+import io.prestosql.spiller.PartitioningSpillerFactory;
+import io.prestosql.spiller.SpillerStats;
+import io.prestosql.sql.analyzer.FeaturesConfig;
 import io.prestosql.sql.gen.JoinCompiler;
 import io.prestosql.testing.MaterializedResult;
+import org.testng.annotations.AfterClass;
 import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntPredicate;
+import java.util.function.Supplier;
 
+import static com.google.common.io.MoreFiles.deleteRecursively;
+import static com.google.common.io.RecursiveDeleteOption.ALLOW_INSECURE;
+import static com.google.common.util.concurrent.Futures.immediateFuture;
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
+import static io.airlift.concurrent.MoreFutures.getFutureValue;
 import static io.airlift.concurrent.Threads.daemonThreadsNamed;
+import static io.airlift.testing.Assertions.assertEqualsIgnoreOrder;
 import static io.airlift.testing.Assertions.assertGreaterThan;
 import static io.prestosql.RowPagesBuilder.rowPagesBuilder;
 import static io.prestosql.SessionTestUtils.TEST_SESSION;
@@ -44,24 +69,55 @@ import static io.prestosql.metadata.MetadataManager.createTestMetadataManager;
 import static io.prestosql.operator.GroupByHashYieldAssertion.createPagesWithDistinctHashKeys;
 import static io.prestosql.operator.GroupByHashYieldAssertion.finishOperatorWithYieldingGroupByHash;
 import static io.prestosql.operator.OperatorAssertion.assertOperatorEquals;
+import static io.prestosql.operator.OperatorAssertion.assertOperatorEqualsIgnoreOrder;
 import static io.prestosql.operator.OperatorAssertion.assertOperatorEqualsWithStateComparison;
+import static io.prestosql.operator.OperatorAssertion.finishOperator;
+import static io.prestosql.operator.OperatorAssertion.toMaterializedResult;
 import static io.prestosql.operator.TopNRankingNumberOperator.TopNRankingNumberOperatorFactory;
 import static io.prestosql.spi.type.BigintType.BIGINT;
 import static io.prestosql.spi.type.DoubleType.DOUBLE;
 import static io.prestosql.testing.MaterializedResult.resultBuilder;
 import static io.prestosql.testing.TestingTaskContext.createTaskContext;
+import static java.nio.file.Files.createTempDirectory;
 import static java.util.concurrent.Executors.newCachedThreadPool;
 import static java.util.concurrent.Executors.newScheduledThreadPool;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
 
 @Test(singleThreaded = true)
 public class TestTopNRankingNumberOperator
 {
     private ExecutorService executor;
     private ScheduledExecutorService scheduledExecutor;
+    private Path spillPath;
+    private PartitioningSpillerFactory partitioningSpillerFactory;
     private DriverContext driverContext;
     private JoinCompiler joinCompiler;
 
+    @BeforeClass
+    public void setUpSpiller()
+            throws IOException
+    {
+        spillPath = createTempDirectory(getClass().getSimpleName());
+        FeaturesConfig featuresConfig = new FeaturesConfig();
+        featuresConfig.setSpillerSpillPaths(spillPath.toString());
+        featuresConfig.setSpillMaxUsedSpaceThreshold(1.0);
+        partitioningSpillerFactory = new GenericPartitioningSpillerFactory(new FileSingleStreamSpillerFactory(
+                createTestMetadataManager(),
+                new SpillerStats(),
+                featuresConfig,
+                new NodeSpillConfig()));
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void tearDownSpiller()
+            throws IOException
+    {
+        deleteRecursively(spillPath, ALLOW_INSECURE);
+    }
+
     @BeforeMethod
     public void setUp()
     {
@@ -197,6 +253,115 @@ public class TestTopNRankingNumberOperator
         assertOperatorEquals(operatorFactory, driverContext, input, denseRankNumberExpected);
     }
 
+    @Test(dataProvider = "hashEnabledValues")
+    public void testPartitionedWithSpill(boolean hashEnabled)
+    {
+        RowPagesBuilder rowPagesBuilder = rowPagesBuilder(hashEnabled, Ints.asList(0), BIGINT, DOUBLE);
+        List<Page> input = rowPagesBuilder
+                .row(1L, 0.3)
+                .row(2L, 0.1)
+                .row(3L, 0.1)
+                .row(3L, 0.1)
+                .pageBreak()
+                .row(1L, 0.2)
+                .row(1L, 0.4)
+                .pageBreak()
+                .row(1L, 0.1)
+                .row(1L, 0.2)
+                .row(2L, 0.3)
+                .row(2L, 0.4)
+                .pageBreak()
+                .row(2L, 0.3)
+                .row(3L, 0.05)
+                .build();
+        // rank() over(partition by 0 order by 1) top 3, memory is revoked after each page
+        TopNRankingNumberOperatorFactory operatorFactory = new TopNRankingNumberOperatorFactory(
+                0,
+                new PlanNodeId("test"),
+                rowPagesBuilder.getTypes(),
+                hashEnabled ? Ints.asList(1, 0, 2) : Ints.asList(1, 0),
+                Ints.asList(0),
+                ImmutableList.of(BIGINT),
+                Ints.asList(1),
+                ImmutableList.of(SortOrder.ASC_NULLS_LAST),
+                3,
+                false,
+                rowPagesBuilder.getHashChannel(),
+                10,
+                joinCompiler,
+                Optional.of(RankingFunction.RANK),
+                true,
+                Optional.of(partitioningSpillerFactory));
+        MaterializedResult expected = resultBuilder(driverContext.getSession(), DOUBLE, BIGINT, BIGINT)
+                .row(0.1, 1L, 1L)
+                .row(0.2, 1L, 2L)
+                .row(0.2, 1L, 2L)
+                .row(0.1, 2L, 1L)
+                .row(0.3, 2L, 2L)
+                .row(0.3, 2L, 2L)
+                .row(0.05, 3L, 1L)
+                .row(0.1, 3L, 2L)
+                .row(0.1, 3L, 2L)
+                .build();
+        assertOperatorEqualsIgnoreOrder(operatorFactory, driverContext, input, expected, hashEnabled, Optional.of(2), true);
+    }
+
+    @Test
+    public void testFinishDoesNotBlockOnSpill()
+    {
+        AtomicReference<ListenableFuture<?>> spillGate = new AtomicReference<>(immediateFuture(null));
+        PartitioningSpillerFactory gatedSpillerFactory = (types, partitionFunction, spillContext, memoryContext) ->
+                new GatedPartitioningSpiller(partitioningSpillerFactory.create(types, partitionFunction, spillContext, memoryContext), spillGate::get);
+        List<Page> input = rowPagesBuilder(BIGINT, DOUBLE)
+                .row(1L, 0.3)
+                .row(2L, 0.1)
+                .pageBreak()
+                .row(1L, 0.2)
+                .row(2L, 0.4)
+                .build();
+        // row_number() over(partition by 0 order by 1) top 1
+        TopNRankingNumberOperatorFactory operatorFactory = new TopNRankingNumberOperatorFactory(
+                0,
+                new PlanNodeId("test"),
+                ImmutableList.of(BIGINT, DOUBLE),
+                Ints.asList(1, 0),
+                Ints.asList(0),
+                ImmutableList.of(BIGINT),
+                Ints.asList(1),
+                ImmutableList.of(SortOrder.ASC_NULLS_LAST),
+                1,
+                false,
+                Optional.empty(),
+                10,
+                joinCompiler,
+                Optional.of(RankingFunction.ROW_NUMBER),
+                true,
+                Optional.of(gatedSpillerFactory));
+        Operator operator = operatorFactory.createOperator(driverContext);
+
+        operator.addInput(input.get(0));
+        getFutureValue(operator.startMemoryRevoke());
+        operator.finishMemoryRevoke();
+        operator.addInput(input.get(1));
+
+        // the rows held when finishing are spilled before the partitions are reloaded, without blocking the driver
+        SettableFuture<?> spillDone = SettableFuture.create();
+        spillGate.set(spillDone);
+        operator.finish();
+        assertFalse(operator.isBlocked().isDone());
+        assertNull(operator.getOutput());
+        assertFalse(operator.isFinished());
+
+        spillDone.set(null);
+        assertTrue(operator.isBlocked().isDone());
+        List<Page> output = finishOperator(operator);
+        MaterializedResult expected = resultBuilder(driverContext.getSession(), DOUBLE, BIGINT, BIGINT)
+                .row(0.2, 1L, 1L)
+                .row(0.1, 2L, 1L)
+                .build();
+        assertEqualsIgnoreOrder(toMaterializedResult(driverContext.getSession(), expected.getTypes(), output).getMaterializedRows(), expected.getMaterializedRows());
+    }
+
     @Test
     public void testPartitionedSnapshot()
     {
@@ -309,6 +474,7 @@ public class TestTopNRankingNumberOperator
 
         operatorSnapshotMapping.put("operatorContext", 0);
         operatorSnapshotMapping.put("localUserMemoryContext", 51816L);
+        operatorSnapshotMapping.put("localRevocableMemoryContext", 0L);
 
         //TopNRankingNumberOperator.groupByHash
         Map<String, Object> groupByHashMapping = new HashMap<>();
@@ -358,6 +524,7 @@ public class TestTopNRankingNumberOperator
         pageReferencesMapping.put("segments", 1);
 
         operatorSnapshotMapping.put("finishing", false);
+        operatorSnapshotMapping.put("spiller", null);
 
         return operatorSnapshotMapping;
     }
@@ -369,6 +536,7 @@ public class TestTopNRankingNumberOperator
 
         operatorSnapshotMapping.put("operatorContext", 0);
         operatorSnapshotMapping.put("localUserMemoryContext", 51812L);
+        operatorSnapshotMapping.put("localRevocableMemoryContext", 0L);
 
         //TopNRankingNumberOperator.groupByHash
         Map<String, Object> groupByHashMapping = new HashMap<>();
@@ -418,6 +586,7 @@ public class TestTopNRankingNumberOperator
         pageReferencesMapping.put("segments", 1);
 
         operatorSnapshotMapping.put("finishing", false);
+        operatorSnapshotMapping.put("spiller", null);
 
         return operatorSnapshotMapping;
     }
@@ -604,4 +773,61 @@ public class TestTopNRankingNumberOperator
         }
         assertEquals(count, 6_000 * 600);
     }
+
+    private static class GatedPartitioningSpiller
+            implements PartitioningSpiller
+    {
+        private final PartitioningSpiller delegate;
+        private final Supplier<ListenableFuture<?>> gate;
+
+        GatedPartitioningSpiller(PartitioningSpiller delegate, Supplier<ListenableFuture<?>> gate)
+        {
+            this.delegate = delegate;
+            this.gate = gate;
+        }
+
+        @Override
+        public PartitioningSpillResult partitionAndSpill(Page page, IntPredicate spillPartitionMask)
+        {
+            PartitioningSpillResult result = delegate.partitionAndSpill(page, spillPartitionMask);
+            return new PartitioningSpillResult(Futures.transformAsync(gate.get(), ignored -> result.getSpillingFuture(), directExecutor()), result.getRetained());
+        }
+
+        @Override
+        public Iterator<Page> getSpilledPages(int partition)
+        {
+            return delegate.getSpilledPages(partition);
+        }
+
+        @Override
+        public void verifyAllPartitionsRead()
+        {
+            delegate.verifyAllPartitionsRead();
+        }
+
+        @Override
+        public long getSpilledPagesInMemorySize(int partition)
+        {
+            return delegate.getSpilledPagesInMemorySize(partition);
+        }
+
+        @Override
+        public void close()
+                throws IOException
+        {
+            delegate.close();
+        }
+
+        @Override
+        public Object capture(BlockEncodingSerdeProvider serdeProvider)
+        {
+            return delegate.capture(serdeProvider);
+        }
+
+        @Override
+        public void restore(Object state, BlockEncodingSerdeProvider serdeProvider)
+        {
+            delegate.restore(state, serdeProvider);
+        }
+    }
 }
@@ -21,6 +21,7 @@ import io.airlift.units.DataSize.Unit;
 import io.hetu.core.filesystem.HetuLocalFileSystemClient;
 import io.hetu.core.filesystem.LocalConfig;
 import io.prestosql.ExceededMemoryLimitException;
+import io.prestosql.RowPagesBuilder;
 import io.prestosql.Session;
 import io.prestosql.filesystem.FileSystemClientManager;
 import io.prestosql.metadata.InMemoryNodeManager;
@@ -61,9 +62,11 @@ import java.util.Properties;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
 
+import static com.google.common.collect.Iterables.getOnlyElement;
 import static com.google.common.util.concurrent.MoreExecutors.listeningDecorator;
 import static io.airlift.concurrent.MoreFutures.getFutureValue;
 import static io.airlift.concurrent.Threads.daemonThreadsNamed;
+import static io.airlift.testing.Assertions.assertEqualsIgnoreOrder;
 import static io.airlift.testing.Assertions.assertGreaterThan;
 import static io.airlift.units.DataSize.succinctBytes;
 import static io.prestosql.RowPagesBuilder.rowPagesBuilder;
@@ -326,6 +329,43 @@ public class TestWindowOperator
         assertOperatorEquals(operatorFactory, driverContext, input, expected, revokeMemoryWhenAddingPages);
     }
 
+    @Test
+    public void testSpilledPartitionsAreReloadedOneAtATime()
+    {
+        RowPagesBuilder inputBuilder = rowPagesBuilder(BIGINT, BIGINT);
+        MaterializedResult.Builder expectedBuilder = resultBuilder(TEST_SESSION, BIGINT, BIGINT, BIGINT);
+        int partitionCount = 5;
+        int rowsPerPartition = 20;
+        for (long row = 0; row < rowsPerPartition; row++) {
+            for (long partition = 0; partition < partitionCount; partition++) {
+                inputBuilder.row(partition, row);
+                expectedBuilder.row(partition, row, row + 1);
+            }
+            inputBuilder.pageBreak();
+        }
+
+        WindowOperatorFactory operatorFactory = createFactoryUnbounded(
+                ImmutableList.of(BIGINT, BIGINT),
+                Ints.asList(0, 1),
+                ROW_NUMBER,
+                Ints.asList(0),
+                Ints.asList(1),
+                ImmutableList.copyOf(new SortOrder[] {SortOrder.ASC_NULLS_LAST}),
+                true);
+
+        DriverContext driverContext = createDriverContext(8, TEST_SESSION);
+        List<Page> pages = toPages(operatorFactory, driverContext, inputBuilder.build(), true);
+        assertGreaterThan(spillerFactory.getSpillsCount(), 1L);
+        MaterializedResult actual = toMaterializedResult(driverContext.getSession(), ImmutableList.of(BIGINT, BIGINT, BIGINT), pages);
+        assertEqualsIgnoreOrder(actual.getMaterializedRows(), expectedBuilder.build().getMaterializedRows());
+
+        // the spilled runs are merged and reloaded one partition at a time, not as the whole group that was spilled
+        WindowInfo windowInfo = (WindowInfo) driverContext.getOperatorContexts().get(0).getOperatorStats().getInfo();
+        WindowInfo.DriverWindowInfo driverWindowInfo = getOnlyElement(windowInfo.getWindowInfos());
+        assertEquals(driverWindowInfo.getTotalPartitionsCount(), partitionCount);
+        assertEquals(driverWindowInfo.getNumberOfIndexes(), partitionCount);
+    }
+
     @Test(dataProvider = "spillEnabledSnapshot")
     public void testRowNumberPartitionSnapshot(boolean spillEnabled, boolean revokeMemoryWhenAddingPages, long memoryLimit)
     {
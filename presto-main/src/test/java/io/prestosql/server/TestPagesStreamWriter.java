@@ -0,0 +1,224 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.prestosql.server;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import io.airlift.slice.BasicSliceInput;
+import io.airlift.slice.Slices;
+import io.airlift.units.DataSize;
+import io.airlift.units.Duration;
+import io.hetu.core.transport.execution.buffer.PagesSerde;
+import io.hetu.core.transport.execution.buffer.SerializedPage;
+import io.prestosql.execution.TaskId;
+import io.prestosql.execution.TaskManager;
+import io.prestosql.execution.buffer.BufferResult;
+import io.prestosql.execution.buffer.OutputBuffers.OutputBufferId;
+import io.prestosql.spi.Page;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import javax.annotation.concurrent.GuardedBy;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import static com.google.common.util.concurrent.Futures.immediateFuture;
+import static io.airlift.concurrent.Threads.daemonThreadsNamed;
+import static io.airlift.units.DataSize.Unit.BYTE;
+import static io.airlift.units.DataSize.Unit.MEGABYTE;
+import static io.prestosql.server.PagesStreamWriter.readFrame;
+import static io.prestosql.testing.TestingPagesSerdeFactory.testingPagesSerde;
+import static java.util.concurrent.Executors.newCachedThreadPool;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class TestPagesStreamWriter
+{
+    private static final PagesSerde PAGES_SERDE = testingPagesSerde();
+    private static final TaskId TASK_ID = TaskId.valueOf("query.0.0");
+    private static final OutputBufferId BUFFER_ID = new OutputBufferId(0);
+    private static final String TASK_INSTANCE_ID = "task-instance-id";
+
+    private ExecutorService executor;
+
+    @BeforeClass
+    public void setUp()
+    {
+        executor = newCachedThreadPool(daemonThreadsNamed("test-pages-stream-writer-%s"));
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void tearDown()
+    {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testStreamPagesAddedWhileWaiting()
+            throws Exception
+    {
+        TestingResults results = new TestingResults();
+        results.addPage(PAGES_SERDE.serialize(new Page(1)));
+        TaskManager taskManager = results.createTaskManager();
+
+        PagesStreamWriter writer = new PagesStreamWriter(taskManager, TASK_ID, BUFFER_ID, TASK_INSTANCE_ID, results.getResults(0, new DataSize(1, MEGABYTE)), new DataSize(1, MEGABYTE), new Duration(1, SECONDS));
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        Future<?> writing = executor.submit(() -> {
+            writer.write(output);
+            return null;
+        });
+
+        // the page added while the stream waits is written to the same response
+        assertTrue(results.awaitWaitingStream());
+        results.addPage(PAGES_SERDE.serialize(new Page(2)));
+        // no more pages are added, so the stream ends after the maximum wait
+        writing.get(10, SECONDS);
+
+        List<BufferResult> frames = readFrames(output.toByteArray());
+        assertEquals(frames.size(), 2);
+        assertFrame(frames.get(0), 0, 1);
+        assertEquals(PAGES_SERDE.deserialize(frames.get(0).getSerializedPages().get(0)).getPositionCount(), 1);
+        assertFrame(frames.get(1), 1, 2);
+        assertEquals(PAGES_SERDE.deserialize(frames.get(1).getSerializedPages().get(0)).getPositionCount(), 2);
+    }
+
+    @Test
+    public void testStreamEndsWhenCreditIsUsed()
+            throws Exception
+    {
+        TestingResults results = new TestingResults();
+        SerializedPage page = PAGES_SERDE.serialize(new Page(1));
+        results.addPage(page);
+        results.addPage(page);
+        TaskManager taskManager = results.createTaskManager();
+
+        // the credit only allows a single page
+        DataSize maxSize = new DataSize(page.getRetainedSizeInBytes(), BYTE);
+        PagesStreamWriter writer = new PagesStreamWriter(taskManager, TASK_ID, BUFFER_ID, TASK_INSTANCE_ID, results.getResults(0, maxSize), maxSize, new Duration(10, SECONDS));
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        writer.write(output);
+
+        List<BufferResult> frames = readFrames(output.toByteArray());
+        assertEquals(frames.size(), 1);
+        assertFrame(frames.get(0), 0, 1);
+        verify(taskManager, never()).waitForTaskResults(any(TaskId.class), any(OutputBufferId.class), anyLong(), anyString());
+    }
+
+    @Test
+    public void testStreamEndsWithCompleteBuffer()
+            throws Exception
+    {
+        TaskManager taskManager = new TestingResults().createTaskManager();
+
+        PagesStreamWriter writer = new PagesStreamWriter(taskManager, TASK_ID, BUFFER_ID, TASK_INSTANCE_ID, BufferResult.emptyResults(3, true), new DataSize(1, MEGABYTE), new Duration(10, SECONDS));
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        writer.write(output);
+
+        List<BufferResult> frames = readFrames(output.toByteArray());
+        assertEquals(frames.size(), 1);
+        assertTrue(frames.get(0).isBufferComplete());
+        verify(taskManager, never()).waitForTaskResults(any(TaskId.class), any(OutputBufferId.class), anyLong(), anyString());
+    }
+
+    private static List<BufferResult> readFrames(byte[] bytes)
+    {
+        BasicSliceInput input = Slices.wrappedBuffer(bytes).getInput();
+        ImmutableList.Builder<BufferResult> frames = ImmutableList.builder();
+        while (input.isReadable()) {
+            frames.add(readFrame(input));
+        }
+        return frames.build();
+    }
+
+    private static void assertFrame(BufferResult frame, long token, long nextToken)
+    {
+        assertEquals(frame.getToken(), token);
+        assertEquals(frame.getNextToken(), nextToken);
+        assertEquals(frame.getSerializedPages().size(), nextToken - token);
+    }
+
+    /**
+     * Pages of an output buffer that are never acknowledged, as they are read by a stream
+     */
+    private static class TestingResults
+    {
+        private final CountDownLatch streamWaiting = new CountDownLatch(1);
+        @GuardedBy("this")
+        private final List<SerializedPage> pages = new ArrayList<>();
+        @GuardedBy("this")
+        private SettableFuture<?> pagesAdded = SettableFuture.create();
+
+        public TaskManager createTaskManager()
+        {
+            TaskManager taskManager = mock(TaskManager.class);
+            when(taskManager.getTaskResults(any(TaskId.class), any(OutputBufferId.class), anyLong(), any(DataSize.class), anyString()))
+                    .thenAnswer(invocation -> immediateFuture(getResults((Long) invocation.getArguments()[2], (DataSize) invocation.getArguments()[3])));
+            when(taskManager.waitForTaskResults(any(TaskId.class), any(OutputBufferId.class), anyLong(), anyString()))
+                    .thenAnswer(invocation -> waitForResults((Long) invocation.getArguments()[2]));
+            return taskManager;
+        }
+
+        public synchronized void addPage(SerializedPage page)
+        {
+            pages.add(page);
+            pagesAdded.set(null);
+            pagesAdded = SettableFuture.create();
+        }
+
+        public synchronized BufferResult getResults(long token, DataSize maxSize)
+        {
+            List<SerializedPage> result = new ArrayList<>();
+            long bytes = 0;
+            for (SerializedPage page : pages.subList((int) token, pages.size())) {
+                bytes += page.getRetainedSizeInBytes();
+                if (!result.isEmpty() && bytes > maxSize.toBytes()) {
+                    break;
+                }
+                result.add(page);
+            }
+            return new BufferResult(token, token + result.size(), false, result);
+        }
+
+        public boolean awaitWaitingStream()
+                throws InterruptedException
+        {
+            return streamWaiting.await(10, SECONDS);
+        }
+
+        private synchronized ListenableFuture<?> waitForResults(long token)
+        {
+            if (pages.size() > token) {
+                return immediateFuture(null);
+            }
+            streamWaiting.countDown();
+            return pagesAdded;
+        }
+    }
+}
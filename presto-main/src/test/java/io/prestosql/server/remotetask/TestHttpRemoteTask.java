@@ -503,7 +503,9 @@ public class TestHttpRemoteTask
                     initialTaskStatus.getFullGcCount(),
                     initialTaskStatus.getFullGcTime(),
                     ImmutableMap.of(),
-                    Optional.empty());
+                    Optional.empty(),
+                    0,
+                    ImmutableMap.of());
         }
     }
 }
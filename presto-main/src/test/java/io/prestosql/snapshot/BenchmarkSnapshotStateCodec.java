@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.prestosql.snapshot;
+
+import com.google.common.collect.ImmutableList;
+import io.prestosql.operator.GroupByHash;
+import io.prestosql.operator.PagesIndex;
+import io.prestosql.operator.UpdateMemory;
+import io.prestosql.snapshot.SnapshotConfig.StateCompression;
+import io.prestosql.spi.Page;
+import io.prestosql.spi.block.BlockEncodingSerde;
+import io.prestosql.spi.snapshot.BlockEncodingSerdeProvider;
+import io.prestosql.spi.type.Type;
+import io.prestosql.sql.gen.JoinCompiler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.VerboseMode;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static io.prestosql.SequencePageBuilder.createSequencePage;
+import static io.prestosql.metadata.MetadataManager.createTestMetadataManager;
+import static io.prestosql.spi.type.BigintType.BIGINT;
+import static io.prestosql.spi.type.DoubleType.DOUBLE;
+import static io.prestosql.spi.type.VarcharType.VARCHAR;
+
+/**
+ * Compares snapshot state codecs on states captured from operator data structures:
+ * a PagesIndex (used by OrderByOperator and HashBuilderOperator) and a GroupByHash (used by HashAggregationOperator)
+ */
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(2)
+@Warmup(iterations = 5, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 10, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+public class BenchmarkSnapshotStateCodec
+{
+    private static final BlockEncodingSerde BLOCK_ENCODING_SERDE = createTestMetadataManager().getFunctionAndTypeManager().getBlockEncodingSerde();
+    private static final BlockEncodingSerdeProvider SERDE_PROVIDER = () -> BLOCK_ENCODING_SERDE;
+    private static final List<Type> TYPES = ImmutableList.of(BIGINT, VARCHAR, DOUBLE);
+    private static final int POSITIONS_PER_PAGE = 1024;
+
+    @State(Scope.Thread)
+    public static class BenchmarkData
+    {
+        @Param({"JAVA", "BINARY", "BINARY_LZ4", "BINARY_ZSTD"})
+        private String codecName = "BINARY";
+
+        @Param({"PAGES_INDEX", "GROUP_BY_HASH"})
+        private String stateType = "PAGES_INDEX";
+
+        @Param({"10", "100"})
+        private int pageCount = 10;
+
+        private SnapshotStateCodec codec;
+        private Object state;
+        private byte[] serialized;
+
+        @Setup
+        public void setup()
+                throws IOException
+        {
+            codec = createCodec(codecName);
+            state = createState(stateType, pageCount);
+            serialized = serialize(codec, state);
+        }
+
+        public SnapshotStateCodec getCodec()
+        {
+            return codec;
+        }
+
+        public Object getState()
+        {
+            return state;
+        }
+
+        public byte[] getSerialized()
+        {
+            return serialized;
+        }
+    }
+
+    @Benchmark
+    public byte[] serialize(BenchmarkData data)
+            throws IOException
+    {
+        return serialize(data.getCodec(), data.getState());
+    }
+
+    @Benchmark
+    public Object deserialize(BenchmarkData data)
+            throws IOException, ClassNotFoundException
+    {
+        return data.getCodec().deserialize(new ByteArrayInputStream(data.getSerialized()));
+    }
+
+    private static SnapshotStateCodec createCodec(String codecName)
+    {
+        switch (codecName) {
+            case "JAVA":
+                return JavaSnapshotStateCodec.JAVA_SNAPSHOT_STATE_CODEC;
+            case "BINARY":
+                return new BinarySnapshotStateCodec(BLOCK_ENCODING_SERDE, StateCompression.NONE);
+            case "BINARY_LZ4":
+                return new BinarySnapshotStateCodec(BLOCK_ENCODING_SERDE, StateCompression.LZ4);
+            case "BINARY_ZSTD":
+                return new BinarySnapshotStateCodec(BLOCK_ENCODING_SERDE, StateCompression.ZSTD);
+            default:
+                throw new IllegalArgumentException("Unknown codec: " + codecName);
+        }
+    }
+
+    private static Object createState(String stateType, int pageCount)
+    {
+        switch (stateType) {
+            case "PAGES_INDEX": {
+                PagesIndex pagesIndex = new PagesIndex.TestingFactory(false).newPagesIndex(TYPES, pageCount * POSITIONS_PER_PAGE);
+                for (int i = 0; i < pageCount; i++) {
+                    pagesIndex.addPage(createPage(i));
+                }
+                return pagesIndex.capture(SERDE_PROVIDER);
+            }
+            case "GROUP_BY_HASH": {
+                GroupByHash groupByHash = GroupByHash.createGroupByHash(
+                        ImmutableList.of(BIGINT, VARCHAR),
+                        new int[] {0, 1},
+                        Optional.empty(),
+                        pageCount * POSITIONS_PER_PAGE,
+                        false,
+                        new JoinCompiler(createTestMetadataManager()),
+                        UpdateMemory.NOOP);
+                for (int i = 0; i < pageCount; i++) {
+                    Page page = createPage(i);
+                    groupByHash.addPage(new Page(page.getBlock(0), page.getBlock(1))).process();
+                }
+                return groupByHash.capture(SERDE_PROVIDER);
+            }
+            default:
+                throw new IllegalArgumentException("Unknown state type: " + stateType);
+        }
+    }
+
+    private static Page createPage(int pageNumber)
+    {
+        int start = pageNumber * POSITIONS_PER_PAGE;
+        return createSequencePage(TYPES, POSITIONS_PER_PAGE, start, start, start);
+    }
+
+    private static byte[] serialize(SnapshotStateCodec codec, Object state)
+            throws IOException
+    {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        codec.serialize(state, output);
+        return output.toByteArray();
+    }
+
+    public static void main(String[] args)
+            throws RunnerException, IOException
+    {
+        for (String codecName : ImmutableList.of("JAVA", "BINARY", "BINARY_LZ4", "BINARY_ZSTD")) {
+            for (String stateType : ImmutableList.of("PAGES_INDEX", "GROUP_BY_HASH")) {
+                byte[] bytes = serialize(createCodec(codecName), createState(stateType, 100));
+                System.out.printf("%s %s: %d bytes%n", codecName, stateType, bytes.length);
+            }
+        }
+
+        Options options = new OptionsBuilder()
+                .verbosity(VerboseMode.NORMAL)
+                .include(".*" + BenchmarkSnapshotStateCodec.class.getSimpleName() + ".*")
+                .build();
+
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,289 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.prestosql.snapshot;
+
+import com.google.common.collect.ImmutableList;
+import io.airlift.slice.Slice;
+import io.airlift.slice.Slices;
+import io.prestosql.operator.PagesIndex;
+import io.prestosql.snapshot.SnapshotConfig.StateCompression;
+import io.prestosql.spi.Page;
+import io.prestosql.spi.block.Block;
+import io.prestosql.spi.block.BlockEncodingSerde;
+import io.prestosql.spi.snapshot.BlockEncodingSerdeProvider;
+import io.prestosql.spi.type.Type;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import static io.prestosql.SequencePageBuilder.createSequencePage;
+import static io.prestosql.block.BlockAssertions.createLongSequenceBlock;
+import static io.prestosql.metadata.MetadataManager.createTestMetadataManager;
+import static io.prestosql.operator.PageAssertions.assertPageEquals;
+import static io.prestosql.spi.type.BigintType.BIGINT;
+import static io.prestosql.spi.type.VarcharType.VARCHAR;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+public class TestBinarySnapshotStateCodec
+{
+    private static final BlockEncodingSerde BLOCK_ENCODING_SERDE = createTestMetadataManager().getFunctionAndTypeManager().getBlockEncodingSerde();
+    private static final BlockEncodingSerdeProvider SERDE_PROVIDER = () -> BLOCK_ENCODING_SERDE;
+
+    @DataProvider
+    public static Object[][] compressions()
+    {
+        return Arrays.stream(StateCompression.values()).map(compression -> new Object[] {compression}).toArray(Object[][]::new);
+    }
+
+    @Test(dataProvider = "compressions")
+    public void testRoundTrip(StateCompression compression)
+            throws Exception
+    {
+        BinarySnapshotStateCodec codec = new BinarySnapshotStateCodec(BLOCK_ENCODING_SERDE, compression);
+
+        TestState state = new TestState();
+        state.count = 42;
+        state.flag = true;
+        state.name = "operator";
+        state.values = new long[] {1, 2, 3};
+        state.nested = new byte[][] {{1, 2}, {}, null};
+        state.result = SnapshotResult.FAILED;
+        state.list = new ArrayList<>(ImmutableList.of("a", 1L, 2.5d));
+        state.map = new LinkedHashMap<>();
+        state.map.put("x", new int[] {7, 8});
+        state.map.put("y", null);
+        state.child = new TestState();
+        state.child.name = "child";
+        state.opaque = ImmutableList.of("java");
+
+        assertEquals(roundTrip(codec, state), state);
+        assertNull(roundTrip(codec, null));
+        assertEquals(roundTrip(codec, 5L), 5L);
+        assertEquals(roundTrip(codec, "text"), "text");
+    }
+
+    @Test
+    public void testSliceAndBlock()
+            throws Exception
+    {
+        BinarySnapshotStateCodec codec = new BinarySnapshotStateCodec(BLOCK_ENCODING_SERDE, StateCompression.LZ4);
+
+        Slice slice = Slices.utf8Slice("snapshot");
+        assertEquals(roundTrip(codec, slice), slice);
+
+        Block<?> block = createLongSequenceBlock(0, 100);
+        Page restored = new Page((Block<?>) roundTrip(codec, block));
+        assertPageEquals(ImmutableList.of(BIGINT), restored, new Page(block));
+    }
+
+    @Test
+    public void testOperatorState()
+            throws Exception
+    {
+        List<Type> types = ImmutableList.of(BIGINT, VARCHAR);
+        PagesIndex pagesIndex = new PagesIndex.TestingFactory(false).newPagesIndex(types, 100);
+        pagesIndex.addPage(createSequencePage(types, 100, 0, 0));
+        pagesIndex.addPage(createSequencePage(types, 50, 100, 100));
+
+        BinarySnapshotStateCodec codec = new BinarySnapshotStateCodec(BLOCK_ENCODING_SERDE, StateCompression.ZSTD);
+        Object state = pagesIndex.capture(SERDE_PROVIDER);
+
+        PagesIndex restoredIndex = new PagesIndex.TestingFactory(false).newPagesIndex(types, 100);
+        restoredIndex.restore(roundTrip(codec, state), SERDE_PROVIDER);
+
+        assertEquals(restoredIndex.getPositionCount(), pagesIndex.getPositionCount());
+        Iterator<Page> expected = pagesIndex.getPages();
+        Iterator<Page> actual = restoredIndex.getPages();
+        while (expected.hasNext()) {
+            assertTrue(actual.hasNext());
+            assertPageEquals(types, actual.next(), expected.next());
+        }
+        assertFalse(actual.hasNext());
+
+        // Binary encoding should be smaller than Java serialization
+        assertTrue(serialize(codec, state).length < serialize(JavaSnapshotStateCodec.JAVA_SNAPSHOT_STATE_CODEC, state).length);
+    }
+
+    @Test
+    public void testReadJavaSerializedState()
+            throws Exception
+    {
+        Map<String, Object> state = new HashMap<>();
+        state.put("key", new long[] {1});
+        byte[] javaBytes = serialize(JavaSnapshotStateCodec.JAVA_SNAPSHOT_STATE_CODEC, state);
+
+        Object restored = new BinarySnapshotStateCodec(BLOCK_ENCODING_SERDE, StateCompression.NONE).deserialize(new ByteArrayInputStream(javaBytes));
+        assertEquals(((long[]) ((Map<?, ?>) restored).get("key"))[0], 1L);
+    }
+
+    @Test
+    public void testSharedReferences()
+            throws Exception
+    {
+        BinarySnapshotStateCodec codec = new BinarySnapshotStateCodec(BLOCK_ENCODING_SERDE, StateCompression.NONE);
+
+        long[] values = new long[] {1, 2};
+        TestState child = new TestState();
+        child.values = values;
+        List<Object> state = new ArrayList<>(ImmutableList.of(values, child, child));
+
+        List<?> restored = (List<?>) roundTrip(codec, state);
+        assertSame(restored.get(1), restored.get(2));
+        assertSame(((TestState) restored.get(1)).values, restored.get(0));
+        assertEquals((long[]) restored.get(0), values);
+    }
+
+    @Test
+    public void testCyclicReferences()
+            throws Exception
+    {
+        BinarySnapshotStateCodec codec = new BinarySnapshotStateCodec(BLOCK_ENCODING_SERDE, StateCompression.LZ4);
+
+        Node first = new Node();
+        Node second = new Node();
+        first.value = 1;
+        first.next = second;
+        second.value = 2;
+        second.next = first;
+        List<Object> list = new ArrayList<>();
+        list.add(first);
+        list.add(list);
+
+        List<?> restored = (List<?>) roundTrip(codec, list);
+        assertSame(restored.get(1), restored);
+        Node restoredFirst = (Node) restored.get(0);
+        assertEquals(restoredFirst.value, 1);
+        assertEquals(restoredFirst.next.value, 2);
+        assertSame(restoredFirst.next.next, restoredFirst);
+    }
+
+    @Test
+    public void testNestingLimit()
+    {
+        Node head = new Node();
+        for (int i = 0; i < 5000; i++) {
+            Node node = new Node();
+            node.next = head;
+            head = node;
+        }
+        Node state = head;
+        assertThatThrownBy(() -> serialize(new BinarySnapshotStateCodec(BLOCK_ENCODING_SERDE, StateCompression.NONE), state))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("nested deeper than");
+    }
+
+    @Test
+    public void testCorruptedCompression()
+            throws Exception
+    {
+        byte[] bytes = serialize(new BinarySnapshotStateCodec(BLOCK_ENCODING_SERDE, StateCompression.NONE), "state");
+        // compression follows the magic number and the version
+        bytes[Short.BYTES + Byte.BYTES] = 42;
+        assertThatThrownBy(() -> new BinarySnapshotStateCodec(BLOCK_ENCODING_SERDE, StateCompression.NONE).deserialize(new ByteArrayInputStream(bytes)))
+                .isInstanceOf(IOException.class)
+                .hasMessage("Corrupted snapshot state: unknown compression 42");
+    }
+
+    private static Object roundTrip(SnapshotStateCodec codec, Object state)
+            throws IOException, ClassNotFoundException
+    {
+        return codec.deserialize(new ByteArrayInputStream(serialize(codec, state)));
+    }
+
+    private static byte[] serialize(SnapshotStateCodec codec, Object state)
+            throws IOException
+    {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        codec.serialize(state, output);
+        return output.toByteArray();
+    }
+
+    private static class Node
+            implements Serializable
+    {
+        private int value;
+        private Node next;
+    }
+
+    private static class TestState
+            implements Serializable
+    {
+        private int count;
+        private boolean flag;
+        private String name;
+        private long[] values;
+        private byte[][] nested;
+        private SnapshotResult result;
+        private List<Object> list;
+        private Map<String, Object> map;
+        private TestState child;
+        private Object opaque;
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            TestState other = (TestState) o;
+            return count == other.count &&
+                    flag == other.flag &&
+                    Objects.equals(name, other.name) &&
+                    Arrays.equals(values, other.values) &&
+                    Arrays.deepEquals(nested, other.nested) &&
+                    result == other.result &&
+                    Objects.equals(list, other.list) &&
+                    mapEquals(map, other.map) &&
+                    Objects.equals(child, other.child) &&
+                    Objects.equals(opaque, other.opaque);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(count, flag, name, result, child);
+        }
+
+        private static boolean mapEquals(Map<String, Object> left, Map<String, Object> right)
+        {
+            if (left == null || right == null) {
+                return left == right;
+            }
+            return left.getClass() == right.getClass() &&
+                    left.keySet().equals(right.keySet()) &&
+                    left.keySet().stream().allMatch(key -> Objects.deepEquals(left.get(key), right.get(key)));
+        }
+    }
+}
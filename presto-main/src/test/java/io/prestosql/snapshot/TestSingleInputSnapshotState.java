@@ -26,6 +26,7 @@ import io.prestosql.spi.snapshot.MarkerPage;
 import io.prestosql.spi.snapshot.Restorable;
 import io.prestosql.spi.snapshot.RestorableConfig;
 import io.prestosql.testing.assertions.Assert;
+import org.mockito.ArgumentCaptor;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
@@ -281,6 +282,48 @@ public class TestSingleInputSnapshotState
         verify(snapshotManager, times(1)).loadState(anyObject());
     }
 
+    @Test
+    public void testStoreLoadIncrementalSnapshot()
+            throws Exception
+    {
+        TestingIncrementalRestorable restorable = new TestingIncrementalRestorable();
+        SingleInputSnapshotState state = new SingleInputSnapshotState(
+                restorable,
+                snapshotManager,
+                null,
+                TestSingleInputSnapshotState::createSnapshotStateId,
+                TestSingleInputSnapshotState::createSnapshotStateId);
+        when(snapshotManager.getMaxIncrementalChainLength()).thenReturn(2);
+        ArgumentCaptor<Object> stored = ArgumentCaptor.forClass(Object.class);
+
+        // Full, incremental, incremental, then full again because the chain is at its max length
+        for (long snapshotId = 1; snapshotId <= 4; snapshotId++) {
+            restorable.state++;
+            state.processPage(MarkerPage.snapshotPage(snapshotId));
+        }
+        verify(snapshotManager, times(4)).storeState(anyObject(), stored.capture());
+        List<Object> states = stored.getAllValues();
+        Assert.assertEquals(states.get(0), 1);
+        Assert.assertEquals(((IncrementalSnapshotState) states.get(1)).getBaseStateId(), createSnapshotStateId(1));
+        Assert.assertEquals(((IncrementalSnapshotState) states.get(1)).getIncrement(), 1);
+        Assert.assertEquals(((IncrementalSnapshotState) states.get(2)).getBaseStateId(), createSnapshotStateId(2));
+        Assert.assertEquals(((IncrementalSnapshotState) states.get(2)).getChainLength(), 2);
+        Assert.assertEquals(states.get(3), 4);
+
+        // Restore from the chain: full state 1, followed by increments of 1 and 1
+        restorable.state = 0;
+        when(snapshotManager.loadState(snapshotId2)).thenReturn(Optional.of(states.get(2)));
+        when(snapshotManager.loadIncrementalChain(anyObject())).thenReturn(Optional.of(ImmutableList.of(states.get(0), states.get(1), states.get(2))));
+        state.processPage(MarkerPage.resumePage(2));
+        Assert.assertEquals(restorable.state, 3);
+        verify(snapshotManager, times(1)).succeededToRestore(anyObject());
+
+        // Missing base states fail the restore
+        when(snapshotManager.loadIncrementalChain(anyObject())).thenReturn(Optional.empty());
+        state.processPage(MarkerPage.resumePage(2));
+        verify(snapshotManager, times(1)).failedToRestore(anyObject(), anyBoolean());
+    }
+
     @RestorableConfig(uncapturedFields = {"supportsConsolidatedWrites"})
     private static class TestingRestorable
             implements Restorable
@@ -312,6 +355,43 @@ public class TestSingleInputSnapshotState
         }
     }
 
+    @RestorableConfig(uncapturedFields = "capturedState")
+    private static class TestingIncrementalRestorable
+            extends TestingRestorable
+            implements IncrementalRestorable
+    {
+        int capturedState;
+
+        @Override
+        public Object capture(BlockEncodingSerdeProvider serdeProvider)
+        {
+            capturedState = state;
+            return state;
+        }
+
+        @Override
+        public void restore(Object state, BlockEncodingSerdeProvider serdeProvider)
+        {
+            super.restore(state, serdeProvider);
+            capturedState = this.state;
+        }
+
+        @Override
+        public Optional<Object> captureIncrement(BlockEncodingSerdeProvider serdeProvider)
+        {
+            int increment = state - capturedState;
+            capturedState = state;
+            return Optional.of(increment);
+        }
+
+        @Override
+        public void restoreIncrement(Object increment, BlockEncodingSerdeProvider serdeProvider)
+        {
+            state += (Integer) increment;
+            capturedState = state;
+        }
+    }
+
     private static class TestingSpillableRestorable
             extends TestingRestorable
             implements Spillable
@@ -16,12 +16,16 @@ package io.prestosql.snapshot;
 
 import com.google.common.collect.ImmutableMap;
 import io.airlift.configuration.testing.ConfigAssertions;
+import io.airlift.units.DataSize;
 import io.airlift.units.Duration;
 import org.testng.annotations.Test;
 
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
+import static io.airlift.units.DataSize.Unit.GIGABYTE;
+import static io.airlift.units.DataSize.Unit.MEGABYTE;
+
 public class TestSnapshotConfig
 {
     @Test
@@ -33,7 +37,14 @@ public class TestSnapshotConfig
                 .setSnapshotTimeInterval(new Duration(5, TimeUnit.MINUTES))
                 .setSnapshotSplitCountInterval(1000)
                 .setSnapshotMaxRetries(10)
-                .setSnapshotRetryTimeout(new Duration(10, TimeUnit.MINUTES)));
+                .setSnapshotRetryTimeout(new Duration(10, TimeUnit.MINUTES))
+                .setSnapshotStateCodec(SnapshotConfig.StateCodec.JAVA)
+                .setSnapshotStateCompression(SnapshotConfig.StateCompression.NONE)
+                .setIncrementalSnapshotEnabled(false)
+                .setMaxIncrementalChainLength(5)
+                .setAsyncWriteEnabled(false)
+                .setAsyncWriteThreads(4)
+                .setMaxAsyncWriteSize(new DataSize(256, MEGABYTE)));
     }
 
     @Test
@@ -46,6 +57,13 @@ public class TestSnapshotConfig
                 .put("hetu.internal.snapshot.splitCountInterval", "1000000")
                 .put("hetu.snapshot.maxRetries", "20")
                 .put("hetu.snapshot.retryTimeout", "5m")
+                .put("hetu.snapshot.stateCodec", "BINARY")
+                .put("hetu.snapshot.stateCompression", "ZSTD")
+                .put("hetu.snapshot.incremental", "true")
+                .put("hetu.snapshot.maxIncrementalChainLength", "3")
+                .put("hetu.snapshot.asyncWrite", "true")
+                .put("hetu.snapshot.asyncWriteThreads", "8")
+                .put("hetu.snapshot.maxAsyncWriteSize", "1GB")
                 .build();
 
         SnapshotConfig expected = new SnapshotConfig()
@@ -54,7 +72,14 @@ public class TestSnapshotConfig
                 .setSnapshotTimeInterval(new Duration(3, TimeUnit.MINUTES))
                 .setSnapshotSplitCountInterval(1000000)
                 .setSnapshotMaxRetries(20)
-                .setSnapshotRetryTimeout(new Duration(5, TimeUnit.MINUTES));
+                .setSnapshotRetryTimeout(new Duration(5, TimeUnit.MINUTES))
+                .setSnapshotStateCodec(SnapshotConfig.StateCodec.BINARY)
+                .setSnapshotStateCompression(SnapshotConfig.StateCompression.ZSTD)
+                .setIncrementalSnapshotEnabled(true)
+                .setMaxIncrementalChainLength(3)
+                .setAsyncWriteEnabled(true)
+                .setAsyncWriteThreads(8)
+                .setMaxAsyncWriteSize(new DataSize(1, GIGABYTE));
 
         ConfigAssertions.assertFullMapping(properties, expected);
     }
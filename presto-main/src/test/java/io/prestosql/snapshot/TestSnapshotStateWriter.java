@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.prestosql.snapshot;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.common.util.concurrent.Futures.immediateFailedFuture;
+import static com.google.common.util.concurrent.Futures.immediateFuture;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+@Test(singleThreaded = true)
+public class TestSnapshotStateWriter
+{
+    private SnapshotStateWriter writer;
+
+    @BeforeMethod
+    public void setup()
+    {
+        writer = new SnapshotStateWriter(2, 100);
+    }
+
+    @AfterMethod
+    public void teardown()
+    {
+        writer.shutdown();
+    }
+
+    @Test
+    public void testWrite()
+            throws Exception
+    {
+        AtomicInteger writes = new AtomicInteger();
+        ListenableFuture<?> future = writer.submit(10, immediateFuture(null), writes::incrementAndGet);
+        future.get(10, SECONDS);
+        assertEquals(writes.get(), 1);
+        assertEquals(writer.getBytesInFlight(), 0);
+        assertEquals(writer.getBytesWritten().getTotalCount(), 10);
+        assertEquals(writer.getWriteTime().getAllTime().getCount(), 1.0);
+    }
+
+    @Test
+    public void testDependency()
+            throws Exception
+    {
+        SettableFuture<?> dependency = SettableFuture.create();
+        AtomicBoolean written = new AtomicBoolean();
+        ListenableFuture<?> future = writer.submit(10, dependency, () -> written.set(true));
+        assertEquals(writer.getQueuedWrites(), 1);
+        assertEquals(writer.getBytesInFlight(), 10);
+        assertFalse(future.isDone());
+
+        dependency.set(null);
+        future.get(10, SECONDS);
+        assertTrue(written.get());
+    }
+
+    @Test
+    public void testFailedDependency()
+            throws Exception
+    {
+        AtomicBoolean written = new AtomicBoolean();
+        ListenableFuture<?> future = writer.submit(10, immediateFailedFuture(new RuntimeException("failed dependency")), () -> written.set(true));
+        assertFailed(future);
+        assertFalse(written.get());
+        assertEquals(writer.getBytesInFlight(), 0);
+        assertEquals(writer.getFailedWrites().getTotalCount(), 1);
+    }
+
+    @Test
+    public void testFailedWrite()
+            throws Exception
+    {
+        ListenableFuture<?> future = writer.submit(10, immediateFuture(null), () -> {
+            throw new RuntimeException("failed write");
+        });
+        assertFailed(future);
+        assertEquals(writer.getBytesInFlight(), 0);
+        assertEquals(writer.getFailedWrites().getTotalCount(), 1);
+    }
+
+    @Test
+    public void testBackPressure()
+            throws Exception
+    {
+        CountDownLatch latch = new CountDownLatch(1);
+        ListenableFuture<?> first = writer.submit(80, immediateFuture(null), latch::await);
+        assertEquals(writer.getBytesInFlight(), 80);
+        assertTrue(writer.isFull().isDone());
+
+        // Reaches the limit, so it's accepted without blocking the caller, but the writer becomes full
+        ListenableFuture<?> second = writer.submit(30, immediateFuture(null), latch::await);
+        assertEquals(writer.getBytesInFlight(), 110);
+        ListenableFuture<?> full = writer.isFull();
+        assertFalse(full.isDone());
+
+        latch.countDown();
+        first.get(10, SECONDS);
+        second.get(10, SECONDS);
+        full.get(10, SECONDS);
+        assertTrue(writer.isFull().isDone());
+        assertEquals(writer.getBytesInFlight(), 0);
+        assertEquals(writer.getBlockedTime().getAllTime().getCount(), 1.0);
+    }
+
+    @Test
+    public void testLargeWrite()
+            throws Exception
+    {
+        // A write larger than the limit is accepted, and the writer has room again once it's written
+        writer.submit(1000, immediateFuture(null), () -> {}).get(10, SECONDS);
+        writer.isFull().get(10, SECONDS);
+        assertEquals(writer.getBytesInFlight(), 0);
+    }
+
+    private static void assertFailed(ListenableFuture<?> future)
+            throws Exception
+    {
+        try {
+            future.get(10, SECONDS);
+            fail("expected write to fail");
+        }
+        catch (ExecutionException e) {
+            // expected
+        }
+    }
+}
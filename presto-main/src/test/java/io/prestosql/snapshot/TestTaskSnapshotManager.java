@@ -15,6 +15,8 @@
 package io.prestosql.snapshot;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
 import io.hetu.core.filesystem.HetuLocalFileSystemClient;
 import io.hetu.core.filesystem.LocalConfig;
 import io.prestosql.execution.StageId;
@@ -25,6 +27,7 @@ import io.prestosql.operator.Operator;
 import io.prestosql.spi.QueryId;
 import io.prestosql.testing.assertions.Assert;
 import org.apache.commons.io.FileUtils;
+import org.mockito.ArgumentCaptor;
 import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
@@ -42,11 +45,15 @@ import java.util.Properties;
 
 import static io.prestosql.SessionTestUtils.TEST_SNAPSHOT_SESSION;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.same;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotSame;
 import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertTrue;
 
@@ -464,6 +471,87 @@ public class TestTaskSnapshotManager
         Assert.assertEquals(snapshotManager.getSnapshotCaptureResult().get(1L), SnapshotResult.FAILED);
     }
 
+    @Test
+    public void testAsyncStoreAndLoad()
+            throws Exception
+    {
+        queryId = new QueryId("asyncstoreandload");
+        snapshotConfig.setAsyncWriteEnabled(true);
+        SnapshotUtils asyncSnapshotUtils = new SnapshotUtils(fileSystemClientManager, snapshotConfig, new InMemoryNodeManager());
+        asyncSnapshotUtils.rootPath = SNAPSHOT_FILE_SYSTEM_DIR;
+        asyncSnapshotUtils.initialize();
+
+        TaskId taskId1 = new TaskId(queryId.getId(), 1, 0);
+        TaskSnapshotManager snapshotManager = new TaskSnapshotManager(taskId1, 0, asyncSnapshotUtils);
+        snapshotManager.setTotalComponents(1);
+
+        MockState operatorState = new MockState("operator-state");
+        SnapshotStateId operatorStateId = SnapshotStateId.forOperator(1L, taskId1, 3, 4, 5);
+        snapshotManager.storeState(operatorStateId, operatorState);
+        snapshotManager.succeededToCapture(operatorStateId);
+
+        long start = System.nanoTime();
+        while (snapshotManager.getSnapshotCaptureResult().get(1L) == null) {
+            assertTrue(System.nanoTime() - start < 10_000_000_000L, "Timed out waiting for snapshot result");
+            Thread.sleep(10);
+        }
+        assertEquals(snapshotManager.getSnapshotCaptureResult().get(1L), SnapshotResult.SUCCESSFUL);
+        MockState newOperatorState = (MockState) snapshotManager.loadState(operatorStateId).get();
+        assertEquals(newOperatorState.getState(), operatorState.getState());
+        assertEquals(asyncSnapshotUtils.getStateWriter().getBytesInFlight(), 0);
+        asyncSnapshotUtils.removeQuerySnapshotManager(queryId);
+    }
+
+    @Test
+    public void testAsyncStoreResult()
+            throws Exception
+    {
+        queryId = new QueryId("asyncstoreresult");
+        TaskId taskId1 = new TaskId(queryId.getId(), 1, 0);
+        SnapshotStateId firstId = SnapshotStateId.forOperator(1L, taskId1, 3, 4, 5);
+        SnapshotStateId secondId = SnapshotStateId.forOperator(2L, taskId1, 3, 4, 5);
+        MockState firstState = new MockState("first");
+        IncrementalSnapshotState secondState = new IncrementalSnapshotState(firstId, 1, "second");
+
+        SnapshotUtils asyncSnapshotUtils = mock(SnapshotUtils.class);
+        when(asyncSnapshotUtils.isAsyncWriteEnabled()).thenReturn(true);
+        SettableFuture<?> firstWrite = SettableFuture.create();
+        SettableFuture<?> secondWrite = SettableFuture.create();
+        when(asyncSnapshotUtils.storeStateAsync(eq(firstId), any(), any())).thenAnswer(invocation -> firstWrite);
+        when(asyncSnapshotUtils.storeStateAsync(eq(secondId), any(), any())).thenAnswer(invocation -> secondWrite);
+
+        TaskSnapshotManager snapshotManager = new TaskSnapshotManager(taskId1, 0, asyncSnapshotUtils);
+        snapshotManager.setTotalComponents(1);
+
+        snapshotManager.storeState(firstId, firstState);
+        verify(asyncSnapshotUtils).storeStateAsync(eq(firstId), same(firstState), any());
+        snapshotManager.succeededToCapture(firstId);
+        // Not reported until the state is written
+        assertNull(snapshotManager.getSnapshotCaptureResult().get(1L));
+
+        // Incremental state is written after its base
+        snapshotManager.storeState(secondId, secondState);
+        verify(asyncSnapshotUtils).storeStateAsync(eq(secondId), same(secondState), same(firstWrite));
+        snapshotManager.succeededToCapture(secondId);
+
+        firstWrite.set(null);
+        assertEquals(snapshotManager.getSnapshotCaptureResult().get(1L), SnapshotResult.SUCCESSFUL);
+        assertNull(snapshotManager.getSnapshotCaptureResult().get(2L));
+
+        secondWrite.setException(new RuntimeException("failed to write"));
+        assertEquals(snapshotManager.getSnapshotCaptureResult().get(2L), SnapshotResult.FAILED);
+
+        // Finished writes are not kept around, so the next incremental state doesn't wait for them
+        SnapshotStateId thirdId = SnapshotStateId.forOperator(3L, taskId1, 3, 4, 5);
+        IncrementalSnapshotState thirdState = new IncrementalSnapshotState(secondId, 2, "third");
+        when(asyncSnapshotUtils.storeStateAsync(eq(thirdId), any(), any())).thenAnswer(invocation -> SettableFuture.create());
+        snapshotManager.storeState(thirdId, thirdState);
+        ArgumentCaptor<ListenableFuture> dependency = ArgumentCaptor.forClass(ListenableFuture.class);
+        verify(asyncSnapshotUtils).storeStateAsync(eq(thirdId), same(thirdState), dependency.capture());
+        assertNotSame(dependency.getValue(), secondWrite);
+        assertTrue(dependency.getValue().isDone());
+    }
+
     @Test
     public void testSpilledDeleted()
             throws Exception
@@ -33,6 +33,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Optional;
 
 import static com.google.common.io.MoreFiles.deleteRecursively;
 import static com.google.common.io.MoreFiles.listFiles;
@@ -48,6 +49,7 @@ import static java.nio.file.Files.createTempDirectory;
 import static java.nio.file.Files.newInputStream;
 import static java.util.concurrent.Executors.newCachedThreadPool;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertTrue;
 
 @Test(singleThreaded = true)
@@ -150,6 +152,91 @@ public class TestFileSingleStreamSpiller
         assertEquals(memoryContext.getBytes(), 0);
     }
 
+    @Test
+    public void testSpillReadAhead()
+            throws Exception
+    {
+        ListeningExecutorService readAheadExecutor = listeningDecorator(newCachedThreadPool());
+        try {
+            FileSingleStreamSpillerFactory spillerFactory = new FileSingleStreamSpillerFactory(
+                    executor,
+                    createTestMetadataManager().getFunctionAndTypeManager().getBlockEncodingSerde(),
+                    new SpillerStats(),
+                    ImmutableList.of(spillPath.toPath()),
+                    1.0,
+                    false,
+                    false,
+                    Optional.empty(),
+                    Optional.of(readAheadExecutor),
+                    3);
+            LocalMemoryContext memoryContext = newSimpleAggregatedMemoryContext().newLocalMemoryContext("test");
+            SingleStreamSpiller spiller = spillerFactory.create(TYPES, bytes -> {}, memoryContext);
+
+            Page page = buildPage();
+            spiller.spill(Iterators.forArray(page, page, page, page, page, page, page)).get();
+
+            Iterator<Page> spilledPagesIterator = spiller.getSpilledPages();
+            assertEquals(memoryContext.getBytes(), FileSingleStreamSpiller.BUFFER_SIZE);
+
+            // the first batch is buffered, and the second one is being read
+            Page firstPage = spilledPagesIterator.next();
+            PageAssertions.assertPageEquals(TYPES, page, firstPage);
+            assertEquals(memoryContext.getBytes(), FileSingleStreamSpiller.BUFFER_SIZE + 6 * firstPage.getRetainedSizeInBytes());
+
+            List<Page> spilledPages = ImmutableList.copyOf(spilledPagesIterator);
+            assertEquals(spilledPages.size(), 6);
+            for (Page spilledPage : spilledPages) {
+                PageAssertions.assertPageEquals(TYPES, page, spilledPage);
+            }
+            assertEquals(memoryContext.getBytes(), FileSingleStreamSpiller.BUFFER_SIZE);
+
+            spiller.close();
+            assertEquals(listFiles(spillPath.toPath()).size(), 0);
+            assertEquals(memoryContext.getBytes(), 0);
+        }
+        finally {
+            readAheadExecutor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testCloseDuringReadAhead()
+            throws Exception
+    {
+        ListeningExecutorService readAheadExecutor = listeningDecorator(newCachedThreadPool());
+        try {
+            FileSingleStreamSpillerFactory spillerFactory = new FileSingleStreamSpillerFactory(
+                    executor,
+                    createTestMetadataManager().getFunctionAndTypeManager().getBlockEncodingSerde(),
+                    new SpillerStats(),
+                    ImmutableList.of(spillPath.toPath()),
+                    1.0,
+                    false,
+                    false,
+                    Optional.empty(),
+                    Optional.of(readAheadExecutor),
+                    1);
+            LocalMemoryContext memoryContext = newSimpleAggregatedMemoryContext().newLocalMemoryContext("test");
+            SingleStreamSpiller spiller = spillerFactory.create(TYPES, bytes -> {}, memoryContext);
+
+            Page page = buildPage();
+            spiller.spill(Iterators.forArray(page, page, page)).get();
+
+            Iterator<Page> spilledPagesIterator = spiller.getSpilledPages();
+            PageAssertions.assertPageEquals(TYPES, page, spilledPagesIterator.next());
+
+            // the memory of pages that were read ahead is released, and no more pages are returned
+            spiller.close();
+            assertEquals(memoryContext.getBytes(), 0);
+            assertFalse(spilledPagesIterator.hasNext());
+            assertEquals(memoryContext.getBytes(), 0);
+            assertEquals(listFiles(spillPath.toPath()).size(), 0);
+        }
+        finally {
+            readAheadExecutor.shutdownNow();
+        }
+    }
+
     private Page buildPage()
     {
         BlockBuilder col1 = BIGINT.createBlockBuilder(null, 1);
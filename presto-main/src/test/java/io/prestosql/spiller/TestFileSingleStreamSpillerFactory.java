@@ -17,19 +17,28 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.io.Closer;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.MoreExecutors;
+import io.hetu.core.filesystem.HetuLocalFileSystemClient;
+import io.hetu.core.filesystem.LocalConfig;
 import io.prestosql.spi.Page;
 import io.prestosql.spi.block.BlockBuilder;
 import io.prestosql.spi.block.BlockEncodingSerde;
 import io.prestosql.spi.type.Type;
 import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Optional;
+import java.util.Properties;
 import java.util.concurrent.Executors;
 
 import static com.google.common.io.MoreFiles.deleteRecursively;
@@ -42,8 +51,10 @@ import static io.prestosql.spi.type.BigintType.BIGINT;
 import static io.prestosql.spiller.FileSingleStreamSpillerFactory.SPILL_FILE_PREFIX;
 import static io.prestosql.spiller.FileSingleStreamSpillerFactory.SPILL_FILE_SUFFIX;
 import static java.nio.file.Files.createTempDirectory;
+import static java.nio.file.StandardOpenOption.APPEND;
 import static java.util.Collections.emptyList;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
 
 @Test(singleThreaded = true)
 public class TestFileSingleStreamSpillerFactory
@@ -146,6 +157,108 @@ public class TestFileSingleStreamSpillerFactory
         spillerFactory.create(types, bytes -> {}, newSimpleAggregatedMemoryContext().newLocalMemoryContext("test"));
     }
 
+    @Test
+    public void testOverflowToSharedSpillStore()
+            throws Exception
+    {
+        File sharedPath = createTempDirectory(getClass().getName()).toFile();
+        closer.register(() -> deleteRecursively(sharedPath.toPath(), ALLOW_INSECURE));
+        SharedSpillStore sharedSpillStore = new SharedSpillStore(
+                new HetuLocalFileSystemClient(new LocalConfig(new Properties()), sharedPath.toPath()),
+                sharedPath.toPath(),
+                "test-node");
+
+        List<Type> types = ImmutableList.of(BIGINT);
+        List<Path> spillPaths = ImmutableList.of(spillPath1.toPath());
+        // No space available on local spill paths
+        FileSingleStreamSpillerFactory spillerFactory = new FileSingleStreamSpillerFactory(
+                executor, // executor won't be closed, because we don't call destroy() on the spiller factory
+                blockEncodingSerde,
+                new SpillerStats(),
+                spillPaths,
+                0.0,
+                false,
+                false,
+                Optional.of(sharedSpillStore));
+
+        Page page = buildPage();
+        SingleStreamSpiller singleStreamSpiller = spillerFactory.create(types, bytes -> {}, newSimpleAggregatedMemoryContext().newLocalMemoryContext("test"));
+        getUnchecked(singleStreamSpiller.spill(page));
+        getUnchecked(singleStreamSpiller.spill(page));
+
+        Path sharedNodePath = sharedPath.toPath().resolve("test-node");
+        assertEquals(listFiles(spillPath1.toPath()).size(), 0);
+        assertEquals(listFiles(sharedNodePath).size(), 1);
+        assertTrue(sharedSpillStore.contains(singleStreamSpiller.getFile()));
+
+        // pages of both spills are appended to the same file
+        List<Page> spilledPages = ImmutableList.copyOf(singleStreamSpiller.getSpilledPages());
+        assertEquals(spilledPages.size(), 2);
+        assertEquals(spilledPages.get(1).getBlock(0).getLong(0, 0), 42);
+
+        singleStreamSpiller.close();
+        assertEquals(listFiles(sharedNodePath).size(), 0);
+    }
+
+    @DataProvider
+    public static Object[][] appendSupported()
+    {
+        return new Object[][] {{true}, {false}};
+    }
+
+    @Test(dataProvider = "appendSupported")
+    public void testSpillAfterRestoreInSharedSpillStore(boolean appendSupported)
+            throws Exception
+    {
+        File sharedPath = createTempDirectory(getClass().getName()).toFile();
+        closer.register(() -> deleteRecursively(sharedPath.toPath(), ALLOW_INSECURE));
+        HetuLocalFileSystemClient fileSystem = new HetuLocalFileSystemClient(new LocalConfig(new Properties()), sharedPath.toPath())
+        {
+            @Override
+            public OutputStream newOutputStream(Path path, OpenOption... options)
+                    throws IOException
+            {
+                if (!appendSupported && Arrays.asList(options).contains(APPEND)) {
+                    throw new UnsupportedOperationException("Provided OpenOptions are not supported");
+                }
+                return super.newOutputStream(path, options);
+            }
+        };
+        SharedSpillStore sharedSpillStore = new SharedSpillStore(fileSystem, sharedPath.toPath(), "test-node");
+
+        List<Type> types = ImmutableList.of(BIGINT);
+        FileSingleStreamSpillerFactory spillerFactory = new FileSingleStreamSpillerFactory(
+                executor, // executor won't be closed, because we don't call destroy() on the spiller factory
+                blockEncodingSerde,
+                new SpillerStats(),
+                ImmutableList.of(spillPath1.toPath()),
+                0.0,
+                false,
+                false,
+                Optional.of(sharedSpillStore));
+
+        Page page = buildPage();
+        FileSingleStreamSpiller spiller = (FileSingleStreamSpiller) spillerFactory.create(types, bytes -> {}, newSimpleAggregatedMemoryContext().newLocalMemoryContext("test"));
+        getUnchecked(spiller.spill(page));
+
+        // the spill file is copied to the snapshot store after its state is captured
+        Object state = spiller.capture(null);
+        Path spillFile = spiller.getFile();
+        byte[] snapshotContent = Files.readAllBytes(spillFile);
+        getUnchecked(spiller.spill(page));
+
+        spiller.restore(state, null);
+        Files.write(spillFile, snapshotContent);
+
+        // pages spilled after the restore are appended to the restored file
+        getUnchecked(spiller.spill(page));
+        List<Page> spilledPages = ImmutableList.copyOf(spiller.getSpilledPages());
+        assertEquals(spilledPages.size(), 2);
+
+        spiller.close();
+        assertEquals(listFiles(sharedPath.toPath().resolve("test-node")).size(), 0);
+    }
+
     @Test
     public void testCleanupOldSpillFiles()
             throws Exception
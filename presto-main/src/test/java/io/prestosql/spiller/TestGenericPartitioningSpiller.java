@@ -16,6 +16,7 @@ package io.prestosql.spiller;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.io.Closer;
+import io.hetu.core.transport.execution.buffer.PagesSerde;
 import io.prestosql.RowPagesBuilder;
 import io.prestosql.SequencePageBuilder;
 import io.prestosql.memory.context.AggregatedMemoryContext;
@@ -46,6 +47,7 @@ import static io.prestosql.operator.PageAssertions.assertPageEquals;
 import static io.prestosql.spi.type.BigintType.BIGINT;
 import static io.prestosql.spi.type.DoubleType.DOUBLE;
 import static io.prestosql.spi.type.VarcharType.VARCHAR;
+import static io.prestosql.testing.TestingPagesSerdeFactory.testingPagesSerde;
 import static java.lang.Math.toIntExact;
 import static java.nio.file.Files.createTempDirectory;
 import static java.util.concurrent.Executors.newSingleThreadScheduledExecutor;
@@ -200,6 +202,38 @@ public class TestGenericPartitioningSpiller
         assertEquals(memoryContext.getBytes(), 0, "Reserved bytes should be zeroed after spiller is closed");
     }
 
+    @Test
+    public void testCaptureUnflushedPositions()
+            throws Exception
+    {
+        PagesSerde serde = testingPagesSerde();
+        Page page = SequencePageBuilder.createSequencePage(TYPES, 10, SECOND_PARTITION_START, 5, 10, 15);
+        Object snapshot;
+        try (PartitioningSpiller spiller = factory.create(
+                TYPES,
+                new FourFixedPartitionsPartitionFunction(0),
+                mockSpillContext(),
+                mockMemoryContext(scheduledExecutor))) {
+            PartitioningSpillResult result = spiller.partitionAndSpill(page, partition -> true);
+            // positions stay in the page builder until it is full, capturing them doesn't write them to disk
+            assertEquals(result.getSpillingFuture().isDone(), true);
+            snapshot = spiller.capture(serde);
+            assertEquals(spiller.getSpilledFilePaths(), ImmutableList.of());
+        }
+
+        try (PartitioningSpiller spiller = factory.create(
+                TYPES,
+                new FourFixedPartitionsPartitionFunction(0),
+                mockSpillContext(),
+                mockMemoryContext(scheduledExecutor))) {
+            spiller.restore(snapshot, serde);
+            assertSpilledPages(
+                    TYPES,
+                    spiller,
+                    ImmutableList.of(ImmutableList.of(), ImmutableList.of(page), ImmutableList.of(), ImmutableList.of()));
+        }
+    }
+
     private void assertSpilledPages(
             List<Type> types,
             PartitioningSpiller spiller,
@@ -34,7 +34,10 @@ public class TestNodeSpillConfig
                 .setMaxSpillPerNode(new DataSize(100, GIGABYTE))
                 .setQueryMaxSpillPerNode(new DataSize(100, GIGABYTE))
                 .setSpillCompressionEnabled(false)
-                .setSpillEncryptionEnabled(false));
+                .setSpillEncryptionEnabled(false)
+                .setSpillSharedProfile(null)
+                .setSpillSharedPath("/tmp/hetu/spill")
+                .setSpillReadAheadPages(0));
     }
 
     @Test
@@ -45,13 +48,19 @@ public class TestNodeSpillConfig
                 .put("experimental.query-max-spill-per-node", "15 MB")
                 .put("experimental.spill-compression-enabled", "true")
                 .put("experimental.spill-encryption-enabled", "true")
+                .put("experimental.spill-shared-profile", "hdfs-spill")
+                .put("experimental.spill-shared-path", "/hetu/spill")
+                .put("experimental.spill-read-ahead-pages", "4")
                 .build();
 
         NodeSpillConfig expected = new NodeSpillConfig()
                 .setMaxSpillPerNode(new DataSize(10, MEGABYTE))
                 .setQueryMaxSpillPerNode(new DataSize(15, MEGABYTE))
                 .setSpillCompressionEnabled(true)
-                .setSpillEncryptionEnabled(true);
+                .setSpillEncryptionEnabled(true)
+                .setSpillSharedProfile("hdfs-spill")
+                .setSpillSharedPath("/hetu/spill")
+                .setSpillReadAheadPages(4);
 
         assertFullMapping(properties, expected);
     }
@@ -18,6 +18,7 @@ import io.airlift.configuration.ConfigurationFactory;
 import io.airlift.configuration.testing.ConfigAssertions;
 import io.airlift.units.DataSize;
 import io.airlift.units.Duration;
+import io.hetu.core.transport.execution.buffer.PageCompressionCodec;
 import io.prestosql.operator.aggregation.arrayagg.ArrayAggGroupImplementation;
 import io.prestosql.operator.aggregation.histogram.HistogramGroupImplementation;
 import io.prestosql.operator.aggregation.multimapagg.MultimapAggGroupImplementation;
@@ -32,6 +33,8 @@ import static io.airlift.units.DataSize.Unit.KILOBYTE;
 import static io.airlift.units.DataSize.Unit.MEGABYTE;
 import static io.prestosql.sql.analyzer.FeaturesConfig.DynamicFilterDataType.BLOOM_FILTER;
 import static io.prestosql.sql.analyzer.FeaturesConfig.DynamicFilterDataType.HASHSET;
+import static io.prestosql.sql.analyzer.FeaturesConfig.DynamicFilterTransport.REMOTE_TASK;
+import static io.prestosql.sql.analyzer.FeaturesConfig.DynamicFilterTransport.STATE_STORE;
 import static io.prestosql.sql.analyzer.FeaturesConfig.JoinDistributionType;
 import static io.prestosql.sql.analyzer.FeaturesConfig.JoinDistributionType.BROADCAST;
 import static io.prestosql.sql.analyzer.FeaturesConfig.JoinReorderingStrategy;
@@ -97,6 +100,9 @@ public class TestFeaturesConfig
                 .setDefaultFilterFactorEnabled(false)
                 .setEnableForcedExchangeBelowGroupId(true)
                 .setExchangeCompressionEnabled(false)
+                .setExchangeCompressionCodec(PageCompressionCodec.ZSTD)
+                .setExchangeCompressionNetworkBandwidth(new DataSize(125, MEGABYTE))
+                .setExchangeStreamingEnabled(false)
                 .setEnableIntermediateAggregations(false)
                 .setPushAggregationThroughJoin(true)
                 .setParseDecimalLiteralsAsDouble(false)
@@ -118,6 +124,7 @@ public class TestFeaturesConfig
                 .setEnableDynamicFiltering(true)
                 .setDynamicFilteringMaxPerDriverRowCount(10000)
                 .setDynamicFilteringDataType(BLOOM_FILTER)
+                .setDynamicFilteringTransport(STATE_STORE)
                 .setDynamicFilteringWaitTime(new Duration(1000, MILLISECONDS))
                 .setDynamicFilteringMaxSize(1000000)
                 .setDynamicFilteringMaxPerDriverSize(new DataSize(1, MEGABYTE))
@@ -202,6 +209,9 @@ public class TestFeaturesConfig
                 .put("experimental.memory-revoking-threshold", "0.2")
                 .put("experimental.memory-revoking-target", "0.8")
                 .put("exchange.compression-enabled", "true")
+                .put("exchange.compression-codec", "ADAPTIVE")
+                .put("exchange.compression-network-bandwidth", "1GB")
+                .put("exchange.streaming-enabled", "true")
                 .put("optimizer.enable-intermediate-aggregations", "true")
                 .put("parse-decimal-literals-as-double", "true")
                 .put("optimizer.force-single-node-output", "false")
@@ -230,6 +240,7 @@ public class TestFeaturesConfig
                 .put("dynamic-filtering-max-size", "10000")
                 .put("dynamic-filtering-max-per-driver-row-count", "256")
                 .put("dynamic-filtering-data-type", "HASHSET")
+                .put("dynamic-filtering-transport", "REMOTE_TASK")
                 .put("dynamic-filtering-max-per-driver-size", "64kB")
                 .put("dynamic-filtering-bloom-filter-fpp", "0.001")
                 .put("implicit-conversion", "true")
@@ -301,6 +312,9 @@ public class TestFeaturesConfig
                 .setMemoryRevokingThreshold(0.2)
                 .setMemoryRevokingTarget(0.8)
                 .setExchangeCompressionEnabled(true)
+                .setExchangeCompressionCodec(PageCompressionCodec.ADAPTIVE)
+                .setExchangeCompressionNetworkBandwidth(new DataSize(1, GIGABYTE))
+                .setExchangeStreamingEnabled(true)
                 .setEnableIntermediateAggregations(true)
                 .setParseDecimalLiteralsAsDouble(true)
                 .setForceSingleNodeOutput(false)
@@ -330,6 +344,7 @@ public class TestFeaturesConfig
                 .setEnableExecutionPlanCache(false)
                 .setDynamicFilteringMaxPerDriverRowCount(256)
                 .setDynamicFilteringDataType(HASHSET)
+                .setDynamicFilteringTransport(REMOTE_TASK)
                 .setDynamicFilteringWaitTime(new Duration(200, MILLISECONDS))
                 .setDynamicFilteringMaxSize(10000)
                 .setDynamicFilteringMaxPerDriverSize(new DataSize(64, KILOBYTE))
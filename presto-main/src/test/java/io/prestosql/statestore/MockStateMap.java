@@ -21,6 +21,7 @@ import io.prestosql.spi.statestore.listener.EntryAddedListener;
 import io.prestosql.spi.statestore.listener.EntryEvent;
 import io.prestosql.spi.statestore.listener.MapListener;
 
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
@@ -48,7 +49,13 @@ public class MockStateMap<K, V>
     @Override
     public Map<K, V> getAll(Set<K> keys)
     {
-        return null;
+        Map<K, V> result = new HashMap<>();
+        for (K key : keys) {
+            if (map.containsKey(key)) {
+                result.put(key, map.get(key));
+            }
+        }
+        return result;
     }
 
     @Override
@@ -77,7 +84,7 @@ public class MockStateMap<K, V>
     @Override
     public void putAll(Map<K, V> map)
     {
-        map.putAll(map);
+        this.map.putAll(map);
     }
 
     @Override
@@ -89,6 +96,7 @@ public class MockStateMap<K, V>
     @Override
     public void removeAll(Set<K> keys)
     {
+        map.keySet().removeAll(keys);
     }
 
     @Override
@@ -97,6 +105,12 @@ public class MockStateMap<K, V>
         return map.replace(key, value);
     }
 
+    @Override
+    public boolean replace(K key, V oldValue, V newValue)
+    {
+        return map.replace(key, oldValue, newValue);
+    }
+
     @Override
     public boolean containsKey(K key)
     {
@@ -38,6 +38,7 @@ import java.io.InputStreamReader;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
+import static java.util.concurrent.TimeUnit.HOURS;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.mockito.Matchers.any;
@@ -45,6 +46,7 @@ import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
 
 /**
  * Test StateFetcher
@@ -271,4 +273,47 @@ public class TestStateFetcher
         Thread.sleep(300);
         verify(stateCollection, atLeastOnce()).getAll();
     }
+
+    @Test
+    public void testIncrementalFetch()
+            throws Exception
+    {
+        stateStoreMockData();
+        String mockDataPath = this.getClass().getClassLoader().getResource(MOCK_TEST_DATA_RESOURCE_NAME).getPath();
+        String statesValue = loadMockTestData(new File(mockDataPath), true);
+        Map<String, String> states = new ConcurrentHashMap<>();
+        states.put(STATES_KEY, statesValue);
+        MockStateMap<String, String> stateMap = new MockStateMap<>(STATE_COLLECTION_QUERY, states);
+        when(stateStore.getStateCollection(any())).then(new Returns(stateMap));
+
+        StateFetcherStats stats = new StateFetcherStats();
+        StateFetcher incrementalFetcher = new StateFetcher(stateStoreProvider, fetchInterval, stateExpireTime,
+                true, new Duration(1, HOURS), stats);
+        incrementalFetcher.registerStateCollection(STATE_COLLECTION_QUERY);
+
+        // first fetch reads everything and subscribes to changes
+        incrementalFetcher.fetchStates();
+        assertEquals(StateCacheStore.get().getCachedStates(STATE_COLLECTION_QUERY).size(), 1);
+        assertEquals(stats.getFullFetchTime().getAllTime().getCount(), 1.0);
+        assertEquals(stateMap.addedListeners.size(), 1);
+
+        // changes without an event are not seen until the next full fetch
+        states.put("query_without_event", statesValue);
+        // changes notified by the state store are read back
+        stateMap.put("query_with_event", statesValue);
+        incrementalFetcher.fetchStates();
+        Map<String, SharedQueryState> cachedStates = StateCacheStore.get().getCachedStates(STATE_COLLECTION_QUERY);
+        assertEquals(cachedStates.size(), 2);
+        assertTrue(cachedStates.containsKey("query_with_event"));
+        assertEquals(stats.getFullFetchTime().getAllTime().getCount(), 1.0);
+        assertEquals(stats.getIncrementalFetchTime().getAllTime().getCount(), 1.0);
+        assertEquals(stats.getChangedStates().getTotalCount(), 1);
+
+        // a full fetch reconciles the local view with the state store
+        incrementalFetcher.fetchAllStates();
+        assertEquals(StateCacheStore.get().getCachedStates(STATE_COLLECTION_QUERY).size(), 3);
+
+        incrementalFetcher.stop();
+        assertTrue(stateMap.addedListeners.isEmpty());
+    }
 }
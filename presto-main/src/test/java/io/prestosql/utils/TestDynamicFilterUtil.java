@@ -14,6 +14,7 @@
  */
 package io.prestosql.utils;
 
+import com.google.common.collect.ImmutableSet;
 import io.prestosql.Session;
 import io.prestosql.dynamicfilter.DynamicFilterService;
 import io.prestosql.execution.StageStateMachine;
@@ -23,9 +24,9 @@ import io.prestosql.spi.plan.JoinNode;
 import io.prestosql.spi.plan.Symbol;
 import io.prestosql.spi.statestore.StateCollection;
 import io.prestosql.spi.statestore.StateMap;
-import io.prestosql.spi.statestore.StateSet;
 import io.prestosql.spi.statestore.StateStore;
 import io.prestosql.sql.planner.plan.RemoteSourceNode;
+import io.prestosql.statestore.MockStateMap;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -37,7 +38,6 @@ import java.util.Set;
 
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
-import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -46,6 +46,11 @@ public class TestDynamicFilterUtil
     private TestDynamicFilterUtil() {}
 
     public static void registerDf(String filterId, Session session, JoinNode.DistributionType joinType, DynamicFilterService dynamicFilterService)
+    {
+        registerDf(filterId, session, joinType, dynamicFilterService, ImmutableSet.of(new TaskId("task1.0"), new TaskId("task1.1")));
+    }
+
+    public static void registerDf(String filterId, Session session, JoinNode.DistributionType joinType, DynamicFilterService dynamicFilterService, Set<TaskId> tasks)
     {
         JoinNode node = mock(JoinNode.class);
         HashMap<String, Symbol> dfs = new HashMap<>();
@@ -63,9 +68,6 @@ public class TestDynamicFilterUtil
         RemoteSourceNode leftNode = mock(RemoteSourceNode.class);
         when(node.getLeft()).thenReturn(leftNode);
 
-        HashSet<TaskId> tasks = new HashSet<>();
-        tasks.add(new TaskId("task1.0"));
-        tasks.add(new TaskId("task1.1"));
         StageStateMachine stateMachine = mock(StageStateMachine.class);
 
         when(stateMachine.getSession()).thenReturn(session);
@@ -82,18 +84,15 @@ public class TestDynamicFilterUtil
         dynamicFilterService.registerTasks(node, tasks, workers, stateMachine);
     }
 
-    public static StateStore setupMockStateStore(Map mergeMap, Map<String, String> dfTypeMap, Set<String> tasks, Set partial, String queryId, String filterId)
+    public static StateStore setupMockStateStore(Map mergeMap, Map<String, String> dfTypeMap, Map<String, Object> partialFilters)
     {
         StateMap mockMergeMap = mock(StateMap.class);
         StateMap mockDFTypeMap = mock(StateMap.class);
-        StateSet mockPartialSet = mock(StateSet.class);
-        StateSet mockTasksSet = mock(StateSet.class);
+        StateMap<String, Object> partialFiltersMap = new MockStateMap<>(DynamicFilterUtils.PARTIAL_DYNAMIC_FILTERS, partialFilters);
         StateStore stateStore = mock(StateStore.class);
 
         when(mockMergeMap.put(anyString(), any())).thenAnswer(i -> mergeMap.put(i.getArguments()[0], i.getArguments()[1]));
         when(mockDFTypeMap.put(anyString(), anyString())).thenAnswer(i -> dfTypeMap.put((String) i.getArguments()[0], (String) i.getArguments()[1]));
-        when(mockTasksSet.add(anyString())).thenAnswer(i -> tasks.add((String) i.getArguments()[0]));
-        when(mockPartialSet.add(any())).thenAnswer(i -> partial.add(i.getArguments()[0]));
 
         when(mockMergeMap.get(anyString())).thenAnswer(i -> mergeMap.get(i.getArguments()[0]));
         when(mockDFTypeMap.get(anyString())).thenAnswer(i -> dfTypeMap.get(i.getArguments()[0]));
@@ -101,30 +100,19 @@ public class TestDynamicFilterUtil
         when(mockMergeMap.getAll()).thenReturn(mergeMap);
         when(mockDFTypeMap.getAll()).thenReturn(dfTypeMap);
 
-        when(mockPartialSet.getAll()).thenReturn(partial);
-        when(mockPartialSet.size()).thenAnswer(i -> partial.size());
-        when(mockTasksSet.size()).thenAnswer(i -> tasks.size());
-
         when(stateStore.getStateCollection(DynamicFilterUtils.MERGED_DYNAMIC_FILTERS)).thenReturn(mockMergeMap);
         when(stateStore.createStateCollection(DynamicFilterUtils.MERGED_DYNAMIC_FILTERS, StateCollection.Type.MAP)).thenReturn(mockMergeMap);
         when(stateStore.getOrCreateStateCollection(DynamicFilterUtils.MERGED_DYNAMIC_FILTERS, StateCollection.Type.MAP)).thenReturn(mockMergeMap);
 
-        when(stateStore.getStateCollection(DynamicFilterUtils.createKey(DynamicFilterUtils.TASKSPREFIX, filterId, queryId))).thenReturn(mockTasksSet);
-        when(stateStore.createStateCollection(DynamicFilterUtils.createKey(DynamicFilterUtils.TASKSPREFIX, filterId, queryId), StateCollection.Type.SET)).thenReturn(mockTasksSet);
-
-        when(stateStore.getStateCollection(DynamicFilterUtils.createKey(DynamicFilterUtils.PARTIALPREFIX, filterId, queryId))).thenReturn(mockPartialSet);
-        when(stateStore.createStateCollection(DynamicFilterUtils.createKey(DynamicFilterUtils.PARTIALPREFIX, filterId, queryId), StateCollection.Type.SET)).thenReturn(mockPartialSet);
-
-        // In statestore, set and map are destroyed and set to null after query finishes, however, in the UT we just assume the set and map to be empty.
-        doAnswer(i -> {
-            tasks.clear();
-            return null;
-        }).when(mockTasksSet).destroy();
-        doAnswer(i -> {
-            partial.clear();
-            return null;
-        }).when(mockPartialSet).destroy();
+        when(stateStore.getStateCollection(DynamicFilterUtils.PARTIAL_DYNAMIC_FILTERS)).thenReturn(partialFiltersMap);
+        when(stateStore.getOrCreateStateCollection(DynamicFilterUtils.PARTIAL_DYNAMIC_FILTERS, StateCollection.Type.MAP)).thenReturn(partialFiltersMap);
 
         return stateStore;
     }
+
+    public static void addPartialFilter(StateStore stateStore, String taskId, String filterId, String queryId, Object partialFilter)
+    {
+        ((StateMap<String, Object>) stateStore.getStateCollection(DynamicFilterUtils.PARTIAL_DYNAMIC_FILTERS))
+                .put(DynamicFilterUtils.createPartialKey(filterId, queryId, taskId), partialFilter);
+    }
 }
@@ -23,7 +23,9 @@ import org.testng.annotations.Test;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
+import static io.airlift.units.DataSize.Unit.BYTE;
 import static io.airlift.units.DataSize.Unit.GIGABYTE;
+import static io.airlift.units.DataSize.Unit.MEGABYTE;
 
 public class TestHetuConfig
 {
@@ -39,6 +41,7 @@ public class TestHetuConfig
                 .setIndexCacheLoadingThreads(10L)
                 .setIndexCacheLoadingDelay(new Duration(10, TimeUnit.SECONDS))
                 .setIndexCacheSoftReferenceEnabled(true)
+                .setIndexCacheAdmissionEnabled(true)
                 .setIndexAutoload(true)
                 .setExecutionPlanCacheEnabled(false)
                 .setExecutionPlanCacheTimeout(86400000L)
@@ -49,12 +52,15 @@ public class TestHetuConfig
                 .setStateUpdateInterval(new Duration(100, TimeUnit.MILLISECONDS))
                 .setQuerySubmitTimeout(new Duration(10, TimeUnit.SECONDS))
                 .setStateExpireTime(new Duration(60, TimeUnit.SECONDS))
+                .setStateFetchIncrementalEnabled(false)
+                .setStateReconcileInterval(new Duration(10, TimeUnit.SECONDS))
                 .setDataCenterSplits(5)
                 .setDataCenterConsumerTimeout(new Duration(10, TimeUnit.MINUTES))
                 .setSplitCacheMapEnabled(false)
                 .setSplitCacheStateUpdateInterval(new Duration(2, TimeUnit.SECONDS))
                 .setTraceStackVisible(false)
-                .setIndexToPreload(""));
+                .setIndexToPreload("")
+                .setIndexWriterMaxBufferedMemory(new DataSize(Runtime.getRuntime().maxMemory() * 0.05, BYTE)));
     }
 
     @Test
@@ -70,6 +76,7 @@ public class TestHetuConfig
                 .put("hetu.heuristicindex.filter.cache.loading-delay", "1000ms")
                 .put("hetu.heuristicindex.filter.cache.ttl", "20m")
                 .put("hetu.heuristicindex.filter.cache.soft-reference", "false")
+                .put("hetu.heuristicindex.filter.cache.admission-enabled", "false")
                 .put("hetu.executionplan.cache.enabled", "true")
                 .put("hetu.executionplan.cache.timeout", "6000")
                 .put("hetu.executionplan.cache.limit", "20000")
@@ -79,12 +86,15 @@ public class TestHetuConfig
                 .put("hetu.multiple-coordinator.state-expire-time", "20s")
                 .put("hetu.multiple-coordinator.state-fetch-interval", "5s")
                 .put("hetu.multiple-coordinator.state-update-interval", "5s")
+                .put("hetu.multiple-coordinator.state-fetch-incremental-enabled", "true")
+                .put("hetu.multiple-coordinator.state-reconcile-interval", "1m")
                 .put("hetu.data.center.split.count", "10")
                 .put("hetu.data.center.consumer.timeout", "5m")
                 .put("hetu.split-cache-map.enabled", "true")
                 .put("hetu.split-cache-map.state-update-interval", "5s")
                 .put("stack-trace-visible", "true")
                 .put("hetu.heuristicindex.filter.cache.preload-indices", "idx1,idx2")
+                .put("hetu.heuristicindex.indexwriter.max-buffered-memory", "64MB")
                 .build();
 
         HetuConfig expected = new HetuConfig()
@@ -96,6 +106,7 @@ public class TestHetuConfig
                 .setIndexCacheLoadingThreads(5L)
                 .setIndexCacheLoadingDelay(new Duration(1000, TimeUnit.MILLISECONDS))
                 .setIndexCacheSoftReferenceEnabled(false)
+                .setIndexCacheAdmissionEnabled(false)
                 .setIndexAutoload(false)
                 .setExecutionPlanCacheEnabled(true)
                 .setExecutionPlanCacheTimeout(6000L)
@@ -106,12 +117,15 @@ public class TestHetuConfig
                 .setStateExpireTime(new Duration(20, TimeUnit.SECONDS))
                 .setStateFetchInterval(new Duration(5, TimeUnit.SECONDS))
                 .setStateUpdateInterval(new Duration(5, TimeUnit.SECONDS))
+                .setStateFetchIncrementalEnabled(true)
+                .setStateReconcileInterval(new Duration(1, TimeUnit.MINUTES))
                 .setDataCenterSplits(10)
                 .setDataCenterConsumerTimeout(new Duration(5, TimeUnit.MINUTES))
                 .setSplitCacheMapEnabled(true)
                 .setSplitCacheStateUpdateInterval(new Duration(5, TimeUnit.SECONDS))
                 .setTraceStackVisible(true)
-                .setIndexToPreload("idx1,idx2");
+                .setIndexToPreload("idx1,idx2")
+                .setIndexWriterMaxBufferedMemory(new DataSize(64, MEGABYTE));
 
         ConfigAssertions.assertFullMapping(properties, expected);
     }
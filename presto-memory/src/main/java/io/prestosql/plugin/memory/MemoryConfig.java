@@ -13,6 +13,8 @@
  */
 package io.prestosql.plugin.memory;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.sun.management.HotSpotDiagnosticMXBean;
 import io.airlift.configuration.Config;
 import io.airlift.configuration.ConfigDescription;
 import io.airlift.units.DataSize;
@@ -24,10 +26,12 @@ import io.airlift.units.MinDuration;
 import io.hetu.core.common.util.SecurePathWhiteList;
 import io.prestosql.spi.function.Mandatory;
 
+import javax.validation.constraints.AssertTrue;
 import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
 
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.concurrent.TimeUnit;
@@ -43,6 +47,7 @@ public class MemoryConfig
     private Duration processingDelay = new Duration(5, TimeUnit.SECONDS);
     private Path spillRoot;
     private int threadPoolSize = Math.max((Runtime.getRuntime().availableProcessors() / 2), 1);
+    private boolean offHeapEnabled;
 
     @NotNull
     public Path getSpillRoot()
@@ -85,13 +90,34 @@ public class MemoryConfig
     @Config("memory.max-data-per-node")
     public MemoryConfig setMaxDataPerNode(DataSize maxDataPerNode)
     {
-        if (maxDataPerNode.toBytes() > Runtime.getRuntime().maxMemory()) {
-            throw new IllegalArgumentException("Invalid config for max data per node. Can not exceed heap headroom: " + Runtime.getRuntime().maxMemory());
-        }
         this.maxDataPerNode = maxDataPerNode;
         return this;
     }
 
+    @AssertTrue(message = "Invalid config for max data per node. Can not exceed heap headroom, or the direct memory limit (-XX:MaxDirectMemorySize) if memory.off-heap-enabled is set to true")
+    public boolean isMaxDataPerNodeValid()
+    {
+        // off heap pages are allocated as direct buffers, which are bounded by the direct memory limit instead of the heap
+        return maxDataPerNode.toBytes() <= (offHeapEnabled ? getMaxDirectMemory() : Runtime.getRuntime().maxMemory());
+    }
+
+    @VisibleForTesting
+    static long getMaxDirectMemory()
+    {
+        try {
+            HotSpotDiagnosticMXBean diagnostics = ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class);
+            long maxDirectMemory = Long.parseLong(diagnostics.getVMOption("MaxDirectMemorySize").getValue());
+            if (maxDirectMemory > 0) {
+                return maxDirectMemory;
+            }
+        }
+        catch (RuntimeException e) {
+            // not a HotSpot JVM, assume the default limit
+        }
+        // without -XX:MaxDirectMemorySize the direct memory limit is the max heap size
+        return Runtime.getRuntime().maxMemory();
+    }
+
     @MinDataSize("32MB")
     @MaxDataSize("1GB")
     public DataSize getMaxLogicalPartSize()
@@ -149,4 +175,17 @@ public class MemoryConfig
         this.threadPoolSize = threadPoolSize;
         return this;
     }
+
+    public boolean isOffHeapEnabled()
+    {
+        return offHeapEnabled;
+    }
+
+    @Config("memory.off-heap-enabled")
+    @ConfigDescription("Store the processed pages of tables outside of the Java heap (default: false)")
+    public MemoryConfig setOffHeapEnabled(boolean offHeapEnabled)
+    {
+        this.offHeapEnabled = offHeapEnabled;
+        return this;
+    }
 }
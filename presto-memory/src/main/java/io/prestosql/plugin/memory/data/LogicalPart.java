@@ -133,6 +133,9 @@ public class LogicalPart
     private transient List<Type> types;
     // Using majority of memory and disk space. Serialized and deserialized separately. Only loaded when used.
     private transient List<Page> pages;
+    // With off-heap storage enabled, processed pages are moved here and pages is released
+    private transient boolean offHeapEnabled;
+    private transient OffHeapPages offHeapPages;
 
     public LogicalPart(
             List<MemoryColumnHandle> columns,
@@ -145,7 +148,8 @@ public class LogicalPart
             TypeManager typeManager,
             PagesSerde pagesSerde,
             int logicalPartNum,
-            boolean compressionEnabled)
+            boolean compressionEnabled,
+            boolean offHeapEnabled)
     {
         this.tableDataRoot = tableDataRoot;
         this.logicalPartNum = logicalPartNum;
@@ -153,6 +157,7 @@ public class LogicalPart
         this.maxLogicalPartBytes = maxLogicalPartBytes;
         this.maxPageSizeBytes = maxPageSizeBytes;
         this.compressionEnabled = compressionEnabled;
+        this.offHeapEnabled = offHeapEnabled;
         this.pagesSerde = requireNonNull(pagesSerde, "pagesSerde is null");
         this.pageSorter = requireNonNull(pageSorter, "pageSorter is null");
         requireNonNull(columns, "columns is null");
@@ -200,9 +205,10 @@ public class LogicalPart
         return logicalPartNum;
     }
 
-    void restoreTransientObjects(PageSorter pageSorter, TypeManager typeManager, PagesSerde pagesSerde, Path tableDataRoot)
+    void restoreTransientObjects(PageSorter pageSorter, TypeManager typeManager, PagesSerde pagesSerde, Path tableDataRoot, boolean offHeapEnabled)
     {
         this.pageSorter = pageSorter;
+        this.offHeapEnabled = offHeapEnabled;
         this.types = new ArrayList<>(typeSignatures.size());
         this.pagesSerde = pagesSerde;
         this.tableDataRoot = tableDataRoot;
@@ -224,12 +230,13 @@ public class LogicalPart
 
     boolean pageInMemory()
     {
-        return pages != null;
+        return pages != null || offHeapPages != null;
     }
 
     void unloadPages()
     {
         pages = null;
+        offHeapPages = null;
     }
 
     void finishAdding()
@@ -247,7 +254,17 @@ public class LogicalPart
                 LOG.error("Failed to load pages from " + getPageFileName(), e);
             }
         }
-        return pages;
+        // read both under the lock, moveOffHeap may replace pages with offHeapPages between two unlocked reads
+        OffHeapPages currentOffHeapPages;
+        List<Page> currentPages;
+        synchronized (this) {
+            currentOffHeapPages = offHeapPages;
+            currentPages = pages;
+        }
+        if (currentOffHeapPages != null) {
+            return currentOffHeapPages.getPages();
+        }
+        return currentPages;
     }
 
     /**
@@ -565,9 +582,10 @@ public class LogicalPart
                 }
             }
 
+            List<Page> allPages = getPages();
             List<Page> resultPageList = new ArrayList<>();
             for (Integer idx : result) {
-                resultPageList.add(getPages().get(idx));
+                resultPageList.add(allPages.get(idx));
             }
             return resultPageList;
         }
@@ -724,9 +742,26 @@ public class LogicalPart
         catch (Exception e) {
             LOG.error("Error spilling LogicalPart " + getPageFileName() + " to disk. Restoring will be unavailable.", e);
         }
+        if (offHeapEnabled) {
+            moveOffHeap();
+        }
         this.processingState.set(LogicalPartState.COMPLETED);
     }
 
+    /**
+     * Move the processed pages out of the Java heap, the pages are only deserialized again when read
+     */
+    private synchronized void moveOffHeap()
+    {
+        long start = System.currentTimeMillis();
+        OffHeapPages newOffHeapPages = new OffHeapPages(pagesSerde);
+        pages.forEach(newOffHeapPages::add);
+        offHeapPages = newOffHeapPages;
+        pages = null;
+        long dur = System.currentTimeMillis() - start;
+        LOG.debug("[OffHeap] %s moved %d bytes off heap. Time elapsed: %dms", getPageFileName(), newOffHeapPages.getSizeInBytes(), dur);
+    }
+
     private String getPageFileName()
     {
         return "logicalPartNumber" + logicalPartNum;
@@ -738,7 +773,7 @@ public class LogicalPart
     private synchronized void readPages()
             throws IOException
     {
-        if (pages != null) {
+        if (pageInMemory()) {
             return;
         }
         long start = System.currentTimeMillis();
@@ -746,8 +781,17 @@ public class LogicalPart
         try (InputStream inputStream = Files.newInputStream(pagesFile)) {
             try (InputStream inputStreamToUse = compressionEnabled ? new GZIPInputStream(inputStream) : inputStream) {
                 SliceInput sliceInput = new InputStreamSliceInput(inputStreamToUse);
-                pages = new ArrayList<>();
-                PagesSerdeUtil.readPages(pagesSerde, sliceInput).forEachRemaining(pages::add);
+                if (offHeapEnabled && processingState.get() == LogicalPartState.COMPLETED) {
+                    // pages are moved off heap one by one, so the whole LogicalPart is never loaded on the heap
+                    OffHeapPages loadedPages = new OffHeapPages(pagesSerde);
+                    PagesSerdeUtil.readPages(pagesSerde, sliceInput).forEachRemaining(loadedPages::add);
+                    offHeapPages = loadedPages;
+                }
+                else {
+                    List<Page> loadedPages = new ArrayList<>();
+                    PagesSerdeUtil.readPages(pagesSerde, sliceInput).forEachRemaining(loadedPages::add);
+                    pages = loadedPages;
+                }
             }
         }
         long dur = System.currentTimeMillis() - start;
@@ -15,6 +15,7 @@
 
 package io.prestosql.plugin.memory.data;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
 import io.airlift.log.Logger;
 import io.hetu.core.common.util.SecureObjectInputStream;
@@ -30,7 +31,6 @@ import io.prestosql.spi.connector.ColumnHandle;
 import io.prestosql.spi.predicate.TupleDomain;
 import io.prestosql.spi.type.TypeManager;
 
-import javax.annotation.concurrent.GuardedBy;
 import javax.annotation.concurrent.ThreadSafe;
 import javax.inject.Inject;
 
@@ -47,8 +47,6 @@ import java.nio.file.Path;
 import java.text.NumberFormat;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.Iterator;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -56,8 +54,7 @@ import java.util.OptionalDouble;
 import java.util.OptionalLong;
 import java.util.Set;
 import java.util.UUID;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
 
 import static io.prestosql.plugin.memory.MemoryErrorCode.MEMORY_LIMIT_EXCEEDED;
@@ -71,7 +68,6 @@ public class MemoryTableManager
     private static final Logger LOG = Logger.get(MemoryTableManager.class);
     private static final String TABLE_METADATA_SUFFIX = "_tabledata";
     private static final int CREATION_SCALE_FACTOR = 4;
-    private static final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
 
     private final Path spillRoot;
     private final long maxBytes;
@@ -80,11 +76,12 @@ public class MemoryTableManager
     private final TypeManager typeManager;
     private final PagesSerde pagesSerde;
 
-    @GuardedBy("this")
     private final AtomicLong currentBytes = new AtomicLong();
 
-    // in-memory LRU map of tableId -> table
-    private final Map<Long, Table> tables = new LinkedHashMap<>(16, 0.75f, true);
+    // in-memory map of tableId -> table, tables are locked individually while they are modified or spilled
+    private final Map<Long, Table> tables = new ConcurrentHashMap<>();
+    // only serializes the eviction of LRU tables, which happens when the memory limit is reached
+    private final Object evictionLock = new Object();
 
     @Inject
     public MemoryTableManager(MemoryConfig config, PageSorter pageSorter, TypeManager typeManager, PagesSerde pagesSerde)
@@ -122,14 +119,15 @@ public class MemoryTableManager
 
     public void finishUpdatingTable(long id)
     {
-        tables.get(id).finishCreation(() -> {
-            // this should only be called once entire table has been processed
-            if (tables.containsKey(id) && tables.get(id).allProcessed()) {
+        Table table = getTable(id);
+        table.finishCreation(() -> {
+            // this should only be called once entire table has been processed, by the background thread that processed its last LogicalPart
+            if (tables.get(id) == table && table.allProcessed()) {
                 try {
                     // first spill the table to disk
-                    spillTable(id);
+                    spillTable(id, table);
                     // release memory overhead used during processing
-                    releaseMemory(tables.get(id).getByteSize() * (CREATION_SCALE_FACTOR - 1), "Finish processing table " + id);
+                    releaseMemory(table.getByteSize() * (CREATION_SCALE_FACTOR - 1), "Finish processing table " + id);
                 }
                 catch (Exception e) {
                     LOG.error("Failed to serialize table " + id, e);
@@ -141,37 +139,58 @@ public class MemoryTableManager
     /**
      * Initialize a table and store it in memory
      */
-    public synchronized void initialize(long tableId, boolean compressionEnabled, boolean asyncProcessingEnabled, List<MemoryColumnHandle> columns, List<SortingColumn> sortedBy, List<String> indexColumns)
+    public void initialize(long tableId, boolean compressionEnabled, boolean asyncProcessingEnabled, List<MemoryColumnHandle> columns, List<SortingColumn> sortedBy, List<String> indexColumns)
     {
-        if (!tables.containsKey(tableId)) {
-            tables.put(tableId, new Table(tableId,
-                    compressionEnabled,
-                    asyncProcessingEnabled,
-                    spillRoot.resolve(String.valueOf(tableId)),
-                    columns,
-                    sortedBy,
-                    indexColumns,
-                    pageSorter,
-                    config,
-                    typeManager,
-                    pagesSerde));
-        }
+        Table table = tables.computeIfAbsent(tableId, id -> new Table(id,
+                compressionEnabled,
+                asyncProcessingEnabled,
+                spillRoot.resolve(String.valueOf(id)),
+                columns,
+                sortedBy,
+                indexColumns,
+                pageSorter,
+                config,
+                typeManager,
+                pagesSerde));
+        touch(table);
     }
 
-    public synchronized void add(Long tableId, Page page)
+    public void add(Long tableId, Page page)
     {
-        if (!contains(tableId)) {
+        Table table = tables.get(tableId);
+        if (table == null) {
             throw new PrestoException(MISSING_DATA, "Failed to find table on a worker.");
         }
+        touch(table); // make sure current table is not LRU
         page.compact();
-        Table table = tables.get(tableId); // get current table to make sure it's not LRU
-        applyForMemory(page.getSizeInBytes() * CREATION_SCALE_FACTOR, tableId, () -> {}, () -> releaseMemory(table.rollBackUncommitted() * CREATION_SCALE_FACTOR, "Rolling back."));
-        table.add(page);
+        long bytes = page.getSizeInBytes() * CREATION_SCALE_FACTOR;
+        applyForMemory(bytes, tableId, () -> {}, () -> rollBack(tableId, table));
+        // the table may have been removed while memory was applied for, then its memory has already been released
+        // and the page must not be added. Removing a table holds the same lock.
+        synchronized (table) {
+            if (tables.get(tableId) == table) {
+                table.add(page);
+                return;
+            }
+        }
+        releaseMemory(bytes, "Table " + tableId + " removed during insert");
+        throw new PrestoException(MISSING_DATA, "Failed to find table on a worker.");
+    }
+
+    private void rollBack(long tableId, Table table)
+    {
+        long toRelease = 0;
+        synchronized (table) {
+            if (tables.get(tableId) == table) {
+                toRelease = table.rollBackUncommitted() * CREATION_SCALE_FACTOR;
+            }
+        }
+        releaseMemory(toRelease, "Rolling back.");
     }
 
     public int getTableLpCount(long tableId)
     {
-        return tables.get(tableId).getLogicalPartCount();
+        return getTable(tableId).getLogicalPartCount();
     }
 
     public List<Page> getPages(
@@ -194,9 +213,10 @@ public class MemoryTableManager
             OptionalDouble sampleRatio,
             TupleDomain<ColumnHandle> predicate)
     {
-        if (!contains(tableId)) {
+        Table table = tables.get(tableId);
+        if (table == null) {
             try {
-                restoreTable(tableId);
+                table = restoreTable(tableId);
             }
             catch (PrestoException pe) {
                 throw pe;
@@ -205,7 +225,7 @@ public class MemoryTableManager
                 throw new PrestoException(MISSING_DATA, "Failed to find/restore table on a worker", e);
             }
         }
-        Table table = tables.get(tableId);
+        touch(table);
         if (table.getRows() < expectedRows) {
             throw new PrestoException(MISSING_DATA,
                     format("Expected to find [%s] rows on a worker, but found [%s].", expectedRows, table.getRows()));
@@ -244,6 +264,12 @@ public class MemoryTableManager
         return projectedPages.build();
     }
 
+    @VisibleForTesting
+    public long getCurrentBytes()
+    {
+        return currentBytes.get();
+    }
+
     public boolean contains(Long tableId)
     {
         return tables.containsKey(tableId);
@@ -254,14 +280,20 @@ public class MemoryTableManager
      *
      * @param tableId the id of table to be cleaned
      */
-    public synchronized void cleanTable(Long tableId)
+    public void cleanTable(Long tableId)
     {
-        if (tables.containsKey(tableId)) {
+        // only the thread that removes the table releases its memory
+        Table table = tables.get(tableId);
+        if (table != null) {
             try {
-                Table table = tables.get(tableId);
-                long toRelease = table.isSpilled() ? table.getByteSize() : table.getByteSize() * CREATION_SCALE_FACTOR;
+                long toRelease;
+                synchronized (table) {
+                    if (!tables.remove(tableId, table)) {
+                        return;
+                    }
+                    toRelease = table.isSpilled() ? table.getByteSize() : table.getByteSize() * CREATION_SCALE_FACTOR;
+                }
                 releaseMemory(toRelease, "Cleaning table");
-                tables.remove(tableId);
             }
             catch (Exception e) {
                 LOG.error(e, "Unable to clean table " + tableId);
@@ -274,7 +306,7 @@ public class MemoryTableManager
      *
      * @param activeTableIds the ids of active tables. all tables not in this set will be cleaned.
      */
-    public synchronized void refreshTables(Set<Long> activeTableIds)
+    public void refreshTables(Set<Long> activeTableIds)
     {
         // We have to remember that there might be some race conditions when there are two tables created at once.
         // That can lead to a situation when MemoryPagesStore already knows about a newer second table on some worker
@@ -290,13 +322,10 @@ public class MemoryTableManager
         }
         long latestTableId = Collections.max(activeTableIds);
 
-        Iterator<Map.Entry<Long, Table>> tableDataIterator = tables.entrySet().iterator();
-        while (tableDataIterator.hasNext()) {
-            Map.Entry<Long, Table> tablePagesEntry = tableDataIterator.next();
+        for (Map.Entry<Long, Table> tablePagesEntry : tables.entrySet()) {
             Long tableId = tablePagesEntry.getKey();
-            if (tableId < latestTableId && !activeTableIds.contains(tableId)) {
+            if (tableId < latestTableId && !activeTableIds.contains(tableId) && removeTable(tableId, tablePagesEntry.getValue())) {
                 releaseMemory(tablePagesEntry.getValue().getByteSize(), "Table refresh");
-                tableDataIterator.remove();
                 LOG.info("[TableRefresh] Dropped table %s from memory", tableId);
             }
         }
@@ -332,12 +361,22 @@ public class MemoryTableManager
      * <p>
      * Table object (metadata) is serialized into one file. Pages are serialized separately in logical part.
      *
+     * Only the table itself is locked, so other tables can still be read and written while it is spilled.
+     *
      * @param id table id to spill
+     * @param table table to spill
      */
-    private synchronized void spillTable(long id)
+    private void spillTable(long id, Table table)
+            throws IOException
+    {
+        synchronized (table) {
+            spillTableLocked(id, table);
+        }
+    }
+
+    private void spillTableLocked(long id, Table table)
             throws IOException
     {
-        Table table = tables.get(id);
         if (table.isSpilled()) {
             return;
         }
@@ -366,13 +405,18 @@ public class MemoryTableManager
      * Only the skeleton of the table and the logical parts in it will be restored at this time.
      * (pages won't be loaded until used)
      *
+     * Tables are restored without locking the manager. If several threads restore the same table at once,
+     * the first restored copy is kept and the memory applied for by the others is released.
+     *
      * @param id table to be restored
+     * @return the restored table
      */
-    public synchronized void restoreTable(long id)
+    public Table restoreTable(long id)
             throws IOException, ClassNotFoundException
     {
-        if (tables.containsKey(id)) {
-            return;
+        Table existing = tables.get(id);
+        if (existing != null) {
+            return existing;
         }
         LOG.debug("[Load] Loading metadata of table " + id);
         long start = System.currentTimeMillis();
@@ -383,12 +427,43 @@ public class MemoryTableManager
         try (InputStream inputStream = Files.newInputStream(tablePath.resolve(TABLE_METADATA_SUFFIX))) {
             SecureObjectInputStream ois = new SecureObjectInputStream(inputStream, Table.TYPES_WHITELIST);
             Table table = (Table) ois.readObject();
-            table.restoreTransientObjects(pageSorter, typeManager, pagesSerde, tablePath);
-            applyForMemory(table.getByteSize(), -1, () -> logNumFormat("Loaded table %s with %s bytes.", id, table.getByteSize()), () -> {});
-            tables.put(id, table);
+            table.restoreTransientObjects(pageSorter, typeManager, pagesSerde, tablePath, config.isOffHeapEnabled());
+            applyForMemory(table.getByteSize(), id, () -> logNumFormat("Loaded table %s with %s bytes.", id, table.getByteSize()), () -> {});
+            existing = tables.putIfAbsent(id, table);
+            if (existing != null) {
+                releaseMemory(table.getByteSize(), "Table " + id + " restored concurrently");
+                return existing;
+            }
+            touch(table);
+            long dur = System.currentTimeMillis() - start;
+            LOG.debug("[Load] Table " + id + " has been restored. Time elapsed: " + dur + "ms");
+            return table;
         }
-        long dur = System.currentTimeMillis() - start;
-        LOG.debug("[Load] Table " + id + " has been restored. Time elapsed: " + dur + "ms");
+    }
+
+    private Table getTable(long id)
+    {
+        Table table = tables.get(id);
+        if (table == null) {
+            throw new PrestoException(MISSING_DATA, "Failed to find table on a worker.");
+        }
+        return table;
+    }
+
+    /**
+     * Remove the table while holding its lock, so no page is added to it after it's removed
+     * and its size doesn't change once memory is released for it
+     */
+    private boolean removeTable(long id, Table table)
+    {
+        synchronized (table) {
+            return tables.remove(id, table);
+        }
+    }
+
+    private static void touch(Table table)
+    {
+        table.setLastAccessTime(System.nanoTime());
     }
 
     private void deleteRecursively(Path path)
@@ -413,37 +488,75 @@ public class MemoryTableManager
      * @param rollBack operation when memory request cannot be fulfilled
      * @throws PrestoException if the request still can't be fulfilled after dropping all non-reserved tables
      */
-    private synchronized void applyForMemory(long bytes, long reserved, Runnable onSuccess, Runnable rollBack)
+    private void applyForMemory(long bytes, long reserved, Runnable onSuccess, Runnable rollBack)
             throws PrestoException
     {
-        long newSize = bytes + currentBytes.get();
-        while (maxBytes < newSize) {
-            logNumFormat("Not enough memory for the request. Current bytes: %s. Limit: %s. Requested size: %s", currentBytes.get(), maxBytes, bytes);
-            tables.get(reserved); // perform a get and make sure reserved table is not LRU
-            Map.Entry<Long, Table> lru = tables.entrySet().iterator().next();
-            if (lru != null && lru.getKey() != reserved && lru.getValue().isSpilled()) {
-                // if there is any LRU table available to be dropped, evict it to make space for current
-                releaseMemory(lru.getValue().getByteSize(), "Offloading LRU");
-                tables.get(lru.getKey()).offLoadPages(); // clean reference and help GC
-                tables.remove(lru.getKey());
-                logNumFormat("Released %s bytes by offloading LRU table %s. Current bytes after offloading: %s", lru.getValue().getByteSize(), lru.getKey(), currentBytes.get());
-                newSize = currentBytes.get() + bytes;
+        while (true) {
+            long current = currentBytes.get();
+            long newSize = current + bytes;
+            if (newSize <= maxBytes) {
+                if (currentBytes.compareAndSet(current, newSize)) {
+                    break;
+                }
+                continue;
             }
-            else {
-                long current = currentBytes.get();
+            logNumFormat("Not enough memory for the request. Current bytes: %s. Limit: %s. Requested size: %s", current, maxBytes, bytes);
+            if (!offloadLruTable(reserved)) {
                 rollBack.run();
                 throw new PrestoException(MEMORY_LIMIT_EXCEEDED, format("Memory limit [%s] for memory connector exceeded. Current: [%s]. Requested: [%s]",
                         NumberFormat.getIntegerInstance(Locale.US).format(maxBytes),
-                        NumberFormat.getIntegerInstance(Locale.US).format(current),
+                        NumberFormat.getIntegerInstance(Locale.US).format(currentBytes.get()),
                         NumberFormat.getIntegerInstance(Locale.US).format(bytes)));
             }
         }
-        currentBytes.set(newSize);
         onSuccess.run();
         logNumFormat("Fulfilled %s bytes for Table %s. Current: %s", bytes, reserved, currentBytes.get());
     }
 
-    private synchronized void releaseMemory(long bytes, String reason)
+    /**
+     * Drop the least recently used spilled table from memory, it will be restored from disk when it is read again
+     *
+     * @param reserved tableId that must not be dropped
+     * @return false if there is no table that can be dropped
+     */
+    private boolean offloadLruTable(long reserved)
+    {
+        synchronized (evictionLock) {
+            Map.Entry<Long, Table> lru = null;
+            for (Map.Entry<Long, Table> entry : tables.entrySet()) {
+                if (entry.getKey() != reserved && entry.getValue().isSpilled()
+                        && (lru == null || entry.getValue().getLastAccessTime() - lru.getValue().getLastAccessTime() < 0)) {
+                    lru = entry;
+                }
+            }
+            if (lru == null) {
+                return false;
+            }
+            if (removeSpilledTable(lru.getKey(), lru.getValue())) {
+                logNumFormat("Released %s bytes by offloading LRU table %s. Current bytes after offloading: %s", lru.getValue().getByteSize(), lru.getKey(), currentBytes.get());
+            }
+            // the table may have been dropped or modified concurrently, either way the caller checks the memory again
+            return true;
+        }
+    }
+
+    /**
+     * Remove the table only if it is still spilled once its lock is held. Pages may have been added to it
+     * since it was picked, and those are not on disk yet so it can't be dropped from memory
+     */
+    private boolean removeSpilledTable(long id, Table table)
+    {
+        synchronized (table) {
+            if (!table.isSpilled() || !tables.remove(id, table)) {
+                return false;
+            }
+            releaseMemory(table.getByteSize(), "Offloading LRU");
+            table.offLoadPages(); // clean reference and help GC
+            return true;
+        }
+    }
+
+    private void releaseMemory(long bytes, String reason)
     {
         currentBytes.addAndGet(-bytes);
         logNumFormat("Released %s bytes. Current: %s. Caused by: " + reason, bytes, currentBytes.get());
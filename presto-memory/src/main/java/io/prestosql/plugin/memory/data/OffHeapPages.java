@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.prestosql.plugin.memory.data;
+
+import io.airlift.slice.DynamicSliceOutput;
+import io.airlift.slice.Slice;
+import io.airlift.slice.Slices;
+import io.hetu.core.transport.execution.buffer.PagesSerde;
+import io.hetu.core.transport.execution.buffer.PagesSerdeUtil;
+import io.prestosql.spi.Page;
+import io.prestosql.spi.block.Block;
+import io.prestosql.spi.block.LazyBlock;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Pages of a LogicalPart stored outside of the Java heap.
+ * <p>
+ * Each column of a page is serialized separately with the PagesSerde into a direct buffer.
+ * Pages are handed out with lazy blocks, so only the columns a query actually reads are deserialized,
+ * and the deserialized blocks are garbage once the query is done with the page.
+ */
+class OffHeapPages
+{
+    private final PagesSerde pagesSerde;
+    private final List<OffHeapPage> pages = new ArrayList<>();
+    private long sizeInBytes;
+
+    OffHeapPages(PagesSerde pagesSerde)
+    {
+        this.pagesSerde = requireNonNull(pagesSerde, "pagesSerde is null");
+    }
+
+    void add(Page page)
+    {
+        int channelCount = page.getChannelCount();
+        int[] offsets = new int[channelCount + 1];
+        DynamicSliceOutput output = new DynamicSliceOutput((int) page.getSizeInBytes() + channelCount * Long.BYTES);
+        for (int channel = 0; channel < channelCount; channel++) {
+            PagesSerdeUtil.writeSerializedPage(output, pagesSerde.serializeTransient(new Page(page.getPositionCount(), page.getBlock(channel))));
+            offsets[channel + 1] = output.size();
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(output.size());
+        buffer.put(output.slice().toByteBuffer());
+        buffer.flip();
+        pages.add(new OffHeapPage(page.getPositionCount(), Slices.wrappedBuffer(buffer), offsets));
+        sizeInBytes += output.size();
+    }
+
+    /**
+     * @return new pages with lazy blocks on every call, so that blocks loaded by one reader are not retained
+     */
+    List<Page> getPages()
+    {
+        List<Page> result = new ArrayList<>(pages.size());
+        for (OffHeapPage page : pages) {
+            result.add(page.toPage(pagesSerde));
+        }
+        return result;
+    }
+
+    Page getPage(int index)
+    {
+        return pages.get(index).toPage(pagesSerde);
+    }
+
+    long getSizeInBytes()
+    {
+        return sizeInBytes;
+    }
+
+    private static class OffHeapPage
+    {
+        private final int positionCount;
+        private final Slice data;
+        private final int[] offsets;
+
+        OffHeapPage(int positionCount, Slice data, int[] offsets)
+        {
+            this.positionCount = positionCount;
+            this.data = data;
+            this.offsets = offsets;
+        }
+
+        Page toPage(PagesSerde pagesSerde)
+        {
+            Block[] blocks = new Block[offsets.length - 1];
+            for (int channel = 0; channel < blocks.length; channel++) {
+                Slice column = data.slice(offsets[channel], offsets[channel + 1] - offsets[channel]);
+                blocks[channel] = new LazyBlock<>(positionCount, lazyBlock ->
+                        lazyBlock.setBlock(pagesSerde.deserialize(PagesSerdeUtil.readSerializedPage(column.getInput())).getBlock(0)));
+            }
+            return new Page(positionCount, blocks);
+        }
+    }
+}
@@ -107,18 +107,22 @@ public class Table
     private final List<String> indexColumns;
     private final long maxLogicalPartBytes;
     private final int maxPageSizeBytes;
-    private final List<LogicalPart> logicalParts; // actual data (pages) stored here
+    private final List<LogicalPart> logicalParts; // actual data (pages) stored here, modified only while holding the table lock
     private final boolean compressionEnabled;
-    private TableState tableState;
-    private long byteSize;
+    private volatile TableState tableState;
+    private volatile long byteSize;
     private final long id;
     private final boolean asyncEnabled;
 
     private transient Path tableDataRoot;
     private transient PagesSerde pagesSerde;
+    private transient boolean offHeapEnabled;
 
     private transient PageSorter pageSorter;
     private transient TypeManager typeManager;
+    // read-only copy of logicalParts, replaced whenever a LogicalPart is added or removed so readers don't need the table lock
+    private transient volatile List<LogicalPart> logicalPartsSnapshot;
+    private transient volatile long lastAccessTime;
 
     public Table(long id, boolean compressionEnabled, boolean asyncEnabled, Path tableDataRoot, List<MemoryColumnHandle> columns, List<SortingColumn> sortedBy,
             List<String> indexColumns, PageSorter pageSorter, MemoryConfig config, TypeManager typeManager, PagesSerde pagesSerde)
@@ -135,22 +139,26 @@ public class Table
         this.typeManager = requireNonNull(typeManager, "typeManager is null");
         this.pagesSerde = requireNonNull(pagesSerde, "pagesSerde is null");
         this.asyncEnabled = asyncEnabled;
+        this.offHeapEnabled = config.isOffHeapEnabled();
 
         this.logicalParts = new ArrayList<>();
+        this.logicalPartsSnapshot = ImmutableList.of();
     }
 
     /**
      * used for deserialization. these objects are per-runtime so must be restored separately after loading from disk.
      */
-    public void restoreTransientObjects(PageSorter pageSorter, TypeManager typeManager, PagesSerde pagesSerde, Path tableDataRoot)
+    public void restoreTransientObjects(PageSorter pageSorter, TypeManager typeManager, PagesSerde pagesSerde, Path tableDataRoot, boolean offHeapEnabled)
     {
         this.pageSorter = pageSorter;
         this.typeManager = typeManager;
         this.pagesSerde = pagesSerde;
         this.tableDataRoot = tableDataRoot;
+        this.offHeapEnabled = offHeapEnabled;
         for (LogicalPart lp : logicalParts) {
-            lp.restoreTransientObjects(pageSorter, typeManager, pagesSerde, tableDataRoot);
+            lp.restoreTransientObjects(pageSorter, typeManager, pagesSerde, tableDataRoot, offHeapEnabled);
         }
+        this.logicalPartsSnapshot = ImmutableList.copyOf(logicalParts);
     }
 
     /**
@@ -158,10 +166,11 @@ public class Table
      *
      * @param page page to add
      */
-    public void add(Page page)
+    public synchronized void add(Page page)
     {
         if (logicalParts.isEmpty() || !logicalParts.get(logicalParts.size() - 1).canAdd()) {
-            this.logicalParts.add(new LogicalPart(columns, sortedBy, indexColumns, tableDataRoot, pageSorter, maxLogicalPartBytes, maxPageSizeBytes, typeManager, pagesSerde, logicalParts.size() + 1, compressionEnabled));
+            this.logicalParts.add(new LogicalPart(columns, sortedBy, indexColumns, tableDataRoot, pageSorter, maxLogicalPartBytes, maxPageSizeBytes, typeManager, pagesSerde, logicalParts.size() + 1, compressionEnabled, offHeapEnabled));
+            logicalPartsSnapshot = ImmutableList.copyOf(logicalParts);
         }
         logicalParts.get(logicalParts.size() - 1).add(page);
         byteSize += page.getSizeInBytes();
@@ -170,7 +179,7 @@ public class Table
 
     public boolean allProcessed()
     {
-        for (LogicalPart logicalPart : logicalParts) {
+        for (LogicalPart logicalPart : getLogicalParts()) {
             if (logicalPart.getProcessingState().get() != LogicalPart.LogicalPartState.COMPLETED) {
                 return false;
             }
@@ -181,7 +190,7 @@ public class Table
     /**
      * Removed all uncommitted LogicalParts, and return their total size in bytes.
      */
-    public long rollBackUncommitted()
+    public synchronized long rollBackUncommitted()
     {
         int size = 0;
         Iterator<LogicalPart> iterator = logicalParts.iterator();
@@ -193,6 +202,7 @@ public class Table
             }
         }
         byteSize -= size;
+        logicalPartsSnapshot = ImmutableList.copyOf(logicalParts);
         return size;
     }
 
@@ -204,6 +214,7 @@ public class Table
     public void finishCreation(Runnable cleanup)
     {
         tableState = TableState.COMMITTED;
+        List<LogicalPart> logicalParts = getLogicalParts();
         List<Future<?>> futuresList = new ArrayList<>(logicalParts.size());
         for (int i = 0; i < logicalParts.size(); i++) {
             // for all new logical parts, set state to finished adding pages
@@ -252,7 +263,7 @@ public class Table
 
     public void offLoadPages()
     {
-        logicalParts.forEach(LogicalPart::unloadPages);
+        getLogicalParts().forEach(LogicalPart::unloadPages);
     }
 
     public void setState(TableState state)
@@ -263,11 +274,9 @@ public class Table
     protected List<Page> getPages(int logicalPartNum)
     {
         List<Page> list = new ArrayList<>();
-        if (!logicalParts.isEmpty()) {
-            for (LogicalPart logicalPart : logicalParts) {
-                if (logicalPart.getLogicalPartNum() == logicalPartNum) {
-                    list.addAll(logicalPart.getPages());
-                }
+        for (LogicalPart logicalPart : getLogicalParts()) {
+            if (logicalPart.getLogicalPartNum() == logicalPartNum) {
+                list.addAll(logicalPart.getPages());
             }
         }
         return list;
@@ -280,11 +289,9 @@ public class Table
         }
 
         List<Page> list = new ArrayList<>();
-        if (!logicalParts.isEmpty()) {
-            for (LogicalPart logicalPart : logicalParts) {
-                if (logicalPart.getLogicalPartNum() == logicalPartNum) {
-                    list.addAll(logicalPart.getPages(predicate));
-                }
+        for (LogicalPart logicalPart : getLogicalParts()) {
+            if (logicalPart.getLogicalPartNum() == logicalPartNum) {
+                list.addAll(logicalPart.getPages(predicate));
             }
         }
         return list;
@@ -293,7 +300,7 @@ public class Table
     protected long getRows()
     {
         int total = 0;
-        for (LogicalPart logicalPart : logicalParts) {
+        for (LogicalPart logicalPart : getLogicalParts()) {
             total += logicalPart.getRows();
         }
         return total;
@@ -301,6 +308,24 @@ public class Table
 
     protected int getLogicalPartCount()
     {
-        return logicalParts.size();
+        return getLogicalParts().size();
+    }
+
+    private List<LogicalPart> getLogicalParts()
+    {
+        return logicalPartsSnapshot;
+    }
+
+    /**
+     * Time of the last access in nanoseconds, used by the manager to find the least recently used table
+     */
+    public long getLastAccessTime()
+    {
+        return lastAccessTime;
+    }
+
+    public void setLastAccessTime(long lastAccessTime)
+    {
+        this.lastAccessTime = lastAccessTime;
     }
 }
@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.prestosql.plugin.memory;
+
+import com.google.common.collect.ImmutableList;
+import io.airlift.units.DataSize;
+import io.prestosql.PagesIndexPageSorter;
+import io.prestosql.operator.PagesIndex;
+import io.prestosql.plugin.memory.data.MemoryTableManager;
+import io.prestosql.spi.Page;
+import io.prestosql.spi.block.BlockBuilder;
+import io.prestosql.spi.type.testing.TestingTypeManager;
+import io.prestosql.testing.TestingPagesSerdeFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.VerboseMode;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.OptionalDouble;
+import java.util.OptionalLong;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static io.prestosql.spi.type.BigintType.BIGINT;
+
+/**
+ * Measures insert and scan throughput of the memory connector when several threads write to and read from
+ * the tables of one worker at the same time
+ */
+@SuppressWarnings("MethodMayBeStatic")
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 10, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@BenchmarkMode(Mode.Throughput)
+public class BenchmarkMemoryTableManager
+{
+    private static final int POSITIONS_PER_PAGE = 1024;
+    private static final int MAX_INSERTED_PAGES = 1024;
+    private static final List<Integer> COLUMN_INDEXES = ImmutableList.of(0);
+
+    @Param({"1", "16"})
+    private int tableCount = 16;
+
+    private MemoryTableManager tableManager;
+    private Page page;
+    private final AtomicLong nextTableId = new AtomicLong();
+
+    @Setup
+    public void setup()
+            throws IOException
+    {
+        if (!MemoryThreadManager.isSharedThreadPoolInitilized()) {
+            MemoryThreadManager.initSharedThreadPool(4);
+        }
+        tableManager = new MemoryTableManager(
+                new MemoryConfig()
+                        .setMaxDataPerNode(new DataSize(1, DataSize.Unit.GIGABYTE))
+                        .setSpillRoot(Files.createTempDirectory("benchmark-memory-table").toString()),
+                new PagesIndexPageSorter(new PagesIndex.TestingFactory(false)),
+                new TestingTypeManager(),
+                new TestingPagesSerdeFactory().createPagesSerde());
+        page = createPage();
+
+        // committed tables that are scanned, every inserting thread writes to a table of its own
+        for (int i = 0; i < tableCount; i++) {
+            initializeTable(i);
+            for (int j = 0; j < 10; j++) {
+                tableManager.add((long) i, page);
+            }
+            tableManager.finishUpdatingTable(i);
+        }
+        nextTableId.set(tableCount);
+    }
+
+    @Benchmark
+    @Group("insertAndScan")
+    @GroupThreads(4)
+    public void insert(InsertData data)
+    {
+        data.insert();
+    }
+
+    @Benchmark
+    @Group("insertAndScan")
+    @GroupThreads(4)
+    public List<Page> scan()
+    {
+        return tableManager.getPages((long) ThreadLocalRandom.current().nextInt(tableCount), 1, COLUMN_INDEXES, 0, OptionalLong.empty(), OptionalDouble.empty());
+    }
+
+    private void initializeTable(long tableId)
+    {
+        // handles arrive deserialized from JSON, use the same list type so spilled tables can be restored
+        List<MemoryColumnHandle> columns = new ArrayList<>();
+        columns.add(new MemoryColumnHandle("c0", 0, BIGINT.getTypeSignature()));
+        tableManager.initialize(tableId, false, false, columns, new ArrayList<>(), new ArrayList<>());
+    }
+
+    @State(Scope.Thread)
+    public static class InsertData
+    {
+        private BenchmarkMemoryTableManager benchmark;
+        private long tableId;
+        private int pageCount;
+
+        @Setup
+        public void setup(BenchmarkMemoryTableManager benchmark)
+        {
+            this.benchmark = benchmark;
+            tableId = benchmark.nextTableId.getAndIncrement();
+            benchmark.initializeTable(tableId);
+        }
+
+        public void insert()
+        {
+            // start over with a new table, so inserting threads don't run out of memory
+            if (pageCount == MAX_INSERTED_PAGES) {
+                benchmark.tableManager.cleanTable(tableId);
+                benchmark.initializeTable(tableId);
+                pageCount = 0;
+            }
+            benchmark.tableManager.add(tableId, benchmark.page);
+            pageCount++;
+        }
+
+        @TearDown
+        public void tearDown()
+        {
+            benchmark.tableManager.cleanTable(tableId);
+        }
+    }
+
+    private static Page createPage()
+    {
+        BlockBuilder blockBuilder = BIGINT.createBlockBuilder(null, POSITIONS_PER_PAGE);
+        for (int i = 0; i < POSITIONS_PER_PAGE; i++) {
+            BIGINT.writeLong(blockBuilder, i);
+        }
+        Page page = new Page(POSITIONS_PER_PAGE, blockBuilder.build());
+        page.compact();
+        return page;
+    }
+
+    public static void main(String[] args)
+            throws Throwable
+    {
+        Options options = new OptionsBuilder()
+                .verbosity(VerboseMode.NORMAL)
+                .include(".*" + BenchmarkMemoryTableManager.class.getSimpleName() + ".*")
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.prestosql.plugin.memory;
+
+import io.airlift.units.DataSize;
+import org.testng.annotations.Test;
+
+import static io.airlift.units.DataSize.Unit.BYTE;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class TestMemoryConfig
+{
+    @Test
+    public void testMaxDataPerNodeValid()
+    {
+        long maxHeapMemory = Runtime.getRuntime().maxMemory();
+        long maxDirectMemory = MemoryConfig.getMaxDirectMemory();
+
+        MemoryConfig config = new MemoryConfig().setMaxDataPerNode(new DataSize(maxHeapMemory, BYTE));
+        assertTrue(config.isMaxDataPerNodeValid());
+        config.setMaxDataPerNode(new DataSize(maxHeapMemory + 1, BYTE));
+        assertFalse(config.isMaxDataPerNodeValid());
+
+        // off heap data is bounded by the direct memory limit instead
+        config.setOffHeapEnabled(true);
+        config.setMaxDataPerNode(new DataSize(maxDirectMemory, BYTE));
+        assertTrue(config.isMaxDataPerNodeValid());
+        config.setMaxDataPerNode(new DataSize(maxDirectMemory + 1, BYTE));
+        assertFalse(config.isMaxDataPerNodeValid());
+    }
+}
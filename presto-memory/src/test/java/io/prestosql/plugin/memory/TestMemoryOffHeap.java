@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.prestosql.plugin.memory;
+
+import com.google.common.collect.ImmutableMap;
+import io.prestosql.testing.MaterializedResult;
+import io.prestosql.testing.MaterializedRow;
+import io.prestosql.tests.AbstractTestQueryFramework;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+@Test(singleThreaded = true)
+public class TestMemoryOffHeap
+        extends AbstractTestQueryFramework
+{
+    public TestMemoryOffHeap()
+    {
+        super(() -> MemoryQueryRunner.createQueryRunner(2, ImmutableMap.of(), ImmutableMap.of("memory.off-heap-enabled", "true"), true));
+    }
+
+    @AfterMethod
+    public void dropAllTables()
+    {
+        MaterializedResult tables = computeActual("SHOW TABLES");
+        for (MaterializedRow row : tables.getMaterializedRows()) {
+            assertQuerySucceeds("DROP TABLE IF EXISTS " + row.getField(0));
+        }
+    }
+
+    @Test
+    public void testSelect()
+    {
+        assertUpdate("CREATE TABLE test_off_heap WITH (async_processing=false) AS SELECT * FROM tpch.tiny.orders", "SELECT count(*) FROM orders");
+
+        assertQuery("SELECT * FROM test_off_heap", "SELECT * FROM orders");
+        assertQuery("SELECT orderstatus, sum(totalprice) FROM test_off_heap GROUP BY orderstatus", "SELECT orderstatus, sum(totalprice) FROM orders GROUP BY orderstatus");
+    }
+
+    @Test
+    public void testIndexedSelect()
+    {
+        assertUpdate("CREATE TABLE test_off_heap_sorted WITH (async_processing=false, sorted_by=ARRAY['orderkey'], index_columns=ARRAY['custkey']) AS SELECT * FROM tpch.tiny.orders",
+                "SELECT count(*) FROM orders");
+
+        assertQuery("SELECT * FROM test_off_heap_sorted WHERE orderkey BETWEEN 100 AND 200", "SELECT * FROM orders WHERE orderkey BETWEEN 100 AND 200");
+        assertQuery("SELECT orderkey FROM test_off_heap_sorted WHERE custkey = 370", "SELECT orderkey FROM orders WHERE custkey = 370");
+    }
+}
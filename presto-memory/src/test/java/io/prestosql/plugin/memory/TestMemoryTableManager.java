@@ -35,8 +35,13 @@ import org.testng.annotations.Test;
 
 import java.io.IOException;
 import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.OptionalDouble;
 import java.util.OptionalLong;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static io.prestosql.spi.type.BigintType.BIGINT;
 import static org.testng.Assert.assertEquals;
@@ -136,6 +141,84 @@ public class TestMemoryTableManager
         insertToTable(0L, createOneMegaBytePage(), 0L);
     }
 
+    @Test
+    public void testConcurrentInsert()
+            throws Exception
+    {
+        int threads = 4;
+        int pagesPerThread = 100;
+        pagesStore.initialize(0L, false, false, ImmutableList.of(new MemoryColumnHandle("c0", 0, BIGINT.getTypeSignature())), ImmutableList.of(), ImmutableList.of());
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < pagesPerThread; j++) {
+                        pagesStore.add(0L, createSingleRowPage());
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+        pagesStore.finishUpdatingTable(0L);
+
+        long rows = 0;
+        for (int i = 1; i <= pagesStore.getTableLpCount(0L); i++) {
+            for (Page page : pagesStore.getPages(0L, i, ImmutableList.of(0), threads * pagesPerThread, OptionalLong.empty(), OptionalDouble.empty())) {
+                rows += page.getPositionCount();
+            }
+        }
+        assertEquals(rows, threads * pagesPerThread);
+    }
+
+    @Test
+    public void testConcurrentInsertAndClean()
+            throws Exception
+    {
+        int threads = 4;
+        List<MemoryColumnHandle> columns = ImmutableList.of(new MemoryColumnHandle("c0", 0, BIGINT.getTypeSignature()));
+        pagesStore.initialize(0L, false, false, columns, ImmutableList.of(), ImmutableList.of());
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads + 1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < 1000; j++) {
+                        try {
+                            pagesStore.add(0L, createSingleRowPage());
+                        }
+                        catch (PrestoException e) {
+                            // the table was cleaned concurrently
+                        }
+                    }
+                }));
+            }
+            futures.add(executor.submit(() -> {
+                for (int j = 0; j < 100; j++) {
+                    pagesStore.cleanTable(0L);
+                    pagesStore.initialize(0L, false, false, columns, ImmutableList.of(), ImmutableList.of());
+                }
+            }));
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+
+        // every page added to a cleaned table must have had its memory released
+        pagesStore.cleanTable(0L);
+        assertEquals(pagesStore.getCurrentBytes(), 0);
+    }
+
     private void insertToTable(long tableId, Long... activeTableIds)
     {
         insertToTable(tableId, createPage(), activeTableIds);
@@ -177,6 +260,13 @@ public class TestMemoryTableManager
         return new Page(0, blockBuilder.build());
     }
 
+    private static Page createSingleRowPage()
+    {
+        BlockBuilder blockBuilder = BIGINT.createBlockBuilder(null, 1);
+        BIGINT.writeLong(blockBuilder, 42L);
+        return new Page(1, blockBuilder.build());
+    }
+
     private static Page createOneMegaBytePage()
     {
         BlockBuilder blockBuilder = BIGINT.createFixedSizeBlockBuilder(POSITIONS_PER_PAGE);
@@ -166,6 +166,7 @@ public class TestLogicalPart
                 mock(TypeManager.class),
                 mock(PagesSerde.class),
                 0,
+                false,
                 false);
         AtomicReference<LogicalPart.LogicalPartState> processingState = new AtomicReference<>(LogicalPart.LogicalPartState.COMPLETED);
         ReflectionTestUtils.setField(logicalPart, "processingState", processingState);
@@ -857,6 +858,7 @@ public class TestLogicalPart
                 mock(TypeManager.class),
                 mock(PagesSerde.class),
                 0,
+                false,
                 false);
 
         AtomicReference<LogicalPart.LogicalPartState> processingState = new AtomicReference<>(LogicalPart.LogicalPartState.COMPLETED);
@@ -1000,6 +1002,7 @@ public class TestLogicalPart
                 mock(TypeManager.class),
                 mock(PagesSerde.class),
                 0,
+                false,
                 false);
 
         AtomicReference<LogicalPart.LogicalPartState> processingState = new AtomicReference<>(LogicalPart.LogicalPartState.COMPLETED);
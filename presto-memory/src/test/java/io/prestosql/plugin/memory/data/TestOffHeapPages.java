@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.prestosql.plugin.memory.data;
+
+import com.google.common.collect.ImmutableList;
+import io.prestosql.RowPagesBuilder;
+import io.prestosql.spi.Page;
+import io.prestosql.spi.block.LazyBlock;
+import io.prestosql.spi.type.Type;
+import io.prestosql.testing.TestingPagesSerdeFactory;
+import org.testng.annotations.Test;
+
+import java.util.List;
+
+import static io.prestosql.operator.PageAssertions.assertPageEquals;
+import static io.prestosql.spi.type.BigintType.BIGINT;
+import static io.prestosql.spi.type.VarcharType.VARCHAR;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class TestOffHeapPages
+{
+    private static final List<Type> TYPES = ImmutableList.of(BIGINT, VARCHAR);
+
+    @Test
+    public void testRoundTrip()
+    {
+        List<Page> pages = RowPagesBuilder.rowPagesBuilder(TYPES)
+                .row(1L, "a")
+                .row(2L, null)
+                .pageBreak()
+                .row(3L, "ccc")
+                .build();
+
+        OffHeapPages offHeapPages = new OffHeapPages(new TestingPagesSerdeFactory().createPagesSerde());
+        pages.forEach(offHeapPages::add);
+        assertTrue(offHeapPages.getSizeInBytes() > 0);
+
+        List<Page> restored = offHeapPages.getPages();
+        assertEquals(restored.size(), pages.size());
+        for (int i = 0; i < pages.size(); i++) {
+            assertPageEquals(TYPES, restored.get(i), pages.get(i));
+        }
+        assertPageEquals(TYPES, offHeapPages.getPage(1), pages.get(1));
+    }
+
+    @Test
+    public void testColumnsLoadedLazily()
+    {
+        OffHeapPages offHeapPages = new OffHeapPages(new TestingPagesSerdeFactory().createPagesSerde());
+        RowPagesBuilder.rowPagesBuilder(TYPES)
+                .row(1L, "a")
+                .row(2L, "b")
+                .build()
+                .forEach(offHeapPages::add);
+
+        Page page = offHeapPages.getPage(0);
+        assertEquals(BIGINT.getLong(page.getBlock(0), 1), 2L);
+        assertTrue(((LazyBlock) page.getBlock(0)).isLoaded());
+        assertFalse(((LazyBlock) page.getBlock(1)).isLoaded());
+
+        // every read gets its own blocks, so loaded columns are not retained between reads
+        assertFalse(((LazyBlock) offHeapPages.getPage(0).getBlock(0)).isLoaded());
+    }
+}
@@ -110,6 +110,7 @@ abstract class AbstractOrcRecordReader<T extends AbstractColumnReader>
 
     private final long fileRowCount;
     private final List<Long> stripeFilePositions;
+    private final List<Optional<StripeStatistics>> stripeStatistics;
     private long filePosition;
 
     private Iterator<RowGroup> rowGroups = ImmutableList.<RowGroup>of().iterator();
@@ -240,6 +241,7 @@ abstract class AbstractOrcRecordReader<T extends AbstractColumnReader>
         ImmutableList.Builder<StripeInformation> stripes = ImmutableList.builder();
         Map<StripeInformation, List<IndexMetadata>> stripeIndexes = new HashMap<>();
         ImmutableList.Builder<Long> stripeFilePositions = ImmutableList.builder();
+        ImmutableList.Builder<Optional<StripeStatistics>> stripeStatistics = ImmutableList.builder();
         if (!fileStats.isPresent() || predicate.matches(numberOfRows, fileStats.get())) {
             // select stripes that start within the specified split
             for (int i = 0; i < stripeInfos.size(); i++) {
@@ -250,6 +252,7 @@ abstract class AbstractOrcRecordReader<T extends AbstractColumnReader>
                         && !filterStripeUsingIndex(stripe, stripeOffsetToIndex, domains, orDomains)) {
                     stripes.add(stripe);
                     stripeFilePositions.add(fileRowCount);
+                    stripeStatistics.add(info.getStats());
                     totalRowCount += stripe.getNumberOfRows();
                 }
                 fileRowCount += stripe.getNumberOfRows();
@@ -258,6 +261,7 @@ abstract class AbstractOrcRecordReader<T extends AbstractColumnReader>
         this.totalRowCount = totalRowCount;
         this.stripes = stripes.build();
         this.stripeFilePositions = stripeFilePositions.build();
+        this.stripeStatistics = stripeStatistics.build();
 
         orcDataSource = wrapWithCacheIfTinyStripes(orcDataSource, this.stripes, maxMergeDistance, tinyStripeThreshold);
         this.orcDataSource = orcDataSource;
@@ -358,6 +362,10 @@ abstract class AbstractOrcRecordReader<T extends AbstractColumnReader>
             if (!matchings.isEmpty()) {
                 Iterator<Integer> thisStripeMatchingRows = SequenceUtils.intersect(matchings);
                 PeekingIterator<Integer> peekingIterator = Iterators.peekingIterator(thisStripeMatchingRows);
+                if (!peekingIterator.hasNext()) {
+                    // no row of this stripe matches all the indexed conjuncts, skip the whole stripe
+                    return true;
+                }
                 this.stripeMatchingRows.put(stripe, peekingIterator);
             }
             return false;
@@ -641,7 +649,13 @@ abstract class AbstractOrcRecordReader<T extends AbstractColumnReader>
         StripeInformation stripeInformation = stripes.get(currentStripe);
         validateWriteStripe(stripeInformation.getNumberOfRows());
 
-        Stripe stripe = stripeReader.readStripe(stripeInformation, currentStripeSystemMemoryContext);
+        OrcPredicate dynamicPredicate = getDynamicPredicate();
+        if (!isStripeIncluded(stripeInformation, stripeStatistics.get(currentStripe), dynamicPredicate)) {
+            // no row group to read in this stripe
+            return;
+        }
+
+        Stripe stripe = stripeReader.readStripe(stripeInformation, currentStripeSystemMemoryContext, dynamicPredicate);
         if (stripe != null) {
             // Give readers access to dictionary streams
             InputStreamSources dictionaryStreamSources = stripe.getDictionaryStreamSources();
@@ -658,6 +672,18 @@ abstract class AbstractOrcRecordReader<T extends AbstractColumnReader>
         }
     }
 
+    /**
+     * Get the predicate of filters that became known after this reader was created, such as dynamic filters.
+     * It is called before each stripe is read, and the stripe and its row groups are only read if their statistics
+     * also match it. Column readers may be replaced before they start the stripe.
+     *
+     * @return predicate that the remaining stripes and row groups must match
+     */
+    protected OrcPredicate getDynamicPredicate()
+    {
+        return OrcPredicate.TRUE;
+    }
+
     private void validateWrite(Predicate<OrcWriteValidation> test, String messageFormat, Object... args)
             throws OrcCorruptionException
     {
@@ -701,18 +727,22 @@ abstract class AbstractOrcRecordReader<T extends AbstractColumnReader>
                 statisticsValidation.reset();
             }
         }
-        while (!rowGroups.hasNext() && currentStripe < stripes.size()) {
-            advanceToNextStripe();
-            currentRowGroup = -1;
-        }
+        RowGroup currentRowGroup;
+        do {
+            while (!rowGroups.hasNext() && currentStripe < stripes.size()) {
+                advanceToNextStripe();
+                this.currentRowGroup = -1;
+            }
 
-        if (!rowGroups.hasNext()) {
-            currentGroupRowCount = 0;
-            return false;
-        }
+            if (!rowGroups.hasNext()) {
+                currentGroupRowCount = 0;
+                return false;
+            }
 
-        currentRowGroup++;
-        RowGroup currentRowGroup = rowGroups.next();
+            this.currentRowGroup++;
+            currentRowGroup = rowGroups.next();
+        }
+        while (isRowGroupSkippingEnabled() && !containsMatchingRows(currentRowGroup));
         currentGroupRowCount = currentRowGroup.getRowCount();
         if (currentRowGroup.getMinAverageRowBytes() > 0) {
             maxBatchSize = toIntExact(min(maxBatchSize, max(1, maxBlockBytes / currentRowGroup.getMinAverageRowBytes())));
@@ -743,6 +773,29 @@ abstract class AbstractOrcRecordReader<T extends AbstractColumnReader>
         return true;
     }
 
+    /**
+     * Whether row groups without any row matched by the heuristic index may be skipped. Their streams are then
+     * never seeked into or decoded, but the remaining row groups of a stripe are no longer known in advance.
+     */
+    protected boolean isRowGroupSkippingEnabled()
+    {
+        return false;
+    }
+
+    private boolean containsMatchingRows(RowGroup rowGroup)
+    {
+        PeekingIterator<Integer> matchingRows = stripeMatchingRows.get(stripes.get(currentStripe));
+        if (matchingRows == null) {
+            return true;
+        }
+
+        // matching rows are sorted positions within the stripe, drop the ones of row groups already passed
+        while (matchingRows.hasNext() && matchingRows.peek() < rowGroup.getRowOffset()) {
+            matchingRows.next();
+        }
+        return matchingRows.hasNext() && matchingRows.peek() < rowGroup.getRowOffset() + rowGroup.getRowCount();
+    }
+
     /**
      * @return The size of memory retained by all the stream readers (local buffers + object overhead)
      */
@@ -13,11 +13,13 @@
  */
 package io.prestosql.orc;
 
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.PeekingIterator;
 import io.airlift.log.Logger;
 import io.airlift.slice.Slice;
 import io.airlift.units.DataSize;
 import io.prestosql.memory.context.AggregatedMemoryContext;
+import io.prestosql.orc.TupleDomainOrcPredicate.TupleDomainOrcPredicateBuilder;
 import io.prestosql.orc.metadata.ColumnMetadata;
 import io.prestosql.orc.metadata.MetadataReader;
 import io.prestosql.orc.metadata.OrcColumnId;
@@ -44,12 +46,13 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.BitSet;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.function.Function;
-import java.util.stream.IntStream;
+import java.util.function.Supplier;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static io.prestosql.orc.reader.SelectiveColumnReaders.createColumnReader;
@@ -79,6 +82,17 @@ public class OrcSelectiveRecordReader
     // flag indicating whether range filter on a constant column is false; no data is read in that case
     private boolean constantFilterIsFalse;
 
+    private final List<OrcColumn> fileColumns;
+    private final ColumnMetadata<OrcType> orcTypes;
+    private final DateTimeZone hiveStorageTimeZone;
+    private final AggregatedMemoryContext columnReadersMemoryContext;
+    // cached rows of column readers are only valid for the filters they were read with
+    private final boolean dynamicFilterPushdownSupported;
+    private Supplier<Map<Integer, Domain>> dynamicFilterDomains = ImmutableMap::of;
+    private boolean dynamicFilterBloomFiltersEnabled;
+    private final Map<Integer, Domain> appliedDynamicFilterDomains = new HashMap<>();
+    private OrcPredicate dynamicPredicate = OrcPredicate.TRUE;
+
     /**
      * Create a selective record reader to be used with selective page source.
      * This reader is different from main reader in terms:
@@ -181,11 +195,16 @@ public class OrcSelectiveRecordReader
         this.includedColumns = includedColumns;
         this.excludePositions = positions;
 
-        this.filters = filters;
+        this.filters = new HashMap<>(filters);
         this.disjuctFilters = disjuctFilters;
         this.constantValues = requireNonNull(constantValues, "constantValues is null");
         this.coercers = requireNonNull(coercers, "coercers is null");
         this.missingColumns = requireNonNull(missingColumns, "missingColumns is null");
+        this.fileColumns = fileColumns;
+        this.orcTypes = orcTypes;
+        this.hiveStorageTimeZone = hiveStorageTimeZone;
+        this.columnReadersMemoryContext = systemMemoryUsage.newAggregatedMemoryContext();
+        this.dynamicFilterPushdownSupported = !orcCacheProperties.isRowDataCacheEnabled();
 
         for (Map.Entry<Integer, Function<Block, Block>> entry : coercers.entrySet()) {
             checkArgument(!filters.containsKey(entry.getKey()), "Coercions for columns with range filters are not yet supported");
@@ -200,13 +219,90 @@ public class OrcSelectiveRecordReader
         }
 
         setColumnReadersParam(createColumnReaders(fileColumns,
-                systemMemoryUsage.newAggregatedMemoryContext(),
+                columnReadersMemoryContext,
                 new OrcBlockFactory(exceptionTransform, true),
                 orcCacheStore, orcCacheProperties,
                 predicate, filters, hiveStorageTimeZone,
                 outputColumns, includedColumns, orcTypes, useDataCache));
     }
 
+    /**
+     * Set the supplier of the domains of dynamic filters by column index, which is called before each stripe is read.
+     * Stripes and row groups whose statistics do not match the domains are skipped, and the domains are pushed
+     * into the readers of the columns, so the remaining rows are filtered while they are read.
+     * The domain of a column that already has a filter must be intersected with the domain of that filter.
+     *
+     * @param dynamicFilterDomains supplier of the domains of the dynamic filters that are available
+     * @param bloomFiltersEnabled whether bloom filters of row groups are checked against the domains
+     */
+    public void setDynamicFilterDomains(Supplier<Map<Integer, Domain>> dynamicFilterDomains, boolean bloomFiltersEnabled)
+    {
+        this.dynamicFilterDomains = requireNonNull(dynamicFilterDomains, "dynamicFilterDomains is null");
+        this.dynamicFilterBloomFiltersEnabled = bloomFiltersEnabled;
+    }
+
+    @Override
+    protected OrcPredicate getDynamicPredicate()
+    {
+        Map<Integer, Domain> domains = dynamicFilterDomains.get();
+        if (appliedDynamicFilterDomains.keySet().containsAll(domains.keySet())) {
+            return dynamicPredicate;
+        }
+
+        SelectiveColumnReader[] columnReaders = getColumnReaders();
+        for (Map.Entry<Integer, Domain> entry : domains.entrySet()) {
+            int columnIndex = entry.getKey();
+            // only columns read from the file can be filtered, partition keys are filtered with the splits
+            if (appliedDynamicFilterDomains.containsKey(columnIndex) || columnIndex < 0 || columnIndex >= columnReaders.length || columnReaders[columnIndex] == null) {
+                continue;
+            }
+            appliedDynamicFilterDomains.put(columnIndex, entry.getValue());
+            pushDownDynamicFilter(columnIndex, entry.getValue());
+        }
+
+        TupleDomainOrcPredicateBuilder predicateBuilder = TupleDomainOrcPredicate.builder()
+                .setBloomFiltersEnabled(dynamicFilterBloomFiltersEnabled);
+        appliedDynamicFilterDomains.forEach((columnIndex, domain) -> predicateBuilder.addColumn(fileColumns.get(columnIndex).getColumnId(), domain));
+        dynamicPredicate = predicateBuilder.build();
+        return dynamicPredicate;
+    }
+
+    private void pushDownDynamicFilter(int columnIndex, Domain domain)
+    {
+        if (!dynamicFilterPushdownSupported || colReaderWithORFilter.contains(columnIndex) || coercers.containsKey(columnIndex)) {
+            return;
+        }
+
+        TupleDomainFilter filter;
+        try {
+            filter = TupleDomainFilterUtils.toFilter(domain);
+        }
+        catch (UnsupportedOperationException | IllegalArgumentException e) {
+            // the domain is still used to skip stripes and row groups
+            return;
+        }
+
+        // the reader is replaced before it starts the next stripe
+        OrcColumn column = fileColumns.get(columnIndex);
+        SelectiveColumnReader[] columnReaders = getColumnReaders();
+        columnReaders[columnIndex].close();
+        columnReaders[columnIndex] = createColumnReader(
+                orcTypes.get(column.getColumnId()),
+                column,
+                Optional.of(filter),
+                outputColumns.contains(columnIndex) ? Optional.of(includedColumns.get(columnIndex)) : Optional.empty(),
+                hiveStorageTimeZone,
+                columnReadersMemoryContext);
+        filters.put(columnIndex, filter);
+        colReaderWithoutFilter.remove(columnIndex);
+
+        // filters of joins are usually the most selective ones, so they are evaluated first
+        IntArraySet filteredColumns = new IntArraySet();
+        filteredColumns.add(columnIndex);
+        filteredColumns.addAll(colReaderWithFilter);
+        colReaderWithFilter = filteredColumns;
+    }
+
     private static boolean containsNonNullFilter(TupleDomainFilter columnFilters)
     {
         return columnFilters != null && !columnFilters.testNull();
@@ -357,7 +453,8 @@ public class OrcSelectiveRecordReader
             long currentPositionInStripe = currentPosition - currentStripePosition;
 
             PeekingIterator<Integer> matchingRows = stripeMatchingRows.get(stripe);
-            List<Integer> matchingRowsInBlock = new ArrayList<>();
+            int[] matchingRowsInBlock = new int[batchSize];
+            int matchingRowCount = 0;
 
             while (matchingRows.hasNext()) {
                 Integer row = matchingRows.peek();
@@ -386,7 +483,7 @@ public class OrcSelectiveRecordReader
                 }
                 else if (row < currentPositionInStripe + batchSize) {
                     // matchingRows cursor is within current batch
-                    matchingRowsInBlock.add(toIntExact(Long.valueOf(row) - currentPositionInStripe));
+                    matchingRowsInBlock[matchingRowCount++] = toIntExact(row - currentPositionInStripe);
                     matchingRows.next();
                 }
                 else {
@@ -395,9 +492,7 @@ public class OrcSelectiveRecordReader
                 }
             }
 
-            matchingRowsInBatchArray = new int[matchingRowsInBlock.size()];
-            IntStream.range(0, matchingRowsInBlock.size()).forEach(
-                    i -> matchingRowsInBatchArray[i] = matchingRowsInBlock.get(i));
+            matchingRowsInBatchArray = Arrays.copyOf(matchingRowsInBlock, matchingRowCount);
         }
 
         if (matchingRowsInBatchArray != null) {
@@ -412,6 +507,13 @@ public class OrcSelectiveRecordReader
         }
     }
 
+    @Override
+    protected boolean isRowGroupSkippingEnabled()
+    {
+        // only the rows matched by the index are decoded, so row groups without any of them need not be read at all
+        return true;
+    }
+
     @Override
     public void close()
             throws IOException
@@ -125,6 +125,15 @@ public class StripeReader
 
     public Stripe readStripe(StripeInformation stripe, AggregatedMemoryContext systemMemoryUsage)
             throws IOException
+    {
+        return readStripe(stripe, systemMemoryUsage, OrcPredicate.TRUE);
+    }
+
+    /**
+     * Read a stripe, selecting only the row groups that match both the predicate of this reader and the given one
+     */
+    public Stripe readStripe(StripeInformation stripe, AggregatedMemoryContext systemMemoryUsage, OrcPredicate additionalPredicate)
+            throws IOException
     {
         // read the stripe footer
         OrcStripeFooterCacheKey cacheKey = new OrcStripeFooterCacheKey();
@@ -179,7 +188,7 @@ public class StripeReader
             }
 
             // select the row groups matching the tuple domain
-            Set<Integer> selectedRowGroups = selectRowGroups(stripe, columnIndexes);
+            Set<Integer> selectedRowGroups = selectRowGroups(stripe, columnIndexes, additionalPredicate);
 
             // if all row groups are skipped, return null
             if (selectedRowGroups.isEmpty()) {
@@ -530,7 +539,7 @@ public class StripeReader
         return columnIndexes.build();
     }
 
-    private Set<Integer> selectRowGroups(StripeInformation stripe, Map<StreamId, List<RowGroupIndex>> columnIndexes)
+    private Set<Integer> selectRowGroups(StripeInformation stripe, Map<StreamId, List<RowGroupIndex>> columnIndexes, OrcPredicate additionalPredicate)
     {
         int rowsInStripe = toIntExact(stripe.getNumberOfRows());
         int groupsInStripe = ceil(rowsInStripe, rowsInRowGroup);
@@ -540,7 +549,7 @@ public class StripeReader
         for (int rowGroup = 0; rowGroup < groupsInStripe; ++rowGroup) {
             int rows = Math.min(remainingRows, rowsInRowGroup);
             ColumnMetadata<ColumnStatistics> statistics = getRowGroupStatistics(types, columnIndexes, rowGroup);
-            if (predicate.matches(rows, statistics)) {
+            if (predicate.matches(rows, statistics) && additionalPredicate.matches(rows, statistics)) {
                 selectedRowGroups.add(rowGroup);
             }
             remainingRows -= rows;
@@ -0,0 +1,326 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.prestosql.orc;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import io.airlift.units.DataSize;
+import io.prestosql.orc.metadata.StripeInformation;
+import io.prestosql.spi.Page;
+import io.prestosql.spi.block.Block;
+import io.prestosql.spi.block.BlockBuilder;
+import io.prestosql.spi.heuristicindex.Index;
+import io.prestosql.spi.heuristicindex.IndexLookUpException;
+import io.prestosql.spi.heuristicindex.IndexMetadata;
+import io.prestosql.spi.predicate.Domain;
+import io.prestosql.spi.predicate.Range;
+import io.prestosql.spi.predicate.ValueSet;
+import io.prestosql.spi.type.Type;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.LongStream;
+
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static io.airlift.units.DataSize.Unit.MEGABYTE;
+import static io.prestosql.memory.context.AggregatedMemoryContext.newSimpleAggregatedMemoryContext;
+import static io.prestosql.orc.OrcTester.HIVE_STORAGE_TIME_ZONE;
+import static io.prestosql.orc.OrcWriteValidation.OrcWriteValidationMode.BOTH;
+import static io.prestosql.orc.metadata.CompressionKind.NONE;
+import static io.prestosql.spi.type.BigintType.BIGINT;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class TestOrcSelectiveRecordReader
+{
+    private static final int ROWS_IN_ROW_GROUP = 10_000;
+    private static final int ROWS_IN_STRIPE = 5 * ROWS_IN_ROW_GROUP;
+    private static final int STRIPE_COUNT = 3;
+    private static final int INITIAL_BATCH_SIZE = 1024;
+    private static final List<String> COLUMN_NAMES = ImmutableList.of("c0", "c1");
+    private static final List<Type> TYPES = ImmutableList.of(BIGINT, BIGINT);
+
+    private TempFile tempFile;
+
+    @BeforeClass
+    public void setUp()
+            throws Exception
+    {
+        // c0 is the row number, c1 the row number divided by 10, so stripes and row groups have disjoint statistics
+        tempFile = new TempFile();
+        OrcWriter writer = new OrcWriter(
+                new OutputStreamOrcDataSink(new FileOutputStream(tempFile.getFile())),
+                COLUMN_NAMES,
+                TYPES,
+                NONE,
+                new OrcWriterOptions()
+                        .withStripeMaxRowCount(ROWS_IN_STRIPE)
+                        .withRowGroupMaxRowCount(ROWS_IN_ROW_GROUP),
+                false,
+                ImmutableMap.of(),
+                false,
+                BOTH,
+                new OrcWriterStats(),
+                Optional.empty(),
+                Optional.empty());
+
+        BlockBuilder rowNumbers = BIGINT.createBlockBuilder(null, STRIPE_COUNT * ROWS_IN_STRIPE);
+        BlockBuilder tens = BIGINT.createBlockBuilder(null, STRIPE_COUNT * ROWS_IN_STRIPE);
+        for (int row = 0; row < STRIPE_COUNT * ROWS_IN_STRIPE; row++) {
+            BIGINT.writeLong(rowNumbers, row);
+            BIGINT.writeLong(tens, row / 10);
+        }
+        writer.write(new Page(rowNumbers.build(), tens.build()));
+        writer.close();
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void tearDown()
+            throws IOException
+    {
+        tempFile.close();
+    }
+
+    @Test
+    public void testIndexSelectionSkipsRowGroups()
+            throws Exception
+    {
+        List<Long> stripeOffsets = getStripeOffsets();
+        assertEquals(stripeOffsets.size(), STRIPE_COUNT);
+
+        // matching rows are positions within the stripe
+        List<IndexMetadata> indexes = ImmutableList.of(
+                // row groups 0, 2 and 4 are skipped before, between and after the matching row groups 1 and 3
+                createBitmapIndex(stripeOffsets.get(0), 15_000, 15_001, 35_000),
+                // the index intersection of this stripe is empty, so the stripe is skipped
+                createBitmapIndex(stripeOffsets.get(1)),
+                // first row of the first row group and last row of the last row group
+                createBitmapIndex(stripeOffsets.get(2), 5, ROWS_IN_STRIPE - 1));
+        Set<Long> matchingRowGroups = ImmutableSet.of(1L, 3L, 10L, 14L);
+
+        try (OrcSelectiveRecordReader reader = createReader(Optional.of(indexes), ImmutableMap.of("c0", Domain.singleValue(BIGINT, 0L)), ImmutableList.of(0))) {
+            assertEquals(reader.getReaderRowCount(), 2L * ROWS_IN_STRIPE);
+
+            List<Long> values = new ArrayList<>();
+            for (Page page = reader.getNextPage(); page != null; page = reader.getNextPage()) {
+                long filePosition = reader.getFilePosition();
+                assertTrue(matchingRowGroups.contains(filePosition / ROWS_IN_ROW_GROUP), "read row group without matching rows at " + filePosition);
+                // rows of the skipped stripe don't count in the reader position
+                assertEquals(reader.getReaderPosition(), filePosition < ROWS_IN_STRIPE ? filePosition : filePosition - ROWS_IN_STRIPE);
+
+                for (long value : getValues(page, 0)) {
+                    // the value of c0 is the row number, the reader is positioned at the batch it was read from
+                    assertTrue(value >= filePosition, "row " + value + " read at " + filePosition);
+                    assertEquals(value / ROWS_IN_ROW_GROUP, filePosition / ROWS_IN_ROW_GROUP);
+                    values.add(value);
+                }
+            }
+
+            assertEquals(values, ImmutableList.of(15_000L, 15_001L, 35_000L, 2L * ROWS_IN_STRIPE + 5, 3L * ROWS_IN_STRIPE - 1));
+            assertEquals(reader.getFilePosition(), (long) STRIPE_COUNT * ROWS_IN_STRIPE);
+            assertEquals(reader.getReaderPosition(), 2L * ROWS_IN_STRIPE);
+        }
+    }
+
+    @Test
+    public void testIndexSelectionWithoutMatchingRows()
+            throws Exception
+    {
+        List<Long> stripeOffsets = getStripeOffsets();
+        List<IndexMetadata> indexes = ImmutableList.of(
+                createBitmapIndex(stripeOffsets.get(0)),
+                createBitmapIndex(stripeOffsets.get(1)),
+                createBitmapIndex(stripeOffsets.get(2)));
+
+        try (OrcSelectiveRecordReader reader = createReader(Optional.of(indexes), ImmutableMap.of("c0", Domain.singleValue(BIGINT, 0L)), ImmutableList.of(0))) {
+            assertEquals(reader.getReaderRowCount(), 0);
+            assertEquals(reader.getNextPage(), null);
+            assertEquals(reader.getFilePosition(), (long) STRIPE_COUNT * ROWS_IN_STRIPE);
+        }
+    }
+
+    @Test
+    public void testLateDynamicFilterSkipsStripe()
+            throws Exception
+    {
+        AtomicReference<Map<Integer, Domain>> dynamicFilter = new AtomicReference<>(ImmutableMap.of());
+
+        try (OrcSelectiveRecordReader reader = createReader(Optional.empty(), ImmutableMap.of(), ImmutableList.of(0))) {
+            reader.setDynamicFilterDomains(dynamicFilter::get, false);
+
+            List<Long> values = new ArrayList<>();
+            for (Page page = reader.getNextPage(); page != null; page = reader.getNextPage()) {
+                long filePosition = reader.getFilePosition();
+                // the filter only matches the first row group of the last stripe
+                assertTrue(filePosition < ROWS_IN_STRIPE || (filePosition >= 2 * ROWS_IN_STRIPE && filePosition < 2 * ROWS_IN_STRIPE + ROWS_IN_ROW_GROUP),
+                        "read rows excluded by the dynamic filter at " + filePosition);
+                values.addAll(getValues(page, 0));
+                // the filter arrives while the first stripe is read
+                dynamicFilter.set(ImmutableMap.of(0, Domain.create(ValueSet.ofRanges(Range.range(BIGINT, 2L * ROWS_IN_STRIPE + 5, true, 2L * ROWS_IN_STRIPE + 9, true)), false)));
+            }
+
+            // the stripe being read when the filter arrived is read completely
+            List<Long> expected = new ArrayList<>();
+            LongStream.range(0, ROWS_IN_STRIPE).forEach(expected::add);
+            LongStream.rangeClosed(2L * ROWS_IN_STRIPE + 5, 2L * ROWS_IN_STRIPE + 9).forEach(expected::add);
+            assertEquals(values, expected);
+            assertEquals(reader.getFilePosition(), (long) STRIPE_COUNT * ROWS_IN_STRIPE);
+        }
+    }
+
+    @Test
+    public void testDynamicFilterFiltersRowsAfterArrival()
+            throws Exception
+    {
+        AtomicReference<Map<Integer, Domain>> dynamicFilter = new AtomicReference<>(ImmutableMap.of());
+        Domain domain = Domain.multipleValues(BIGINT, ImmutableList.of(10L, ROWS_IN_STRIPE + 10L, ROWS_IN_STRIPE + 11L, 2L * ROWS_IN_STRIPE + 10L));
+
+        try (OrcSelectiveRecordReader reader = createReader(Optional.empty(), ImmutableMap.of(), ImmutableList.of(0, 1))) {
+            reader.setDynamicFilterDomains(dynamicFilter::get, false);
+
+            List<Long> values = new ArrayList<>();
+            for (Page page = reader.getNextPage(); page != null; page = reader.getNextPage()) {
+                List<Long> pageValues = getValues(page, 0);
+                List<Long> pageTens = getValues(page, 1);
+                for (int position = 0; position < pageValues.size(); position++) {
+                    assertEquals((long) pageTens.get(position), pageValues.get(position) / 10);
+                }
+                if (reader.getFilePosition() >= ROWS_IN_STRIPE) {
+                    // rows of the row groups that are read are filtered with the pushed down filter
+                    pageValues.forEach(value -> assertTrue(domain.includesNullableValue(value), "value " + value + " does not match the dynamic filter"));
+                }
+                values.addAll(pageValues);
+                dynamicFilter.set(ImmutableMap.of(0, domain));
+            }
+
+            assertEquals(values.size(), ROWS_IN_STRIPE + 3);
+            assertEquals(values.subList(0, ROWS_IN_STRIPE), LongStream.range(0, ROWS_IN_STRIPE).boxed().collect(toImmutableList()));
+            assertEquals(values.subList(ROWS_IN_STRIPE, values.size()), ImmutableList.of(ROWS_IN_STRIPE + 10L, ROWS_IN_STRIPE + 11L, 2L * ROWS_IN_STRIPE + 10L));
+        }
+    }
+
+    @Test
+    public void testDynamicFilterOnColumnNotProjected()
+            throws Exception
+    {
+        // c1 is only read to evaluate the filter, c0 is the only output column
+        Map<Integer, Domain> dynamicFilter = ImmutableMap.of(1, Domain.singleValue(BIGINT, (ROWS_IN_STRIPE + 10L) / 10));
+
+        try (OrcSelectiveRecordReader reader = createReader(Optional.empty(), ImmutableMap.of(), ImmutableList.of(0))) {
+            reader.setDynamicFilterDomains(() -> dynamicFilter, false);
+
+            List<Long> values = new ArrayList<>();
+            for (Page page = reader.getNextPage(); page != null; page = reader.getNextPage()) {
+                long filePosition = reader.getFilePosition();
+                assertTrue(filePosition >= ROWS_IN_STRIPE && filePosition < ROWS_IN_STRIPE + ROWS_IN_ROW_GROUP, "read rows excluded by the dynamic filter at " + filePosition);
+                assertEquals(page.getChannelCount(), 1);
+                values.addAll(getValues(page, 0));
+            }
+
+            assertEquals(values, LongStream.range(ROWS_IN_STRIPE + 10L, ROWS_IN_STRIPE + 20L).boxed().collect(toImmutableList()));
+        }
+    }
+
+    private List<Long> getStripeOffsets()
+            throws IOException
+    {
+        OrcReader orcReader = new OrcReader(createDataSource(), new DataSize(1, MEGABYTE), new DataSize(1, MEGABYTE), new DataSize(1, MEGABYTE));
+        List<Long> offsets = new ArrayList<>();
+        for (StripeInformation stripe : orcReader.getFooter().getStripes()) {
+            offsets.add(stripe.getOffset());
+        }
+        return offsets;
+    }
+
+    private OrcSelectiveRecordReader createReader(Optional<List<IndexMetadata>> indexes, Map<String, Domain> domains, List<Integer> outputColumns)
+            throws IOException
+    {
+        OrcDataSource orcDataSource = createDataSource();
+        OrcReader orcReader = new OrcReader(orcDataSource, new DataSize(1, MEGABYTE), new DataSize(1, MEGABYTE), new DataSize(1, MEGABYTE));
+        List<OrcColumn> columns = orcReader.getRootColumn().getNestedColumns();
+
+        return orcReader.createSelectiveRecordReader(
+                columns,
+                columns,
+                TYPES,
+                outputColumns,
+                ImmutableMap.of(0, BIGINT, 1, BIGINT),
+                ImmutableMap.of(),
+                ImmutableMap.of(),
+                OrcPredicate.TRUE,
+                0,
+                orcDataSource.getSize(),
+                HIVE_STORAGE_TIME_ZONE,
+                newSimpleAggregatedMemoryContext(),
+                INITIAL_BATCH_SIZE,
+                RuntimeException::new,
+                indexes,
+                domains,
+                OrcCacheStore.CACHE_NOTHING,
+                new OrcCacheProperties(),
+                Optional.empty(),
+                new HashMap<>(),
+                null,
+                false,
+                ImmutableMap.of(),
+                ImmutableMap.of(),
+                new HashSet<>());
+    }
+
+    private OrcDataSource createDataSource()
+            throws IOException
+    {
+        return new FileOrcDataSource(tempFile.getFile(), new DataSize(1, MEGABYTE), new DataSize(1, MEGABYTE), new DataSize(1, MEGABYTE), true, tempFile.getFile().lastModified());
+    }
+
+    private static IndexMetadata createBitmapIndex(long stripeOffset, Integer... matchingRows)
+            throws IndexLookUpException
+    {
+        Index index = mock(Index.class);
+        when(index.getId()).thenReturn("BITMAP");
+        doReturn(Arrays.asList(matchingRows).iterator()).when(index).lookUp(any());
+        return new IndexMetadata(index, "catalog.schema.table", new String[] {"c0"}, null, null, stripeOffset, 0);
+    }
+
+    private static List<Long> getValues(Page page, int channel)
+    {
+        List<Long> values = new ArrayList<>(page.getPositionCount());
+        if (page.getPositionCount() == 0) {
+            return values;
+        }
+        Block block = page.getBlock(channel);
+        for (int position = 0; position < block.getPositionCount(); position++) {
+            values.add(BIGINT.getLong(block, position));
+        }
+        return values;
+    }
+}
@@ -29,10 +29,14 @@ public class HetuConstant
     public static final String FILTER_CACHE_LOADING_DELAY = "hetu.heuristicindex.filter.cache.loading-delay";
     public static final String FILTER_CACHE_TTL = "hetu.heuristicindex.filter.cache.ttl";
     public static final String FILTER_CACHE_SOFT_REFERENCE = "hetu.heuristicindex.filter.cache.soft-reference";
+    public static final String FILTER_CACHE_ADMISSION_ENABLED = "hetu.heuristicindex.filter.cache.admission-enabled";
     public static final String FILTER_CACHE_PRELOAD_INDICES = "hetu.heuristicindex.filter.cache.preload-indices";
     public static final String FILTER_CACHE_AUTOLOAD_DEFAULT = "hetu.heuristicindex.filter.cache.autoload-default";
     public static final String INDEXSTORE_URI = "hetu.heuristicindex.indexstore.uri";
     public static final String INDEXSTORE_FILESYSTEM_PROFILE = "hetu.heuristicindex.indexstore.filesystem.profile";
+    public static final String INDEX_WRITER_MAX_BUFFERED_MEMORY = "hetu.heuristicindex.indexwriter.max-buffered-memory";
+    // not a config property: the local directories index writers spill to, taken from experimental.spiller-spill-path
+    public static final String INDEX_WRITER_SPILL_PATHS = "hetu.heuristicindex.indexwriter.spill-paths";
     public static final String DATA_CENTER_CONNECTOR_NAME = "dc";
     public static final String CONNECTION_USER = "connection-user";
     public static final String CONNECTION_URL = "connection-url";
@@ -16,6 +16,7 @@ package io.prestosql.spi.dynamicfilter;
 
 import io.airlift.log.Logger;
 import io.airlift.slice.Slice;
+import io.prestosql.spi.block.Block;
 import io.prestosql.spi.connector.ColumnHandle;
 import io.prestosql.spi.util.BloomFilter;
 
@@ -142,6 +143,46 @@ public class BloomFilterDynamicFilter
         return bloomFilterDeserialized.test(((String) value).getBytes());
     }
 
+    /**
+     * Values of long and double blocks are tested without boxing. Long values are also
+     * checked against the minimum and maximum values first, when they are set
+     */
+    @Override
+    public int filter(io.prestosql.spi.type.Type blockType, Block block, int[] selectedPositions, int positionCount)
+    {
+        Class<?> javaType = blockType.getJavaType();
+        int matchedCount = 0;
+        if (javaType == long.class) {
+            long minValue = min instanceof Long ? (Long) min : Long.MIN_VALUE;
+            long maxValue = max instanceof Long ? (Long) max : Long.MAX_VALUE;
+            for (int i = 0; i < positionCount; i++) {
+                int position = selectedPositions[i];
+                boolean matched;
+                if (block.isNull(position)) {
+                    matched = bloomFilterDeserialized.test((byte[]) null);
+                }
+                else {
+                    long value = blockType.getLong(block, position);
+                    matched = value >= minValue && value <= maxValue && bloomFilterDeserialized.test(value);
+                }
+                if (matched) {
+                    selectedPositions[matchedCount++] = position;
+                }
+            }
+            return matchedCount;
+        }
+        if (javaType == double.class) {
+            for (int i = 0; i < positionCount; i++) {
+                int position = selectedPositions[i];
+                if (block.isNull(position) ? bloomFilterDeserialized.test((byte[]) null) : bloomFilterDeserialized.test(blockType.getDouble(block, position))) {
+                    selectedPositions[matchedCount++] = position;
+                }
+            }
+            return matchedCount;
+        }
+        return super.filter(blockType, block, selectedPositions, positionCount);
+    }
+
     @Override
     public long getSize()
     {
@@ -152,8 +193,8 @@ public class BloomFilterDynamicFilter
     public DynamicFilter clone()
     {
         DynamicFilter clone = new BloomFilterDynamicFilter(filterId, columnHandle, bloomFilterDeserialized, bloomFilterSerialized, type);
+        clone.setMin(min);
         clone.setMax(max);
-        clone.setMax(min);
         return clone;
     }
 
@@ -15,6 +15,7 @@
 package io.prestosql.spi.dynamicfilter;
 
 import com.google.common.collect.ImmutableList;
+import io.prestosql.spi.block.Block;
 import io.prestosql.spi.connector.ColumnHandle;
 
 import java.util.List;
@@ -47,6 +48,13 @@ public class CombinedDynamicFilter
         return filter1.contains(value) && filter2.contains(value);
     }
 
+    @Override
+    public int filter(io.prestosql.spi.type.Type blockType, Block block, int[] selectedPositions, int positionCount)
+    {
+        int matchedCount = filter1.filter(blockType, block, selectedPositions, positionCount);
+        return filter2.filter(blockType, block, selectedPositions, matchedCount);
+    }
+
     @Override
     public long getSize()
     {
@@ -14,7 +14,9 @@
  */
 package io.prestosql.spi.dynamicfilter;
 
+import io.prestosql.spi.block.Block;
 import io.prestosql.spi.connector.ColumnHandle;
+import io.prestosql.spi.type.TypeUtils;
 
 import java.util.Objects;
 
@@ -83,6 +85,28 @@ public abstract class DynamicFilter
      */
     public abstract boolean contains(Object value);
 
+    /**
+     * Filter the selected positions of a block, keeping the positions whose value may be in the current dynamic filter.
+     * The kept positions are moved to the front of selectedPositions, in their original order
+     *
+     * @param blockType type of the values in the block
+     * @param block block of the column of the current dynamic filter
+     * @param selectedPositions positions of the block to filter
+     * @param positionCount number of positions in selectedPositions
+     * @return number of positions kept
+     */
+    public int filter(io.prestosql.spi.type.Type blockType, Block block, int[] selectedPositions, int positionCount)
+    {
+        int matchedCount = 0;
+        for (int i = 0; i < positionCount; i++) {
+            int position = selectedPositions[i];
+            if (contains(TypeUtils.readNativeValue(blockType, block, position))) {
+                selectedPositions[matchedCount++] = position;
+            }
+        }
+        return matchedCount;
+    }
+
     /**
      * Get the size of the current DynamicFilter
      *
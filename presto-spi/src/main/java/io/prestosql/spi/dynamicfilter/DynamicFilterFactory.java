@@ -14,6 +14,7 @@
  */
 package io.prestosql.spi.dynamicfilter;
 
+import io.airlift.slice.Slice;
 import io.prestosql.spi.connector.ColumnHandle;
 import io.prestosql.spi.relation.RowExpression;
 
@@ -33,8 +34,19 @@ public class DynamicFilterFactory
         return new BloomFilterDynamicFilter(filterId, columnHandle, serializedBloomFilter, type);
     }
 
+    /**
+     * Create a HashSetDynamicFilter, specialized for the values when they are all longs or all Slices
+     */
     public static HashSetDynamicFilter create(String filterId, ColumnHandle columnHandle, Set values, DynamicFilter.Type type)
     {
+        if (!values.isEmpty()) {
+            if (values.stream().allMatch(Long.class::isInstance)) {
+                return new LongHashSetDynamicFilter(filterId, columnHandle, values, type);
+            }
+            if (values.stream().allMatch(Slice.class::isInstance)) {
+                return new SliceHashSetDynamicFilter(filterId, columnHandle, values, type);
+            }
+        }
         return new HashSetDynamicFilter(filterId, columnHandle, values, type);
     }
 
@@ -48,6 +60,14 @@ public class DynamicFilterFactory
         }
     }
 
+    /**
+     * Create a RangeDynamicFilter keeping only the values between min and max, both inclusive
+     */
+    public static RangeDynamicFilter create(String filterId, ColumnHandle columnHandle, Object min, Object max, DynamicFilter.Type type)
+    {
+        return new RangeDynamicFilter(filterId, columnHandle, min, max, type);
+    }
+
     public static CombinedDynamicFilter combine(ColumnHandle columnHandle, DynamicFilter filter1, DynamicFilter filter2)
     {
         return new CombinedDynamicFilter(columnHandle, filter1, filter2);
@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.prestosql.spi.dynamicfilter;
+
+import io.airlift.slice.XxHash64;
+import io.prestosql.spi.block.Block;
+import io.prestosql.spi.connector.ColumnHandle;
+
+import java.util.Set;
+
+/**
+ * HashSetDynamicFilter of long values, which are also kept in an open addressing
+ * hash table, so blocks are filtered without boxing their values.
+ * The table is built from the values when the filter is created
+ */
+public class LongHashSetDynamicFilter
+        extends HashSetDynamicFilter
+{
+    private final long[] table;
+    private final int mask;
+    private final boolean containsZero;
+    private final long minValue;
+    private final long maxValue;
+
+    public LongHashSetDynamicFilter(String filterId, ColumnHandle columnHandle, Set valueSet, Type type)
+    {
+        super(filterId, columnHandle, valueSet, type);
+        this.table = new long[tableSize(valueSet.size())];
+        this.mask = table.length - 1;
+
+        boolean hasZero = false;
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (Object object : valueSet) {
+            long value = (Long) object;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+            if (value == 0) {
+                // zero marks the empty slots of the table
+                hasZero = true;
+                continue;
+            }
+            int slot = slot(value);
+            while (table[slot] != 0 && table[slot] != value) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = value;
+        }
+        this.containsZero = hasZero;
+        this.minValue = min;
+        this.maxValue = max;
+    }
+
+    private LongHashSetDynamicFilter(LongHashSetDynamicFilter other)
+    {
+        super(other.filterId, other.columnHandle, other.valueSet, other.type);
+        this.table = other.table;
+        this.mask = other.mask;
+        this.containsZero = other.containsZero;
+        this.minValue = other.minValue;
+        this.maxValue = other.maxValue;
+    }
+
+    public boolean contains(long value)
+    {
+        if (value < minValue || value > maxValue) {
+            return false;
+        }
+        if (value == 0) {
+            return containsZero;
+        }
+        int slot = slot(value);
+        while (true) {
+            long current = table[slot];
+            if (current == value) {
+                return true;
+            }
+            if (current == 0) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    @Override
+    public boolean contains(Object value)
+    {
+        if (value instanceof Long) {
+            return contains((long) (Long) value);
+        }
+        return super.contains(value);
+    }
+
+    @Override
+    public int filter(io.prestosql.spi.type.Type blockType, Block block, int[] selectedPositions, int positionCount)
+    {
+        if (blockType.getJavaType() != long.class) {
+            return super.filter(blockType, block, selectedPositions, positionCount);
+        }
+        int matchedCount = 0;
+        for (int i = 0; i < positionCount; i++) {
+            int position = selectedPositions[i];
+            if (!block.isNull(position) && contains(blockType.getLong(block, position))) {
+                selectedPositions[matchedCount++] = position;
+            }
+        }
+        return matchedCount;
+    }
+
+    @Override
+    public DynamicFilter clone()
+    {
+        DynamicFilter clone = new LongHashSetDynamicFilter(this);
+        clone.setMin(min);
+        clone.setMax(max);
+        return clone;
+    }
+
+    private int slot(long value)
+    {
+        return (int) XxHash64.hash(value) & mask;
+    }
+
+    static int tableSize(int valueCount)
+    {
+        // keep the table at most half full
+        return Integer.highestOneBit(Math.max(valueCount, 1) * 2 - 1) << 1;
+    }
+}
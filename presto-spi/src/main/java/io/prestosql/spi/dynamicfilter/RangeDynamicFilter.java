@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.prestosql.spi.dynamicfilter;
+
+import io.prestosql.spi.block.Block;
+import io.prestosql.spi.connector.ColumnHandle;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * DynamicFilter which only keeps the minimum and maximum build side values, used
+ * when the build side has too many values for a hash set or bloom filter.
+ * Values are compared in their native stack representation, so the filter must only be
+ * created for types whose native values have the same ordering as the type itself
+ */
+public class RangeDynamicFilter
+        extends DynamicFilter
+{
+    public RangeDynamicFilter(String filterId, ColumnHandle columnHandle, Object min, Object max, Type type)
+    {
+        super();
+        this.filterId = filterId;
+        this.columnHandle = columnHandle;
+        this.min = normalize(requireNonNull(min, "min is null"));
+        this.max = normalize(requireNonNull(max, "max is null"));
+        this.type = type;
+    }
+
+    @Override
+    public boolean contains(Object value)
+    {
+        if (value == null) {
+            return false;
+        }
+        if (value.getClass() != min.getClass()) {
+            // values of another representation can not be compared, so they are never filtered out
+            return true;
+        }
+        Object normalized = normalize(value);
+        return compare(min, normalized) <= 0 && compare(normalized, max) <= 0;
+    }
+
+    @Override
+    public int filter(io.prestosql.spi.type.Type blockType, Block block, int[] selectedPositions, int positionCount)
+    {
+        if (blockType.getJavaType() != long.class || !(min instanceof Long)) {
+            return super.filter(blockType, block, selectedPositions, positionCount);
+        }
+        long minValue = (Long) min;
+        long maxValue = (Long) max;
+        int matchedCount = 0;
+        for (int i = 0; i < positionCount; i++) {
+            int position = selectedPositions[i];
+            if (!block.isNull(position)) {
+                long value = blockType.getLong(block, position);
+                if (value >= minValue && value <= maxValue) {
+                    selectedPositions[matchedCount++] = position;
+                }
+            }
+        }
+        return matchedCount;
+    }
+
+    @Override
+    public long getSize()
+    {
+        return 2;
+    }
+
+    @Override
+    public DynamicFilter clone()
+    {
+        return new RangeDynamicFilter(filterId, columnHandle, min, max, type);
+    }
+
+    @Override
+    public boolean isEmpty()
+    {
+        return compare(min, max) > 0;
+    }
+
+    /**
+     * -0.0 and 0.0 are equal values, but Double.compareTo orders -0.0 before 0.0
+     */
+    private static Object normalize(Object value)
+    {
+        if (value instanceof Double && (Double) value == 0) {
+            return 0.0;
+        }
+        return value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static int compare(Object left, Object right)
+    {
+        return ((Comparable<Object>) left).compareTo(right);
+    }
+}
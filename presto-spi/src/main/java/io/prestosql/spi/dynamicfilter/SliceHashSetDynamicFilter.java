@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.prestosql.spi.dynamicfilter;
+
+import io.airlift.slice.Slice;
+import io.airlift.slice.XxHash64;
+import io.prestosql.spi.block.Block;
+import io.prestosql.spi.connector.ColumnHandle;
+import io.prestosql.spi.type.VariableWidthType;
+
+import java.util.Set;
+
+import static io.prestosql.spi.dynamicfilter.LongHashSetDynamicFilter.tableSize;
+
+/**
+ * HashSetDynamicFilter of Slice values, which are also kept in an open addressing
+ * hash table with their hashes. Variable width blocks are filtered by hashing and comparing
+ * the bytes in the block, without creating a Slice for each position.
+ * The table is built from the values when the filter is created
+ */
+public class SliceHashSetDynamicFilter
+        extends HashSetDynamicFilter
+{
+    private final Slice[] table;
+    private final long[] hashes;
+    private final int mask;
+
+    public SliceHashSetDynamicFilter(String filterId, ColumnHandle columnHandle, Set valueSet, Type type)
+    {
+        super(filterId, columnHandle, valueSet, type);
+        int size = tableSize(valueSet.size());
+        this.table = new Slice[size];
+        this.hashes = new long[size];
+        this.mask = size - 1;
+
+        for (Object object : valueSet) {
+            Slice value = (Slice) object;
+            long hash = XxHash64.hash(value);
+            int slot = (int) hash & mask;
+            while (table[slot] != null && !(hashes[slot] == hash && table[slot].equals(value))) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = value;
+            hashes[slot] = hash;
+        }
+    }
+
+    private SliceHashSetDynamicFilter(SliceHashSetDynamicFilter other)
+    {
+        super(other.filterId, other.columnHandle, other.valueSet, other.type);
+        this.table = other.table;
+        this.hashes = other.hashes;
+        this.mask = other.mask;
+    }
+
+    public boolean contains(Slice value)
+    {
+        long hash = XxHash64.hash(value);
+        int slot = (int) hash & mask;
+        while (table[slot] != null) {
+            if (hashes[slot] == hash && table[slot].equals(value)) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean contains(Object value)
+    {
+        if (value instanceof Slice) {
+            return contains((Slice) value);
+        }
+        return super.contains(value);
+    }
+
+    @Override
+    public int filter(io.prestosql.spi.type.Type blockType, Block block, int[] selectedPositions, int positionCount)
+    {
+        if (!(blockType instanceof VariableWidthType)) {
+            return super.filter(blockType, block, selectedPositions, positionCount);
+        }
+        int matchedCount = 0;
+        for (int i = 0; i < positionCount; i++) {
+            int position = selectedPositions[i];
+            if (!block.isNull(position) && contains(block, position)) {
+                selectedPositions[matchedCount++] = position;
+            }
+        }
+        return matchedCount;
+    }
+
+    private boolean contains(Block block, int position)
+    {
+        int length = block.getSliceLength(position);
+        long hash = block.hash(position, 0, length);
+        int slot = (int) hash & mask;
+        while (table[slot] != null) {
+            Slice value = table[slot];
+            if (hashes[slot] == hash && value.length() == length && block.bytesEqual(position, 0, value, 0, length)) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    @Override
+    public DynamicFilter clone()
+    {
+        DynamicFilter clone = new SliceHashSetDynamicFilter(this);
+        clone.setMin(min);
+        clone.setMax(max);
+        return clone;
+    }
+}
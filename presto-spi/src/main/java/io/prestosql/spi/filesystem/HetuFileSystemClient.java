@@ -14,6 +14,7 @@
  */
 package io.prestosql.spi.filesystem;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -22,6 +23,7 @@ import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.OpenOption;
 import java.nio.file.Path;
+import java.util.Optional;
 import java.util.stream.Stream;
 
 /**
@@ -133,7 +135,8 @@ public interface HetuFileSystemClient
      * Write to a file.
      *
      * @param path Path to the file.
-     * @param options Open options to the file. Currently supports: {@code java.nio.file.StandardOpenOption.CREATE_NEW}.
+     * @param options Open options to the file. Currently supports: {@code java.nio.file.StandardOpenOption.CREATE_NEW}
+     * and {@code java.nio.file.StandardOpenOption.APPEND}.
      * @return An opened {@code OutputStream} to write the file.
      * @throws UnsupportedOperationException If the provided OpenOptions are not supported by the filesystem implementation.
      * @throws NoSuchFileException If the parent directory does not exist.
@@ -143,6 +146,20 @@ public interface HetuFileSystemClient
     OutputStream newOutputStream(Path path, OpenOption... options)
             throws IOException;
 
+    /**
+     * Get the file on the local disk for the given path, if the file system gives direct access to it.
+     * Files accessed directly can be memory-mapped instead of being read through an {@code InputStream}.
+     *
+     * @param path Path to the file.
+     * @return The local file, or empty if the file is not on the local disk.
+     * @throws IOException If the path can not be accessed.
+     */
+    default Optional<File> getLocalFile(Path path)
+            throws IOException
+    {
+        return Optional.empty();
+    }
+
     /**
      * Get the attribute of a file or directory.
      * <p>
@@ -18,6 +18,8 @@ package io.prestosql.spi.heuristicindex;
 import io.prestosql.spi.connector.CreateIndexMetadata;
 
 import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -133,6 +135,25 @@ public interface Index
      */
     Index deserialize(InputStream in) throws IOException;
 
+    /**
+     * <pre>
+     * Load the index from a file on the local disk.
+     *
+     * Indexes whose serialized form can be used in place may memory-map the file instead of
+     * copying it, so only the pages touched by lookups are read. The file must then be kept
+     * until the index is closed. By default the file is read with {@link #deserialize(InputStream)}.
+     * </pre>
+     *
+     * @param file local file to read index from
+     * @throws IOException In the case that an error with the filesystem occurs
+     */
+    default Index deserialize(File file) throws IOException
+    {
+        try (InputStream in = new FileInputStream(file)) {
+            return deserialize(in);
+        }
+    }
+
     /**
      * Intersect this index with another index and return the intersection index object.
      *
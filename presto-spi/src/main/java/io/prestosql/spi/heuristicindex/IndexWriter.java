@@ -33,4 +33,14 @@ public interface IndexWriter
 
     long persist()
             throws IOException;
+
+    /**
+     * Discard the values and local files of a writer that will not be persisted, e.g. because index creation failed
+     *
+     * @throws IOException thrown when the local files can't be deleted
+     */
+    default void abort()
+            throws IOException
+    {
+    }
 }
@@ -102,6 +102,20 @@ public interface StateMap<K, V>
      */
     V replace(K key, V value);
 
+    /**
+     * Replace state in state store for a given key only if the key is currently associated with the given state.
+     * The comparison and the replacement are performed atomically
+     *
+     * @param key key of the state
+     * @param oldValue state value expected to be associated with the key
+     * @param newValue state value to associate with the key
+     * @return true if the state was replaced
+     */
+    default boolean replace(K key, V oldValue, V newValue)
+    {
+        throw new UnsupportedOperationException("Conditional replace is not supported by " + getClass().getSimpleName());
+    }
+
     /**
      * Returns true if state map contains a mapping for specified key
      *
@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.prestosql.spi.dynamicfilter;
+
+import com.google.common.collect.ImmutableSet;
+import io.prestosql.spi.block.Block;
+import io.prestosql.spi.block.BlockBuilder;
+import io.prestosql.spi.connector.ColumnHandle;
+import io.prestosql.spi.connector.TestingColumnHandle;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static io.prestosql.spi.type.BigintType.BIGINT;
+import static io.prestosql.spi.type.IntegerType.INTEGER;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class TestLongHashSetDynamicFilter
+{
+    @Test
+    public void testContains()
+    {
+        Set<Long> values = new HashSet<>();
+        for (long value = -1000; value <= 1000; value += 2) {
+            values.add(value);
+        }
+        values.add(Long.MAX_VALUE);
+        DynamicFilter filter = DynamicFilterFactory.create("1", null, values, DynamicFilter.Type.LOCAL);
+        assertTrue(filter instanceof LongHashSetDynamicFilter);
+
+        for (long value = -1001; value <= 1001; value++) {
+            assertEquals(filter.contains(value), values.contains(value), "value " + value);
+        }
+        assertTrue(filter.contains(0L));
+        assertTrue(filter.contains(Long.MAX_VALUE));
+        assertFalse(filter.contains(Long.MIN_VALUE));
+        assertFalse(filter.contains(1));
+        assertFalse(filter.contains(null));
+        assertTrue(filter.clone().contains(1000L));
+    }
+
+    @Test
+    public void testFilter()
+    {
+        DynamicFilter filter = DynamicFilterFactory.create("1", null, ImmutableSet.of(0L, 3L, 7L, 42L), DynamicFilter.Type.LOCAL);
+
+        BlockBuilder builder = INTEGER.createBlockBuilder(null, 10);
+        for (int value = 0; value < 9; value++) {
+            INTEGER.writeLong(builder, value);
+        }
+        builder.appendNull();
+        Block block = builder.build();
+
+        int[] positions = {0, 1, 2, 3, 4, 5, 6, 7, 8, 9};
+        int positionCount = filter.filter(INTEGER, block, positions, positions.length);
+        assertEquals(Arrays.copyOf(positions, positionCount), new int[] {0, 3, 7});
+
+        positions = new int[] {1, 7, 9};
+        positionCount = filter.filter(BIGINT, createBigintBlock(), positions, positions.length);
+        assertEquals(Arrays.copyOf(positions, positionCount), new int[] {7});
+    }
+
+    @Test
+    public void testFilterCombinedWithBloomFilter()
+    {
+        ColumnHandle column = new TestingColumnHandle("column");
+        DynamicFilter hashSetFilter = DynamicFilterFactory.create("1", column, ImmutableSet.of(1L, 2L, 3L, 4L), DynamicFilter.Type.LOCAL);
+        BloomFilterDynamicFilter bloomFilter = BloomFilterDynamicFilter.fromHashSetDynamicFilter(
+                (HashSetDynamicFilter) DynamicFilterFactory.create("2", column, ImmutableSet.of(3L, 4L, 5L), DynamicFilter.Type.LOCAL));
+        bloomFilter.setMin(3L);
+        bloomFilter.setMax(5L);
+        DynamicFilter filter = new CombinedDynamicFilter(column, hashSetFilter, bloomFilter);
+
+        Block block = createBigintBlock();
+        int[] positions = {0, 1, 2, 3, 4, 5, 6, 7, 8, 9};
+        int positionCount = filter.filter(BIGINT, block, positions, positions.length);
+        assertEquals(Arrays.copyOf(positions, positionCount), new int[] {3, 4});
+    }
+
+    private static Block createBigintBlock()
+    {
+        BlockBuilder builder = BIGINT.createBlockBuilder(null, 10);
+        for (long value = 0; value < 10; value++) {
+            BIGINT.writeLong(builder, value);
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.prestosql.spi.dynamicfilter;
+
+import io.prestosql.spi.block.Block;
+import io.prestosql.spi.block.BlockBuilder;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+
+import static io.airlift.slice.Slices.utf8Slice;
+import static io.prestosql.spi.type.BigintType.BIGINT;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class TestRangeDynamicFilter
+{
+    @Test
+    public void testContains()
+    {
+        DynamicFilter filter = DynamicFilterFactory.create("1", null, 10L, 20L, DynamicFilter.Type.GLOBAL);
+        assertTrue(filter instanceof RangeDynamicFilter);
+        assertFalse(filter.contains(9L));
+        assertTrue(filter.contains(10L));
+        assertTrue(filter.contains(15L));
+        assertTrue(filter.contains(20L));
+        assertFalse(filter.contains(21L));
+        assertFalse(filter.contains(null));
+        // values of another representation are kept
+        assertTrue(filter.contains("5"));
+        assertFalse(filter.isEmpty());
+        assertTrue(filter.clone().contains(20L));
+
+        DynamicFilter sliceFilter = DynamicFilterFactory.create("2", null, utf8Slice("b"), utf8Slice("d"), DynamicFilter.Type.GLOBAL);
+        assertFalse(sliceFilter.contains(utf8Slice("a")));
+        assertTrue(sliceFilter.contains(utf8Slice("c")));
+        assertFalse(sliceFilter.contains(utf8Slice("e")));
+
+        DynamicFilter doubleFilter = DynamicFilterFactory.create("3", null, -1.5, 1.5, DynamicFilter.Type.GLOBAL);
+        assertTrue(doubleFilter.contains(0.0));
+        assertFalse(doubleFilter.contains(2.0));
+    }
+
+    @Test
+    public void testSignedZero()
+    {
+        DynamicFilter positiveZero = DynamicFilterFactory.create("1", null, 0.0, 0.0, DynamicFilter.Type.GLOBAL);
+        assertTrue(positiveZero.contains(-0.0));
+        assertTrue(positiveZero.contains(0.0));
+
+        DynamicFilter negativeZero = DynamicFilterFactory.create("2", null, -0.0, -0.0, DynamicFilter.Type.GLOBAL);
+        assertTrue(negativeZero.contains(0.0));
+        assertTrue(negativeZero.contains(-0.0));
+
+        DynamicFilter mixedZero = DynamicFilterFactory.create("3", null, 0.0, -0.0, DynamicFilter.Type.GLOBAL);
+        assertFalse(mixedZero.isEmpty());
+    }
+
+    @Test
+    public void testFilter()
+    {
+        DynamicFilter filter = DynamicFilterFactory.create("1", null, 3L, 6L, DynamicFilter.Type.GLOBAL);
+
+        BlockBuilder builder = BIGINT.createBlockBuilder(null, 10);
+        for (long value = 0; value < 9; value++) {
+            BIGINT.writeLong(builder, value);
+        }
+        builder.appendNull();
+        Block block = builder.build();
+
+        int[] positions = {0, 1, 2, 3, 4, 5, 6, 7, 8, 9};
+        int positionCount = filter.filter(BIGINT, block, positions, positions.length);
+        assertEquals(Arrays.copyOf(positions, positionCount), new int[] {3, 4, 5, 6});
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2018-2020. Huawei Technologies Co., Ltd. All rights reserved.
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.prestosql.spi.dynamicfilter;
+
+import com.google.common.collect.ImmutableSet;
+import io.prestosql.spi.block.Block;
+import io.prestosql.spi.block.BlockBuilder;
+import io.prestosql.spi.block.DictionaryBlock;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+
+import static io.airlift.slice.Slices.utf8Slice;
+import static io.prestosql.spi.type.VarcharType.VARCHAR;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class TestSliceHashSetDynamicFilter
+{
+    private static final String[] VALUES = {"", "a", "abc", "abd", "hello", "world"};
+
+    @Test
+    public void testContains()
+    {
+        DynamicFilter filter = DynamicFilterFactory.create("1", null, ImmutableSet.of(utf8Slice(""), utf8Slice("abc"), utf8Slice("world")), DynamicFilter.Type.LOCAL);
+        assertTrue(filter instanceof SliceHashSetDynamicFilter);
+
+        assertTrue(filter.contains(utf8Slice("")));
+        assertTrue(filter.contains(utf8Slice("abc")));
+        assertTrue(filter.clone().contains(utf8Slice("world")));
+        assertFalse(filter.contains(utf8Slice("abd")));
+        assertFalse(filter.contains("abc"));
+        assertFalse(filter.contains(null));
+    }
+
+    @Test
+    public void testFilter()
+    {
+        DynamicFilter filter = DynamicFilterFactory.create("1", null, ImmutableSet.of(utf8Slice(""), utf8Slice("abc"), utf8Slice("world")), DynamicFilter.Type.LOCAL);
+
+        BlockBuilder builder = VARCHAR.createBlockBuilder(null, VALUES.length + 1);
+        for (String value : VALUES) {
+            VARCHAR.writeSlice(builder, utf8Slice(value));
+        }
+        builder.appendNull();
+        Block block = builder.build();
+
+        int[] positions = {0, 1, 2, 3, 4, 5, 6};
+        int positionCount = filter.filter(VARCHAR, block, positions, positions.length);
+        assertEquals(Arrays.copyOf(positions, positionCount), new int[] {0, 2, 5});
+
+        Block dictionaryBlock = new DictionaryBlock(block, new int[] {6, 5, 4, 2, 2, 1});
+        positions = new int[] {0, 1, 2, 3, 4, 5};
+        positionCount = filter.filter(VARCHAR, dictionaryBlock, positions, positions.length);
+        assertEquals(Arrays.copyOf(positions, positionCount), new int[] {1, 3, 4});
+    }
+}